@@ -114,11 +114,12 @@ public class HTMLDocumentImpl
      * particular tag name is created, the matching {@link java.lang.Class}
      * is used to create the element object. For example, &lt;A&gt; matches
      * {@link HTMLAnchorElementImpl}. This static table is shared across all
-     * HTML documents.
+     * HTML documents. It is only assigned once it has been populated, so that
+     * documents may be constructed without taking the class monitor.
      *
      * @see #createElement
      */
-    private static Hashtable        _elementTypesHTML;
+    private static volatile Hashtable _elementTypesHTML;
 
 
     /**
@@ -136,7 +137,8 @@ public class HTMLDocumentImpl
     public HTMLDocumentImpl()
     {
         super();
-        populateElementTypes();
+        if ( _elementTypesHTML == null )
+            populateElementTypes();
     }
 
 
@@ -704,77 +706,78 @@ public class HTMLDocumentImpl
 
         if ( _elementTypesHTML != null )
             return;
-        _elementTypesHTML = new Hashtable( 63 );
-        populateElementType( "A", "HTMLAnchorElementImpl" );
-        populateElementType( "APPLET", "HTMLAppletElementImpl" );
-        populateElementType( "AREA", "HTMLAreaElementImpl" );
-        populateElementType( "BASE",  "HTMLBaseElementImpl" );
-        populateElementType( "BASEFONT", "HTMLBaseFontElementImpl" );
-        populateElementType( "BLOCKQUOTE", "HTMLQuoteElementImpl" );
-        populateElementType( "BODY", "HTMLBodyElementImpl" );
-        populateElementType( "BR", "HTMLBRElementImpl" );
-        populateElementType( "BUTTON", "HTMLButtonElementImpl" );
-        populateElementType( "DEL", "HTMLModElementImpl" );
-        populateElementType( "DIR", "HTMLDirectoryElementImpl" );
-        populateElementType( "DIV",  "HTMLDivElementImpl" );
-        populateElementType( "DL", "HTMLDListElementImpl" );
-        populateElementType( "FIELDSET", "HTMLFieldSetElementImpl" );
-        populateElementType( "FONT", "HTMLFontElementImpl" );
-        populateElementType( "FORM", "HTMLFormElementImpl" );
-        populateElementType( "FRAME","HTMLFrameElementImpl" );
-        populateElementType( "FRAMESET", "HTMLFrameSetElementImpl" );
-        populateElementType( "HEAD", "HTMLHeadElementImpl" );
-        populateElementType( "H1", "HTMLHeadingElementImpl" );
-        populateElementType( "H2", "HTMLHeadingElementImpl" );
-        populateElementType( "H3", "HTMLHeadingElementImpl" );
-        populateElementType( "H4", "HTMLHeadingElementImpl" );
-        populateElementType( "H5", "HTMLHeadingElementImpl" );
-        populateElementType( "H6", "HTMLHeadingElementImpl" );
-        populateElementType( "HR", "HTMLHRElementImpl" );
-        populateElementType( "HTML", "HTMLHtmlElementImpl" );
-        populateElementType( "IFRAME", "HTMLIFrameElementImpl" );
-        populateElementType( "IMG", "HTMLImageElementImpl" );
-        populateElementType( "INPUT", "HTMLInputElementImpl" );
-        populateElementType( "INS", "HTMLModElementImpl" );
-        populateElementType( "ISINDEX", "HTMLIsIndexElementImpl" );
-        populateElementType( "LABEL", "HTMLLabelElementImpl" );
-        populateElementType( "LEGEND", "HTMLLegendElementImpl" );
-        populateElementType( "LI", "HTMLLIElementImpl" );
-        populateElementType( "LINK", "HTMLLinkElementImpl" );
-        populateElementType( "MAP", "HTMLMapElementImpl" );
-        populateElementType( "MENU", "HTMLMenuElementImpl" );
-        populateElementType( "META", "HTMLMetaElementImpl" );
-        populateElementType( "OBJECT", "HTMLObjectElementImpl" );
-        populateElementType( "OL", "HTMLOListElementImpl" );
-        populateElementType( "OPTGROUP", "HTMLOptGroupElementImpl" );
-        populateElementType( "OPTION", "HTMLOptionElementImpl" );
-        populateElementType( "P", "HTMLParagraphElementImpl" );
-        populateElementType( "PARAM", "HTMLParamElementImpl" );
-        populateElementType( "PRE", "HTMLPreElementImpl" );
-        populateElementType( "Q", "HTMLQuoteElementImpl" );
-        populateElementType( "SCRIPT", "HTMLScriptElementImpl" );
-        populateElementType( "SELECT", "HTMLSelectElementImpl" );
-        populateElementType( "STYLE", "HTMLStyleElementImpl" );
-        populateElementType( "TABLE", "HTMLTableElementImpl" );
-        populateElementType( "CAPTION", "HTMLTableCaptionElementImpl" );
-        populateElementType( "TD", "HTMLTableCellElementImpl" );
-        populateElementType( "TH", "HTMLTableCellElementImpl" );
-        populateElementType( "COL", "HTMLTableColElementImpl" );
-        populateElementType( "COLGROUP", "HTMLTableColElementImpl" );
-        populateElementType( "TR", "HTMLTableRowElementImpl" );
-        populateElementType( "TBODY", "HTMLTableSectionElementImpl" );
-        populateElementType( "THEAD", "HTMLTableSectionElementImpl" );
-        populateElementType( "TFOOT", "HTMLTableSectionElementImpl" );
-        populateElementType( "TEXTAREA", "HTMLTextAreaElementImpl" );
-        populateElementType( "TITLE", "HTMLTitleElementImpl" );
-        populateElementType( "UL", "HTMLUListElementImpl" );
-    }
-
-
-    private static void populateElementType( String tagName, String className )
+        Hashtable elementTypes = new Hashtable( 63 );
+        populateElementType( elementTypes, "A", "HTMLAnchorElementImpl" );
+        populateElementType( elementTypes, "APPLET", "HTMLAppletElementImpl" );
+        populateElementType( elementTypes, "AREA", "HTMLAreaElementImpl" );
+        populateElementType( elementTypes, "BASE",  "HTMLBaseElementImpl" );
+        populateElementType( elementTypes, "BASEFONT", "HTMLBaseFontElementImpl" );
+        populateElementType( elementTypes, "BLOCKQUOTE", "HTMLQuoteElementImpl" );
+        populateElementType( elementTypes, "BODY", "HTMLBodyElementImpl" );
+        populateElementType( elementTypes, "BR", "HTMLBRElementImpl" );
+        populateElementType( elementTypes, "BUTTON", "HTMLButtonElementImpl" );
+        populateElementType( elementTypes, "DEL", "HTMLModElementImpl" );
+        populateElementType( elementTypes, "DIR", "HTMLDirectoryElementImpl" );
+        populateElementType( elementTypes, "DIV",  "HTMLDivElementImpl" );
+        populateElementType( elementTypes, "DL", "HTMLDListElementImpl" );
+        populateElementType( elementTypes, "FIELDSET", "HTMLFieldSetElementImpl" );
+        populateElementType( elementTypes, "FONT", "HTMLFontElementImpl" );
+        populateElementType( elementTypes, "FORM", "HTMLFormElementImpl" );
+        populateElementType( elementTypes, "FRAME","HTMLFrameElementImpl" );
+        populateElementType( elementTypes, "FRAMESET", "HTMLFrameSetElementImpl" );
+        populateElementType( elementTypes, "HEAD", "HTMLHeadElementImpl" );
+        populateElementType( elementTypes, "H1", "HTMLHeadingElementImpl" );
+        populateElementType( elementTypes, "H2", "HTMLHeadingElementImpl" );
+        populateElementType( elementTypes, "H3", "HTMLHeadingElementImpl" );
+        populateElementType( elementTypes, "H4", "HTMLHeadingElementImpl" );
+        populateElementType( elementTypes, "H5", "HTMLHeadingElementImpl" );
+        populateElementType( elementTypes, "H6", "HTMLHeadingElementImpl" );
+        populateElementType( elementTypes, "HR", "HTMLHRElementImpl" );
+        populateElementType( elementTypes, "HTML", "HTMLHtmlElementImpl" );
+        populateElementType( elementTypes, "IFRAME", "HTMLIFrameElementImpl" );
+        populateElementType( elementTypes, "IMG", "HTMLImageElementImpl" );
+        populateElementType( elementTypes, "INPUT", "HTMLInputElementImpl" );
+        populateElementType( elementTypes, "INS", "HTMLModElementImpl" );
+        populateElementType( elementTypes, "ISINDEX", "HTMLIsIndexElementImpl" );
+        populateElementType( elementTypes, "LABEL", "HTMLLabelElementImpl" );
+        populateElementType( elementTypes, "LEGEND", "HTMLLegendElementImpl" );
+        populateElementType( elementTypes, "LI", "HTMLLIElementImpl" );
+        populateElementType( elementTypes, "LINK", "HTMLLinkElementImpl" );
+        populateElementType( elementTypes, "MAP", "HTMLMapElementImpl" );
+        populateElementType( elementTypes, "MENU", "HTMLMenuElementImpl" );
+        populateElementType( elementTypes, "META", "HTMLMetaElementImpl" );
+        populateElementType( elementTypes, "OBJECT", "HTMLObjectElementImpl" );
+        populateElementType( elementTypes, "OL", "HTMLOListElementImpl" );
+        populateElementType( elementTypes, "OPTGROUP", "HTMLOptGroupElementImpl" );
+        populateElementType( elementTypes, "OPTION", "HTMLOptionElementImpl" );
+        populateElementType( elementTypes, "P", "HTMLParagraphElementImpl" );
+        populateElementType( elementTypes, "PARAM", "HTMLParamElementImpl" );
+        populateElementType( elementTypes, "PRE", "HTMLPreElementImpl" );
+        populateElementType( elementTypes, "Q", "HTMLQuoteElementImpl" );
+        populateElementType( elementTypes, "SCRIPT", "HTMLScriptElementImpl" );
+        populateElementType( elementTypes, "SELECT", "HTMLSelectElementImpl" );
+        populateElementType( elementTypes, "STYLE", "HTMLStyleElementImpl" );
+        populateElementType( elementTypes, "TABLE", "HTMLTableElementImpl" );
+        populateElementType( elementTypes, "CAPTION", "HTMLTableCaptionElementImpl" );
+        populateElementType( elementTypes, "TD", "HTMLTableCellElementImpl" );
+        populateElementType( elementTypes, "TH", "HTMLTableCellElementImpl" );
+        populateElementType( elementTypes, "COL", "HTMLTableColElementImpl" );
+        populateElementType( elementTypes, "COLGROUP", "HTMLTableColElementImpl" );
+        populateElementType( elementTypes, "TR", "HTMLTableRowElementImpl" );
+        populateElementType( elementTypes, "TBODY", "HTMLTableSectionElementImpl" );
+        populateElementType( elementTypes, "THEAD", "HTMLTableSectionElementImpl" );
+        populateElementType( elementTypes, "TFOOT", "HTMLTableSectionElementImpl" );
+        populateElementType( elementTypes, "TEXTAREA", "HTMLTextAreaElementImpl" );
+        populateElementType( elementTypes, "TITLE", "HTMLTitleElementImpl" );
+        populateElementType( elementTypes, "UL", "HTMLUListElementImpl" );
+        _elementTypesHTML = elementTypes;
+    }
+
+
+    private static void populateElementType( Hashtable elementTypes, String tagName, String className )
     {
         try {
-            _elementTypesHTML.put( tagName,
+            elementTypes.put( tagName,
                 ObjectFactory.findProviderClass("org.apache.html.dom." + className,
                     HTMLDocumentImpl.class.getClassLoader(), true) );
         } catch ( Exception except ) {
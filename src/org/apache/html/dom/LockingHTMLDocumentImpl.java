@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.html.dom;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.UserDataHandler;
+import org.w3c.dom.html.HTMLElement;
+
+/**
+ * An HTML document whose accessors of the document element, head, title
+ * and body, which rearrange the document when needed, exclude each other
+ * with a <code>ReentrantLock</code> instead of the monitor of the document.
+ * <P>
+ * A virtual thread which waits for a monitor cannot be unmounted from its
+ * carrier thread, whereas one which waits for a lock parks and frees its
+ * carrier. As the lock is taken before the monitors of the document and of
+ * its elements, which {@link HTMLDocumentImpl} still enters, those monitors
+ * are never contended. The document may be built by a DOM parser by
+ * setting the document class name property to the name of this class.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ * @see HTMLDocumentImpl
+ */
+public class LockingHTMLDocumentImpl
+    extends HTMLDocumentImpl
+{
+
+    private static final long serialVersionUID = -3482513216950442214L;
+
+
+    /**
+     * The lock taken by the accessors.
+     */
+    private final ReentrantLock _lock = new ReentrantLock();
+
+
+    /**
+     */
+    public LockingHTMLDocumentImpl()
+    {
+        super();
+    }
+
+
+    public Element getDocumentElement()
+    {
+        _lock.lock();
+        try {
+            return super.getDocumentElement();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+
+    public HTMLElement getHead()
+    {
+        _lock.lock();
+        try {
+            return super.getHead();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+
+    public String getTitle()
+    {
+        _lock.lock();
+        try {
+            return super.getTitle();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+
+    public void setTitle( String newTitle )
+    {
+        _lock.lock();
+        try {
+            super.setTitle( newTitle );
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+
+    public HTMLElement getBody()
+    {
+        _lock.lock();
+        try {
+            return super.getBody();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+
+    public void setBody( HTMLElement newBody )
+    {
+        _lock.lock();
+        try {
+            super.setBody( newBody );
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+
+    public Element getElementById( String elementId )
+    {
+        _lock.lock();
+        try {
+            return super.getElementById( elementId );
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+
+    public Node cloneNode( boolean deep )
+    {
+        LockingHTMLDocumentImpl newdoc = new LockingHTMLDocumentImpl();
+        callUserDataHandlers(this, newdoc, UserDataHandler.NODE_CLONED);
+        cloneNode(newdoc, deep);
+        return newdoc;
+    }
+
+
+}
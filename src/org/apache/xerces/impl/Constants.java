@@ -268,6 +268,15 @@ public final class Constants {
     /** Standard URI conformant feature ("standard-uri-conformant"). */
     public static final String STANDARD_URI_CONFORMANT_FEATURE = "standard-uri-conformant";
     
+    /** Decompress gzip and zlib compressed entities feature ("decompress-input"). */
+    public static final String DECOMPRESS_INPUT_FEATURE = "decompress-input";
+    
+    /** Read entities ahead of the scanner on another thread feature ("read-ahead-input"). */
+    public static final String READ_AHEAD_INPUT_FEATURE = "read-ahead-input";
+    
+    /** Look up the names declared in the pooled grammars first feature ("scanner/grammar-names"). */
+    public static final String SCANNER_GRAMMAR_NAMES_FEATURE = "scanner/grammar-names";
+    
     /** Generate synthetic annotations feature ("generate-synthetic-annotations"). */
     public static final String GENERATE_SYNTHETIC_ANNOTATIONS_FEATURE = "generate-synthetic-annotations";
     
@@ -380,9 +389,15 @@ public final class Constants {
     /** Locale property ("locale"). */
     public static final String LOCALE_PROPERTY = "locale";
     
+    /** Projection paths property ("projection-paths"). */
+    public static final String PROJECTION_PATHS_PROPERTY = "projection-paths";
+    
     /** Entity resolver property ("internal/entity-resolver"). */
     public static final String ENTITY_RESOLVER_PROPERTY = "internal/entity-resolver";
     
+    /** Entity cache property ("internal/entity-cache"). */
+    public static final String ENTITY_CACHE_PROPERTY = "internal/entity-cache";
+    
     /** Grammar pool property ("internal/grammar-pool"). */
     public static final String XMLGRAMMAR_POOL_PROPERTY = "internal/grammar-pool";
     
@@ -431,6 +446,9 @@ public final class Constants {
     /** Schema element declaration for the root element in a document ("internal/validation/schema/dv-factory"). */
     public static final String SCHEMA_DV_FACTORY_PROPERTY = "internal/validation/schema/dv-factory";
     
+    /** Simple type validation cache property ("internal/validation/schema/validation-cache"). */
+    public static final String SCHEMA_VALIDATION_CACHE_PROPERTY = "internal/validation/schema/validation-cache";
+    
     // general constants
     
     /** Element PSVI is stored in augmentations using string "ELEMENT_PSVI" */
@@ -516,6 +534,9 @@ public final class Constants {
             NOTIFY_BUILTIN_REFS_FEATURE,
             DISALLOW_DOCTYPE_DECL_FEATURE,
             STANDARD_URI_CONFORMANT_FEATURE,
+            DECOMPRESS_INPUT_FEATURE,
+            READ_AHEAD_INPUT_FEATURE,
+            SCANNER_GRAMMAR_NAMES_FEATURE,
             GENERATE_SYNTHETIC_ANNOTATIONS_FEATURE,
             VALIDATE_ANNOTATIONS_FEATURE,
             HONOUR_ALL_SCHEMALOCATIONS_FEATURE,
@@ -540,6 +561,7 @@ public final class Constants {
             ERROR_REPORTER_PROPERTY,
             ENTITY_MANAGER_PROPERTY,
             ENTITY_RESOLVER_PROPERTY,
+            ENTITY_CACHE_PROPERTY,
             XMLGRAMMAR_POOL_PROPERTY,
             DATATYPE_VALIDATOR_FACTORY_PROPERTY,
             DOCUMENT_SCANNER_PROPERTY,
@@ -551,9 +573,11 @@ public final class Constants {
             BUFFER_SIZE_PROPERTY,
             SECURITY_MANAGER_PROPERTY,
             LOCALE_PROPERTY,
+            PROJECTION_PATHS_PROPERTY,
             ROOT_TYPE_DEFINITION_PROPERTY,
             ROOT_ELEMENT_DECLARATION_PROPERTY,
             SCHEMA_DV_FACTORY_PROPERTY,
+            SCHEMA_VALIDATION_CACHE_PROPERTY,
     };
     
     /** Empty enumeration. */
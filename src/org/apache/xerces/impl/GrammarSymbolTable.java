@@ -0,0 +1,428 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl;
+
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+import org.apache.xerces.impl.dtd.DTDGrammar;
+import org.apache.xerces.impl.dtd.XMLAttributeDecl;
+import org.apache.xerces.impl.dtd.XMLElementDecl;
+import org.apache.xerces.impl.xs.SchemaGrammar;
+import org.apache.xerces.util.SymbolTable;
+import org.apache.xerces.util.XMLSymbols;
+import org.apache.xerces.xni.grammars.Grammar;
+import org.apache.xerces.xs.XSAttributeUse;
+import org.apache.xerces.xs.XSComplexTypeDefinition;
+import org.apache.xerces.xs.XSConstants;
+import org.apache.xerces.xs.XSElementDeclaration;
+import org.apache.xerces.xs.XSModelGroup;
+import org.apache.xerces.xs.XSNamedMap;
+import org.apache.xerces.xs.XSObjectList;
+import org.apache.xerces.xs.XSParticle;
+import org.apache.xerces.xs.XSTerm;
+import org.apache.xerces.xs.XSTypeDefinition;
+
+/**
+ * A symbol table for the entity scanner which knows the element and
+ * attribute names declared in a set of grammars up front.
+ * <p>
+ * The names are kept in an open addressing table whose hash function only
+ * looks at the length and at three characters of a name, and which is
+ * searched for a seed that puts as many names as it can in their own
+ * slot. A name of the grammars is found by hashing those characters and
+ * comparing the name with the name in its slot, usually the only one
+ * compared. Other names are added to the main symbol table.
+ * <p>
+ * The symbols returned are those of the main symbol table, to which the
+ * names of the grammars are added when this table is created.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+final class GrammarSymbolTable
+    extends SymbolTable {
+
+    //
+    // Constants
+    //
+
+    /** Smallest size of the table of names. */
+    private static final int MIN_SIZE = 64;
+
+    /** Seeds of the hash function, tried in order. */
+    private static final int[] SEEDS = {
+        31, 37, 41, 43, 47, 53, 59, 61, 67, 71, 73, 79, 83, 89, 97, 101,
+    };
+
+    //
+    // Data
+    //
+
+    /** Main symbol table. */
+    private final SymbolTable fSymbolTable;
+
+    /** The schema grammars this table was created from. */
+    private final Grammar[] fSchemaGrammars;
+
+    /** The DTD grammars this table was created from. */
+    private final Grammar[] fDTDGrammars;
+
+    /** Symbols, by slot. */
+    private String[] fSymbols;
+
+    /** Characters of the symbols, by slot. */
+    private char[][] fCharacters;
+
+    /** Mask of a slot index. */
+    private int fMask;
+
+    /** Seed of the hash function. */
+    private int fSeed;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs a symbol table of the names declared in the specified
+     * grammars, in front of the specified main symbol table.
+     *
+     * @param symbolTable    The main symbol table.
+     * @param schemaGrammars The schema grammars, or null.
+     * @param dtdGrammars    The DTD grammars, or null.
+     */
+    public GrammarSymbolTable(SymbolTable symbolTable,
+            Grammar[] schemaGrammars, Grammar[] dtdGrammars) {
+        super(1);
+        fSymbolTable = symbolTable;
+        fSchemaGrammars = schemaGrammars;
+        fDTDGrammars = dtdGrammars;
+
+        Hashtable names = new Hashtable();
+        names.put(XMLSymbols.PREFIX_XML, XMLSymbols.PREFIX_XML);
+        names.put(XMLSymbols.PREFIX_XMLNS, XMLSymbols.PREFIX_XMLNS);
+        if (schemaGrammars != null) {
+            Hashtable types = new Hashtable();
+            for (int i = 0; i < schemaGrammars.length; i++) {
+                if (schemaGrammars[i] instanceof SchemaGrammar) {
+                    addSchemaNames((SchemaGrammar) schemaGrammars[i], names, types);
+                }
+            }
+        }
+        if (dtdGrammars != null) {
+            for (int i = 0; i < dtdGrammars.length; i++) {
+                if (dtdGrammars[i] instanceof DTDGrammar) {
+                    addDTDNames((DTDGrammar) dtdGrammars[i], names);
+                }
+            }
+        }
+
+        String[] symbols = new String[names.size()];
+        int count = 0;
+        for (Enumeration e = names.keys(); e.hasMoreElements(); ) {
+            symbols[count++] = fSymbolTable.addSymbol((String) e.nextElement());
+        }
+        createTable(symbols);
+
+    } // <init>(SymbolTable,Grammar[],Grammar[])
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Returns true if this table was created from the specified main
+     * symbol table and the same grammars, in the same order.
+     */
+    public boolean isCreatedFrom(SymbolTable symbolTable,
+            Grammar[] schemaGrammars, Grammar[] dtdGrammars) {
+        return fSymbolTable == symbolTable
+            && sameGrammars(fSchemaGrammars, schemaGrammars)
+            && sameGrammars(fDTDGrammars, dtdGrammars);
+    } // isCreatedFrom(SymbolTable,Grammar[],Grammar[]):boolean
+
+    //
+    // SymbolTable methods
+    //
+
+    /**
+     * Adds the specified symbol to the main symbol table and returns a
+     * reference to the unique symbol.
+     *
+     * @param symbol The new symbol.
+     */
+    public String addSymbol(String symbol) {
+        return fSymbolTable.addSymbol(symbol);
+    } // addSymbol(String):String
+
+    /**
+     * Returns the symbol of a name of the grammars, or adds the specified
+     * symbol to the main symbol table and returns a reference to the
+     * unique symbol.
+     *
+     * @param buffer The buffer containing the new symbol.
+     * @param offset The offset into the buffer of the new symbol.
+     * @param length The length of the new symbol in the buffer.
+     */
+    public String addSymbol(char[] buffer, int offset, int length) {
+        final char[][] characters = fCharacters;
+        int slot = slot(buffer, offset, length);
+        char[] chars;
+        OUTER: while ((chars = characters[slot]) != null) {
+            if (chars.length == length) {
+                for (int i = 0; i < length; i++) {
+                    if (buffer[offset + i] != chars[i]) {
+                        slot = (slot + 1) & fMask;
+                        continue OUTER;
+                    }
+                }
+                return fSymbols[slot];
+            }
+            slot = (slot + 1) & fMask;
+        }
+        return fSymbolTable.addSymbol(buffer, offset, length);
+    } // addSymbol(char[],int,int):String
+
+    /**
+     * Returns a hashcode value for the specified symbol, as the main
+     * symbol table does.
+     *
+     * @param symbol The symbol to hash.
+     */
+    public int hash(String symbol) {
+        return fSymbolTable.hash(symbol);
+    } // hash(String):int
+
+    /**
+     * Returns a hashcode value for the specified symbol information, as
+     * the main symbol table does.
+     *
+     * @param buffer The character buffer containing the symbol.
+     * @param offset The offset into the character buffer of the start
+     *               of the symbol.
+     * @param length The length of the symbol.
+     */
+    public int hash(char[] buffer, int offset, int length) {
+        return fSymbolTable.hash(buffer, offset, length);
+    } // hash(char[],int,int):int
+
+    /**
+     * Returns true if the main symbol table contains the specified
+     * symbol.
+     *
+     * @param symbol The symbol to look for.
+     */
+    public boolean containsSymbol(String symbol) {
+        return fSymbolTable.containsSymbol(symbol);
+    } // containsSymbol(String):boolean
+
+    /**
+     * Returns true if the main symbol table contains the specified
+     * symbol.
+     *
+     * @param buffer The buffer containing the symbol to look for.
+     * @param offset The offset into the buffer.
+     * @param length The length of the symbol in the buffer.
+     */
+    public boolean containsSymbol(char[] buffer, int offset, int length) {
+        return fSymbolTable.containsSymbol(buffer, offset, length);
+    } // containsSymbol(char[],int,int):boolean
+
+    //
+    // Private methods
+    //
+
+    /** Returns the home slot of a name with the current seed. */
+    private int slot(char[] buffer, int offset, int length) {
+        int code = length;
+        if (length > 0) {
+            final int seed = fSeed;
+            code = code * seed + buffer[offset];
+            code = code * seed + buffer[offset + (length >> 1)];
+            code = code * seed + buffer[offset + length - 1];
+        }
+        return (code ^ (code >>> 7)) & fMask;
+    } // slot(char[],int,int):int
+
+    /**
+     * Creates the table of names with the seed which puts the most names
+     * in their home slot.
+     */
+    private void createTable(String[] symbols) {
+        int size = MIN_SIZE;
+        while (size < symbols.length * 4) {
+            size <<= 1;
+        }
+        fMask = size - 1;
+        int bestSeed = SEEDS[0];
+        int bestMisses = Integer.MAX_VALUE;
+        for (int i = 0; i < SEEDS.length && bestMisses > 0; i++) {
+            fSeed = SEEDS[i];
+            int misses = fill(symbols, size);
+            if (misses < bestMisses) {
+                bestMisses = misses;
+                bestSeed = fSeed;
+            }
+        }
+        if (fSeed != bestSeed) {
+            fSeed = bestSeed;
+            fill(symbols, size);
+        }
+    } // createTable(String[])
+
+    /**
+     * Fills the table of names with the current seed and returns the
+     * number of names which aren't in their home slot.
+     */
+    private int fill(String[] symbols, int size) {
+        fSymbols = new String[size];
+        fCharacters = new char[size][];
+        int misses = 0;
+        for (int i = 0; i < symbols.length; i++) {
+            char[] chars = symbols[i].toCharArray();
+            int slot = slot(chars, 0, chars.length);
+            if (fCharacters[slot] != null) {
+                misses++;
+                do {
+                    slot = (slot + 1) & fMask;
+                } while (fCharacters[slot] != null);
+            }
+            fSymbols[slot] = symbols[i];
+            fCharacters[slot] = chars;
+        }
+        return misses;
+    } // fill(String[],int):int
+
+    /** Adds the names of the declarations of a schema grammar. */
+    private static void addSchemaNames(SchemaGrammar grammar,
+            Hashtable names, Hashtable types) {
+        XSNamedMap map = grammar.getComponents(XSConstants.ELEMENT_DECLARATION);
+        for (int i = 0; i < map.getLength(); i++) {
+            addElementNames((XSElementDeclaration) map.item(i), names, types);
+        }
+        map = grammar.getComponents(XSConstants.ATTRIBUTE_DECLARATION);
+        for (int i = 0; i < map.getLength(); i++) {
+            addName(map.item(i).getName(), names);
+        }
+        map = grammar.getComponents(XSConstants.TYPE_DEFINITION);
+        for (int i = 0; i < map.getLength(); i++) {
+            addTypeNames((XSTypeDefinition) map.item(i), names, types);
+        }
+    } // addSchemaNames(SchemaGrammar,Hashtable,Hashtable)
+
+    /** Adds the names of an element declaration and of its type. */
+    private static void addElementNames(XSElementDeclaration element,
+            Hashtable names, Hashtable types) {
+        addName(element.getName(), names);
+        addTypeNames(element.getTypeDefinition(), names, types);
+    } // addElementNames(XSElementDeclaration,Hashtable,Hashtable)
+
+    /**
+     * Adds the names of the attribute uses and of the local elements of
+     * a complex type definition, once.
+     */
+    private static void addTypeNames(XSTypeDefinition type,
+            Hashtable names, Hashtable types) {
+        if (type == null || type.getTypeCategory() != XSTypeDefinition.COMPLEX_TYPE
+                || types.put(type, type) != null) {
+            return;
+        }
+        XSComplexTypeDefinition complexType = (XSComplexTypeDefinition) type;
+        XSObjectList uses = complexType.getAttributeUses();
+        for (int i = 0; i < uses.getLength(); i++) {
+            addName(((XSAttributeUse) uses.item(i)).getAttrDeclaration().getName(), names);
+        }
+        addParticleNames(complexType.getParticle(), names, types);
+    } // addTypeNames(XSTypeDefinition,Hashtable,Hashtable)
+
+    /** Adds the names of the element declarations of a particle. */
+    private static void addParticleNames(XSParticle particle,
+            Hashtable names, Hashtable types) {
+        if (particle == null) {
+            return;
+        }
+        XSTerm term = particle.getTerm();
+        if (term instanceof XSElementDeclaration) {
+            addElementNames((XSElementDeclaration) term, names, types);
+        }
+        else if (term instanceof XSModelGroup) {
+            XSObjectList particles = ((XSModelGroup) term).getParticles();
+            for (int i = 0; i < particles.getLength(); i++) {
+                addParticleNames((XSParticle) particles.item(i), names, types);
+            }
+        }
+    } // addParticleNames(XSParticle,Hashtable,Hashtable)
+
+    /** Adds the names of the element and attribute declarations of a DTD. */
+    private static void addDTDNames(DTDGrammar grammar, Hashtable names) {
+        XMLElementDecl element = new XMLElementDecl();
+        XMLAttributeDecl attribute = new XMLAttributeDecl();
+        for (int i = grammar.getFirstElementDeclIndex(); i != -1;
+             i = grammar.getNextElementDeclIndex(i)) {
+            if (!grammar.getElementDecl(i, element)) {
+                break;
+            }
+            addRawName(element.name.rawname, names);
+            for (int j = grammar.getFirstAttributeDeclIndex(i); j != -1;
+                 j = grammar.getNextAttributeDeclIndex(j)) {
+                if (!grammar.getAttributeDecl(j, attribute)) {
+                    break;
+                }
+                addRawName(attribute.name.rawname, names);
+            }
+        }
+    } // addDTDNames(DTDGrammar,Hashtable)
+
+    /** Adds a raw name, and its prefix and local part if it has a prefix. */
+    private static void addRawName(String rawname, Hashtable names) {
+        if (rawname == null) {
+            return;
+        }
+        addName(rawname, names);
+        int index = rawname.indexOf(':');
+        if (index != -1) {
+            addName(rawname.substring(0, index), names);
+            addName(rawname.substring(index + 1), names);
+        }
+    } // addRawName(String,Hashtable)
+
+    /** Adds a name. */
+    private static void addName(String name, Hashtable names) {
+        if (name != null && name.length() > 0) {
+            names.put(name, name);
+        }
+    } // addName(String,Hashtable)
+
+    /** Returns true if two arrays hold the same grammars in the same order. */
+    private static boolean sameGrammars(Grammar[] a, Grammar[] b) {
+        int lengthA = a != null ? a.length : 0;
+        int lengthB = b != null ? b.length : 0;
+        if (lengthA != lengthB) {
+            return false;
+        }
+        for (int i = 0; i < lengthA; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    } // sameGrammars(Grammar[],Grammar[]):boolean
+
+} // class GrammarSymbolTable
@@ -1455,5 +1455,159 @@ public class XML11EntityScanner
 
     } // skipString(String):boolean
 
+    /**
+     * Skips characters up to and including the next occurrence of the
+     * specified delimiter. The characters skipped are neither checked
+     * nor normalized, but the line and column numbers are kept up to
+     * date.
+     * <p>
+     * <strong>Note:</strong> The delimiter must not be a newline
+     * character.
+     *
+     * @param delimiter The character ending the characters to skip.
+     *
+     * @throws IOException  Thrown if i/o error occurs.
+     * @throws EOFException Thrown on end of file.
+     */
+    public void skipData(int delimiter) throws IOException {
+
+        boolean cr = false;
+        while (true) {
+            // load more characters, if needed
+            if (fCurrentEntity.position == fCurrentEntity.count) {
+                load(0, true);
+            }
+
+            final char[] ch = fCurrentEntity.ch;
+            final int count = fCurrentEntity.count;
+            final boolean external = fCurrentEntity.isExternal();
+            int position = fCurrentEntity.position;
+            int lineNumber = fCurrentEntity.lineNumber;
+            int columnNumber = fCurrentEntity.columnNumber;
+            while (position < count) {
+                int c = ch[position++];
+                if (c == delimiter) {
+                    fCurrentEntity.position = position;
+                    fCurrentEntity.lineNumber = lineNumber;
+                    fCurrentEntity.columnNumber = columnNumber + 1;
+                    return;
+                }
+                if (c == '\n' || (c == 0x85 && external)) {
+                    // "\r\n" and "\r#x85" sequences are single newlines
+                    if (!cr) {
+                        lineNumber++;
+                    }
+                    columnNumber = 1;
+                    cr = false;
+                }
+                else if ((c == '\r' || c == 0x2028) && external) {
+                    lineNumber++;
+                    columnNumber = 1;
+                    cr = c == '\r';
+                }
+                else {
+                    columnNumber++;
+                    cr = false;
+                }
+            }
+            fCurrentEntity.position = position;
+            fCurrentEntity.lineNumber = lineNumber;
+            fCurrentEntity.columnNumber = columnNumber;
+        }
+
+    } // skipData(int)
+
+    /**
+     * Skips a start tag, empty-element tag or end tag whose leading
+     * '&lt;' or '&lt;/' has been consumed, up to and including the
+     * closing '>'. The characters of the name are appended to the
+     * specified buffer; the rest of the tag, including any quoted
+     * attribute values, is skipped. The characters are neither checked
+     * nor normalized, but the line and column numbers are kept up to
+     * date.
+     *
+     * @param name The buffer to append the name to.
+     *
+     * @return Returns true if the tag is an empty-element tag.
+     *
+     * @throws IOException  Thrown if i/o error occurs.
+     * @throws EOFException Thrown on end of file.
+     */
+    public boolean skipTag(XMLStringBuffer name) throws IOException {
+
+        boolean inName = true;
+        boolean empty = false;
+        boolean cr = false;
+        int quote = 0;
+        while (true) {
+            // load more characters, if needed
+            if (fCurrentEntity.position == fCurrentEntity.count) {
+                load(0, true);
+            }
+
+            final char[] ch = fCurrentEntity.ch;
+            final int count = fCurrentEntity.count;
+            final boolean external = fCurrentEntity.isExternal();
+            int position = fCurrentEntity.position;
+            int lineNumber = fCurrentEntity.lineNumber;
+            int columnNumber = fCurrentEntity.columnNumber;
+            if (inName) {
+                final int offset = position;
+                while (position < count) {
+                    int c = ch[position];
+                    if (c == '>' || c == '/' || XMLChar.isSpace(c) ||
+                        ((c == 0x85 || c == 0x2028) && external)) {
+                        inName = false;
+                        break;
+                    }
+                    position++;
+                }
+                name.append(ch, offset, position - offset);
+                columnNumber += position - offset;
+            }
+            while (position < count) {
+                int c = ch[position++];
+                if (c == '\n' || (c == 0x85 && external)) {
+                    // "\r\n" and "\r#x85" sequences are single newlines
+                    if (!cr) {
+                        lineNumber++;
+                    }
+                    columnNumber = 1;
+                    cr = false;
+                    continue;
+                }
+                if ((c == '\r' || c == 0x2028) && external) {
+                    lineNumber++;
+                    columnNumber = 1;
+                    cr = c == '\r';
+                    continue;
+                }
+                columnNumber++;
+                cr = false;
+                if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                    }
+                }
+                else if (c == '>') {
+                    fCurrentEntity.position = position;
+                    fCurrentEntity.lineNumber = lineNumber;
+                    fCurrentEntity.columnNumber = columnNumber;
+                    return empty;
+                }
+                else {
+                    empty = c == '/';
+                    if (c == '"' || c == '\'') {
+                        quote = c;
+                    }
+                }
+            }
+            fCurrentEntity.position = position;
+            fCurrentEntity.lineNumber = lineNumber;
+            fCurrentEntity.columnNumber = columnNumber;
+        }
+
+    } // skipTag(XMLStringBuffer):boolean
+
 } // class XML11EntityScanner
 
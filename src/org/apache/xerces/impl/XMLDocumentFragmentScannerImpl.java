@@ -24,6 +24,7 @@ import java.io.IOException;
 import org.apache.xerces.impl.io.MalformedByteSequenceException;
 import org.apache.xerces.impl.msg.XMLMessageFormatter;
 import org.apache.xerces.util.AugmentationsImpl;
+import org.apache.xerces.util.IntStack;
 import org.apache.xerces.util.XMLAttributesImpl;
 import org.apache.xerces.util.XMLChar;
 import org.apache.xerces.util.XMLStringBuffer;
@@ -275,6 +276,20 @@ public class XMLDocumentFragmentScannerImpl
     /** Reusable Augmentations. */
     private Augmentations fTempAugmentations = null;
 
+    // skipping element content
+
+    /**
+     * Depth of the element whose content is to be skipped, or zero if
+     * the content of the current element is to be scanned.
+     */
+    private int fSkipElementDepth;
+
+    /** Names of the elements open within the content being skipped. */
+    private final XMLStringBuffer fSkippedNames = new XMLStringBuffer();
+
+    /** Offsets of the names of the elements open within the content being skipped. */
+    private final IntStack fSkippedNameOffsets = new IntStack();
+
     //
     // Constructors
     //
@@ -368,6 +383,7 @@ public class XMLDocumentFragmentScannerImpl
         fStandalone = false;
         fIsEntityDeclaredVC = false;
         fInScanContent = false;
+        fSkipElementDepth = 0;
 
 		// setup dispatcher
 		setScannerState(SCANNER_STATE_CONTENT);
@@ -539,6 +555,29 @@ public class XMLDocumentFragmentScannerImpl
         return fDocumentHandler;
     }
 
+    //
+    // Public methods
+    //
+
+    /**
+     * Requests that the content of the element being started is skipped.
+     * The document handler may call this method from its startElement
+     * method; the scanner then skips the children of the element without
+     * reporting them and continues by reporting the end of the element.
+     * A request made for an empty element is ignored.
+     * <p>
+     * Skipping is cheap: names aren't added to the symbol table,
+     * attributes aren't scanned, entity references aren't expanded and
+     * characters aren't checked. Only the nesting of elements, the names
+     * in end tags and the delimiters of comments, CDATA sections and
+     * processing instructions are checked.
+     */
+    public void skipElementContent() {
+        fSkipElementDepth = fElementStack.fSize;
+        fSkippedNames.clear();
+        fSkippedNameOffsets.clear();
+    } // skipElementContent()
+
     //
     // XMLEntityHandler methods
     //
@@ -1369,6 +1408,88 @@ public class XMLDocumentFragmentScannerImpl
 
     } // callEndElement(QName,boolean):int
 
+    /**
+     * Skips the content of the current element up to the '&lt;' of
+     * its end tag. Elements nested in the content are tracked by name
+     * so that their end tags can be matched.
+     * <p>
+     * <strong>Note:</strong> The names of the open elements are kept
+     * between calls so that a scan interrupted by the end of the
+     * available input can continue where it stopped.
+     */
+    private void skipContent() throws IOException, XNIException {
+        while (true) {
+            fEntityScanner.skipData('<');
+            int c = fEntityScanner.peekChar();
+            if (c == '/') {
+                if (fSkippedNameOffsets.size() == 0) {
+                    return;
+                }
+                fEntityScanner.scanChar();
+                int offset = fSkippedNameOffsets.pop();
+                int end = fSkippedNames.length;
+                fEntityScanner.skipTag(fSkippedNames);
+                if (!isSkippedName(offset, end)) {
+                    reportFatalError("ETagRequired",
+                                     new Object[]{new String(fSkippedNames.ch, offset, end - offset)});
+                }
+                fSkippedNames.length = offset;
+            }
+            else if (c == '!') {
+                fEntityScanner.scanChar();
+                if (fEntityScanner.skipString("--")) {
+                    do {
+                        fEntityScanner.skipData('-');
+                    }
+                    while (!fEntityScanner.skipString("->"));
+                }
+                else if (fEntityScanner.skipString("[CDATA[")) {
+                    do {
+                        fEntityScanner.skipData(']');
+                    }
+                    while (!fEntityScanner.skipString("]>"));
+                }
+                else {
+                    reportFatalError("MarkupNotRecognizedInContent", null);
+                }
+            }
+            else if (c == '?') {
+                fEntityScanner.scanChar();
+                do {
+                    fEntityScanner.skipData('?');
+                }
+                while (!fEntityScanner.skipChar('>'));
+            }
+            else {
+                int offset = fSkippedNames.length;
+                if (fEntityScanner.skipTag(fSkippedNames)) {
+                    fSkippedNames.length = offset;
+                }
+                else {
+                    fSkippedNameOffsets.push(offset);
+                }
+            }
+        }
+    } // skipContent()
+
+    /**
+     * Returns true if the name of a skipped end tag, which follows the
+     * name of the innermost open element in the skipped names, matches it.
+     */
+    private boolean isSkippedName(int offset, int end) {
+        final char[] ch = fSkippedNames.ch;
+        final int length = end - offset;
+        if (fSkippedNames.length - end != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (ch[offset + i] != ch[end + i]) {
+                return false;
+            }
+        }
+        return true;
+    } // isSkippedName(int,int):boolean
+
     // helper methods
 
     /**
@@ -1596,6 +1717,16 @@ public class XMLDocumentFragmentScannerImpl
                     again = false;
                     switch (fScannerState) {
                         case SCANNER_STATE_CONTENT: {
+                            if (fSkipElementDepth != 0) {
+                                if (fSkipElementDepth == fElementStack.fSize) {
+                                    skipContent();
+                                    fSkipElementDepth = 0;
+                                    setScannerState(SCANNER_STATE_START_OF_MARKUP);
+                                    again = true;
+                                    break;
+                                }
+                                fSkipElementDepth = 0;
+                            }
                             if (fEntityScanner.skipChar('<')) {
                                 setScannerState(SCANNER_STATE_START_OF_MARKUP);
                                 again = true;
@@ -17,12 +17,15 @@
 
 package org.apache.xerces.impl;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.PushbackInputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.net.HttpURLConnection;
@@ -36,9 +39,14 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Stack;
 import java.util.StringTokenizer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 import org.apache.xerces.impl.io.ASCIIReader;
 import org.apache.xerces.impl.io.Latin1Reader;
+import org.apache.xerces.impl.io.ReadAheadInputStream;
+import org.apache.xerces.impl.io.SingleByteReader;
 import org.apache.xerces.impl.io.UCSReader;
 import org.apache.xerces.impl.io.UTF16Reader;
 import org.apache.xerces.impl.io.UTF8Reader;
@@ -51,11 +59,15 @@ import org.apache.xerces.util.SecurityManager;
 import org.apache.xerces.util.SymbolTable;
 import org.apache.xerces.util.URI;
 import org.apache.xerces.util.XMLChar;
+import org.apache.xerces.util.XMLEntityCache;
 import org.apache.xerces.util.XMLEntityDescriptionImpl;
 import org.apache.xerces.util.XMLResourceIdentifierImpl;
 import org.apache.xerces.xni.Augmentations;
 import org.apache.xerces.xni.XMLResourceIdentifier;
 import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.grammars.Grammar;
+import org.apache.xerces.xni.grammars.XMLGrammarDescription;
+import org.apache.xerces.xni.grammars.XMLGrammarPool;
 import org.apache.xerces.xni.parser.XMLComponent;
 import org.apache.xerces.xni.parser.XMLComponentManager;
 import org.apache.xerces.xni.parser.XMLConfigurationException;
@@ -130,6 +142,18 @@ public class XMLEntityManager
     protected static final String STANDARD_URI_CONFORMANT =
     Constants.XERCES_FEATURE_PREFIX +Constants.STANDARD_URI_CONFORMANT_FEATURE;
     
+    /** Feature identifier: decompress input */
+    protected static final String DECOMPRESS_INPUT =
+        Constants.XERCES_FEATURE_PREFIX + Constants.DECOMPRESS_INPUT_FEATURE;
+    
+    /** Feature identifier: read ahead input */
+    protected static final String READ_AHEAD_INPUT =
+        Constants.XERCES_FEATURE_PREFIX + Constants.READ_AHEAD_INPUT_FEATURE;
+    
+    /** Feature identifier: scanner grammar names */
+    protected static final String SCANNER_GRAMMAR_NAMES =
+        Constants.XERCES_FEATURE_PREFIX + Constants.SCANNER_GRAMMAR_NAMES_FEATURE;
+    
 	protected static final String PARSER_SETTINGS = 
 		Constants.XERCES_FEATURE_PREFIX + Constants.PARSER_SETTINGS;	
 
@@ -146,6 +170,10 @@ public class XMLEntityManager
     /** Property identifier: entity resolver. */
     protected static final String ENTITY_RESOLVER =
         Constants.XERCES_PROPERTY_PREFIX + Constants.ENTITY_RESOLVER_PROPERTY;
+    
+    /** Property identifier: entity cache. */
+    protected static final String ENTITY_CACHE =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.ENTITY_CACHE_PROPERTY;
 
     // property identifier:  ValidationManager
     protected static final String VALIDATION_MANAGER =
@@ -159,6 +187,10 @@ public class XMLEntityManager
     protected static final String SECURITY_MANAGER =
         Constants.XERCES_PROPERTY_PREFIX + Constants.SECURITY_MANAGER_PROPERTY;
 
+    /** Property identifier: grammar pool. */
+    protected static final String XMLGRAMMAR_POOL =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.XMLGRAMMAR_POOL_PROPERTY;
+
     // recognized features and properties
 
     /** Recognized features. */
@@ -168,7 +200,10 @@ public class XMLEntityManager
         EXTERNAL_PARAMETER_ENTITIES,
         ALLOW_JAVA_ENCODINGS,
         WARN_ON_DUPLICATE_ENTITYDEF,
-        STANDARD_URI_CONFORMANT
+        STANDARD_URI_CONFORMANT,
+        DECOMPRESS_INPUT,
+        READ_AHEAD_INPUT,
+        SCANNER_GRAMMAR_NAMES
     };
 
     /** Feature defaults. */
@@ -178,6 +213,9 @@ public class XMLEntityManager
         Boolean.TRUE,
         Boolean.FALSE,
         Boolean.FALSE,
+        Boolean.FALSE,
+        Boolean.FALSE,
+        Boolean.FALSE,
         Boolean.FALSE
     };
 
@@ -189,6 +227,7 @@ public class XMLEntityManager
         VALIDATION_MANAGER,
         BUFFER_SIZE,
         SECURITY_MANAGER,
+        ENTITY_CACHE,
     };
 
     /** Property defaults. */
@@ -199,11 +238,21 @@ public class XMLEntityManager
         null,
         new Integer(DEFAULT_BUFFER_SIZE),
         null,
+        null,
     };
 
     private static final String XMLEntity = "[xml]".intern();
     private static final String DTDEntity = "[dtd]".intern();
     
+    /** Buffer size for decompressing entities (65536). */
+    private static final int DECOMPRESS_BUFFER_SIZE = 65536;
+    
+    /** Size of the buffers of entities read ahead (16384). */
+    private static final int READ_AHEAD_BUFFER_SIZE = 16384;
+    
+    /** Number of the buffers of entities read ahead (4). */
+    private static final int READ_AHEAD_BUFFER_COUNT = 4;
+    
     // debugging
 
     /**
@@ -263,6 +312,25 @@ public class XMLEntityManager
      */
     protected boolean fStrictURI;
 
+    /**
+     * Decompress gzip and zlib compressed entities.
+     * http://apache.org/xml/features/decompress-input
+     */
+    protected boolean fDecompressInput;
+
+    /**
+     * Read external entities ahead of the scanner on another thread.
+     * http://apache.org/xml/features/read-ahead-input
+     */
+    protected boolean fReadAheadInput;
+
+    /**
+     * Look up the names declared in the grammars of the grammar pool
+     * before the symbol table while scanning.
+     * http://apache.org/xml/features/scanner/grammar-names
+     */
+    protected boolean fScannerGrammarNames;
+
     // properties
 
     /**
@@ -271,6 +339,12 @@ public class XMLEntityManager
      */
     protected SymbolTable fSymbolTable;
 
+    /**
+     * Grammar pool. This property identifier is:
+     * http://apache.org/xml/properties/internal/grammar-pool
+     */
+    protected XMLGrammarPool fGrammarPool;
+
     /**
      * Error reporter. This property identifier is:
      * http://apache.org/xml/properties/internal/error-reporter
@@ -282,6 +356,12 @@ public class XMLEntityManager
      * http://apache.org/xml/properties/internal/entity-resolver
      */
     protected XMLEntityResolver fEntityResolver;
+    
+    /**
+     * Entity cache. This property identifier is:
+     * http://apache.org/xml/properties/internal/entity-cache
+     */
+    protected XMLEntityCache fEntityCache;
 
     /**
      * Validation manager. This property identifier is:
@@ -333,6 +413,12 @@ public class XMLEntityManager
     /** XML 1.1 entity scanner. */
     protected XMLEntityScanner fXML11EntityScanner;
 
+    /** Symbol table of the entity scanners. */
+    protected SymbolTable fScannerSymbolTable;
+
+    /** Symbol table of the names of the pooled grammars, if created. */
+    private GrammarSymbolTable fGrammarSymbolTable;
+
     // entity expansion limit (contains useful data if and only if
     // fSecurityManager is non-null)
     protected int fEntityExpansionLimit = 0;
@@ -960,7 +1046,14 @@ public class XMLEntityManager
         }
         if (reader == null) {
             stream = xmlInputSource.getByteStream();
+            if (stream == null && fEntityCache != null) {
+                byte[] content = fEntityCache.getEntity(expandedSystemId, encoding);
+                if (content != null) {
+                    stream = new ByteArrayInputStream(content);
+                }
+            }
             if (stream == null) {
+                boolean cacheable = true;
                 URL location = new URL(expandedSystemId);
                 URLConnection connect = location.openConnection();
                 if (!(connect instanceof HttpURLConnection)) {
@@ -1001,9 +1094,29 @@ public class XMLEntityManager
                         if (!redirect.equals(expandedSystemId)) {
                             literalSystemId = redirect;
                             expandedSystemId = redirect;
+                            // Relative references in a redirected entity 
+                            // resolve against the new location, which 
+                            // the cache would not remember.
+                            cacheable = false;
                         }
                     }
                 }
+                if (cacheable && fEntityCache != null) {
+                    stream = new CachingInputStream(stream, expandedSystemId, encoding);
+                }
+            }
+            final boolean inMemory = stream instanceof ByteArrayInputStream;
+            // decompress the stream before the encoding is detected
+            if (fDecompressInput) {
+                stream = decompress(stream);
+            }
+            // read the stream ahead of the scanner on another thread; 
+            // the bytes of the stream are buffered below the rewindable 
+            // stream so that the encoding can still be switched
+            if (fReadAheadInput && !inMemory && 
+                !(stream instanceof ReadAheadInputStream)) {
+                stream = new ReadAheadInputStream(stream, 
+                        READ_AHEAD_BUFFER_SIZE, READ_AHEAD_BUFFER_COUNT);
             }
             // wrap this stream in RewindableInputStream
             RewindableInputStream rewindableStream = new RewindableInputStream(stream);
@@ -1195,14 +1308,14 @@ public class XMLEntityManager
             if(fXML10EntityScanner == null) {
                 fXML10EntityScanner = new XMLEntityScanner();
             }
-			fXML10EntityScanner.reset(fSymbolTable, this, fErrorReporter);
+			fXML10EntityScanner.reset(fScannerSymbolTable, this, fErrorReporter);
             fEntityScanner = fXML10EntityScanner;
             fEntityScanner.setCurrentEntity(fCurrentEntity);
         } else {
             if(fXML11EntityScanner == null) {
                 fXML11EntityScanner = new XML11EntityScanner();
             }
-			fXML11EntityScanner.reset(fSymbolTable, this, fErrorReporter);
+			fXML11EntityScanner.reset(fScannerSymbolTable, this, fErrorReporter);
             fEntityScanner = fXML11EntityScanner;
             fEntityScanner.setCurrentEntity(fCurrentEntity);
         }
@@ -1215,7 +1328,7 @@ public class XMLEntityManager
             if(fXML10EntityScanner == null) {
                 fXML10EntityScanner = new XMLEntityScanner();
             }
-            fXML10EntityScanner.reset(fSymbolTable, this, fErrorReporter);
+            fXML10EntityScanner.reset(fScannerSymbolTable, this, fErrorReporter);
             fEntityScanner = fXML10EntityScanner;
         }
         return fEntityScanner;
@@ -1314,6 +1427,27 @@ public class XMLEntityManager
             fStrictURI = false;
         }
 
+        try {
+            fDecompressInput = componentManager.getFeature(DECOMPRESS_INPUT);
+        }
+        catch (XMLConfigurationException e) {
+            fDecompressInput = false;
+        }
+
+        try {
+            fReadAheadInput = componentManager.getFeature(READ_AHEAD_INPUT);
+        }
+        catch (XMLConfigurationException e) {
+            fReadAheadInput = false;
+        }
+
+        try {
+            fScannerGrammarNames = componentManager.getFeature(SCANNER_GRAMMAR_NAMES);
+        }
+        catch (XMLConfigurationException e) {
+            fScannerGrammarNames = false;
+        }
+
         // xerces properties
         fSymbolTable = (SymbolTable)componentManager.getProperty(SYMBOL_TABLE);
         fErrorReporter = (XMLErrorReporter)componentManager.getProperty(ERROR_REPORTER);
@@ -1323,6 +1457,12 @@ public class XMLEntityManager
         catch (XMLConfigurationException e) {
             fEntityResolver = null;
         }
+        try {
+            fEntityCache = (XMLEntityCache)componentManager.getProperty(ENTITY_CACHE);
+        }
+        catch (XMLConfigurationException e) {
+            fEntityCache = null;
+        }
         try {
             fValidationManager = (ValidationManager)componentManager.getProperty(VALIDATION_MANAGER);
         }
@@ -1335,6 +1475,12 @@ public class XMLEntityManager
         catch (XMLConfigurationException e) {
             fSecurityManager = null;
         }
+        try {
+            fGrammarPool = (XMLGrammarPool)componentManager.getProperty(XMLGRAMMAR_POOL);
+        }
+        catch (XMLConfigurationException e) {
+            fGrammarPool = null;
+        }
 
         // reset general state
         reset();
@@ -1356,11 +1502,12 @@ public class XMLEntityManager
 
         fCurrentEntity = null;
         // reset scanner
+        fScannerSymbolTable = getScannerSymbolTable();
         if(fXML10EntityScanner != null){ 
-            fXML10EntityScanner.reset(fSymbolTable, this, fErrorReporter);
+            fXML10EntityScanner.reset(fScannerSymbolTable, this, fErrorReporter);
         }
         if(fXML11EntityScanner != null) {
-            fXML11EntityScanner.reset(fSymbolTable, this, fErrorReporter);
+            fXML11EntityScanner.reset(fScannerSymbolTable, this, fErrorReporter);
         }
 
         // DEBUG
@@ -1433,6 +1580,18 @@ public class XMLEntityManager
                 featureId.endsWith(Constants.ALLOW_JAVA_ENCODINGS_FEATURE)) {
                 fAllowJavaEncodings = state;
             }
+            else if (suffixLength == Constants.DECOMPRESS_INPUT_FEATURE.length() && 
+                featureId.endsWith(Constants.DECOMPRESS_INPUT_FEATURE)) {
+                fDecompressInput = state;
+            }
+            else if (suffixLength == Constants.READ_AHEAD_INPUT_FEATURE.length() && 
+                featureId.endsWith(Constants.READ_AHEAD_INPUT_FEATURE)) {
+                fReadAheadInput = state;
+            }
+            else if (suffixLength == Constants.SCANNER_GRAMMAR_NAMES_FEATURE.length() && 
+                featureId.endsWith(Constants.SCANNER_GRAMMAR_NAMES_FEATURE)) {
+                fScannerGrammarNames = state;
+            }
         }
 
     } // setFeature(String,boolean)
@@ -1471,6 +1630,7 @@ public class XMLEntityManager
             if (suffixLength == Constants.SYMBOL_TABLE_PROPERTY.length() && 
                 propertyId.endsWith(Constants.SYMBOL_TABLE_PROPERTY)) {
                 fSymbolTable = (SymbolTable)value;
+                fScannerSymbolTable = fSymbolTable;
                 return;
             }
             if (suffixLength == Constants.ERROR_REPORTER_PROPERTY.length() && 
@@ -1483,6 +1643,11 @@ public class XMLEntityManager
                 fEntityResolver = (XMLEntityResolver)value;
                 return;
             }
+            if (suffixLength == Constants.ENTITY_CACHE_PROPERTY.length() && 
+                propertyId.endsWith(Constants.ENTITY_CACHE_PROPERTY)) {
+                fEntityCache = (XMLEntityCache)value;
+                return;
+            }
             if (suffixLength == Constants.BUFFER_SIZE_PROPERTY.length() && 
                 propertyId.endsWith(Constants.BUFFER_SIZE_PROPERTY)) {
                 Integer bufferSize = (Integer)value;
@@ -1980,6 +2145,85 @@ public class XMLEntityManager
 
     } // endEntity()
     
+    /**
+     * Returns the symbol table of the entity scanners: a symbol table of 
+     * the names declared in the grammars of the grammar pool in front of 
+     * the symbol table if the scanner grammar names feature is on, or the 
+     * symbol table otherwise. The names are only collected again when the 
+     * pool holds other grammars than it did for the last document.
+     */
+    protected SymbolTable getScannerSymbolTable() {
+        if (!fScannerGrammarNames || fGrammarPool == null || fSymbolTable == null) {
+            return fSymbolTable;
+        }
+        Grammar[] schemaGrammars = 
+            fGrammarPool.retrieveInitialGrammarSet(XMLGrammarDescription.XML_SCHEMA);
+        Grammar[] dtdGrammars = 
+            fGrammarPool.retrieveInitialGrammarSet(XMLGrammarDescription.XML_DTD);
+        if (fGrammarSymbolTable == null || 
+            !fGrammarSymbolTable.isCreatedFrom(fSymbolTable, schemaGrammars, dtdGrammars)) {
+            fGrammarSymbolTable = new GrammarSymbolTable(fSymbolTable, schemaGrammars, dtdGrammars);
+        }
+        return fGrammarSymbolTable;
+    } // getScannerSymbolTable():SymbolTable
+    
+    /**
+     * Returns a stream of the decompressed bytes of the given input stream 
+     * if it starts with the header of a gzip or zlib compressed stream, 
+     * or a stream of its bytes otherwise. If there is more than one 
+     * processor the bytes are decompressed ahead of the reader on another 
+     * thread.
+     * <p>
+     * <strong>Note:</strong> Text starting with one of the characters 
+     * <code>(8HXhx</code> may look like a zlib header, which can't happen 
+     * for a document entity, but can for external parsed entities.
+     *
+     * @param inputStream The input stream.
+     *
+     * @return Returns an input stream of the decompressed bytes.
+     *
+     * @throws IOException Thrown if the stream can't be read, including
+     *                     when a compressed stream is truncated.
+     */
+    protected InputStream decompress(InputStream inputStream) throws IOException {
+        final PushbackInputStream stream = new PushbackInputStream(inputStream, 2);
+        final byte[] b2 = new byte[2];
+        int count = 0;
+        for (int read; count < 2 && (read = stream.read(b2, count, 2 - count)) != -1;) {
+            count += read;
+        }
+        stream.unread(b2, 0, count);
+        if (count < 2) {
+            return stream;
+        }
+        final int b0 = b2[0] & 0xFF;
+        final int b1 = b2[1] & 0xFF;
+        InputStream decompressed;
+        // gzip: ID1 ID2
+        if (b0 == 0x1F && b1 == 0x8B) {
+            try {
+                decompressed = new GZIPInputStream(stream, DECOMPRESS_BUFFER_SIZE);
+            }
+            catch (EOFException e) {
+                throw DecompressedInputStream.truncated(e);
+            }
+        }
+        // zlib: CMF FLG, with the deflate method, a window of at most
+        // 32K, no preset dictionary and a valid check
+        else if ((b0 & 0x0F) == 8 && (b0 >> 4) <= 7 && 
+                 (b1 & 0x20) == 0 && ((b0 << 8) | b1) % 31 == 0) {
+            decompressed = new InflaterInputStream(stream, new Inflater(), DECOMPRESS_BUFFER_SIZE);
+        }
+        else {
+            return stream;
+        }
+        decompressed = new DecompressedInputStream(decompressed);
+        if (Runtime.getRuntime().availableProcessors() > 1) {
+            return new ReadAheadInputStream(decompressed);
+        }
+        return decompressed;
+    } // decompress(InputStream):InputStream
+    
     /**
      * Returns the IANA encoding name that is auto-detected from
      * the bytes specified, with the endian-ness of that encoding where appropriate.
@@ -2177,6 +2421,11 @@ public class XMLEntityManager
         else if (javaEncoding.equals("ISO8859_1")) {
             return createLatin1Reader(inputStream);
         }
+        // try to use a table driven reader for single byte encodings
+        final char[] table = SingleByteReader.getTable(javaEncoding);
+        if (table != null) {
+            return createSingleByteReader(inputStream, table);
+        }
         if (DEBUG_ENCODINGS) {
             System.out.print("$$$ creating Java InputStreamReader: encoding="+javaEncoding);
             if (javaEncoding == encoding) {
@@ -2246,6 +2495,17 @@ public class XMLEntityManager
         }
         return new Latin1Reader(stream, fTempByteBuffer);
     } // createLatin1Reader(InputStream):Reader
+    
+    /** Create a new reader for a single byte encoding from the InputStream. **/
+    private Reader createSingleByteReader(InputStream stream, char[] table) {
+        if (DEBUG_ENCODINGS) {
+            System.out.println("$$$ creating SingleByteReader");
+        }
+        if (fTempByteBuffer == null) {
+            fTempByteBuffer = fSmallByteBufferPool.getBuffer();
+        }
+        return new SingleByteReader(stream, fTempByteBuffer, table);
+    } // createSingleByteReader(InputStream,char[]):Reader
 
     //
     // Protected static methods
@@ -3234,5 +3494,179 @@ public class XMLEntityManager
             }
         }
     } // end of RewindableInputStream class
+    
+    /**
+     * This class records the bytes read from the stream of an 
+     * external entity. If the end of the stream is reached before 
+     * the entity exceeds the maximum size accepted by the entity 
+     * cache, the bytes are stored in the cache.
+     *
+     * @xerces.internal
+     */
+    private final class CachingInputStream extends InputStream {
+        
+        private final InputStream fInputStream;
+        private final String fExpandedSystemId;
+        private final String fEncoding;
+        private final XMLEntityCache fCache;
+        private final int fMaxLength;
+        private byte[] fData;
+        private int fLength;
+        
+        public CachingInputStream(InputStream is, String expandedSystemId, String encoding) {
+            fInputStream = is;
+            fExpandedSystemId = expandedSystemId;
+            fEncoding = encoding;
+            fCache = fEntityCache;
+            fMaxLength = fCache.getMaxEntitySize();
+            fData = (fMaxLength > 0) ? new byte[Math.min(fBufferSize, fMaxLength)] : null;
+            fLength = 0;
+        }
+        
+        public int read() throws IOException {
+            final int b = fInputStream.read();
+            if (b != -1) {
+                if (fData != null) {
+                    record(1);
+                    if (fData != null) {
+                        fData[fLength++] = (byte) b;
+                    }
+                }
+            }
+            else {
+                store();
+            }
+            return b;
+        }
+        
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int count = fInputStream.read(b, off, len);
+            if (count > 0) {
+                if (fData != null) {
+                    record(count);
+                    if (fData != null) {
+                        System.arraycopy(b, off, fData, fLength, count);
+                        fLength += count;
+                    }
+                }
+            }
+            else if (count == -1) {
+                store();
+            }
+            return count;
+        }
+        
+        public long skip(long n) throws IOException {
+            // Skipped bytes must be recorded too.
+            long skipped = 0;
+            final byte[] b = new byte[(int) Math.min(n, 512)];
+            while (skipped < n) {
+                final int count = read(b, 0, (int) Math.min(n - skipped, b.length));
+                if (count == -1) {
+                    break;
+                }
+                skipped += count;
+            }
+            return skipped;
+        }
+        
+        public int available() throws IOException {
+            return fInputStream.available();
+        }
+        
+        public void close() throws IOException {
+            fData = null;
+            fInputStream.close();
+        }
+        
+        /** 
+         * Makes room for <code>count</code> more bytes, giving up
+         * recording if the entity becomes too large to be cached. 
+         */
+        private void record(int count) {
+            final int length = fLength + count;
+            if (length > fMaxLength) {
+                fData = null;
+            }
+            else if (length > fData.length) {
+                final int newLength = (int) Math.min((long) fMaxLength, Math.max((long) fData.length << 1, length));
+                final byte[] newData = new byte[newLength];
+                System.arraycopy(fData, 0, newData, 0, fLength);
+                fData = newData;
+            }
+        }
+        
+        /** Stores the recorded entity in the cache. */
+        private void store() {
+            if (fData != null) {
+                byte[] content = fData;
+                if (fLength != content.length) {
+                    content = new byte[fLength];
+                    System.arraycopy(fData, 0, content, 0, fLength);
+                }
+                fData = null;
+                fCache.putEntity(fExpandedSystemId, fEncoding, content);
+            }
+        }
+    } // end of CachingInputStream class
+    
+    /**
+     * This class reads the decompressed bytes of a compressed entity. 
+     * If the compressed stream is truncated the error is reported as 
+     * an IOException rather than the EOFException of the decompressing 
+     * stream, which the scanners would take for the end of the entity.
+     *
+     * @xerces.internal
+     */
+    private static final class DecompressedInputStream extends InputStream {
+        
+        private final InputStream fInputStream;
+        
+        public DecompressedInputStream(InputStream is) {
+            fInputStream = is;
+        }
+        
+        public int read() throws IOException {
+            try {
+                return fInputStream.read();
+            }
+            catch (EOFException e) {
+                throw truncated(e);
+            }
+        }
+        
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                return fInputStream.read(b, off, len);
+            }
+            catch (EOFException e) {
+                throw truncated(e);
+            }
+        }
+        
+        public long skip(long n) throws IOException {
+            try {
+                return fInputStream.skip(n);
+            }
+            catch (EOFException e) {
+                throw truncated(e);
+            }
+        }
+        
+        public int available() throws IOException {
+            return fInputStream.available();
+        }
+        
+        public void close() throws IOException {
+            fInputStream.close();
+        }
+        
+        /** Returns the error reported for a truncated compressed stream. */
+        static IOException truncated(EOFException e) {
+            IOException exception = new IOException("The compressed entity is truncated.");
+            exception.initCause(e);
+            return exception;
+        }
+    } // end of DecompressedInputStream class
 
 } // class XMLEntityManager
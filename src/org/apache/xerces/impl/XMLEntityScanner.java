@@ -32,6 +32,10 @@ import org.apache.xerces.xni.XMLString;
 
 /**
  * Implements the entity scanner methods.
+ * <p>
+ * The line and column numbers of the current entity are updated as
+ * characters are scanned, in the same loops which scan them, so that the
+ * locator methods only read them back.
  *
  * @xerces.internal
  * 
@@ -1479,6 +1483,179 @@ public class XMLEntityScanner implements XMLLocator {
 
     } // skipString(String):boolean
 
+    /**
+     * Skips characters up to and including the next occurrence of the
+     * specified delimiter. The characters skipped are neither checked
+     * nor normalized, but the line and column numbers are kept up to
+     * date.
+     * <p>
+     * <strong>Note:</strong> The delimiter must not be a newline
+     * character.
+     *
+     * @param delimiter The character ending the characters to skip.
+     *
+     * @throws IOException  Thrown if i/o error occurs.
+     * @throws EOFException Thrown on end of file.
+     */
+    public void skipData(int delimiter) throws IOException {
+        if (DEBUG_BUFFER) {
+            System.out.print("(skipData, '"+(char)delimiter+"': ");
+            XMLEntityManager.print(fCurrentEntity);
+            System.out.println();
+        }
+
+        boolean cr = false;
+        while (true) {
+            // load more characters, if needed
+            if (fCurrentEntity.position == fCurrentEntity.count) {
+                load(0, true);
+            }
+
+            final char[] ch = fCurrentEntity.ch;
+            final int count = fCurrentEntity.count;
+            final boolean external = fCurrentEntity.isExternal();
+            int position = fCurrentEntity.position;
+            int lineNumber = fCurrentEntity.lineNumber;
+            int columnNumber = fCurrentEntity.columnNumber;
+            while (position < count) {
+                int c = ch[position++];
+                if (c == delimiter) {
+                    fCurrentEntity.position = position;
+                    fCurrentEntity.lineNumber = lineNumber;
+                    fCurrentEntity.columnNumber = columnNumber + 1;
+                    if (DEBUG_BUFFER) {
+                        System.out.print(")skipData, '"+(char)delimiter+"': ");
+                        XMLEntityManager.print(fCurrentEntity);
+                        System.out.println();
+                    }
+                    return;
+                }
+                if (c == '\n') {
+                    // a "\r\n" sequence is a single newline
+                    if (!cr) {
+                        lineNumber++;
+                    }
+                    columnNumber = 1;
+                    cr = false;
+                }
+                else if (c == '\r' && external) {
+                    lineNumber++;
+                    columnNumber = 1;
+                    cr = true;
+                }
+                else {
+                    columnNumber++;
+                    cr = false;
+                }
+            }
+            fCurrentEntity.position = position;
+            fCurrentEntity.lineNumber = lineNumber;
+            fCurrentEntity.columnNumber = columnNumber;
+        }
+
+    } // skipData(int)
+
+    /**
+     * Skips a start tag, empty-element tag or end tag whose leading
+     * '&lt;' or '&lt;/' has been consumed, up to and including the
+     * closing '>'. The characters of the name are appended to the
+     * specified buffer; the rest of the tag, including any quoted
+     * attribute values, is skipped. The characters are neither checked
+     * nor normalized, but the line and column numbers are kept up to
+     * date.
+     *
+     * @param name The buffer to append the name to.
+     *
+     * @return Returns true if the tag is an empty-element tag.
+     *
+     * @throws IOException  Thrown if i/o error occurs.
+     * @throws EOFException Thrown on end of file.
+     */
+    public boolean skipTag(XMLStringBuffer name) throws IOException {
+        if (DEBUG_BUFFER) {
+            System.out.print("(skipTag: ");
+            XMLEntityManager.print(fCurrentEntity);
+            System.out.println();
+        }
+
+        boolean inName = true;
+        boolean empty = false;
+        boolean cr = false;
+        int quote = 0;
+        while (true) {
+            // load more characters, if needed
+            if (fCurrentEntity.position == fCurrentEntity.count) {
+                load(0, true);
+            }
+
+            final char[] ch = fCurrentEntity.ch;
+            final int count = fCurrentEntity.count;
+            final boolean external = fCurrentEntity.isExternal();
+            int position = fCurrentEntity.position;
+            int lineNumber = fCurrentEntity.lineNumber;
+            int columnNumber = fCurrentEntity.columnNumber;
+            if (inName) {
+                final int offset = position;
+                while (position < count) {
+                    int c = ch[position];
+                    if (c == '>' || c == '/' || XMLChar.isSpace(c)) {
+                        inName = false;
+                        break;
+                    }
+                    position++;
+                }
+                name.append(ch, offset, position - offset);
+                columnNumber += position - offset;
+            }
+            while (position < count) {
+                int c = ch[position++];
+                if (c == '\n') {
+                    // a "\r\n" sequence is a single newline
+                    if (!cr) {
+                        lineNumber++;
+                    }
+                    columnNumber = 1;
+                    cr = false;
+                    continue;
+                }
+                if (c == '\r' && external) {
+                    lineNumber++;
+                    columnNumber = 1;
+                    cr = true;
+                    continue;
+                }
+                columnNumber++;
+                cr = false;
+                if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                    }
+                }
+                else if (c == '>') {
+                    fCurrentEntity.position = position;
+                    fCurrentEntity.lineNumber = lineNumber;
+                    fCurrentEntity.columnNumber = columnNumber;
+                    if (DEBUG_BUFFER) {
+                        System.out.print(")skipTag: ");
+                        XMLEntityManager.print(fCurrentEntity);
+                        System.out.println(" -> " + empty);
+                    }
+                    return empty;
+                }
+                else {
+                    empty = c == '/';
+                    if (c == '"' || c == '\'') {
+                        quote = c;
+                    }
+                }
+            }
+            fCurrentEntity.position = position;
+            fCurrentEntity.lineNumber = lineNumber;
+            fCurrentEntity.columnNumber = columnNumber;
+        }
+
+    } // skipTag(XMLStringBuffer):boolean
+
     //
     // Locator methods
     //
@@ -1743,7 +1920,6 @@ public class XMLEntityScanner implements XMLLocator {
             System.out.println();
         }
 
-        fCurrentEntity.baseCharOffset += (fCurrentEntity.position - fCurrentEntity.startPosition);
         // read characters
         int length = fCurrentEntity.ch.length - offset;
         if (!fCurrentEntity.mayReadChunks && length > XMLEntityManager.DEFAULT_XMLDECL_BUFFER_SIZE) {
@@ -1752,6 +1928,10 @@ public class XMLEntityScanner implements XMLLocator {
         if (DEBUG_BUFFER) System.out.println("  length to try to read: "+length);
         int count = fCurrentEntity.reader.read(fCurrentEntity.ch, offset, length);
         if (DEBUG_BUFFER) System.out.println("  length actually read:  "+count);
+        // NOTE: The offset is only updated once the read has returned. A
+        //       push parser suspends the scan by throwing from the read
+        //       and repeats the same load when more input arrives.
+        fCurrentEntity.baseCharOffset += (fCurrentEntity.position - fCurrentEntity.startPosition);
 
         // reset count and position
         boolean entityChanged = false;
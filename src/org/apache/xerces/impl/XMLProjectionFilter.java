@@ -0,0 +1,671 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl;
+
+import org.apache.xerces.impl.xpath.XPath;
+import org.apache.xerces.impl.xpath.XPathException;
+import org.apache.xerces.util.SymbolTable;
+import org.apache.xerces.xni.Augmentations;
+import org.apache.xerces.xni.NamespaceContext;
+import org.apache.xerces.xni.QName;
+import org.apache.xerces.xni.XMLAttributes;
+import org.apache.xerces.xni.XMLDocumentHandler;
+import org.apache.xerces.xni.XMLLocator;
+import org.apache.xerces.xni.XMLResourceIdentifier;
+import org.apache.xerces.xni.XMLString;
+import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.parser.XMLComponent;
+import org.apache.xerces.xni.parser.XMLComponentManager;
+import org.apache.xerces.xni.parser.XMLConfigurationException;
+import org.apache.xerces.xni.parser.XMLDocumentFilter;
+import org.apache.xerces.xni.parser.XMLDocumentSource;
+
+/**
+ * This class projects a document onto a set of paths, passing on only the
+ * parts of the document a consumer needs. The paths are given by the
+ * projection paths property, either as a string or as a compiled
+ * {@link XPath}, and use the grammar of the XPath subset for identity
+ * constraints. They are relative to the document, so that the first step
+ * of a path matches the document element, and a path may start with
+ * <code>.//</code> to match elements at any depth.
+ * <p>
+ * An element matched by a path is passed on with all of its content. An
+ * element matched by the leading steps of a path, or by the element steps
+ * of a path ending in an attribute step, is passed on with its attributes
+ * but without its own character data, comments and processing
+ * instructions. The document element is always passed on; everything
+ * else inside it is dropped. Elements matched by a <code>.//</code> path
+ * below dropped elements are passed on as children of the nearest element
+ * which was passed on, and namespace declarations on dropped elements
+ * aren't reported.
+ * <p>
+ * When no path can match below a dropped element and this filter receives
+ * its events directly from the document scanner, the scanner is asked to
+ * skip the content of the element without scanning it in detail.
+ * <p>
+ * This component requires the following features and properties from the
+ * component manager that uses it:
+ * <ul>
+ *  <li>http://apache.org/xml/properties/internal/symbol-table</li>
+ *  <li>http://apache.org/xml/properties/projection-paths</li>
+ * </ul>
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+public class XMLProjectionFilter
+    implements XMLComponent, XMLDocumentFilter {
+
+    //
+    // Constants
+    //
+
+    // property identifiers
+
+    /** Property identifier: symbol table. */
+    protected static final String SYMBOL_TABLE =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.SYMBOL_TABLE_PROPERTY;
+
+    /** Property identifier: projection paths. */
+    protected static final String PROJECTION_PATHS =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.PROJECTION_PATHS_PROPERTY;
+
+    // recognized features and properties
+
+    /** Recognized features. */
+    private static final String[] RECOGNIZED_FEATURES = {
+    };
+
+    /** Feature defaults. */
+    private static final Boolean[] FEATURE_DEFAULTS = {
+    };
+
+    /** Recognized properties. */
+    private static final String[] RECOGNIZED_PROPERTIES = {
+        SYMBOL_TABLE,
+        PROJECTION_PATHS,
+    };
+
+    /** Property defaults. */
+    private static final Object[] PROPERTY_DEFAULTS = {
+        null,
+        null,
+    };
+
+    /** Largest number of element steps in a path. */
+    private static final int MAX_STEPS = 63;
+
+    // states of an element
+
+    /** The element and its content are passed on. */
+    private static final int SELECTED = 0;
+
+    /** The element is passed on without its own content. */
+    private static final int KEPT = 1;
+
+    /** The element is dropped, but paths may match below it. */
+    private static final int DROPPED = 2;
+
+    /** The element and its content are dropped. */
+    private static final int SKIPPED = 3;
+
+    //
+    // Data
+    //
+
+    // properties
+
+    /** Symbol table. */
+    protected SymbolTable fSymbolTable;
+
+    // handlers
+
+    /** Document handler. */
+    protected XMLDocumentHandler fDocumentHandler;
+
+    /** Document source. */
+    protected XMLDocumentSource fDocumentSource;
+
+    // paths
+
+    /** The value of the projection paths property the paths were compiled from. */
+    private Object fProjection;
+
+    /** The node tests of the element steps of each path. */
+    private XPath.NodeTest[][] fSteps = new XPath.NodeTest[0][];
+
+    /** True for the paths which start with a descendant step. */
+    private boolean[] fDescendant = new boolean[0];
+
+    /** True for the paths which end with an attribute step. */
+    private boolean[] fAttribute = new boolean[0];
+
+    /** True if a path selects the whole document. */
+    private boolean fSelectAll;
+
+    // state
+
+    /** Current element depth. */
+    private int fDepth;
+
+    /** Depth of the selected element being passed on, or zero. */
+    private int fSelectedDepth;
+
+    /** Depth of the element whose content is being dropped, or zero. */
+    private int fSkippedDepth;
+
+    /**
+     * For each element depth and path, the steps of the path matched by
+     * the element and its ancestors, as a bit set: bit <em>i</em> is set
+     * if the first <em>i</em> steps of the path match the element.
+     */
+    private long[] fMatches = new long[16];
+
+    /** True for the element depths whose elements were passed on. */
+    private boolean[] fPassed = new boolean[8];
+
+    //
+    // Constructors
+    //
+
+    /** Default constructor. */
+    public XMLProjectionFilter() {
+    } // <init>()
+
+    //
+    // XMLComponent methods
+    //
+
+    /**
+     * Resets the component. The component can query the component manager
+     * about any features and properties that affect the operation of the
+     * component.
+     *
+     * @param componentManager The component manager.
+     *
+     * @throws XNIException Thrown by component on initialization error.
+     */
+    public void reset(XMLComponentManager componentManager)
+        throws XNIException {
+
+        // Xerces properties
+        fSymbolTable = (SymbolTable)componentManager.getProperty(SYMBOL_TABLE);
+        Object projection;
+        try {
+            projection = componentManager.getProperty(PROJECTION_PATHS);
+        }
+        catch (XMLConfigurationException e) {
+            projection = null;
+        }
+        setProjection(projection);
+
+        // initialize state
+        fDepth = 0;
+        fSelectedDepth = 0;
+        fSkippedDepth = 0;
+
+    } // reset(XMLComponentManager)
+
+    /**
+     * Returns a list of feature identifiers that are recognized by
+     * this component. This method may return null if no features
+     * are recognized by this component.
+     */
+    public String[] getRecognizedFeatures() {
+        return (String[])(RECOGNIZED_FEATURES.clone());
+    } // getRecognizedFeatures():String[]
+
+    /**
+     * Sets the state of a feature. This method is called by the component
+     * manager any time after reset when a feature changes state.
+     *
+     * @param featureId The feature identifier.
+     * @param state     The state of the feature.
+     */
+    public void setFeature(String featureId, boolean state)
+        throws XMLConfigurationException {
+    } // setFeature(String,boolean)
+
+    /**
+     * Returns a list of property identifiers that are recognized by
+     * this component. This method may return null if no properties
+     * are recognized by this component.
+     */
+    public String[] getRecognizedProperties() {
+        return (String[])(RECOGNIZED_PROPERTIES.clone());
+    } // getRecognizedProperties():String[]
+
+    /**
+     * Sets the value of a property. The projection paths must be a
+     * string or an {@link XPath}.
+     *
+     * @param propertyId The property identifier.
+     * @param value      The value of the property.
+     *
+     * @throws XMLConfigurationException Thrown if the projection paths
+     *                                   aren't valid.
+     */
+    public void setProperty(String propertyId, Object value)
+        throws XMLConfigurationException {
+
+        // Xerces properties
+        if (propertyId.startsWith(Constants.XERCES_PROPERTY_PREFIX)) {
+            final int suffixLength = propertyId.length() - Constants.XERCES_PROPERTY_PREFIX.length();
+
+            if (suffixLength == Constants.SYMBOL_TABLE_PROPERTY.length() &&
+                propertyId.endsWith(Constants.SYMBOL_TABLE_PROPERTY)) {
+                fSymbolTable = (SymbolTable)value;
+            }
+            else if (suffixLength == Constants.PROJECTION_PATHS_PROPERTY.length() &&
+                propertyId.endsWith(Constants.PROJECTION_PATHS_PROPERTY)) {
+                setProjection(value);
+            }
+        }
+
+    } // setProperty(String,Object)
+
+    /**
+     * Returns the default state for a feature, or null if this
+     * component does not want to report a default value for this
+     * feature.
+     *
+     * @param featureId The feature identifier.
+     */
+    public Boolean getFeatureDefault(String featureId) {
+        for (int i = 0; i < RECOGNIZED_FEATURES.length; i++) {
+            if (RECOGNIZED_FEATURES[i].equals(featureId)) {
+                return FEATURE_DEFAULTS[i];
+            }
+        }
+        return null;
+    } // getFeatureDefault(String):Boolean
+
+    /**
+     * Returns the default state for a property, or null if this
+     * component does not want to report a default value for this
+     * property.
+     *
+     * @param propertyId The property identifier.
+     */
+    public Object getPropertyDefault(String propertyId) {
+        for (int i = 0; i < RECOGNIZED_PROPERTIES.length; i++) {
+            if (RECOGNIZED_PROPERTIES[i].equals(propertyId)) {
+                return PROPERTY_DEFAULTS[i];
+            }
+        }
+        return null;
+    } // getPropertyDefault(String):Object
+
+    //
+    // XMLDocumentSource methods
+    //
+
+    /** Sets the document handler to receive information about the document. */
+    public void setDocumentHandler(XMLDocumentHandler documentHandler) {
+        fDocumentHandler = documentHandler;
+    } // setDocumentHandler(XMLDocumentHandler)
+
+    /** Returns the document handler */
+    public XMLDocumentHandler getDocumentHandler() {
+        return fDocumentHandler;
+    } // getDocumentHandler():XMLDocumentHandler
+
+    //
+    // XMLDocumentHandler methods
+    //
+
+    /** Sets the document source */
+    public void setDocumentSource(XMLDocumentSource source) {
+        fDocumentSource = source;
+    } // setDocumentSource(XMLDocumentSource)
+
+    /** Returns the document source */
+    public XMLDocumentSource getDocumentSource() {
+        return fDocumentSource;
+    } // getDocumentSource():XMLDocumentSource
+
+    /**
+     * The start of the document.
+     *
+     * @param locator  The document locator, or null if the document
+     *                 location cannot be reported during the parsing
+     *                 of this document.
+     * @param encoding The auto-detected IANA encoding name of the entity
+     *                 stream.
+     * @param namespaceContext
+     *                 The namespace context in effect at the
+     *                 start of this document.
+     * @param augs     Additional information that may include infoset augmentations
+     *
+     * @throws XNIException Thrown by handler to signal an error.
+     */
+    public void startDocument(XMLLocator locator, String encoding,
+                              NamespaceContext namespaceContext, Augmentations augs)
+        throws XNIException {
+        fDepth = 0;
+        fSelectedDepth = 0;
+        fSkippedDepth = 0;
+        for (int i = 0; i < fSteps.length; i++) {
+            fMatches[i] = 1L;
+        }
+        if (fDocumentHandler != null) {
+            fDocumentHandler.startDocument(locator, encoding, namespaceContext, augs);
+        }
+    } // startDocument(XMLLocator,String,NamespaceContext,Augmentations)
+
+    /** Notifies of the presence of an XMLDecl line in the document. */
+    public void xmlDecl(String version, String encoding, String standalone, Augmentations augs)
+        throws XNIException {
+        if (fDocumentHandler != null) {
+            fDocumentHandler.xmlDecl(version, encoding, standalone, augs);
+        }
+    } // xmlDecl(String,String,String,Augmentations)
+
+    /** Notifies of the presence of the DOCTYPE line in the document. */
+    public void doctypeDecl(String rootElement, String publicId, String systemId, Augmentations augs)
+        throws XNIException {
+        if (fDocumentHandler != null) {
+            fDocumentHandler.doctypeDecl(rootElement, publicId, systemId, augs);
+        }
+    } // doctypeDecl(String,String,String,Augmentations)
+
+    /** A comment. */
+    public void comment(XMLString text, Augmentations augs) throws XNIException {
+        if (fDocumentHandler != null && isPassingContent()) {
+            fDocumentHandler.comment(text, augs);
+        }
+    } // comment(XMLString,Augmentations)
+
+    /** A processing instruction. */
+    public void processingInstruction(String target, XMLString data, Augmentations augs)
+        throws XNIException {
+        if (fDocumentHandler != null && isPassingContent()) {
+            fDocumentHandler.processingInstruction(target, data, augs);
+        }
+    } // processingInstruction(String,XMLString,Augmentations)
+
+    /** The start of an element. */
+    public void startElement(QName element, XMLAttributes attributes, Augmentations augs)
+        throws XNIException {
+        int depth = ++fDepth;
+        if (fSelectedDepth != 0) {
+            if (fDocumentHandler != null) {
+                fDocumentHandler.startElement(element, attributes, augs);
+            }
+            return;
+        }
+        if (fSkippedDepth != 0) {
+            return;
+        }
+        int state = matchElement(element, depth);
+        if (depth == fPassed.length) {
+            boolean[] passed = new boolean[depth * 2];
+            System.arraycopy(fPassed, 0, passed, 0, depth);
+            fPassed = passed;
+        }
+        // the document element is always passed on
+        fPassed[depth] = state == SELECTED || state == KEPT || depth == 1;
+        if (state == SELECTED) {
+            fSelectedDepth = depth;
+        }
+        else if (state == SKIPPED) {
+            fSkippedDepth = depth;
+            if (fDocumentSource instanceof XMLDocumentFragmentScannerImpl) {
+                ((XMLDocumentFragmentScannerImpl)fDocumentSource).skipElementContent();
+            }
+        }
+        if (fDocumentHandler != null && fPassed[depth]) {
+            fDocumentHandler.startElement(element, attributes, augs);
+        }
+    } // startElement(QName,XMLAttributes,Augmentations)
+
+    /** An empty element. */
+    public void emptyElement(QName element, XMLAttributes attributes, Augmentations augs)
+        throws XNIException {
+        if (fSkippedDepth != 0) {
+            return;
+        }
+        if (fSelectedDepth == 0 && fDepth != 0) {
+            int state = matchElement(element, fDepth + 1);
+            if (state != SELECTED && state != KEPT) {
+                return;
+            }
+        }
+        if (fDocumentHandler != null) {
+            fDocumentHandler.emptyElement(element, attributes, augs);
+        }
+    } // emptyElement(QName,XMLAttributes,Augmentations)
+
+    /** Character content. */
+    public void characters(XMLString text, Augmentations augs) throws XNIException {
+        if (fDocumentHandler != null && isPassingContent()) {
+            fDocumentHandler.characters(text, augs);
+        }
+    } // characters(XMLString,Augmentations)
+
+    /** Ignorable whitespace. */
+    public void ignorableWhitespace(XMLString text, Augmentations augs) throws XNIException {
+        if (fDocumentHandler != null && isPassingContent()) {
+            fDocumentHandler.ignorableWhitespace(text, augs);
+        }
+    } // ignorableWhitespace(XMLString,Augmentations)
+
+    /** The end of an element. */
+    public void endElement(QName element, Augmentations augs) throws XNIException {
+        int depth = fDepth--;
+        if (fSelectedDepth != 0) {
+            if (depth == fSelectedDepth) {
+                fSelectedDepth = 0;
+            }
+        }
+        else if (fSkippedDepth != 0) {
+            if (depth != fSkippedDepth) {
+                return;
+            }
+            fSkippedDepth = 0;
+            if (!fPassed[depth]) {
+                return;
+            }
+        }
+        else if (!fPassed[depth]) {
+            return;
+        }
+        if (fDocumentHandler != null) {
+            fDocumentHandler.endElement(element, augs);
+        }
+    } // endElement(QName,Augmentations)
+
+    /** The start of a CDATA section. */
+    public void startCDATA(Augmentations augs) throws XNIException {
+        if (fDocumentHandler != null && isPassingContent()) {
+            fDocumentHandler.startCDATA(augs);
+        }
+    } // startCDATA(Augmentations)
+
+    /** The end of a CDATA section. */
+    public void endCDATA(Augmentations augs) throws XNIException {
+        if (fDocumentHandler != null && isPassingContent()) {
+            fDocumentHandler.endCDATA(augs);
+        }
+    } // endCDATA(Augmentations)
+
+    /** The start of a general entity. */
+    public void startGeneralEntity(String name, XMLResourceIdentifier identifier,
+                                   String encoding, Augmentations augs)
+        throws XNIException {
+        if (fDocumentHandler != null && isPassingContent()) {
+            fDocumentHandler.startGeneralEntity(name, identifier, encoding, augs);
+        }
+    } // startGeneralEntity(String,XMLResourceIdentifier,String,Augmentations)
+
+    /** Notifies of the presence of a TextDecl line in an entity. */
+    public void textDecl(String version, String encoding, Augmentations augs)
+        throws XNIException {
+        if (fDocumentHandler != null && isPassingContent()) {
+            fDocumentHandler.textDecl(version, encoding, augs);
+        }
+    } // textDecl(String,String,Augmentations)
+
+    /** The end of a general entity. */
+    public void endGeneralEntity(String name, Augmentations augs) throws XNIException {
+        if (fDocumentHandler != null && isPassingContent()) {
+            fDocumentHandler.endGeneralEntity(name, augs);
+        }
+    } // endGeneralEntity(String,Augmentations)
+
+    /** The end of the document. */
+    public void endDocument(Augmentations augs) throws XNIException {
+        if (fDocumentHandler != null) {
+            fDocumentHandler.endDocument(augs);
+        }
+    } // endDocument(Augmentations)
+
+    //
+    // Private methods
+    //
+
+    /**
+     * Returns true if content at the current depth is passed on: content
+     * outside the document element and content of selected elements.
+     */
+    private boolean isPassingContent() {
+        return fSelectedDepth != 0 || fDepth == 0 || fSelectAll;
+    } // isPassingContent():boolean
+
+    /**
+     * Matches an element at the given depth against the paths, recording
+     * the steps it matches, and returns the state of the element.
+     */
+    private int matchElement(QName element, int depth) {
+        final int count = fSteps.length;
+        final int base = depth * count;
+        if (base + count > fMatches.length) {
+            long[] matches = new long[Math.max(fMatches.length * 2, base + count)];
+            System.arraycopy(fMatches, 0, matches, 0, fMatches.length);
+            fMatches = matches;
+        }
+        int state = fSelectAll ? SELECTED : SKIPPED;
+        for (int i = 0; i < count; i++) {
+            final XPath.NodeTest[] steps = fSteps[i];
+            long parent = fMatches[base - count + i];
+            long matches = fDescendant[i] ? 1L : 0L;
+            for (int step = 0; parent != 0 && step < steps.length; step++, parent >>>= 1) {
+                if ((parent & 1L) != 0 && matches(steps[step], element)) {
+                    matches |= 1L << (step + 1);
+                }
+            }
+            fMatches[base + i] = matches;
+            if ((matches >>> steps.length) != 0) {
+                // matched all the element steps
+                if (!fAttribute[i]) {
+                    state = SELECTED;
+                }
+                else if (state != SELECTED) {
+                    state = KEPT;
+                }
+            }
+            else if ((matches & ~1L) != 0) {
+                // matched some leading steps
+                if (state != SELECTED) {
+                    state = KEPT;
+                }
+            }
+            else if (matches != 0 && state == SKIPPED) {
+                state = DROPPED;
+            }
+        }
+        return state;
+    } // matchElement(QName,int):int
+
+    /** Returns true if the node test matches the element. */
+    private static boolean matches(XPath.NodeTest nodeTest, QName element) {
+        if (nodeTest.type == XPath.NodeTest.QNAME) {
+            return nodeTest.name.equals(element);
+        }
+        if (nodeTest.type == XPath.NodeTest.NAMESPACE) {
+            return nodeTest.name.uri == element.uri;
+        }
+        // XPath.NodeTest.WILDCARD
+        return true;
+    } // matches(XPath.NodeTest,QName):boolean
+
+    /** Compiles the projection paths. */
+    private void setProjection(Object projection) throws XMLConfigurationException {
+        if (projection == fProjection) {
+            return;
+        }
+        XPath xpath = null;
+        if (projection instanceof XPath) {
+            xpath = (XPath)projection;
+        }
+        else if (projection instanceof String) {
+            try {
+                xpath = new XPath((String)projection,
+                        fSymbolTable != null ? fSymbolTable : new SymbolTable(), null);
+            }
+            catch (XPathException e) {
+                throw new XMLConfigurationException(XMLConfigurationException.NOT_SUPPORTED, PROJECTION_PATHS);
+            }
+        }
+        else if (projection != null) {
+            throw new XMLConfigurationException(XMLConfigurationException.NOT_SUPPORTED, PROJECTION_PATHS);
+        }
+        XPath.LocationPath[] paths = xpath != null ? xpath.getLocationPaths() : new XPath.LocationPath[0];
+        XPath.NodeTest[][] elementSteps = new XPath.NodeTest[paths.length][];
+        boolean[] descendant = new boolean[paths.length];
+        boolean[] attribute = new boolean[paths.length];
+        boolean selectAll = false;
+        for (int i = 0; i < paths.length; i++) {
+            XPath.Step[] steps = paths[i].steps;
+            int first = 0;
+            int last = steps.length;
+            while (first < last && steps[first].axis.type == XPath.Axis.SELF) {
+                first++;
+            }
+            if (first < last && steps[first].axis.type == XPath.Axis.DESCENDANT) {
+                descendant[i] = true;
+                first++;
+            }
+            if (first < last && steps[last - 1].axis.type == XPath.Axis.ATTRIBUTE) {
+                attribute[i] = true;
+                last--;
+            }
+            if (last - first > MAX_STEPS) {
+                throw new XMLConfigurationException(XMLConfigurationException.NOT_SUPPORTED, PROJECTION_PATHS);
+            }
+            elementSteps[i] = new XPath.NodeTest[last - first];
+            for (int step = first; step < last; step++) {
+                elementSteps[i][step - first] = steps[step].nodeTest;
+            }
+            // a path which selects the document selects everything
+            if (last == first && !descendant[i] && !attribute[i]) {
+                selectAll = true;
+            }
+        }
+        if (fMatches.length < paths.length * 2) {
+            fMatches = new long[paths.length * 8];
+        }
+        fSteps = elementSteps;
+        fDescendant = descendant;
+        fAttribute = attribute;
+        fSelectAll = selectAll;
+        fProjection = projection;
+    } // setProjection(Object)
+
+} // class XMLProjectionFilter
@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.binary;
+
+import org.apache.xerces.impl.dv.ValidatedInfo;
+import org.apache.xerces.impl.xs.ElementPSVImpl;
+import org.apache.xerces.xs.XSTypeDefinition;
+
+/**
+ * Element PSVI read from a binary event stream.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+final class BinaryElementPSVI extends ElementPSVImpl {
+
+    /** Sets the properties recorded in the stream. */
+    void setValues(short validity, short validationAttempted, boolean nil,
+                   boolean specified, XSTypeDefinition type) {
+        reset();
+        fValidity = validity;
+        fValidationAttempted = validationAttempted;
+        fNil = nil;
+        fSpecified = specified;
+        fTypeDecl = type;
+    } // setValues(short,short,boolean,boolean,XSTypeDefinition)
+
+    /** Returns the schema value, to be filled in by the reader. */
+    ValidatedInfo getValidatedInfo() {
+        return fValue;
+    } // getValidatedInfo():ValidatedInfo
+
+} // class BinaryElementPSVI
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.binary;
+
+/**
+ * Constants of the binary XNI event format written by
+ * {@link BinaryEventWriter} and read by {@link BinaryEventReader}.
+ * <p>
+ * A document starts with a header: the four bytes of {@link #MAGIC}, the
+ * format version and a byte of header flags. It is followed by events, each
+ * of which is an event code and its arguments, up to and including the end
+ * of the document.
+ * <p>
+ * Arguments are encoded as follows:
+ * <ul>
+ *  <li>Numbers are unsigned variable length integers, seven bits per byte,
+ *      least significant bits first, with the high bit set on all bytes
+ *      but the last.</li>
+ *  <li>Strings which may repeat, such as names, namespace names and
+ *      identifiers, are indexes into a table of the strings seen so far in
+ *      the document: 0 is null, the index of an entry refers to it, and the
+ *      next free index adds a new entry whose characters follow as text.</li>
+ *  <li>Text is the number of characters followed by the characters in
+ *      UTF-8; surrogates are encoded separately, in three bytes each.</li>
+ *  <li>A qualified name is the prefix, local part, raw name and namespace
+ *      name as strings.</li>
+ * </ul>
+ * The arguments of the events are:
+ * <ul>
+ *  <li>start document: the encoding, the public identifier, the literal,
+ *      base and expanded system identifiers, and the XML version;</li>
+ *  <li>XML declaration and text declaration: the version, encoding and,
+ *      for the XML declaration, standalone strings;</li>
+ *  <li>doctype declaration: the root element, public identifier and system
+ *      identifier;</li>
+ *  <li>comment, characters and ignorable whitespace: the text;</li>
+ *  <li>processing instruction: the target as a string and the data as
+ *      text;</li>
+ *  <li>start element and empty element: the number of namespace
+ *      declarations, each as a prefix and a namespace name, the element
+ *      name, the number of attributes, each as a name, a type, the value as
+ *      text and a byte of attribute flags, followed by the non-normalized
+ *      value as text if it differs from the value and by the PSVI if
+ *      recorded, and for an empty element its PSVI if recorded;</li>
+ *  <li>end element: the PSVI of the element, if recorded; the element name
+ *      is the name of the matching start element;</li>
+ *  <li>start general entity: the name, public identifier, the literal,
+ *      base and expanded system identifiers, and the encoding;</li>
+ *  <li>end general entity: the name.</li>
+ * </ul>
+ * The PSVI of an element or attribute is a byte of PSVI flags. If it isn't
+ * zero, it is followed by the namespace name and name of the type
+ * definition, and if the item has a value, by the schema normalized value as
+ * text, the actual value type and the name of the built-in type from which
+ * the actual value can be built.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+final class BinaryEventFormat {
+
+    //
+    // Constants
+    //
+
+    /** The bytes which start a document. */
+    public static final byte[] MAGIC = { 'X', 'N', 'I', 'B' };
+
+    /** The version of the format. */
+    public static final int VERSION = 1;
+
+    // header flags
+
+    /** Header flag: element and attribute PSVI are recorded. */
+    public static final int HEADER_PSVI = 0x01;
+
+    // events
+
+    public static final int START_DOCUMENT = 1;
+    public static final int XML_DECL = 2;
+    public static final int DOCTYPE_DECL = 3;
+    public static final int COMMENT = 4;
+    public static final int PROCESSING_INSTRUCTION = 5;
+    public static final int START_ELEMENT = 6;
+    public static final int EMPTY_ELEMENT = 7;
+    public static final int START_GENERAL_ENTITY = 8;
+    public static final int TEXT_DECL = 9;
+    public static final int END_GENERAL_ENTITY = 10;
+    public static final int CHARACTERS = 11;
+    public static final int IGNORABLE_WHITESPACE = 12;
+    public static final int END_ELEMENT = 13;
+    public static final int START_CDATA = 14;
+    public static final int END_CDATA = 15;
+    public static final int END_DOCUMENT = 16;
+
+    // attribute flags
+
+    /** Attribute flag: the attribute was specified. */
+    public static final int ATTRIBUTE_SPECIFIED = 0x01;
+
+    /** Attribute flag: the non-normalized value differs from the value. */
+    public static final int ATTRIBUTE_NON_NORMALIZED = 0x02;
+
+    // PSVI flags
+
+    /** PSVI flag: the item has a PSVI. */
+    public static final int PSVI_PRESENT = 0x01;
+
+    /** PSVI flags: the shift of the validity. */
+    public static final int PSVI_VALIDITY_SHIFT = 1;
+
+    /** PSVI flags: the shift of the validation attempted. */
+    public static final int PSVI_ATTEMPTED_SHIFT = 3;
+
+    /** PSVI flag: the element is nil. */
+    public static final int PSVI_NIL = 0x20;
+
+    /** PSVI flag: the value was provided by the schema. */
+    public static final int PSVI_SPECIFIED = 0x40;
+
+    /** PSVI flag: the item has a value. */
+    public static final int PSVI_VALUE = 0x80;
+
+    //
+    // Constructors
+    //
+
+    /** This class can't be instantiated. */
+    private BinaryEventFormat() {}
+
+} // class BinaryEventFormat
@@ -0,0 +1,737 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.binary;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.xerces.impl.Constants;
+import org.apache.xerces.impl.dv.InvalidDatatypeValueException;
+import org.apache.xerces.impl.dv.ValidatedInfo;
+import org.apache.xerces.impl.dv.XSSimpleType;
+import org.apache.xerces.impl.validation.ValidationState;
+import org.apache.xerces.impl.xs.SchemaGrammar;
+import org.apache.xerces.impl.xs.SchemaSymbols;
+import org.apache.xerces.impl.xs.XSDDescription;
+import org.apache.xerces.util.AugmentationsImpl;
+import org.apache.xerces.util.NamespaceSupport;
+import org.apache.xerces.util.SymbolTable;
+import org.apache.xerces.util.XMLAttributesImpl;
+import org.apache.xerces.util.XMLResourceIdentifierImpl;
+import org.apache.xerces.util.XMLSymbols;
+import org.apache.xerces.xni.Augmentations;
+import org.apache.xerces.xni.QName;
+import org.apache.xerces.xni.XMLDTDHandler;
+import org.apache.xerces.xni.XMLDocumentHandler;
+import org.apache.xerces.xni.XMLString;
+import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.grammars.XMLGrammarPool;
+import org.apache.xerces.xni.parser.XMLComponent;
+import org.apache.xerces.xni.parser.XMLComponentManager;
+import org.apache.xerces.xni.parser.XMLConfigurationException;
+import org.apache.xerces.xni.parser.XMLDTDSource;
+import org.apache.xerces.xni.parser.XMLDocumentSource;
+import org.apache.xerces.xs.XSComplexTypeDefinition;
+import org.apache.xerces.xs.XSTypeDefinition;
+
+/**
+ * This class reads a document written by {@link BinaryEventWriter} and
+ * passes its events on to the document handler. Names, namespace names
+ * and other strings from the string table are added to the symbol table
+ * once each; text is decoded straight into a character buffer.
+ * <p>
+ * DTDs aren't recorded. If the document has a document type declaration,
+ * an empty DTD is reported to the DTD handler after it.
+ * <p>
+ * The namespace context passed to the document handler holds the
+ * recorded namespace declarations. The locator returns the identifiers of
+ * the original document; line and column numbers aren't recorded.
+ * <p>
+ * Recorded PSVI are passed on in the augmentations. Type definitions are
+ * looked up by name in the grammar pool, if one is set, and built-in types
+ * are always found. The actual value of an item is rebuilt from its schema
+ * normalized value and its type, or the built-in type the type was derived
+ * from if the type can't be found, so the values of list and union types
+ * which are anonymous or can't be found are only available as their
+ * normalized values. Anonymous types, element and attribute declarations
+ * and error codes aren't recorded.
+ * <p>
+ * This component requires the following features and properties from the
+ * component manager that uses it:
+ * <ul>
+ *  <li>http://apache.org/xml/properties/internal/symbol-table</li>
+ * </ul>
+ * This component can use the following features and properties but they
+ * are not required:
+ * <ul>
+ *  <li>http://apache.org/xml/properties/internal/grammar-pool</li>
+ * </ul>
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+public class BinaryEventReader
+    implements XMLComponent, XMLDocumentSource, XMLDTDSource {
+
+    //
+    // Constants
+    //
+
+    // property identifiers
+
+    /** Property identifier: symbol table. */
+    protected static final String SYMBOL_TABLE =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.SYMBOL_TABLE_PROPERTY;
+
+    /** Property identifier: grammar pool. */
+    protected static final String XMLGRAMMAR_POOL =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.XMLGRAMMAR_POOL_PROPERTY;
+
+    // recognized features and properties
+
+    /** Recognized features. */
+    private static final String[] RECOGNIZED_FEATURES = {
+    };
+
+    /** Feature defaults. */
+    private static final Boolean[] FEATURE_DEFAULTS = {
+    };
+
+    /** Recognized properties. */
+    private static final String[] RECOGNIZED_PROPERTIES = {
+        SYMBOL_TABLE,
+        XMLGRAMMAR_POOL,
+    };
+
+    /** Property defaults. */
+    private static final Object[] PROPERTY_DEFAULTS = {
+        null,
+        null,
+    };
+
+    //
+    // Data
+    //
+
+    // properties
+
+    /** Symbol table. */
+    protected SymbolTable fSymbolTable;
+
+    /** Grammar pool. */
+    protected XMLGrammarPool fGrammarPool;
+
+    // handlers
+
+    /** The document handler. */
+    protected XMLDocumentHandler fDocumentHandler;
+
+    /** The DTD handler. */
+    protected XMLDTDHandler fDTDHandler;
+
+    // input
+
+    /** The input. */
+    private final BinaryInput fInput = new BinaryInput();
+
+    // state
+
+    /** True if the document has PSVI. */
+    private boolean fPSVI;
+
+    /** The names of the open elements. */
+    private QName[] fElements = new QName[16];
+
+    /** The number of open elements. */
+    private int fDepth;
+
+    /** Namespace context. */
+    private final NamespaceSupport fNamespaceContext = new NamespaceSupport();
+
+    /** Locator. */
+    private final RecordedLocator fLocator = new RecordedLocator();
+
+    /** Attributes. */
+    private final XMLAttributesImpl fAttributes = new XMLAttributesImpl();
+
+    /** Augmentations. */
+    private final AugmentationsImpl fAugmentations = new AugmentationsImpl();
+
+    /** Resource identifier. */
+    private final XMLResourceIdentifierImpl fResourceIdentifier = new XMLResourceIdentifierImpl();
+
+    /** Element PSVI. */
+    private final BinaryElementPSVI fElementPSVI = new BinaryElementPSVI();
+
+    /** Attribute PSVI, by attribute index. */
+    private BinaryAttributePSVI[] fAttributePSVI = new BinaryAttributePSVI[4];
+
+    /** Validation state used to rebuild actual values. */
+    private final ValidationState fValidationState = new ValidationState();
+
+    /** Schema grammar description. */
+    private final XSDDescription fXSDDescription = new XSDDescription();
+
+    // temporary buffers
+
+    /** Qualified name. */
+    private final QName fElementName = new QName();
+
+    /** Qualified name. */
+    private final QName fAttributeName = new QName();
+
+    //
+    // Constructors
+    //
+
+    /** Default constructor. */
+    public BinaryEventReader() {
+        fValidationState.setExtraChecking(false);
+        fValidationState.setFacetChecking(false);
+        fValidationState.setNamespaceSupport(fNamespaceContext);
+        fXSDDescription.setContextType(XSDDescription.CONTEXT_ELEMENT);
+    } // <init>()
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Reads a document from the given stream, passing its events on to the
+     * document handler. The stream is read up to the end of the document
+     * and may be read past it; it isn't closed.
+     *
+     * @param inputStream The stream.
+     *
+     * @throws IOException Thrown if the stream can't be read or doesn't
+     *                     hold a document in the binary format.
+     * @throws XNIException Thrown by the document handler.
+     */
+    public void parse(InputStream inputStream) throws IOException, XNIException {
+        fDepth = 0;
+        fNamespaceContext.reset();
+        if (fSymbolTable == null) {
+            fSymbolTable = new SymbolTable();
+        }
+        fValidationState.setSymbolTable(fSymbolTable);
+        fInput.reset(inputStream, fSymbolTable);
+        try {
+            readHeader();
+            readEvents();
+        }
+        finally {
+            fInput.clear();
+        }
+    } // parse(InputStream)
+
+    //
+    // XMLComponent methods
+    //
+
+    /**
+     * Resets the component. The component can query the component manager
+     * about any features and properties that affect the operation of the
+     * component.
+     *
+     * @param componentManager The component manager.
+     *
+     * @throws XNIException Thrown by component on initialization error.
+     */
+    public void reset(XMLComponentManager componentManager)
+        throws XNIException {
+        fSymbolTable = (SymbolTable)componentManager.getProperty(SYMBOL_TABLE);
+        try {
+            fGrammarPool = (XMLGrammarPool)componentManager.getProperty(XMLGRAMMAR_POOL);
+        }
+        catch (XMLConfigurationException e) {
+            fGrammarPool = null;
+        }
+    } // reset(XMLComponentManager)
+
+    /**
+     * Returns a list of feature identifiers that are recognized by
+     * this component. This method may return null if no features
+     * are recognized by this component.
+     */
+    public String[] getRecognizedFeatures() {
+        return (String[])(RECOGNIZED_FEATURES.clone());
+    } // getRecognizedFeatures():String[]
+
+    /**
+     * Sets the state of a feature. This method is called by the component
+     * manager any time after reset when a feature changes state.
+     *
+     * @param featureId The feature identifier.
+     * @param state     The state of the feature.
+     */
+    public void setFeature(String featureId, boolean state)
+        throws XMLConfigurationException {
+    } // setFeature(String,boolean)
+
+    /**
+     * Returns a list of property identifiers that are recognized by
+     * this component. This method may return null if no properties
+     * are recognized by this component.
+     */
+    public String[] getRecognizedProperties() {
+        return (String[])(RECOGNIZED_PROPERTIES.clone());
+    } // getRecognizedProperties():String[]
+
+    /**
+     * Sets the value of a property. This method is called by the component
+     * manager any time after reset when a property changes value.
+     *
+     * @param propertyId The property identifier.
+     * @param value      The value of the property.
+     */
+    public void setProperty(String propertyId, Object value)
+        throws XMLConfigurationException {
+
+        // Xerces properties
+        if (propertyId.startsWith(Constants.XERCES_PROPERTY_PREFIX)) {
+            final int suffixLength = propertyId.length() - Constants.XERCES_PROPERTY_PREFIX.length();
+
+            if (suffixLength == Constants.SYMBOL_TABLE_PROPERTY.length() &&
+                propertyId.endsWith(Constants.SYMBOL_TABLE_PROPERTY)) {
+                fSymbolTable = (SymbolTable)value;
+            }
+            else if (suffixLength == Constants.XMLGRAMMAR_POOL_PROPERTY.length() &&
+                propertyId.endsWith(Constants.XMLGRAMMAR_POOL_PROPERTY)) {
+                fGrammarPool = (XMLGrammarPool)value;
+            }
+        }
+
+    } // setProperty(String,Object)
+
+    /**
+     * Returns the default state for a feature, or null if this
+     * component does not want to report a default value for this
+     * feature.
+     *
+     * @param featureId The feature identifier.
+     */
+    public Boolean getFeatureDefault(String featureId) {
+        for (int i = 0; i < RECOGNIZED_FEATURES.length; i++) {
+            if (RECOGNIZED_FEATURES[i].equals(featureId)) {
+                return FEATURE_DEFAULTS[i];
+            }
+        }
+        return null;
+    } // getFeatureDefault(String):Boolean
+
+    /**
+     * Returns the default state for a property, or null if this
+     * component does not want to report a default value for this
+     * property.
+     *
+     * @param propertyId The property identifier.
+     */
+    public Object getPropertyDefault(String propertyId) {
+        for (int i = 0; i < RECOGNIZED_PROPERTIES.length; i++) {
+            if (RECOGNIZED_PROPERTIES[i].equals(propertyId)) {
+                return PROPERTY_DEFAULTS[i];
+            }
+        }
+        return null;
+    } // getPropertyDefault(String):Object
+
+    //
+    // XMLDocumentSource methods
+    //
+
+    /** Sets the document handler. */
+    public void setDocumentHandler(XMLDocumentHandler documentHandler) {
+        fDocumentHandler = documentHandler;
+    } // setDocumentHandler(XMLDocumentHandler)
+
+    /** Returns the document handler. */
+    public XMLDocumentHandler getDocumentHandler() {
+        return fDocumentHandler;
+    } // getDocumentHandler():XMLDocumentHandler
+
+    //
+    // XMLDTDSource methods
+    //
+
+    /** Sets the DTD handler. */
+    public void setDTDHandler(XMLDTDHandler dtdHandler) {
+        fDTDHandler = dtdHandler;
+    } // setDTDHandler(XMLDTDHandler)
+
+    /** Returns the DTD handler. */
+    public XMLDTDHandler getDTDHandler() {
+        return fDTDHandler;
+    } // getDTDHandler():XMLDTDHandler
+
+    //
+    // Private methods
+    //
+
+    /** Reads the header of the document. */
+    private void readHeader() throws IOException {
+        for (int i = 0; i < BinaryEventFormat.MAGIC.length; i++) {
+            if (fInput.readByte() != BinaryEventFormat.MAGIC[i]) {
+                throw new IOException("The input isn't a binary event stream.");
+            }
+        }
+        int version = fInput.readByte();
+        if (version != BinaryEventFormat.VERSION) {
+            throw new IOException("Version " + version + " of the binary event format isn't supported.");
+        }
+        fPSVI = (fInput.readByte() & BinaryEventFormat.HEADER_PSVI) != 0;
+    } // readHeader()
+
+    /** Reads the events of the document up to its end. */
+    private void readEvents() throws IOException {
+        XMLDocumentHandler handler = fDocumentHandler;
+        while (true) {
+            int event = fInput.readByte();
+            switch (event) {
+                case BinaryEventFormat.CHARACTERS: {
+                    XMLString text = fInput.readText();
+                    if (handler != null) {
+                        handler.characters(text, null);
+                    }
+                    break;
+                }
+                case BinaryEventFormat.START_ELEMENT: {
+                    Augmentations augs = readElement();
+                    if (fDepth == fElements.length) {
+                        QName[] elements = new QName[fDepth << 1];
+                        System.arraycopy(fElements, 0, elements, 0, fDepth);
+                        fElements = elements;
+                    }
+                    QName element = fElements[fDepth];
+                    if (element == null) {
+                        element = fElements[fDepth] = new QName();
+                    }
+                    element.setValues(fElementName);
+                    fDepth++;
+                    if (handler != null) {
+                        handler.startElement(element, fAttributes, augs);
+                    }
+                    break;
+                }
+                case BinaryEventFormat.END_ELEMENT: {
+                    if (fDepth == 0) {
+                        throw corrupt();
+                    }
+                    QName element = fElements[--fDepth];
+                    Augmentations augs = fPSVI ? readElementPSVI() : null;
+                    if (handler != null) {
+                        handler.endElement(element, augs);
+                    }
+                    fNamespaceContext.popContext();
+                    break;
+                }
+                case BinaryEventFormat.EMPTY_ELEMENT: {
+                    Augmentations augs = readElement();
+                    if (handler != null) {
+                        handler.emptyElement(fElementName, fAttributes, augs);
+                    }
+                    fNamespaceContext.popContext();
+                    break;
+                }
+                case BinaryEventFormat.IGNORABLE_WHITESPACE: {
+                    XMLString text = fInput.readText();
+                    if (handler != null) {
+                        handler.ignorableWhitespace(text, null);
+                    }
+                    break;
+                }
+                case BinaryEventFormat.COMMENT: {
+                    XMLString text = fInput.readText();
+                    if (handler != null) {
+                        handler.comment(text, null);
+                    }
+                    break;
+                }
+                case BinaryEventFormat.PROCESSING_INSTRUCTION: {
+                    String target = readName();
+                    XMLString data = fInput.readText();
+                    if (handler != null) {
+                        handler.processingInstruction(target, data, null);
+                    }
+                    break;
+                }
+                case BinaryEventFormat.START_CDATA: {
+                    if (handler != null) {
+                        handler.startCDATA(null);
+                    }
+                    break;
+                }
+                case BinaryEventFormat.END_CDATA: {
+                    if (handler != null) {
+                        handler.endCDATA(null);
+                    }
+                    break;
+                }
+                case BinaryEventFormat.START_GENERAL_ENTITY: {
+                    String name = readName();
+                    String publicId = fInput.readString();
+                    String literalSystemId = fInput.readString();
+                    String baseSystemId = fInput.readString();
+                    String expandedSystemId = fInput.readString();
+                    String encoding = fInput.readString();
+                    fResourceIdentifier.setValues(publicId, literalSystemId,
+                            baseSystemId, expandedSystemId);
+                    if (handler != null) {
+                        handler.startGeneralEntity(name, fResourceIdentifier, encoding, null);
+                    }
+                    break;
+                }
+                case BinaryEventFormat.TEXT_DECL: {
+                    String version = fInput.readString();
+                    String encoding = fInput.readString();
+                    if (handler != null) {
+                        handler.textDecl(version, encoding, null);
+                    }
+                    break;
+                }
+                case BinaryEventFormat.END_GENERAL_ENTITY: {
+                    String name = readName();
+                    if (handler != null) {
+                        handler.endGeneralEntity(name, null);
+                    }
+                    break;
+                }
+                case BinaryEventFormat.START_DOCUMENT: {
+                    String encoding = fInput.readString();
+                    fLocator.fPublicId = fInput.readString();
+                    fLocator.fLiteralSystemId = fInput.readString();
+                    fLocator.fBaseSystemId = fInput.readString();
+                    fLocator.fExpandedSystemId = fInput.readString();
+                    fLocator.fXMLVersion = fInput.readString();
+                    fLocator.fEncoding = encoding;
+                    if (handler != null) {
+                        handler.startDocument(fLocator, encoding, fNamespaceContext, null);
+                    }
+                    break;
+                }
+                case BinaryEventFormat.XML_DECL: {
+                    String version = fInput.readString();
+                    String encoding = fInput.readString();
+                    String standalone = fInput.readString();
+                    if (handler != null) {
+                        handler.xmlDecl(version, encoding, standalone, null);
+                    }
+                    break;
+                }
+                case BinaryEventFormat.DOCTYPE_DECL: {
+                    String rootElement = readName();
+                    String publicId = fInput.readString();
+                    String systemId = fInput.readString();
+                    if (handler != null) {
+                        handler.doctypeDecl(rootElement, publicId, systemId, null);
+                    }
+                    if (fDTDHandler != null) {
+                        fDTDHandler.startDTD(fLocator, null);
+                        fDTDHandler.endDTD(null);
+                    }
+                    break;
+                }
+                case BinaryEventFormat.END_DOCUMENT: {
+                    if (fDepth != 0) {
+                        throw corrupt();
+                    }
+                    if (handler != null) {
+                        handler.endDocument(null);
+                    }
+                    return;
+                }
+                default: {
+                    throw corrupt();
+                }
+            }
+        }
+    } // readEvents()
+
+    /**
+     * Reads the namespace declarations, name and attributes of a start
+     * element or empty element into the namespace context, element name and
+     * attributes, and returns its augmentations.
+     */
+    private Augmentations readElement() throws IOException {
+
+        // namespace declarations
+        fNamespaceContext.pushContext();
+        int count = fInput.readInt();
+        for (int i = 0; i < count; i++) {
+            String prefix = fInput.readString();
+            String uri = fInput.readString();
+            fNamespaceContext.declarePrefix(prefix != null ? prefix : XMLSymbols.EMPTY_STRING, uri);
+        }
+
+        // element name and attributes
+        readQName(fElementName);
+        fAttributes.removeAllAttributes();
+        int length = fInput.readInt();
+        for (int i = 0; i < length; i++) {
+            readQName(fAttributeName);
+            String type = readName();
+            String value = fInput.readText().toString();
+            int flags = fInput.readByte();
+            fAttributes.addAttributeNS(fAttributeName, type, value);
+            if ((flags & BinaryEventFormat.ATTRIBUTE_NON_NORMALIZED) != 0) {
+                fAttributes.setNonNormalizedValue(i, fInput.readText().toString());
+            }
+            fAttributes.setSpecified(i, (flags & BinaryEventFormat.ATTRIBUTE_SPECIFIED) != 0);
+            if (fPSVI) {
+                int psviFlags = fInput.readByte();
+                if (psviFlags != 0) {
+                    if (i == fAttributePSVI.length) {
+                        BinaryAttributePSVI[] attributePSVI = new BinaryAttributePSVI[i << 1];
+                        System.arraycopy(fAttributePSVI, 0, attributePSVI, 0, i);
+                        fAttributePSVI = attributePSVI;
+                    }
+                    BinaryAttributePSVI psvi = fAttributePSVI[i];
+                    if (psvi == null) {
+                        psvi = fAttributePSVI[i] = new BinaryAttributePSVI();
+                    }
+                    XSTypeDefinition typeDefinition = readType();
+                    psvi.setValues(getValidity(psviFlags), getValidationAttempted(psviFlags),
+                            (psviFlags & BinaryEventFormat.PSVI_SPECIFIED) != 0, typeDefinition);
+                    readValue(psviFlags, typeDefinition, psvi.getValidatedInfo());
+                    fAttributes.getAugmentations(i).putItem(Constants.ATTRIBUTE_PSVI, psvi);
+                }
+            }
+        }
+        return fPSVI ? readElementPSVI() : null;
+
+    } // readElement():Augmentations
+
+    /** Reads the PSVI of an element and returns the augmentations holding it. */
+    private Augmentations readElementPSVI() throws IOException {
+        int flags = fInput.readByte();
+        if (flags == 0) {
+            return null;
+        }
+        XSTypeDefinition type = readType();
+        fElementPSVI.setValues(getValidity(flags), getValidationAttempted(flags),
+                (flags & BinaryEventFormat.PSVI_NIL) != 0,
+                (flags & BinaryEventFormat.PSVI_SPECIFIED) != 0, type);
+        readValue(flags, type, fElementPSVI.getValidatedInfo());
+        fAugmentations.removeAllItems();
+        fAugmentations.putItem(Constants.ELEMENT_PSVI, fElementPSVI);
+        return fAugmentations;
+    } // readElementPSVI():Augmentations
+
+    /**
+     * Reads the member type and, if recorded, the value of an item and
+     * rebuilds its schema value.
+     */
+    private void readValue(int flags, XSTypeDefinition type, ValidatedInfo info)
+        throws IOException {
+        XSSimpleType memberType = asSimpleType(readType());
+        if ((flags & BinaryEventFormat.PSVI_VALUE) == 0) {
+            info.memberType = memberType;
+            return;
+        }
+        String normalizedValue = fInput.readText().toString();
+        short actualValueType = (short) fInput.readInt();
+        String builtInName = fInput.readString();
+        XSSimpleType builtInType = builtInName != null
+            ? asSimpleType(SchemaGrammar.SG_SchemaNS.getGlobalTypeDecl(builtInName)) : null;
+        XSSimpleType actualType = null;
+        if (type instanceof XSSimpleType) {
+            actualType = (XSSimpleType) type;
+        }
+        else if (type instanceof XSComplexTypeDefinition) {
+            actualType = asSimpleType(((XSComplexTypeDefinition) type).getSimpleType());
+        }
+        if (actualType == null) {
+            actualType = builtInType;
+        }
+        if (actualType != null) {
+            try {
+                actualType.validate(normalizedValue, fValidationState, info);
+            }
+            catch (InvalidDatatypeValueException e) {
+                info.reset();
+            }
+        }
+        info.normalizedValue = normalizedValue;
+        info.actualValueType = actualValueType;
+        info.actualType = actualType;
+        info.memberType = memberType;
+    } // readValue(int,XSTypeDefinition,ValidatedInfo)
+
+    /**
+     * Reads the name of a type definition and returns the definition, or
+     * null if it's anonymous or can't be found.
+     */
+    private XSTypeDefinition readType() throws IOException {
+        String namespace = fInput.readString();
+        String name = fInput.readString();
+        if (name == null) {
+            return null;
+        }
+        if (SchemaSymbols.URI_SCHEMAFORSCHEMA.equals(namespace)) {
+            return SchemaGrammar.SG_SchemaNS.getGlobalTypeDecl(name);
+        }
+        if (fGrammarPool != null) {
+            fXSDDescription.setNamespace(namespace);
+            SchemaGrammar grammar = (SchemaGrammar)
+                fGrammarPool.retrieveGrammar(fXSDDescription);
+            if (grammar != null) {
+                return grammar.getGlobalTypeDecl(name);
+            }
+        }
+        return null;
+    } // readType():XSTypeDefinition
+
+    /** Reads a string which can't be null or empty, such as a name. */
+    private String readName() throws IOException {
+        String name = fInput.readString();
+        if (name == null || name.length() == 0) {
+            throw corrupt();
+        }
+        return name;
+    } // readName():String
+
+    /** Reads a qualified name, which must have a local part and raw name. */
+    private void readQName(QName qname) throws IOException {
+        fInput.readQName(qname);
+        if (qname.localpart == null || qname.localpart.length() == 0
+            || qname.rawname == null) {
+            throw corrupt();
+        }
+    } // readQName(QName)
+
+    /** Returns the exception thrown for a corrupt stream. */
+    private static IOException corrupt() {
+        return new IOException("The binary event stream is corrupt.");
+    } // corrupt():IOException
+
+    /** Returns the type if it's a simple type, otherwise null. */
+    private static XSSimpleType asSimpleType(Object type) {
+        return (type instanceof XSSimpleType) ? (XSSimpleType) type : null;
+    } // asSimpleType(Object):XSSimpleType
+
+    /** Returns the validity from the PSVI flags. */
+    private static short getValidity(int flags) {
+        return (short) ((flags >> BinaryEventFormat.PSVI_VALIDITY_SHIFT) & 0x03);
+    } // getValidity(int):short
+
+    /** Returns the validation attempted from the PSVI flags. */
+    private static short getValidationAttempted(int flags) {
+        return (short) ((flags >> BinaryEventFormat.PSVI_ATTEMPTED_SHIFT) & 0x03);
+    } // getValidationAttempted(int):short
+
+} // class BinaryEventReader
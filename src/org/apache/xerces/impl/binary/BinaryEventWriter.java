@@ -0,0 +1,478 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.binary;
+
+import java.io.OutputStream;
+
+import org.apache.xerces.impl.Constants;
+import org.apache.xerces.impl.xs.SchemaSymbols;
+import org.apache.xerces.xni.Augmentations;
+import org.apache.xerces.xni.NamespaceContext;
+import org.apache.xerces.xni.QName;
+import org.apache.xerces.xni.XMLAttributes;
+import org.apache.xerces.xni.XMLDocumentHandler;
+import org.apache.xerces.xni.XMLLocator;
+import org.apache.xerces.xni.XMLResourceIdentifier;
+import org.apache.xerces.xni.XMLString;
+import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.parser.XMLDocumentFilter;
+import org.apache.xerces.xni.parser.XMLDocumentSource;
+import org.apache.xerces.xs.ElementPSVI;
+import org.apache.xerces.xs.ItemPSVI;
+import org.apache.xerces.xs.XSSimpleTypeDefinition;
+import org.apache.xerces.xs.XSTypeDefinition;
+import org.apache.xerces.xs.XSValue;
+
+/**
+ * This class writes the document events it receives to an output stream
+ * in the binary format described in {@link BinaryEventFormat}, and passes
+ * them on to the next handler in the pipeline, if any. A document written
+ * by this class can be parsed again with {@link BinaryEventReader} without
+ * decoding characters, scanning names or checking well-formedness.
+ * <p>
+ * Names and namespace names are written once per document and referred to
+ * by their index afterwards. The document events are recorded; DTD events
+ * aren't. When PSVI recording is turned on, the element and attribute PSVI
+ * found in the augmentations are recorded with their validity, type
+ * definition and schema normalized value, from which the reader rebuilds
+ * the actual value.
+ * <p>
+ * The events are buffered and the output stream is flushed at the end of
+ * each document. I/O errors are reported as an {@link XNIException}
+ * wrapping the <code>IOException</code>.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+public class BinaryEventWriter
+    implements XMLDocumentFilter {
+
+    //
+    // Data
+    //
+
+    /** The output stream. */
+    protected OutputStream fOutputStream;
+
+    /** True if element and attribute PSVI are recorded. */
+    protected boolean fWritePSVI;
+
+    // handlers
+
+    /** The document source. */
+    protected XMLDocumentSource fDocumentSource;
+
+    /** The next handler in the pipeline. */
+    protected XMLDocumentHandler fDocumentHandler;
+
+    // state
+
+    /** True if PSVI are recorded in the current document. */
+    private boolean fPSVI;
+
+    /** The namespace context of the document. */
+    private NamespaceContext fNamespaceContext;
+
+    /** The output. */
+    private final BinaryOutput fOutput = new BinaryOutput();
+
+    /** Qualified name. */
+    private final QName fAttributeName = new QName();
+
+    //
+    // Constructors
+    //
+
+    /** Default constructor. */
+    public BinaryEventWriter() {
+    } // <init>()
+
+    /** Constructs a writer which writes to the given stream. */
+    public BinaryEventWriter(OutputStream outputStream) {
+        fOutputStream = outputStream;
+    } // <init>(OutputStream)
+
+    //
+    // Public methods
+    //
+
+    /** Sets the output stream. */
+    public void setOutputStream(OutputStream outputStream) {
+        fOutputStream = outputStream;
+    } // setOutputStream(OutputStream)
+
+    /** Returns the output stream. */
+    public OutputStream getOutputStream() {
+        return fOutputStream;
+    } // getOutputStream():OutputStream
+
+    /**
+     * Sets whether element and attribute PSVI are recorded. This takes
+     * effect at the start of the next document.
+     */
+    public void setWritePSVI(boolean writePSVI) {
+        fWritePSVI = writePSVI;
+    } // setWritePSVI(boolean)
+
+    /** Returns true if element and attribute PSVI are recorded. */
+    public boolean getWritePSVI() {
+        return fWritePSVI;
+    } // getWritePSVI():boolean
+
+    //
+    // XMLDocumentSource methods
+    //
+
+    /** Sets the document handler. */
+    public void setDocumentHandler(XMLDocumentHandler documentHandler) {
+        fDocumentHandler = documentHandler;
+    } // setDocumentHandler(XMLDocumentHandler)
+
+    /** Returns the document handler. */
+    public XMLDocumentHandler getDocumentHandler() {
+        return fDocumentHandler;
+    } // getDocumentHandler():XMLDocumentHandler
+
+    //
+    // XMLDocumentHandler methods
+    //
+
+    /** Sets the document source. */
+    public void setDocumentSource(XMLDocumentSource source) {
+        fDocumentSource = source;
+    } // setDocumentSource(XMLDocumentSource)
+
+    /** Returns the document source. */
+    public XMLDocumentSource getDocumentSource() {
+        return fDocumentSource;
+    } // getDocumentSource():XMLDocumentSource
+
+    /** The start of the document. */
+    public void startDocument(XMLLocator locator, String encoding,
+                              NamespaceContext namespaceContext, Augmentations augs)
+        throws XNIException {
+        fPSVI = fWritePSVI;
+        fNamespaceContext = namespaceContext;
+        fOutput.reset(fOutputStream);
+        fOutput.writeBytes(BinaryEventFormat.MAGIC);
+        fOutput.writeByte(BinaryEventFormat.VERSION);
+        fOutput.writeByte(fPSVI ? BinaryEventFormat.HEADER_PSVI : 0);
+        fOutput.writeByte(BinaryEventFormat.START_DOCUMENT);
+        fOutput.writeString(encoding);
+        if (locator != null) {
+            fOutput.writeString(locator.getPublicId());
+            fOutput.writeString(locator.getLiteralSystemId());
+            fOutput.writeString(locator.getBaseSystemId());
+            fOutput.writeString(locator.getExpandedSystemId());
+            fOutput.writeString(locator.getXMLVersion());
+        }
+        else {
+            for (int i = 0; i < 5; i++) {
+                fOutput.writeString(null);
+            }
+        }
+        if (fDocumentHandler != null) {
+            fDocumentHandler.startDocument(locator, encoding, namespaceContext, augs);
+        }
+    } // startDocument(XMLLocator,String,NamespaceContext,Augmentations)
+
+    /** Notifies of the presence of an XMLDecl line in the document. */
+    public void xmlDecl(String version, String encoding, String standalone, Augmentations augs)
+        throws XNIException {
+        fOutput.writeByte(BinaryEventFormat.XML_DECL);
+        fOutput.writeString(version);
+        fOutput.writeString(encoding);
+        fOutput.writeString(standalone);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.xmlDecl(version, encoding, standalone, augs);
+        }
+    } // xmlDecl(String,String,String,Augmentations)
+
+    /** Notifies of the presence of the DOCTYPE line in the document. */
+    public void doctypeDecl(String rootElement, String publicId, String systemId, Augmentations augs)
+        throws XNIException {
+        fOutput.writeByte(BinaryEventFormat.DOCTYPE_DECL);
+        fOutput.writeString(rootElement);
+        fOutput.writeString(publicId);
+        fOutput.writeString(systemId);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.doctypeDecl(rootElement, publicId, systemId, augs);
+        }
+    } // doctypeDecl(String,String,String,Augmentations)
+
+    /** A comment. */
+    public void comment(XMLString text, Augmentations augs) throws XNIException {
+        fOutput.writeByte(BinaryEventFormat.COMMENT);
+        fOutput.writeText(text.ch, text.offset, text.length);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.comment(text, augs);
+        }
+    } // comment(XMLString,Augmentations)
+
+    /** A processing instruction. */
+    public void processingInstruction(String target, XMLString data, Augmentations augs)
+        throws XNIException {
+        fOutput.writeByte(BinaryEventFormat.PROCESSING_INSTRUCTION);
+        fOutput.writeString(target);
+        fOutput.writeText(data.ch, data.offset, data.length);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.processingInstruction(target, data, augs);
+        }
+    } // processingInstruction(String,XMLString,Augmentations)
+
+    /** The start of an element. */
+    public void startElement(QName element, XMLAttributes attributes, Augmentations augs)
+        throws XNIException {
+        writeElement(BinaryEventFormat.START_ELEMENT, element, attributes, augs);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.startElement(element, attributes, augs);
+        }
+    } // startElement(QName,XMLAttributes,Augmentations)
+
+    /** An empty element. */
+    public void emptyElement(QName element, XMLAttributes attributes, Augmentations augs)
+        throws XNIException {
+        writeElement(BinaryEventFormat.EMPTY_ELEMENT, element, attributes, augs);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.emptyElement(element, attributes, augs);
+        }
+    } // emptyElement(QName,XMLAttributes,Augmentations)
+
+    /** This method notifies the start of a general entity. */
+    public void startGeneralEntity(String name, XMLResourceIdentifier identifier,
+                                   String encoding, Augmentations augs)
+        throws XNIException {
+        fOutput.writeByte(BinaryEventFormat.START_GENERAL_ENTITY);
+        fOutput.writeString(name);
+        if (identifier != null) {
+            fOutput.writeString(identifier.getPublicId());
+            fOutput.writeString(identifier.getLiteralSystemId());
+            fOutput.writeString(identifier.getBaseSystemId());
+            fOutput.writeString(identifier.getExpandedSystemId());
+        }
+        else {
+            for (int i = 0; i < 4; i++) {
+                fOutput.writeString(null);
+            }
+        }
+        fOutput.writeString(encoding);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.startGeneralEntity(name, identifier, encoding, augs);
+        }
+    } // startGeneralEntity(String,XMLResourceIdentifier,String,Augmentations)
+
+    /** Notifies of the presence of a TextDecl line in an entity. */
+    public void textDecl(String version, String encoding, Augmentations augs)
+        throws XNIException {
+        fOutput.writeByte(BinaryEventFormat.TEXT_DECL);
+        fOutput.writeString(version);
+        fOutput.writeString(encoding);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.textDecl(version, encoding, augs);
+        }
+    } // textDecl(String,String,Augmentations)
+
+    /** This method notifies the end of a general entity. */
+    public void endGeneralEntity(String name, Augmentations augs) throws XNIException {
+        fOutput.writeByte(BinaryEventFormat.END_GENERAL_ENTITY);
+        fOutput.writeString(name);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.endGeneralEntity(name, augs);
+        }
+    } // endGeneralEntity(String,Augmentations)
+
+    /** Character content. */
+    public void characters(XMLString text, Augmentations augs) throws XNIException {
+        fOutput.writeByte(BinaryEventFormat.CHARACTERS);
+        fOutput.writeText(text.ch, text.offset, text.length);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.characters(text, augs);
+        }
+    } // characters(XMLString,Augmentations)
+
+    /** Ignorable whitespace. */
+    public void ignorableWhitespace(XMLString text, Augmentations augs) throws XNIException {
+        fOutput.writeByte(BinaryEventFormat.IGNORABLE_WHITESPACE);
+        fOutput.writeText(text.ch, text.offset, text.length);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.ignorableWhitespace(text, augs);
+        }
+    } // ignorableWhitespace(XMLString,Augmentations)
+
+    /** The end of an element. */
+    public void endElement(QName element, Augmentations augs) throws XNIException {
+        fOutput.writeByte(BinaryEventFormat.END_ELEMENT);
+        if (fPSVI) {
+            writePSVI(augs != null ? (ItemPSVI) augs.getItem(Constants.ELEMENT_PSVI) : null);
+        }
+        if (fDocumentHandler != null) {
+            fDocumentHandler.endElement(element, augs);
+        }
+    } // endElement(QName,Augmentations)
+
+    /** The start of a CDATA section. */
+    public void startCDATA(Augmentations augs) throws XNIException {
+        fOutput.writeByte(BinaryEventFormat.START_CDATA);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.startCDATA(augs);
+        }
+    } // startCDATA(Augmentations)
+
+    /** The end of a CDATA section. */
+    public void endCDATA(Augmentations augs) throws XNIException {
+        fOutput.writeByte(BinaryEventFormat.END_CDATA);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.endCDATA(augs);
+        }
+    } // endCDATA(Augmentations)
+
+    /** The end of the document. */
+    public void endDocument(Augmentations augs) throws XNIException {
+        fOutput.writeByte(BinaryEventFormat.END_DOCUMENT);
+        fOutput.flush();
+        fNamespaceContext = null;
+        if (fDocumentHandler != null) {
+            fDocumentHandler.endDocument(augs);
+        }
+    } // endDocument(Augmentations)
+
+    //
+    // Private methods
+    //
+
+    /** Writes a start element or an empty element event. */
+    private void writeElement(int event, QName element, XMLAttributes attributes,
+                              Augmentations augs) {
+        fOutput.writeByte(event);
+
+        // namespace declarations
+        if (fNamespaceContext != null) {
+            int count = fNamespaceContext.getDeclaredPrefixCount();
+            fOutput.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                String prefix = fNamespaceContext.getDeclaredPrefixAt(i);
+                fOutput.writeString(prefix);
+                fOutput.writeString(fNamespaceContext.getURI(prefix));
+            }
+        }
+        else {
+            fOutput.writeInt(0);
+        }
+
+        // element name and attributes
+        fOutput.writeQName(element);
+        int length = attributes.getLength();
+        fOutput.writeInt(length);
+        for (int i = 0; i < length; i++) {
+            attributes.getName(i, fAttributeName);
+            fOutput.writeQName(fAttributeName);
+            fOutput.writeString(attributes.getType(i));
+            String value = attributes.getValue(i);
+            String nonNormalizedValue = attributes.getNonNormalizedValue(i);
+            fOutput.writeText(value);
+            boolean normalized = nonNormalizedValue != null && !nonNormalizedValue.equals(value);
+            int flags = 0;
+            if (attributes.isSpecified(i)) {
+                flags |= BinaryEventFormat.ATTRIBUTE_SPECIFIED;
+            }
+            if (normalized) {
+                flags |= BinaryEventFormat.ATTRIBUTE_NON_NORMALIZED;
+            }
+            fOutput.writeByte(flags);
+            if (normalized) {
+                fOutput.writeText(nonNormalizedValue);
+            }
+            if (fPSVI) {
+                Augmentations attrAugs = attributes.getAugmentations(i);
+                writePSVI(attrAugs != null ? (ItemPSVI) attrAugs.getItem(Constants.ATTRIBUTE_PSVI) : null);
+            }
+        }
+        if (fPSVI) {
+            writePSVI(augs != null ? (ItemPSVI) augs.getItem(Constants.ELEMENT_PSVI) : null);
+        }
+    } // writeElement(int,QName,XMLAttributes,Augmentations)
+
+    /** Writes the PSVI of an element or attribute. */
+    private void writePSVI(ItemPSVI psvi) {
+        if (psvi == null) {
+            fOutput.writeByte(0);
+            return;
+        }
+        String normalizedValue = psvi.getSchemaNormalizedValue();
+        int flags = BinaryEventFormat.PSVI_PRESENT;
+        flags |= psvi.getValidity() << BinaryEventFormat.PSVI_VALIDITY_SHIFT;
+        flags |= psvi.getValidationAttempted() << BinaryEventFormat.PSVI_ATTEMPTED_SHIFT;
+        if (psvi instanceof ElementPSVI && ((ElementPSVI) psvi).getNil()) {
+            flags |= BinaryEventFormat.PSVI_NIL;
+        }
+        if (psvi.getIsSchemaSpecified()) {
+            flags |= BinaryEventFormat.PSVI_SPECIFIED;
+        }
+        if (normalizedValue != null) {
+            flags |= BinaryEventFormat.PSVI_VALUE;
+        }
+        fOutput.writeByte(flags);
+        writeType(psvi.getTypeDefinition());
+        writeType(psvi.getMemberTypeDefinition());
+        if (normalizedValue != null) {
+            fOutput.writeText(normalizedValue);
+            fOutput.writeInt(psvi.getActualNormalizedValueType());
+            XSValue value = psvi.getSchemaValue();
+            XSSimpleTypeDefinition type = value.getMemberTypeDefinition();
+            if (type == null) {
+                type = value.getTypeDefinition();
+            }
+            fOutput.writeString(getBuiltInTypeName(type));
+        }
+    } // writePSVI(ItemPSVI)
+
+    /** Writes the name of a type definition, or nulls if it's anonymous. */
+    private void writeType(XSTypeDefinition type) {
+        if (type != null && !type.getAnonymous()) {
+            fOutput.writeString(type.getNamespace());
+            fOutput.writeString(type.getName());
+        }
+        else {
+            fOutput.writeString(null);
+            fOutput.writeString(null);
+        }
+    } // writeType(XSTypeDefinition)
+
+    /**
+     * Returns the name of the built-in type from which values of the given
+     * simple type can be built, or null if there's no such type.
+     */
+    private static String getBuiltInTypeName(XSSimpleTypeDefinition type) {
+        while (type != null) {
+            if (SchemaSymbols.URI_SCHEMAFORSCHEMA.equals(type.getNamespace())
+                && !type.getAnonymous()) {
+                return type.getName();
+            }
+            // a value of a list or union type can't be built from its base type
+            if (type.getVariety() != XSSimpleTypeDefinition.VARIETY_ATOMIC) {
+                return null;
+            }
+            XSTypeDefinition base = type.getBaseType();
+            type = (base instanceof XSSimpleTypeDefinition)
+                 ? (XSSimpleTypeDefinition) base : null;
+        }
+        return null;
+    } // getBuiltInTypeName(XSSimpleTypeDefinition):String
+
+} // class BinaryEventWriter
@@ -0,0 +1,353 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.binary;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.xerces.util.SymbolTable;
+import org.apache.xerces.util.XMLSymbols;
+import org.apache.xerces.xni.QName;
+import org.apache.xerces.xni.XMLString;
+
+/**
+ * Reads the numbers, strings and text of the binary formats, as described
+ * in {@link BinaryEventFormat}, from a buffered input stream. Strings from
+ * the string table are added to the symbol table once each; text is decoded
+ * straight into a character buffer which is reused.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+final class BinaryInput {
+
+    //
+    // Constants
+    //
+
+    /** Default size of the input buffer. */
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    //
+    // Data
+    //
+
+    /** The input stream. */
+    private InputStream fInputStream;
+
+    /** Symbol table. */
+    private SymbolTable fSymbolTable;
+
+    /** The input buffer. */
+    private final byte[] fBuffer = new byte[DEFAULT_BUFFER_SIZE];
+
+    /** The offset of the next byte in the input buffer. */
+    private int fOffset;
+
+    /** The number of bytes in the input buffer. */
+    private int fLength;
+
+    /** The strings read so far, by index. */
+    private String[] fStrings = new String[64];
+
+    /** The prefixes of the strings read so far, by index, once computed. */
+    private String[] fPrefixes = new String[64];
+
+    /** The local parts of the strings read so far, by index, once computed. */
+    private String[] fLocalparts = new String[64];
+
+    /** The number of strings read so far. */
+    private int fStringCount;
+
+    /** The index of the last string read. */
+    private int fLastString;
+
+    /** Character buffer for text. */
+    private char[] fChars = new char[256];
+
+    /** The last text read. */
+    private final XMLString fString = new XMLString();
+
+    //
+    // Public methods
+    //
+
+    /** Starts reading a document from the given stream. */
+    public void reset(InputStream inputStream, SymbolTable symbolTable) {
+        for (int i = 1; i <= fStringCount; i++) {
+            fStrings[i] = null;
+            fPrefixes[i] = null;
+            fLocalparts[i] = null;
+        }
+        fInputStream = inputStream;
+        fSymbolTable = symbolTable;
+        fOffset = 0;
+        fLength = 0;
+        fStringCount = 0;
+        fLastString = 0;
+    } // reset(InputStream,SymbolTable)
+
+    /** Releases the stream and the strings of the document. */
+    public void clear() {
+        reset(null, null);
+    } // clear()
+
+    /** Reads a byte. */
+    public int readByte() throws IOException {
+        if (fOffset == fLength) {
+            fill();
+        }
+        return fBuffer[fOffset++] & 0xFF;
+    } // readByte():int
+
+    /** Reads the given number of bytes. */
+    public byte[] readBytes(int count) throws IOException {
+        byte[] bytes = new byte[count];
+        int offset = 0;
+        while (offset < count) {
+            if (fOffset == fLength) {
+                fill();
+            }
+            int length = Math.min(count - offset, fLength - fOffset);
+            System.arraycopy(fBuffer, fOffset, bytes, offset, length);
+            fOffset += length;
+            offset += length;
+        }
+        return bytes;
+    } // readBytes(int):byte[]
+
+    /** Reads an unsigned variable length integer. */
+    public int readInt() throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift > 28) {
+                throw new IOException("The binary event stream is corrupt.");
+            }
+            b = readByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+        if (value < 0) {
+            throw new IOException("The binary event stream is corrupt.");
+        }
+        return value;
+    } // readInt():int
+
+    /** Reads an unsigned variable length long integer. */
+    public long readLong() throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift > 63) {
+                throw new IOException("The binary event stream is corrupt.");
+            }
+            b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+        return value;
+    } // readLong():long
+
+    /** Reads a reference to the string table. */
+    public String readString() throws IOException {
+        int index = readInt();
+        if (index <= fStringCount) {
+            fLastString = index;
+            return index != 0 ? fStrings[index] : null;
+        }
+        if (index != fStringCount + 1) {
+            throw new IOException("The binary event stream is corrupt.");
+        }
+        readText();
+        String s = fSymbolTable.addSymbol(fString.ch, fString.offset, fString.length);
+        if (index == fStrings.length) {
+            String[] strings = new String[index << 1];
+            System.arraycopy(fStrings, 0, strings, 0, index);
+            fStrings = strings;
+            strings = new String[index << 1];
+            System.arraycopy(fPrefixes, 0, strings, 0, index);
+            fPrefixes = strings;
+            strings = new String[index << 1];
+            System.arraycopy(fLocalparts, 0, strings, 0, index);
+            fLocalparts = strings;
+        }
+        fStrings[index] = s;
+        fStringCount = index;
+        fLastString = index;
+        return s;
+    } // readString():String
+
+    /**
+     * Returns the prefix of the last string read, taken as a qualified name,
+     * or null if it has no prefix.
+     */
+    public String getPrefix() {
+        int index = fLastString;
+        String prefix = fPrefixes[index];
+        if (prefix == null && index != 0) {
+            String rawname = fStrings[index];
+            int colon = rawname.indexOf(':');
+            prefix = colon != -1
+                   ? fSymbolTable.addSymbol(rawname.substring(0, colon))
+                   : XMLSymbols.EMPTY_STRING;
+            fPrefixes[index] = prefix;
+        }
+        return prefix != XMLSymbols.EMPTY_STRING ? prefix : null;
+    } // getPrefix():String
+
+    /**
+     * Returns the local part of the last string read, taken as a qualified
+     * name, or null if it's null.
+     */
+    public String getLocalpart() {
+        int index = fLastString;
+        String localpart = fLocalparts[index];
+        if (localpart == null && index != 0) {
+            String rawname = fStrings[index];
+            int colon = rawname.indexOf(':');
+            localpart = colon != -1
+                      ? fSymbolTable.addSymbol(rawname.substring(colon + 1))
+                      : rawname;
+            fLocalparts[index] = localpart;
+        }
+        return localpart;
+    } // getLocalpart():String
+
+    /** Reads a qualified name written as four strings. */
+    public void readQName(QName qname) throws IOException {
+        String prefix = readString();
+        String localpart = readString();
+        String rawname = readString();
+        String uri = readString();
+        qname.setValues(prefix, localpart, rawname, uri);
+    } // readQName(QName)
+
+    /**
+     * Reads a qualified name written as its raw name and namespace name,
+     * from which the prefix and local part are taken. As the scanner does,
+     * the prefix of a name without one is the empty string if the name has a
+     * namespace and null otherwise.
+     */
+    public void readName(QName qname) throws IOException {
+        String rawname = readString();
+        String prefix = getPrefix();
+        String localpart = getLocalpart();
+        String uri = readString();
+        if (prefix == null && uri != null) {
+            prefix = XMLSymbols.EMPTY_STRING;
+        }
+        qname.setValues(prefix, localpart, rawname, uri);
+    } // readName(QName)
+
+    /**
+     * Reads text and returns it. The returned string is reused by the next
+     * call.
+     */
+    public XMLString readText() throws IOException {
+        int length = readInt();
+        char[] chars = fChars;
+        byte[] buffer = fBuffer;
+        int count = 0;
+        while (count < length) {
+            if (fOffset == fLength) {
+                fill();
+            }
+            // decode as much as the buffer surely holds without checking its end
+            int offset = fOffset;
+            int end = count + Math.min(length - count, (fLength - offset) / 3);
+            // grow the characters as the bytes arrive, so that a corrupt
+            // length runs into the end of the stream, not out of memory
+            if (chars.length <= end) {
+                char[] newChars = new char[Math.min(length, Math.max(end + 1, chars.length << 1))];
+                System.arraycopy(chars, 0, newChars, 0, count);
+                chars = fChars = newChars;
+            }
+            while (count < end) {
+                int b = buffer[offset++];
+                if (b >= 0) {
+                    chars[count++] = (char) b;
+                }
+                else if ((b & 0xE0) == 0xC0) {
+                    chars[count++] = (char) (((b & 0x1F) << 6) | (buffer[offset++] & 0x3F));
+                }
+                else {
+                    chars[count++] = (char) (((b & 0x0F) << 12) | ((buffer[offset++] & 0x3F) << 6)
+                                             | (buffer[offset++] & 0x3F));
+                }
+            }
+            fOffset = offset;
+            if (count < length && fLength - fOffset < 3) {
+                chars[count++] = readChar();
+            }
+        }
+        fString.setValues(chars, 0, length);
+        return fString;
+    } // readText():XMLString
+
+    /**
+     * Returns the given string as text. The returned string is reused by
+     * the next call.
+     */
+    public XMLString toText(String s) {
+        int length = s.length();
+        if (fChars.length < length) {
+            fChars = new char[Math.max(length, fChars.length << 1)];
+        }
+        s.getChars(0, length, fChars, 0);
+        fString.setValues(fChars, 0, length);
+        return fString;
+    } // toText(String):XMLString
+
+    //
+    // Private methods
+    //
+
+    /** Reads a character, which may span the end of the buffer. */
+    private char readChar() throws IOException {
+        int b = (byte) readByte();
+        if (b >= 0) {
+            return (char) b;
+        }
+        if ((b & 0xE0) == 0xC0) {
+            return (char) (((b & 0x1F) << 6) | (readByte() & 0x3F));
+        }
+        int b2 = readByte();
+        return (char) (((b & 0x0F) << 12) | ((b2 & 0x3F) << 6) | (readByte() & 0x3F));
+    } // readChar():char
+
+    /** Moves the unread bytes to the start of the buffer and reads more. */
+    private void fill() throws IOException {
+        int remaining = fLength - fOffset;
+        System.arraycopy(fBuffer, fOffset, fBuffer, 0, remaining);
+        fOffset = 0;
+        fLength = remaining;
+        int count = fInputStream.read(fBuffer, remaining, fBuffer.length - remaining);
+        if (count <= 0) {
+            throw new EOFException("Unexpected end of the binary event stream.");
+        }
+        fLength += count;
+    } // fill()
+
+} // class BinaryInput
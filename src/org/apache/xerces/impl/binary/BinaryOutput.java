@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.binary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+
+import org.apache.xerces.xni.QName;
+import org.apache.xerces.xni.XNIException;
+
+/**
+ * Writes the numbers, strings and text of the binary formats, as described
+ * in {@link BinaryEventFormat}, to a buffer which is flushed to an output
+ * stream. I/O errors are reported as an {@link XNIException} wrapping the
+ * <code>IOException</code>.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+final class BinaryOutput {
+
+    //
+    // Constants
+    //
+
+    /** Default size of the output buffer. */
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    //
+    // Data
+    //
+
+    /** The output stream. */
+    private OutputStream fOutputStream;
+
+    /** The output buffer. */
+    private byte[] fBuffer = new byte[DEFAULT_BUFFER_SIZE];
+
+    /** The number of bytes in the output buffer. */
+    private int fLength;
+
+    /** Maps the strings written so far to their indexes. */
+    private final HashMap fStrings = new HashMap();
+
+    /** The number of strings written so far. */
+    private int fStringCount;
+
+    //
+    // Public methods
+    //
+
+    /** Starts writing a document to the given stream. */
+    public void reset(OutputStream outputStream) {
+        fOutputStream = outputStream;
+        fLength = 0;
+        fStrings.clear();
+        fStringCount = 0;
+    } // reset(OutputStream)
+
+    /** Writes a byte. */
+    public void writeByte(int b) {
+        if (fLength == fBuffer.length) {
+            flushBuffer();
+        }
+        fBuffer[fLength++] = (byte) b;
+    } // writeByte(int)
+
+    /** Writes bytes. */
+    public void writeBytes(byte[] bytes) {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (fLength == fBuffer.length) {
+                flushBuffer();
+            }
+            int count = Math.min(bytes.length - offset, fBuffer.length - fLength);
+            System.arraycopy(bytes, offset, fBuffer, fLength, count);
+            fLength += count;
+            offset += count;
+        }
+    } // writeBytes(byte[])
+
+    /** Writes an unsigned variable length integer. */
+    public void writeInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            fBuffer[fLength++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        fBuffer[fLength++] = (byte) value;
+    } // writeInt(int)
+
+    /** Writes an unsigned variable length long integer. */
+    public void writeLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            fBuffer[fLength++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        fBuffer[fLength++] = (byte) value;
+    } // writeLong(long)
+
+    /** Writes a reference to the string table, adding the string if it's new. */
+    public void writeString(String s) {
+        if (s == null) {
+            writeInt(0);
+            return;
+        }
+        Integer index = (Integer) fStrings.get(s);
+        if (index != null) {
+            writeInt(index.intValue());
+            return;
+        }
+        fStrings.put(s, new Integer(++fStringCount));
+        writeInt(fStringCount);
+        writeText(s);
+    } // writeString(String)
+
+    /** Writes a qualified name as four strings. */
+    public void writeQName(QName qname) {
+        writeString(qname.prefix);
+        writeString(qname.localpart);
+        writeString(qname.rawname);
+        writeString(qname.uri);
+    } // writeQName(QName)
+
+    /**
+     * Writes a qualified name as its raw name and namespace name. This is
+     * only used for names whose prefix and local part are those of the raw
+     * name.
+     */
+    public void writeName(QName qname) {
+        writeString(qname.rawname);
+        writeString(qname.uri);
+    } // writeName(QName)
+
+    /** Writes text. */
+    public void writeText(String s) {
+        int length = s.length();
+        writeInt(length);
+        int start = 0;
+        while (start < length) {
+            int end = start + reserveText(length - start);
+            byte[] buffer = fBuffer;
+            int offset = fLength;
+            for (int i = start; i < end; i++) {
+                offset = encode(buffer, offset, s.charAt(i));
+            }
+            fLength = offset;
+            start = end;
+        }
+    } // writeText(String)
+
+    /** Writes text. */
+    public void writeText(char[] ch, int start, int length) {
+        // a cleared XMLString, such as the data of an empty processing
+        // instruction, has a length of -1
+        if (length < 0) {
+            length = 0;
+        }
+        writeInt(length);
+        int end = start + length;
+        while (start < end) {
+            int segmentEnd = start + reserveText(end - start);
+            byte[] buffer = fBuffer;
+            int offset = fLength;
+            for (int i = start; i < segmentEnd; i++) {
+                char c = ch[i];
+                if (c < 0x80) {
+                    buffer[offset++] = (byte) c;
+                }
+                else {
+                    offset = encode(buffer, offset, c);
+                }
+            }
+            fLength = offset;
+            start = segmentEnd;
+        }
+    } // writeText(char[],int,int)
+
+    /** Writes the buffer and flushes the output stream. */
+    public void flush() {
+        flushBuffer();
+        try {
+            fOutputStream.flush();
+        }
+        catch (IOException e) {
+            throw new XNIException(e);
+        }
+    } // flush()
+
+    //
+    // Private methods
+    //
+
+    /**
+     * Makes room in the buffer for the encoding of some of the given number
+     * of characters and returns the number of characters there's room for.
+     */
+    private int reserveText(int length) {
+        if ((fBuffer.length - fLength) / 3 < Math.min(length, 64)) {
+            flushBuffer();
+        }
+        return Math.min(length, (fBuffer.length - fLength) / 3);
+    } // reserveText(int):int
+
+    /** Encodes a character, returning the new offset. */
+    private static int encode(byte[] buffer, int offset, char c) {
+        if (c < 0x80) {
+            buffer[offset++] = (byte) c;
+        }
+        else if (c < 0x800) {
+            buffer[offset++] = (byte) (0xC0 | (c >> 6));
+            buffer[offset++] = (byte) (0x80 | (c & 0x3F));
+        }
+        else {
+            buffer[offset++] = (byte) (0xE0 | (c >> 12));
+            buffer[offset++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[offset++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return offset;
+    } // encode(byte[],int,char):int
+
+    /** Makes room in the buffer for the given number of bytes. */
+    private void ensureCapacity(int count) {
+        if (fBuffer.length - fLength < count) {
+            flushBuffer();
+        }
+    } // ensureCapacity(int)
+
+    /** Writes the buffer to the output stream. */
+    private void flushBuffer() {
+        if (fLength > 0) {
+            try {
+                fOutputStream.write(fBuffer, 0, fLength);
+            }
+            catch (IOException e) {
+                throw new XNIException(e);
+            }
+            fLength = 0;
+        }
+    } // flushBuffer()
+
+} // class BinaryOutput
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.binary;
+
+import org.apache.xerces.xni.XMLLocator;
+
+/**
+ * A locator which returns the identifiers recorded at the start of a
+ * binary document. Line and column numbers aren't recorded.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+final class RecordedLocator implements XMLLocator {
+
+    //
+    // Data
+    //
+
+    String fPublicId;
+    String fLiteralSystemId;
+    String fBaseSystemId;
+    String fExpandedSystemId;
+    String fEncoding;
+    String fXMLVersion;
+
+    //
+    // XMLLocator methods
+    //
+
+    public String getPublicId() {
+        return fPublicId;
+    }
+
+    public String getLiteralSystemId() {
+        return fLiteralSystemId;
+    }
+
+    public String getBaseSystemId() {
+        return fBaseSystemId;
+    }
+
+    public String getExpandedSystemId() {
+        return fExpandedSystemId;
+    }
+
+    public int getLineNumber() {
+        return -1;
+    }
+
+    public int getColumnNumber() {
+        return -1;
+    }
+
+    public int getCharacterOffset() {
+        return -1;
+    }
+
+    public String getEncoding() {
+        return fEncoding;
+    }
+
+    public String getXMLVersion() {
+        return fXMLVersion;
+    }
+
+} // class RecordedLocator
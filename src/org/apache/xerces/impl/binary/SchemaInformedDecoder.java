@@ -0,0 +1,751 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.binary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Vector;
+
+import org.apache.xerces.impl.Constants;
+import org.apache.xerces.impl.xs.XSElementDecl;
+import org.apache.xerces.impl.xs.models.XSCMValidator;
+import org.apache.xerces.util.NamespaceSupport;
+import org.apache.xerces.util.SymbolTable;
+import org.apache.xerces.util.XMLAttributesImpl;
+import org.apache.xerces.util.XMLResourceIdentifierImpl;
+import org.apache.xerces.util.XMLSymbols;
+import org.apache.xerces.xni.QName;
+import org.apache.xerces.xni.XMLDTDHandler;
+import org.apache.xerces.xni.XMLDocumentHandler;
+import org.apache.xerces.xni.XMLString;
+import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.grammars.XMLGrammarPool;
+import org.apache.xerces.xni.parser.XMLComponent;
+import org.apache.xerces.xni.parser.XMLComponentManager;
+import org.apache.xerces.xni.parser.XMLConfigurationException;
+import org.apache.xerces.xni.parser.XMLDTDSource;
+import org.apache.xerces.xni.parser.XMLDocumentSource;
+import org.apache.xerces.xs.XSAttributeDeclaration;
+import org.apache.xerces.xs.XSSimpleTypeDefinition;
+import org.apache.xerces.xs.XSTypeDefinition;
+
+/**
+ * This class reads a document written by {@link SchemaInformedEncoder} and
+ * passes its events on to the document handler. The schema grammars which
+ * the encoder used must be in the grammar pool; the content models and
+ * attribute uses of their type definitions are followed as the encoder
+ * did to give back the names of elements and attributes, and typed values
+ * are given back as the text they were written from.
+ * <p>
+ * DTDs aren't recorded. If the document has a document type declaration,
+ * an empty DTD is reported to the DTD handler after it. No augmentations
+ * are passed on; the document can be validated again if PSVI is needed.
+ * <p>
+ * The namespace context passed to the document handler holds the
+ * recorded namespace declarations. The locator returns the identifiers of
+ * the original document; line and column numbers aren't recorded.
+ * <p>
+ * This component requires the following features and properties from the
+ * component manager that uses it:
+ * <ul>
+ *  <li>http://apache.org/xml/properties/internal/symbol-table</li>
+ *  <li>http://apache.org/xml/properties/internal/grammar-pool</li>
+ * </ul>
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+public class SchemaInformedDecoder
+    implements XMLComponent, XMLDocumentSource, XMLDTDSource {
+
+    //
+    // Constants
+    //
+
+    // property identifiers
+
+    /** Property identifier: symbol table. */
+    protected static final String SYMBOL_TABLE =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.SYMBOL_TABLE_PROPERTY;
+
+    /** Property identifier: grammar pool. */
+    protected static final String XMLGRAMMAR_POOL =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.XMLGRAMMAR_POOL_PROPERTY;
+
+    // recognized features and properties
+
+    /** Recognized features. */
+    private static final String[] RECOGNIZED_FEATURES = {
+    };
+
+    /** Feature defaults. */
+    private static final Boolean[] FEATURE_DEFAULTS = {
+    };
+
+    /** Recognized properties. */
+    private static final String[] RECOGNIZED_PROPERTIES = {
+        SYMBOL_TABLE,
+        XMLGRAMMAR_POOL,
+    };
+
+    /** Property defaults. */
+    private static final Object[] PROPERTY_DEFAULTS = {
+        null,
+        null,
+    };
+
+    //
+    // Data
+    //
+
+    // properties
+
+    /** Symbol table. */
+    protected SymbolTable fSymbolTable;
+
+    /** Grammar pool. */
+    protected XMLGrammarPool fGrammarPool;
+
+    // handlers
+
+    /** The document handler. */
+    protected XMLDocumentHandler fDocumentHandler;
+
+    /** The DTD handler. */
+    protected XMLDTDHandler fDTDHandler;
+
+    // input
+
+    /** The input. */
+    private final BinaryInput fInput = new BinaryInput();
+
+    // state
+
+    /** The schema information. */
+    private final SchemaInformedGrammar fGrammar = new SchemaInformedGrammar();
+
+    /** The number of open elements. */
+    private int fDepth;
+
+    /** The names of the open elements. */
+    private QName[] fElements = new QName[16];
+
+    /** The content models of the open elements. */
+    private XSCMValidator[] fContentModels = new XSCMValidator[16];
+
+    /** The content model states of the open elements. */
+    private int[][] fStates = new int[16][];
+
+    /** The simple types of the values of the open elements. */
+    private XSSimpleTypeDefinition[] fValueTypes = new XSSimpleTypeDefinition[16];
+
+    /** The kinds of the typed values of the open elements. */
+    private int[] fValueKinds = new int[16];
+
+    /** Namespace context. */
+    private final NamespaceSupport fNamespaceContext = new NamespaceSupport();
+
+    /** Locator. */
+    private final RecordedLocator fLocator = new RecordedLocator();
+
+    /** Attributes. */
+    private final XMLAttributesImpl fAttributes = new XMLAttributesImpl();
+
+    /** Resource identifier. */
+    private final XMLResourceIdentifierImpl fResourceIdentifier = new XMLResourceIdentifierImpl();
+
+    // temporary buffers
+
+    /** Qualified name. */
+    private final QName fElementName = new QName();
+
+    /** Qualified name. */
+    private final QName fAttributeName = new QName();
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Reads a document from the given stream, passing its events on to the
+     * document handler. The stream is read up to the end of the document
+     * and may be read past it; it isn't closed.
+     *
+     * @param inputStream The stream.
+     *
+     * @throws IOException Thrown if the stream can't be read, doesn't
+     *                     hold a document in the schema-informed format or
+     *                     refers to schema components which can't be
+     *                     found in the grammar pool.
+     * @throws XNIException Thrown by the document handler.
+     */
+    public void parse(InputStream inputStream) throws IOException, XNIException {
+        fDepth = 0;
+        fNamespaceContext.reset();
+        if (fSymbolTable == null) {
+            fSymbolTable = new SymbolTable();
+        }
+        fGrammar.reset(fGrammarPool);
+        fInput.reset(inputStream, fSymbolTable);
+        try {
+            readHeader();
+            readContent();
+        }
+        finally {
+            fInput.clear();
+            fGrammar.reset(null);
+            for (int i = 0; i < fDepth; i++) {
+                fContentModels[i] = null;
+                fStates[i] = null;
+                fValueTypes[i] = null;
+            }
+        }
+    } // parse(InputStream)
+
+    /**
+     * Returns true if the given bytes start a document in the
+     * schema-informed format.
+     */
+    public static boolean isSchemaInformed(byte[] header) {
+        if (header.length < SchemaInformedFormat.MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < SchemaInformedFormat.MAGIC.length; i++) {
+            if (header[i] != SchemaInformedFormat.MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    } // isSchemaInformed(byte[]):boolean
+
+    //
+    // XMLComponent methods
+    //
+
+    /**
+     * Resets the component. The component can query the component manager
+     * about any features and properties that affect the operation of the
+     * component.
+     *
+     * @param componentManager The component manager.
+     *
+     * @throws XNIException Thrown by component on initialization error.
+     */
+    public void reset(XMLComponentManager componentManager)
+        throws XNIException {
+        fSymbolTable = (SymbolTable)componentManager.getProperty(SYMBOL_TABLE);
+        try {
+            fGrammarPool = (XMLGrammarPool)componentManager.getProperty(XMLGRAMMAR_POOL);
+        }
+        catch (XMLConfigurationException e) {
+            fGrammarPool = null;
+        }
+    } // reset(XMLComponentManager)
+
+    /**
+     * Returns a list of feature identifiers that are recognized by
+     * this component. This method may return null if no features
+     * are recognized by this component.
+     */
+    public String[] getRecognizedFeatures() {
+        return (String[])(RECOGNIZED_FEATURES.clone());
+    } // getRecognizedFeatures():String[]
+
+    /**
+     * Sets the state of a feature. This method is called by the component
+     * manager any time after reset when a feature changes state.
+     *
+     * @param featureId The feature identifier.
+     * @param state     The state of the feature.
+     */
+    public void setFeature(String featureId, boolean state)
+        throws XMLConfigurationException {
+    } // setFeature(String,boolean)
+
+    /**
+     * Returns a list of property identifiers that are recognized by
+     * this component. This method may return null if no properties
+     * are recognized by this component.
+     */
+    public String[] getRecognizedProperties() {
+        return (String[])(RECOGNIZED_PROPERTIES.clone());
+    } // getRecognizedProperties():String[]
+
+    /**
+     * Sets the value of a property. This method is called by the component
+     * manager any time after reset when a property changes value.
+     *
+     * @param propertyId The property identifier.
+     * @param value      The value of the property.
+     */
+    public void setProperty(String propertyId, Object value)
+        throws XMLConfigurationException {
+
+        // Xerces properties
+        if (propertyId.startsWith(Constants.XERCES_PROPERTY_PREFIX)) {
+            final int suffixLength = propertyId.length() - Constants.XERCES_PROPERTY_PREFIX.length();
+
+            if (suffixLength == Constants.SYMBOL_TABLE_PROPERTY.length() &&
+                propertyId.endsWith(Constants.SYMBOL_TABLE_PROPERTY)) {
+                fSymbolTable = (SymbolTable)value;
+            }
+            else if (suffixLength == Constants.XMLGRAMMAR_POOL_PROPERTY.length() &&
+                propertyId.endsWith(Constants.XMLGRAMMAR_POOL_PROPERTY)) {
+                fGrammarPool = (XMLGrammarPool)value;
+            }
+        }
+
+    } // setProperty(String,Object)
+
+    /**
+     * Returns the default state for a feature, or null if this
+     * component does not want to report a default value for this
+     * feature.
+     *
+     * @param featureId The feature identifier.
+     */
+    public Boolean getFeatureDefault(String featureId) {
+        for (int i = 0; i < RECOGNIZED_FEATURES.length; i++) {
+            if (RECOGNIZED_FEATURES[i].equals(featureId)) {
+                return FEATURE_DEFAULTS[i];
+            }
+        }
+        return null;
+    } // getFeatureDefault(String):Boolean
+
+    /**
+     * Returns the default state for a property, or null if this
+     * component does not want to report a default value for this
+     * property.
+     *
+     * @param propertyId The property identifier.
+     */
+    public Object getPropertyDefault(String propertyId) {
+        for (int i = 0; i < RECOGNIZED_PROPERTIES.length; i++) {
+            if (RECOGNIZED_PROPERTIES[i].equals(propertyId)) {
+                return PROPERTY_DEFAULTS[i];
+            }
+        }
+        return null;
+    } // getPropertyDefault(String):Object
+
+    //
+    // XMLDocumentSource methods
+    //
+
+    /** Sets the document handler. */
+    public void setDocumentHandler(XMLDocumentHandler documentHandler) {
+        fDocumentHandler = documentHandler;
+    } // setDocumentHandler(XMLDocumentHandler)
+
+    /** Returns the document handler. */
+    public XMLDocumentHandler getDocumentHandler() {
+        return fDocumentHandler;
+    } // getDocumentHandler():XMLDocumentHandler
+
+    //
+    // XMLDTDSource methods
+    //
+
+    /** Sets the DTD handler. */
+    public void setDTDHandler(XMLDTDHandler dtdHandler) {
+        fDTDHandler = dtdHandler;
+    } // setDTDHandler(XMLDTDHandler)
+
+    /** Returns the DTD handler. */
+    public XMLDTDHandler getDTDHandler() {
+        return fDTDHandler;
+    } // getDTDHandler():XMLDTDHandler
+
+    //
+    // Private methods
+    //
+
+    /** Reads the header of the document and starts it. */
+    private void readHeader() throws IOException {
+        for (int i = 0; i < SchemaInformedFormat.MAGIC.length; i++) {
+            if (fInput.readByte() != SchemaInformedFormat.MAGIC[i]) {
+                throw new IOException("The input isn't a schema-informed binary stream.");
+            }
+        }
+        int version = fInput.readByte();
+        if (version != SchemaInformedFormat.VERSION) {
+            throw new IOException("Version " + version + " of the schema-informed binary format isn't supported.");
+        }
+        fInput.readByte();
+        String encoding = fInput.readString();
+        fLocator.fPublicId = fInput.readString();
+        fLocator.fLiteralSystemId = fInput.readString();
+        fLocator.fBaseSystemId = fInput.readString();
+        fLocator.fExpandedSystemId = fInput.readString();
+        fLocator.fXMLVersion = fInput.readString();
+        fLocator.fEncoding = encoding;
+        if (fDocumentHandler != null) {
+            fDocumentHandler.startDocument(fLocator, encoding, fNamespaceContext, null);
+        }
+    } // readHeader()
+
+    /** Reads the content of the document up to its end. */
+    private void readContent() throws IOException {
+        XMLDocumentHandler handler = fDocumentHandler;
+        while (true) {
+            int code = fInput.readInt();
+            switch (code) {
+                case SchemaInformedFormat.END: {
+                    if (fDepth == 0) {
+                        if (handler != null) {
+                            handler.endDocument(null);
+                        }
+                        return;
+                    }
+                    fDepth--;
+                    fContentModels[fDepth] = null;
+                    fStates[fDepth] = null;
+                    fValueTypes[fDepth] = null;
+                    if (handler != null) {
+                        handler.endElement(fElements[fDepth], null);
+                    }
+                    fNamespaceContext.popContext();
+                    break;
+                }
+                case SchemaInformedFormat.TEXT: {
+                    XMLString text = fInput.readText();
+                    if (handler != null) {
+                        handler.characters(text, null);
+                    }
+                    break;
+                }
+                case SchemaInformedFormat.SPACE: {
+                    String space = fInput.readString();
+                    if (space == null) {
+                        throw corrupt();
+                    }
+                    if (handler != null) {
+                        handler.characters(fInput.toText(space), null);
+                    }
+                    break;
+                }
+                case SchemaInformedFormat.VALUE: {
+                    if (fDepth == 0 || fValueKinds[fDepth - 1] == SchemaInformedFormat.KIND_NONE) {
+                        throw corrupt();
+                    }
+                    String value = fGrammar.readValue(fInput, fValueKinds[fDepth - 1],
+                            fValueTypes[fDepth - 1]);
+                    if (handler != null) {
+                        handler.characters(fInput.toText(value), null);
+                    }
+                    break;
+                }
+                case SchemaInformedFormat.START_ELEMENT:
+                case SchemaInformedFormat.EMPTY_ELEMENT: {
+                    fInput.readName(fElementName);
+                    readElement(code == SchemaInformedFormat.START_ELEMENT);
+                    break;
+                }
+                case SchemaInformedFormat.EVENT: {
+                    readEvent(fInput.readByte());
+                    break;
+                }
+                default: {
+                    code -= SchemaInformedFormat.FIRST_PARTICLE;
+                    readParticleName(code >> 1);
+                    readElement((code & 1) == 0);
+                    break;
+                }
+            }
+        }
+    } // readContent()
+
+    /**
+     * Reads the name of the element declaration with the given index in
+     * the list of those the content model of the current element expects
+     * into the element name.
+     */
+    private void readParticleName(int index) throws IOException {
+        if (fDepth == 0 || fContentModels[fDepth - 1] == null) {
+            throw corrupt();
+        }
+        Vector expected = fContentModels[fDepth - 1].whatCanGoHere(fStates[fDepth - 1]);
+        if (index >= expected.size() || !(expected.elementAt(index) instanceof XSElementDecl)) {
+            throw corrupt();
+        }
+        XSElementDecl decl = (XSElementDecl) expected.elementAt(index);
+        if (decl.fTargetNamespace != null) {
+            String rawname = fInput.readString();
+            String prefix = fInput.getPrefix();
+            fElementName.setValues(prefix != null ? prefix : XMLSymbols.EMPTY_STRING,
+                    decl.fName, rawname, decl.fTargetNamespace);
+        }
+        else {
+            fElementName.setValues(null, decl.fName, decl.fName, null);
+        }
+    } // readParticleName(int)
+
+    /**
+     * Reads the header and attributes of the start element or empty
+     * element whose name has been read, and passes it on.
+     */
+    private void readElement(boolean start) throws IOException {
+
+        // declaration and type definition
+        XSElementDecl decl = null;
+        if (fDepth > 0 && fContentModels[fDepth - 1] != null) {
+            Object matched = fContentModels[fDepth - 1].oneTransition(fElementName,
+                    fStates[fDepth - 1], fGrammar.getSubstitutionGroupHandler());
+            if (matched instanceof XSElementDecl) {
+                decl = (XSElementDecl) matched;
+            }
+        }
+        int header = fInput.readInt();
+        if (decl == null && (header & SchemaInformedFormat.ELEMENT_DECLARED) != 0) {
+            decl = fGrammar.getGlobalElementDecl(fElementName);
+            if (decl == null) {
+                throw new IOException("The declaration of the element '" + fElementName.rawname
+                                      + "' can't be found in the grammar pool.");
+            }
+        }
+        XSTypeDefinition type = decl != null ? decl.fType : null;
+        if ((header & SchemaInformedFormat.ELEMENT_TYPE) != 0) {
+            String namespace = fInput.readString();
+            String name = fInput.readString();
+            type = fGrammar.getTypeDefinition(namespace, name);
+            if (type == null) {
+                throw new IOException("The type definition '" + name
+                                      + "' can't be found in the grammar pool.");
+            }
+        }
+
+        // namespace declarations
+        fNamespaceContext.pushContext();
+        int count = header >>> SchemaInformedFormat.ELEMENT_NAMESPACES_SHIFT;
+        for (int i = 0; i < count; i++) {
+            String prefix = fInput.readString();
+            String uri = fInput.readString();
+            fNamespaceContext.declarePrefix(prefix != null ? prefix : XMLSymbols.EMPTY_STRING, uri);
+        }
+
+        // attributes
+        fAttributes.removeAllAttributes();
+        XSAttributeDeclaration[] uses = null;
+        int code = (header & SchemaInformedFormat.ELEMENT_ATTRIBUTES) != 0
+                 ? fInput.readInt() : SchemaInformedFormat.END_ATTRIBUTES;
+        for (; code != SchemaInformedFormat.END_ATTRIBUTES; code = fInput.readInt()) {
+            int index = fAttributes.getLength();
+            if (code == SchemaInformedFormat.ATTRIBUTE
+                || code == SchemaInformedFormat.ATTRIBUTE_QNAME) {
+                if (code == SchemaInformedFormat.ATTRIBUTE) {
+                    fInput.readName(fAttributeName);
+                }
+                else {
+                    fInput.readQName(fAttributeName);
+                }
+                String attributeType = fInput.readString();
+                String value = fInput.readText().toString();
+                int flags = fInput.readByte();
+                fAttributes.addAttributeNS(fAttributeName, attributeType, value);
+                if ((flags & BinaryEventFormat.ATTRIBUTE_NON_NORMALIZED) != 0) {
+                    fAttributes.setNonNormalizedValue(index, fInput.readText().toString());
+                }
+                fAttributes.setSpecified(index, (flags & BinaryEventFormat.ATTRIBUTE_SPECIFIED) != 0);
+                continue;
+            }
+            if (uses == null) {
+                uses = fGrammar.getAttributes(type);
+            }
+            code -= SchemaInformedFormat.FIRST_ATTRIBUTE_USE;
+            if ((code >> 1) >= uses.length) {
+                throw corrupt();
+            }
+            XSAttributeDeclaration use = uses[code >> 1];
+            String localpart = use.getName();
+            String uri = use.getNamespace();
+            if (uri != null) {
+                String rawname = fInput.readString();
+                fAttributeName.setValues(fInput.getPrefix(), localpart, rawname, uri);
+            }
+            else {
+                fAttributeName.setValues(null, localpart, localpart, null);
+            }
+            String value;
+            if ((code & 1) != 0) {
+                XSSimpleTypeDefinition valueType = use.getTypeDefinition();
+                int kind = fGrammar.getValueKind(valueType);
+                if (kind == SchemaInformedFormat.KIND_NONE) {
+                    throw corrupt();
+                }
+                value = fGrammar.readValue(fInput, kind, valueType);
+            }
+            else {
+                value = fInput.readText().toString();
+            }
+            fAttributes.addAttributeNS(fAttributeName, XMLSymbols.fCDATASymbol, value);
+            fAttributes.setSpecified(index, true);
+        }
+
+        // pass it on
+        if (!start) {
+            if (fDocumentHandler != null) {
+                fDocumentHandler.emptyElement(fElementName, fAttributes, null);
+            }
+            fNamespaceContext.popContext();
+            return;
+        }
+        if (fDepth == fElements.length) {
+            int length = fDepth << 1;
+            QName[] elements = new QName[length];
+            System.arraycopy(fElements, 0, elements, 0, fDepth);
+            fElements = elements;
+            XSCMValidator[] contentModels = new XSCMValidator[length];
+            System.arraycopy(fContentModels, 0, contentModels, 0, fDepth);
+            fContentModels = contentModels;
+            int[][] states = new int[length][];
+            System.arraycopy(fStates, 0, states, 0, fDepth);
+            fStates = states;
+            XSSimpleTypeDefinition[] valueTypes = new XSSimpleTypeDefinition[length];
+            System.arraycopy(fValueTypes, 0, valueTypes, 0, fDepth);
+            fValueTypes = valueTypes;
+            int[] valueKinds = new int[length];
+            System.arraycopy(fValueKinds, 0, valueKinds, 0, fDepth);
+            fValueKinds = valueKinds;
+        }
+        QName element = fElements[fDepth];
+        if (element == null) {
+            element = fElements[fDepth] = new QName();
+        }
+        element.setValues(fElementName);
+        XSCMValidator contentModel = fGrammar.getContentModel(type);
+        XSSimpleTypeDefinition valueType = fGrammar.getValueType(type);
+        fContentModels[fDepth] = contentModel;
+        fStates[fDepth] = contentModel != null ? contentModel.startContentModel() : null;
+        fValueTypes[fDepth] = valueType;
+        fValueKinds[fDepth] = fGrammar.getValueKind(valueType);
+        fDepth++;
+        if (fDocumentHandler != null) {
+            fDocumentHandler.startElement(element, fAttributes, null);
+        }
+
+    } // readElement(boolean)
+
+    /** Reads a document event which isn't schema-informed and passes it on. */
+    private void readEvent(int event) throws IOException {
+        XMLDocumentHandler handler = fDocumentHandler;
+        switch (event) {
+            case BinaryEventFormat.START_ELEMENT:
+            case BinaryEventFormat.EMPTY_ELEMENT: {
+                fInput.readQName(fElementName);
+                readElement(event == BinaryEventFormat.START_ELEMENT);
+                break;
+            }
+            case BinaryEventFormat.IGNORABLE_WHITESPACE: {
+                XMLString text = fInput.readText();
+                if (handler != null) {
+                    handler.ignorableWhitespace(text, null);
+                }
+                break;
+            }
+            case BinaryEventFormat.COMMENT: {
+                XMLString text = fInput.readText();
+                if (handler != null) {
+                    handler.comment(text, null);
+                }
+                break;
+            }
+            case BinaryEventFormat.PROCESSING_INSTRUCTION: {
+                String target = fInput.readString();
+                XMLString data = fInput.readText();
+                if (handler != null) {
+                    handler.processingInstruction(target, data, null);
+                }
+                break;
+            }
+            case BinaryEventFormat.START_CDATA: {
+                if (handler != null) {
+                    handler.startCDATA(null);
+                }
+                break;
+            }
+            case BinaryEventFormat.END_CDATA: {
+                if (handler != null) {
+                    handler.endCDATA(null);
+                }
+                break;
+            }
+            case BinaryEventFormat.START_GENERAL_ENTITY: {
+                String name = fInput.readString();
+                String publicId = fInput.readString();
+                String literalSystemId = fInput.readString();
+                String baseSystemId = fInput.readString();
+                String expandedSystemId = fInput.readString();
+                String encoding = fInput.readString();
+                fResourceIdentifier.setValues(publicId, literalSystemId,
+                        baseSystemId, expandedSystemId);
+                if (handler != null) {
+                    handler.startGeneralEntity(name, fResourceIdentifier, encoding, null);
+                }
+                break;
+            }
+            case BinaryEventFormat.TEXT_DECL: {
+                String version = fInput.readString();
+                String encoding = fInput.readString();
+                if (handler != null) {
+                    handler.textDecl(version, encoding, null);
+                }
+                break;
+            }
+            case BinaryEventFormat.END_GENERAL_ENTITY: {
+                String name = fInput.readString();
+                if (handler != null) {
+                    handler.endGeneralEntity(name, null);
+                }
+                break;
+            }
+            case BinaryEventFormat.XML_DECL: {
+                String version = fInput.readString();
+                String encoding = fInput.readString();
+                String standalone = fInput.readString();
+                if (handler != null) {
+                    handler.xmlDecl(version, encoding, standalone, null);
+                }
+                break;
+            }
+            case BinaryEventFormat.DOCTYPE_DECL: {
+                String rootElement = fInput.readString();
+                String publicId = fInput.readString();
+                String systemId = fInput.readString();
+                if (handler != null) {
+                    handler.doctypeDecl(rootElement, publicId, systemId, null);
+                }
+                if (fDTDHandler != null) {
+                    fDTDHandler.startDTD(fLocator, null);
+                    fDTDHandler.endDTD(null);
+                }
+                break;
+            }
+            default: {
+                throw corrupt();
+            }
+        }
+    } // readEvent(int)
+
+    /** Returns the exception thrown for a corrupt stream. */
+    private static IOException corrupt() {
+        return new IOException("The schema-informed binary stream is corrupt.");
+    } // corrupt():IOException
+
+} // class SchemaInformedDecoder
@@ -0,0 +1,762 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.binary;
+
+import java.io.OutputStream;
+import java.util.Vector;
+
+import org.apache.xerces.impl.Constants;
+import org.apache.xerces.impl.xs.XSElementDecl;
+import org.apache.xerces.impl.xs.models.XSCMValidator;
+import org.apache.xerces.util.XMLSymbols;
+import org.apache.xerces.xni.Augmentations;
+import org.apache.xerces.xni.NamespaceContext;
+import org.apache.xerces.xni.QName;
+import org.apache.xerces.xni.XMLAttributes;
+import org.apache.xerces.xni.XMLDocumentHandler;
+import org.apache.xerces.xni.XMLLocator;
+import org.apache.xerces.xni.XMLResourceIdentifier;
+import org.apache.xerces.xni.XMLString;
+import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.grammars.XMLGrammarPool;
+import org.apache.xerces.xni.parser.XMLComponent;
+import org.apache.xerces.xni.parser.XMLComponentManager;
+import org.apache.xerces.xni.parser.XMLConfigurationException;
+import org.apache.xerces.xni.parser.XMLDocumentFilter;
+import org.apache.xerces.xni.parser.XMLDocumentSource;
+import org.apache.xerces.xs.ElementPSVI;
+import org.apache.xerces.xs.XSAttributeDeclaration;
+import org.apache.xerces.xs.XSSimpleTypeDefinition;
+import org.apache.xerces.xs.XSTypeDefinition;
+
+/**
+ * This class writes the document events it receives to an output stream
+ * in the schema-informed binary format described in
+ * {@link SchemaInformedFormat}, and passes them on to the next handler in
+ * the pipeline, if any. It belongs after the schema validator in the
+ * pipeline; the document can be read back with
+ * {@link SchemaInformedDecoder}.
+ * <p>
+ * Elements which the content model of their parent expects are written as
+ * their index in the list of expected elements, attributes which the type
+ * definition of their element declares as their index in its attribute
+ * uses, and element and attribute values which the decoder gives back
+ * exactly as typed values of their simple types. Everything else is
+ * written as it is in {@link BinaryEventWriter}. The content models are
+ * those compiled by the validator, and the schema grammars are looked up in
+ * the grammar pool; while a document is validated against a schema which
+ * isn't in the pool yet, the declarations found by the validator are used.
+ * The decoder must have the same schema grammars.
+ * <p>
+ * Augmentations, including PSVI, aren't recorded. The events are buffered
+ * and the output stream is flushed at the end of each document. I/O errors
+ * are reported as an {@link XNIException} wrapping the
+ * <code>IOException</code>.
+ * <p>
+ * This component can use the following features and properties but they
+ * are not required:
+ * <ul>
+ *  <li>http://apache.org/xml/properties/internal/grammar-pool</li>
+ * </ul>
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+public class SchemaInformedEncoder
+    implements XMLComponent, XMLDocumentFilter {
+
+    //
+    // Constants
+    //
+
+    // property identifiers
+
+    /** Property identifier: grammar pool. */
+    protected static final String XMLGRAMMAR_POOL =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.XMLGRAMMAR_POOL_PROPERTY;
+
+    // recognized features and properties
+
+    /** Recognized features. */
+    private static final String[] RECOGNIZED_FEATURES = {
+    };
+
+    /** Feature defaults. */
+    private static final Boolean[] FEATURE_DEFAULTS = {
+    };
+
+    /** Recognized properties. */
+    private static final String[] RECOGNIZED_PROPERTIES = {
+        XMLGRAMMAR_POOL,
+    };
+
+    /** Property defaults. */
+    private static final Object[] PROPERTY_DEFAULTS = {
+        null,
+    };
+
+    //
+    // Data
+    //
+
+    /** The output stream. */
+    protected OutputStream fOutputStream;
+
+    // properties
+
+    /** Grammar pool. */
+    protected XMLGrammarPool fGrammarPool;
+
+    // handlers
+
+    /** The document source. */
+    protected XMLDocumentSource fDocumentSource;
+
+    /** The next handler in the pipeline. */
+    protected XMLDocumentHandler fDocumentHandler;
+
+    // state
+
+    /** The namespace context of the document. */
+    private NamespaceContext fNamespaceContext;
+
+    /** The output. */
+    private final BinaryOutput fOutput = new BinaryOutput();
+
+    /** The schema information. */
+    private final SchemaInformedGrammar fGrammar = new SchemaInformedGrammar();
+
+    /** The number of open elements. */
+    private int fDepth;
+
+    /** The content models of the open elements. */
+    private XSCMValidator[] fContentModels = new XSCMValidator[16];
+
+    /** The content model states of the open elements. */
+    private int[][] fStates = new int[16][];
+
+    /** The simple types of the values of the open elements. */
+    private XSSimpleTypeDefinition[] fValueTypes = new XSSimpleTypeDefinition[16];
+
+    /** The kinds of the typed values of the open elements. */
+    private int[] fValueKinds = new int[16];
+
+    /** Qualified name. */
+    private final QName fAttributeName = new QName();
+
+    //
+    // Constructors
+    //
+
+    /** Default constructor. */
+    public SchemaInformedEncoder() {
+    } // <init>()
+
+    /** Constructs an encoder which writes to the given stream. */
+    public SchemaInformedEncoder(OutputStream outputStream) {
+        fOutputStream = outputStream;
+    } // <init>(OutputStream)
+
+    //
+    // Public methods
+    //
+
+    /** Sets the output stream. */
+    public void setOutputStream(OutputStream outputStream) {
+        fOutputStream = outputStream;
+    } // setOutputStream(OutputStream)
+
+    /** Returns the output stream. */
+    public OutputStream getOutputStream() {
+        return fOutputStream;
+    } // getOutputStream():OutputStream
+
+    /** Sets the grammar pool in which schema grammars are looked up. */
+    public void setGrammarPool(XMLGrammarPool grammarPool) {
+        fGrammarPool = grammarPool;
+    } // setGrammarPool(XMLGrammarPool)
+
+    /** Returns the grammar pool. */
+    public XMLGrammarPool getGrammarPool() {
+        return fGrammarPool;
+    } // getGrammarPool():XMLGrammarPool
+
+    //
+    // XMLComponent methods
+    //
+
+    /**
+     * Resets the component. The component can query the component manager
+     * about any features and properties that affect the operation of the
+     * component.
+     *
+     * @param componentManager The component manager.
+     *
+     * @throws XNIException Thrown by component on initialization error.
+     */
+    public void reset(XMLComponentManager componentManager)
+        throws XNIException {
+        try {
+            fGrammarPool = (XMLGrammarPool)componentManager.getProperty(XMLGRAMMAR_POOL);
+        }
+        catch (XMLConfigurationException e) {
+            fGrammarPool = null;
+        }
+    } // reset(XMLComponentManager)
+
+    /**
+     * Returns a list of feature identifiers that are recognized by
+     * this component. This method may return null if no features
+     * are recognized by this component.
+     */
+    public String[] getRecognizedFeatures() {
+        return (String[])(RECOGNIZED_FEATURES.clone());
+    } // getRecognizedFeatures():String[]
+
+    /**
+     * Sets the state of a feature. This method is called by the component
+     * manager any time after reset when a feature changes state.
+     *
+     * @param featureId The feature identifier.
+     * @param state     The state of the feature.
+     */
+    public void setFeature(String featureId, boolean state)
+        throws XMLConfigurationException {
+    } // setFeature(String,boolean)
+
+    /**
+     * Returns a list of property identifiers that are recognized by
+     * this component. This method may return null if no properties
+     * are recognized by this component.
+     */
+    public String[] getRecognizedProperties() {
+        return (String[])(RECOGNIZED_PROPERTIES.clone());
+    } // getRecognizedProperties():String[]
+
+    /**
+     * Sets the value of a property. This method is called by the component
+     * manager any time after reset when a property changes value.
+     *
+     * @param propertyId The property identifier.
+     * @param value      The value of the property.
+     */
+    public void setProperty(String propertyId, Object value)
+        throws XMLConfigurationException {
+
+        // Xerces properties
+        if (propertyId.startsWith(Constants.XERCES_PROPERTY_PREFIX)) {
+            final int suffixLength = propertyId.length() - Constants.XERCES_PROPERTY_PREFIX.length();
+
+            if (suffixLength == Constants.XMLGRAMMAR_POOL_PROPERTY.length() &&
+                propertyId.endsWith(Constants.XMLGRAMMAR_POOL_PROPERTY)) {
+                fGrammarPool = (XMLGrammarPool)value;
+            }
+        }
+
+    } // setProperty(String,Object)
+
+    /**
+     * Returns the default state for a feature, or null if this
+     * component does not want to report a default value for this
+     * feature.
+     *
+     * @param featureId The feature identifier.
+     */
+    public Boolean getFeatureDefault(String featureId) {
+        for (int i = 0; i < RECOGNIZED_FEATURES.length; i++) {
+            if (RECOGNIZED_FEATURES[i].equals(featureId)) {
+                return FEATURE_DEFAULTS[i];
+            }
+        }
+        return null;
+    } // getFeatureDefault(String):Boolean
+
+    /**
+     * Returns the default state for a property, or null if this
+     * component does not want to report a default value for this
+     * property.
+     *
+     * @param propertyId The property identifier.
+     */
+    public Object getPropertyDefault(String propertyId) {
+        for (int i = 0; i < RECOGNIZED_PROPERTIES.length; i++) {
+            if (RECOGNIZED_PROPERTIES[i].equals(propertyId)) {
+                return PROPERTY_DEFAULTS[i];
+            }
+        }
+        return null;
+    } // getPropertyDefault(String):Object
+
+    //
+    // XMLDocumentSource methods
+    //
+
+    /** Sets the document handler. */
+    public void setDocumentHandler(XMLDocumentHandler documentHandler) {
+        fDocumentHandler = documentHandler;
+    } // setDocumentHandler(XMLDocumentHandler)
+
+    /** Returns the document handler. */
+    public XMLDocumentHandler getDocumentHandler() {
+        return fDocumentHandler;
+    } // getDocumentHandler():XMLDocumentHandler
+
+    //
+    // XMLDocumentHandler methods
+    //
+
+    /** Sets the document source. */
+    public void setDocumentSource(XMLDocumentSource source) {
+        fDocumentSource = source;
+    } // setDocumentSource(XMLDocumentSource)
+
+    /** Returns the document source. */
+    public XMLDocumentSource getDocumentSource() {
+        return fDocumentSource;
+    } // getDocumentSource():XMLDocumentSource
+
+    /** The start of the document. */
+    public void startDocument(XMLLocator locator, String encoding,
+                              NamespaceContext namespaceContext, Augmentations augs)
+        throws XNIException {
+        fNamespaceContext = namespaceContext;
+        fDepth = 0;
+        fGrammar.reset(fGrammarPool);
+        fOutput.reset(fOutputStream);
+        fOutput.writeBytes(SchemaInformedFormat.MAGIC);
+        fOutput.writeByte(SchemaInformedFormat.VERSION);
+        fOutput.writeByte(0);
+        fOutput.writeString(encoding);
+        if (locator != null) {
+            fOutput.writeString(locator.getPublicId());
+            fOutput.writeString(locator.getLiteralSystemId());
+            fOutput.writeString(locator.getBaseSystemId());
+            fOutput.writeString(locator.getExpandedSystemId());
+            fOutput.writeString(locator.getXMLVersion());
+        }
+        else {
+            for (int i = 0; i < 5; i++) {
+                fOutput.writeString(null);
+            }
+        }
+        if (fDocumentHandler != null) {
+            fDocumentHandler.startDocument(locator, encoding, namespaceContext, augs);
+        }
+    } // startDocument(XMLLocator,String,NamespaceContext,Augmentations)
+
+    /** Notifies of the presence of an XMLDecl line in the document. */
+    public void xmlDecl(String version, String encoding, String standalone, Augmentations augs)
+        throws XNIException {
+        writeEvent(BinaryEventFormat.XML_DECL);
+        fOutput.writeString(version);
+        fOutput.writeString(encoding);
+        fOutput.writeString(standalone);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.xmlDecl(version, encoding, standalone, augs);
+        }
+    } // xmlDecl(String,String,String,Augmentations)
+
+    /** Notifies of the presence of the DOCTYPE line in the document. */
+    public void doctypeDecl(String rootElement, String publicId, String systemId, Augmentations augs)
+        throws XNIException {
+        writeEvent(BinaryEventFormat.DOCTYPE_DECL);
+        fOutput.writeString(rootElement);
+        fOutput.writeString(publicId);
+        fOutput.writeString(systemId);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.doctypeDecl(rootElement, publicId, systemId, augs);
+        }
+    } // doctypeDecl(String,String,String,Augmentations)
+
+    /** A comment. */
+    public void comment(XMLString text, Augmentations augs) throws XNIException {
+        writeEvent(BinaryEventFormat.COMMENT);
+        fOutput.writeText(text.ch, text.offset, text.length);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.comment(text, augs);
+        }
+    } // comment(XMLString,Augmentations)
+
+    /** A processing instruction. */
+    public void processingInstruction(String target, XMLString data, Augmentations augs)
+        throws XNIException {
+        writeEvent(BinaryEventFormat.PROCESSING_INSTRUCTION);
+        fOutput.writeString(target);
+        fOutput.writeText(data.ch, data.offset, data.length);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.processingInstruction(target, data, augs);
+        }
+    } // processingInstruction(String,XMLString,Augmentations)
+
+    /** The start of an element. */
+    public void startElement(QName element, XMLAttributes attributes, Augmentations augs)
+        throws XNIException {
+        XSTypeDefinition type = writeElement(true, element, attributes, augs);
+        if (fDepth == fStates.length) {
+            int length = fDepth << 1;
+            XSCMValidator[] contentModels = new XSCMValidator[length];
+            System.arraycopy(fContentModels, 0, contentModels, 0, fDepth);
+            fContentModels = contentModels;
+            int[][] states = new int[length][];
+            System.arraycopy(fStates, 0, states, 0, fDepth);
+            fStates = states;
+            XSSimpleTypeDefinition[] valueTypes = new XSSimpleTypeDefinition[length];
+            System.arraycopy(fValueTypes, 0, valueTypes, 0, fDepth);
+            fValueTypes = valueTypes;
+            int[] valueKinds = new int[length];
+            System.arraycopy(fValueKinds, 0, valueKinds, 0, fDepth);
+            fValueKinds = valueKinds;
+        }
+        XSCMValidator contentModel = fGrammar.getContentModel(type);
+        XSSimpleTypeDefinition valueType = fGrammar.getValueType(type);
+        fContentModels[fDepth] = contentModel;
+        fStates[fDepth] = contentModel != null ? contentModel.startContentModel() : null;
+        fValueTypes[fDepth] = valueType;
+        fValueKinds[fDepth] = fGrammar.getValueKind(valueType);
+        fDepth++;
+        if (fDocumentHandler != null) {
+            fDocumentHandler.startElement(element, attributes, augs);
+        }
+    } // startElement(QName,XMLAttributes,Augmentations)
+
+    /** An empty element. */
+    public void emptyElement(QName element, XMLAttributes attributes, Augmentations augs)
+        throws XNIException {
+        writeElement(false, element, attributes, augs);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.emptyElement(element, attributes, augs);
+        }
+    } // emptyElement(QName,XMLAttributes,Augmentations)
+
+    /** This method notifies the start of a general entity. */
+    public void startGeneralEntity(String name, XMLResourceIdentifier identifier,
+                                   String encoding, Augmentations augs)
+        throws XNIException {
+        writeEvent(BinaryEventFormat.START_GENERAL_ENTITY);
+        fOutput.writeString(name);
+        if (identifier != null) {
+            fOutput.writeString(identifier.getPublicId());
+            fOutput.writeString(identifier.getLiteralSystemId());
+            fOutput.writeString(identifier.getBaseSystemId());
+            fOutput.writeString(identifier.getExpandedSystemId());
+        }
+        else {
+            for (int i = 0; i < 4; i++) {
+                fOutput.writeString(null);
+            }
+        }
+        fOutput.writeString(encoding);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.startGeneralEntity(name, identifier, encoding, augs);
+        }
+    } // startGeneralEntity(String,XMLResourceIdentifier,String,Augmentations)
+
+    /** Notifies of the presence of a TextDecl line in an entity. */
+    public void textDecl(String version, String encoding, Augmentations augs)
+        throws XNIException {
+        writeEvent(BinaryEventFormat.TEXT_DECL);
+        fOutput.writeString(version);
+        fOutput.writeString(encoding);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.textDecl(version, encoding, augs);
+        }
+    } // textDecl(String,String,Augmentations)
+
+    /** This method notifies the end of a general entity. */
+    public void endGeneralEntity(String name, Augmentations augs) throws XNIException {
+        writeEvent(BinaryEventFormat.END_GENERAL_ENTITY);
+        fOutput.writeString(name);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.endGeneralEntity(name, augs);
+        }
+    } // endGeneralEntity(String,Augmentations)
+
+    /** Character content. */
+    public void characters(XMLString text, Augmentations augs) throws XNIException {
+        int kind = fDepth > 0 ? fValueKinds[fDepth - 1] : SchemaInformedFormat.KIND_NONE;
+        Object value = null;
+        if (kind != SchemaInformedFormat.KIND_NONE) {
+            value = fGrammar.toValue(kind, fValueTypes[fDepth - 1], text.toString());
+        }
+        if (value != null) {
+            fOutput.writeInt(SchemaInformedFormat.VALUE);
+            fGrammar.writeValue(fOutput, kind, value);
+        }
+        else if (isSpace(text)) {
+            fOutput.writeInt(SchemaInformedFormat.SPACE);
+            fOutput.writeString(text.toString());
+        }
+        else {
+            fOutput.writeInt(SchemaInformedFormat.TEXT);
+            fOutput.writeText(text.ch, text.offset, text.length);
+        }
+        if (fDocumentHandler != null) {
+            fDocumentHandler.characters(text, augs);
+        }
+    } // characters(XMLString,Augmentations)
+
+    /** Ignorable whitespace. */
+    public void ignorableWhitespace(XMLString text, Augmentations augs) throws XNIException {
+        writeEvent(BinaryEventFormat.IGNORABLE_WHITESPACE);
+        fOutput.writeText(text.ch, text.offset, text.length);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.ignorableWhitespace(text, augs);
+        }
+    } // ignorableWhitespace(XMLString,Augmentations)
+
+    /** The end of an element. */
+    public void endElement(QName element, Augmentations augs) throws XNIException {
+        fOutput.writeInt(SchemaInformedFormat.END);
+        fDepth--;
+        fContentModels[fDepth] = null;
+        fStates[fDepth] = null;
+        fValueTypes[fDepth] = null;
+        if (fDocumentHandler != null) {
+            fDocumentHandler.endElement(element, augs);
+        }
+    } // endElement(QName,Augmentations)
+
+    /** The start of a CDATA section. */
+    public void startCDATA(Augmentations augs) throws XNIException {
+        writeEvent(BinaryEventFormat.START_CDATA);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.startCDATA(augs);
+        }
+    } // startCDATA(Augmentations)
+
+    /** The end of a CDATA section. */
+    public void endCDATA(Augmentations augs) throws XNIException {
+        writeEvent(BinaryEventFormat.END_CDATA);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.endCDATA(augs);
+        }
+    } // endCDATA(Augmentations)
+
+    /** The end of the document. */
+    public void endDocument(Augmentations augs) throws XNIException {
+        fOutput.writeInt(SchemaInformedFormat.END);
+        fOutput.flush();
+        fNamespaceContext = null;
+        fGrammar.reset(null);
+        if (fDocumentHandler != null) {
+            fDocumentHandler.endDocument(augs);
+        }
+    } // endDocument(Augmentations)
+
+    //
+    // Private methods
+    //
+
+    /** Writes the code of a document event which isn't schema-informed. */
+    private void writeEvent(int event) {
+        fOutput.writeInt(SchemaInformedFormat.EVENT);
+        fOutput.writeByte(event);
+    } // writeEvent(int)
+
+    /**
+     * Writes a start element or an empty element, and returns the type
+     * definition of the element.
+     */
+    private XSTypeDefinition writeElement(boolean start, QName element,
+                                          XMLAttributes attributes, Augmentations augs) {
+
+        ElementPSVI psvi = augs != null ? (ElementPSVI) augs.getItem(Constants.ELEMENT_PSVI) : null;
+        Object hint = psvi != null ? psvi.getElementDeclaration() : null;
+        fGrammar.setElementHint(hint instanceof XSElementDecl ? (XSElementDecl) hint : null);
+
+        // element code: its index in the expected elements, if it's there
+        int code = start ? SchemaInformedFormat.START_ELEMENT : SchemaInformedFormat.EMPTY_ELEMENT;
+        boolean particle = false;
+        XSElementDecl decl = null;
+        if (fDepth > 0 && fContentModels[fDepth - 1] != null) {
+            XSCMValidator contentModel = fContentModels[fDepth - 1];
+            int[] state = fStates[fDepth - 1];
+            Vector expected = contentModel.whatCanGoHere(state);
+            int size = expected.size();
+            for (int i = 0; i < size; i++) {
+                Object item = expected.elementAt(i);
+                if (item instanceof XSElementDecl) {
+                    XSElementDecl expectedDecl = (XSElementDecl) item;
+                    if (expectedDecl.fName == element.localpart
+                        && expectedDecl.fTargetNamespace == element.uri
+                        && isSplit(element)) {
+                        code = SchemaInformedFormat.FIRST_PARTICLE + (i << 1) + (start ? 0 : 1);
+                        particle = true;
+                        break;
+                    }
+                }
+            }
+            Object matched = contentModel.oneTransition(element, state,
+                    fGrammar.getSubstitutionGroupHandler());
+            if (matched instanceof XSElementDecl) {
+                decl = (XSElementDecl) matched;
+            }
+        }
+        if (particle) {
+            fOutput.writeInt(code);
+            if (element.uri != null) {
+                fOutput.writeString(element.rawname);
+            }
+        }
+        else if (isSplit(element)) {
+            fOutput.writeInt(code);
+            fOutput.writeName(element);
+        }
+        else {
+            writeEvent(start ? BinaryEventFormat.START_ELEMENT : BinaryEventFormat.EMPTY_ELEMENT);
+            fOutput.writeQName(element);
+        }
+
+        // header: declaration, type definition and namespace declarations
+        int flags = 0;
+        if (decl == null) {
+            decl = fGrammar.getGlobalElementDecl(element);
+            if (decl != null) {
+                flags |= SchemaInformedFormat.ELEMENT_DECLARED;
+            }
+        }
+        XSTypeDefinition type = decl != null ? decl.fType : null;
+        XSTypeDefinition actualType = psvi != null ? psvi.getTypeDefinition() : null;
+        if (actualType != null && actualType != type && !actualType.getAnonymous()) {
+            flags |= SchemaInformedFormat.ELEMENT_TYPE;
+            type = actualType;
+        }
+        int length = attributes.getLength();
+        if (length > 0) {
+            flags |= SchemaInformedFormat.ELEMENT_ATTRIBUTES;
+        }
+        int count = fNamespaceContext != null ? fNamespaceContext.getDeclaredPrefixCount() : 0;
+        fOutput.writeInt((count << SchemaInformedFormat.ELEMENT_NAMESPACES_SHIFT) | flags);
+        if ((flags & SchemaInformedFormat.ELEMENT_TYPE) != 0) {
+            fOutput.writeString(type.getNamespace());
+            fOutput.writeString(type.getName());
+        }
+        for (int i = 0; i < count; i++) {
+            String prefix = fNamespaceContext.getDeclaredPrefixAt(i);
+            fOutput.writeString(prefix);
+            fOutput.writeString(fNamespaceContext.getURI(prefix));
+        }
+
+        // attributes
+        if (length == 0) {
+            return type;
+        }
+        XSAttributeDeclaration[] uses = fGrammar.getAttributes(type);
+        for (int i = 0; i < length; i++) {
+            attributes.getName(i, fAttributeName);
+            String value = attributes.getValue(i);
+            String nonNormalizedValue = attributes.getNonNormalizedValue(i);
+            int use = -1;
+            if (uses.length > 0 && attributes.isSpecified(i)
+                && attributes.getType(i) == XMLSymbols.fCDATASymbol
+                && (nonNormalizedValue == null || nonNormalizedValue.equals(value))
+                && isSplit(fAttributeName)) {
+                for (int j = 0; j < uses.length; j++) {
+                    if (uses[j].getName() == fAttributeName.localpart
+                        && uses[j].getNamespace() == fAttributeName.uri) {
+                        use = j;
+                        break;
+                    }
+                }
+            }
+            if (use != -1) {
+                XSSimpleTypeDefinition valueType = uses[use].getTypeDefinition();
+                int kind = fGrammar.getValueKind(valueType);
+                Object typedValue = kind != SchemaInformedFormat.KIND_NONE
+                                  ? fGrammar.toValue(kind, valueType, value) : null;
+                fOutput.writeInt(SchemaInformedFormat.FIRST_ATTRIBUTE_USE + (use << 1)
+                                 + (typedValue != null ? 1 : 0));
+                if (fAttributeName.uri != null) {
+                    fOutput.writeString(fAttributeName.rawname);
+                }
+                if (typedValue != null) {
+                    fGrammar.writeValue(fOutput, kind, typedValue);
+                }
+                else {
+                    fOutput.writeText(value);
+                }
+            }
+            else {
+                if (isSplit(fAttributeName)) {
+                    fOutput.writeInt(SchemaInformedFormat.ATTRIBUTE);
+                    fOutput.writeName(fAttributeName);
+                }
+                else {
+                    fOutput.writeInt(SchemaInformedFormat.ATTRIBUTE_QNAME);
+                    fOutput.writeQName(fAttributeName);
+                }
+                fOutput.writeString(attributes.getType(i));
+                fOutput.writeText(value);
+                boolean normalized = nonNormalizedValue != null && !nonNormalizedValue.equals(value);
+                int attributeFlags = 0;
+                if (attributes.isSpecified(i)) {
+                    attributeFlags |= BinaryEventFormat.ATTRIBUTE_SPECIFIED;
+                }
+                if (normalized) {
+                    attributeFlags |= BinaryEventFormat.ATTRIBUTE_NON_NORMALIZED;
+                }
+                fOutput.writeByte(attributeFlags);
+                if (normalized) {
+                    fOutput.writeText(nonNormalizedValue);
+                }
+            }
+        }
+        fOutput.writeInt(SchemaInformedFormat.END_ATTRIBUTES);
+        return type;
+
+    } // writeElement(boolean,QName,XMLAttributes,Augmentations):XSTypeDefinition
+
+    /** Returns true if the text is all white space. */
+    private static boolean isSpace(XMLString text) {
+        if (text.length == 0) {
+            return false;
+        }
+        char[] ch = text.ch;
+        int end = text.offset + text.length;
+        for (int i = text.offset; i < end; i++) {
+            char c = ch[i];
+            if (c != ' ' && c != '\n' && c != '\t' && c != '\r') {
+                return false;
+            }
+        }
+        return true;
+    } // isSpace(XMLString):boolean
+
+    /**
+     * Returns true if the prefix and local part of the given name are those
+     * of its raw name, so that they needn't be written. As the scanner does,
+     * the prefix of a name without one is the empty string if the name has a
+     * namespace and null otherwise.
+     */
+    private static boolean isSplit(QName name) {
+        String prefix = name.prefix;
+        String localpart = name.localpart;
+        String rawname = name.rawname;
+        if (prefix == null || prefix.length() == 0) {
+            return (prefix == null) == (name.uri == null)
+                && localpart != null && localpart.equals(rawname);
+        }
+        int length = prefix.length();
+        return localpart != null && rawname != null
+            && rawname.length() == length + 1 + localpart.length()
+            && rawname.charAt(length) == ':'
+            && rawname.startsWith(prefix) && rawname.endsWith(localpart);
+    } // isSplit(QName):boolean
+
+} // class SchemaInformedEncoder
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.binary;
+
+/**
+ * Constants of the schema-informed binary format written by
+ * {@link SchemaInformedEncoder} and read by {@link SchemaInformedDecoder}.
+ * Numbers, strings, text and qualified names are encoded as in
+ * {@link BinaryEventFormat}.
+ * <p>
+ * A document starts with a header: the four bytes of {@link #MAGIC}, the
+ * format version and a byte of header flags, followed by the encoding, the
+ * public identifier, the literal, base and expanded system identifiers,
+ * and the XML version of the document. It is followed by content up to the
+ * end of the document.
+ * <p>
+ * Both sides keep the same state while they go through the document: the
+ * element declaration, type definition and content model state of each
+ * open element, derived from the schema grammars in the grammar pool. The
+ * declaration of an element is the one the content model of its parent
+ * matches, if any, or the global declaration of that name, if the element
+ * says so. Its type definition is the one named by the element, if any,
+ * or the type definition of its declaration.
+ * <p>
+ * Content is a sequence of content codes and their arguments:
+ * <ul>
+ *  <li>{@link #END}: the end of the current element, or the end of the
+ *      document outside the root element;</li>
+ *  <li>{@link #TEXT}: characters, as text;</li>
+ *  <li>{@link #SPACE}: characters which are all white space, as a
+ *      string;</li>
+ *  <li>{@link #VALUE}: characters, as a typed value of the simple type of
+ *      the current element;</li>
+ *  <li>{@link #START_ELEMENT} and {@link #EMPTY_ELEMENT}: an element whose
+ *      raw name and namespace name follow, the prefix and local part being
+ *      those of the raw name;</li>
+ *  <li>{@link #EVENT}: any other document event, as an event code of
+ *      {@link BinaryEventFormat} and its arguments, including the start
+ *      and empty elements whose qualified names can't be written as their
+ *      raw names, with the element continuing as below;</li>
+ *  <li>{@link #FIRST_PARTICLE} and above: the start, or for odd codes the
+ *      empty element, of the element declaration with the index
+ *      <code>(code - FIRST_PARTICLE) / 2</code> in the list of those which
+ *      the content model of the current element can match in its current
+ *      state, followed by the raw name of the element if the declaration
+ *      has a namespace.</li>
+ * </ul>
+ * An element continues with its header: the number of namespace
+ * declarations shifted left by three, or'ed with {@link #ELEMENT_DECLARED},
+ * {@link #ELEMENT_TYPE} and {@link #ELEMENT_ATTRIBUTES}. It is followed by
+ * the namespace name and name of its type definition if it names one, its
+ * namespace declarations, each as a prefix and a namespace name, and if it
+ * has attributes, a sequence of attribute codes and their arguments:
+ * <ul>
+ *  <li>{@link #END_ATTRIBUTES}: the end of the attributes;</li>
+ *  <li>{@link #ATTRIBUTE} and {@link #ATTRIBUTE_QNAME}: an attribute, as
+ *      its raw name and namespace name as for elements, or its qualified
+ *      name, its type, value as text, a byte of attribute flags of
+ *      {@link BinaryEventFormat} and the non-normalized value as text if it
+ *      differs from the value;</li>
+ *  <li>{@link #FIRST_ATTRIBUTE_USE} and above: a specified CDATA attribute
+ *      of the attribute use with the index
+ *      <code>(code - FIRST_ATTRIBUTE_USE) / 2</code> in the type
+ *      definition of the element, followed by its raw name if the
+ *      declaration has a namespace, and by its value: as text, or for odd
+ *      codes as a typed value of the type of the declaration.</li>
+ * </ul>
+ * Typed values only replace text which the decoder gives back exactly:
+ * <ul>
+ *  <li>{@link #KIND_ENUMERATION}: the index in the enumeration facet;</li>
+ *  <li>{@link #KIND_BOOLEAN}: a byte, the index of the literal in
+ *      <code>false</code>, <code>true</code>, <code>0</code>,
+ *      <code>1</code>;</li>
+ *  <li>{@link #KIND_INTEGER}: a canonical integer of up to 18 digits, as a
+ *      variable length long integer with the sign in the lowest bit;</li>
+ *  <li>{@link #KIND_DECIMAL}: a decimal of up to 18 digits without leading
+ *      zeros, as the number of fraction digits followed by the digits as an
+ *      integer;</li>
+ *  <li>{@link #KIND_BASE64} and {@link #KIND_HEX}: the number of bytes
+ *      and the bytes of canonical binary data.</li>
+ * </ul>
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+final class SchemaInformedFormat {
+
+    //
+    // Constants
+    //
+
+    /** The bytes which start a document. */
+    public static final byte[] MAGIC = { 'X', 'N', 'I', 'S' };
+
+    /** The version of the format. */
+    public static final int VERSION = 1;
+
+    // content codes
+
+    public static final int END = 0;
+    public static final int TEXT = 1;
+    public static final int VALUE = 2;
+    public static final int START_ELEMENT = 3;
+    public static final int EMPTY_ELEMENT = 4;
+    public static final int EVENT = 5;
+    public static final int SPACE = 6;
+    public static final int FIRST_PARTICLE = 7;
+
+    // element header flags
+
+    /** Element header flag: the element was looked up by name. */
+    public static final int ELEMENT_DECLARED = 0x01;
+
+    /** Element header flag: the element names its type definition. */
+    public static final int ELEMENT_TYPE = 0x02;
+
+    /** Element header flag: the element has attributes. */
+    public static final int ELEMENT_ATTRIBUTES = 0x04;
+
+    /** Element header: the shift of the number of namespace declarations. */
+    public static final int ELEMENT_NAMESPACES_SHIFT = 3;
+
+    // attribute codes
+
+    public static final int END_ATTRIBUTES = 0;
+    public static final int ATTRIBUTE = 1;
+    public static final int ATTRIBUTE_QNAME = 2;
+    public static final int FIRST_ATTRIBUTE_USE = 3;
+
+    // value kinds
+
+    public static final int KIND_NONE = 0;
+    public static final int KIND_ENUMERATION = 1;
+    public static final int KIND_BOOLEAN = 2;
+    public static final int KIND_INTEGER = 3;
+    public static final int KIND_BASE64 = 4;
+    public static final int KIND_HEX = 5;
+    public static final int KIND_DECIMAL = 6;
+
+    //
+    // Constructors
+    //
+
+    /** This class can't be instantiated. */
+    private SchemaInformedFormat() {}
+
+} // class SchemaInformedFormat
@@ -0,0 +1,492 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.binary;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+import org.apache.xerces.impl.dv.util.Base64;
+import org.apache.xerces.impl.dv.util.HexBin;
+import org.apache.xerces.impl.xs.SchemaGrammar;
+import org.apache.xerces.impl.xs.SchemaSymbols;
+import org.apache.xerces.impl.xs.SubstitutionGroupHandler;
+import org.apache.xerces.impl.xs.XSComplexTypeDecl;
+import org.apache.xerces.impl.xs.XSDDescription;
+import org.apache.xerces.impl.xs.XSElementDecl;
+import org.apache.xerces.impl.xs.XSElementDeclHelper;
+import org.apache.xerces.impl.xs.models.CMBuilder;
+import org.apache.xerces.impl.xs.models.CMNodeFactory;
+import org.apache.xerces.impl.xs.models.XSCMValidator;
+import org.apache.xerces.xni.QName;
+import org.apache.xerces.xni.grammars.XMLGrammarPool;
+import org.apache.xerces.xs.StringList;
+import org.apache.xerces.xs.XSAttributeDeclaration;
+import org.apache.xerces.xs.XSAttributeUse;
+import org.apache.xerces.xs.XSComplexTypeDefinition;
+import org.apache.xerces.xs.XSConstants;
+import org.apache.xerces.xs.XSObjectList;
+import org.apache.xerces.xs.XSSimpleTypeDefinition;
+import org.apache.xerces.xs.XSTypeDefinition;
+
+/**
+ * The schema information shared by {@link SchemaInformedEncoder} and
+ * {@link SchemaInformedDecoder}: the lookup of global declarations and type
+ * definitions in the grammar pool, the content models and attribute uses
+ * of type definitions, and the typed values of simple types, as described
+ * in {@link SchemaInformedFormat}. What is derived from a grammar is cached
+ * for the current document.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+final class SchemaInformedGrammar
+    implements XSElementDeclHelper {
+
+    //
+    // Constants
+    //
+
+    /** No attribute declarations. */
+    private static final XSAttributeDeclaration[] NO_ATTRIBUTES = new XSAttributeDeclaration[0];
+
+    /** The key of the grammar of no namespace. */
+    private static final Object NO_NAMESPACE = new Object();
+
+    /** The boolean literals, by typed value. */
+    private static final String[] BOOLEAN_LITERALS = { "false", "true", "0", "1" };
+
+    /** The maximum number of digits of a typed integer. */
+    private static final int MAX_INTEGER_DIGITS = 18;
+
+    //
+    // Data
+    //
+
+    /** Grammar pool. */
+    private XMLGrammarPool fGrammarPool;
+
+    /** Schema grammar description. */
+    private final XSDDescription fXSDDescription = new XSDDescription();
+
+    /** Builds the content models of type definitions. */
+    private final CMBuilder fCMBuilder = new CMBuilder(new CMNodeFactory());
+
+    /** Matches substitution group members in content models. */
+    private final SubstitutionGroupHandler fSubGroupHandler = new SubstitutionGroupHandler(this);
+
+    /** The global declaration of the current element, if known otherwise. */
+    private XSElementDecl fElementHint;
+
+    /** Maps namespace names to grammars, or to this if there's none. */
+    private final HashMap fGrammars = new HashMap();
+
+    /** Maps complex type definitions to their attribute declarations. */
+    private final HashMap fAttributes = new HashMap();
+
+    /** Maps simple type definitions to their value kinds. */
+    private final HashMap fValueKinds = new HashMap();
+
+    /** Maps enumerated simple type definitions to maps of their indexes. */
+    private final HashMap fEnumerations = new HashMap();
+
+    //
+    // Constructors
+    //
+
+    /** Default constructor. */
+    public SchemaInformedGrammar() {
+        fXSDDescription.setContextType(XSDDescription.CONTEXT_ELEMENT);
+    } // <init>()
+
+    //
+    // Public methods
+    //
+
+    /** Starts a document with the grammars in the given pool. */
+    public void reset(XMLGrammarPool grammarPool) {
+        fGrammarPool = grammarPool;
+        fElementHint = null;
+        fGrammars.clear();
+        fAttributes.clear();
+        fValueKinds.clear();
+        fEnumerations.clear();
+    } // reset(XMLGrammarPool)
+
+    /**
+     * Sets the global declaration of the current element as found by the
+     * validator, which is used if its grammar isn't in the pool yet.
+     */
+    public void setElementHint(XSElementDecl decl) {
+        fElementHint = decl != null && decl.getScope() == XSConstants.SCOPE_GLOBAL ? decl : null;
+    } // setElementHint(XSElementDecl)
+
+    /** Returns the substitution group handler. */
+    public SubstitutionGroupHandler getSubstitutionGroupHandler() {
+        return fSubGroupHandler;
+    } // getSubstitutionGroupHandler():SubstitutionGroupHandler
+
+    /**
+     * Returns the global type definition of the given name, or null if it
+     * can't be found.
+     */
+    public XSTypeDefinition getTypeDefinition(String namespace, String name) {
+        if (SchemaSymbols.URI_SCHEMAFORSCHEMA.equals(namespace)) {
+            return SchemaGrammar.SG_SchemaNS.getGlobalTypeDecl(name);
+        }
+        SchemaGrammar grammar = getGrammar(namespace);
+        return grammar != null ? grammar.getGlobalTypeDecl(name) : null;
+    } // getTypeDefinition(String,String):XSTypeDefinition
+
+    /**
+     * Returns the content model of the given type definition, or null if
+     * it doesn't have element or mixed content.
+     */
+    public XSCMValidator getContentModel(XSTypeDefinition type) {
+        if (type instanceof XSComplexTypeDecl) {
+            XSComplexTypeDecl ctype = (XSComplexTypeDecl) type;
+            short contentType = ctype.getContentType();
+            if (contentType == XSComplexTypeDefinition.CONTENTTYPE_ELEMENT
+                || contentType == XSComplexTypeDefinition.CONTENTTYPE_MIXED) {
+                return ctype.getContentModel(fCMBuilder);
+            }
+        }
+        return null;
+    } // getContentModel(XSTypeDefinition):XSCMValidator
+
+    /**
+     * Returns the simple type of the values of elements of the given type
+     * definition, or null if they don't have simple content.
+     */
+    public XSSimpleTypeDefinition getValueType(XSTypeDefinition type) {
+        if (type instanceof XSSimpleTypeDefinition) {
+            return (XSSimpleTypeDefinition) type;
+        }
+        if (type instanceof XSComplexTypeDefinition) {
+            return ((XSComplexTypeDefinition) type).getSimpleType();
+        }
+        return null;
+    } // getValueType(XSTypeDefinition):XSSimpleTypeDefinition
+
+    /** Returns the declarations of the attribute uses of the given type definition. */
+    public XSAttributeDeclaration[] getAttributes(XSTypeDefinition type) {
+        if (!(type instanceof XSComplexTypeDefinition)) {
+            return NO_ATTRIBUTES;
+        }
+        XSAttributeDeclaration[] attributes = (XSAttributeDeclaration[]) fAttributes.get(type);
+        if (attributes == null) {
+            XSObjectList uses = ((XSComplexTypeDefinition) type).getAttributeUses();
+            int length = uses.getLength();
+            attributes = length > 0 ? new XSAttributeDeclaration[length] : NO_ATTRIBUTES;
+            for (int i = 0; i < length; i++) {
+                attributes[i] = ((XSAttributeUse) uses.item(i)).getAttrDeclaration();
+            }
+            fAttributes.put(type, attributes);
+        }
+        return attributes;
+    } // getAttributes(XSTypeDefinition):XSAttributeDeclaration[]
+
+    /** Returns the kind of the typed values of the given simple type. */
+    public int getValueKind(XSSimpleTypeDefinition type) {
+        if (type == null) {
+            return SchemaInformedFormat.KIND_NONE;
+        }
+        Integer kind = (Integer) fValueKinds.get(type);
+        if (kind == null) {
+            kind = new Integer(computeValueKind(type));
+            fValueKinds.put(type, kind);
+        }
+        return kind.intValue();
+    } // getValueKind(XSSimpleTypeDefinition):int
+
+    /**
+     * Returns the typed value of the given text, or null if the text can't
+     * be written as a typed value of the given kind and simple type.
+     */
+    public Object toValue(int kind, XSSimpleTypeDefinition type, String text) {
+        switch (kind) {
+            case SchemaInformedFormat.KIND_ENUMERATION: {
+                return getEnumeration(type).get(text);
+            }
+            case SchemaInformedFormat.KIND_BOOLEAN: {
+                for (int i = 0; i < BOOLEAN_LITERALS.length; i++) {
+                    if (BOOLEAN_LITERALS[i].equals(text)) {
+                        return new Integer(i);
+                    }
+                }
+                return null;
+            }
+            case SchemaInformedFormat.KIND_INTEGER: {
+                return isCanonicalInteger(text) ? Long.valueOf(text) : null;
+            }
+            case SchemaInformedFormat.KIND_DECIMAL: {
+                return toDecimal(text);
+            }
+            case SchemaInformedFormat.KIND_BASE64: {
+                byte[] bytes = Base64.decode(text);
+                return bytes != null && text.equals(Base64.encode(bytes)) ? bytes : null;
+            }
+            case SchemaInformedFormat.KIND_HEX: {
+                byte[] bytes = HexBin.decode(text);
+                return bytes != null && text.equals(HexBin.encode(bytes)) ? bytes : null;
+            }
+        }
+        return null;
+    } // toValue(int,XSSimpleTypeDefinition,String):Object
+
+    /** Writes a typed value returned by {@link #toValue}. */
+    public void writeValue(BinaryOutput output, int kind, Object value) {
+        switch (kind) {
+            case SchemaInformedFormat.KIND_ENUMERATION: {
+                output.writeInt(((Integer) value).intValue());
+                break;
+            }
+            case SchemaInformedFormat.KIND_BOOLEAN: {
+                output.writeByte(((Integer) value).intValue());
+                break;
+            }
+            case SchemaInformedFormat.KIND_INTEGER: {
+                long l = ((Long) value).longValue();
+                output.writeLong((l << 1) ^ (l >> 63));
+                break;
+            }
+            case SchemaInformedFormat.KIND_DECIMAL: {
+                long[] decimal = (long[]) value;
+                long l = decimal[1];
+                output.writeInt((int) decimal[0]);
+                output.writeLong((l << 1) ^ (l >> 63));
+                break;
+            }
+            default: {
+                byte[] bytes = (byte[]) value;
+                output.writeInt(bytes.length);
+                output.writeBytes(bytes);
+                break;
+            }
+        }
+    } // writeValue(BinaryOutput,int,Object)
+
+    /** Reads a typed value of the given kind and simple type and returns its text. */
+    public String readValue(BinaryInput input, int kind, XSSimpleTypeDefinition type)
+        throws IOException {
+        switch (kind) {
+            case SchemaInformedFormat.KIND_ENUMERATION: {
+                int index = input.readInt();
+                StringList enumeration = type.getLexicalEnumeration();
+                if (index >= enumeration.getLength()) {
+                    break;
+                }
+                return enumeration.item(index);
+            }
+            case SchemaInformedFormat.KIND_BOOLEAN: {
+                int index = input.readByte();
+                if (index >= BOOLEAN_LITERALS.length) {
+                    break;
+                }
+                return BOOLEAN_LITERALS[index];
+            }
+            case SchemaInformedFormat.KIND_INTEGER: {
+                long l = input.readLong();
+                return Long.toString((l >>> 1) ^ -(l & 1));
+            }
+            case SchemaInformedFormat.KIND_DECIMAL: {
+                int scale = input.readInt();
+                long l = input.readLong();
+                return toString(scale, (l >>> 1) ^ -(l & 1));
+            }
+            case SchemaInformedFormat.KIND_BASE64: {
+                return Base64.encode(input.readBytes(input.readInt()));
+            }
+            case SchemaInformedFormat.KIND_HEX: {
+                return HexBin.encode(input.readBytes(input.readInt()));
+            }
+        }
+        throw new IOException("The schema-informed binary stream is corrupt.");
+    } // readValue(BinaryInput,int,XSSimpleTypeDefinition):String
+
+    //
+    // XSElementDeclHelper methods
+    //
+
+    /**
+     * Returns the global declaration of the given element, or null if it
+     * can't be found.
+     */
+    public XSElementDecl getGlobalElementDecl(QName element) {
+        SchemaGrammar grammar = getGrammar(element.uri);
+        XSElementDecl decl = grammar != null ? grammar.getGlobalElementDecl(element.localpart) : null;
+        if (decl == null && fElementHint != null
+            && fElementHint.fName == element.localpart
+            && fElementHint.fTargetNamespace == element.uri) {
+            decl = fElementHint;
+        }
+        return decl;
+    } // getGlobalElementDecl(QName):XSElementDecl
+
+    //
+    // Private methods
+    //
+
+    /** Returns the grammar of the given namespace, or null if there's none. */
+    private SchemaGrammar getGrammar(String namespace) {
+        Object key = namespace != null ? (Object) namespace : NO_NAMESPACE;
+        Object grammar = fGrammars.get(key);
+        if (grammar == null) {
+            if (fGrammarPool != null) {
+                fXSDDescription.setNamespace(namespace);
+                grammar = fGrammarPool.retrieveGrammar(fXSDDescription);
+            }
+            if (grammar == null) {
+                grammar = this;
+            }
+            fGrammars.put(key, grammar);
+        }
+        return grammar != this ? (SchemaGrammar) grammar : null;
+    } // getGrammar(String):SchemaGrammar
+
+    /** Computes the kind of the typed values of the given simple type. */
+    private static int computeValueKind(XSSimpleTypeDefinition type) {
+        if (type.getVariety() != XSSimpleTypeDefinition.VARIETY_ATOMIC) {
+            return SchemaInformedFormat.KIND_NONE;
+        }
+        if (type.getLexicalEnumeration().getLength() > 0) {
+            return SchemaInformedFormat.KIND_ENUMERATION;
+        }
+        switch (type.getBuiltInKind()) {
+            case XSConstants.BOOLEAN_DT:
+                return SchemaInformedFormat.KIND_BOOLEAN;
+            case XSConstants.INTEGER_DT:
+            case XSConstants.NONPOSITIVEINTEGER_DT:
+            case XSConstants.NEGATIVEINTEGER_DT:
+            case XSConstants.LONG_DT:
+            case XSConstants.INT_DT:
+            case XSConstants.SHORT_DT:
+            case XSConstants.BYTE_DT:
+            case XSConstants.NONNEGATIVEINTEGER_DT:
+            case XSConstants.UNSIGNEDLONG_DT:
+            case XSConstants.UNSIGNEDINT_DT:
+            case XSConstants.UNSIGNEDSHORT_DT:
+            case XSConstants.UNSIGNEDBYTE_DT:
+            case XSConstants.POSITIVEINTEGER_DT:
+                return SchemaInformedFormat.KIND_INTEGER;
+            case XSConstants.DECIMAL_DT:
+                return SchemaInformedFormat.KIND_DECIMAL;
+            case XSConstants.BASE64BINARY_DT:
+                return SchemaInformedFormat.KIND_BASE64;
+            case XSConstants.HEXBINARY_DT:
+                return SchemaInformedFormat.KIND_HEX;
+        }
+        return SchemaInformedFormat.KIND_NONE;
+    } // computeValueKind(XSSimpleTypeDefinition):int
+
+    /** Returns the map of the lexical enumeration values of a type to their indexes. */
+    private HashMap getEnumeration(XSSimpleTypeDefinition type) {
+        HashMap enumeration = (HashMap) fEnumerations.get(type);
+        if (enumeration == null) {
+            StringList values = type.getLexicalEnumeration();
+            int length = values.getLength();
+            enumeration = new HashMap();
+            for (int i = length - 1; i >= 0; i--) {
+                enumeration.put(values.item(i), new Integer(i));
+            }
+            fEnumerations.put(type, enumeration);
+        }
+        return enumeration;
+    } // getEnumeration(XSSimpleTypeDefinition):HashMap
+
+    /**
+     * Returns true if the text is an integer in canonical form with no more
+     * digits than a typed integer may have.
+     */
+    private static boolean isCanonicalInteger(String text) {
+        int length = text.length();
+        int start = length > 0 && text.charAt(0) == '-' ? 1 : 0;
+        int digits = length - start;
+        if (digits == 0 || digits > MAX_INTEGER_DIGITS) {
+            return false;
+        }
+        // no leading zeros and no negative zero
+        if (text.charAt(start) == '0' && (digits > 1 || start == 1)) {
+            return false;
+        }
+        for (int i = start; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    } // isCanonicalInteger(String):boolean
+
+    /**
+     * Returns the number of fraction digits and the digits of the given
+     * decimal, or null if it has more digits than a typed decimal may have
+     * or couldn't be given back exactly.
+     */
+    private static long[] toDecimal(String text) {
+        int point = text.indexOf('.');
+        if (point == -1) {
+            return isCanonicalInteger(text) ? new long[] { 0, Long.parseLong(text) } : null;
+        }
+        boolean negative = text.length() > 0 && text.charAt(0) == '-';
+        int start = negative ? 1 : 0;
+        int integerDigits = point - start;
+        int fractionDigits = text.length() - point - 1;
+        if (integerDigits == 0 || fractionDigits == 0
+            || integerDigits + fractionDigits > MAX_INTEGER_DIGITS
+            || (integerDigits > 1 && text.charAt(start) == '0')) {
+            return null;
+        }
+        long digits = 0;
+        for (int i = start; i < text.length(); i++) {
+            if (i == point) {
+                continue;
+            }
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            digits = digits * 10 + (c - '0');
+        }
+        // negative zero can't be given back
+        if (negative && digits == 0) {
+            return null;
+        }
+        return new long[] { fractionDigits, negative ? -digits : digits };
+    } // toDecimal(String):long[]
+
+    /** Returns the text of a decimal from its number of fraction digits and digits. */
+    private static String toString(int scale, long digits) {
+        if (scale == 0) {
+            return Long.toString(digits);
+        }
+        StringBuffer buffer = new StringBuffer(scale + 21);
+        if (digits < 0) {
+            buffer.append('-');
+            digits = -digits;
+        }
+        String s = Long.toString(digits);
+        for (int i = s.length(); i <= scale; i++) {
+            buffer.append('0');
+        }
+        buffer.append(s);
+        buffer.insert(buffer.length() - scale, '.');
+        return buffer.toString();
+    } // toString(int,long):String
+
+} // class SchemaInformedGrammar
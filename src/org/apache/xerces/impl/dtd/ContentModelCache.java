@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.dtd;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.xerces.impl.dtd.models.ContentModelValidator;
+
+/**
+ * A cache of compiled content models shared by the DTD grammars
+ * built by a validator or loader. Content models are keyed by a
+ * canonical form of the content specification of the element
+ * declaration, so a grammar built for a document containing the
+ * same element declarations as an earlier one reuses the earlier
+ * content models instead of compiling them again.
+ * <p>
+ * Content models can be shared because they hold no state between
+ * calls to <code>validate</code>, and because the names they compare
+ * by reference are symbols, which are interned in the same way by all
+ * symbol tables.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+final class ContentModelCache {
+
+    //
+    // Constants
+    //
+
+    /** Default maximum number of content models. */
+    static final int DEFAULT_SIZE = 512;
+
+    //
+    // Data
+    //
+
+    /** Content models in least recently used order. */
+    private final LinkedHashMap fContentModels;
+
+    //
+    // Constructors
+    //
+
+    /** Constructs a content model cache of the default size. */
+    ContentModelCache() {
+        this(DEFAULT_SIZE);
+    } // <init>()
+
+    /** Constructs a content model cache holding at most <code>maxSize</code> models. */
+    ContentModelCache(final int maxSize) {
+        fContentModels = new LinkedHashMap(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > maxSize;
+            }
+        };
+    } // <init>(int)
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Returns the content model for the given canonical content
+     * specification, or <code>null</code> if there isn't one.
+     */
+    synchronized ContentModelValidator get(String key) {
+        return (ContentModelValidator) fContentModels.get(key);
+    } // get(String):ContentModelValidator
+
+    /** Adds a content model for the given canonical content specification. */
+    synchronized void put(String key, ContentModelValidator contentModel) {
+        fContentModels.put(key, contentModel);
+    } // put(String,ContentModelValidator)
+
+    /** Discards all content models. */
+    synchronized void clear() {
+        fContentModels.clear();
+    } // clear()
+
+} // class ContentModelCache
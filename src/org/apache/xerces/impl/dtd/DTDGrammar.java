@@ -141,6 +141,9 @@ public class DTDGrammar
      * constructed from the content spec nodes.
      */
     private ContentModelValidator fElementDeclContentModelValidator[][] = new ContentModelValidator[INITIAL_CHUNK_COUNT][];
+    
+    /** Cache of content models shared with other grammars. */
+    private ContentModelCache fContentModelCache = null;
 
     /** First attribute declaration of an element declaration. */
     private int fElementDeclFirstAttributeDeclIndex[][] = new int[INITIAL_CHUNK_COUNT][];
@@ -292,6 +295,14 @@ public class DTDGrammar
         fGrammarDescription = desc;
     } // <init>(SymbolTable)
 
+    /** 
+     * Sets the cache in which content models compiled for this grammar
+     * are shared with other grammars.
+     */
+    void setContentModelCache(ContentModelCache contentModelCache) {
+        fContentModelCache = contentModelCache;
+    } // setContentModelCache(ContentModelCache)
+
     // Grammar methods
 
     // return the XMLDTDDescription object with which this is associated
@@ -1712,6 +1723,21 @@ public class DTDGrammar
         /***/
 
         XMLContentSpec  contentSpec = new XMLContentSpec();
+        
+        // Another grammar may already have compiled this content model.
+        String contentModelKey = null;
+        if (fContentModelCache != null) {
+            StringBuffer key = new StringBuffer();
+            key.append(contentType == XMLElementDecl.TYPE_MIXED ? 'M' : 'C');
+            appendContentModelKey(contentSpecIndex, contentSpec, key);
+            contentModelKey = key.toString();
+            contentModel = fContentModelCache.get(contentModelKey);
+            if (contentModel != null) {
+                fElementDeclContentModelValidator[chunk][index] = contentModel;
+                return contentModel;
+            }
+        }
+        
         getContentSpec( contentSpecIndex, contentSpec );
 
         // And create the content model according to the spec type
@@ -1741,6 +1767,9 @@ public class DTDGrammar
 
         // Add the new model to the content model for this element
         fElementDeclContentModelValidator[chunk][index] = contentModel;
+        if (contentModelKey != null) {
+            fContentModelCache.put(contentModelKey, contentModel);
+        }
 
         return contentModel;
 
@@ -2409,6 +2438,42 @@ public class DTDGrammar
 
     } // contentSpecTree(int,XMLContentSpec,ChildrenList)
 
+    /**
+     * Appends a canonical form of a content specification tree, 
+     * which identifies the content model built from it, to the 
+     * given buffer. Names and namespaces cannot contain spaces 
+     * or parentheses so the form is unambiguous.
+     */
+    private void appendContentModelKey(int contentSpecIndex, 
+                                       XMLContentSpec contentSpec, 
+                                       StringBuffer key) {
+        getContentSpec(contentSpecIndex, contentSpec);
+        final short type = contentSpec.type;
+        key.append('(').append(type);
+        if (type == XMLContentSpec.CONTENTSPECNODE_LEAF ||
+            (type & 0x0f) == XMLContentSpec.CONTENTSPECNODE_ANY ||
+            (type & 0x0f) == XMLContentSpec.CONTENTSPECNODE_ANY_OTHER ||
+            (type & 0x0f) == XMLContentSpec.CONTENTSPECNODE_ANY_LOCAL) {
+            key.append(' ').append(contentSpec.value);
+            key.append(' ').append(contentSpec.otherValue);
+        }
+        else {
+            final int leftNode = contentSpec.value != null 
+                ? ((int[]) contentSpec.value)[0] : -1;
+            final int rightNode = contentSpec.otherValue != null 
+                ? ((int[]) contentSpec.otherValue)[0] : -1;
+            if (leftNode != -1) {
+                appendContentModelKey(leftNode, contentSpec, key);
+            }
+            if (rightNode != -1 && 
+                (type == XMLContentSpec.CONTENTSPECNODE_CHOICE ||
+                 type == XMLContentSpec.CONTENTSPECNODE_SEQ)) {
+                appendContentModelKey(rightNode, contentSpec, key);
+            }
+        }
+        key.append(')');
+    } // appendContentModelKey(int,XMLContentSpec,StringBuffer)
+
     // ensure capacity
 
     private void ensureElementDeclCapacity(int chunk) {
@@ -133,6 +133,9 @@ public class XMLDTDLoader
     // what's our Locale?
     protected Locale fLocale;
 
+    /** Content models shared by the grammars built by this loader. */
+    private final ContentModelCache fContentModelCache = new ContentModelCache();
+
     //
     // Constructors
     //
@@ -424,6 +427,7 @@ public class XMLDTDLoader
         else {
             fDTDGrammar = new BalancedDTDGrammar(fSymbolTable, desc);
         }
+        fDTDGrammar.setContentModelCache(fContentModelCache);
         fGrammarBucket = new DTDGrammarBucket();
         fGrammarBucket.setStandalone(false);
         fGrammarBucket.setActiveGrammar(fDTDGrammar); 
@@ -233,6 +233,9 @@ public class XMLDTDValidator
 
     /** Grammar bucket. */
     protected DTDGrammarBucket fGrammarBucket;
+    
+    /** Content models shared by the grammars built by this validator. */
+    private final ContentModelCache fContentModelCache = new ContentModelCache();
 
     /* location of the document as passed in from startDocument call */
     protected XMLLocator fDocLocation;
@@ -757,6 +760,7 @@ public class XMLDTDValidator
             else {
                 fDTDGrammar = new BalancedDTDGrammar(fSymbolTable, grammarDesc);
             }
+            fDTDGrammar.setContentModelCache(fContentModelCache);
         } else {
             // we've found a cached one;so let's make sure not to read
             // any external subset!
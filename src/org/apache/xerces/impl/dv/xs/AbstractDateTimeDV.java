@@ -61,6 +61,11 @@ public abstract class AbstractDateTimeDV extends TypeValidator {
 	protected final static int DAY = 01;
     
     protected static final DatatypeFactory datatypeFactory = new DatatypeFactoryImpl();
+    
+    /** Powers of ten up to 10^9, for parsing seconds. */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9
+    };
 	
 	public short getAllowedFacets(){
 		return ( XSSimpleTypeDecl.FACET_PATTERN | XSSimpleTypeDecl.FACET_WHITESPACE | XSSimpleTypeDecl.FACET_ENUMERATION |XSSimpleTypeDecl.FACET_MAXINCLUSIVE |XSSimpleTypeDecl.FACET_MININCLUSIVE | XSSimpleTypeDecl.FACET_MAXEXCLUSIVE  | XSSimpleTypeDecl.FACET_MINEXCLUSIVE  );
@@ -873,20 +878,31 @@ public abstract class AbstractDateTimeDV extends TypeValidator {
 	protected double parseSecond(String buffer, int start, int end)
 	throws NumberFormatException {
 		int dot = -1;
+		long digits = 0;
 		for (int i = start; i < end; i++) {
 			char ch = buffer.charAt(i);
 			if (ch == '.')
 				dot = i;
 			else if (ch > '9' || ch < '0')
 				throw new NumberFormatException("'" + buffer + "' has wrong format");
+			else
+				digits = digits * 10 + (ch - '0');
 		}
 		if (dot == -1) {
 			if (start+2 != end)
 				throw new NumberFormatException("'" + buffer + "' has wrong format");
+			return digits;
 		}
 		else if (start+2 != dot || dot+1 == end) {
 			throw new NumberFormatException("'" + buffer + "' has wrong format");
 		}
+		// Up to nanosecond precision the digits and the power of ten are
+		// exact doubles, so their quotient is rounded exactly the way
+		// Double.parseDouble() would round the decimal value.
+		int fractionDigits = end - dot - 1;
+		if (fractionDigits < POWERS_OF_TEN.length) {
+			return digits / POWERS_OF_TEN[fractionDigits];
+		}
 		return Double.parseDouble(buffer.substring(start, end));
 	}
 	
@@ -1008,6 +1024,19 @@ public abstract class AbstractDateTimeDV extends TypeValidator {
             }
 			return normalized?second:unNormSecond;
 		}
+		/**
+		 * Returns the fractional part of the seconds as a whole number of
+		 * nanoseconds (from 0 to 999999999, or negative for negative
+		 * durations). It is rounded from the double value of the seconds,
+		 * so with more than nine fractional digits it may be one off the
+		 * rounded lexical value, and it is kept below one second.
+		 */
+		public int getNanoseconds() {
+			final double seconds = getSeconds();
+			final long nanos = Math.round((seconds - (long) seconds) * 1e9);
+			// values with more than nine fractional digits may round up
+			return (int) Math.max(Math.min(nanos, 999999999), -999999999);
+		}
 		/* (non-Javadoc)
 		 * @see org.apache.xerces.xs.datatypes.XSDateTime#hasTimeZone()
 		 */
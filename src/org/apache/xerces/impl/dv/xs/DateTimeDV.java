@@ -85,6 +85,13 @@ public class DateTimeDV extends AbstractDateTimeDV {
     }
     
     protected XMLGregorianCalendar getXMLGregorianCalendar(DateTimeData date) {
+        // whole seconds don't need an arbitrary precision fraction
+        if (date.unNormSecond == (int) date.unNormSecond) {
+            return datatypeFactory.newXMLGregorianCalendar(date.unNormYear, date.unNormMonth, 
+                    date.unNormDay, date.unNormHour, date.unNormMinute, 
+                    (int)date.unNormSecond, DatatypeConstants.FIELD_UNDEFINED, 
+                    date.hasTimeZone() ? (date.timezoneHr * 60 + date.timezoneMin) : DatatypeConstants.FIELD_UNDEFINED);
+        }
         return datatypeFactory.newXMLGregorianCalendar(BigInteger.valueOf(date.unNormYear), date.unNormMonth, 
                 date.unNormDay, date.unNormHour, date.unNormMinute, 
                 (int)date.unNormSecond, date.unNormSecond != 0 ? getFractionalSecondsAsBigDecimal(date) : null, 
@@ -62,6 +62,19 @@ public class DecimalDV extends TypeValidator {
     
     // Avoid using the heavy-weight java.math.BigDecimal
     static class XDecimal implements XSDecimal {
+        // values with at most this many digits keep them in a long, as do
+        // integers with one more digit if they fit
+        static final int MAX_LONG_DIGITS = 18;
+        // the digits of Long.MAX_VALUE
+        private static final String LONG_MAX_VALUE = Long.toString(Long.MAX_VALUE);
+        // powers of ten which fit in a long
+        private static final long[] POWERS_OF_TEN = new long[MAX_LONG_DIGITS + 1];
+        static {
+            POWERS_OF_TEN[0] = 1;
+            for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+                POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+            }
+        }
         // sign: 0 for vlaue 0; 1 for positive values; -1 for negative values
         int sign = 1;
         // total digits. >= 1
@@ -74,6 +87,11 @@ public class DecimalDV extends TypeValidator {
         String ivalue = "";
         // the string representing the fraction part
         String fvalue = "";
+        // the integer and fraction digits as a number when they fit in a
+        // long (see MAX_LONG_DIGITS), in which case ivalue and fvalue are
+        // only computed when needed
+        long lvalue = 0;
+        boolean inLong = false;
         // whether the canonical form contains decimal point
         boolean integer = false;
         
@@ -112,10 +130,17 @@ public class DecimalDV extends TypeValidator {
                 actualIntStart++;
             }
     
-            // Find the ending position of the integer part
-            for (intEnd = actualIntStart;
-                 intEnd < len && TypeValidator.isDigit(content.charAt(intEnd));
-                 intEnd++);
+            // Find the ending position of the integer part, computing its
+            // value, which is only used if it has few enough digits to fit
+            // in a long: with one digit more than MAX_LONG_DIGITS it becomes
+            // negative if it overflows
+            long intValue = 0;
+            for (intEnd = actualIntStart; intEnd < len; intEnd++) {
+                final char ch = content.charAt(intEnd);
+                if (!TypeValidator.isDigit(ch))
+                    break;
+                intValue = intValue * 10 + (ch - '0');
+            }
     
             // Not reached the end yet
             if (intEnd < len) {
@@ -138,16 +163,26 @@ public class DecimalDV extends TypeValidator {
             }
     
             // check whether there is non-digit characters in the fraction part
+            long fracValue = 0;
             for (int fracPos = fracStart; fracPos < fracEnd; fracPos++) {
-                if (!TypeValidator.isDigit(content.charAt(fracPos)))
+                final char ch = content.charAt(fracPos);
+                if (!TypeValidator.isDigit(ch))
                     throw new NumberFormatException();
+                fracValue = fracValue * 10 + (ch - '0');
             }
     
             intDigits = intEnd - actualIntStart;
             fracDigits = fracEnd - fracStart;
             totalDigits = intDigits + fracDigits;
     
-            if (intDigits > 0) {
+            if (totalDigits <= MAX_LONG_DIGITS) {
+                setLong(intValue * POWERS_OF_TEN[fracDigits] + fracValue);
+            }
+            else if (fracDigits == 0 && totalDigits == MAX_LONG_DIGITS + 1 &&
+                    setLong(intValue)) {
+                // an integer which just fits in a long
+            }
+            else if (intDigits > 0) {
                 ivalue = content.substring(actualIntStart, intEnd);
                 if (fracDigits > 0)
                     fvalue = content.substring(fracStart, fracEnd);
@@ -187,10 +222,17 @@ public class DecimalDV extends TypeValidator {
                 actualIntStart++;
             }
     
-            // Find the ending position of the integer part
-            for (intEnd = actualIntStart;
-                 intEnd < len && TypeValidator.isDigit(content.charAt(intEnd));
-                 intEnd++);
+            // Find the ending position of the integer part, computing its
+            // value, which is only used if it has few enough digits to fit
+            // in a long: with one digit more than MAX_LONG_DIGITS it becomes
+            // negative if it overflows
+            long intValue = 0;
+            for (intEnd = actualIntStart; intEnd < len; intEnd++) {
+                final char ch = content.charAt(intEnd);
+                if (!TypeValidator.isDigit(ch))
+                    break;
+                intValue = intValue * 10 + (ch - '0');
+            }
     
             // Not reached the end yet, error
             if (intEnd < len)
@@ -204,7 +246,10 @@ public class DecimalDV extends TypeValidator {
             fracDigits = 0;
             totalDigits = intDigits;
     
-            if (intDigits > 0) {
+            if (totalDigits <= MAX_LONG_DIGITS + 1 && setLong(intValue)) {
+                // an integer which fits in a long
+            }
+            else if (intDigits > 0) {
                 ivalue = content.substring(actualIntStart, intEnd);
             }
             else {
@@ -214,6 +259,61 @@ public class DecimalDV extends TypeValidator {
             
             integer = true;
         }
+        private boolean setLong(long value) {
+            if (value < 0) {
+                return false;
+            }
+            if (value == 0) {
+                // "00" or ".00", treat it as "0"
+                sign = 0;
+            }
+            lvalue = value;
+            inLong = true;
+            ivalue = null;
+            fvalue = null;
+            return true;
+        }
+        // computes ivalue and fvalue of a value whose digits are in a long
+        private synchronized void makeStrings() {
+            if (ivalue != null) {
+                return;
+            }
+            if (sign == 0) {
+                fvalue = "";
+                ivalue = "";
+                return;
+            }
+            String digits = Long.toString(lvalue);
+            // a fraction without an integer part may start with zeroes
+            if (digits.length() < totalDigits) {
+                StringBuffer buffer = new StringBuffer(totalDigits);
+                for (int i = digits.length(); i < totalDigits; i++) {
+                    buffer.append('0');
+                }
+                digits = buffer.append(digits).toString();
+            }
+            fvalue = digits.substring(intDigits);
+            ivalue = digits.substring(0, intDigits);
+        }
+        private String getIntegerPart() {
+            if (inLong) {
+                makeStrings();
+            }
+            return ivalue;
+        }
+        private String getFractionPart() {
+            if (inLong) {
+                makeStrings();
+            }
+            return fvalue;
+        }
+        // returns the value of an integer whose digits are in a long
+        private long longValue() throws NumberFormatException {
+            if (fracDigits != 0) {
+                throw new NumberFormatException();
+            }
+            return sign * lvalue;
+        }
         public boolean equals(Object val) {
             if (val == this)
                 return true;
@@ -227,8 +327,19 @@ public class DecimalDV extends TypeValidator {
             if (sign == 0)
                 return true;
             
-            return intDigits == oval.intDigits && fracDigits == oval.fracDigits &&
-                   ivalue.equals(oval.ivalue) && fvalue.equals(oval.fvalue);
+            if (intDigits != oval.intDigits || fracDigits != oval.fracDigits ||
+                    inLong != oval.inLong)
+                return false;
+            if (inLong)
+                return lvalue == oval.lvalue;
+            return ivalue.equals(oval.ivalue) && fvalue.equals(oval.fvalue);
+        }
+        public int hashCode() {
+            if (sign == 0)
+                return 0;
+            if (inLong)
+                return ((sign * 31 + (int) (lvalue ^ (lvalue >>> 32))) * 31 + fracDigits);
+            return (sign * 31 + ivalue.hashCode()) * 31 + fvalue.hashCode();
         }
         public int compareTo(XDecimal val) {
             if (sign != val.sign)
@@ -240,10 +351,29 @@ public class DecimalDV extends TypeValidator {
         private int intComp(XDecimal val) {
             if (intDigits != val.intDigits)
                 return intDigits > val.intDigits ? 1 : -1;
-            int ret = ivalue.compareTo(val.ivalue);
+            if (inLong && val.inLong) {
+                // with the same integer digits, aligning the fraction
+                // digits needs at most MAX_LONG_DIGITS digits, as only
+                // integers can have more
+                long value1 = lvalue;
+                long value2 = val.lvalue;
+                if (fracDigits < val.fracDigits)
+                    value1 *= POWERS_OF_TEN[val.fracDigits - fracDigits];
+                else
+                    value2 *= POWERS_OF_TEN[fracDigits - val.fracDigits];
+                return value1 == value2 ? 0 : (value1 > value2 ? 1 : -1);
+            }
+            if (inLong != val.inLong && intDigits == MAX_LONG_DIGITS + 1) {
+                // a value whose integer part doesn't fit in a long is
+                // greater than one in a long, as with the bounds of xs:long
+                final XDecimal big = inLong ? val : this;
+                if (big.ivalue.compareTo(LONG_MAX_VALUE) > 0)
+                    return inLong ? -1 : 1;
+            }
+            int ret = getIntegerPart().compareTo(val.getIntegerPart());
             if (ret != 0)
                 return ret > 0 ? 1 : -1;;
-            ret = fvalue.compareTo(val.fvalue);
+            ret = getFractionPart().compareTo(val.getFractionPart());
             return ret == 0 ? 0 : (ret > 0 ? 1 : -1);
         }
         private String canonical;
@@ -255,6 +385,9 @@ public class DecimalDV extends TypeValidator {
         }
         
         private void makeCanonical() {
+            if (inLong) {
+                makeStrings();
+            }
             if (sign == 0) {
                 if (integer)
                     canonical = "0";
@@ -300,6 +433,9 @@ public class DecimalDV extends TypeValidator {
             if (sign == 0) {
                 return BigInteger.ZERO;
             }
+            if (inLong) {
+                return BigInteger.valueOf(longValue());
+            }
             if (sign == 1) {
                 return new BigInteger(ivalue);
             }
@@ -313,6 +449,9 @@ public class DecimalDV extends TypeValidator {
             if (sign == 0) {
                 return 0L;
             }
+            if (inLong) {
+                return longValue();
+            }
             if (sign == 1) {
                 return Long.parseLong(ivalue);
             }
@@ -326,6 +465,13 @@ public class DecimalDV extends TypeValidator {
             if (sign == 0) {
                 return 0;
             }
+            if (inLong) {
+                final long value = longValue();
+                if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                    throw new NumberFormatException();
+                }
+                return (int) value;
+            }
             if (sign == 1) {
                 return Integer.parseInt(ivalue);
             }
@@ -339,6 +485,13 @@ public class DecimalDV extends TypeValidator {
             if (sign == 0) {
                 return 0;
             }
+            if (inLong) {
+                final long value = longValue();
+                if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+                    throw new NumberFormatException();
+                }
+                return (short) value;
+            }
             if (sign == 1) {
                 return Short.parseShort(ivalue);
             }
@@ -352,6 +505,13 @@ public class DecimalDV extends TypeValidator {
             if (sign == 0) {
                 return 0;
             }
+            if (inLong) {
+                final long value = longValue();
+                if (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) {
+                    throw new NumberFormatException();
+                }
+                return (byte) value;
+            }
             if (sign == 1) {
                 return Byte.parseByte(ivalue);
             }
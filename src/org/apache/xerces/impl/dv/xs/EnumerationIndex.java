@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.dv.xs;
+
+import org.apache.xerces.impl.dv.ValidatedInfo;
+import org.apache.xerces.xs.ShortList;
+import org.apache.xerces.xs.XSConstants;
+
+/**
+ * A hash index over the actual values of an enumeration facet, so
+ * that checking a value against a large enumeration only compares it
+ * with the enumeration values which have the same hash code. The
+ * index holds positions in the array of enumeration values and is
+ * shared by the types which inherit the enumeration.
+ * <p>
+ * An index can only be built if the hash codes of all the enumeration
+ * values are consistent with their <code>equals</code> methods, which
+ * isn't the case for values such as dates, durations or QNames. Values
+ * of those types are still checked by comparing them with each
+ * enumeration value in turn.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+final class EnumerationIndex {
+
+    //
+    // Constants
+    //
+
+    /** Smallest number of enumeration values for which an index is built. */
+    static final int MIN_SIZE = 8;
+
+    //
+    // Data
+    //
+
+    /** Position plus one of the first enumeration value in each bucket. */
+    private final int[] fBuckets;
+
+    /** Position plus one of the next enumeration value in the same bucket. */
+    private final int[] fNext;
+
+    /** Mask of the bucket number. */
+    private final int fMask;
+
+    //
+    // Constructors
+    //
+
+    private EnumerationIndex(ValidatedInfo[] enumeration, int size) {
+        int buckets = MIN_SIZE;
+        while (buckets < size) {
+            buckets <<= 1;
+        }
+        fBuckets = new int[buckets << 1];
+        fMask = fBuckets.length - 1;
+        fNext = new int[size];
+        // link the values in reverse so that each bucket is in enumeration order
+        for (int i = size - 1; i >= 0; --i) {
+            int bucket = hash(enumeration[i].actualValue) & fMask;
+            fNext[i] = fBuckets[bucket];
+            fBuckets[bucket] = i + 1;
+        }
+    } // <init>(ValidatedInfo[],int)
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Returns an index of the given enumeration values, or <code>null</code>
+     * if there are too few values or some of them can't be indexed.
+     */
+    static EnumerationIndex create(ValidatedInfo[] enumeration, int size) {
+        if (size < MIN_SIZE) {
+            return null;
+        }
+        for (int i = 0; i < size; i++) {
+            if (!isIndexable(enumeration[i].actualValueType, enumeration[i].itemValueTypes)) {
+                return null;
+            }
+        }
+        return new EnumerationIndex(enumeration, size);
+    } // create(ValidatedInfo[],int):EnumerationIndex
+
+    /**
+     * Returns true if values of the given type have hash codes which
+     * are consistent with their <code>equals</code> methods.
+     */
+    static boolean isIndexable(short valueType, ShortList itemValueTypes) {
+        short kind = XSSimpleTypeDecl.convertToPrimitiveKind(valueType);
+        if (kind == XSConstants.LIST_DT || kind == XSConstants.LISTOFUNION_DT) {
+            if (itemValueTypes == null) {
+                return false;
+            }
+            final int length = itemValueTypes.getLength();
+            for (int i = 0; i < length; i++) {
+                if (!isIndexableKind(XSSimpleTypeDecl.convertToPrimitiveKind(itemValueTypes.item(i)))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return isIndexableKind(kind);
+    } // isIndexable(short,ShortList):boolean
+
+    /**
+     * Returns the position of the first enumeration value which may
+     * be equal to the given value, or -1 if there is none.
+     */
+    int first(Object value) {
+        return fBuckets[hash(value) & fMask] - 1;
+    } // first(Object):int
+
+    /**
+     * Returns the position of the next enumeration value which may
+     * be equal to the value passed to <code>first</code>, or -1 if
+     * there is none.
+     */
+    int next(int position) {
+        return fNext[position] - 1;
+    } // next(int):int
+
+    //
+    // Private methods
+    //
+
+    /** Returns true for the primitive types whose values can be indexed. */
+    private static boolean isIndexableKind(short kind) {
+        switch (kind) {
+            case XSConstants.ANYSIMPLETYPE_DT:
+            case XSConstants.STRING_DT:
+            case XSConstants.BOOLEAN_DT:
+            case XSConstants.DECIMAL_DT:
+            case XSConstants.FLOAT_DT:
+            case XSConstants.DOUBLE_DT:
+            case XSConstants.HEXBINARY_DT:
+            case XSConstants.BASE64BINARY_DT:
+            case XSConstants.ANYURI_DT:
+                return true;
+        }
+        return false;
+    } // isIndexableKind(short):boolean
+
+    /** Spreads the hash code of a value over the buckets. */
+    private static int hash(Object value) {
+        int h = value.hashCode();
+        return h ^ (h >>> 16);
+    } // hash(Object):int
+
+} // class EnumerationIndex
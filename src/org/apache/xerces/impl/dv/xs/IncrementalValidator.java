@@ -0,0 +1,425 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.dv.xs;
+
+import org.apache.xerces.impl.dv.DatatypeException;
+import org.apache.xerces.impl.dv.InvalidDatatypeValueException;
+import org.apache.xerces.impl.dv.ValidatedInfo;
+import org.apache.xerces.impl.dv.ValidationContext;
+import org.apache.xerces.impl.dv.XSSimpleType;
+import org.apache.xerces.xs.XSConstants;
+import org.apache.xerces.xs.XSSimpleTypeDefinition;
+
+/**
+ * Validates a value against a simple type as its characters arrive,
+ * keeping only a running state such as the length seen so far, so that
+ * very large values (typically base64Binary or hexBinary payloads) can
+ * be validated without holding them in memory.
+ * <p>
+ * Incremental validators exist for types derived from string (other
+ * than those with a built-in pattern), base64Binary and hexBinary,
+ * and for list types, whose only facets are length, minLength,
+ * maxLength and whiteSpace. The actual value is never computed, so
+ * after validation the validated info only holds the type of the value;
+ * the schema validator doesn't stream values which go into the PSVI.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+public abstract class IncrementalValidator {
+
+    //
+    // Constants
+    //
+
+    /** Number of characters of the value kept for error messages. */
+    private static final int PREFIX_LENGTH = 32;
+
+    /** Facets which can be checked incrementally. */
+    private static final short SUPPORTED_FACETS =
+        XSSimpleTypeDefinition.FACET_LENGTH | XSSimpleTypeDefinition.FACET_MINLENGTH |
+        XSSimpleTypeDefinition.FACET_MAXLENGTH | XSSimpleTypeDefinition.FACET_WHITESPACE;
+
+    //
+    // Data
+    //
+
+    /** The simple type. */
+    protected final XSSimpleType fType;
+
+    /** The name of the type in error messages, as XSSimpleTypeDecl reports it. */
+    private final String fTypeName;
+
+    /** The beginning of the value, for error messages. */
+    private final StringBuffer fPrefix = new StringBuffer(PREFIX_LENGTH);
+
+    /** The first error found, or <code>null</code>. */
+    private InvalidDatatypeValueException fError = null;
+
+    // length facets, or -1 if not defined
+    private final int fLength;
+    private final int fMinLength;
+    private final int fMaxLength;
+
+    //
+    // Constructors
+    //
+
+    protected IncrementalValidator(XSSimpleType type) {
+        fType = type;
+        // anonymous types have a generated name such as #AnonType_x
+        fTypeName = (type instanceof XSSimpleTypeDecl) ?
+                ((XSSimpleTypeDecl) type).getTypeName() : type.getName();
+        fLength = getFacet(type, XSSimpleTypeDefinition.FACET_LENGTH);
+        fMinLength = getFacet(type, XSSimpleTypeDefinition.FACET_MINLENGTH);
+        fMaxLength = getFacet(type, XSSimpleTypeDefinition.FACET_MAXLENGTH);
+    } // <init>(XSSimpleType)
+
+    //
+    // Public static methods
+    //
+
+    /**
+     * Returns an incremental validator for the given type, or
+     * <code>null</code> if values of the type can't be validated
+     * incrementally.
+     *
+     * @param type the simple type
+     * @param context the validation context used to validate list items
+     */
+    public static IncrementalValidator create(XSSimpleType type, ValidationContext context) {
+        if ((type.getDefinedFacets() & ~SUPPORTED_FACETS) != 0) {
+            return null;
+        }
+        if (type.getVariety() == XSSimpleTypeDefinition.VARIETY_LIST) {
+            return new ListValidator(type, context);
+        }
+        if (type.getVariety() != XSSimpleTypeDefinition.VARIETY_ATOMIC) {
+            return null;
+        }
+        switch (type.getBuiltInKind()) {
+            case XSConstants.STRING_DT:
+            case XSConstants.NORMALIZEDSTRING_DT:
+            case XSConstants.TOKEN_DT:
+                try {
+                    return new StringValidator(type, type.getWhitespace());
+                }
+                catch (DatatypeException e) {
+                    return null;
+                }
+            case XSConstants.BASE64BINARY_DT:
+                return new Base64Validator(type);
+            case XSConstants.HEXBINARY_DT:
+                return new HexBinaryValidator(type);
+        }
+        return null;
+    } // create(XSSimpleType,ValidationContext):IncrementalValidator
+
+    //
+    // Public methods
+    //
+
+    /** Validates the next characters of the value. */
+    public void characters(char[] ch, int offset, int length) {
+        if (fPrefix.length() < PREFIX_LENGTH) {
+            fPrefix.append(ch, offset, Math.min(length, PREFIX_LENGTH - fPrefix.length()));
+        }
+        if (fError == null) {
+            try {
+                scan(ch, offset, length);
+            }
+            catch (InvalidDatatypeValueException e) {
+                fError = e;
+            }
+        }
+    } // characters(char[],int,int)
+
+    /**
+     * Completes the validation of the value, filling in the type of
+     * the value in the validated info.
+     *
+     * @return the actual value, which is always <code>null</code>
+     * @throws InvalidDatatypeValueException if the value isn't valid
+     */
+    public Object end(ValidatedInfo validatedInfo) throws InvalidDatatypeValueException {
+        validatedInfo.reset();
+        if (fError != null) {
+            throw fError;
+        }
+        final int length = endScan();
+        // same order of checks as XSSimpleTypeDecl
+        if (fMaxLength != -1 && length > fMaxLength) {
+            throw new InvalidDatatypeValueException("cvc-maxLength-valid",
+                    new Object[]{getContent(), Integer.toString(length), Integer.toString(fMaxLength), fTypeName});
+        }
+        if (fMinLength != -1 && length < fMinLength) {
+            throw new InvalidDatatypeValueException("cvc-minLength-valid",
+                    new Object[]{getContent(), Integer.toString(length), Integer.toString(fMinLength), fTypeName});
+        }
+        if (fLength != -1 && length != fLength) {
+            throw new InvalidDatatypeValueException("cvc-length-valid",
+                    new Object[]{getContent(), Integer.toString(length), Integer.toString(fLength), fTypeName});
+        }
+        validatedInfo.actualValueType = (fType.getVariety() == XSSimpleTypeDefinition.VARIETY_LIST) ?
+                XSConstants.LIST_DT : fType.getBuiltInKind();
+        validatedInfo.actualType = fType;
+        return null;
+    } // end(ValidatedInfo):Object
+
+    /**
+     * Returns the beginning of the value followed by an ellipsis,
+     * for error messages.
+     */
+    public String getContent() {
+        return (fPrefix.length() < PREFIX_LENGTH) ? fPrefix.toString() : fPrefix.toString() + "...";
+    } // getContent():String
+
+    //
+    // Protected methods
+    //
+
+    /** Scans the next characters of the value. */
+    protected abstract void scan(char[] ch, int offset, int length)
+        throws InvalidDatatypeValueException;
+
+    /** Completes the scan of the value and returns its length. */
+    protected abstract int endScan() throws InvalidDatatypeValueException;
+
+    /** Returns the error reported for a value which isn't of the given built-in type. */
+    protected InvalidDatatypeValueException invalidValue(String typeName) {
+        return new InvalidDatatypeValueException("cvc-datatype-valid.1.2.1",
+                new Object[]{getContent(), typeName});
+    } // invalidValue(String):InvalidDatatypeValueException
+
+    protected static boolean isSpace(char c) {
+        return c == 0x20 || c == 0x9 || c == 0xA || c == 0xD;
+    } // isSpace(char):boolean
+
+    //
+    // Private static methods
+    //
+
+    private static int getFacet(XSSimpleType type, short facet) {
+        if ((type.getDefinedFacets() & facet) == 0) {
+            return -1;
+        }
+        return Integer.parseInt(type.getLexicalFacetValue(facet));
+    } // getFacet(XSSimpleType,short):int
+
+    //
+    // Classes
+    //
+
+    /** Validates string values, counting their characters. */
+    static final class StringValidator extends IncrementalValidator {
+
+        private final short fWhiteSpace;
+        private int fCount = 0;
+        private boolean fSawNonSpace = false;
+        private boolean fPendingSpace = false;
+
+        StringValidator(XSSimpleType type, short whiteSpace) {
+            super(type);
+            fWhiteSpace = whiteSpace;
+        }
+
+        protected void scan(char[] ch, int offset, int length) {
+            if (fWhiteSpace != XSSimpleType.WS_COLLAPSE) {
+                fCount += length;
+                return;
+            }
+            // runs of spaces count as one, except at the start and the end
+            final int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                if (isSpace(ch[i])) {
+                    fPendingSpace = fSawNonSpace;
+                }
+                else {
+                    if (fPendingSpace) {
+                        ++fCount;
+                        fPendingSpace = false;
+                    }
+                    ++fCount;
+                    fSawNonSpace = true;
+                }
+            }
+        }
+
+        protected int endScan() {
+            return fCount;
+        }
+
+    } // class StringValidator
+
+    /** Validates base64Binary values, counting the octets they encode. */
+    static final class Base64Validator extends IncrementalValidator {
+
+        /** Number of base64 characters, including padding. */
+        private int fCount = 0;
+
+        /** Number of padding characters. */
+        private int fPads = 0;
+
+        /** Values of the characters in the current group of four. */
+        private final int[] fQuad = new int[4];
+
+        Base64Validator(XSSimpleType type) {
+            super(type);
+        }
+
+        protected void scan(char[] ch, int offset, int length) throws InvalidDatatypeValueException {
+            final int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                final char c = ch[i];
+                if (isSpace(c)) {
+                    continue;
+                }
+                final int position = fCount & 3;
+                if (c == '=') {
+                    // padding may only end the last group of four
+                    if (position < 2) {
+                        throw invalidValue("base64Binary");
+                    }
+                    ++fPads;
+                    fQuad[position] = -1;
+                }
+                else {
+                    final int value = valueOf(c);
+                    if (value == -1 || fPads > 0) {
+                        throw invalidValue("base64Binary");
+                    }
+                    fQuad[position] = value;
+                }
+                ++fCount;
+            }
+        }
+
+        protected int endScan() throws InvalidDatatypeValueException {
+            if ((fCount & 3) != 0) {
+                throw invalidValue("base64Binary");
+            }
+            // the bits left over before the padding must be zero
+            if ((fPads == 2 && (fQuad[1] & 0xf) != 0) ||
+                (fPads == 1 && (fQuad[2] & 0x3) != 0)) {
+                throw invalidValue("base64Binary");
+            }
+            return (fCount >> 2) * 3 - fPads;
+        }
+
+        private static int valueOf(char c) {
+            if (c >= 'A' && c <= 'Z') {
+                return c - 'A';
+            }
+            if (c >= 'a' && c <= 'z') {
+                return c - 'a' + 26;
+            }
+            if (c >= '0' && c <= '9') {
+                return c - '0' + 52;
+            }
+            if (c == '+') {
+                return 62;
+            }
+            if (c == '/') {
+                return 63;
+            }
+            return -1;
+        }
+
+    } // class Base64Validator
+
+    /** Validates hexBinary values, counting the octets they encode. */
+    static final class HexBinaryValidator extends IncrementalValidator {
+
+        private int fCount = 0;
+        private boolean fTrailingSpace = false;
+
+        HexBinaryValidator(XSSimpleType type) {
+            super(type);
+        }
+
+        protected void scan(char[] ch, int offset, int length) throws InvalidDatatypeValueException {
+            final int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                final char c = ch[i];
+                if (isSpace(c)) {
+                    // spaces are only allowed around the value
+                    fTrailingSpace = fCount > 0;
+                }
+                else if (fTrailingSpace ||
+                         !((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) {
+                    throw invalidValue("hexBinary");
+                }
+                else {
+                    ++fCount;
+                }
+            }
+        }
+
+        protected int endScan() throws InvalidDatatypeValueException {
+            if ((fCount & 1) != 0) {
+                throw invalidValue("hexBinary");
+            }
+            return fCount >> 1;
+        }
+
+    } // class HexBinaryValidator
+
+    /** Validates list values item by item, counting the items. */
+    static final class ListValidator extends IncrementalValidator {
+
+        private final XSSimpleType fItemType;
+        private final ValidationContext fContext;
+        private final ValidatedInfo fItemInfo = new ValidatedInfo();
+        private final StringBuffer fItem = new StringBuffer();
+        private int fCount = 0;
+
+        ListValidator(XSSimpleType type, ValidationContext context) {
+            super(type);
+            fItemType = (XSSimpleType) type.getItemType();
+            fContext = context;
+        }
+
+        protected void scan(char[] ch, int offset, int length) throws InvalidDatatypeValueException {
+            final int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                if (isSpace(ch[i])) {
+                    endItem();
+                }
+                else {
+                    fItem.append(ch[i]);
+                }
+            }
+        }
+
+        protected int endScan() throws InvalidDatatypeValueException {
+            endItem();
+            return fCount;
+        }
+
+        private void endItem() throws InvalidDatatypeValueException {
+            if (fItem.length() > 0) {
+                fItemType.validate(fItem.toString(), fContext, fItemInfo);
+                fItem.setLength(0);
+                ++fCount;
+            }
+        }
+
+    } // class ListValidator
+
+} // class IncrementalValidator
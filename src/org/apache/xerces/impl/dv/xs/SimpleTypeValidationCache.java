@@ -0,0 +1,425 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.dv.xs;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.xerces.impl.dv.InvalidDatatypeValueException;
+import org.apache.xerces.impl.dv.ValidatedInfo;
+import org.apache.xerces.impl.dv.ValidationContext;
+import org.apache.xerces.impl.dv.XSSimpleType;
+import org.apache.xerces.xs.ShortList;
+
+/**
+ * <p>A bounded cache of the results of validating string values against
+ * simple types. In data-centric documents the same values (codes, flags,
+ * amounts, dates) are validated against the same types over and over;
+ * with a cache only the first occurrence of a value is normalized, parsed
+ * and checked against the facets of the type, and later occurrences reuse
+ * the actual value or the error found the first time.</p>
+ *
+ * <p>Results are keyed by the type, the string value and whether the
+ * value needed normalizing. Values of types whose validation depends on
+ * the validation context (QName, NOTATION, ID, IDREF and ENTITY, or lists
+ * and unions of these) and values validated without facet checking are
+ * never cached.</p>
+ *
+ * <p>A cache may be shared by several validators, including validators
+ * running on different threads. So that they don't all wait for the same
+ * lock, the results are spread by their hash codes over a number of
+ * segments, each with its own lock and its own share of the maximum
+ * size, and the least recently used result of a segment is discarded
+ * when the segment is full.</p>
+ *
+ * <p>The cache counts the number of lookups which found a result and
+ * the number which didn't.</p>
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+public class SimpleTypeValidationCache {
+
+    //
+    // Constants
+    //
+
+    /** Default maximum number of results. */
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    /** Largest number of segments. */
+    private static final int MAX_SEGMENTS = 16;
+
+    /** Smallest share of the maximum size for which another segment is added. */
+    private static final int MIN_SEGMENT_SIZE = 64;
+
+    //
+    // Data
+    //
+
+    /** The segments, a power of two of them. */
+    private final Segment[] fSegments;
+
+    /** Maximum number of results. */
+    private int fMaxSize;
+
+    //
+    // Constructors
+    //
+
+    /** Constructs a validation cache of the default size. */
+    public SimpleTypeValidationCache() {
+        this(DEFAULT_MAX_SIZE);
+    } // <init>()
+
+    /** Constructs a validation cache holding at most <code>maxSize</code> results. */
+    public SimpleTypeValidationCache(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException(Integer.toString(maxSize));
+        }
+        int segments = 1;
+        while (segments < MAX_SEGMENTS && segments * 2 * MIN_SEGMENT_SIZE <= maxSize) {
+            segments <<= 1;
+        }
+        fSegments = new Segment[segments];
+        for (int i = 0; i < segments; i++) {
+            fSegments[i] = new Segment();
+        }
+        setMaxSize(maxSize);
+    } // <init>(int)
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Validates a value against a simple type, as
+     * {@link XSSimpleType#validate(Object,ValidationContext,ValidatedInfo)}
+     * does, reusing the result of an earlier validation of the same value
+     * against the same type if there is one.
+     *
+     * @param type the simple type
+     * @param content the value to validate
+     * @param context the validation context
+     * @param validatedInfo used to store the normalized value, the actual
+     * value and the member types
+     * @return the actual value
+     * @throws InvalidDatatypeValueException if the value isn't valid
+     */
+    public Object validate(XSSimpleType type, Object content,
+            ValidationContext context, ValidatedInfo validatedInfo)
+        throws InvalidDatatypeValueException {
+
+        if (validatedInfo == null || !(content instanceof String) ||
+                !(type instanceof XSSimpleTypeDecl) || !context.needFacetChecking() ||
+                !((XSSimpleTypeDecl) type).isContextIndependent()) {
+            return type.validate(content, context, validatedInfo);
+        }
+        final String value = (String) content;
+        final boolean normalize = context.needToNormalize();
+        final int hashCode = Key.hashCode(type, value, normalize);
+        final Segment segment = fSegments[((hashCode * 0x9E3779B9) >>> 16) & (fSegments.length - 1)];
+        Result result;
+        synchronized (segment) {
+            result = segment.lookup(type, value, normalize, hashCode);
+        }
+        if (result == null) {
+            // start from a clean state so nothing left over from an
+            // earlier validation is stored with the result
+            validatedInfo.reset();
+            try {
+                type.validate(value, context, validatedInfo);
+                result = new Result(validatedInfo);
+            }
+            catch (InvalidDatatypeValueException e) {
+                result = new Result(e);
+            }
+            synchronized (segment) {
+                segment.put(new Key(type, value, normalize), result);
+            }
+        }
+        return result.apply(validatedInfo);
+    } // validate(XSSimpleType,Object,ValidationContext,ValidatedInfo):Object
+
+    /** Returns the maximum number of results held in the cache. */
+    public synchronized int getMaxSize() {
+        return fMaxSize;
+    } // getMaxSize():int
+
+    /**
+     * Sets the maximum number of results held in the cache,
+     * discarding the least recently used results of each segment
+     * if there are more than its share of the new maximum.
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException(Integer.toString(maxSize));
+        }
+        fMaxSize = maxSize;
+        final int share = maxSize / fSegments.length;
+        final int remainder = maxSize % fSegments.length;
+        for (int i = 0; i < fSegments.length; i++) {
+            synchronized (fSegments[i]) {
+                fSegments[i].setMaxSize(i < remainder ? share + 1 : share);
+            }
+        }
+    } // setMaxSize(int)
+
+    /** Returns the number of results held in the cache. */
+    public int getSize() {
+        int size = 0;
+        for (int i = 0; i < fSegments.length; i++) {
+            synchronized (fSegments[i]) {
+                size += fSegments[i].size();
+            }
+        }
+        return size;
+    } // getSize():int
+
+    /** Discards all results. */
+    public void clear() {
+        for (int i = 0; i < fSegments.length; i++) {
+            synchronized (fSegments[i]) {
+                fSegments[i].clear();
+            }
+        }
+    } // clear()
+
+    /** Returns the number of lookups which found a result. */
+    public long getHits() {
+        long hits = 0;
+        for (int i = 0; i < fSegments.length; i++) {
+            synchronized (fSegments[i]) {
+                hits += fSegments[i].fHits;
+            }
+        }
+        return hits;
+    } // getHits():long
+
+    /** Returns the number of lookups which didn't find a result. */
+    public long getMisses() {
+        long misses = 0;
+        for (int i = 0; i < fSegments.length; i++) {
+            synchronized (fSegments[i]) {
+                misses += fSegments[i].fMisses;
+            }
+        }
+        return misses;
+    } // getMisses():long
+
+    /**
+     * Returns the proportion of lookups which found a result,
+     * or zero if there haven't been any lookups.
+     */
+    public double getHitRate() {
+        long hits = 0;
+        long lookups = 0;
+        for (int i = 0; i < fSegments.length; i++) {
+            synchronized (fSegments[i]) {
+                hits += fSegments[i].fHits;
+                lookups += fSegments[i].fHits + fSegments[i].fMisses;
+            }
+        }
+        return (lookups != 0) ? (double) hits / lookups : 0;
+    } // getHitRate():double
+
+    /** Resets the hit and miss counts to zero. */
+    public void resetStatistics() {
+        for (int i = 0; i < fSegments.length; i++) {
+            synchronized (fSegments[i]) {
+                fSegments[i].fHits = 0;
+                fSegments[i].fMisses = 0;
+            }
+        }
+    } // resetStatistics()
+
+    //
+    // Classes
+    //
+
+    /**
+     * A segment of the cache: results in least recently used order,
+     * with the lookup counts. Access is synchronized on the segment.
+     */
+    private static final class Segment extends LinkedHashMap {
+
+        private static final long serialVersionUID = 1L;
+
+        /** Maximum number of results. */
+        private int fMaxSize;
+
+        /** Key used to look up results. */
+        private final Key fLookupKey = new Key();
+
+        /** Number of lookups which found a result. */
+        long fHits = 0;
+
+        /** Number of lookups which didn't find a result. */
+        long fMisses = 0;
+
+        Segment() {
+            super(16, 0.75f, true);
+        }
+
+        /** Returns the result for a key and counts the lookup. */
+        Result lookup(XSSimpleType type, String value, boolean normalize, int hashCode) {
+            fLookupKey.setValues(type, value, normalize, hashCode);
+            Result result = (Result) get(fLookupKey);
+            fLookupKey.setValues(null, null, false, 0);
+            if (result != null) {
+                ++fHits;
+            }
+            else {
+                ++fMisses;
+            }
+            return result;
+        }
+
+        void setMaxSize(int maxSize) {
+            fMaxSize = maxSize;
+            int excess = size() - maxSize;
+            if (excess > 0) {
+                Iterator entries = keySet().iterator();
+                while (excess-- > 0) {
+                    entries.next();
+                    entries.remove();
+                }
+            }
+        }
+
+        protected boolean removeEldestEntry(Map.Entry eldest) {
+            return size() > fMaxSize;
+        }
+
+    } // class Segment
+
+    /** The key of a result. */
+    private static final class Key {
+
+        /** The simple type. */
+        private XSSimpleType fType;
+
+        /** The string value. */
+        private String fValue;
+
+        /** Whether the value needed normalizing. */
+        private boolean fNormalize;
+
+        /** Hash code. */
+        private int fHashCode;
+
+        Key() {
+        }
+
+        Key(XSSimpleType type, String value, boolean normalize) {
+            setValues(type, value, normalize, hashCode(type, value, normalize));
+        }
+
+        void setValues(XSSimpleType type, String value, boolean normalize, int hashCode) {
+            fType = type;
+            fValue = value;
+            fNormalize = normalize;
+            fHashCode = hashCode;
+        }
+
+        static int hashCode(XSSimpleType type, String value, boolean normalize) {
+            return (System.identityHashCode(type) * 31 + value.hashCode()) * 2 + (normalize ? 1 : 0);
+        }
+
+        public int hashCode() {
+            return fHashCode;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return fType == key.fType && fNormalize == key.fNormalize &&
+                fValue.equals(key.fValue);
+        }
+
+    } // class Key
+
+    /**
+     * The result of validating a value: either the information filled
+     * in by a successful validation or the error reported by a failed one.
+     */
+    private static final class Result {
+
+        private final String fNormalizedValue;
+        private final Object fActualValue;
+        private final short fActualValueType;
+        private final XSSimpleType fActualType;
+        private final XSSimpleType fMemberType;
+        private final XSSimpleType[] fMemberTypes;
+        private final ShortList fItemValueTypes;
+
+        /** The error key, or <code>null</code> if the value is valid. */
+        private final String fErrorKey;
+
+        /** The error arguments. */
+        private final Object[] fErrorArgs;
+
+        Result(ValidatedInfo validatedInfo) {
+            fNormalizedValue = validatedInfo.normalizedValue;
+            fActualValue = validatedInfo.actualValue;
+            fActualValueType = validatedInfo.actualValueType;
+            fActualType = validatedInfo.actualType;
+            fMemberType = validatedInfo.memberType;
+            fMemberTypes = validatedInfo.memberTypes;
+            fItemValueTypes = validatedInfo.itemValueTypes;
+            fErrorKey = null;
+            fErrorArgs = null;
+        }
+
+        Result(InvalidDatatypeValueException e) {
+            fNormalizedValue = null;
+            fActualValue = null;
+            fActualValueType = 0;
+            fActualType = null;
+            fMemberType = null;
+            fMemberTypes = null;
+            fItemValueTypes = null;
+            fErrorKey = e.getKey();
+            fErrorArgs = e.getArgs();
+        }
+
+        /**
+         * Fills in the validated info and returns the actual value,
+         * or throws the error if the value is invalid.
+         */
+        Object apply(ValidatedInfo validatedInfo) throws InvalidDatatypeValueException {
+            if (fErrorKey != null) {
+                throw new InvalidDatatypeValueException(fErrorKey, fErrorArgs);
+            }
+            validatedInfo.normalizedValue = fNormalizedValue;
+            validatedInfo.actualValue = fActualValue;
+            validatedInfo.actualValueType = fActualValueType;
+            validatedInfo.actualType = fActualType;
+            validatedInfo.memberType = fMemberType;
+            validatedInfo.memberTypes = fMemberTypes;
+            validatedInfo.itemValueTypes = fItemValueTypes;
+            return fActualValue;
+        }
+
+    } // class Result
+
+} // class SimpleTypeValidationCache
@@ -269,6 +269,7 @@ public class XSSimpleTypeDecl implements XSSimpleType, TypeInfo {
     private Vector fPatternStr;
     private ValidatedInfo[] fEnumeration;
     private int fEnumerationSize;
+    private EnumerationIndex fEnumerationIndex;
     private ShortList fEnumerationTypeList;
     private ObjectList fEnumerationItemTypeList;
     private StringList fLexicalPattern;
@@ -387,6 +388,7 @@ public class XSSimpleTypeDecl implements XSSimpleType, TypeInfo {
         fPatternStr = fBase.fPatternStr;
         fEnumeration = fBase.fEnumeration;
         fEnumerationSize = fBase.fEnumerationSize;
+        fEnumerationIndex = fBase.fEnumerationIndex;
         fWhiteSpace = fBase.fWhiteSpace;
         fMaxExclusive = fBase.fMaxExclusive;
         fMaxInclusive = fBase.fMaxInclusive;
@@ -507,6 +509,7 @@ public class XSSimpleTypeDecl implements XSSimpleType, TypeInfo {
         fPatternStr = fBase.fPatternStr;
         fEnumeration = fBase.fEnumeration;
         fEnumerationSize = fBase.fEnumerationSize;
+        fEnumerationIndex = fBase.fEnumerationIndex;
         fWhiteSpace = fBase.fWhiteSpace;
         fMaxExclusive = fBase.fMaxExclusive;
         fMaxInclusive = fBase.fMaxInclusive;
@@ -642,6 +645,29 @@ public class XSSimpleTypeDecl implements XSSimpleType, TypeInfo {
         return false;
     }
 
+    /**
+     * Returns true if the result of validating a value against this type
+     * only depends on the value, and not on the validation context, that
+     * is if neither this type nor any of its item or member types are
+     * QName, NOTATION, ID, IDREF or ENTITY.
+     */
+    boolean isContextIndependent() {
+        switch (fVariety) {
+            case VARIETY_ATOMIC:
+                return fValidationDV != DV_QNAME && fValidationDV != DV_NOTATION &&
+                    fValidationDV != DV_ID && fValidationDV != DV_IDREF &&
+                    fValidationDV != DV_ENTITY;
+            case VARIETY_LIST:
+                return fItemType.isContextIndependent();
+            case VARIETY_UNION:
+                for (int i = 0; i < fMemberTypes.length; i++) {
+                    if (!fMemberTypes[i].isContextIndependent())
+                        return false;
+                }
+        }
+        return true;
+    }
+
     public short getWhitespace() throws DatatypeException{
         if (fVariety == VARIETY_UNION) {
             throw new DatatypeException("dt-whitespace", new Object[]{fTypeName});
@@ -888,6 +914,7 @@ public class XSSimpleTypeDecl implements XSSimpleType, TypeInfo {
                         reportError("enumeration-valid-restriction", new Object[]{enumVals.elementAt(i), this.getBaseType().getName()});
                     }
                 }
+                fEnumerationIndex = EnumerationIndex.create(fEnumeration, fEnumerationSize);
                 fFacetsDefined |= FACET_ENUMERATION;
                 if ((fixedFacet & FACET_ENUMERATION) != 0)
                     fFixedFacet |= FACET_ENUMERATION;
@@ -1474,6 +1501,7 @@ public class XSSimpleTypeDecl implements XSSimpleType, TypeInfo {
             fFacetsDefined |= FACET_ENUMERATION;
             fEnumeration = fBase.fEnumeration;
             fEnumerationSize = fBase.fEnumerationSize;
+            fEnumerationIndex = fBase.fEnumerationIndex;
             enumerationAnnotations = fBase.enumerationAnnotations;
         }
         // inherit maxExclusive
@@ -1669,38 +1697,20 @@ public class XSSimpleTypeDecl implements XSSimpleType, TypeInfo {
         //enumeration
         if ( ((fFacetsDefined & FACET_ENUMERATION) != 0 ) ) {
             boolean present = false;
-            final int enumSize = fEnumerationSize;
             final short primitiveType1 = convertToPrimitiveKind(type);
-            for (int i = 0; i < enumSize; i++) {
-                final short primitiveType2 = convertToPrimitiveKind(fEnumeration[i].actualValueType);
-                if ((primitiveType1 == primitiveType2 ||
-                        primitiveType1 == XSConstants.ANYSIMPLETYPE_DT && primitiveType2 == XSConstants.STRING_DT ||
-                        primitiveType1 == XSConstants.STRING_DT && primitiveType2 == XSConstants.ANYSIMPLETYPE_DT)
-                        && fEnumeration[i].actualValue.equals(ob)) {
-                    if (primitiveType1 == XSConstants.LIST_DT || primitiveType1 == XSConstants.LISTOFUNION_DT) {
-                        ShortList enumItemType = fEnumeration[i].itemValueTypes;
-                        final int typeList1Length = itemType != null ? itemType.getLength() : 0;
-                        final int typeList2Length = enumItemType != null ? enumItemType.getLength() : 0;
-                        if (typeList1Length == typeList2Length) {
-                            int j;
-                            for (j = 0; j < typeList1Length; ++j) {
-                                final short primitiveItem1 = convertToPrimitiveKind(itemType.item(j));
-                                final short primitiveItem2 = convertToPrimitiveKind(enumItemType.item(j));
-                                if (primitiveItem1 != primitiveItem2) {
-                                    if (primitiveItem1 == XSConstants.ANYSIMPLETYPE_DT && primitiveItem2 == XSConstants.STRING_DT ||
-                                            primitiveItem1 == XSConstants.STRING_DT && primitiveItem2 == XSConstants.ANYSIMPLETYPE_DT) {
-                                        continue;
-                                    }
-                                    break;
-                                }
-                            }
-                            if (j == typeList1Length) {
-                                present = true;
-                                break;
-                            }
-                        }
+            if (fEnumerationIndex != null && EnumerationIndex.isIndexable(type, itemType)) {
+                // only compare with the values which have the same hash code
+                for (int i = fEnumerationIndex.first(ob); i != -1; i = fEnumerationIndex.next(i)) {
+                    if (isEnumerationValue(i, primitiveType1, ob, itemType)) {
+                        present = true;
+                        break;
                     }
-                    else {
+                }
+            }
+            else {
+                final int enumSize = fEnumerationSize;
+                for (int i = 0; i < enumSize; i++) {
+                    if (isEnumerationValue(i, primitiveType1, ob, itemType)) {
                         present = true;
                         break;
                     }
@@ -2983,6 +2993,7 @@ public class XSSimpleTypeDecl implements XSSimpleType, TypeInfo {
         fPattern = null;
         fPatternStr = null;
         fEnumeration = null;
+        fEnumerationIndex = null;
         fLexicalPattern = null;
         fLexicalEnumeration = null;
         fActualEnumeration = null;
@@ -3456,7 +3467,43 @@ public class XSSimpleTypeDecl implements XSSimpleType, TypeInfo {
         return isDOMDerivedFrom(typeNamespaceArg, typeNameArg, derivationMethod);
     }
 
-    private short convertToPrimitiveKind(short valueType) {
+    /**
+     * Returns true if the given actual value is equal to the enumeration
+     * value at the given position, including the types of list items.
+     */
+    private boolean isEnumerationValue(int i, short primitiveType1, Object ob, ShortList itemType) {
+        final short primitiveType2 = convertToPrimitiveKind(fEnumeration[i].actualValueType);
+        if ((primitiveType1 == primitiveType2 ||
+                primitiveType1 == XSConstants.ANYSIMPLETYPE_DT && primitiveType2 == XSConstants.STRING_DT ||
+                primitiveType1 == XSConstants.STRING_DT && primitiveType2 == XSConstants.ANYSIMPLETYPE_DT)
+                && fEnumeration[i].actualValue.equals(ob)) {
+            if (primitiveType1 == XSConstants.LIST_DT || primitiveType1 == XSConstants.LISTOFUNION_DT) {
+                ShortList enumItemType = fEnumeration[i].itemValueTypes;
+                final int typeList1Length = itemType != null ? itemType.getLength() : 0;
+                final int typeList2Length = enumItemType != null ? enumItemType.getLength() : 0;
+                if (typeList1Length == typeList2Length) {
+                    int j;
+                    for (j = 0; j < typeList1Length; ++j) {
+                        final short primitiveItem1 = convertToPrimitiveKind(itemType.item(j));
+                        final short primitiveItem2 = convertToPrimitiveKind(enumItemType.item(j));
+                        if (primitiveItem1 != primitiveItem2) {
+                            if (primitiveItem1 == XSConstants.ANYSIMPLETYPE_DT && primitiveItem2 == XSConstants.STRING_DT ||
+                                    primitiveItem1 == XSConstants.STRING_DT && primitiveItem2 == XSConstants.ANYSIMPLETYPE_DT) {
+                                continue;
+                            }
+                            break;
+                        }
+                    }
+                    return j == typeList1Length;
+                }
+                return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    static short convertToPrimitiveKind(short valueType) {
         /** Primitive datatypes. */
         if (valueType <= XSConstants.NOTATION_DT) {
             return valueType;
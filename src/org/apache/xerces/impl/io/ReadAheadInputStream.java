@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * <p>An input stream which reads another input stream ahead of its
+ * reader on a background thread.</p>
+ *
+ * <p>The background thread fills a fixed ring of byte buffers and waits
+ * while all of them are full, so that no more than the size of the ring
+ * is read ahead. An exception or error thrown while reading ahead is
+ * thrown to the reader once it has read the bytes which came before it,
+ * so that the reader never waits for a thread which has stopped. The
+ * underlying stream is closed by the background thread when it stops,
+ * that is at the end of the stream, on an exception or once this stream
+ * is closed.</p>
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+public final class ReadAheadInputStream
+    extends InputStream {
+
+    //
+    // Constants
+    //
+
+    /** Default buffer size (65536). */
+    public static final int DEFAULT_BUFFER_SIZE = 65536;
+
+    /** Default number of buffers (4). */
+    public static final int DEFAULT_BUFFER_COUNT = 4;
+
+    //
+    // Data
+    //
+
+    /** Input stream. Only used by the background thread. */
+    private final InputStream fInputStream;
+
+    /** The ring of buffers. */
+    private final byte[][] fBuffers;
+
+    /** The number of bytes in each filled buffer. */
+    private final int[] fLengths;
+
+    /** The index of the first filled buffer. */
+    private int fFirst;
+
+    /** The number of filled buffers, including the one being read. */
+    private int fFilled;
+
+    /** True once the end of the underlying stream has been reached. */
+    private boolean fEndOfStream;
+
+    /**
+     * The exception thrown while reading ahead, if any: an I/O
+     * exception or an error.
+     */
+    private Throwable fException;
+
+    /** True once this stream has been closed. */
+    private boolean fClosed;
+
+    // the reader's state
+
+    /** The buffer being read, or null. */
+    private byte[] fBuffer;
+
+    /** The offset of the next byte in the buffer being read. */
+    private int fOffset;
+
+    /** The number of bytes in the buffer being read. */
+    private int fLength;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs a read-ahead stream of the specified input stream
+     * using the default buffer size and number of buffers.
+     *
+     * @param inputStream The input stream.
+     */
+    public ReadAheadInputStream(InputStream inputStream) {
+        this(inputStream, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFER_COUNT);
+    } // <init>(InputStream)
+
+    /**
+     * Constructs a read-ahead stream of the specified input stream
+     * and starts reading it ahead.
+     *
+     * @param inputStream The input stream.
+     * @param size        The size of each buffer.
+     * @param count       The number of buffers, at least two.
+     */
+    public ReadAheadInputStream(InputStream inputStream, int size, int count) {
+        fInputStream = inputStream;
+        fBuffers = new byte[Math.max(count, 2)][size];
+        fLengths = new int[fBuffers.length];
+        new Producer().start();
+    } // <init>(InputStream, int, int)
+
+    //
+    // InputStream methods
+    //
+
+    /** Reads a byte, waiting until one has been read ahead. */
+    public int read() throws IOException {
+        if (fOffset == fLength && !nextBuffer()) {
+            return -1;
+        }
+        return fBuffer[fOffset++] & 0xFF;
+    } // read():int
+
+    /**
+     * Reads bytes from the buffer being read, waiting until the next one
+     * has been filled if it is exhausted.
+     */
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (fOffset == fLength && !nextBuffer()) {
+            return -1;
+        }
+        if (len > fLength - fOffset) {
+            len = fLength - fOffset;
+        }
+        System.arraycopy(fBuffer, fOffset, b, off, len);
+        fOffset += len;
+        return len;
+    } // read(byte[],int,int):int
+
+    /** Skips bytes of the buffer being read. */
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        if (fOffset == fLength && !nextBuffer()) {
+            return 0;
+        }
+        if (n > fLength - fOffset) {
+            n = fLength - fOffset;
+        }
+        fOffset += (int) n;
+        return n;
+    } // skip(long):long
+
+    /** Returns the number of bytes left in the buffer being read. */
+    public int available() throws IOException {
+        return fLength - fOffset;
+    } // available():int
+
+    /** Closes this stream and stops reading ahead. */
+    public void close() throws IOException {
+        synchronized (this) {
+            fClosed = true;
+            notifyAll();
+        }
+        fBuffer = null;
+        fOffset = 0;
+        fLength = 0;
+    } // close()
+
+    //
+    // Private methods
+    //
+
+    /**
+     * Releases the buffer being read and waits for the next one. Returns
+     * false at the end of the stream.
+     */
+    private synchronized boolean nextBuffer() throws IOException {
+        if (fClosed) {
+            return false;
+        }
+        if (fBuffer != null) {
+            fBuffer = null;
+            fOffset = 0;
+            fLength = 0;
+            fFirst = (fFirst + 1) % fBuffers.length;
+            fFilled--;
+            notifyAll();
+        }
+        while (fFilled == 0) {
+            if (fException != null) {
+                if (fException instanceof Error) {
+                    throw (Error) fException;
+                }
+                throw (IOException) fException;
+            }
+            if (fEndOfStream) {
+                return false;
+            }
+            try {
+                wait();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        fBuffer = fBuffers[fFirst];
+        fLength = fLengths[fFirst];
+        return true;
+    } // nextBuffer():boolean
+
+    /**
+     * Waits until a buffer is free and returns its index, or -1 once
+     * this stream has been closed.
+     */
+    private synchronized int freeBuffer() throws InterruptedException {
+        while (fFilled == fBuffers.length && !fClosed) {
+            wait();
+        }
+        return fClosed ? -1 : (fFirst + fFilled) % fBuffers.length;
+    } // freeBuffer():int
+
+    /** Hands a filled buffer to the reader, or signals the end of the stream. */
+    private synchronized void filled(int index, int length) {
+        if (length == -1) {
+            fEndOfStream = true;
+        }
+        else {
+            fLengths[index] = length;
+            fFilled++;
+        }
+        notifyAll();
+    } // filled(int,int)
+
+    /** Hands an I/O exception or an error to the reader. */
+    private synchronized void failed(Throwable e) {
+        fException = e;
+        notifyAll();
+    } // failed(Throwable)
+
+    //
+    // Classes
+    //
+
+    /** The thread which reads ahead. */
+    private final class Producer extends Thread {
+
+        Producer() {
+            super("ReadAheadInputStream");
+            setDaemon(true);
+        }
+
+        public void run() {
+            try {
+                int index;
+                while ((index = freeBuffer()) != -1) {
+                    byte[] buffer = fBuffers[index];
+                    int length = fInputStream.read(buffer, 0, buffer.length);
+                    filled(index, length);
+                    if (length == -1) {
+                        break;
+                    }
+                }
+            }
+            catch (IOException e) {
+                failed(e);
+            }
+            catch (RuntimeException e) {
+                IOException exception = new IOException(e.toString());
+                exception.initCause(e);
+                failed(exception);
+            }
+            catch (InterruptedException e) {
+                failed(new InterruptedIOException());
+            }
+            catch (Error e) {
+                failed(e);
+            }
+            finally {
+                try {
+                    fInputStream.close();
+                }
+                catch (IOException e) {
+                    // the bytes have been read already
+                }
+            }
+        }
+
+    } // class Producer
+
+} // class ReadAheadInputStream
@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.util.Hashtable;
+
+/**
+ * <p>Reader for single byte encodings, such as the ISO-8859 and Windows
+ * code pages, KOI8-R and the EBCDIC code pages, which decodes each byte
+ * through a table of 256 characters.</p>
+ *
+ * <p>The table of an encoding is built from the Java charset of that
+ * name the first time it is asked for, and is shared by all readers of
+ * the encoding. Bytes which the charset can't map are decoded as
+ * U+FFFD, as they are by <code>java.io.InputStreamReader</code>.</p>
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+public final class SingleByteReader
+    extends Reader {
+
+    //
+    // Constants
+    //
+
+    /** Default byte buffer size (2048). */
+    public static final int DEFAULT_BUFFER_SIZE = 2048;
+
+    /** Marks an encoding in the table cache which isn't single byte. */
+    private static final char[] NO_TABLE = new char[0];
+
+    //
+    // Static data
+    //
+
+    /** Decoding tables, keyed by Java encoding name. */
+    private static final Hashtable fgTables = new Hashtable();
+
+    //
+    // Data
+    //
+
+    /** Input stream. */
+    protected final InputStream fInputStream;
+
+    /** Byte buffer. */
+    protected final byte[] fBuffer;
+
+    /** Decoding table. */
+    protected final char[] fTable;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs a single byte reader from the specified input stream
+     * and decoding table using the default buffer size.
+     *
+     * @param inputStream The input stream.
+     * @param table       The decoding table, as returned by
+     *                    {@link #getTable(String)}.
+     */
+    public SingleByteReader(InputStream inputStream, char[] table) {
+        this(inputStream, new byte[DEFAULT_BUFFER_SIZE], table);
+    } // <init>(InputStream, char[])
+
+    /**
+     * Constructs a single byte reader from the specified input stream,
+     * buffer and decoding table.
+     *
+     * @param inputStream The input stream.
+     * @param buffer      The byte buffer.
+     * @param table       The decoding table, as returned by
+     *                    {@link #getTable(String)}.
+     */
+    public SingleByteReader(InputStream inputStream, byte[] buffer, char[] table) {
+        fInputStream = inputStream;
+        fBuffer = buffer;
+        fTable = table;
+    } // <init>(InputStream, byte[], char[])
+
+    //
+    // Public static methods
+    //
+
+    /**
+     * Returns the decoding table of the specified Java encoding, or
+     * <code>null</code> if it isn't a single byte encoding or isn't
+     * supported.
+     *
+     * @param javaEncoding The Java encoding name.
+     */
+    public static char[] getTable(String javaEncoding) {
+        char[] table = (char[]) fgTables.get(javaEncoding);
+        if (table == null) {
+            table = createTable(javaEncoding);
+            fgTables.put(javaEncoding, table != null ? table : NO_TABLE);
+        }
+        return table != NO_TABLE ? table : null;
+    } // getTable(String):char[]
+
+    //
+    // Reader methods
+    //
+
+    /**
+     * Read a single character. This method will block until a character is
+     * available, an I/O error occurs, or the end of the stream is reached.
+     *
+     * @return     The character read, as an integer in the range 0 to 65535
+     *             (<tt>0x00-0xffff</tt>), or -1 if the end of the stream has
+     *             been reached
+     *
+     * @exception  IOException  If an I/O error occurs
+     */
+    public int read() throws IOException {
+        final int b = fInputStream.read();
+        return b != -1 ? fTable[b] : -1;
+    } // read():int
+
+    /**
+     * Read characters into a portion of an array.  This method will block
+     * until some input is available, an I/O error occurs, or the end of the
+     * stream is reached.
+     *
+     * @param      ch     Destination buffer
+     * @param      offset Offset at which to start storing characters
+     * @param      length Maximum number of characters to read
+     *
+     * @return     The number of characters read, or -1 if the end of the
+     *             stream has been reached
+     *
+     * @exception  IOException  If an I/O error occurs
+     */
+    public int read(char ch[], int offset, int length) throws IOException {
+        if (length > fBuffer.length) {
+            length = fBuffer.length;
+        }
+        final int count = fInputStream.read(fBuffer, 0, length);
+        final char[] table = fTable;
+        for (int i = 0; i < count; ++i) {
+            ch[offset + i] = table[fBuffer[i] & 0xff];
+        }
+        return count;
+    } // read(char[],int,int)
+
+    /**
+     * Skip characters.  This method will block until some characters are
+     * available, an I/O error occurs, or the end of the stream is reached.
+     *
+     * @param  n  The number of characters to skip
+     *
+     * @return    The number of characters actually skipped
+     *
+     * @exception  IOException  If an I/O error occurs
+     */
+    public long skip(long n) throws IOException {
+        return fInputStream.skip(n);
+    } // skip(long):long
+
+    /**
+     * Tell whether this stream is ready to be read.
+     *
+     * @return True if the next read() is guaranteed not to block for input,
+     * false otherwise.  Note that returning false does not guarantee that the
+     * next read will block.
+     *
+     * @exception  IOException  If an I/O error occurs
+     */
+    public boolean ready() throws IOException {
+        return false;
+    } // ready()
+
+    /**
+     * Tell whether this stream supports the mark() operation.
+     */
+    public boolean markSupported() {
+        return fInputStream.markSupported();
+    } // markSupported()
+
+    /**
+     * Mark the present position in the stream.  Subsequent calls to reset()
+     * will attempt to reposition the stream to this point.
+     *
+     * @param  readAheadLimit  Limit on the number of characters that may be
+     *                         read while still preserving the mark.
+     *
+     * @exception  IOException  If the stream does not support mark(),
+     *                          or if some other I/O error occurs
+     */
+    public void mark(int readAheadLimit) throws IOException {
+        fInputStream.mark(readAheadLimit);
+    } // mark(int)
+
+    /**
+     * Reset the stream to the mark.
+     *
+     * @exception  IOException  If the stream has not been marked,
+     *                          or if the mark has been invalidated,
+     *                          or if the stream does not support reset(),
+     *                          or if some other I/O error occurs
+     */
+    public void reset() throws IOException {
+        fInputStream.reset();
+    } // reset()
+
+    /**
+     * Close the stream.  Once a stream has been closed, further read(),
+     * ready(), mark(), or reset() invocations will throw an IOException.
+     * Closing a previously-closed stream, however, has no effect.
+     *
+     * @exception  IOException  If an I/O error occurs
+     */
+    public void close() throws IOException {
+        fInputStream.close();
+    } // close()
+
+    //
+    // Private static methods
+    //
+
+    /**
+     * Builds the decoding table of a Java encoding. Each byte must decode
+     * to one character, and to the same character whichever byte comes
+     * before or after it, which excludes multi-byte and stateful
+     * encodings.
+     */
+    private static char[] createTable(String javaEncoding) {
+        try {
+            final CharsetDecoder decoder = Charset.forName(javaEncoding).newDecoder();
+            if (decoder.maxCharsPerByte() != 1.0f || decoder.averageCharsPerByte() != 1.0f) {
+                return null;
+            }
+            final char[] table = new char[256];
+            final byte[] bytes = new byte[1];
+            for (int i = 0; i < 256; ++i) {
+                bytes[0] = (byte) i;
+                final String one = new String(bytes, javaEncoding);
+                if (one.length() != 1) {
+                    return null;
+                }
+                table[i] = one.charAt(0);
+            }
+            // every ordered pair of bytes: i 0 i 1 ... i 255 for each i
+            final byte[] pairs = new byte[256 * 256 * 2];
+            for (int i = 0, k = 0; i < 256; ++i) {
+                for (int j = 0; j < 256; ++j) {
+                    pairs[k++] = (byte) i;
+                    pairs[k++] = (byte) j;
+                }
+            }
+            final String all = new String(pairs, javaEncoding);
+            if (all.length() != pairs.length) {
+                return null;
+            }
+            for (int k = 0; k < pairs.length; ++k) {
+                if (all.charAt(k) != table[pairs[k] & 0xff]) {
+                    return null;
+                }
+            }
+            return table;
+        }
+        catch (Exception e) {
+            // unsupported or illegal charset name
+            return null;
+        }
+    } // createTable(String):char[]
+
+} // class SingleByteReader
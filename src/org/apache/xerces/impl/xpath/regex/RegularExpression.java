@@ -702,12 +702,6 @@ public class RegularExpression implements java.io.Serializable {
      */
     public boolean matches(char[] target, int start, int end, Match match) {
 
-        synchronized (this) {
-            if (this.operations == null)
-                this.prepare();
-            if (this.context == null)
-                this.context = new Context();
-        }
         Context con = null;
         synchronized (this.context) {
             con = this.context.inuse ? new Context() : this.context;
@@ -887,12 +881,6 @@ public class RegularExpression implements java.io.Serializable {
      */
     public boolean matches(String  target, int start, int end, Match match) {
 
-        synchronized (this) {
-            if (this.operations == null)
-                this.prepare();
-            if (this.context == null)
-                this.context = new Context();
-        }
         Context con = null;
         synchronized (this.context) {
             con = this.context.inuse ? new Context() : this.context;
@@ -1566,12 +1554,6 @@ public class RegularExpression implements java.io.Serializable {
 
 
 
-        synchronized (this) {
-            if (this.operations == null)
-                this.prepare();
-            if (this.context == null)
-                this.context = new Context();
-        }
         Context con = null;
         synchronized (this.context) {
             con = this.context.inuse ? new Context() : this.context;
@@ -2269,6 +2251,8 @@ public class RegularExpression implements java.io.Serializable {
         this.nofparen = parens;
         this.options = options;
         this.hasBackReferences = hasBackReferences;
+        this.prepare();
+        this.context = new Context();
     }
 
     /**
@@ -2291,8 +2275,21 @@ public class RegularExpression implements java.io.Serializable {
         this.nofparen = rp.parennumber;
         this.hasBackReferences = rp.hasBackReferences;
 
+        // Compile the pattern now rather than on the first match so that
+        // threads sharing this expression don't need to lock it to match.
         this.operations = null;
-        this.context = null;
+        this.prepare();
+        this.context = new Context();
+    }
+
+    /**
+     * Compiles the pattern of a deserialized expression.
+     */
+    private void readObject(java.io.ObjectInputStream in)
+        throws java.io.IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.prepare();
+        this.context = new Context();
     }
     /**
      *
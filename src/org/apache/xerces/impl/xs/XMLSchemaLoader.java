@@ -183,6 +183,10 @@ XSLoader, DOMConfiguration {
     public static final String ENTITY_RESOLVER =
         Constants.XERCES_PROPERTY_PREFIX + Constants.ENTITY_RESOLVER_PROPERTY;
     
+    /** Property identifier: entity cache. */
+    protected static final String ENTITY_CACHE =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.ENTITY_CACHE_PROPERTY;
+    
     /** Property identifier: grammar pool. */
     public static final String XMLGRAMMAR_POOL =
         Constants.XERCES_PROPERTY_PREFIX + Constants.XMLGRAMMAR_POOL_PROPERTY;
@@ -216,6 +220,7 @@ XSLoader, DOMConfiguration {
         ERROR_REPORTER,
         ERROR_HANDLER,
         ENTITY_RESOLVER,
+        ENTITY_CACHE,
         XMLGRAMMAR_POOL,
         SCHEMA_LOCATION,
         SCHEMA_NONS_LOCATION,
@@ -440,6 +445,9 @@ XSLoader, DOMConfiguration {
         else if (propertyId.equals(ENTITY_RESOLVER)) {
             fEntityManager.setProperty(ENTITY_RESOLVER, state);
         }
+        else if (propertyId.equals(ENTITY_CACHE)) {
+            fEntityManager.setProperty(ENTITY_CACHE, state);
+        }
         else if (propertyId.equals(ERROR_REPORTER)) {
             fErrorReporter = (XMLErrorReporter)state;
             if (fErrorReporter.getMessageFormatter(XSMessageFormatter.SCHEMA_DOMAIN) == null) {
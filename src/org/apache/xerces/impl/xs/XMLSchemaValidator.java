@@ -36,6 +36,8 @@ import org.apache.xerces.impl.dv.DatatypeException;
 import org.apache.xerces.impl.dv.InvalidDatatypeValueException;
 import org.apache.xerces.impl.dv.ValidatedInfo;
 import org.apache.xerces.impl.dv.XSSimpleType;
+import org.apache.xerces.impl.dv.xs.IncrementalValidator;
+import org.apache.xerces.impl.dv.xs.SimpleTypeValidationCache;
 import org.apache.xerces.impl.dv.xs.XSSimpleTypeDecl;
 import org.apache.xerces.impl.validation.ConfigurableValidationState;
 import org.apache.xerces.impl.validation.ValidationManager;
@@ -252,6 +254,10 @@ public class XMLSchemaValidator
     /** Property identifier: Schema DV Factory */
     protected static final String SCHEMA_DV_FACTORY = 
         Constants.XERCES_PROPERTY_PREFIX + Constants.SCHEMA_DV_FACTORY_PROPERTY;
+
+    /** Property identifier: simple type validation cache. */
+    protected static final String SCHEMA_VALIDATION_CACHE =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.SCHEMA_VALIDATION_CACHE_PROPERTY;
     
     // recognized features and properties
 
@@ -322,11 +328,12 @@ public class XMLSchemaValidator
             ROOT_TYPE_DEF,
             ROOT_ELEMENT_DECL,
             SCHEMA_DV_FACTORY,
+            SCHEMA_VALIDATION_CACHE,
         };
 
     /** Property defaults. */
     private static final Object[] PROPERTY_DEFAULTS =
-        { null, null, null, null, null, null, null, null, null, null, null};
+        { null, null, null, null, null, null, null, null, null, null, null, null};
 
     // this is the number of valuestores of each kind
     // we expect an element to have.  It's almost
@@ -356,6 +363,11 @@ public class XMLSchemaValidator
     // clear this before we introduce it into the pipeline.
     protected final AugmentationsImpl fAugmentations = new AugmentationsImpl();
 
+    // the attributes of an element get fresh augmentations, so their PSVI
+    // objects are kept here, by attribute index, and reset for each element
+    // rather than created for every attribute.
+    protected AttributePSVImpl[] fAttributePSVIs = new AttributePSVImpl[INITIAL_STACK_SIZE];
+
     // this is included for the convenience of handleEndElement
     protected XMLString fDefaultValue;
 
@@ -510,6 +522,7 @@ public class XMLSchemaValidator
     protected ValidationManager fValidationManager = null;
     protected ConfigurableValidationState fValidationState = new ConfigurableValidationState();
     protected XMLGrammarPool fGrammarPool;
+    protected SimpleTypeValidationCache fValidationCache;
 
     // schema location property values
     protected String fExternalSchemas = null;
@@ -977,10 +990,12 @@ public class XMLSchemaValidator
         if (fNormalizeData && fWhiteSpace != -1 && fWhiteSpace != XSSimpleType.WS_PRESERVE) {
             // normalize data
             normalizeWhitespace(data, fWhiteSpace == XSSimpleType.WS_COLLAPSE);
-            fBuffer.append(fNormalizedStr.ch, fNormalizedStr.offset, fNormalizedStr.length);
+            appendBuffer(fNormalizedStr.ch, fNormalizedStr.offset, fNormalizedStr.length);
         } else {
-            if (fAppendBuffer)
-                fBuffer.append(data);
+            if (fAppendBuffer) {
+                char[] ch = data.toCharArray();
+                appendBuffer(ch, 0, ch.length);
+            }
         }
 
         // When it's a complex type with element-only content, we need to
@@ -1140,6 +1155,12 @@ public class XMLSchemaValidator
     // constants
 
     static final int INITIAL_STACK_SIZE = 8;
+
+    /**
+     * Number of characters of element content buffered before trying
+     * to validate the rest of the content as it arrives.
+     */
+    static final int STREAMING_THRESHOLD = 64 * 1024;
     static final int INC_STACK_SIZE = 8;
 
     //
@@ -1255,6 +1276,12 @@ public class XMLSchemaValidator
     /** Whether need to append characters to fBuffer */
     private boolean fAppendBuffer = true;
 
+    /** Validates the content of the current element instead of fBuffer. */
+    private IncrementalValidator fIncrementalValidator = null;
+
+    /** Whether the content of the current element can't be validated incrementally. */
+    private boolean fIncrementalChecked = false;
+
     /** Did we see any character data? */
     private boolean fSawText = false;
 
@@ -1584,6 +1611,12 @@ public class XMLSchemaValidator
             fGrammarPool = null;
         }
 
+        try {
+            fValidationCache = (SimpleTypeValidationCache) componentManager.getProperty(SCHEMA_VALIDATION_CACHE);
+        } catch (XMLConfigurationException e) {
+            fValidationCache = null;
+        }
+
         fState4XsiType.setSymbolTable(symbolTable);
         fState4ApplyDefault.setSymbolTable(symbolTable);
 
@@ -1749,7 +1782,7 @@ public class XMLSchemaValidator
             text = fNormalizedStr;
         }
         if (fAppendBuffer)
-            fBuffer.append(text.ch, text.offset, text.length);
+            appendBuffer(text.ch, text.offset, text.length);
 
         // When it's a complex type with element-only content, we need to
         // find out whether the content contains any non-whitespace character.
@@ -1770,6 +1803,54 @@ public class XMLSchemaValidator
         return text;
     } // handleCharacters(XMLString)
 
+    /**
+     * Appends characters to the content of the current element. Once
+     * the content grows past the streaming threshold, the rest of it is
+     * validated as it arrives if the type allows it, instead of buffered.
+     */
+    private void appendBuffer(char[] ch, int offset, int length) {
+        if (fIncrementalValidator != null) {
+            fIncrementalValidator.characters(ch, offset, length);
+            return;
+        }
+        fBuffer.append(ch, offset, length);
+        if (fBuffer.length() > STREAMING_THRESHOLD && !fIncrementalChecked) {
+            fIncrementalChecked = true;
+            fIncrementalValidator = createIncrementalValidator();
+            if (fIncrementalValidator != null) {
+                char[] buffered = new char[fBuffer.length()];
+                fBuffer.getChars(0, buffered.length, buffered, 0);
+                fIncrementalValidator.characters(buffered, 0, buffered.length);
+                fBuffer.setLength(0);
+            }
+        }
+    } // appendBuffer(char[],int,int)
+
+    /**
+     * Returns an incremental validator for the content of the current
+     * element, or null if the whole content is needed: for the actual
+     * and normalized values in the PSVI, for a fixed value constraint,
+     * for identity constraints, or because the type has facets which
+     * can't be checked incrementally.
+     */
+    private IncrementalValidator createIncrementalValidator() {
+        if (fAugPSVI || fNil || fCurrentType == null || fMatcherStack.getMatcherCount() > 0 ||
+            (fCurrentElemDecl != null && fCurrentElemDecl.getConstraintType() == XSConstants.VC_FIXED)) {
+            return null;
+        }
+        XSSimpleType dv = null;
+        if (fCurrentType.getTypeCategory() == XSTypeDefinition.SIMPLE_TYPE) {
+            dv = (XSSimpleType) fCurrentType;
+        }
+        else {
+            XSComplexTypeDecl ctype = (XSComplexTypeDecl) fCurrentType;
+            if (ctype.fContentType == XSComplexTypeDecl.CONTENTTYPE_SIMPLE) {
+                dv = ctype.fXSSimpleType;
+            }
+        }
+        return (dv != null) ? IncrementalValidator.create(dv, fValidationState) : null;
+    } // createIncrementalValidator():IncrementalValidator
+
     /**
      * Normalize whitespace in an XMLString according to the rules defined
      * in XML Schema specifications.
@@ -2031,6 +2112,8 @@ public class XMLSchemaValidator
 
         // and the buffer to hold the value of the element
         fBuffer.setLength(0);
+        fIncrementalValidator = null;
+        fIncrementalChecked = false;
         fSawText = false;
         fSawCharacters = false;
 
@@ -2305,9 +2388,12 @@ public class XMLSchemaValidator
         // call all active identity constraints
         int count = fMatcherStack.getMatcherCount();
         for (int i = 0; i < count; i++) {
-            XPathMatcher matcher = fMatcherStack.getMatcherAt(i);
-            matcher.startElement( element, attributes);
+            if (!fMatcherStack.isSuspendedAt(i)) {
+                XPathMatcher matcher = fMatcherStack.getMatcherAt(i);
+                matcher.startElement( element, attributes);
+            }
         }
+        fMatcherStack.suspendMatchers(fElementDepth);
 
         if (fAugPSVI) {
             augs = getEmptyAugs(augs);
@@ -2382,6 +2468,7 @@ public class XMLSchemaValidator
 
         // now validate the content of the element
         processElementContent(element);
+        fIncrementalValidator = null;
 
         if (fIDCChecking) {
             // Element Locally Valid (Element)
@@ -2390,6 +2477,9 @@ public class XMLSchemaValidator
             // call matchers and de-activate context
             int oldCount = fMatcherStack.getMatcherCount();
             for (int i = oldCount - 1; i >= 0; i--) {
+                if (fMatcherStack.isSuspendedAt(i) && !fMatcherStack.resumeMatcherAt(i, fElementDepth)) {
+                    continue;
+                }
                 XPathMatcher matcher = fMatcherStack.getMatcherAt(i);
                 if (fCurrentElemDecl == null) {
                     matcher.endElement(element, fCurrentType, false, fValidatedInfo.actualValue, fValidatedInfo.actualValueType, fValidatedInfo.itemValueTypes);
@@ -2605,6 +2695,23 @@ public class XMLSchemaValidator
         return augs;
     }
 
+    AttributePSVImpl getAttributePSVI(int index) {
+        if (index >= fAttributePSVIs.length) {
+            AttributePSVImpl[] newArray = new AttributePSVImpl[Math.max(index + 1, fAttributePSVIs.length << 1)];
+            System.arraycopy(fAttributePSVIs, 0, newArray, 0, fAttributePSVIs.length);
+            fAttributePSVIs = newArray;
+        }
+        AttributePSVImpl attrPSVI = fAttributePSVIs[index];
+        if (attrPSVI == null) {
+            attrPSVI = new AttributePSVImpl();
+            fAttributePSVIs[index] = attrPSVI;
+        }
+        else {
+            attrPSVI.reset();
+        }
+        return attrPSVI;
+    }
+
     void storeLocations(String sLocation, String nsLocation) {
         if (sLocation != null) {
             if (!XMLSchemaLoader.tokenizeSchemaLocationStr(sLocation, fLocationPairs, fLocator == null ? null : fLocator.getExpandedSystemId())) {
@@ -2930,7 +3037,7 @@ public class XMLSchemaValidator
                 if (attrPSVI != null) {
                     attrPSVI.reset();
                 } else {
-                    attrPSVI = new AttributePSVImpl();
+                    attrPSVI = getAttributePSVI(index);
                     augs.putItem(Constants.ATTRIBUTE_PSVI, attrPSVI);
                 }
                 // PSVI attribute: validation context
@@ -3090,7 +3197,7 @@ public class XMLSchemaValidator
 
         Object actualValue = null;
         try {
-            actualValue = attDV.validate(attrValue, fValidationState, fValidatedInfo);
+            actualValue = validateSimpleValue(attDV, attrValue);
             // store the normalized value
             if (fNormalizeData) {
                 attributes.setValue(index, fValidatedInfo.normalizedValue);
@@ -3245,7 +3352,7 @@ public class XMLSchemaValidator
 
                     // PSVI: attribute is "schema" specified
                     Augmentations augs = attributes.getAugmentations(attrIndex);
-                    AttributePSVImpl attrPSVI = new AttributePSVImpl();
+                    AttributePSVImpl attrPSVI = getAttributePSVI(attrIndex);
                     augs.putItem(Constants.ATTRIBUTE_PSVI, attrPSVI);
 
                     attrPSVI.fDeclaration = currDecl;
@@ -3424,9 +3531,12 @@ public class XMLSchemaValidator
                     if (!fNormalizeData || fUnionType) {
                         fValidationState.setNormalizationRequired(true);
                     }
-                    retValue = dv.validate(textContent, fValidationState, fValidatedInfo);
+                    retValue = validateSimpleValue(dv, textContent);
                 } catch (InvalidDatatypeValueException e) {
                     reportSchemaError(e.getKey(), e.getArgs());
+                    if (fIncrementalValidator != null && textContent == fBuffer) {
+                        textContent = fIncrementalValidator.getContent();
+                    }
                     reportSchemaError(
                         "cvc-type.3.1.3",
                         new Object[] { element.rawname, textContent });
@@ -3440,6 +3550,21 @@ public class XMLSchemaValidator
         return retValue;
     } // elementLocallyValidType
 
+    /**
+     * Validates a value against a simple type, through the validation
+     * cache if there is one.
+     */
+    Object validateSimpleValue(XSSimpleType dv, Object content) throws InvalidDatatypeValueException {
+        // the content was validated as it arrived, and isn't in the buffer
+        if (fIncrementalValidator != null && content == fBuffer) {
+            return fIncrementalValidator.end(fValidatedInfo);
+        }
+        if (fValidationCache != null) {
+            return fValidationCache.validate(dv, content, fValidationState, fValidatedInfo);
+        }
+        return dv.validate(content, fValidationState, fValidatedInfo);
+    } // validateSimpleValue(XSSimpleType,Object):Object
+
     Object elementLocallyValidComplexType(QName element, Object textContent) {
         Object actualValue = null;
         XSComplexTypeDecl ctype = (XSComplexTypeDecl) fCurrentType;
@@ -3463,7 +3588,7 @@ public class XMLSchemaValidator
                     if (!fNormalizeData || fUnionType) {
                         fValidationState.setNormalizationRequired(true);
                     }
-                    actualValue = dv.validate(textContent, fValidationState, fValidatedInfo);
+                    actualValue = validateSimpleValue(dv, textContent);
                 } catch (InvalidDatatypeValueException e) {
                     reportSchemaError(e.getKey(), e.getArgs());
                     reportSchemaError("cvc-complex-type.2.2", new Object[] { element.rawname });
@@ -3611,6 +3736,12 @@ public class XMLSchemaValidator
         /** Count of active matchers. */
         protected int fMatchersCount;
 
+        /**
+         * Depth of the element below which each matcher is suspended,
+         * or -1 if it isn't suspended.
+         */
+        protected int[] fSuspendedDepths = new int[4];
+
         /** Offset stack for contexts. */
         protected IntStack fContextStack = new IntStack();
 
@@ -3647,9 +3778,41 @@ public class XMLSchemaValidator
         /** Adds a matcher. */
         public void addMatcher(XPathMatcher matcher) {
             ensureMatcherCapacity();
+            fSuspendedDepths[fMatchersCount] = -1;
             fMatchers[fMatchersCount++] = matcher;
         } // addMatcher(XPathMatcher)
 
+        /**
+         * Suspends the matchers which can't match anything below the
+         * element at the given depth, so that they aren't called for
+         * its descendants.
+         */
+        public void suspendMatchers(int depth) {
+            for (int i = 0; i < fMatchersCount; i++) {
+                if (fSuspendedDepths[i] == -1 && !fMatchers[i].canMatchDescendants()) {
+                    fSuspendedDepths[i] = depth;
+                }
+            }
+        } // suspendMatchers(int)
+
+        /** Returns true if the XPath matcher at the specified index is suspended. */
+        public boolean isSuspendedAt(int index) {
+            return fSuspendedDepths[index] != -1;
+        } // isSuspendedAt(int):boolean
+
+        /**
+         * Resumes the XPath matcher at the specified index if it was
+         * suspended below the element at the given depth, returning
+         * true if it was.
+         */
+        public boolean resumeMatcherAt(int index, int depth) {
+            if (fSuspendedDepths[index] == depth) {
+                fSuspendedDepths[index] = -1;
+                return true;
+            }
+            return false;
+        } // resumeMatcherAt(int,int):boolean
+
         /** Returns the XPath matcher at the specified index. */
         public XPathMatcher getMatcherAt(int index) {
             return fMatchers[index];
@@ -3675,6 +3838,9 @@ public class XMLSchemaValidator
                 XPathMatcher[] array = new XPathMatcher[fMatchers.length * 2];
                 System.arraycopy(fMatchers, 0, array, 0, fMatchers.length);
                 fMatchers = array;
+                int[] depths = new int[fSuspendedDepths.length * 2];
+                System.arraycopy(fSuspendedDepths, 0, depths, 0, fSuspendedDepths.length);
+                fSuspendedDepths = depths;
             }
         } // ensureMatcherCapacity()
 
@@ -147,6 +147,23 @@ public class XPathMatcher {
         return false;
     } // isMatched():int
 
+    /**
+     * Returns true if the matcher may match an element or an attribute
+     * below the current element. If it can't, calling startElement and
+     * endElement for the descendants of the current element doesn't
+     * change its state, so these calls may be skipped.
+     */
+    public boolean canMatchDescendants() {
+        for (int i = 0; i < fLocationPaths.length; i++) {
+            // a path which didn't match, or matched without descendant
+            // steps, ignores the descendants of the current element
+            if (fNoMatchDepth[i] == 0 && (fMatched[i] & MATCHED_DESCENDANT) != MATCHED) {
+                return true;
+            }
+        }
+        return false;
+    } // canMatchDescendants():boolean
+
     //
     // Protected methods
     //
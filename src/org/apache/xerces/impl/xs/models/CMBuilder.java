@@ -43,6 +43,10 @@ public class CMBuilder {
     // It never changes, so a static member is good enough
     private static final XSEmptyCM fEmptyCM = new XSEmptyCM();
 
+    // content models which would have more leaves than this once their
+    // occurrence ranges are expanded are checked with counters instead
+    private static final int COUNTING_THRESHOLD = 256;
+
     // needed for DFA construction
     private int fLeafCount;
     // needed for UPA
@@ -125,6 +129,17 @@ public class CMBuilder {
     XSCMValidator createDFACM(XSParticleDecl particle, boolean forUPA) {
         fLeafCount = 0;
         fParticleCount = 0;
+        // large occurrence ranges which can't be expressed with repeating
+        // leaves are counted rather than expanded, if that can be done
+        // without ambiguity. the ranges are already small for UPA.
+        if (!forUPA && !useRepeatingLeafNodes(particle) &&
+            expandedSize(particle) > COUNTING_THRESHOLD) {
+            XSCMValidator cm = XSCountingCM.create(particle, fNodeFactory);
+            if (cm != null) {
+                return cm;
+            }
+            fNodeFactory.resetNodeCount();
+        }
         // convert particle tree to CM tree
         CMNode node = useRepeatingLeafNodes(particle) ? buildCompactSyntaxTree(particle) : buildSyntaxTree(particle, forUPA);
         if (node == null)
@@ -418,6 +433,27 @@ public class CMBuilder {
         return nodeRet;
     }
     
+    // Returns the number of leaves the syntax tree of this particle would have
+    // once its occurrence ranges are expanded, up to Integer.MAX_VALUE.
+    private static int expandedSize(XSParticleDecl particle) {
+        long size = 1;
+        if (particle.fType == XSParticleDecl.PARTICLE_MODELGROUP) {
+            XSModelGroupImpl group = (XSModelGroupImpl) particle.fValue;
+            size = 0;
+            for (int i = 0; i < group.fParticleCount; ++i) {
+                size += expandedSize(group.fParticles[i]);
+            }
+        }
+        else if (particle.fType != XSParticleDecl.PARTICLE_ELEMENT &&
+                 particle.fType != XSParticleDecl.PARTICLE_WILDCARD) {
+            return 0;
+        }
+        final int maxOccurs = particle.fMaxOccurs;
+        size *= (maxOccurs == SchemaSymbols.OCCURRENCE_UNBOUNDED) ?
+                Math.max(particle.fMinOccurs, 1) : maxOccurs;
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+    
     // This method checks if this particle can be transformed into a compact syntax
     // tree containing compound leaf nodes which carry occurence information. Currently
     // it returns true if each model group has minOccurs/maxOccurs == 1 or 
@@ -0,0 +1,763 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.impl.xs.models;
+
+import java.util.BitSet;
+import java.util.Vector;
+
+import org.apache.xerces.impl.xs.SchemaSymbols;
+import org.apache.xerces.impl.xs.SubstitutionGroupHandler;
+import org.apache.xerces.impl.xs.XMLSchemaException;
+import org.apache.xerces.impl.xs.XSConstraints;
+import org.apache.xerces.impl.xs.XSElementDecl;
+import org.apache.xerces.impl.xs.XSModelGroupImpl;
+import org.apache.xerces.impl.xs.XSParticleDecl;
+import org.apache.xerces.impl.xs.XSWildcardDecl;
+import org.apache.xerces.xni.QName;
+import org.apache.xerces.xs.XSConstants;
+
+/**
+ * A content model which checks occurrence ranges with counters instead
+ * of expanding them. The automaton has one state for each element or
+ * wildcard particle in the content model (plus a start state) however
+ * large the minOccurs and maxOccurs values are, and each repeated term
+ * whose range can't be checked without counting gets a counter in the
+ * state array of the content model.
+ * <p>
+ * A transition from one particle to the next may require the counters
+ * of the terms it leaves to have reached their minOccurs, may require
+ * the counter of the term it repeats to be below its maxOccurs, and
+ * increments or resets counters as it repeats or enters terms. This
+ * only works if for every pair of particles there is a single way to
+ * go from one to the other, which isn't the case for content models
+ * such as <code>(a{1,2}){2}</code> where a second "a" may repeat
+ * either the inner or the outer term. Nor does it work if an element
+ * may be allowed by two particles, both reachable from the same state,
+ * since only the first would be tried; UPA forbids these content models
+ * but is only checked with full schema checking. {@link #create} returns
+ * <code>null</code> for both kinds, and the content model is expanded
+ * into a DFA instead.
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+public class XSCountingCM implements XSCMValidator {
+
+    //
+    // Constants
+    //
+
+    /** Empty list of counters. */
+    private static final int[] NO_COUNTERS = new int[0];
+
+    /** Offset of the counters in the state array. */
+    private static final int COUNTER_OFFSET = 2;
+
+    //
+    // Data
+    //
+
+    /** The element or wildcard declaration of each particle. */
+    private final Object[] fLeaves;
+
+    /** The particle type (element or wildcard) of each particle. */
+    private final int[] fLeafTypes;
+
+    /**
+     * The transitions out of each state. State 0 is the start state
+     * and state <code>i + 1</code> is the state after particle <code>i</code>.
+     */
+    private final Transition[][] fTransitions;
+
+    /**
+     * The counters which must have reached their minimum for the content
+     * to end in each state, or <code>null</code> if it can't end there.
+     */
+    private final int[][] fFinalExits;
+
+    /** The counter reported by occurenceInfo for each state, or -1. */
+    private final int[] fOccurenceCounters;
+
+    /** The smallest value of each counter which allows leaving its term. */
+    private final int[] fCounterMin;
+
+    /** The minOccurs value of the term of each counter. */
+    private final int[] fCounterMinOccurs;
+
+    /** The maxOccurs value of the term of each counter. */
+    private final int[] fCounterMax;
+
+    /** The particle repeated by the term of each counter, or -1 for a model group. */
+    private final int[] fCounterLeaves;
+
+    //
+    // Constructors
+    //
+
+    private XSCountingCM(Builder builder) {
+        final int leafCount = builder.fLeaves.size();
+        fLeaves = new Object[leafCount];
+        fLeafTypes = new int[leafCount];
+        for (int i = 0; i < leafCount; i++) {
+            Term leaf = (Term) builder.fLeaves.elementAt(i);
+            fLeaves[i] = leaf.fDecl;
+            fLeafTypes[i] = leaf.fLeafType;
+        }
+        final int counterCount = builder.fCounters.size();
+        fCounterMin = new int[counterCount];
+        fCounterMinOccurs = new int[counterCount];
+        fCounterMax = new int[counterCount];
+        fCounterLeaves = new int[counterCount];
+        for (int i = 0; i < counterCount; i++) {
+            Term repeat = (Term) builder.fCounters.elementAt(i);
+            fCounterMin[i] = repeat.fChildren[0].fNullable ? 0 : repeat.fMinOccurs;
+            fCounterMinOccurs[i] = repeat.fMinOccurs;
+            fCounterMax[i] = repeat.fMaxOccurs;
+            fCounterLeaves[i] = (repeat.fChildren[0].fKind == Term.LEAF) ?
+                    repeat.fChildren[0].fPosition : -1;
+        }
+        fTransitions = builder.fTransitions;
+        fFinalExits = builder.fFinalExits;
+        fOccurenceCounters = new int[leafCount + 1];
+        fOccurenceCounters[0] = -1;
+        for (int i = 0; i < leafCount; i++) {
+            Term leaf = (Term) builder.fLeaves.elementAt(i);
+            Term parent = leaf.fParent;
+            fOccurenceCounters[i + 1] = (parent != null && parent.fCounter != -1) ?
+                    parent.fCounter : -1;
+        }
+    } // <init>(Builder)
+
+    //
+    // Public static methods
+    //
+
+    /**
+     * Builds a counting content model for the given particle. Returns
+     * <code>null</code> if the particle is empty, if its occurrence
+     * ranges can't be checked with counters, or if it isn't deterministic.
+     *
+     * @param particle the particle of a complex type
+     * @param nodeFactory the factory used to limit the size of the content model
+     * @return the content model or <code>null</code>
+     */
+    public static XSCountingCM create(XSParticleDecl particle, CMNodeFactory nodeFactory) {
+        Builder builder = new Builder(nodeFactory);
+        Term root = builder.buildTerm(particle);
+        if (root == null || builder.fUnsupported) {
+            return null;
+        }
+        root.fParent = null;
+        if (!builder.buildTransitions(root)) {
+            return null;
+        }
+        XSCountingCM cm = new XSCountingCM(builder);
+        return cm.isDeterministic() ? cm : null;
+    } // create(XSParticleDecl,CMNodeFactory):XSCountingCM
+
+    //
+    // XSCMValidator methods
+    //
+
+    public int[] startContentModel() {
+        // [0] : the current state
+        // [1] : if [0] is an error state then the
+        //       last valid state before the error
+        // [2...] : the counters
+        return new int[COUNTER_OFFSET + fCounterMin.length];
+    } // startContentModel():int[]
+
+    public Object oneTransition(QName curElem, int[] state, SubstitutionGroupHandler subGroupHandler) {
+        final int curState = state[0];
+
+        if (curState == XSCMValidator.FIRST_ERROR || curState == XSCMValidator.SUBSEQUENT_ERROR) {
+            // there was an error last time; so just go find the correct Object.
+            if (curState == XSCMValidator.FIRST_ERROR)
+                state[0] = XSCMValidator.SUBSEQUENT_ERROR;
+
+            return findMatchingDecl(curElem, subGroupHandler);
+        }
+
+        // Several transitions may allow the element, e.g. in (a{3}, a) the
+        // next "a" repeats the first particle until it has been seen three
+        // times. Their conditions on the counters tell them apart.
+        final Transition[] transitions = fTransitions[curState];
+        for (int i = 0; i < transitions.length; i++) {
+            final Transition t = transitions[i];
+            final Object matchingDecl = matchLeaf(curElem, t.fTo, subGroupHandler);
+            if (matchingDecl != null && isEnabled(t, state)) {
+                if (t.fIterate != -1) {
+                    final int counter = COUNTER_OFFSET + t.fIterate;
+                    // stop counting past the minimum of an unbounded term
+                    if (fCounterMax[t.fIterate] != SchemaSymbols.OCCURRENCE_UNBOUNDED ||
+                        state[counter] < fCounterMin[t.fIterate]) {
+                        ++state[counter];
+                    }
+                }
+                final int[] enters = t.fEnters;
+                for (int j = 0; j < enters.length; j++) {
+                    state[COUNTER_OFFSET + enters[j]] = 1;
+                }
+                state[0] = t.fTo + 1;
+                return matchingDecl;
+            }
+        }
+
+        // if we can't find a match, set the state to first_error
+        // and return null
+        state[1] = state[0];
+        state[0] = XSCMValidator.FIRST_ERROR;
+        return findMatchingDecl(curElem, subGroupHandler);
+    } // oneTransition(QName,int[],SubstitutionGroupHandler):Object
+
+    public boolean endContentModel(int[] state) {
+        final int[] exits = fFinalExits[state[0]];
+        return exits != null && isSatisfied(exits, state);
+    } // endContentModel(int[]):boolean
+
+    public boolean checkUniqueParticleAttribution(SubstitutionGroupHandler subGroupHandler) throws XMLSchemaException {
+        // Two transitions out of the same state to different particles
+        // which allow the same element violate UPA, unless one repeats a
+        // term with a fixed number of occurrences and the other leaves it.
+        for (int i = 0; i < fTransitions.length; i++) {
+            final Transition[] transitions = fTransitions[i];
+            for (int j = 0; j < transitions.length; j++) {
+                for (int k = j + 1; k < transitions.length; k++) {
+                    final Transition t1 = transitions[j];
+                    final Transition t2 = transitions[k];
+                    if (t1.fTo != t2.fTo &&
+                        !areExclusive(t1, t2) && !areExclusive(t2, t1) &&
+                        XSConstraints.overlapUPA(fLeaves[t1.fTo], fLeaves[t2.fTo], subGroupHandler)) {
+                        throw new XMLSchemaException("cos-nonambig", new Object[]{fLeaves[t1.fTo].toString(),
+                                                                                  fLeaves[t2.fTo].toString()});
+                    }
+                }
+            }
+        }
+
+        // if there is a other or list wildcard, we need to check this CM
+        // again, if this grammar is cached.
+        for (int i = 0; i < fLeaves.length; i++) {
+            if (fLeafTypes[i] == XSParticleDecl.PARTICLE_WILDCARD) {
+                XSWildcardDecl wildcard = (XSWildcardDecl)fLeaves[i];
+                if (wildcard.fType == XSWildcardDecl.NSCONSTRAINT_LIST ||
+                    wildcard.fType == XSWildcardDecl.NSCONSTRAINT_NOT) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    } // checkUniqueParticleAttribution(SubstitutionGroupHandler):boolean
+
+    public Vector whatCanGoHere(int[] state) {
+        int curState = state[0];
+        if (curState < 0)
+            curState = state[1];
+
+        Vector ret = new Vector();
+        final Transition[] transitions = fTransitions[curState];
+        for (int i = 0; i < transitions.length; i++) {
+            final Transition t = transitions[i];
+            if (isEnabled(t, state) && !ret.contains(fLeaves[t.fTo])) {
+                ret.addElement(fLeaves[t.fTo]);
+            }
+        }
+        return ret;
+    } // whatCanGoHere(int[]):Vector
+
+    public int[] occurenceInfo(int[] state) {
+        int curState = state[0];
+        if (curState < 0) {
+            curState = state[1];
+        }
+        final int counter = fOccurenceCounters[curState];
+        if (counter != -1) {
+            int [] occurenceInfo = new int[4];
+            occurenceInfo[0] = fCounterMinOccurs[counter];
+            occurenceInfo[1] = fCounterMax[counter];
+            occurenceInfo[2] = state[COUNTER_OFFSET + counter];
+            occurenceInfo[3] = fCounterLeaves[counter];
+            return occurenceInfo;
+        }
+        return null;
+    } // occurenceInfo(int[]):int[]
+
+    public String getTermName(int termId) {
+        Object term = fLeaves[termId];
+        return (term != null) ? term.toString() : null;
+    } // getTermName(int):String
+
+    public boolean isCompactedForUPA() {
+        return false;
+    } // isCompactedForUPA():boolean
+
+    //
+    // Private methods
+    //
+
+    /**
+     * Returns false if two transitions out of the same state to different
+     * particles may both be taken for some element. This is the check of
+     * checkUniqueParticleAttribution, made before substitution groups
+     * are known, so it assumes that they may overlap wherever they could.
+     */
+    private boolean isDeterministic() {
+        for (int i = 0; i < fTransitions.length; i++) {
+            final Transition[] transitions = fTransitions[i];
+            for (int j = 0; j < transitions.length; j++) {
+                for (int k = j + 1; k < transitions.length; k++) {
+                    final Transition t1 = transitions[j];
+                    final Transition t2 = transitions[k];
+                    if (t1.fTo != t2.fTo &&
+                        !areExclusive(t1, t2) && !areExclusive(t2, t1) &&
+                        mayOverlap(fLeaves[t1.fTo], fLeaves[t2.fTo])) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    } // isDeterministic():boolean
+
+    /**
+     * Returns the declaration of the given particle matching the element,
+     * or <code>null</code> if the particle doesn't allow the element.
+     */
+    private Object matchLeaf(QName curElem, int position, SubstitutionGroupHandler subGroupHandler) {
+        if (fLeafTypes[position] == XSParticleDecl.PARTICLE_ELEMENT) {
+            return subGroupHandler.getMatchingElemDecl(curElem, (XSElementDecl)fLeaves[position]);
+        }
+        if (((XSWildcardDecl)fLeaves[position]).allowNamespace(curElem.uri)) {
+            return fLeaves[position];
+        }
+        return null;
+    } // matchLeaf(QName,int,SubstitutionGroupHandler):Object
+
+    /** Returns the first declaration matching the element, or <code>null</code>. */
+    private Object findMatchingDecl(QName curElem, SubstitutionGroupHandler subGroupHandler) {
+        for (int i = 0; i < fLeaves.length; i++) {
+            Object matchingDecl = matchLeaf(curElem, i, subGroupHandler);
+            if (matchingDecl != null) {
+                return matchingDecl;
+            }
+        }
+        return null;
+    } // findMatchingDecl(QName,SubstitutionGroupHandler):Object
+
+    /** Returns true if the counters allow the transition to be taken. */
+    private boolean isEnabled(Transition t, int[] state) {
+        if (t.fIterate != -1 && fCounterMax[t.fIterate] != SchemaSymbols.OCCURRENCE_UNBOUNDED &&
+            state[COUNTER_OFFSET + t.fIterate] >= fCounterMax[t.fIterate]) {
+            return false;
+        }
+        return isSatisfied(t.fExits, state);
+    } // isEnabled(Transition,int[]):boolean
+
+    /** Returns true if all of the given counters have reached their minimum. */
+    private boolean isSatisfied(int[] counters, int[] state) {
+        for (int i = 0; i < counters.length; i++) {
+            if (state[COUNTER_OFFSET + counters[i]] < fCounterMin[counters[i]]) {
+                return false;
+            }
+        }
+        return true;
+    } // isSatisfied(int[],int[]):boolean
+
+    /**
+     * Returns true if <code>t1</code> can only be taken before a term has
+     * reached its maxOccurs and <code>t2</code> only after it has reached
+     * its minOccurs, and the two values are the same.
+     */
+    private boolean areExclusive(Transition t1, Transition t2) {
+        if (t1.fIterate == -1 || fCounterMax[t1.fIterate] == SchemaSymbols.OCCURRENCE_UNBOUNDED) {
+            return false;
+        }
+        for (int i = 0; i < t2.fExits.length; i++) {
+            if (t2.fExits[i] == t1.fIterate) {
+                return fCounterMin[t1.fIterate] >= fCounterMax[t1.fIterate];
+            }
+        }
+        return false;
+    } // areExclusive(Transition,Transition):boolean
+
+    /**
+     * Returns true if an element may be allowed by both declarations,
+     * given that the substitution groups of global elements may be
+     * extended by schemas loaded later.
+     */
+    private static boolean mayOverlap(Object decl1, Object decl2) {
+        if (decl1 instanceof XSElementDecl) {
+            final XSElementDecl element1 = (XSElementDecl)decl1;
+            if (decl2 instanceof XSElementDecl) {
+                final XSElementDecl element2 = (XSElementDecl)decl2;
+                if (element1.fName == element2.fName &&
+                    element1.fTargetNamespace == element2.fTargetNamespace) {
+                    return true;
+                }
+                // an element can only be a member of both substitution
+                // groups if one head is a member of the other's group
+                return isInSubstitutionGroup(element1, element2) ||
+                       isInSubstitutionGroup(element2, element1);
+            }
+            return mayOverlap(element1, (XSWildcardDecl)decl2);
+        }
+        if (decl2 instanceof XSElementDecl) {
+            return mayOverlap((XSElementDecl)decl2, (XSWildcardDecl)decl1);
+        }
+        return XSConstraints.overlapUPA((XSWildcardDecl)decl1, (XSWildcardDecl)decl2);
+    } // mayOverlap(Object,Object):boolean
+
+    private static boolean mayOverlap(XSElementDecl element, XSWildcardDecl wildcard) {
+        return wildcard.allowNamespace(element.fTargetNamespace) ||
+               element.fScope == XSConstants.SCOPE_GLOBAL;
+    } // mayOverlap(XSElementDecl,XSWildcardDecl):boolean
+
+    /** Returns true if the element is in the substitution group of the head. */
+    private static boolean isInSubstitutionGroup(XSElementDecl element, XSElementDecl head) {
+        for (XSElementDecl e = element.fSubGroup; e != null && e != element; e = e.fSubGroup) {
+            if (e == head) {
+                return true;
+            }
+        }
+        return false;
+    } // isInSubstitutionGroup(XSElementDecl,XSElementDecl):boolean
+
+    //
+    // Classes
+    //
+
+    /** A transition to a particle. */
+    private static final class Transition {
+
+        /** The particle reached. */
+        final int fTo;
+
+        /** The counters of the terms left, which must have reached their minimum. */
+        final int[] fExits;
+
+        /** The counters of the terms entered, which are set to one. */
+        final int[] fEnters;
+
+        /** The counter of the term repeated, which is incremented, or -1. */
+        final int fIterate;
+
+        Transition(int to, int[] exits, int[] enters, int iterate) {
+            fTo = to;
+            fExits = exits;
+            fEnters = enters;
+            fIterate = iterate;
+        }
+
+    } // class Transition
+
+    /** A node of the syntax tree of a content model. */
+    private static final class Term {
+
+        static final int LEAF = 0;
+        static final int SEQUENCE = 1;
+        static final int CHOICE = 2;
+        static final int REPEAT = 3;
+
+        final int fKind;
+        Term fParent;
+        Term[] fChildren;
+
+        // LEAF
+        Object fDecl;
+        int fLeafType;
+        int fPosition = -1;
+
+        // REPEAT
+        int fMinOccurs;
+        int fMaxOccurs;
+        int fCounter = -1;
+
+        boolean fNullable;
+        BitSet fFirst;
+        BitSet fLast;
+
+        Term(int kind) {
+            fKind = kind;
+        }
+
+    } // class Term
+
+    /** Builds the syntax tree and the transitions of a counting content model. */
+    private static final class Builder {
+
+        final CMNodeFactory fNodeFactory;
+
+        /** The leaves in order of position. */
+        final Vector fLeaves = new Vector();
+
+        /** The repeat terms in order of counter. */
+        final Vector fCounters = new Vector();
+
+        /** Set if the particle contains an "all" model group. */
+        boolean fUnsupported = false;
+
+        Transition[][] fTransitions;
+        int[][] fFinalExits;
+
+        /** Pending transitions out of each particle: target and source term. */
+        private Vector[] fFollow;
+
+        Builder(CMNodeFactory nodeFactory) {
+            fNodeFactory = nodeFactory;
+        }
+
+        /**
+         * Converts a particle to a syntax tree, returning <code>null</code>
+         * if the particle is empty.
+         */
+        Term buildTerm(XSParticleDecl particle) {
+            final int minOccurs = particle.fMinOccurs;
+            final int maxOccurs = particle.fMaxOccurs;
+            if (maxOccurs == 0) {
+                return null;
+            }
+            Term term = null;
+            if (particle.fType == XSParticleDecl.PARTICLE_ELEMENT ||
+                particle.fType == XSParticleDecl.PARTICLE_WILDCARD) {
+                term = newTerm(Term.LEAF);
+                term.fDecl = particle.fValue;
+                term.fLeafType = particle.fType;
+                term.fPosition = fLeaves.size();
+                term.fNullable = false;
+                term.fFirst = new BitSet();
+                term.fFirst.set(term.fPosition);
+                term.fLast = term.fFirst;
+                fLeaves.addElement(term);
+            }
+            else if (particle.fType == XSParticleDecl.PARTICLE_MODELGROUP) {
+                XSModelGroupImpl group = (XSModelGroupImpl)particle.fValue;
+                if (group.fCompositor == XSModelGroupImpl.MODELGROUP_ALL) {
+                    fUnsupported = true;
+                    return null;
+                }
+                Vector children = new Vector();
+                for (int i = 0; i < group.fParticleCount; i++) {
+                    Term child = buildTerm(group.fParticles[i]);
+                    if (child != null) {
+                        children.addElement(child);
+                    }
+                }
+                if (children.size() == 0) {
+                    return null;
+                }
+                if (children.size() == 1) {
+                    term = (Term) children.elementAt(0);
+                }
+                else {
+                    term = newTerm(group.fCompositor == XSModelGroupImpl.MODELGROUP_SEQUENCE ?
+                            Term.SEQUENCE : Term.CHOICE);
+                    term.fChildren = new Term[children.size()];
+                    children.copyInto(term.fChildren);
+                    computePositions(term);
+                }
+                // a choice with an empty branch is optional
+                if (group.fCompositor == XSModelGroupImpl.MODELGROUP_CHOICE &&
+                    children.size() < group.fParticleCount) {
+                    term = newRepeat(term, 0, 1);
+                }
+            }
+            else {
+                return null;
+            }
+            if (minOccurs != 1 || maxOccurs != 1) {
+                term = newRepeat(term, minOccurs, maxOccurs);
+            }
+            return term;
+        } // buildTerm(XSParticleDecl):Term
+
+        /**
+         * Computes the transitions of the content model. Returns false if
+         * there is more than one way to go from one particle to another.
+         */
+        boolean buildTransitions(Term root) {
+            final int leafCount = fLeaves.size();
+            fFollow = new Vector[leafCount];
+            for (int i = 0; i < leafCount; i++) {
+                fFollow[i] = new Vector();
+            }
+            addFollow(root);
+
+            fTransitions = new Transition[leafCount + 1][];
+            fFinalExits = new int[leafCount + 1][];
+            Vector transitions = new Vector();
+            for (int q = root.fFirst.nextSetBit(0); q >= 0; q = root.fFirst.nextSetBit(q + 1)) {
+                transitions.addElement(newTransition(-1, q, null));
+            }
+            fTransitions[0] = toArray(transitions);
+            fFinalExits[0] = root.fNullable ? NO_COUNTERS : null;
+
+            // marks the particles reached from the current one
+            int[] seen = new int[leafCount];
+            for (int p = 0; p < leafCount; p++) {
+                transitions.removeAllElements();
+                final Vector follow = fFollow[p];
+                for (int i = 0; i < follow.size(); i += 2) {
+                    final int q = ((Term) follow.elementAt(i)).fPosition;
+                    if (seen[q] == p + 1) {
+                        return false;
+                    }
+                    seen[q] = p + 1;
+                    transitions.addElement(newTransition(p, q, (Term) follow.elementAt(i + 1)));
+                }
+                fTransitions[p + 1] = toArray(transitions);
+                fFinalExits[p + 1] = root.fLast.get(p) ? getCounters(p, null) : null;
+                fFollow[p] = null;
+            }
+            return true;
+        } // buildTransitions(Term):boolean
+
+        private Term newTerm(int kind) {
+            fNodeFactory.nodeCountCheck();
+            return new Term(kind);
+        } // newTerm(int):Term
+
+        private Term newRepeat(Term child, int minOccurs, int maxOccurs) {
+            Term term = newTerm(Term.REPEAT);
+            term.fChildren = new Term[] {child};
+            term.fMinOccurs = minOccurs;
+            term.fMaxOccurs = maxOccurs;
+            child.fParent = term;
+            if (minOccurs > 1 ||
+                (maxOccurs > 1 && maxOccurs != SchemaSymbols.OCCURRENCE_UNBOUNDED)) {
+                term.fCounter = fCounters.size();
+                fCounters.addElement(term);
+            }
+            term.fNullable = (minOccurs == 0) || child.fNullable;
+            term.fFirst = child.fFirst;
+            term.fLast = child.fLast;
+            return term;
+        } // newRepeat(Term,int,int):Term
+
+        /** Computes nullable, first and last of a sequence or choice. */
+        private void computePositions(Term term) {
+            final Term[] children = term.fChildren;
+            term.fFirst = new BitSet();
+            term.fLast = new BitSet();
+            if (term.fKind == Term.CHOICE) {
+                term.fNullable = false;
+                for (int i = 0; i < children.length; i++) {
+                    children[i].fParent = term;
+                    term.fNullable |= children[i].fNullable;
+                    term.fFirst.or(children[i].fFirst);
+                    term.fLast.or(children[i].fLast);
+                }
+            }
+            else {
+                term.fNullable = true;
+                for (int i = 0; i < children.length; i++) {
+                    children[i].fParent = term;
+                    if (term.fNullable) {
+                        term.fFirst.or(children[i].fFirst);
+                    }
+                    term.fNullable &= children[i].fNullable;
+                }
+                for (int i = children.length - 1; i >= 0; i--) {
+                    term.fLast.or(children[i].fLast);
+                    if (!children[i].fNullable) {
+                        break;
+                    }
+                }
+            }
+        } // computePositions(Term)
+
+        /** Records the transitions contributed by a term and its descendants. */
+        private void addFollow(Term term) {
+            if (term.fKind == Term.SEQUENCE) {
+                final Term[] children = term.fChildren;
+                for (int i = 0; i < children.length - 1; i++) {
+                    for (int j = i + 1; j < children.length; j++) {
+                        addFollow(children[i].fLast, children[j].fFirst, term);
+                        if (!children[j].fNullable) {
+                            break;
+                        }
+                    }
+                }
+            }
+            else if (term.fKind == Term.REPEAT && term.fMaxOccurs != 1) {
+                addFollow(term.fLast, term.fFirst, term);
+            }
+            if (term.fChildren != null) {
+                for (int i = 0; i < term.fChildren.length; i++) {
+                    addFollow(term.fChildren[i]);
+                }
+            }
+        } // addFollow(Term)
+
+        private void addFollow(BitSet from, BitSet to, Term source) {
+            for (int p = from.nextSetBit(0); p >= 0; p = from.nextSetBit(p + 1)) {
+                for (int q = to.nextSetBit(0); q >= 0; q = to.nextSetBit(q + 1)) {
+                    fFollow[p].addElement(fLeaves.elementAt(q));
+                    fFollow[p].addElement(source);
+                }
+            }
+        } // addFollow(BitSet,BitSet,Term)
+
+        /**
+         * Creates the transition from particle <code>p</code> (or the start
+         * state if <code>p</code> is -1) to particle <code>q</code> through
+         * the given term (or the root if <code>source</code> is null).
+         */
+        private Transition newTransition(int p, int q, Term source) {
+            final int[] exits = (p != -1) ? getCounters(p, source) : NO_COUNTERS;
+            final int[] enters = getCounters(q, source);
+            final int iterate = (source != null && source.fKind == Term.REPEAT) ?
+                    source.fCounter : -1;
+            return new Transition(q, exits, enters, iterate);
+        } // newTransition(int,int,Term):Transition
+
+        /**
+         * Returns the counters of the terms containing the given particle
+         * below the given term (or the root if <code>top</code> is null).
+         */
+        private int[] getCounters(int position, Term top) {
+            int count = 0;
+            final Term leaf = (Term) fLeaves.elementAt(position);
+            for (Term t = leaf.fParent; t != top; t = t.fParent) {
+                if (t.fCounter != -1) {
+                    ++count;
+                }
+            }
+            if (count == 0) {
+                return NO_COUNTERS;
+            }
+            final int[] counters = new int[count];
+            count = 0;
+            for (Term t = leaf.fParent; t != top; t = t.fParent) {
+                if (t.fCounter != -1) {
+                    counters[count++] = t.fCounter;
+                }
+            }
+            return counters;
+        } // getCounters(int,Term):int[]
+
+        private static Transition[] toArray(Vector transitions) {
+            Transition[] array = new Transition[transitions.size()];
+            transitions.copyInto(array);
+            return array;
+        } // toArray(Vector):Transition[]
+
+    } // class Builder
+
+} // class XSCountingCM
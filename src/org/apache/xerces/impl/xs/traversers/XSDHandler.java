@@ -210,6 +210,10 @@ public class XSDHandler {
     protected static final String SECURITY_MANAGER =
         Constants.XERCES_PROPERTY_PREFIX + Constants.SECURITY_MANAGER_PROPERTY;
     
+    /** Property identifier: entity cache. */
+    protected static final String ENTITY_CACHE =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.ENTITY_CACHE_PROPERTY;
+    
     /** Property identifier: locale. */
     protected static final String LOCALE =
         Constants.XERCES_PROPERTY_PREFIX + Constants.LOCALE_PROPERTY;
@@ -3601,6 +3605,13 @@ public class XSDHandler {
             }
         } catch (XMLConfigurationException e) {
         }
+        try {
+            Object entityCache = componentManager.getProperty(ENTITY_CACHE);
+            if (entityCache != fSchemaParser.getProperty(ENTITY_CACHE)) {
+                fSchemaParser.setProperty(ENTITY_CACHE, entityCache);
+            }
+        } catch (XMLConfigurationException e) {
+        }
         
     } // reset(XMLComponentManager)
     
@@ -1039,6 +1039,12 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
                             {
                                 fFilterReject = true;
                                 fRejectedElementDepth = 0;
+                                // as for FILTER_SKIP, make sure that the text
+                                // before the rejected element isn't lost if
+                                // more text follows it
+                                fFirstChunk = true;
+                                // the subtree would be discarded anyway
+                                skipElementContent();
                                 return;
                             }
                         case LSParserFilter.FILTER_SKIP :
@@ -192,6 +192,13 @@ public abstract class AbstractSAXParser
     // track the version of the document being parsed
     protected String fVersion;
 
+    /**
+     * One more than the depth of the elements nested in the element whose
+     * content is being skipped, or zero if no content is being skipped.
+     * Only used when the scanner couldn't skip the content itself.
+     */
+    protected int fSkippedElementDepth;
+
     // temp vars
     private final AttributesProxy fAttributesProxy = new AttributesProxy();
     private Augmentations fAugmentations = null;
@@ -370,6 +377,10 @@ public abstract class AbstractSAXParser
                                    String encoding, Augmentations augs)
         throws XNIException {
         
+        if (fSkippedElementDepth != 0) {
+            return;
+        }
+
         try {
             // Only report startEntity if this entity was actually read.
             if (augs != null && Boolean.TRUE.equals(augs.getItem(Constants.ENTITY_SKIPPED))) {
@@ -412,6 +423,10 @@ public abstract class AbstractSAXParser
      */
     public void endGeneralEntity(String name, Augmentations augs) throws XNIException {
 
+        if (fSkippedElementDepth != 0) {
+            return;
+        }
+
         try {
             // Only report endEntity if this entity was actually read.
             if (augs == null || !Boolean.TRUE.equals(augs.getItem(Constants.ENTITY_SKIPPED))) {
@@ -441,6 +456,11 @@ public abstract class AbstractSAXParser
     public void startElement(QName element, XMLAttributes attributes, Augmentations augs)
         throws XNIException {
 
+        if (fSkippedElementDepth != 0) {
+            ++fSkippedElementDepth;
+            return;
+        }
+
         try {
             // SAX1
             if (fDocumentHandler != null) {
@@ -517,7 +537,7 @@ public abstract class AbstractSAXParser
         
         // if type is union (XML Schema) it is possible that we receive
         // character call with empty data
-        if (text.length == 0) {
+        if (text.length == 0 || fSkippedElementDepth != 0) {
             return;
         }
 
@@ -556,6 +576,10 @@ public abstract class AbstractSAXParser
      */
     public void ignorableWhitespace(XMLString text, Augmentations augs) throws XNIException {
 
+        if (fSkippedElementDepth != 0) {
+            return;
+        }
+
         try {
             // SAX1
             if (fDocumentHandler != null) {
@@ -583,6 +607,9 @@ public abstract class AbstractSAXParser
      */
     public void endElement(QName element, Augmentations augs) throws XNIException {
         
+        if (fSkippedElementDepth != 0 && --fSkippedElementDepth != 0) {
+            return;
+        }
 
         try {
             // SAX1
@@ -616,6 +643,10 @@ public abstract class AbstractSAXParser
      */
     public void startCDATA(Augmentations augs) throws XNIException {
 
+        if (fSkippedElementDepth != 0) {
+            return;
+        }
+
         try {
             // SAX2 extension
             if (fLexicalHandler != null) {
@@ -636,6 +667,10 @@ public abstract class AbstractSAXParser
      */
     public void endCDATA(Augmentations augs) throws XNIException {
 
+        if (fSkippedElementDepth != 0) {
+            return;
+        }
+
         try {
             // SAX2 extension
             if (fLexicalHandler != null) {
@@ -658,6 +693,10 @@ public abstract class AbstractSAXParser
      */
     public void comment(XMLString text, Augmentations augs) throws XNIException {
 
+        if (fSkippedElementDepth != 0) {
+            return;
+        }
+
         try {
             // SAX2 extension
             if (fLexicalHandler != null) {
@@ -696,6 +735,10 @@ public abstract class AbstractSAXParser
         //   to the comment for this method in the SAX API.
         //
 
+        if (fSkippedElementDepth != 0) {
+            return;
+        }
+
         try {
             // SAX1
             if (fDocumentHandler != null) {
@@ -2185,9 +2228,36 @@ public abstract class AbstractSAXParser
         fNamespaces = fConfiguration.getFeature(NAMESPACES);
         fAugmentations = null;
         fDeclaredAttrs = null;
+        fSkippedElementDepth = 0;
         
     } // reset()
 
+    /**
+     * Skips the content of the element whose start has just been reported.
+     * This method may be called by the content handler from its
+     * <code>startElement</code> method; nothing is reported for the
+     * content of the element, and the next event reported is the end of
+     * the element.
+     * <p>
+     * When the parser receives its events directly from the document
+     * scanner, the scanner skips the content without scanning it in
+     * detail: names aren't added to the symbol table, attributes aren't
+     * processed, entity references aren't expanded, and only the nesting
+     * of elements, the names in end tags and the delimiters of comments,
+     * CDATA sections and processing instructions are checked. Otherwise,
+     * for instance when validating, the content is scanned as usual and
+     * its events are discarded.
+     *
+     * @return true if the scanner skips the content of the element
+     */
+    public boolean skipElementContent() {
+        if (super.skipElementContent()) {
+            return true;
+        }
+        fSkippedElementDepth = 1;
+        return false;
+    } // skipElementContent():boolean
+
     //
     // Classes
     //
@@ -17,6 +17,7 @@
 
 package org.apache.xerces.parsers;
 
+import org.apache.xerces.impl.XMLDocumentFragmentScannerImpl;
 import org.apache.xerces.xni.Augmentations;
 import org.apache.xerces.xni.NamespaceContext;
 import org.apache.xerces.xni.QName;
@@ -807,4 +808,21 @@ public abstract class AbstractXMLDocumentParser
         fInDTD = false;
     } // reset()
 
+    /**
+     * Asks the document scanner to skip the content of the element whose
+     * start has just been reported, up to its end tag. This is only
+     * possible when this parser receives its events directly from the
+     * scanner; when other components, such as validators, sit between
+     * them, the content is scanned and reported as usual.
+     *
+     * @return true if the scanner will skip the content of the element
+     */
+    protected boolean skipElementContent() {
+        if (fDocumentSource instanceof XMLDocumentFragmentScannerImpl) {
+            ((XMLDocumentFragmentScannerImpl) fDocumentSource).skipElementContent();
+            return true;
+        }
+        return false;
+    } // skipElementContent():boolean
+
 } // class AbstractXMLDocumentParser
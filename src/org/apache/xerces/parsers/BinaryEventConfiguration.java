@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.parsers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.URL;
+
+import org.apache.xerces.impl.Constants;
+import org.apache.xerces.impl.XMLEntityManager;
+import org.apache.xerces.impl.binary.BinaryEventReader;
+import org.apache.xerces.impl.binary.SchemaInformedDecoder;
+import org.apache.xerces.util.SymbolTable;
+import org.apache.xerces.xni.XMLDTDHandler;
+import org.apache.xerces.xni.XMLDocumentHandler;
+import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.grammars.XMLGrammarPool;
+import org.apache.xerces.xni.parser.XMLComponentManager;
+import org.apache.xerces.xni.parser.XMLDTDSource;
+import org.apache.xerces.xni.parser.XMLDocumentSource;
+import org.apache.xerces.xni.parser.XMLInputSource;
+
+/**
+ * A parser configuration which reads documents recorded by
+ * {@link org.apache.xerces.impl.binary.BinaryEventWriter} or encoded by
+ * {@link org.apache.xerces.impl.binary.SchemaInformedEncoder} instead of
+ * parsing XML; the format is recognized from the start of the input. The
+ * recorded document events are passed on to the document
+ * handler as they were received by the writer, without decoding
+ * characters, scanning names or checking well-formedness, so that a
+ * document which has been parsed, and possibly validated, once can be
+ * parsed again cheaply by any of the parsers, for instance
+ * <code>new DOMParser(new BinaryEventConfiguration())</code>.
+ * <p>
+ * The input source must provide a byte stream or a system identifier.
+ * Only the document events are recorded, so the DTD of a document with a
+ * document type declaration is reported as empty, and features such as
+ * validation have no effect. If a grammar pool is
+ * set, the schema types named in recorded PSVI are looked up in it. A
+ * schema-informed document can only be read with a grammar pool which
+ * holds the schema grammars it was encoded with.
+ * <p>
+ * This configuration recognizes the following features and properties
+ * in addition to those of {@link BasicParserConfiguration}:
+ * <ul>
+ *  <li>Properties
+ *   <ul>
+ *    <li>http://apache.org/xml/properties/internal/grammar-pool</li>
+ *   </ul>
+ *  </li>
+ * </ul>
+ *
+ * @version $Id$
+ */
+public class BinaryEventConfiguration
+    extends BasicParserConfiguration {
+
+    //
+    // Constants
+    //
+
+    // property identifiers
+
+    /** Property identifier: grammar pool. */
+    protected static final String XMLGRAMMAR_POOL =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.XMLGRAMMAR_POOL_PROPERTY;
+
+    //
+    // Data
+    //
+
+    /** The reader of the binary event stream. */
+    protected BinaryEventReader fReader;
+
+    /** The decoder of the schema-informed binary stream. */
+    protected SchemaInformedDecoder fDecoder;
+
+    /** True if a parse is in progress. */
+    protected boolean fParseInProgress = false;
+
+    //
+    // Constructors
+    //
+
+    /** Default constructor. */
+    public BinaryEventConfiguration() {
+        this(null, null, null);
+    } // <init>()
+
+    /**
+     * Constructs a parser configuration using the specified symbol table.
+     *
+     * @param symbolTable The symbol table to use.
+     */
+    public BinaryEventConfiguration(SymbolTable symbolTable) {
+        this(symbolTable, null, null);
+    } // <init>(SymbolTable)
+
+    /**
+     * Constructs a parser configuration using the specified symbol table
+     * and grammar pool.
+     *
+     * @param symbolTable The symbol table to use.
+     * @param grammarPool The grammar pool to use.
+     */
+    public BinaryEventConfiguration(SymbolTable symbolTable,
+                                    XMLGrammarPool grammarPool) {
+        this(symbolTable, grammarPool, null);
+    } // <init>(SymbolTable,XMLGrammarPool)
+
+    /**
+     * Constructs a parser configuration using the specified symbol table,
+     * grammar pool and parent settings.
+     *
+     * @param symbolTable    The symbol table to use.
+     * @param grammarPool    The grammar pool to use.
+     * @param parentSettings The parent settings.
+     */
+    public BinaryEventConfiguration(SymbolTable symbolTable,
+                                    XMLGrammarPool grammarPool,
+                                    XMLComponentManager parentSettings) {
+        super(symbolTable, parentSettings);
+
+        final String[] recognizedProperties = {
+            XMLGRAMMAR_POOL,
+        };
+        addRecognizedProperties(recognizedProperties);
+        if (grammarPool != null) {
+            setProperty(XMLGRAMMAR_POOL, grammarPool);
+        }
+
+        fReader = new BinaryEventReader();
+        addComponent(fReader);
+
+        fDecoder = new SchemaInformedDecoder();
+        addComponent(fDecoder);
+
+    } // <init>(SymbolTable,XMLGrammarPool,XMLComponentManager)
+
+    //
+    // XMLParserConfiguration methods
+    //
+
+    /**
+     * Parses the binary event stream or schema-informed binary stream given
+     * by the input source.
+     *
+     * @param source The input source.
+     *
+     * @exception XNIException Any XNI exception, possibly wrapping
+     *                         another exception.
+     * @exception IOException  An IO exception from the parser, possibly
+     *                         from a byte stream or character stream
+     *                         supplied by the parser.
+     */
+    public void parse(XMLInputSource source) throws XNIException, IOException {
+
+        if (fParseInProgress) {
+            // REVISIT - need to add new error message
+            throw new XNIException("FWK005 parse may not be called while parsing.");
+        }
+        fParseInProgress = true;
+
+        InputStream stream = source.getByteStream();
+        boolean opened = false;
+        try {
+            if (stream == null) {
+                String systemId = source.getSystemId();
+                if (systemId == null) {
+                    throw new IOException("The input source has no byte stream or system identifier.");
+                }
+                String expandedSystemId =
+                    XMLEntityManager.expandSystemId(systemId, source.getBaseSystemId(), false);
+                stream = new URL(expandedSystemId).openStream();
+                opened = true;
+            }
+            // recognize the format from its first bytes
+            PushbackInputStream pushbackStream = new PushbackInputStream(stream, 4);
+            byte[] header = new byte[4];
+            int count = 0;
+            while (count < header.length) {
+                int length = pushbackStream.read(header, count, header.length - count);
+                if (length <= 0) {
+                    break;
+                }
+                count += length;
+            }
+            pushbackStream.unread(header, 0, count);
+            reset();
+            if (SchemaInformedDecoder.isSchemaInformed(header)) {
+                setDocumentSource(fDecoder);
+                fDecoder.parse(pushbackStream);
+            }
+            else {
+                setDocumentSource(fReader);
+                fReader.parse(pushbackStream);
+            }
+        }
+        finally {
+            fParseInProgress = false;
+            if (opened) {
+                stream.close();
+            }
+        }
+
+    } // parse(XMLInputSource)
+
+    /** Sets the document handler to receive information about the document. */
+    public void setDocumentHandler(XMLDocumentHandler documentHandler) {
+        super.setDocumentHandler(documentHandler);
+        fReader.setDocumentHandler(documentHandler);
+        fDecoder.setDocumentHandler(documentHandler);
+        if (documentHandler != null) {
+            documentHandler.setDocumentSource(fReader);
+        }
+    } // setDocumentHandler(XMLDocumentHandler)
+
+    /** Sets the DTD handler. */
+    public void setDTDHandler(XMLDTDHandler dtdHandler) {
+        super.setDTDHandler(dtdHandler);
+        fReader.setDTDHandler(dtdHandler);
+        fDecoder.setDTDHandler(dtdHandler);
+        if (dtdHandler != null) {
+            dtdHandler.setDTDSource(fReader);
+        }
+    } // setDTDHandler(XMLDTDHandler)
+
+    //
+    // Protected methods
+    //
+
+    /** Makes the given component the source of the document and DTD events. */
+    protected void setDocumentSource(XMLDocumentSource source) {
+        if (fDocumentHandler != null) {
+            fDocumentHandler.setDocumentSource(source);
+        }
+        if (fDTDHandler != null) {
+            fDTDHandler.setDTDSource((XMLDTDSource) source);
+        }
+    } // setDocumentSource(XMLDocumentSource)
+
+} // class BinaryEventConfiguration
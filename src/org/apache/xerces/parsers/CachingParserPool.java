@@ -17,6 +17,8 @@
 
 package org.apache.xerces.parsers;
 
+import org.apache.xerces.util.LockingGrammarPool;
+import org.apache.xerces.util.LockingSymbolTable;
 import org.apache.xerces.util.ShadowedSymbolTable;
 import org.apache.xerces.util.SymbolTable;
 import org.apache.xerces.util.SynchronizedSymbolTable;
@@ -75,14 +77,14 @@ public class CachingParserPool {
     /** 
      * Symbol table. The symbol table that the caching parser pool is
      * constructed with is automatically wrapped in a synchronized
-     * version for thread-safety.
+     * or locking version for thread-safety.
      */
     protected SymbolTable fSynchronizedSymbolTable;
 
     /** 
      * Grammar pool. The grammar pool that the caching parser pool is
      * constructed with is automatically wrapped in a synchronized
-     * version for thread-safety.
+     * or locking version for thread-safety.
      */
     protected XMLGrammarPool fSynchronizedGrammarPool;
 
@@ -121,10 +123,35 @@ public class CachingParserPool {
      * @param grammarPool The grammar pool.
      */
     public CachingParserPool(SymbolTable symbolTable, XMLGrammarPool grammarPool) {
-        fSynchronizedSymbolTable = new SynchronizedSymbolTable(symbolTable);
-        fSynchronizedGrammarPool = new SynchronizedGrammarPool(grammarPool);
+        this(symbolTable, grammarPool, false);
     } // <init>(SymbolTable,XMLGrammarPool)
 
+    /**
+     * Constructs a caching parser pool with the specified symbol table
+     * and grammar pool, guarded either by their monitors or by locks.
+     * Locks should be used when the parsers run on virtual threads: a
+     * virtual thread waiting for a lock frees its carrier thread,
+     * whereas one waiting for a monitor keeps it.
+     * 
+     * @param symbolTable The symbol table.
+     * @param grammarPool The grammar pool.
+     * @param useLocks If true, the symbol table and grammar pool are
+     *                 wrapped in a {@link LockingSymbolTable} and a 
+     *                 {@link LockingGrammarPool} instead of their
+     *                 synchronized versions.
+     */
+    public CachingParserPool(SymbolTable symbolTable, XMLGrammarPool grammarPool,
+                             boolean useLocks) {
+        if (useLocks) {
+            fSynchronizedSymbolTable = new LockingSymbolTable(symbolTable);
+            fSynchronizedGrammarPool = new LockingGrammarPool(grammarPool);
+        }
+        else {
+            fSynchronizedSymbolTable = new SynchronizedSymbolTable(symbolTable);
+            fSynchronizedGrammarPool = new SynchronizedGrammarPool(grammarPool);
+        }
+    } // <init>(SymbolTable,XMLGrammarPool,boolean)
+
     //
     // Public methods
     //
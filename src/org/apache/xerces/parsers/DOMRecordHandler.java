@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.parsers;
+
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+/**
+ * Receives the records built by a {@link DOMRecordParser}, each as a
+ * document of its own.
+ *
+ * @version $Id$
+ */
+public interface DOMRecordHandler {
+
+    /**
+     * Receives a record. The document element of the record is the record
+     * element; the document belongs to the handler and isn't used by the
+     * parser once this method returns.
+     *
+     * @param record The record.
+     *
+     * @throws SAXException Thrown by the handler to stop parsing.
+     */
+    public void handleRecord(Document record) throws SAXException;
+
+} // interface DOMRecordHandler
@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.parsers;
+
+import org.apache.xerces.xni.Augmentations;
+import org.apache.xerces.xni.NamespaceContext;
+import org.apache.xerces.xni.QName;
+import org.apache.xerces.xni.XMLAttributes;
+import org.apache.xerces.xni.XMLLocator;
+import org.apache.xerces.xni.XMLResourceIdentifier;
+import org.apache.xerces.xni.XMLString;
+import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.parser.XMLParserConfiguration;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+/**
+ * A DOM parser which streams a document as a sequence of records. Each
+ * record element, and everything in it, is built into a small document
+ * of its own and handed to a {@link DOMRecordHandler}, which may process
+ * it, keep it or pass it to other threads (see {@link DOMRecordQueue}).
+ * The parser doesn't keep any reference to a record once it has been
+ * handed over, so memory use is bounded by the size of a record rather
+ * than the size of the document.
+ * <p>
+ * Record elements are elements with a given namespace name and local
+ * name which aren't inside another record element. Everything outside
+ * the records is dropped, and {@link #getDocument()} returns null once
+ * the document has been parsed. Records are built as non-deferred DOMs;
+ * entities declared in the DTD are expanded, or appear as entity
+ * reference nodes, but the records don't have a document type node.
+ *
+ * @version $Id$
+ */
+public class DOMRecordParser
+    extends DOMParser {
+
+    //
+    // Data
+    //
+
+    /** The namespace name of record elements. */
+    protected String fRecordURI;
+
+    /** The local name of record elements. */
+    protected String fRecordLocalName;
+
+    /** Record handler. */
+    protected DOMRecordHandler fRecordHandler;
+
+    /**
+     * Depth of the current element in the current record, or zero
+     * outside of records.
+     */
+    protected int fRecordDepth;
+
+    /** Number of records handed over while parsing the current document. */
+    protected int fRecordCount;
+
+    // information used to start the document of each record
+
+    private XMLLocator fDocumentLocator;
+    private String fDocumentEncoding;
+    private NamespaceContext fDocumentNamespaceContext;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs a record parser using the default parser configuration.
+     */
+    public DOMRecordParser() {
+        super();
+    } // <init>()
+
+    /**
+     * Constructs a record parser using the specified parser configuration.
+     */
+    public DOMRecordParser(XMLParserConfiguration config) {
+        super(config);
+    } // <init>(XMLParserConfiguration)
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Sets the name of record elements.
+     *
+     * @param namespaceURI The namespace name of record elements, or null
+     *                     if they aren't in a namespace or namespace
+     *                     processing is off.
+     * @param localName    The local name of record elements.
+     */
+    public void setRecordElement(String namespaceURI, String localName) {
+        fRecordURI = namespaceURI != null && namespaceURI.length() != 0 ? namespaceURI : null;
+        fRecordLocalName = localName;
+    } // setRecordElement(String,String)
+
+    /** Sets the handler which receives the records. */
+    public void setRecordHandler(DOMRecordHandler recordHandler) {
+        fRecordHandler = recordHandler;
+    } // setRecordHandler(DOMRecordHandler)
+
+    /** Returns the handler which receives the records. */
+    public DOMRecordHandler getRecordHandler() {
+        return fRecordHandler;
+    } // getRecordHandler():DOMRecordHandler
+
+    /**
+     * Returns the number of records handed over while parsing the
+     * current or last document.
+     */
+    public int getRecordCount() {
+        return fRecordCount;
+    } // getRecordCount():int
+
+    //
+    // XMLDocumentParser methods
+    //
+
+    /**
+     * Resets the parser state.
+     *
+     * @throws XNIException Thrown on initialization error.
+     */
+    public void reset() throws XNIException {
+        super.reset();
+        // records are small and handed over as soon as they're built
+        fDeferNodeExpansion = false;
+        fRecordDepth = 0;
+        fRecordCount = 0;
+        fDocumentLocator = null;
+        fDocumentEncoding = null;
+        fDocumentNamespaceContext = null;
+    } // reset()
+
+    //
+    // XMLDocumentHandler methods
+    //
+
+    /** The start of the document. */
+    public void startDocument(XMLLocator locator, String encoding,
+                              NamespaceContext namespaceContext, Augmentations augs)
+        throws XNIException {
+        fDocumentLocator = locator;
+        fDocumentEncoding = encoding;
+        fDocumentNamespaceContext = namespaceContext;
+        // the DTD, if any, is built into this document
+        super.startDocument(locator, encoding, namespaceContext, augs);
+    } // startDocument(XMLLocator,String,NamespaceContext,Augmentations)
+
+    /** The start of a general entity. */
+    public void startGeneralEntity(String name, XMLResourceIdentifier identifier,
+                                   String encoding, Augmentations augs)
+        throws XNIException {
+        if (fRecordDepth != 0) {
+            super.startGeneralEntity(name, identifier, encoding, augs);
+        }
+    } // startGeneralEntity(String,XMLResourceIdentifier,String,Augmentations)
+
+    /** Notifies of the presence of a TextDecl line in an entity. */
+    public void textDecl(String version, String encoding, Augmentations augs)
+        throws XNIException {
+        if (fRecordDepth != 0) {
+            super.textDecl(version, encoding, augs);
+        }
+    } // textDecl(String,String,Augmentations)
+
+    /** The end of a general entity. */
+    public void endGeneralEntity(String name, Augmentations augs) throws XNIException {
+        if (fRecordDepth != 0) {
+            super.endGeneralEntity(name, augs);
+        }
+    } // endGeneralEntity(String,Augmentations)
+
+    /** A comment. */
+    public void comment(XMLString text, Augmentations augs) throws XNIException {
+        if (fRecordDepth != 0) {
+            super.comment(text, augs);
+        }
+    } // comment(XMLString,Augmentations)
+
+    /** A processing instruction. */
+    public void processingInstruction(String target, XMLString data, Augmentations augs)
+        throws XNIException {
+        if (fRecordDepth != 0) {
+            super.processingInstruction(target, data, augs);
+        }
+    } // processingInstruction(String,XMLString,Augmentations)
+
+    /** The start of an element. */
+    public void startElement(QName element, XMLAttributes attributes, Augmentations augs)
+        throws XNIException {
+        if (fRecordDepth != 0) {
+            ++fRecordDepth;
+        }
+        else if (isRecordElement(element)) {
+            startRecord();
+            fRecordDepth = 1;
+        }
+        else {
+            return;
+        }
+        super.startElement(element, attributes, augs);
+    } // startElement(QName,XMLAttributes,Augmentations)
+
+    /** Character content. */
+    public void characters(XMLString text, Augmentations augs) throws XNIException {
+        if (fRecordDepth != 0) {
+            super.characters(text, augs);
+        }
+    } // characters(XMLString,Augmentations)
+
+    /** Ignorable whitespace. */
+    public void ignorableWhitespace(XMLString text, Augmentations augs) throws XNIException {
+        if (fRecordDepth != 0) {
+            super.ignorableWhitespace(text, augs);
+        }
+    } // ignorableWhitespace(XMLString,Augmentations)
+
+    /** The end of an element. */
+    public void endElement(QName element, Augmentations augs) throws XNIException {
+        if (fRecordDepth != 0) {
+            super.endElement(element, augs);
+            if (--fRecordDepth == 0) {
+                endRecord(augs);
+            }
+        }
+    } // endElement(QName,Augmentations)
+
+    /** The start of a CDATA section. */
+    public void startCDATA(Augmentations augs) throws XNIException {
+        if (fRecordDepth != 0) {
+            super.startCDATA(augs);
+        }
+    } // startCDATA(Augmentations)
+
+    /** The end of a CDATA section. */
+    public void endCDATA(Augmentations augs) throws XNIException {
+        if (fRecordDepth != 0) {
+            super.endCDATA(augs);
+        }
+    } // endCDATA(Augmentations)
+
+    /** The end of the document. */
+    public void endDocument(Augmentations augs) throws XNIException {
+        super.endDocument(augs);
+        dropDocumentReferences();
+        fDocumentLocator = null;
+        fDocumentNamespaceContext = null;
+    } // endDocument(Augmentations)
+
+    //
+    // Protected methods
+    //
+
+    /** Returns true if the element is a record element. */
+    protected boolean isRecordElement(QName element) {
+        if (fRecordLocalName == null) {
+            return false;
+        }
+        String localName = element.localpart != null ? element.localpart : element.rawname;
+        return fRecordLocalName.equals(localName) &&
+            (fRecordURI == null ? element.uri == null : fRecordURI.equals(element.uri));
+    } // isRecordElement(QName):boolean
+
+    /** Starts the document of a new record. */
+    protected void startRecord() throws XNIException {
+        super.startDocument(fDocumentLocator, fDocumentEncoding, fDocumentNamespaceContext, null);
+        // the record element is the root for the DOM filter, and the
+        // record doesn't have a document type
+        fRoot = null;
+        fDocumentType = null;
+    } // startRecord()
+
+    /** Hands the document of the current record to the record handler. */
+    protected void endRecord(Augmentations augs) throws XNIException {
+        super.endDocument(augs);
+        Document record = fDocument;
+        dropDocumentReferences();
+        fRecordCount++;
+        if (fRecordHandler != null) {
+            try {
+                fRecordHandler.handleRecord(record);
+            }
+            catch (SAXException e) {
+                throw new XNIException(e);
+            }
+        }
+    } // endRecord(Augmentations)
+
+} // class DOMRecordParser
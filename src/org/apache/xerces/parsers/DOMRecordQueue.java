@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.parsers;
+
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+/**
+ * A bounded queue of records, which lets records built by a
+ * {@link DOMRecordParser} be processed on other threads while parsing
+ * continues. When the queue is full the parser waits until a record has
+ * been taken, so no more than the capacity of the queue, plus the records
+ * being processed, are held in memory at a time.
+ * <p>
+ * Records can be taken from the queue with {@link #take()}, or processed
+ * by worker threads started with {@link #startWorkers(int,DOMRecordHandler)}.
+ * Once parsing is done, {@link #close()} lets the consumers finish the
+ * records left in the queue and waits for the workers. If a worker's
+ * handler fails, with an exception or an error, or if a worker is
+ * interrupted, parsing is stopped and the failure is reported by
+ * <code>close</code>; otherwise the parser could wait for good for
+ * workers which are no longer there.
+ *
+ * @version $Id$
+ */
+public class DOMRecordQueue
+    implements DOMRecordHandler {
+
+    //
+    // Data
+    //
+
+    /** Queued records. */
+    private final Document[] fRecords;
+
+    /** Index of the oldest record. */
+    private int fHead;
+
+    /** Number of queued records. */
+    private int fCount;
+
+    /** True once no more records will be added. */
+    private boolean fClosed;
+
+    /** The first failure of a worker, or null. */
+    private Throwable fError;
+
+    /** Worker threads. */
+    private Thread[] fWorkers = new Thread[0];
+
+    //
+    // Constructors
+    //
+
+    /** Constructs a queue holding at most <code>capacity</code> records. */
+    public DOMRecordQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException(Integer.toString(capacity));
+        }
+        fRecords = new Document[capacity];
+    } // <init>(int)
+
+    //
+    // DOMRecordHandler methods
+    //
+
+    /**
+     * Adds a record to the queue, waiting while the queue is full.
+     *
+     * @throws SAXException Thrown if a worker has failed, if the queue
+     *                      has been closed or if the thread is interrupted.
+     * @throws Error Thrown if a worker has failed with an error.
+     */
+    public synchronized void handleRecord(Document record) throws SAXException {
+        while (fCount == fRecords.length && !fClosed && fError == null) {
+            try {
+                wait();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SAXException(e);
+            }
+        }
+        checkError();
+        if (fClosed) {
+            throw new SAXException("queue closed");
+        }
+        fRecords[(fHead + fCount) % fRecords.length] = record;
+        fCount++;
+        notifyAll();
+    } // handleRecord(Document)
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Removes the oldest record from the queue, waiting while the queue is
+     * empty. Returns null once the queue has been closed and is empty, or
+     * if a worker has failed.
+     *
+     * @throws InterruptedException Thrown if the thread is interrupted.
+     */
+    public synchronized Document take() throws InterruptedException {
+        while (fCount == 0 && !fClosed && fError == null) {
+            wait();
+        }
+        if (fCount == 0 || fError != null) {
+            return null;
+        }
+        Document record = fRecords[fHead];
+        fRecords[fHead] = null;
+        fHead = (fHead + 1) % fRecords.length;
+        fCount--;
+        notifyAll();
+        return record;
+    } // take():Document
+
+    /**
+     * Starts worker threads which take records from the queue and pass
+     * them to a handler. The handler is called from several threads at a
+     * time if there is more than one worker.
+     *
+     * @param count   The number of worker threads.
+     * @param handler The handler which processes the records.
+     */
+    public synchronized void startWorkers(int count, final DOMRecordHandler handler) {
+        Thread[] workers = new Thread[fWorkers.length + count];
+        System.arraycopy(fWorkers, 0, workers, 0, fWorkers.length);
+        for (int i = fWorkers.length; i < workers.length; i++) {
+            workers[i] = new Thread("DOMRecordQueue worker " + i) {
+                public void run() {
+                    try {
+                        Document record;
+                        while ((record = take()) != null) {
+                            handler.handleRecord(record);
+                        }
+                    }
+                    catch (Throwable e) {
+                        // includes interruption: the records left would
+                        // never be taken
+                        fail(e);
+                    }
+                }
+            };
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        fWorkers = workers;
+    } // startWorkers(int,DOMRecordHandler)
+
+    /**
+     * Closes the queue. The records left in the queue are still processed;
+     * this method waits until the workers are done.
+     *
+     * @throws SAXException Thrown if a worker has failed with an exception
+     *                      or has been interrupted, or if the thread is
+     *                      interrupted.
+     * @throws Error Thrown if a worker has failed with an error.
+     */
+    public void close() throws SAXException {
+        Thread[] workers;
+        synchronized (this) {
+            fClosed = true;
+            notifyAll();
+            workers = fWorkers;
+        }
+        for (int i = 0; i < workers.length; i++) {
+            try {
+                workers[i].join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SAXException(e);
+            }
+        }
+        synchronized (this) {
+            checkError();
+        }
+    } // close()
+
+    /** Returns the number of queued records. */
+    public synchronized int size() {
+        return fCount;
+    } // size():int
+
+    //
+    // Private methods
+    //
+
+    /** Records the failure of a worker. */
+    private synchronized void fail(Throwable e) {
+        if (fError == null) {
+            fError = e;
+        }
+        notifyAll();
+    } // fail(Throwable)
+
+    /** Throws the failure of a worker, if any. */
+    private void checkError() throws SAXException {
+        if (fError instanceof SAXException) {
+            throw (SAXException) fError;
+        }
+        if (fError instanceof Error) {
+            throw (Error) fError;
+        }
+        if (fError != null) {
+            throw new SAXException((Exception) fError);
+        }
+    } // checkError()
+
+} // class DOMRecordQueue
@@ -0,0 +1,1245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.parsers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.util.LinkedList;
+
+import org.apache.xerces.impl.Constants;
+import org.apache.xerces.impl.XMLEntityManager;
+import org.apache.xerces.util.EncodingMap;
+import org.apache.xerces.util.URI;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.ext.DeclHandler;
+import org.xml.sax.ext.Locator2;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * A SAX parser which parses large documents made of repeating records on
+ * several threads. The document is split into chunks just before the start
+ * tag of a record; the chunks are parsed concurrently, each by a parser of
+ * its own, and their events are replayed to the handlers in document order
+ * on the thread which called <code>parse</code>.
+ * <p>
+ * Chunk boundaries are found by searching the bytes of the document for
+ * the start tag of a record, so a boundary may turn out to be inside a
+ * comment, a CDATA section or a nested element. Each chunk is parsed
+ * inside start tags for the ancestors of the first record, which declare
+ * the namespaces in scope, and closed with the matching end tags. The
+ * speculation is verified by checking that the chunk is well-formed and
+ * that its content ends with the same elements and namespace declarations
+ * open as it started with. As soon as a chunk fails, the rest of the
+ * document is parsed sequentially from the start of that chunk, so the
+ * handlers receive exactly the events of a sequential parse.
+ * <p>
+ * Documents are parsed sequentially, as by {@link SAXParser}, unless:
+ * <ul>
+ *  <li>the record element has been set and more than one thread is used;</li>
+ *  <li>the input source identifies a local file, and doesn't supply a
+ *      byte or character stream;</li>
+ *  <li>the file is larger than two chunks;</li>
+ *  <li>validation, XInclude, continue-after-fatal-error and document
+ *      projection are off and no declaration handler is registered;</li>
+ *  <li>the encoding of the document encodes ASCII characters in single
+ *      bytes which don't occur in other characters (UTF-8, US-ASCII,
+ *      ISO-8859-x and windows-125x);</li>
+ *  <li>the document is an XML 1.0 document, since the positions of the
+ *      chunks are found by counting carriage returns and line feeds, and
+ *      XML 1.1 also ends lines with NEL and LSEP;</li>
+ *  <li>the DTD, if any, doesn't declare elements, attributes or entities,
+ *      as these change how the content is parsed.</li>
+ * </ul>
+ * Chunks are parsed with the default parser configuration and the SAX
+ * features of this parser; other configuration only applies to sequential
+ * parsing. Warnings and errors are only reported if an error handler is
+ * registered.
+ *
+ * @version $Id$
+ */
+public class ParallelSAXParser
+    extends SAXParser {
+
+    //
+    // Constants
+    //
+
+    /** Default chunk size (1MB). */
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    // features
+
+    /** Feature identifier: namespace prefixes. */
+    protected static final String NAMESPACE_PREFIXES =
+        Constants.SAX_FEATURE_PREFIX + Constants.NAMESPACE_PREFIXES_FEATURE;
+
+    /** Feature identifier: validation. */
+    protected static final String VALIDATION =
+        Constants.SAX_FEATURE_PREFIX + Constants.VALIDATION_FEATURE;
+
+    /** Feature identifier: schema validation. */
+    protected static final String SCHEMA_VALIDATION =
+        Constants.XERCES_FEATURE_PREFIX + Constants.SCHEMA_VALIDATION_FEATURE;
+
+    /** Feature identifier: XInclude processing. */
+    protected static final String XINCLUDE =
+        Constants.XERCES_FEATURE_PREFIX + Constants.XINCLUDE_FEATURE;
+
+    /** Feature identifier: continue after fatal error. */
+    protected static final String CONTINUE_AFTER_FATAL_ERROR =
+        Constants.XERCES_FEATURE_PREFIX + Constants.CONTINUE_AFTER_FATAL_ERROR_FEATURE;
+
+    /**
+     * Number of times a chunk which fails is merged with the next one
+     * before the rest of the document is parsed sequentially.
+     */
+    private static final int MAX_MERGES = 3;
+
+    /** Features copied to the parsers of the chunks. */
+    private static final String[] CHUNK_FEATURES = {
+        NAMESPACES,
+        NAMESPACE_PREFIXES,
+        Constants.SAX_FEATURE_PREFIX + Constants.XMLNS_URIS_FEATURE,
+        Constants.SAX_FEATURE_PREFIX + Constants.LEXICAL_HANDLER_PARAMETER_ENTITIES_FEATURE,
+        Constants.SAX_FEATURE_PREFIX + Constants.UNICODE_NORMALIZATION_CHECKING_FEATURE,
+        Constants.XERCES_FEATURE_PREFIX + Constants.LOAD_EXTERNAL_DTD_FEATURE,
+        Constants.XERCES_FEATURE_PREFIX + Constants.DISALLOW_DOCTYPE_DECL_FEATURE,
+        Constants.XERCES_FEATURE_PREFIX + Constants.ALLOW_JAVA_ENCODINGS_FEATURE,
+        Constants.XERCES_FEATURE_PREFIX + Constants.STANDARD_URI_CONFORMANT_FEATURE,
+        Constants.XERCES_FEATURE_PREFIX + Constants.NOTIFY_CHAR_REFS_FEATURE,
+        NOTIFY_BUILTIN_REFS,
+    };
+
+    // properties
+
+    /** Property identifier: projection paths. */
+    protected static final String PROJECTION_PATHS =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.PROJECTION_PATHS_PROPERTY;
+
+    //
+    // Data
+    //
+
+    /** The namespace name of record elements. */
+    protected String fRecordURI;
+
+    /** The local name of record elements. */
+    protected String fRecordLocalName;
+
+    /** Number of threads parsing chunks. */
+    protected int fThreadCount = Runtime.getRuntime().availableProcessors();
+
+    /** Approximate size of a chunk in bytes. */
+    protected int fChunkSize = DEFAULT_CHUNK_SIZE;
+
+    /** Number of chunks replayed while parsing the last document. */
+    protected int fChunkCount;
+
+    //
+    // Constructors
+    //
+
+    /** Default constructor. */
+    public ParallelSAXParser() {
+        super();
+    } // <init>()
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Sets the name of record elements. Records are elements with this
+     * name whose ancestors have the same names as the ancestors of the
+     * first one; the document is only split before the start tag of a
+     * record written with the same qualified name as the first one.
+     *
+     * @param namespaceURI The namespace name of record elements, or null
+     *                     if they aren't in a namespace or namespace
+     *                     processing is off.
+     * @param localName    The local name of record elements.
+     */
+    public void setRecordElement(String namespaceURI, String localName) {
+        fRecordURI = namespaceURI != null && namespaceURI.length() != 0 ? namespaceURI : null;
+        fRecordLocalName = localName;
+    } // setRecordElement(String,String)
+
+    /**
+     * Sets the number of threads parsing chunks. The default is the
+     * number of available processors.
+     */
+    public void setThreadCount(int threadCount) {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException(Integer.toString(threadCount));
+        }
+        fThreadCount = threadCount;
+    } // setThreadCount(int)
+
+    /** Sets the approximate size of a chunk in bytes. */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException(Integer.toString(chunkSize));
+        }
+        fChunkSize = chunkSize;
+    } // setChunkSize(int)
+
+    /**
+     * Returns the number of chunks whose events were replayed while
+     * parsing the last document. This is zero if the document was parsed
+     * sequentially from the start.
+     */
+    public int getChunkCount() {
+        return fChunkCount;
+    } // getChunkCount():int
+
+    //
+    // XMLReader methods
+    //
+
+    /**
+     * Parses the document identified by a system identifier.
+     *
+     * @param systemId The system identifier (URI).
+     *
+     * @exception org.xml.sax.SAXException Throws exception on SAX error.
+     * @exception java.io.IOException Throws exception on i/o error.
+     */
+    public void parse(String systemId) throws SAXException, IOException {
+        parse(new InputSource(systemId));
+    } // parse(String)
+
+    /**
+     * Parses a document, in chunks if possible.
+     *
+     * @param inputSource The input source of the document.
+     *
+     * @exception org.xml.sax.SAXException Throws exception on SAX error.
+     * @exception java.io.IOException Throws exception on i/o error.
+     */
+    public void parse(InputSource inputSource) throws SAXException, IOException {
+        fChunkCount = 0;
+        String systemId = getParallelSystemId(inputSource);
+        File file = systemId != null ? getFile(systemId) : null;
+        if (file == null || file.length() <= 2L * fChunkSize) {
+            super.parse(inputSource);
+            return;
+        }
+        Prolog prolog = scanProlog(file, inputSource.getPublicId(), systemId);
+        if (prolog == null) {
+            super.parse(inputSource);
+            return;
+        }
+        new ChunkScheduler(file, inputSource, systemId, prolog).parse();
+    } // parse(InputSource)
+
+    //
+    // Protected methods
+    //
+
+    /**
+     * Returns the expanded system identifier of the input source if the
+     * document can be parsed in chunks as far as the settings of this
+     * parser are concerned, or null otherwise.
+     */
+    protected String getParallelSystemId(InputSource inputSource) throws SAXException {
+        if (fRecordLocalName == null || fThreadCount < 2 ||
+            inputSource.getByteStream() != null ||
+            inputSource.getCharacterStream() != null ||
+            inputSource.getSystemId() == null ||
+            fDeclHandler != null ||
+            getFeature(VALIDATION) || getFeature(SCHEMA_VALIDATION) ||
+            getFeature(XINCLUDE) || getFeature(CONTINUE_AFTER_FATAL_ERROR)) {
+            return null;
+        }
+        try {
+            if (getProperty(PROJECTION_PATHS) != null) {
+                return null;
+            }
+        }
+        catch (SAXNotRecognizedException e) {
+            // projection isn't supported by the configuration
+        }
+        try {
+            String systemId = XMLEntityManager.expandSystemId(inputSource.getSystemId(), null, false);
+            return systemId != null ? systemId : inputSource.getSystemId();
+        }
+        catch (URI.MalformedURIException e) {
+            return null;
+        }
+    } // getParallelSystemId(InputSource):String
+
+    /** Creates a parser for chunks, with the SAX features of this parser. */
+    protected SAXParser createChunkParser() throws SAXException {
+        SAXParser parser = new SAXParser();
+        for (int i = 0; i < CHUNK_FEATURES.length; i++) {
+            try {
+                parser.setFeature(CHUNK_FEATURES[i], getFeature(CHUNK_FEATURES[i]));
+            }
+            catch (SAXNotRecognizedException e) {
+                // keep the default
+            }
+            catch (SAXNotSupportedException e) {
+                // keep the default
+            }
+        }
+        parser.setEntityResolver(getEntityResolver());
+        return parser;
+    } // createChunkParser():SAXParser
+
+    /** Returns true if the element is a record element. */
+    protected boolean isRecordElement(String uri, String localName, String qName) {
+        if (localName == null || localName.length() == 0) {
+            localName = qName;
+        }
+        return fRecordLocalName.equals(localName) &&
+            (fRecordURI == null ? uri == null || uri.length() == 0 : fRecordURI.equals(uri));
+    } // isRecordElement(String,String,String):boolean
+
+    //
+    // Private methods
+    //
+
+    /** Returns the local file identified by a system identifier, or null. */
+    private static File getFile(String systemId) {
+        if (!systemId.startsWith("file:")) {
+            return null;
+        }
+        try {
+            File file = new File(new java.net.URI(systemId));
+            return file.isFile() ? file : null;
+        }
+        catch (Exception e) {
+            return null;
+        }
+    } // getFile(String):File
+
+    /**
+     * Parses the start of a document up to the start tag of the first
+     * record. Returns what is needed to parse the rest of the document in
+     * chunks, or null if it has to be parsed sequentially.
+     */
+    private Prolog scanProlog(File file, String publicId, String systemId)
+        throws SAXException {
+
+        SAXParser parser = createChunkParser();
+        PrologHandler handler = new PrologHandler();
+        parser.setContentHandler(handler);
+        parser.setDTDHandler(handler);
+        parser.setErrorHandler(handler);
+        parser.setProperty(DECLARATION_HANDLER, handler);
+        try {
+            InputSource source = new InputSource(new ChunkInputStream(file, 0, fChunkSize,
+                                                                      null, null, false));
+            source.setPublicId(publicId);
+            source.setSystemId(systemId);
+            parser.parse(source);
+        }
+        catch (SAXException e) {
+            // the record has been found or the document will be parsed
+            // sequentially
+        }
+        catch (IOException e) {
+            return null;
+        }
+        if (handler.fRecordName == null || handler.fUnsafe) {
+            return null;
+        }
+
+        // the markup of the chunks is encoded in the encoding of the document
+        Prolog prolog = new Prolog();
+        prolog.fVersion = handler.fVersion != null ? handler.fVersion : "1.0";
+        if (!prolog.fVersion.equals("1.0")) {
+            return null;
+        }
+        prolog.fEncoding = handler.fEncoding != null ? handler.fEncoding : "UTF-8";
+        String encoding = prolog.fEncoding.toUpperCase(java.util.Locale.ENGLISH);
+        if (!(encoding.equals("UTF-8") || encoding.equals("US-ASCII") ||
+              encoding.equals("ASCII") || encoding.startsWith("ISO-8859-") ||
+              encoding.startsWith("WINDOWS-125"))) {
+            return null;
+        }
+        String javaEncoding = EncodingMap.getIANA2JavaMapping(encoding);
+        if (javaEncoding == null) {
+            return null;
+        }
+        prolog.fUTF8 = encoding.equals("UTF-8");
+        prolog.fAncestors = new Element[handler.fDepth];
+        System.arraycopy(handler.fElements, 0, prolog.fAncestors, 0, handler.fDepth);
+
+        StringBuffer prefix = new StringBuffer();
+        prefix.append("<?xml version=\"").append(prolog.fVersion)
+              .append("\" encoding=\"").append(prolog.fEncoding).append("\"?>");
+        StringBuffer suffix = new StringBuffer();
+        for (int i = 0; i < prolog.fAncestors.length; i++) {
+            Element element = prolog.fAncestors[i];
+            prefix.append('<').append(element.fName);
+            String[] mappings = element.fMappings;
+            for (int j = 0; mappings != null && j < mappings.length; j += 2) {
+                prefix.append(mappings[j].length() == 0 ? " xmlns" : " xmlns:")
+                      .append(mappings[j]).append("=\"");
+                appendAttributeValue(prefix, mappings[j + 1]);
+                prefix.append('"');
+            }
+            prefix.append('>');
+            suffix.insert(0, '>').insert(0, element.fName).insert(0, "</");
+        }
+        prolog.fPrefixLength = prefix.length();
+        try {
+            prolog.fPrefix = prefix.toString().getBytes(javaEncoding);
+            prolog.fSuffix = suffix.toString().getBytes(javaEncoding);
+            prolog.fRecordStart = ('<' + handler.fRecordName).getBytes(javaEncoding);
+        }
+        catch (UnsupportedEncodingException e) {
+            return null;
+        }
+        return prolog;
+
+    } // scanProlog(File,String,String):Prolog
+
+    /** Appends an attribute value, escaping markup and non-ASCII characters. */
+    private static void appendAttributeValue(StringBuffer buffer, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '<' || c == '&' || c == '"' || c > 0x7F) {
+                buffer.append("&#").append((int) c).append(';');
+            }
+            else {
+                buffer.append(c);
+            }
+        }
+    } // appendAttributeValue(StringBuffer,String)
+
+    //
+    // Classes
+    //
+
+    /** An open element: its qualified name and namespace declarations. */
+    static final class Element {
+
+        /** The qualified name. */
+        final String fName;
+
+        /** Prefixes and namespace names declared, in pairs, or null. */
+        final String[] fMappings;
+
+        Element(String name, String[] mappings) {
+            fName = name;
+            fMappings = mappings;
+        }
+
+        /** Returns true if both elements have the same name and declarations. */
+        boolean matches(Element element) {
+            if (!fName.equals(element.fName)) {
+                return false;
+            }
+            int length = fMappings != null ? fMappings.length : 0;
+            int otherLength = element.fMappings != null ? element.fMappings.length : 0;
+            if (length != otherLength) {
+                return false;
+            }
+            // the order of the declarations doesn't matter
+            for (int i = 0; i < length; i += 2) {
+                boolean found = false;
+                for (int j = 0; j < length && !found; j += 2) {
+                    found = fMappings[i].equals(element.fMappings[j]) &&
+                            fMappings[i + 1].equals(element.fMappings[j + 1]);
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    } // class Element
+
+    /**
+     * A locator for replayed events, which maps the positions in a chunk
+     * to positions in the document.
+     */
+    static final class ReplayLocator
+        implements Locator2 {
+
+        //
+        // Data
+        //
+
+        private final String fPublicId;
+        private final String fSystemId;
+        private final String fVersion;
+        private final String fEncoding;
+
+        /** The line number of the first character of the chunk. */
+        private int fFirstLine;
+
+        /** The column number of the first character of the chunk. */
+        private int fFirstColumn;
+
+        /** Length of the synthetic markup before the chunk. */
+        private int fPrefixLength;
+
+        private int fLineNumber = -1;
+        private int fColumnNumber = -1;
+
+        //
+        // Constructors
+        //
+
+        ReplayLocator(String publicId, String systemId, String version, String encoding) {
+            fPublicId = publicId;
+            fSystemId = systemId;
+            fVersion = version;
+            fEncoding = encoding;
+        }
+
+        //
+        // Public methods
+        //
+
+        /** Sets the position of the chunk whose events are replayed. */
+        public void setChunk(int firstLine, int firstColumn, int prefixLength) {
+            fFirstLine = firstLine;
+            fFirstColumn = firstColumn;
+            fPrefixLength = prefixLength;
+        }
+
+        /** Sets the current position from a position in the chunk. */
+        public void setPosition(int lineNumber, int columnNumber) {
+            fLineNumber = mapLineNumber(lineNumber);
+            fColumnNumber = mapColumnNumber(lineNumber, columnNumber);
+        }
+
+        /** Returns an exception at the document position of an exception in the chunk. */
+        public SAXParseException map(SAXParseException e) {
+            return new SAXParseException(e.getMessage(), fPublicId, fSystemId,
+                                         mapLineNumber(e.getLineNumber()),
+                                         mapColumnNumber(e.getLineNumber(), e.getColumnNumber()),
+                                         e.getException());
+        }
+
+        //
+        // Locator methods
+        //
+
+        public String getPublicId() {
+            return fPublicId;
+        }
+
+        public String getSystemId() {
+            return fSystemId;
+        }
+
+        public int getLineNumber() {
+            return fLineNumber;
+        }
+
+        public int getColumnNumber() {
+            return fColumnNumber;
+        }
+
+        //
+        // Locator2 methods
+        //
+
+        public String getXMLVersion() {
+            return fVersion;
+        }
+
+        public String getEncoding() {
+            return fEncoding;
+        }
+
+        //
+        // Private methods
+        //
+
+        private int mapLineNumber(int lineNumber) {
+            return lineNumber > 0 ? fFirstLine + lineNumber - 1 : lineNumber;
+        }
+
+        private int mapColumnNumber(int lineNumber, int columnNumber) {
+            if (lineNumber != 1 || columnNumber <= 0) {
+                return columnNumber;
+            }
+            // positions in the synthetic markup are mapped to the start
+            return fFirstColumn + Math.max(columnNumber - 1 - fPrefixLength, 0);
+        }
+
+    } // class ReplayLocator
+
+    /** What is learnt from the start of a document. */
+    private static final class Prolog {
+
+        /** The XML version of the document. */
+        String fVersion;
+
+        /** The encoding of the document. */
+        String fEncoding;
+
+        /** True if the document is encoded in UTF-8. */
+        boolean fUTF8;
+
+        /** The ancestors of the first record. */
+        Element[] fAncestors;
+
+        /** Synthetic markup before a chunk which doesn't start the document. */
+        byte[] fPrefix;
+
+        /** Length in characters of the synthetic markup before a chunk. */
+        int fPrefixLength;
+
+        /** Synthetic markup after a chunk which doesn't end the document. */
+        byte[] fSuffix;
+
+        /** The bytes which start the start tag of a record. */
+        byte[] fRecordStart;
+
+    } // class Prolog
+
+    /**
+     * Handles the start of a document, up to the start tag of the first
+     * record.
+     */
+    private final class PrologHandler
+        extends DefaultHandler
+        implements DeclHandler {
+
+        //
+        // Data
+        //
+
+        /** The open elements. */
+        Element[] fElements = new Element[8];
+        int fDepth;
+
+        /** Prefix mappings declared for the next element. */
+        private String[] fMappings = new String[8];
+        private int fMappingsLength;
+
+        /** The qualified name of the first record, once it's been found. */
+        String fRecordName;
+
+        /** True if the DTD contains declarations. */
+        boolean fUnsafe;
+
+        /** The XML version of the document. */
+        String fVersion;
+
+        /** The encoding of the document. */
+        String fEncoding;
+
+        private Locator fLocator;
+
+        //
+        // ContentHandler methods
+        //
+
+        public void setDocumentLocator(Locator locator) {
+            fLocator = locator;
+        }
+
+        public void startPrefixMapping(String prefix, String uri) {
+            if (fMappingsLength + 2 > fMappings.length) {
+                String[] mappings = new String[fMappings.length * 2];
+                System.arraycopy(fMappings, 0, mappings, 0, fMappingsLength);
+                fMappings = mappings;
+            }
+            fMappings[fMappingsLength++] = prefix;
+            fMappings[fMappingsLength++] = uri;
+        }
+
+        public void startElement(String uri, String localName, String qName,
+                                 Attributes attributes) throws SAXException {
+            if (isRecordElement(uri, localName, qName)) {
+                fRecordName = qName;
+                if (fLocator instanceof Locator2) {
+                    fVersion = ((Locator2) fLocator).getXMLVersion();
+                    fEncoding = ((Locator2) fLocator).getEncoding();
+                }
+                // stop parsing
+                throw new SAXException("record found");
+            }
+            String[] mappings = null;
+            if (fMappingsLength != 0) {
+                mappings = new String[fMappingsLength];
+                System.arraycopy(fMappings, 0, mappings, 0, fMappingsLength);
+                fMappingsLength = 0;
+            }
+            if (fDepth == fElements.length) {
+                Element[] elements = new Element[fDepth * 2];
+                System.arraycopy(fElements, 0, elements, 0, fDepth);
+                fElements = elements;
+            }
+            fElements[fDepth++] = new Element(qName, mappings);
+        }
+
+        public void endElement(String uri, String localName, String qName) {
+            fElements[--fDepth] = null;
+        }
+
+        //
+        // DTDHandler methods
+        //
+
+        public void unparsedEntityDecl(String name, String publicId,
+                                       String systemId, String notationName) {
+            fUnsafe = true;
+        }
+
+        //
+        // DeclHandler methods
+        //
+
+        public void elementDecl(String name, String model) {
+            // element content whitespace is reported as ignorable
+            fUnsafe = true;
+        }
+
+        public void attributeDecl(String eName, String aName, String type,
+                                  String mode, String value) {
+            // attributes may be defaulted or normalized differently
+            fUnsafe = true;
+        }
+
+        public void internalEntityDecl(String name, String value) {
+            fUnsafe = true;
+        }
+
+        public void externalEntityDecl(String name, String publicId, String systemId) {
+            fUnsafe = true;
+        }
+
+    } // class PrologHandler
+
+    /** A chunk of the document. */
+    private static final class Chunk {
+
+        /** The offset of the first byte of the chunk. */
+        final long fStart;
+
+        /** The offset after the last byte of the chunk. */
+        final long fEnd;
+
+        /** True if the chunk starts the document. */
+        final boolean fFirst;
+
+        /** True if the chunk ends the document. */
+        final boolean fLast;
+
+        /** The events of the chunk. */
+        SAXEventBuffer fEvents;
+
+        /** True once the chunk has been parsed. */
+        boolean fDone;
+
+        /** True if the chunk has been parsed and verified. */
+        boolean fVerified;
+
+        /** The number of lines the content of the chunk ends. */
+        int fNewlines;
+
+        /** The number of characters after the last line end. */
+        int fTrailingChars;
+
+        Chunk(long start, long end, boolean first, boolean last, SAXEventBuffer events) {
+            fStart = start;
+            fEnd = end;
+            fFirst = first;
+            fLast = last;
+            fEvents = events;
+        }
+
+    } // class Chunk
+
+    /**
+     * Splits a document into chunks, has them parsed by worker threads and
+     * replays their events in order.
+     */
+    private final class ChunkScheduler {
+
+        //
+        // Data
+        //
+
+        private final File fFile;
+        private final InputSource fInputSource;
+        private final String fSystemId;
+        private final Prolog fProlog;
+
+        /** Chunks waiting for a worker. */
+        private final LinkedList fPending = new LinkedList();
+
+        /** True once the workers should stop. */
+        private boolean fStopped;
+
+        /** Buffers of replayed chunks, for reuse. */
+        private final LinkedList fFreeBuffers = new LinkedList();
+
+        /** The offset of the next chunk to schedule. */
+        private long fNextStart;
+
+        /** True once the last chunk has been scheduled. */
+        private boolean fScheduledLast;
+
+        //
+        // Constructors
+        //
+
+        ChunkScheduler(File file, InputSource inputSource, String systemId, Prolog prolog) {
+            fFile = file;
+            fInputSource = inputSource;
+            fSystemId = systemId;
+            fProlog = prolog;
+        }
+
+        //
+        // Public methods
+        //
+
+        /** Parses the document. */
+        public void parse() throws SAXException, IOException {
+
+            ReplayLocator locator = new ReplayLocator(fInputSource.getPublicId(), fSystemId,
+                                                      fProlog.fVersion, fProlog.fEncoding);
+            Worker[] workers = new Worker[fThreadCount];
+            RandomAccessFile file = new RandomAccessFile(fFile, "r");
+            try {
+                for (int i = 0; i < workers.length; i++) {
+                    workers[i] = new Worker(createChunkParser(), i);
+                    workers[i].start();
+                }
+
+                // a few chunks are kept ahead of the one being replayed
+                LinkedList chunks = new LinkedList();
+                int firstLine = 1;
+                int firstColumn = 1;
+                SAXParser mergeParser = null;
+                while (true) {
+                    fill(chunks, file);
+                    Chunk chunk = (Chunk) chunks.removeFirst();
+                    waitFor(chunk);
+
+                    // the boundary after a chunk which fails may be wrong, so
+                    // it's merged with the next chunk and parsed again
+                    for (int i = 0; i < MAX_MERGES && !chunk.fVerified && !chunk.fLast; i++) {
+                        fill(chunks, file);
+                        Chunk next = (Chunk) chunks.removeFirst();
+                        cancel(next);
+                        if (mergeParser == null) {
+                            mergeParser = createChunkParser();
+                        }
+                        chunk = new Chunk(chunk.fStart, next.fEnd, chunk.fFirst, next.fLast,
+                                          chunk.fEvents);
+                        parseChunk(mergeParser, chunk);
+                    }
+                    if (!chunk.fVerified) {
+                        stop();
+                        if (chunk.fFirst) {
+                            ParallelSAXParser.super.parse(fInputSource);
+                        }
+                        else {
+                            locator.setChunk(firstLine, firstColumn, fProlog.fPrefixLength);
+                            parseSequentially(chunk.fStart, locator);
+                        }
+                        break;
+                    }
+
+                    locator.setChunk(firstLine, firstColumn,
+                                     chunk.fFirst ? 0 : fProlog.fPrefixLength);
+                    chunk.fEvents.replay(ParallelSAXParser.this, locator);
+                    fChunkCount++;
+                    if (chunk.fLast) {
+                        break;
+                    }
+                    firstLine += chunk.fNewlines;
+                    firstColumn = chunk.fNewlines != 0 ?
+                        chunk.fTrailingChars + 1 : firstColumn + chunk.fTrailingChars;
+                    chunk.fEvents.reset(0, false, 0);
+                    fFreeBuffers.addLast(chunk.fEvents);
+                    chunk.fEvents = null;
+                }
+            }
+            finally {
+                stop();
+                for (int i = 0; i < workers.length; i++) {
+                    if (workers[i] != null) {
+                        try {
+                            workers[i].join();
+                        }
+                        catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
+                    }
+                }
+                file.close();
+            }
+
+        } // parse()
+
+        //
+        // Private methods
+        //
+
+        /** Schedules chunks until the window is full. */
+        private void fill(LinkedList chunks, RandomAccessFile file) throws IOException {
+            long length = fFile.length();
+            while (!fScheduledLast && chunks.size() < 2 * fThreadCount) {
+                long end = fNextStart + fChunkSize < length ?
+                    findRecordStart(file, fNextStart + fChunkSize) : length;
+                fScheduledLast = end == length;
+                SAXEventBuffer events = fFreeBuffers.isEmpty() ?
+                    new SAXEventBuffer() : (SAXEventBuffer) fFreeBuffers.removeFirst();
+                Chunk chunk = new Chunk(fNextStart, end, fNextStart == 0, fScheduledLast, events);
+                chunks.addLast(chunk);
+                schedule(chunk);
+                fNextStart = end;
+            }
+        } // fill(LinkedList,RandomAccessFile)
+
+        /**
+         * Returns the offset of the first record start tag at or after an
+         * offset, or the length of the file if there is none.
+         */
+        private long findRecordStart(RandomAccessFile file, long offset) throws IOException {
+            byte[] pattern = fProlog.fRecordStart;
+            byte[] buffer = new byte[8192 + pattern.length];
+            file.seek(offset);
+            long bufferOffset = offset;
+            int length = 0;
+            int count;
+            while ((count = file.read(buffer, length, buffer.length - length)) > 0) {
+                length += count;
+                // a match has to be followed by a character ending the name
+                for (int i = 0; i + pattern.length < length; i++) {
+                    if (buffer[i] != '<') {
+                        continue;
+                    }
+                    int j = 1;
+                    while (j < pattern.length && buffer[i + j] == pattern[j]) {
+                        j++;
+                    }
+                    if (j == pattern.length) {
+                        byte b = buffer[i + j];
+                        if (b == ' ' || b == '\t' || b == '\n' || b == '\r' ||
+                            b == '/' || b == '>') {
+                            return bufferOffset + i;
+                        }
+                    }
+                }
+                int keep = Math.min(pattern.length, length);
+                System.arraycopy(buffer, length - keep, buffer, 0, keep);
+                bufferOffset += length - keep;
+                length = keep;
+            }
+            return fFile.length();
+        } // findRecordStart(RandomAccessFile,long):long
+
+        /**
+         * Parses the rest of the document sequentially, starting with the
+         * chunk which starts at the given offset, and replays its events as
+         * they come.
+         */
+        private void parseSequentially(long start, ReplayLocator locator)
+            throws SAXException, IOException {
+            SAXParser parser = createChunkParser();
+            SAXEventBuffer events = new SAXEventBuffer();
+            events.reset(fProlog.fAncestors.length, false, fProlog.fAncestors.length);
+            events.setLive(ParallelSAXParser.this, locator);
+            parser.setContentHandler(events);
+            parser.setDTDHandler(events);
+            parser.setErrorHandler(events);
+            parser.setProperty(LEXICAL_HANDLER, events);
+            InputSource source = new InputSource(new ChunkInputStream(fFile, start, fFile.length(),
+                                                                      fProlog.fPrefix, null,
+                                                                      fProlog.fUTF8));
+            source.setPublicId(fInputSource.getPublicId());
+            source.setSystemId(fSystemId);
+            // fatal errors are mapped to the document by the buffer
+            parser.parse(source);
+        } // parseSequentially(long,ReplayLocator)
+
+        /** Parses a chunk on a worker thread. */
+        private void parseChunk(SAXParser parser, Chunk chunk) {
+            int depth = fProlog.fAncestors.length;
+            SAXEventBuffer events = chunk.fEvents;
+            events.reset(chunk.fFirst ? 0 : depth, !chunk.fLast, depth);
+            ChunkInputStream stream = null;
+            boolean verified = false;
+            try {
+                parser.setContentHandler(events);
+                parser.setDTDHandler(events);
+                parser.setErrorHandler(events);
+                parser.setProperty(LEXICAL_HANDLER, events);
+                stream = new ChunkInputStream(fFile, chunk.fStart, chunk.fEnd,
+                                              chunk.fFirst ? null : fProlog.fPrefix,
+                                              chunk.fLast ? null : fProlog.fSuffix,
+                                              fProlog.fUTF8);
+                InputSource source = new InputSource(stream);
+                source.setPublicId(fInputSource.getPublicId());
+                source.setSystemId(fSystemId);
+                parser.parse(source);
+                verified = chunk.fLast || matchesAncestors(events.getEndElements());
+            }
+            catch (Exception e) {
+                // the chunk boundaries are wrong, or the document is
+                // malformed; either way it will be parsed sequentially
+            }
+            finally {
+                if (stream != null) {
+                    try {
+                        stream.close();
+                    }
+                    catch (IOException e) {
+                        // the parser has closed it already
+                    }
+                }
+                parser.setContentHandler(null);
+                parser.setDTDHandler(null);
+                parser.setErrorHandler(null);
+                synchronized (this) {
+                    chunk.fDone = true;
+                    chunk.fVerified = verified;
+                    if (stream != null) {
+                        chunk.fNewlines = stream.fNewlines;
+                        chunk.fTrailingChars = stream.fTrailingChars;
+                    }
+                    notifyAll();
+                }
+            }
+        } // parseChunk(SAXParser,Chunk)
+
+        /**
+         * Returns true if the elements open at the end of a chunk are the
+         * ancestors of the first record.
+         */
+        private boolean matchesAncestors(Element[] elements) {
+            Element[] ancestors = fProlog.fAncestors;
+            if (elements == null || elements.length != ancestors.length) {
+                return false;
+            }
+            for (int i = 0; i < elements.length; i++) {
+                if (!elements[i].matches(ancestors[i])) {
+                    return false;
+                }
+            }
+            return true;
+        } // matchesAncestors(Element[]):boolean
+
+        /** Queues a chunk for the workers. */
+        private synchronized void schedule(Chunk chunk) {
+            fPending.addLast(chunk);
+            notifyAll();
+        } // schedule(Chunk)
+
+        /** Removes a chunk from the queue if no worker has taken it. */
+        private synchronized void cancel(Chunk chunk) {
+            fPending.remove(chunk);
+        } // cancel(Chunk)
+
+        /** Takes the next chunk to parse, or returns null once stopped. */
+        private synchronized Chunk take() throws InterruptedException {
+            while (fPending.isEmpty() && !fStopped) {
+                wait();
+            }
+            return fStopped ? null : (Chunk) fPending.removeFirst();
+        } // take():Chunk
+
+        /** Waits until a chunk has been parsed. */
+        private synchronized void waitFor(Chunk chunk) throws SAXException {
+            while (!chunk.fDone) {
+                try {
+                    wait();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SAXException(e);
+                }
+            }
+        } // waitFor(Chunk)
+
+        /** Stops the workers once they're done with their current chunk. */
+        private synchronized void stop() {
+            fStopped = true;
+            fPending.clear();
+            notifyAll();
+        } // stop()
+
+        //
+        // Classes
+        //
+
+        /** A thread which parses chunks. */
+        private final class Worker extends Thread {
+
+            private final SAXParser fParser;
+
+            Worker(SAXParser parser, int index) {
+                super("ParallelSAXParser worker " + index);
+                fParser = parser;
+                setDaemon(true);
+            }
+
+            public void run() {
+                try {
+                    Chunk chunk;
+                    while ((chunk = take()) != null) {
+                        parseChunk(fParser, chunk);
+                    }
+                }
+                catch (InterruptedException e) {
+                    // stop working
+                }
+            }
+
+        } // class Worker
+
+    } // class ChunkScheduler
+
+    /**
+     * Reads a region of a file, optionally preceded and followed by
+     * synthetic markup, and counts the line ends in the region.
+     */
+    private static final class ChunkInputStream
+        extends InputStream {
+
+        //
+        // Data
+        //
+
+        private final RandomAccessFile fFile;
+        private long fPosition;
+        private final long fEnd;
+        private final byte[] fPrefix;
+        private int fPrefixOffset;
+        private final byte[] fSuffix;
+        private int fSuffixOffset;
+
+        /** True if characters are encoded in UTF-8. */
+        private final boolean fUTF8;
+
+        /** True if the last byte read from the file was a carriage return. */
+        private boolean fCR;
+
+        /** The number of line ends read from the file. */
+        int fNewlines;
+
+        /** The number of characters read since the last line end. */
+        int fTrailingChars;
+
+        //
+        // Constructors
+        //
+
+        ChunkInputStream(File file, long start, long end,
+                         byte[] prefix, byte[] suffix, boolean utf8) throws IOException {
+            fFile = new RandomAccessFile(file, "r");
+            fFile.seek(start);
+            fPosition = start;
+            fEnd = Math.min(end, file.length());
+            fPrefix = prefix;
+            fSuffix = suffix;
+            fUTF8 = utf8;
+        }
+
+        //
+        // InputStream methods
+        //
+
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == 1 ? b[0] & 0xFF : -1;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (fPrefix != null && fPrefixOffset < fPrefix.length) {
+                int count = Math.min(len, fPrefix.length - fPrefixOffset);
+                System.arraycopy(fPrefix, fPrefixOffset, b, off, count);
+                fPrefixOffset += count;
+                return count;
+            }
+            if (fPosition < fEnd) {
+                int count = fFile.read(b, off, (int) Math.min(len, fEnd - fPosition));
+                if (count > 0) {
+                    fPosition += count;
+                    countLines(b, off, count);
+                    return count;
+                }
+            }
+            if (fSuffix != null && fSuffixOffset < fSuffix.length) {
+                int count = Math.min(len, fSuffix.length - fSuffixOffset);
+                System.arraycopy(fSuffix, fSuffixOffset, b, off, count);
+                fSuffixOffset += count;
+                return count;
+            }
+            return -1;
+        }
+
+        public void close() throws IOException {
+            fFile.close();
+        }
+
+        //
+        // Private methods
+        //
+
+        /**
+         * Counts line ends and the characters after the last one. Only
+         * XML 1.0 documents are parsed in chunks, so NEL and LSEP aren't
+         * line ends.
+         */
+        private void countLines(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                byte c = b[i];
+                if (c == '\n') {
+                    if (!fCR) {
+                        fNewlines++;
+                    }
+                    fCR = false;
+                    fTrailingChars = 0;
+                }
+                else if (c == '\r') {
+                    fNewlines++;
+                    fCR = true;
+                    fTrailingChars = 0;
+                }
+                else {
+                    fCR = false;
+                    // continuation bytes don't start a character
+                    if (!fUTF8 || (c & 0xC0) != 0x80) {
+                        fTrailingChars++;
+                    }
+                }
+            }
+        }
+
+    } // class ChunkInputStream
+
+} // class ParallelSAXParser
@@ -0,0 +1,859 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.parsers;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.ext.Attributes2;
+import org.xml.sax.ext.LexicalHandler;
+
+/**
+ * Records the SAX events of one chunk of a document parsed by a
+ * {@link ParallelSAXParser}, so that the chunks can be parsed on several
+ * threads and their events replayed in document order on the thread
+ * which called <code>parse</code>.
+ * <p>
+ * A chunk which doesn't start at the beginning of the document is parsed
+ * inside synthetic start tags for the ancestors of its first record, and
+ * one which doesn't end at the end of the document is closed with
+ * synthetic end tags. The buffer drops the events of the synthetic start
+ * tags as they're reported, and those of the synthetic end tags when the
+ * document ends. It keeps track of the open elements, so that the parser
+ * can check that the context at the end of a chunk is the one the next
+ * chunk was parsed in.
+ * <p>
+ * Each event is recorded with the line and column number reported by the
+ * chunk parser. They're mapped to positions in the document when the
+ * events are replayed.
+ *
+ * @version $Id$
+ */
+final class SAXEventBuffer
+    implements ContentHandler, LexicalHandler, DTDHandler, ErrorHandler {
+
+    //
+    // Constants
+    //
+
+    // events
+
+    private static final int START_DOCUMENT = 0;
+    private static final int END_DOCUMENT = 1;
+    private static final int START_PREFIX_MAPPING = 2;
+    private static final int END_PREFIX_MAPPING = 3;
+    private static final int START_ELEMENT = 4;
+    private static final int END_ELEMENT = 5;
+    private static final int CHARACTERS = 6;
+    private static final int IGNORABLE_WHITESPACE = 7;
+    private static final int PROCESSING_INSTRUCTION = 8;
+    private static final int SKIPPED_ENTITY = 9;
+    private static final int START_DTD = 10;
+    private static final int END_DTD = 11;
+    private static final int START_ENTITY = 12;
+    private static final int END_ENTITY = 13;
+    private static final int START_CDATA = 14;
+    private static final int END_CDATA = 15;
+    private static final int COMMENT = 16;
+    private static final int NOTATION_DECL = 17;
+    private static final int WARNING = 18;
+    private static final int ERROR = 19;
+
+    /** Attribute flag: declared. */
+    private static final int DECLARED = 0x01;
+
+    /** Attribute flag: specified. */
+    private static final int SPECIFIED = 0x02;
+
+    /** Size of a live buffer at which its events are replayed. */
+    private static final int FLUSH_SIZE = 8192;
+
+    //
+    // Data
+    //
+
+    // recorded events: an event code, the line and column number and the
+    // arguments of the event; strings and exceptions are kept in
+    // fObjects and character data in fChars
+
+    private int[] fEvents = new int[1024];
+    private int fEventsLength;
+    private Object[] fObjects = new Object[512];
+    private int fObjectsLength;
+    private char[] fChars = new char[4096];
+    private int fCharsLength;
+
+    /** Locator of the chunk parser. */
+    private Locator fLocator;
+
+    /** Number of synthetic start tags at the start of the chunk. */
+    private int fSyntheticStarts;
+
+    /** True if the chunk is closed with synthetic end tags. */
+    private boolean fSyntheticEnds;
+
+    /** Number of synthetic start tags which haven't been seen yet. */
+    private int fStartsToSkip;
+
+    /** Depth of the records' parent, counting the synthetic elements. */
+    private int fRecordParentDepth;
+
+    /** Stack of open elements. */
+    private ParallelSAXParser.Element[] fElements = new ParallelSAXParser.Element[8];
+    private int fDepth;
+
+    /** Prefix mappings declared for the next element. */
+    private String[] fMappings = new String[8];
+    private int fMappingsLength;
+
+    /**
+     * Length of fEvents, fObjects and fChars before the last end tag of an
+     * element at the depth of the records' parent.
+     */
+    private int fMarkEvents;
+    private int fMarkObjects;
+    private int fMarkChars;
+
+    /**
+     * The open elements when the last end tag at the depth of the records'
+     * parent was reported, or null.
+     */
+    private ParallelSAXParser.Element[] fMarkElements;
+
+    // live replay
+
+    /** The parser to replay events to as they're recorded, or null. */
+    private ParallelSAXParser fLiveParser;
+
+    /** The replay locator used for live replay. */
+    private ParallelSAXParser.ReplayLocator fLiveLocator;
+
+    // replay
+
+    /** The attributes of a replayed start tag. */
+    private final ReplayAttributes fAttributes = new ReplayAttributes();
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Clears the buffer before a chunk is parsed.
+     *
+     * @param syntheticStarts The number of synthetic start tags at the
+     *                        start of the chunk.
+     * @param syntheticEnds   True if the chunk is closed with synthetic
+     *                        end tags.
+     * @param recordParentDepth The depth of the records' parent.
+     */
+    public void reset(int syntheticStarts, boolean syntheticEnds, int recordParentDepth) {
+        for (int i = 0; i < fObjectsLength; i++) {
+            fObjects[i] = null;
+        }
+        for (int i = 0; i < fDepth; i++) {
+            fElements[i] = null;
+        }
+        fEventsLength = 0;
+        fObjectsLength = 0;
+        fCharsLength = 0;
+        fDepth = 0;
+        fMappingsLength = 0;
+        fSyntheticStarts = syntheticStarts;
+        fSyntheticEnds = syntheticEnds;
+        fStartsToSkip = syntheticStarts;
+        fRecordParentDepth = recordParentDepth;
+        fMarkEvents = -1;
+        fMarkElements = null;
+        fLocator = null;
+        fLiveParser = null;
+        fLiveLocator = null;
+    } // reset(int,boolean,int)
+
+    /**
+     * Replays events to a parser as soon as a few of them have been
+     * recorded, rather than when the chunk has been parsed. This is used
+     * to parse the rest of a document once speculation has failed.
+     */
+    public void setLive(ParallelSAXParser parser, ParallelSAXParser.ReplayLocator locator) {
+        fLiveParser = parser;
+        fLiveLocator = locator;
+    } // setLive(ParallelSAXParser,ParallelSAXParser.ReplayLocator)
+
+    /** Replays the events recorded so far, and clears them. */
+    public void flush() throws SAXException {
+        if (fLiveParser != null) {
+            replay(fLiveParser, fLiveLocator);
+        }
+        for (int i = 0; i < fObjectsLength; i++) {
+            fObjects[i] = null;
+        }
+        fEventsLength = 0;
+        fObjectsLength = 0;
+        fCharsLength = 0;
+    } // flush()
+
+    /**
+     * Returns the open elements at the point where the real content of a
+     * chunk closed with synthetic end tags ends, or null if the chunk
+     * didn't reach its synthetic end tags.
+     */
+    public ParallelSAXParser.Element[] getEndElements() {
+        return fMarkElements;
+    } // getEndElements():ParallelSAXParser.Element[]
+
+    /**
+     * Replays the recorded events to the handlers of a parser.
+     *
+     * @param parser  The parser whose handlers receive the events.
+     * @param locator The locator given to the handlers; its position is
+     *                updated for each event.
+     */
+    public void replay(ParallelSAXParser parser, ParallelSAXParser.ReplayLocator locator)
+        throws SAXException {
+
+        ContentHandler contentHandler = parser.getContentHandler();
+        LexicalHandler lexicalHandler = parser.fLexicalHandler;
+        DTDHandler dtdHandler = parser.getDTDHandler();
+        ErrorHandler errorHandler = parser.getErrorHandler();
+
+        int[] events = fEvents;
+        Object[] objects = fObjects;
+        char[] chars = fChars;
+        int e = 0;
+        int o = 0;
+        int c = 0;
+        while (e < fEventsLength) {
+            int event = events[e++];
+            locator.setPosition(events[e++], events[e++]);
+            switch (event) {
+                case START_DOCUMENT: {
+                    if (contentHandler != null) {
+                        contentHandler.setDocumentLocator(locator);
+                        contentHandler.startDocument();
+                    }
+                    break;
+                }
+                case END_DOCUMENT: {
+                    if (contentHandler != null) {
+                        contentHandler.endDocument();
+                    }
+                    break;
+                }
+                case START_PREFIX_MAPPING: {
+                    String prefix = (String) objects[o++];
+                    String uri = (String) objects[o++];
+                    if (contentHandler != null) {
+                        contentHandler.startPrefixMapping(prefix, uri);
+                    }
+                    break;
+                }
+                case END_PREFIX_MAPPING: {
+                    String prefix = (String) objects[o++];
+                    if (contentHandler != null) {
+                        contentHandler.endPrefixMapping(prefix);
+                    }
+                    break;
+                }
+                case START_ELEMENT: {
+                    String uri = (String) objects[o++];
+                    String localName = (String) objects[o++];
+                    String qName = (String) objects[o++];
+                    int length = events[e++];
+                    fAttributes.setAttributes(objects, o, events, e, length);
+                    o += length * 5;
+                    e += length;
+                    if (contentHandler != null) {
+                        contentHandler.startElement(uri, localName, qName, fAttributes);
+                    }
+                    break;
+                }
+                case END_ELEMENT: {
+                    String uri = (String) objects[o++];
+                    String localName = (String) objects[o++];
+                    String qName = (String) objects[o++];
+                    if (contentHandler != null) {
+                        contentHandler.endElement(uri, localName, qName);
+                    }
+                    break;
+                }
+                case CHARACTERS: {
+                    int length = events[e++];
+                    if (contentHandler != null) {
+                        contentHandler.characters(chars, c, length);
+                    }
+                    c += length;
+                    break;
+                }
+                case IGNORABLE_WHITESPACE: {
+                    int length = events[e++];
+                    if (contentHandler != null) {
+                        contentHandler.ignorableWhitespace(chars, c, length);
+                    }
+                    c += length;
+                    break;
+                }
+                case PROCESSING_INSTRUCTION: {
+                    String target = (String) objects[o++];
+                    String data = (String) objects[o++];
+                    if (contentHandler != null) {
+                        contentHandler.processingInstruction(target, data);
+                    }
+                    break;
+                }
+                case SKIPPED_ENTITY: {
+                    String name = (String) objects[o++];
+                    if (contentHandler != null) {
+                        contentHandler.skippedEntity(name);
+                    }
+                    break;
+                }
+                case START_DTD: {
+                    String name = (String) objects[o++];
+                    String publicId = (String) objects[o++];
+                    String systemId = (String) objects[o++];
+                    if (lexicalHandler != null) {
+                        lexicalHandler.startDTD(name, publicId, systemId);
+                    }
+                    break;
+                }
+                case END_DTD: {
+                    if (lexicalHandler != null) {
+                        lexicalHandler.endDTD();
+                    }
+                    break;
+                }
+                case START_ENTITY: {
+                    String name = (String) objects[o++];
+                    if (lexicalHandler != null) {
+                        lexicalHandler.startEntity(name);
+                    }
+                    break;
+                }
+                case END_ENTITY: {
+                    String name = (String) objects[o++];
+                    if (lexicalHandler != null) {
+                        lexicalHandler.endEntity(name);
+                    }
+                    break;
+                }
+                case START_CDATA: {
+                    if (lexicalHandler != null) {
+                        lexicalHandler.startCDATA();
+                    }
+                    break;
+                }
+                case END_CDATA: {
+                    if (lexicalHandler != null) {
+                        lexicalHandler.endCDATA();
+                    }
+                    break;
+                }
+                case COMMENT: {
+                    int length = events[e++];
+                    if (lexicalHandler != null) {
+                        lexicalHandler.comment(chars, c, length);
+                    }
+                    c += length;
+                    break;
+                }
+                case NOTATION_DECL: {
+                    String name = (String) objects[o++];
+                    String publicId = (String) objects[o++];
+                    String systemId = (String) objects[o++];
+                    if (dtdHandler != null) {
+                        dtdHandler.notationDecl(name, publicId, systemId);
+                    }
+                    break;
+                }
+                case WARNING: {
+                    SAXParseException exception = locator.map((SAXParseException) objects[o++]);
+                    if (errorHandler != null) {
+                        errorHandler.warning(exception);
+                    }
+                    break;
+                }
+                case ERROR: {
+                    SAXParseException exception = locator.map((SAXParseException) objects[o++]);
+                    if (errorHandler != null) {
+                        errorHandler.error(exception);
+                    }
+                    break;
+                }
+            }
+        }
+        fAttributes.setAttributes(null, 0, null, 0, 0);
+
+    } // replay(ParallelSAXParser,ParallelSAXParser.ReplayLocator)
+
+    //
+    // ContentHandler methods
+    //
+
+    public void setDocumentLocator(Locator locator) {
+        fLocator = locator;
+    } // setDocumentLocator(Locator)
+
+    public void startDocument() throws SAXException {
+        if (fSyntheticStarts == 0) {
+            addEvent(START_DOCUMENT);
+        }
+    } // startDocument()
+
+    public void endDocument() throws SAXException {
+        if (fSyntheticEnds) {
+            // drop the synthetic end tags
+            if (fMarkEvents != -1) {
+                for (int i = fMarkObjects; i < fObjectsLength; i++) {
+                    fObjects[i] = null;
+                }
+                fEventsLength = fMarkEvents;
+                fObjectsLength = fMarkObjects;
+                fCharsLength = fMarkChars;
+            }
+        }
+        else {
+            addEvent(END_DOCUMENT);
+        }
+        if (fLiveParser != null) {
+            flush();
+        }
+    } // endDocument()
+
+    public void startPrefixMapping(String prefix, String uri) throws SAXException {
+        if (fMappingsLength + 2 > fMappings.length) {
+            String[] mappings = new String[fMappings.length * 2];
+            System.arraycopy(fMappings, 0, mappings, 0, fMappingsLength);
+            fMappings = mappings;
+        }
+        fMappings[fMappingsLength++] = prefix;
+        fMappings[fMappingsLength++] = uri;
+        if (fStartsToSkip == 0) {
+            addEvent(START_PREFIX_MAPPING);
+            addObject(prefix);
+            addObject(uri);
+        }
+    } // startPrefixMapping(String,String)
+
+    public void endPrefixMapping(String prefix) throws SAXException {
+        addEvent(END_PREFIX_MAPPING);
+        addObject(prefix);
+    } // endPrefixMapping(String)
+
+    public void startElement(String uri, String localName, String qName,
+                             Attributes attributes) throws SAXException {
+        String[] mappings = null;
+        if (fMappingsLength != 0) {
+            mappings = new String[fMappingsLength];
+            System.arraycopy(fMappings, 0, mappings, 0, fMappingsLength);
+            fMappingsLength = 0;
+        }
+        if (fDepth == fElements.length) {
+            ParallelSAXParser.Element[] elements = new ParallelSAXParser.Element[fDepth * 2];
+            System.arraycopy(fElements, 0, elements, 0, fDepth);
+            fElements = elements;
+        }
+        fElements[fDepth++] = new ParallelSAXParser.Element(qName, mappings);
+        if (fStartsToSkip != 0) {
+            fStartsToSkip--;
+            return;
+        }
+
+        addEvent(START_ELEMENT);
+        addObject(uri);
+        addObject(localName);
+        addObject(qName);
+        int length = attributes.getLength();
+        addInt(length);
+        Attributes2 attributes2 = attributes instanceof Attributes2 ? (Attributes2) attributes : null;
+        for (int i = 0; i < length; i++) {
+            addObject(attributes.getURI(i));
+            addObject(attributes.getLocalName(i));
+            addObject(attributes.getQName(i));
+            addObject(attributes.getType(i));
+            addObject(attributes.getValue(i));
+            int flags = SPECIFIED;
+            if (attributes2 != null) {
+                flags = (attributes2.isDeclared(i) ? DECLARED : 0) |
+                        (attributes2.isSpecified(i) ? SPECIFIED : 0);
+            }
+            addInt(flags);
+        }
+    } // startElement(String,String,String,Attributes)
+
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        if (fDepth == fRecordParentDepth && fSyntheticEnds) {
+            // this may be the first synthetic end tag
+            fMarkEvents = fEventsLength;
+            fMarkObjects = fObjectsLength;
+            fMarkChars = fCharsLength;
+            fMarkElements = new ParallelSAXParser.Element[fDepth];
+            System.arraycopy(fElements, 0, fMarkElements, 0, fDepth);
+        }
+        fElements[--fDepth] = null;
+        addEvent(END_ELEMENT);
+        addObject(uri);
+        addObject(localName);
+        addObject(qName);
+    } // endElement(String,String,String)
+
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        addEvent(CHARACTERS);
+        addInt(length);
+        addChars(ch, start, length);
+    } // characters(char[],int,int)
+
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        addEvent(IGNORABLE_WHITESPACE);
+        addInt(length);
+        addChars(ch, start, length);
+    } // ignorableWhitespace(char[],int,int)
+
+    public void processingInstruction(String target, String data) throws SAXException {
+        addEvent(PROCESSING_INSTRUCTION);
+        addObject(target);
+        addObject(data);
+    } // processingInstruction(String,String)
+
+    public void skippedEntity(String name) throws SAXException {
+        addEvent(SKIPPED_ENTITY);
+        addObject(name);
+    } // skippedEntity(String)
+
+    //
+    // LexicalHandler methods
+    //
+
+    public void startDTD(String name, String publicId, String systemId) throws SAXException {
+        addEvent(START_DTD);
+        addObject(name);
+        addObject(publicId);
+        addObject(systemId);
+    } // startDTD(String,String,String)
+
+    public void endDTD() throws SAXException {
+        addEvent(END_DTD);
+    } // endDTD()
+
+    public void startEntity(String name) throws SAXException {
+        addEvent(START_ENTITY);
+        addObject(name);
+    } // startEntity(String)
+
+    public void endEntity(String name) throws SAXException {
+        addEvent(END_ENTITY);
+        addObject(name);
+    } // endEntity(String)
+
+    public void startCDATA() throws SAXException {
+        addEvent(START_CDATA);
+    } // startCDATA()
+
+    public void endCDATA() throws SAXException {
+        addEvent(END_CDATA);
+    } // endCDATA()
+
+    public void comment(char[] ch, int start, int length) throws SAXException {
+        addEvent(COMMENT);
+        addInt(length);
+        addChars(ch, start, length);
+    } // comment(char[],int,int)
+
+    //
+    // DTDHandler methods
+    //
+
+    public void notationDecl(String name, String publicId, String systemId)
+        throws SAXException {
+        addEvent(NOTATION_DECL);
+        addObject(name);
+        addObject(publicId);
+        addObject(systemId);
+    } // notationDecl(String,String,String)
+
+    public void unparsedEntityDecl(String name, String publicId,
+                                   String systemId, String notationName)
+        throws SAXException {
+        // documents declaring entities aren't parsed in chunks
+    } // unparsedEntityDecl(String,String,String,String)
+
+    //
+    // ErrorHandler methods
+    //
+
+    public void warning(SAXParseException exception) throws SAXException {
+        addEvent(WARNING);
+        addObject(exception);
+    } // warning(SAXParseException)
+
+    public void error(SAXParseException exception) throws SAXException {
+        addEvent(ERROR);
+        addObject(exception);
+    } // error(SAXParseException)
+
+    public void fatalError(SAXParseException exception) throws SAXException {
+        if (fLiveParser == null) {
+            // a speculative chunk has failed; its events are discarded
+            throw exception;
+        }
+        // the rest of the document is parsed sequentially, so the error is
+        // reported at once
+        flush();
+        SAXParseException mapped = fLiveLocator.map(exception);
+        fLiveLocator.setPosition(exception.getLineNumber(), exception.getColumnNumber());
+        ErrorHandler errorHandler = fLiveParser.getErrorHandler();
+        if (errorHandler != null) {
+            errorHandler.fatalError(mapped);
+        }
+        throw mapped;
+    } // fatalError(SAXParseException)
+
+    //
+    // Private methods
+    //
+
+    /** Adds an event at the current position of the chunk parser. */
+    private void addEvent(int event) throws SAXException {
+        if (fLiveParser != null && fEventsLength >= FLUSH_SIZE) {
+            flush();
+        }
+        if (fEventsLength + 3 > fEvents.length) {
+            growEvents();
+        }
+        fEvents[fEventsLength++] = event;
+        if (fLocator != null) {
+            fEvents[fEventsLength++] = fLocator.getLineNumber();
+            fEvents[fEventsLength++] = fLocator.getColumnNumber();
+        }
+        else {
+            fEvents[fEventsLength++] = -1;
+            fEvents[fEventsLength++] = -1;
+        }
+    } // addEvent(int)
+
+    /** Adds an integer argument. */
+    private void addInt(int value) {
+        if (fEventsLength == fEvents.length) {
+            growEvents();
+        }
+        fEvents[fEventsLength++] = value;
+    } // addInt(int)
+
+    /** Adds a string or exception argument. */
+    private void addObject(Object object) {
+        if (fObjectsLength == fObjects.length) {
+            Object[] objects = new Object[fObjects.length * 2];
+            System.arraycopy(fObjects, 0, objects, 0, fObjectsLength);
+            fObjects = objects;
+        }
+        fObjects[fObjectsLength++] = object;
+    } // addObject(Object)
+
+    /** Adds character data. */
+    private void addChars(char[] ch, int start, int length) {
+        if (fCharsLength + length > fChars.length) {
+            char[] chars = new char[Math.max(fChars.length * 2, fCharsLength + length)];
+            System.arraycopy(fChars, 0, chars, 0, fCharsLength);
+            fChars = chars;
+        }
+        System.arraycopy(ch, start, fChars, fCharsLength, length);
+        fCharsLength += length;
+    } // addChars(char[],int,int)
+
+    /** Doubles the size of the event array. */
+    private void growEvents() {
+        int[] events = new int[fEvents.length * 2];
+        System.arraycopy(fEvents, 0, events, 0, fEventsLength);
+        fEvents = events;
+    } // growEvents()
+
+    //
+    // Classes
+    //
+
+    /**
+     * The attributes of a replayed start tag. They're read from the
+     * recorded arguments of the event: five strings for each attribute
+     * (its namespace name, local name, qualified name, type and value)
+     * followed by one integer of flags for each attribute.
+     */
+    private static final class ReplayAttributes
+        implements Attributes2 {
+
+        //
+        // Data
+        //
+
+        /** Recorded strings. */
+        private Object[] fObjects;
+
+        /** Offset of the strings of the first attribute. */
+        private int fObjectsOffset;
+
+        /** Recorded integers. */
+        private int[] fEvents;
+
+        /** Offset of the flags of the first attribute. */
+        private int fFlagsOffset;
+
+        /** Number of attributes. */
+        private int fLength;
+
+        //
+        // Public methods
+        //
+
+        /** Sets the recorded attributes. */
+        public void setAttributes(Object[] objects, int objectsOffset,
+                                  int[] events, int flagsOffset, int length) {
+            fObjects = objects;
+            fObjectsOffset = objectsOffset;
+            fEvents = events;
+            fFlagsOffset = flagsOffset;
+            fLength = length;
+        } // setAttributes(Object[],int,int[],int,int)
+
+        //
+        // Attributes methods
+        //
+
+        public int getLength() {
+            return fLength;
+        }
+
+        public String getURI(int index) {
+            return getString(index, 0);
+        }
+
+        public String getLocalName(int index) {
+            return getString(index, 1);
+        }
+
+        public String getQName(int index) {
+            return getString(index, 2);
+        }
+
+        public String getType(int index) {
+            return getString(index, 3);
+        }
+
+        public String getValue(int index) {
+            return getString(index, 4);
+        }
+
+        public int getIndex(String uri, String localName) {
+            for (int i = 0; i < fLength; i++) {
+                if (getString(i, 1).equals(localName) && getString(i, 0).equals(uri)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        public int getIndex(String qName) {
+            for (int i = 0; i < fLength; i++) {
+                if (getString(i, 2).equals(qName)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        public String getType(String uri, String localName) {
+            int index = getIndex(uri, localName);
+            return index != -1 ? getString(index, 3) : null;
+        }
+
+        public String getType(String qName) {
+            int index = getIndex(qName);
+            return index != -1 ? getString(index, 3) : null;
+        }
+
+        public String getValue(String uri, String localName) {
+            int index = getIndex(uri, localName);
+            return index != -1 ? getString(index, 4) : null;
+        }
+
+        public String getValue(String qName) {
+            int index = getIndex(qName);
+            return index != -1 ? getString(index, 4) : null;
+        }
+
+        //
+        // Attributes2 methods
+        //
+
+        public boolean isDeclared(int index) {
+            return (getFlags(index) & DECLARED) != 0;
+        }
+
+        public boolean isDeclared(String qName) {
+            return isDeclared(checkIndex(getIndex(qName)));
+        }
+
+        public boolean isDeclared(String uri, String localName) {
+            return isDeclared(checkIndex(getIndex(uri, localName)));
+        }
+
+        public boolean isSpecified(int index) {
+            return (getFlags(index) & SPECIFIED) != 0;
+        }
+
+        public boolean isSpecified(String qName) {
+            return isSpecified(checkIndex(getIndex(qName)));
+        }
+
+        public boolean isSpecified(String uri, String localName) {
+            return isSpecified(checkIndex(getIndex(uri, localName)));
+        }
+
+        //
+        // Private methods
+        //
+
+        /** Returns one of the strings of an attribute, or null. */
+        private String getString(int index, int field) {
+            if (index < 0 || index >= fLength) {
+                return null;
+            }
+            return (String) fObjects[fObjectsOffset + index * 5 + field];
+        } // getString(int,int):String
+
+        /** Returns the flags of an attribute. */
+        private int getFlags(int index) {
+            if (index < 0 || index >= fLength) {
+                throw new ArrayIndexOutOfBoundsException(
+                    "No attribute at index: " + index);
+            }
+            return fEvents[fFlagsOffset + index];
+        } // getFlags(int):int
+
+        /** Checks that an attribute was found by name. */
+        private static int checkIndex(int index) {
+            if (index == -1) {
+                throw new IllegalArgumentException("No such attribute.");
+            }
+            return index;
+        } // checkIndex(int):int
+
+    } // class ReplayAttributes
+
+} // class SAXEventBuffer
@@ -153,6 +153,10 @@ public class StandardParserConfiguration
     /** Property identifier: Schema DV Factory */
     protected static final String SCHEMA_DV_FACTORY = 
         Constants.XERCES_PROPERTY_PREFIX + Constants.SCHEMA_DV_FACTORY_PROPERTY;
+
+    /** Property identifier: simple type validation cache. */
+    protected static final String SCHEMA_VALIDATION_CACHE =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.SCHEMA_VALIDATION_CACHE_PROPERTY;
     
     //
     // Data
@@ -264,6 +268,7 @@ public class StandardParserConfiguration
             ROOT_TYPE_DEF,
             ROOT_ELEMENT_DECL,
             SCHEMA_DV_FACTORY,
+            SCHEMA_VALIDATION_CACHE,
         };
         
         addRecognizedProperties(recognizedProperties);
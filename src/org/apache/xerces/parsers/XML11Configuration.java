@@ -32,6 +32,7 @@ import org.apache.xerces.impl.XMLEntityHandler;
 import org.apache.xerces.impl.XMLEntityManager;
 import org.apache.xerces.impl.XMLErrorReporter;
 import org.apache.xerces.impl.XMLNSDocumentScannerImpl;
+import org.apache.xerces.impl.XMLProjectionFilter;
 import org.apache.xerces.impl.XMLVersionDetector;
 import org.apache.xerces.impl.dtd.XML11DTDProcessor;
 import org.apache.xerces.impl.dtd.XML11DTDValidator;
@@ -290,6 +291,14 @@ public class XML11Configuration extends ParserConfigurationSettings
     /** Property identifier: Schema DV Factory */
     protected static final String SCHEMA_DV_FACTORY = 
         Constants.XERCES_PROPERTY_PREFIX + Constants.SCHEMA_DV_FACTORY_PROPERTY;
+
+    /** Property identifier: simple type validation cache. */
+    protected static final String SCHEMA_VALIDATION_CACHE =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.SCHEMA_VALIDATION_CACHE_PROPERTY;
+
+    /** Property identifier: projection paths. */
+    protected static final String PROJECTION_PATHS =
+        Constants.XERCES_PROPERTY_PREFIX + Constants.PROJECTION_PATHS_PROPERTY;
     
     // debugging
 
@@ -405,6 +414,9 @@ public class XML11Configuration extends ParserConfigurationSettings
     /** XML Schema Validator. */
     protected XMLSchemaValidator fSchemaValidator;
 
+    /** Projection filter. */
+    protected XMLProjectionFilter fProjectionFilter;
+
     /** Current scanner */
     protected XMLDocumentScanner fCurrentScanner;
     /** Current Datatype validator factory. */
@@ -557,6 +569,8 @@ public class XML11Configuration extends ParserConfigurationSettings
                 ROOT_TYPE_DEF,
                 ROOT_ELEMENT_DECL,
                 SCHEMA_DV_FACTORY,
+                SCHEMA_VALIDATION_CACHE,
+                PROJECTION_PATHS,
         };
         addRecognizedProperties(recognizedProperties);
 		
@@ -833,12 +847,14 @@ public class XML11Configuration extends ParserConfigurationSettings
                 // XML 1.0
                 if (version == Constants.XML_VERSION_1_0) {
                     configurePipeline();
+                    configureProjectionFilter();
                     reset();
                 }
                 // XML 1.1
                 else if (version == Constants.XML_VERSION_1_1) {
                     initXML11Components();
                     configureXML11Pipeline();
+                    configureProjectionFilter();
                     resetXML11();
                 }
                 // Unrecoverable error reported during version detection
@@ -992,6 +1008,11 @@ public class XML11Configuration extends ParserConfigurationSettings
 		if (LOCALE.equals(propertyId)) {
 		    setLocale((Locale) value);
 		}
+		else if (PROJECTION_PATHS.equals(propertyId) && value != null && fProjectionFilter == null) {
+		    fProjectionFilter = new XMLProjectionFilter();
+		    addCommonComponent(fProjectionFilter);
+		    fProjectionFilter.setProperty(SYMBOL_TABLE, fSymbolTable);
+		}
 		// forward to every XML 1.0 component
 		int count = fComponents.size();
 		for (int i = 0; i < count; i++) {
@@ -1258,6 +1279,22 @@ public class XML11Configuration extends ParserConfigurationSettings
         }
     } // configurePipeline()
 
+    /**
+     * Inserts the projection filter at the end of the document pipeline
+     * if projection paths have been set.
+     */
+    protected void configureProjectionFilter() {
+        if (fProjectionFilter != null && fProperties.get(PROJECTION_PATHS) != null) {
+            fLastComponent.setDocumentHandler(fProjectionFilter);
+            fProjectionFilter.setDocumentSource(fLastComponent);
+            fProjectionFilter.setDocumentHandler(fDocumentHandler);
+            if (fDocumentHandler != null) {
+                fDocumentHandler.setDocumentSource(fProjectionFilter);
+            }
+            fLastComponent = fProjectionFilter;
+        }
+    } // configureProjectionFilter()
+
 
     // features and properties
 
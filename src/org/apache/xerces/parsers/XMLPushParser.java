@@ -0,0 +1,826 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.parsers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+import org.apache.xerces.impl.Constants;
+import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.parser.XMLConfigurationException;
+import org.apache.xerces.xni.parser.XMLInputSource;
+import org.apache.xerces.xni.parser.XMLPullParserConfiguration;
+
+/**
+ * <p>A parser to which the bytes of a document are pushed as they
+ * become available, for instance when they are read from a non-blocking
+ * channel, instead of being pulled from a blocking input stream. Each
+ * call to <code>feed</code> scans as much of the document as possible
+ * and returns as soon as the scanner needs input which hasn't arrived
+ * yet, so a single thread can parse many documents concurrently.</p>
+ *
+ * <pre>
+ * XMLPushParser parser = new XMLPushParser();
+ * parser.getConfiguration().setDocumentHandler(handler);
+ * parser.setInputSource(new XMLInputSource(null, systemId, null));
+ * // whenever bytes arrive
+ * parser.feed(buffer);
+ * // once the channel reaches end of stream
+ * parser.endOfInput();
+ * </pre>
+ *
+ * <p>The parser drives the pull parser configuration one step at a
+ * time. Fed bytes are handed to the scanner up to the end of the last
+ * complete markup construct, so the scanner only runs out of input at
+ * a point where it can be suspended, and is resumed at the same point
+ * once the next construct is complete. Consequently events for
+ * character data are delivered once the markup following them has
+ * arrived.</p>
+ *
+ * <p>Documents in encodings in which the bytes of ASCII characters may
+ * occur within other characters (for instance Shift_JIS, EBCDIC or
+ * UCS-4) are buffered and scanned when <code>endOfInput</code> is
+ * called. Only the document entity is pushed; external entities
+ * such as an external DTD subset are read by the configuration in
+ * the usual way. The pushed bytes can't be compressed: the
+ * read-ahead-input and decompress-input features are turned off
+ * when the parse starts.</p>
+ *
+ * <p>A push parser parses one document at a time and is not
+ * thread-safe. It may be reused by setting a new input source.</p>
+ *
+ * @version $Id$
+ */
+public class XMLPushParser {
+
+    //
+    // Constants
+    //
+
+    /**
+     * Number of bytes which must be available to the scanner before
+     * it is started, enough to detect the encoding and the version.
+     */
+    protected static final int START_SIZE = 64;
+
+    /** Initial size of the input buffer. */
+    protected static final int INITIAL_BUFFER_SIZE = 1024;
+
+    /** Feature identifier: read ahead input. */
+    protected static final String READ_AHEAD_INPUT =
+        Constants.XERCES_FEATURE_PREFIX + Constants.READ_AHEAD_INPUT_FEATURE;
+
+    /** Feature identifier: decompress input. */
+    protected static final String DECOMPRESS_INPUT =
+        Constants.XERCES_FEATURE_PREFIX + Constants.DECOMPRESS_INPUT_FEATURE;
+
+    // markup tracking states
+
+    /** State: character data. */
+    private static final int STATE_TEXT = 0;
+
+    /** State: after '&lt;'. */
+    private static final int STATE_MARKUP = 1;
+
+    /** State: in a tag. */
+    private static final int STATE_TAG = 2;
+
+    /** State: in a quoted attribute value of a tag. */
+    private static final int STATE_TAG_QUOTE = 3;
+
+    /** State: in a processing instruction. */
+    private static final int STATE_PI = 4;
+
+    /** State: after '&lt;!'. */
+    private static final int STATE_BANG = 5;
+
+    /** State: after '&lt;!-'. */
+    private static final int STATE_BANG_DASH = 6;
+
+    /** State: in a comment. */
+    private static final int STATE_COMMENT = 7;
+
+    /** State: in a CDATA section. */
+    private static final int STATE_CDATA = 8;
+
+    /** State: in a document type declaration. */
+    private static final int STATE_DOCTYPE = 9;
+
+    /** State: in a quoted literal of a document type declaration. */
+    private static final int STATE_DOCTYPE_QUOTE = 10;
+
+    /** State: after '&lt;' in the internal subset. */
+    private static final int STATE_DOCTYPE_MARKUP = 11;
+
+    /** State: after '&lt;!' in the internal subset. */
+    private static final int STATE_DOCTYPE_BANG = 12;
+
+    /** State: after '&lt;!-' in the internal subset. */
+    private static final int STATE_DOCTYPE_BANG_DASH = 13;
+
+    /** State: in a comment in the internal subset. */
+    private static final int STATE_DOCTYPE_COMMENT = 14;
+
+    /** State: in a processing instruction in the internal subset. */
+    private static final int STATE_DOCTYPE_PI = 15;
+
+    /** Thrown by the input stream to suspend the scanner. */
+    private static final IOException INPUT_SUSPENDED = new IOException() {
+        private static final long serialVersionUID = 4325197211540553549L;
+        public Throwable fillInStackTrace() {
+            return this;
+        }
+    };
+
+    //
+    // Data
+    //
+
+    /** The pull parser configuration. */
+    protected final XMLPullParserConfiguration fConfiguration;
+
+    /** The input source of the current document. */
+    private XMLInputSource fInputSource;
+
+    /** The stream from which the scanner reads the pushed bytes. */
+    private final PushInputStream fInputStream = new PushInputStream();
+
+    /** Pushed bytes. */
+    private byte[] fData = new byte[INITIAL_BUFFER_SIZE];
+
+    /** Offset of the next byte to be read by the scanner. */
+    private int fReadOffset;
+
+    /** Offset of the end of the bytes available to the scanner. */
+    private int fReleaseOffset;
+
+    /** Offset of the next byte to be examined by the markup tracker. */
+    private int fTrackOffset;
+
+    /** Offset of the end of the pushed bytes. */
+    private int fEndOffset;
+
+    /** True if all the bytes of the document have been pushed. */
+    private boolean fEndOfInput;
+
+    /** True if the scanner has been started. */
+    private boolean fStarted;
+
+    /** True if there is more of the document to parse. */
+    private boolean fMoreToParse;
+
+    /**
+     * The size in bytes of a character unit tracked for markup, 1 for
+     * ASCII compatible encodings, 2 for UTF-16 or 0 if the encoding
+     * hasn't been detected yet. If the markup can't be tracked,
+     * this is -1.
+     */
+    private int fUnitSize;
+
+    /** True if UTF-16 units are big endian. */
+    private boolean fBigEndian;
+
+    /** True if the encoding declaration has been checked. */
+    private boolean fEncodingChecked;
+
+    /** Markup tracking state. */
+    private int fState;
+
+    /** Delimiter characters of the current state matched so far. */
+    private int fMatched;
+
+    /** Quote character of a quoted state. */
+    private int fQuote;
+
+    /** True if the markup tracker is in the internal subset. */
+    private boolean fInternalSubset;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs a push parser using the default parser configuration.
+     */
+    public XMLPushParser() {
+        this((XMLPullParserConfiguration)ObjectFactory.createObject(
+            "org.apache.xerces.xni.parser.XMLParserConfiguration",
+            "org.apache.xerces.parsers.XIncludeAwareParserConfiguration"
+            ));
+    } // <init>()
+
+    /**
+     * Constructs a push parser using the specified parser configuration.
+     */
+    public XMLPushParser(XMLPullParserConfiguration config) {
+        fConfiguration = config;
+    } // <init>(XMLPullParserConfiguration)
+
+    //
+    // Public methods
+    //
+
+    /** Returns the parser configuration. */
+    public XMLPullParserConfiguration getConfiguration() {
+        return fConfiguration;
+    } // getConfiguration():XMLPullParserConfiguration
+
+    /**
+     * Starts a new document. The identifiers and the encoding of the input
+     * source are used for the document; its byte and character streams are
+     * ignored, the bytes of the document are passed to <code>feed</code>.
+     *
+     * @param inputSource The input source of the document.
+     */
+    public void setInputSource(XMLInputSource inputSource) {
+        if (fStarted && fMoreToParse) {
+            fConfiguration.cleanup();
+        }
+        fInputSource = new XMLInputSource(inputSource.getPublicId(),
+                inputSource.getSystemId(), inputSource.getBaseSystemId(),
+                fInputStream, inputSource.getEncoding());
+        fReadOffset = 0;
+        fReleaseOffset = 0;
+        fTrackOffset = 0;
+        fEndOffset = 0;
+        fEndOfInput = false;
+        fStarted = false;
+        fMoreToParse = true;
+        fUnitSize = 0;
+        fEncodingChecked = false;
+        fState = STATE_TEXT;
+        fMatched = 0;
+        fInternalSubset = false;
+        if (fData.length > INITIAL_BUFFER_SIZE) {
+            fData = new byte[INITIAL_BUFFER_SIZE];
+        }
+        if (inputSource.getEncoding() != null) {
+            checkEncoding(inputSource.getEncoding());
+        }
+    } // setInputSource(XMLInputSource)
+
+    /**
+     * Pushes bytes of the document and scans as much of the document
+     * as possible.
+     *
+     * @param buffer The bytes of the document.
+     * @param offset The offset of the first byte.
+     * @param length The number of bytes.
+     *
+     * @return True if there is more of the document to parse.
+     *
+     * @throws XNIException Any XNI exception, possibly wrapping another
+     *                      exception.
+     * @throws IOException  An IO exception from the parser, possibly
+     *                      from an external entity.
+     */
+    public boolean feed(byte[] buffer, int offset, int length)
+        throws XNIException, IOException {
+        prepareFeed(length);
+        System.arraycopy(buffer, offset, fData, fEndOffset, length);
+        fEndOffset += length;
+        return scan();
+    } // feed(byte[],int,int):boolean
+
+    /**
+     * Pushes the remaining bytes of the buffer and scans as much of the
+     * document as possible. The position of the buffer is advanced to
+     * its limit.
+     *
+     * @param buffer The bytes of the document.
+     *
+     * @return True if there is more of the document to parse.
+     *
+     * @throws XNIException Any XNI exception, possibly wrapping another
+     *                      exception.
+     * @throws IOException  An IO exception from the parser, possibly
+     *                      from an external entity.
+     */
+    public boolean feed(ByteBuffer buffer)
+        throws XNIException, IOException {
+        final int length = buffer.remaining();
+        prepareFeed(length);
+        buffer.get(fData, fEndOffset, length);
+        fEndOffset += length;
+        return scan();
+    } // feed(ByteBuffer):boolean
+
+    /**
+     * Signals that all the bytes of the document have been pushed and
+     * scans the rest of the document.
+     *
+     * @throws XNIException Any XNI exception, possibly wrapping another
+     *                      exception.
+     * @throws IOException  An IO exception from the parser, possibly
+     *                      from an external entity.
+     */
+    public void endOfInput() throws XNIException, IOException {
+        prepareFeed(0);
+        fEndOfInput = true;
+        scan();
+    } // endOfInput()
+
+    /** Returns true if there is more of the document to parse. */
+    public boolean isParsing() {
+        return fMoreToParse;
+    } // isParsing():boolean
+
+    //
+    // Private methods
+    //
+
+    /** Makes room for pushed bytes. */
+    private void prepareFeed(int length) {
+        if (fInputSource == null || fEndOfInput) {
+            throw new IllegalStateException();
+        }
+        if (fEndOffset + length > fData.length) {
+            // discard the bytes read by the scanner
+            if (fReadOffset > 0) {
+                System.arraycopy(fData, fReadOffset, fData, 0, fEndOffset - fReadOffset);
+                fReleaseOffset -= fReadOffset;
+                fTrackOffset -= fReadOffset;
+                fEndOffset -= fReadOffset;
+                fReadOffset = 0;
+            }
+            if (fEndOffset + length > fData.length) {
+                int newLength = fData.length << 1;
+                while (fEndOffset + length > newLength) {
+                    newLength <<= 1;
+                }
+                byte[] newData = new byte[newLength];
+                System.arraycopy(fData, 0, newData, 0, fEndOffset);
+                fData = newData;
+            }
+        }
+    } // prepareFeed(int)
+
+    /** Releases the complete markup and scans as far as possible. */
+    private boolean scan() throws XNIException, IOException {
+        if (!fMoreToParse) {
+            return false;
+        }
+        if (fEndOfInput) {
+            fReleaseOffset = fEndOffset;
+        }
+        else {
+            track();
+        }
+        if (!fStarted) {
+            if (!fEndOfInput && fReleaseOffset < START_SIZE) {
+                return true;
+            }
+            fStarted = true;
+            // the stream suspends the scanner, so it can't be read 
+            // ahead on another thread, and the markup is tracked in the 
+            // bytes fed, so they can't be compressed
+            disableFeature(READ_AHEAD_INPUT);
+            disableFeature(DECOMPRESS_INPUT);
+            fConfiguration.setInputSource(fInputSource);
+        }
+        try {
+            while (fMoreToParse) {
+                try {
+                    fMoreToParse = fConfiguration.parse(false);
+                }
+                catch (IOException e) {
+                    if (e != INPUT_SUSPENDED) {
+                        throw e;
+                    }
+                    return true;
+                }
+            }
+        }
+        catch (XNIException e) {
+            fMoreToParse = false;
+            throw e;
+        }
+        catch (IOException e) {
+            fMoreToParse = false;
+            throw e;
+        }
+        catch (RuntimeException e) {
+            fMoreToParse = false;
+            throw e;
+        }
+        finally {
+            if (!fMoreToParse) {
+                fConfiguration.cleanup();
+            }
+        }
+        return false;
+    } // scan():boolean
+
+    /** Turns a feature off if the configuration recognizes it. */
+    private void disableFeature(String featureId) {
+        try {
+            if (fConfiguration.getFeature(featureId)) {
+                fConfiguration.setFeature(featureId, false);
+            }
+        }
+        catch (XMLConfigurationException e) {
+            // the configuration doesn't have the feature
+        }
+    } // disableFeature(String)
+
+    /**
+     * Examines the pushed bytes for the end of markup constructs and
+     * releases the bytes up to the end of the last complete construct.
+     */
+    private void track() {
+        if (fUnitSize == 0) {
+            detectEncoding();
+            if (fUnitSize == 0) {
+                return;
+            }
+        }
+        if (fUnitSize == -1) {
+            return;
+        }
+        final int unitSize = fUnitSize;
+        while (fTrackOffset + unitSize <= fEndOffset) {
+            int c;
+            if (unitSize == 1) {
+                c = fData[fTrackOffset] & 0xFF;
+            }
+            else if (fBigEndian) {
+                c = ((fData[fTrackOffset] & 0xFF) << 8) | (fData[fTrackOffset + 1] & 0xFF);
+            }
+            else {
+                c = ((fData[fTrackOffset + 1] & 0xFF) << 8) | (fData[fTrackOffset] & 0xFF);
+            }
+            fTrackOffset += unitSize;
+            if (endsMarkup(c)) {
+                if (!fEncodingChecked) {
+                    checkEncodingDeclaration();
+                    if (fUnitSize == -1) {
+                        return;
+                    }
+                }
+                fReleaseOffset = fTrackOffset;
+            }
+        }
+    } // track()
+
+    /**
+     * Advances the markup tracker over a character. Returns true if
+     * the character ends a markup construct.
+     */
+    private boolean endsMarkup(int c) {
+        switch (fState) {
+            case STATE_TEXT: {
+                if (c == '<') {
+                    fState = STATE_MARKUP;
+                }
+                return false;
+            }
+            case STATE_MARKUP: {
+                if (c == '?') {
+                    fState = STATE_PI;
+                    fMatched = 0;
+                    return false;
+                }
+                if (c == '!') {
+                    fState = STATE_BANG;
+                    return false;
+                }
+                fState = STATE_TAG;
+                return endsMarkup(c);
+            }
+            case STATE_TAG: {
+                if (c == '"' || c == '\'') {
+                    fQuote = c;
+                    fState = STATE_TAG_QUOTE;
+                }
+                else if (c == '>') {
+                    fState = STATE_TEXT;
+                    return true;
+                }
+                return false;
+            }
+            case STATE_TAG_QUOTE: {
+                if (c == fQuote) {
+                    fState = STATE_TAG;
+                }
+                return false;
+            }
+            case STATE_PI: {
+                if (c == '>' && fMatched == 1) {
+                    fState = STATE_TEXT;
+                    return true;
+                }
+                fMatched = (c == '?') ? 1 : 0;
+                return false;
+            }
+            case STATE_BANG: {
+                if (c == '-') {
+                    fState = STATE_BANG_DASH;
+                }
+                else if (c == '[') {
+                    fState = STATE_CDATA;
+                    fMatched = 0;
+                }
+                else {
+                    fState = STATE_DOCTYPE;
+                    fInternalSubset = false;
+                    return endsMarkup(c);
+                }
+                return false;
+            }
+            case STATE_BANG_DASH: {
+                if (c == '-') {
+                    fState = STATE_COMMENT;
+                    fMatched = 0;
+                    return false;
+                }
+                fState = STATE_TAG;
+                return endsMarkup(c);
+            }
+            case STATE_COMMENT: {
+                if (c == '>' && fMatched == 2) {
+                    fState = STATE_TEXT;
+                    return true;
+                }
+                fMatched = (c == '-') ? Math.min(fMatched + 1, 2) : 0;
+                return false;
+            }
+            case STATE_CDATA: {
+                if (c == '>' && fMatched == 2) {
+                    fState = STATE_TEXT;
+                    return true;
+                }
+                fMatched = (c == ']') ? Math.min(fMatched + 1, 2) : 0;
+                return false;
+            }
+            case STATE_DOCTYPE: {
+                if (c == '"' || c == '\'') {
+                    fQuote = c;
+                    fState = STATE_DOCTYPE_QUOTE;
+                }
+                else if (c == '[') {
+                    fInternalSubset = true;
+                }
+                else if (c == ']') {
+                    fInternalSubset = false;
+                }
+                else if (c == '<' && fInternalSubset) {
+                    fState = STATE_DOCTYPE_MARKUP;
+                }
+                else if (c == '>' && !fInternalSubset) {
+                    fState = STATE_TEXT;
+                    return true;
+                }
+                return false;
+            }
+            case STATE_DOCTYPE_QUOTE: {
+                if (c == fQuote) {
+                    fState = STATE_DOCTYPE;
+                }
+                return false;
+            }
+            case STATE_DOCTYPE_MARKUP: {
+                if (c == '?') {
+                    fState = STATE_DOCTYPE_PI;
+                    fMatched = 0;
+                    return false;
+                }
+                if (c == '!') {
+                    fState = STATE_DOCTYPE_BANG;
+                    return false;
+                }
+                fState = STATE_DOCTYPE;
+                return endsMarkup(c);
+            }
+            case STATE_DOCTYPE_BANG: {
+                if (c == '-') {
+                    fState = STATE_DOCTYPE_BANG_DASH;
+                    return false;
+                }
+                fState = STATE_DOCTYPE;
+                return endsMarkup(c);
+            }
+            case STATE_DOCTYPE_BANG_DASH: {
+                if (c == '-') {
+                    fState = STATE_DOCTYPE_COMMENT;
+                    fMatched = 0;
+                    return false;
+                }
+                fState = STATE_DOCTYPE;
+                return endsMarkup(c);
+            }
+            case STATE_DOCTYPE_COMMENT: {
+                if (c == '>' && fMatched == 2) {
+                    fState = STATE_DOCTYPE;
+                }
+                else {
+                    fMatched = (c == '-') ? Math.min(fMatched + 1, 2) : 0;
+                }
+                return false;
+            }
+            case STATE_DOCTYPE_PI: {
+                if (c == '>' && fMatched == 1) {
+                    fState = STATE_DOCTYPE;
+                }
+                else {
+                    fMatched = (c == '?') ? 1 : 0;
+                }
+                return false;
+            }
+        }
+        return false;
+    } // endsMarkup(int):boolean
+
+    /**
+     * Determines the size of the character units from the first bytes
+     * of the document, in the same way as the entity manager.
+     */
+    private void detectEncoding() {
+        if (fEndOffset < 4) {
+            return;
+        }
+        final int b0 = fData[0] & 0xFF;
+        final int b1 = fData[1] & 0xFF;
+        final int b2 = fData[2] & 0xFF;
+        final int b3 = fData[3] & 0xFF;
+        // UTF-16, with or without a byte order mark
+        if ((b0 == 0xFE && b1 == 0xFF) || (b0 == 0x00 && b1 == 0x3C && b2 == 0x00 && b3 == 0x3F)) {
+            fUnitSize = 2;
+            fBigEndian = true;
+        }
+        else if ((b0 == 0xFF && b1 == 0xFE && (b2 != 0x00 || b3 != 0x00)) ||
+                 (b0 == 0x3C && b1 == 0x00 && b2 == 0x3F && b3 == 0x00)) {
+            fUnitSize = 2;
+            fBigEndian = false;
+        }
+        // UCS-4 and EBCDIC can't be tracked
+        else if ((b0 == 0x00 && b1 == 0x00) || (b2 == 0x00 && b3 == 0x00) ||
+                 (b0 == 0x4C && b1 == 0x6F && b2 == 0xA7 && b3 == 0x94)) {
+            fUnitSize = -1;
+        }
+        else {
+            fUnitSize = 1;
+        }
+        if (fUnitSize == 2 && (b0 == 0xFE || b0 == 0xFF)) {
+            fTrackOffset = 2;
+        }
+    } // detectEncoding()
+
+    /**
+     * Checks the encoding declared by the XML declaration, if the
+     * first markup construct of the document is an XML declaration.
+     */
+    private void checkEncodingDeclaration() {
+        fEncodingChecked = true;
+        // collect the ASCII characters of the first construct
+        StringBuffer decl = new StringBuffer();
+        for (int i = 0; i + fUnitSize <= fTrackOffset; i += fUnitSize) {
+            int c;
+            if (fUnitSize == 1) {
+                c = fData[i] & 0xFF;
+            }
+            else if (fBigEndian) {
+                c = ((fData[i] & 0xFF) << 8) | (fData[i + 1] & 0xFF);
+            }
+            else {
+                c = ((fData[i + 1] & 0xFF) << 8) | (fData[i] & 0xFF);
+            }
+            if (c < 0x80) {
+                decl.append((char) c);
+            }
+        }
+        String s = decl.toString();
+        if (!s.startsWith("<?xml")) {
+            return;
+        }
+        int index = s.indexOf("encoding");
+        if (index == -1) {
+            return;
+        }
+        int start = -1;
+        for (int i = index + 8; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\'') {
+                if (start == -1) {
+                    start = i + 1;
+                }
+                else if (c == s.charAt(start - 1)) {
+                    checkEncoding(s.substring(start, i));
+                    return;
+                }
+            }
+        }
+    } // checkEncodingDeclaration()
+
+    /**
+     * Stops tracking markup if the given encoding isn't one in which
+     * the markup delimiters can be recognized from the bytes alone.
+     */
+    private void checkEncoding(String encoding) {
+        fEncodingChecked = true;
+        String name = encoding.toUpperCase(Locale.ENGLISH);
+        boolean trackable;
+        if (fUnitSize == 2) {
+            trackable = name.startsWith("UTF-16") || name.startsWith("UTF16") ||
+                name.equals("UNICODE") || name.equals("ISO-10646-UCS-2");
+        }
+        else {
+            trackable = name.startsWith("UTF-8") || name.startsWith("UTF8") ||
+                name.equals("US-ASCII") || name.equals("ASCII") ||
+                name.startsWith("ISO-8859-") || name.startsWith("ISO8859") ||
+                name.startsWith("ISO_8859") || name.startsWith("LATIN") ||
+                name.startsWith("WINDOWS-125") || name.startsWith("CP125") ||
+                name.startsWith("KOI8") || name.startsWith("EUC-");
+            // the byte order mark or the declaration decides for UTF-16
+            if (name.startsWith("UTF-16") && fUnitSize == 0) {
+                trackable = true;
+            }
+        }
+        if (!trackable) {
+            fUnitSize = -1;
+        }
+    } // checkEncoding(String)
+
+    //
+    // Classes
+    //
+
+    /**
+     * The stream from which the scanner reads the pushed bytes. When
+     * the released bytes have all been read and more bytes are expected
+     * the stream suspends the scanner by throwing an exception.
+     */
+    private final class PushInputStream extends InputStream {
+
+        //
+        // InputStream methods
+        //
+
+        public int read() throws IOException {
+            if (fReadOffset < fReleaseOffset) {
+                return fData[fReadOffset++] & 0xFF;
+            }
+            if (fEndOfInput) {
+                return -1;
+            }
+            throw INPUT_SUSPENDED;
+        } // read():int
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len <= 0) {
+                return 0;
+            }
+            final int available = fReleaseOffset - fReadOffset;
+            if (available == 0) {
+                if (fEndOfInput) {
+                    return -1;
+                }
+                throw INPUT_SUSPENDED;
+            }
+            if (len > available) {
+                len = available;
+            }
+            System.arraycopy(fData, fReadOffset, b, off, len);
+            fReadOffset += len;
+            return len;
+        } // read(byte[],int,int):int
+
+        public long skip(long n) throws IOException {
+            if (n <= 0) {
+                return 0;
+            }
+            final int available = fReleaseOffset - fReadOffset;
+            if (n > available) {
+                n = available;
+            }
+            fReadOffset += (int) n;
+            return n;
+        } // skip(long):long
+
+        public int available() throws IOException {
+            return fReleaseOffset - fReadOffset;
+        } // available():int
+
+        public void close() throws IOException {
+            // the bytes belong to the push parser
+        } // close()
+
+    } // class PushInputStream
+
+} // class XMLPushParser
@@ -0,0 +1,313 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.util;
+
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.HashMap;
+
+import org.apache.xml.resolver.CatalogEntry;
+import org.apache.xml.resolver.CatalogManager;
+
+/**
+ * <p>A catalog which compiles the <code>system</code>,
+ * <code>rewriteSystem</code>, <code>uri</code> and <code>rewriteURI</code>
+ * entries of each catalog entry file into hash tables and prefix
+ * tries the first time it is queried, instead of walking the list
+ * of catalog entries on every lookup.</p>
+ *
+ * <p>The results are identical to those of the base catalog. Lookups
+ * which cannot be answered from the index (a catalog containing suffix
+ * or delegate entries which may apply) fall back to the implementation
+ * of the base class.</p>
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+final class IndexedCatalog extends PreloadingCatalog {
+
+    /** Whether system identifiers are compared ignoring case. **/
+    private static final boolean IGNORE_SYSTEM_CASE;
+
+    static {
+        boolean windows = false;
+        try {
+            String osname = System.getProperty("os.name");
+            windows = (osname != null && osname.indexOf("Windows") >= 0);
+        }
+        catch (SecurityException e) {}
+        IGNORE_SYSTEM_CASE = windows;
+    }
+
+    /** The index, or <code>null</code> if it needs to be (re)built. **/
+    private Index fIndex = null;
+
+    /**
+     * <p>Constructs an indexed catalog.</p>
+     */
+    public IndexedCatalog() {
+        super();
+    }
+
+    /**
+     * <p>Constructs an indexed catalog with the given catalog manager.</p>
+     *
+     * @param manager the catalog manager
+     */
+    public IndexedCatalog(CatalogManager manager) {
+        super(manager);
+    }
+
+    /**
+     * Invalidates the index before recording the entry.
+     */
+    public void addEntry(CatalogEntry entry) {
+        synchronized (this) {
+            fIndex = null;
+        }
+        super.addEntry(entry);
+    }
+
+    /**
+     * Subordinate and delegated catalogs are indexed as well.
+     */
+    protected PreloadingCatalog createCatalog() {
+        return new IndexedCatalog();
+    }
+
+    protected String resolveLocalSystem(String systemId)
+        throws IOException {
+        Index index = getIndex();
+        // The base class compares case insensitively on Windows.
+        if (IGNORE_SYSTEM_CASE && index.fSystemEntryCount > 0) {
+            return super.resolveLocalSystem(systemId);
+        }
+        String resolved = (String) index.fSystem.get(systemId);
+        if (resolved == null) {
+            resolved = index.fRewriteSystem.rewrite(systemId);
+            if (resolved == null && index.fSystemFallback) {
+                resolved = super.resolveLocalSystem(systemId);
+            }
+        }
+        return resolved;
+    }
+
+    protected String resolveLocalURI(String uri)
+        throws IOException {
+        Index index = getIndex();
+        String resolved = (String) index.fURI.get(uri);
+        if (resolved == null) {
+            resolved = index.fRewriteURI.rewrite(uri);
+            if (resolved == null && index.fURIFallback) {
+                resolved = super.resolveLocalURI(uri);
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Returns the index of the entries in this catalog,
+     * building it if there isn't one yet.
+     */
+    private synchronized Index getIndex() {
+        if (fIndex == null) {
+            fIndex = new Index(catalogEntries);
+        }
+        return fIndex;
+    }
+
+    /**
+     * The precompiled form of the entries of a catalog.
+     */
+    private static final class Index {
+
+        /** Exact system identifier mappings. **/
+        final HashMap fSystem = new HashMap();
+
+        /** The number of <code>system</code> entries. **/
+        int fSystemEntryCount = 0;
+
+        /** System identifier prefix mappings. **/
+        final PrefixTrie fRewriteSystem = new PrefixTrie();
+
+        /**
+         * Whether <code>systemSuffix</code> or <code>delegateSystem</code>
+         * entries exist which must be consulted by the base class.
+         */
+        boolean fSystemFallback = false;
+
+        /** Exact URI mappings. **/
+        final HashMap fURI = new HashMap();
+
+        /** URI prefix mappings. **/
+        final PrefixTrie fRewriteURI = new PrefixTrie();
+
+        /**
+         * Whether <code>uriSuffix</code> or <code>delegateURI</code>
+         * entries exist which must be consulted by the base class.
+         */
+        boolean fURIFallback = false;
+
+        Index(java.util.Vector entries) {
+            Enumeration e = entries.elements();
+            while (e.hasMoreElements()) {
+                CatalogEntry entry = (CatalogEntry) e.nextElement();
+                int type = entry.getEntryType();
+                if (type == SYSTEM) {
+                    ++fSystemEntryCount;
+                    // The first matching entry wins.
+                    String key = entry.getEntryArg(0);
+                    if (!fSystem.containsKey(key)) {
+                        fSystem.put(key, entry.getEntryArg(1));
+                    }
+                }
+                else if (type == REWRITE_SYSTEM) {
+                    fRewriteSystem.add(entry.getEntryArg(0), entry.getEntryArg(1));
+                }
+                else if (type == SYSTEM_SUFFIX || type == DELEGATE_SYSTEM) {
+                    fSystemFallback = true;
+                }
+                else if (type == URI) {
+                    String key = entry.getEntryArg(0);
+                    if (!fURI.containsKey(key)) {
+                        fURI.put(key, entry.getEntryArg(1));
+                    }
+                }
+                else if (type == REWRITE_URI) {
+                    fRewriteURI.add(entry.getEntryArg(0), entry.getEntryArg(1));
+                }
+                else if (type == URI_SUFFIX || type == DELEGATE_URI) {
+                    fURIFallback = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * A character trie of rewrite prefixes. A lookup walks
+     * the identifier once and applies the longest prefix
+     * which matched.
+     */
+    private static final class PrefixTrie {
+
+        /** The root node. **/
+        private final Node fRoot = new Node();
+
+        /** Whether any prefix has been added. **/
+        private boolean fEmpty = true;
+
+        /**
+         * Adds a prefix and its replacement. If the prefix
+         * was already added the first replacement is kept.
+         */
+        void add(String prefix, String replacement) {
+            Node node = fRoot;
+            final int length = prefix.length();
+            for (int i = 0; i < length; ++i) {
+                node = node.child(prefix.charAt(i), true);
+            }
+            if (!node.fTerminal) {
+                node.fTerminal = true;
+                node.fReplacement = replacement;
+            }
+            fEmpty = false;
+        }
+
+        /**
+         * Returns the rewritten identifier or <code>null</code>
+         * if none of the prefixes match.
+         */
+        String rewrite(String id) {
+            if (fEmpty) {
+                return null;
+            }
+            Node node = fRoot;
+            Node match = node.fTerminal ? node : null;
+            int matchLength = 0;
+            final int length = id.length();
+            for (int i = 0; i < length; ++i) {
+                node = node.child(id.charAt(i), false);
+                if (node == null) {
+                    break;
+                }
+                if (node.fTerminal) {
+                    match = node;
+                    matchLength = i + 1;
+                }
+            }
+            if (match != null) {
+                return match.fReplacement + id.substring(matchLength);
+            }
+            return null;
+        }
+
+        /**
+         * A trie node. Children are kept sorted by
+         * character and located by binary search.
+         */
+        private static final class Node {
+
+            char [] fChars = null;
+            Node [] fChildren = null;
+            int fCount = 0;
+            boolean fTerminal = false;
+            String fReplacement = null;
+
+            Node child(char c, boolean create) {
+                int low = 0;
+                int high = fCount - 1;
+                while (low <= high) {
+                    int mid = (low + high) >>> 1;
+                    char midChar = fChars[mid];
+                    if (midChar < c) {
+                        low = mid + 1;
+                    }
+                    else if (midChar > c) {
+                        high = mid - 1;
+                    }
+                    else {
+                        return fChildren[mid];
+                    }
+                }
+                if (!create) {
+                    return null;
+                }
+                if (fChars == null) {
+                    fChars = new char[2];
+                    fChildren = new Node[2];
+                }
+                else if (fCount == fChars.length) {
+                    char [] newChars = new char[fCount << 1];
+                    Node [] newChildren = new Node[fCount << 1];
+                    System.arraycopy(fChars, 0, newChars, 0, fCount);
+                    System.arraycopy(fChildren, 0, newChildren, 0, fCount);
+                    fChars = newChars;
+                    fChildren = newChildren;
+                }
+                System.arraycopy(fChars, low, fChars, low + 1, fCount - low);
+                System.arraycopy(fChildren, low, fChildren, low + 1, fCount - low);
+                Node node = new Node();
+                fChars[low] = c;
+                fChildren[low] = node;
+                ++fCount;
+                return node;
+            }
+        }
+    }
+}
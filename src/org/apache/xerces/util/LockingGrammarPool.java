@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.util;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.xerces.xni.grammars.Grammar;
+import org.apache.xerces.xni.grammars.XMLGrammarDescription;
+import org.apache.xerces.xni.grammars.XMLGrammarPool;
+
+/**
+ * Grammar pool whose operations on the main grammar pool exclude each
+ * other with a <code>ReentrantLock</code> instead of a monitor. It is
+ * otherwise the same as the synchronized grammar pool of the
+ * {@link org.apache.xerces.parsers.CachingParserPool}.
+ * <p>
+ * A virtual thread which waits for a monitor cannot be unmounted from
+ * its carrier thread, whereas one which waits for a lock parks and
+ * frees its carrier, so this pool is meant for parsers which run on
+ * virtual threads. As every operation holds the lock, the monitors
+ * which the main grammar pool may itself use, such as those of an
+ * {@link XMLGrammarPoolImpl}, are never contended, provided the main
+ * grammar pool is not used directly while it is shared through this
+ * pool.
+ *
+ * @version $Id$
+ */
+public final class LockingGrammarPool
+    implements XMLGrammarPool {
+
+    //
+    // Data
+    //
+
+    /** Main grammar pool. */
+    private final XMLGrammarPool fGrammarPool;
+
+    /** The lock guarding the main grammar pool. */
+    private final ReentrantLock fLock = new ReentrantLock();
+
+    //
+    // Constructors
+    //
+
+    /** Constructs a locking grammar pool with a new main grammar pool. */
+    public LockingGrammarPool() {
+        this(new XMLGrammarPoolImpl());
+    } // <init>()
+
+    /** Constructs a locking grammar pool. */
+    public LockingGrammarPool(XMLGrammarPool grammarPool) {
+        fGrammarPool = grammarPool;
+    } // <init>(XMLGrammarPool)
+
+    //
+    // XMLGrammarPool methods
+    //
+
+    /**
+     * Retrieves the initial set of grammars of the given type for a
+     * validator to work with.
+     *
+     * @param grammarType The type of the grammars to be retrieved.
+     */
+    public Grammar [] retrieveInitialGrammarSet(String grammarType) {
+        fLock.lock();
+        try {
+            return fGrammarPool.retrieveInitialGrammarSet(grammarType);
+        }
+        finally {
+            fLock.unlock();
+        }
+    } // retrieveInitialGrammarSet(String):Grammar[]
+
+    /**
+     * Retrieves the grammar matching the given description, or
+     * <code>null</code> if the pool has none.
+     *
+     * @param desc The description of the grammar to be retrieved.
+     */
+    public Grammar retrieveGrammar(XMLGrammarDescription desc) {
+        fLock.lock();
+        try {
+            return fGrammarPool.retrieveGrammar(desc);
+        }
+        finally {
+            fLock.unlock();
+        }
+    } // retrieveGrammar(XMLGrammarDescription):Grammar
+
+    /**
+     * Gives the grammar pool the option of caching the given grammars.
+     *
+     * @param grammarType The type of the grammars to be cached.
+     * @param grammars The grammars which may be cached.
+     */
+    public void cacheGrammars(String grammarType, Grammar[] grammars) {
+        fLock.lock();
+        try {
+            fGrammarPool.cacheGrammars(grammarType, grammars);
+        }
+        finally {
+            fLock.unlock();
+        }
+    } // cacheGrammars(String,Grammar[])
+
+    /** Locks the grammar pool. */
+    public void lockPool() {
+        fLock.lock();
+        try {
+            fGrammarPool.lockPool();
+        }
+        finally {
+            fLock.unlock();
+        }
+    } // lockPool()
+
+    /** Unlocks the grammar pool. */
+    public void unlockPool() {
+        fLock.lock();
+        try {
+            fGrammarPool.unlockPool();
+        }
+        finally {
+            fLock.unlock();
+        }
+    } // unlockPool()
+
+    /** Removes all the grammars from the grammar pool. */
+    public void clear() {
+        fLock.lock();
+        try {
+            fGrammarPool.clear();
+        }
+        finally {
+            fLock.unlock();
+        }
+    } // clear()
+
+} // class LockingGrammarPool
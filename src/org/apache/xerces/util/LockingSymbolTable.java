@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.util;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Symbol table whose operations on the main symbol table exclude each
+ * other with a <code>ReentrantLock</code> instead of the monitor of the
+ * table. It is otherwise the same as {@link SynchronizedSymbolTable}.
+ * <p>
+ * A virtual thread which waits for a monitor cannot be unmounted from
+ * its carrier thread, whereas one which waits for a lock parks and
+ * frees its carrier, so this table is meant for parsers which run on
+ * virtual threads. The main symbol table must not be used directly
+ * while it is shared through this table.
+ *
+ * @version $Id$
+ */
+
+public final class LockingSymbolTable
+    extends SymbolTable {
+
+    //
+    // Data
+    //
+
+    /** Main symbol table. */
+    protected SymbolTable fSymbolTable;
+
+    /** The lock guarding the main symbol table. */
+    private final ReentrantLock fLock = new ReentrantLock();
+
+    //
+    // Constructors
+    //
+
+    /** Constructs a locking symbol table. */
+    public LockingSymbolTable(SymbolTable symbolTable) {
+        fSymbolTable = symbolTable;
+    } // <init>(SymbolTable)
+
+    // construct locking symbol table of default size
+    public LockingSymbolTable() {
+        fSymbolTable = new SymbolTable();
+    } // init()
+
+    // construct locking symbol table of given size
+    public LockingSymbolTable(int size) {
+        fSymbolTable = new SymbolTable(size);
+    } // init(int)
+
+    //
+    // SymbolTable methods
+    //
+
+    /**
+     * Adds the specified symbol to the symbol table and returns a
+     * reference to the unique symbol. If the symbol already exists, 
+     * the previous symbol reference is returned instead, in order
+     * guarantee that symbol references remain unique.
+     * 
+     * @param symbol The new symbol.
+     */
+    public String addSymbol(String symbol) {
+
+        fLock.lock();
+        try {
+            return fSymbolTable.addSymbol(symbol);
+        }
+        finally {
+            fLock.unlock();
+        }
+
+    } // addSymbol(String)
+
+    /**
+     * Adds the specified symbol to the symbol table and returns a
+     * reference to the unique symbol. If the symbol already exists, 
+     * the previous symbol reference is returned instead, in order
+     * guarantee that symbol references remain unique.
+     * 
+     * @param buffer The buffer containing the new symbol.
+     * @param offset The offset into the buffer of the new symbol.
+     * @param length The length of the new symbol in the buffer.
+     */
+    public String addSymbol(char[] buffer, int offset, int length) {
+
+        fLock.lock();
+        try {
+            return fSymbolTable.addSymbol(buffer, offset, length);
+        }
+        finally {
+            fLock.unlock();
+        }
+
+    } // addSymbol(char[],int,int):String
+
+    /** 
+     * Returns true if the symbol table already contains the specified
+     * symbol.
+     *
+     * @param symbol The symbol to look for.
+     */
+    public boolean containsSymbol(String symbol) {
+
+        fLock.lock();
+        try {
+            return fSymbolTable.containsSymbol(symbol);
+        }
+        finally {
+            fLock.unlock();
+        }
+
+    } // containsSymbol(String):boolean
+
+    /** 
+     * Returns true if the symbol table already contains the specified
+     * symbol.
+     *
+     * @param buffer The buffer containing the symbol to look for.
+     * @param offset The offset into the buffer.
+     * @param length The length of the symbol in the buffer.
+     */
+    public boolean containsSymbol(char[] buffer, int offset, int length) {
+
+        fLock.lock();
+        try {
+            return fSymbolTable.containsSymbol(buffer, offset, length);
+        }
+        finally {
+            fLock.unlock();
+        }
+
+    } // containsSymbol(char[],int,int):boolean
+
+} // class LockingSymbolTable
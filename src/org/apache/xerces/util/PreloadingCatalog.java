@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+
+import org.apache.xml.resolver.Catalog;
+import org.apache.xml.resolver.CatalogEntry;
+import org.apache.xml.resolver.CatalogException;
+import org.apache.xml.resolver.CatalogManager;
+import org.apache.xml.resolver.helpers.FileURL;
+import org.apache.xml.resolver.readers.CatalogReader;
+
+/**
+ * <p>A catalog which can read all of its catalog entry files, including
+ * those of the catalogs it chains to with <code>nextCatalog</code>
+ * entries and those of the catalogs it delegates to, when it is parsed,
+ * instead of when a lookup first needs them.</p>
+ *
+ * <p>The base class holds the monitor of a catalog while it reads the
+ * files of the catalog and of its subordinate catalogs, and it reads the
+ * files of delegated catalogs again on every lookup which matches a
+ * delegate entry. Once preloading is turned on, each file is read into
+ * memory once, without holding the monitor of any catalog, and then
+ * parsed from memory. Catalog entry files which don't exist are skipped
+ * as they are by the base class. Unless preloading is turned on, the
+ * catalog behaves as the base class.</p>
+ *
+ * @xerces.internal
+ *
+ * @version $Id$
+ */
+class PreloadingCatalog extends Catalog {
+
+    /** Marks a catalog entry file which doesn't exist. **/
+    private static final byte[] MISSING = new byte[0];
+
+    /** 
+     * The contents of the catalog entry files which have been read, keyed 
+     * by URL, or <code>null</code> if the files are not preloaded. The map 
+     * is shared by this catalog and the catalogs it creates.
+     */
+    private HashMap fEntryFiles = null;
+
+    /**
+     * <p>Constructs a catalog.</p>
+     */
+    public PreloadingCatalog() {
+        super();
+    }
+
+    /**
+     * <p>Constructs a catalog with the given catalog manager.</p>
+     *
+     * @param manager the catalog manager
+     */
+    public PreloadingCatalog(CatalogManager manager) {
+        super(manager);
+    }
+
+    /**
+     * <p>Turns on preloading for the catalog entry files this catalog 
+     * will parse. It must be called before the first file is parsed.</p>
+     */
+    public void setPreload() {
+        fEntryFiles = new HashMap();
+    }
+
+    /**
+     * When preloading, reads the catalog entry file before parsing it 
+     * and afterwards loads every subordinate catalog it chains to and 
+     * reads the files of the catalogs it delegates to.
+     */
+    public void parseCatalog(String fileName) 
+        throws MalformedURLException, IOException {
+        if (fEntryFiles == null) {
+            super.parseCatalog(fileName);
+            return;
+        }
+        preload(fileName);
+        super.parseCatalog(fileName);
+        // Catalogs whose files have already been read, which includes
+        // those the chain has come through, are parsed when needed.
+        for (int i = 0; i < catalogs.size(); ++i) {
+            Object catalog = catalogs.elementAt(i);
+            if (catalog instanceof String && !isPreloaded((String) catalog)) {
+                Catalog subordinate = newCatalog();
+                subordinate.parseCatalog((String) catalog);
+                catalogs.setElementAt(subordinate, i);
+            }
+        }
+        for (int i = 0; i < catalogEntries.size(); ++i) {
+            CatalogEntry entry = (CatalogEntry) catalogEntries.elementAt(i);
+            int type = entry.getEntryType();
+            if ((type == DELEGATE_PUBLIC || type == DELEGATE_SYSTEM || type == DELEGATE_URI)
+                && !isPreloaded(entry.getEntryArg(1))) {
+                newCatalog().parseCatalog(entry.getEntryArg(1));
+            }
+        }
+    }
+
+    /**
+     * Creates subordinate and delegated catalogs of the same class, 
+     * which share the preloaded catalog entry files.
+     */
+    protected Catalog newCatalog() {
+        PreloadingCatalog catalog = createCatalog();
+        catalog.setCatalogManager(catalogManager);
+        copyReaders(catalog);
+        catalog.fEntryFiles = fEntryFiles;
+        return catalog;
+    }
+
+    /**
+     * Returns a new catalog of the class of this catalog.
+     */
+    protected PreloadingCatalog createCatalog() {
+        return new PreloadingCatalog();
+    }
+
+    /**
+     * Parses a preloaded catalog entry file from memory.
+     */
+    protected synchronized void parseCatalogFile(String fileName)
+        throws MalformedURLException, IOException, CatalogException {
+        byte[] content = null;
+        if (fEntryFiles != null) {
+            try {
+                content = (byte[]) fEntryFiles.get(toURL(fileName).toString());
+            }
+            catch (MalformedURLException e) {}
+        }
+        if (content == null) {
+            super.parseCatalogFile(fileName);
+            return;
+        }
+        // Set up the bases as the base class does.
+        try {
+            catalogCwd = FileURL.makeURL("basename");
+        }
+        catch (MalformedURLException e) {
+            catalogCwd = null;
+        }
+        base = toURL(fileName);
+        if (content == MISSING) {
+            return;
+        }
+        for (int i = 0; i < readerArr.size(); ++i) {
+            CatalogReader reader = (CatalogReader) readerArr.get(i);
+            try {
+                reader.readCatalog(this, new ByteArrayInputStream(content));
+                return;
+            }
+            catch (CatalogException e) {
+                if (e.getExceptionType() == CatalogException.PARSE_FAILED) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the catalog entry file into memory unless it has already 
+     * been read.
+     */
+    private void preload(String fileName) throws IOException {
+        URL url;
+        try {
+            url = toURL(fileName);
+        }
+        catch (MalformedURLException e) {
+            // Left to the base class to report.
+            return;
+        }
+        String key = url.toString();
+        if (fEntryFiles.containsKey(key)) {
+            return;
+        }
+        byte[] content;
+        try {
+            InputStream in = url.openStream();
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, count);
+                }
+                content = out.toByteArray();
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (FileNotFoundException e) {
+            content = MISSING;
+        }
+        fEntryFiles.put(key, content);
+    }
+
+    /**
+     * Returns whether the catalog entry file has been read.
+     */
+    private boolean isPreloaded(String fileName) {
+        try {
+            return fEntryFiles.containsKey(toURL(fileName).toString());
+        }
+        catch (MalformedURLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the URL of a catalog entry file, resolved as the base 
+     * class resolves it.
+     */
+    private URL toURL(String fileName) throws MalformedURLException {
+        URL cwd = null;
+        try {
+            cwd = FileURL.makeURL("basename");
+        }
+        catch (MalformedURLException e) {}
+        try {
+            return new URL(cwd, fixSlashes(fileName));
+        }
+        catch (MalformedURLException e) {
+            return new URL("file:" + fixSlashes(fileName));
+        }
+    }
+
+} // class PreloadingCatalog
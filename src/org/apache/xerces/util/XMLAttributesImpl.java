@@ -48,7 +48,7 @@ public class XMLAttributesImpl
     //
     
     /** Default table size. */
-    protected static final int TABLE_SIZE = 101;
+    protected static final int TABLE_SIZE = 128;
     
     /** 
      * Threshold at which an instance is treated
@@ -69,8 +69,8 @@ public class XMLAttributesImpl
 
     /** 
      * Usage count for the attribute table view. 
-     * Incremented each time all attributes are removed
-     * when the attribute table view is in use.
+     * Incremented each time the attribute table view
+     * is prepared for use.
      */
     protected int fLargeCount = 1;
     
@@ -81,21 +81,22 @@ public class XMLAttributesImpl
     protected Attribute[] fAttributes = new Attribute[4];
     
     /** 
-     * Hashtable of attribute information. 
-     * Provides an alternate view of the attribute specification. 
+     * Hashtable of attribute indexes. Provides an alternate view of
+     * the attribute specification. Collisions are resolved by linear
+     * probing, and the table is kept at most half full.
      */
-    protected Attribute[] fAttributeTableView;
+    protected int[] fAttributeTableView;
     
     /**
-     * Tracks whether each chain in the hash table is stale
+     * Tracks whether each slot in the hash table is stale
      * with respect to the current state of this object.
-     * A chain is stale if its state is not the same as the number
-     * of times the attribute table view has been used.
+     * A slot is stale, that is empty, if its state is not the same
+     * as the number of times the attribute table view has been used.
      */
-    protected int[] fAttributeTableViewChainState;
+    protected int[] fAttributeTableViewSlotState;
     
     /**
-     * Actual number of buckets in the table view.
+     * Actual number of buckets in the table view, a power of two.
      */
     protected int fTableViewBuckets;
     
@@ -117,7 +118,10 @@ public class XMLAttributesImpl
      * @param tableSize initial size of table view
      */
     public XMLAttributesImpl(int tableSize) {
-        fTableViewBuckets = tableSize;
+        fTableViewBuckets = 1;
+        while (fTableViewBuckets < tableSize) {
+            fTableViewBuckets <<= 1;
+        }
         for (int i = 0; i < fAttributes.length; i++) {
             fAttributes[i] = new Attribute();
         }
@@ -203,16 +207,22 @@ public class XMLAttributesImpl
              * the user of this class adds attributes, removes them, and
              * then adds more.
              */
-            if (!fIsTableViewConsistent || fLength == SIZE_LIMIT) {
+            if (!fIsTableViewConsistent || fLength == SIZE_LIMIT ||
+                fLength >= fTableViewBuckets >> 1) {
                 prepareAndPopulateTableView();
                 fIsTableViewConsistent = true;
             }
 
-            int bucket = getTableViewBucket(name.rawname); 
+            // Search the table for an attribute with the same rawname.
+            int bucket = getTableViewBucket(name.rawname);
+            while (fAttributeTableViewSlotState[bucket] == fLargeCount &&
+                fAttributes[fAttributeTableView[bucket]].name.rawname != name.rawname) {
+                bucket = (bucket + 1) & (fTableViewBuckets - 1);
+            }
 		
-            // The chain is stale. 
+            // The slot is stale. 
             // This must be a unique attribute.
-            if (fAttributeTableViewChainState[bucket] != fLargeCount) {
+            if (fAttributeTableViewSlotState[bucket] != fLargeCount) {
                 index = fLength;
                 if (fLength++ == fAttributes.length) {
                     Attribute[] attributes = new Attribute[fAttributes.length << 1];
@@ -224,41 +234,12 @@ public class XMLAttributesImpl
                 }
 			
                 // Update table view.
-                fAttributeTableViewChainState[bucket] = fLargeCount;
-                fAttributes[index].next = null;
-                fAttributeTableView[bucket] = fAttributes[index];
+                fAttributeTableViewSlotState[bucket] = fLargeCount;
+                fAttributeTableView[bucket] = index;
             }
-            // This chain is active. 
-            // We need to check if any of the attributes has the same rawname.
+            // Duplicate.
             else {
-                // Search the table.
-                Attribute found = fAttributeTableView[bucket];
-                while (found != null) {
-                    if (found.name.rawname == name.rawname) {
-                        break;
-                    }
-                    found = found.next;
-                }
-                // This attribute is unique.
-                if (found == null) {
-                    index = fLength;
-                    if (fLength++ == fAttributes.length) {
-                        Attribute[] attributes = new Attribute[fAttributes.length << 1];
-                        System.arraycopy(fAttributes, 0, attributes, 0, fAttributes.length);
-                        for (int i = fAttributes.length; i < attributes.length; i++) {
-                            attributes[i] = new Attribute();
-                        }
-                        fAttributes = attributes;
-                    }
-                
-                    // Update table view
-                    fAttributes[index].next = fAttributeTableView[bucket];
-                    fAttributeTableView[bucket] = fAttributes[index];
-                }
-                // Duplicate. We still need to find the index.
-                else {
-                    index = getIndexFast(name.rawname);
-                }
+                index = fAttributeTableView[bucket];
             }
         }          
         
@@ -849,37 +830,27 @@ public class XMLAttributesImpl
 
             prepareTableView();
 
-            Attribute attr;
+            QName name;
             int bucket;
 
             for (int i = fLength - 1; i >= 0; --i) {
-                attr = fAttributes[i];
-                bucket = getTableViewBucket(attr.name.localpart, attr.name.uri);
+                name = fAttributes[i].name;
+                bucket = getTableViewBucket(name.localpart, name.uri);
                 
-                // The chain is stale. 
-                // This must be a unique attribute.
-                if (fAttributeTableViewChainState[bucket] != fLargeCount) {
-                    fAttributeTableViewChainState[bucket] = fLargeCount;
-                    attr.next = null;
-                    fAttributeTableView[bucket] = attr;
-                } 
-                // This chain is active. 
-                // We need to check if any of the attributes has the same name.
-                else {
-                    // Search the table.
-                    Attribute found = fAttributeTableView[bucket];
-                    while (found != null) {
-                        if (found.name.localpart == attr.name.localpart &&
-                            found.name.uri == attr.name.uri) {
-                            return attr.name;
-                        }
-                        found = found.next;
+                // Search the table for an attribute with the same name
+                // until a stale slot is found.
+                while (fAttributeTableViewSlotState[bucket] == fLargeCount) {
+                    QName found = fAttributes[fAttributeTableView[bucket]].name;
+                    if (found.localpart == name.localpart &&
+                        found.uri == name.uri) {
+                        return name;
                     }
-                    
-                    // Update table view
-                    attr.next = fAttributeTableView[bucket];
-                    fAttributeTableView[bucket] = attr;
+                    bucket = (bucket + 1) & (fTableViewBuckets - 1);
                 }
+                
+                // This must be a unique attribute.
+                fAttributeTableViewSlotState[bucket] = fLargeCount;
+                fAttributeTableView[bucket] = i;
             }
     	}
     	return null;
@@ -933,7 +904,8 @@ public class XMLAttributesImpl
      * would be hashed
      */
     protected int getTableViewBucket(String qname) {
-        return (qname.hashCode() & 0x7FFFFFFF) % fTableViewBuckets;
+        int code = qname.hashCode();
+        return spread(code) & (fTableViewBuckets - 1);
     }
     
     /**
@@ -946,24 +918,33 @@ public class XMLAttributesImpl
      * would be hashed
      */
     protected int getTableViewBucket(String localpart, String uri) {
-        if (uri == null) {
-            return (localpart.hashCode() & 0x7FFFFFFF) % fTableViewBuckets;
-        }
-        else {
-            return ((localpart.hashCode() + uri.hashCode()) 
-               & 0x7FFFFFFF) % fTableViewBuckets;
+        int code = localpart.hashCode();
+        if (uri != null) {
+            code = code * 31 + uri.hashCode();
         }
+        return spread(code) & (fTableViewBuckets - 1);
     }
 	
+    /**
+     * Spreads a hash code over the low order bits used to index
+     * the table view. Names such as <code>a1</code>, <code>a2</code>,
+     * ... have consecutive hash codes, which would otherwise fill
+     * runs of neighbouring slots and make linear probing slow.
+     */
+    private static int spread(int code) {
+        code *= 0x9E3779B9;
+        return code ^ (code >>> 16);
+    }
+    
     /**
      * Purges all elements from the table view.
      */
     protected void cleanTableView() {
         if (++fLargeCount < 0) {
-            // Overflow. We actually need to visit the chain state array.
-            if (fAttributeTableViewChainState != null) {
+            // Overflow. We actually need to visit the slot state array.
+            if (fAttributeTableViewSlotState != null) {
                 for (int i = fTableViewBuckets - 1; i >= 0; --i) {
-                    fAttributeTableViewChainState[i] = 0;
+                    fAttributeTableViewSlotState[i] = 0;
                 } 
             }
             fLargeCount = 1;
@@ -971,12 +952,20 @@ public class XMLAttributesImpl
     }
     
     /**
-     * Prepares the table view of the attributes list for use.
+     * Prepares the table view of the attributes list for use,
+     * growing it until it has at least twice as many buckets
+     * as one more than the number of attributes.
      */
     protected void prepareTableView() {
-        if (fAttributeTableView == null) {
-            fAttributeTableView = new Attribute[fTableViewBuckets];
-            fAttributeTableViewChainState = new int[fTableViewBuckets];
+        int buckets = fTableViewBuckets;
+        while (buckets < (fLength + 1) << 1) {
+            buckets <<= 1;
+        }
+        if (fAttributeTableView == null || buckets != fTableViewBuckets) {
+            fTableViewBuckets = buckets;
+            fAttributeTableView = new int[fTableViewBuckets];
+            fAttributeTableViewSlotState = new int[fTableViewBuckets];
+            fLargeCount = 1;
         }
         else {
             cleanTableView();
@@ -991,21 +980,14 @@ public class XMLAttributesImpl
     protected void prepareAndPopulateTableView() {
         prepareTableView();
         // Need to populate the hash table with the attributes we've scanned so far.
-        Attribute attr;
         int bucket;
         for (int i = 0; i < fLength; ++i) {
-            attr = fAttributes[i];
-            bucket = getTableViewBucket(attr.name.rawname);
-            if (fAttributeTableViewChainState[bucket] != fLargeCount) {
-                fAttributeTableViewChainState[bucket] = fLargeCount;
-                attr.next = null;
-                fAttributeTableView[bucket] = attr;
-            } 
-            else {
-                // Update table view
-                attr.next = fAttributeTableView[bucket];
-                fAttributeTableView[bucket] = attr;
+            bucket = getTableViewBucket(fAttributes[i].name.rawname);
+            while (fAttributeTableViewSlotState[bucket] == fLargeCount) {
+                bucket = (bucket + 1) & (fTableViewBuckets - 1);
             }
+            fAttributeTableViewSlotState[bucket] = fLargeCount;
+            fAttributeTableView[bucket] = i;
         }
     }
 
@@ -1048,11 +1030,6 @@ public class XMLAttributesImpl
          */
         public Augmentations augs = new AugmentationsImpl();
         
-        // Additional data for attribute table view
-        
-        /** Pointer to the next attribute in the chain. **/
-        public Attribute next;
-        
     } // class Attribute
 
 } // class XMLAttributesImpl
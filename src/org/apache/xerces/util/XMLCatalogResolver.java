@@ -18,6 +18,9 @@
 package org.apache.xerces.util;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.xml.parsers.SAXParserFactory;
 
@@ -52,6 +55,26 @@ import org.xml.sax.ext.EntityResolver2;
  * <p>It is intended that this class may be used standalone to perform 
  * catalog resolution outside of a parsing context. It may be shared
  * between several parsers and the application.</p>
+ * 
+ * <p>The results of catalog lookups, including lookups for which
+ * no mapping was found, are remembered in a bounded cache so that
+ * repeated resolution of the same identifiers does not need to
+ * consult the catalog again. The cache is discarded whenever the
+ * list of catalogs or the prefer public setting changes.</p>
+ * 
+ * <p>Lookups answered from the cache don't exclude each other, and 
+ * no lock on the resolver is held while the catalog entry files in
+ * the list are read, so a thread waiting for the catalogs to be read 
+ * doesn't hold up threads resolving identifiers already cached. As 
+ * the catalogs are not safe for concurrent use, lookups which search 
+ * them hold the monitor of the catalog, which is also held while the 
+ * entry files of chained and delegated catalogs are read.</p>
+ * 
+ * <p>A virtual thread which holds or waits for a monitor cannot be 
+ * unmounted from its carrier thread, so for resolvers used on virtual 
+ * threads lookups can be made to exclude each other with a lock 
+ * instead, and all of the catalog entry files to be read before any 
+ * lookup, as described in {@link #setUseLocks(boolean)}.</p>
  *
  * @author Michael Glavassevich, IBM
  *
@@ -60,6 +83,21 @@ import org.xml.sax.ext.EntityResolver2;
 public class XMLCatalogResolver 
     implements XMLEntityResolver, EntityResolver2, LSResourceResolver {
     
+    /** Default maximum number of cached resolution results. **/
+    public static final int DEFAULT_RESOLUTION_CACHE_SIZE = 512;
+    
+    /** Cache key type for system identifier lookups. **/
+    private static final int SYSTEM_LOOKUP = 0;
+    
+    /** Cache key type for public identifier lookups. **/
+    private static final int PUBLIC_LOOKUP = 1;
+    
+    /** Cache key type for URI lookups. **/
+    private static final int URI_LOOKUP = 2;
+    
+    /** Cached value recording that no mapping was found. **/
+    private static final Object NO_MAPPING = new Object();
+    
     /** Internal catalog manager for Apache catalogs. **/
     private CatalogManager fResolverCatalogManager = null;
     
@@ -86,6 +124,28 @@ public class XMLCatalogResolver
      */
     private boolean fUseLiteralSystemId = true;
     
+    /** 
+     * Indicates whether catalog entry files are compiled into
+     * hashed lookup tables when they are parsed.
+     */
+    private boolean fUseCatalogIndex = false;
+    
+    /** 
+     * The lock held by lookups, or <code>null</code> if lookups 
+     * don't exclude each other.
+     */
+    private volatile ReentrantLock fLookupLock = null;
+    
+    /** Cache of resolution results. Access is synchronized on the cache. **/
+    private final ResolutionCache fResolutionCache = 
+        new ResolutionCache(DEFAULT_RESOLUTION_CACHE_SIZE);
+    
+    /** 
+     * Incremented each time cached results become stale, so that 
+     * a lookup which began before the change does not store its result.
+     */
+    private int fCacheGeneration = 0;
+    
     /**
      * <p>Constructs a catalog resolver with a default configuration.</p>
      */
@@ -138,6 +198,7 @@ public class XMLCatalogResolver
         fCatalogsChanged = true;
         fCatalogsList = (catalogs != null)
             ? (String[]) catalogs.clone() : null;
+        invalidateResolutionCache();
     }
     
     /**
@@ -145,6 +206,133 @@ public class XMLCatalogResolver
      */
     public final synchronized void clear () {
         fCatalog = null;
+        invalidateResolutionCache();
+    }
+    
+    /**
+     * <p>Returns whether catalog entry files are compiled into hashed 
+     * lookup tables for <code>system</code>, <code>rewriteSystem</code>, 
+     * <code>uri</code> and <code>rewriteURI</code> entries. If this 
+     * property has not yet been explicitly set its value is 
+     * <code>false</code>.</p>
+     * 
+     * @return whether catalog entry files are indexed
+     */
+    public final synchronized boolean getUseCatalogIndex () {
+        return fUseCatalogIndex;
+    }
+    
+    /**
+     * <p>Sets whether catalog entry files are compiled into hashed 
+     * lookup tables for <code>system</code>, <code>rewriteSystem</code>, 
+     * <code>uri</code> and <code>rewriteURI</code> entries, instead of 
+     * being searched sequentially on each lookup. The catalogs will be 
+     * reparsed the next time the catalog is queried.</p>
+     * 
+     * @param useCatalogIndex whether catalog entry files should be indexed
+     */
+    public final synchronized void setUseCatalogIndex (boolean useCatalogIndex) {
+        if (fUseCatalogIndex != useCatalogIndex) {
+            fUseCatalogIndex = useCatalogIndex;
+            fCatalogsChanged = true;
+            invalidateResolutionCache();
+        }
+    }
+    
+    /**
+     * <p>Returns whether lookups exclude each other with a lock and 
+     * all catalog entry files are read when the catalogs are parsed. 
+     * If this property has not yet been explicitly set its value is 
+     * <code>false</code>.</p>
+     * 
+     * @return whether lookups are guarded by a lock
+     */
+    public final boolean getUseLocks () {
+        return fLookupLock != null;
+    }
+    
+    /**
+     * <p>Sets whether lookups exclude each other with a 
+     * <code>ReentrantLock</code> and all catalog entry files, including 
+     * those of chained (<code>nextCatalog</code>) and delegated catalogs, 
+     * are read into memory when the catalogs are parsed, instead of when 
+     * a lookup first needs them. No thread then waits for the monitor of 
+     * a catalog, nor reads a file while holding one, which is what makes 
+     * the resolver suitable for virtual threads: a virtual thread which 
+     * waits for the lock parks and frees its carrier thread. The catalogs 
+     * will be reparsed the next time the catalog is queried.</p>
+     * 
+     * <p>This property should be set before the resolver is used.
+     * Changing the configuration of the resolver while lookups are
+     * in progress still takes the monitor of the resolver.</p>
+     * 
+     * @param useLocks whether lookups should be guarded by a lock
+     */
+    public final synchronized void setUseLocks (boolean useLocks) {
+        if ((fLookupLock != null) != useLocks) {
+            fLookupLock = useLocks ? new ReentrantLock() : null;
+            fCatalogsChanged = true;
+            invalidateResolutionCache();
+        }
+    }
+    
+    /**
+     * <p>Returns the maximum number of resolution results which 
+     * are cached. If this property has not yet been explicitly set 
+     * its value is {@link #DEFAULT_RESOLUTION_CACHE_SIZE}.</p>
+     * 
+     * @return the maximum size of the resolution cache
+     */
+    public final int getResolutionCacheSize () {
+        synchronized (fResolutionCache) {
+            return fResolutionCache.fMaxSize;
+        }
+    }
+    
+    /**
+     * <p>Sets the maximum number of resolution results which are 
+     * cached. When the cache is full the least recently used result 
+     * is discarded. A value of zero disables the cache.</p>
+     * 
+     * @param size the maximum size of the resolution cache
+     */
+    public final void setResolutionCacheSize (int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException(Integer.toString(size));
+        }
+        synchronized (fResolutionCache) {
+            fResolutionCache.fMaxSize = size;
+            if (size == 0) {
+                fResolutionCache.clear();
+            }
+            else {
+                fResolutionCache.trim();
+            }
+        }
+    }
+    
+    /**
+     * <p>Returns the number of lookups which were answered 
+     * from the resolution cache.</p>
+     * 
+     * @return the number of cache hits
+     */
+    public final long getResolutionCacheHits () {
+        synchronized (fResolutionCache) {
+            return fResolutionCache.fHits;
+        }
+    }
+    
+    /**
+     * <p>Returns the number of lookups which had to be 
+     * answered by querying the catalog.</p>
+     * 
+     * @return the number of cache misses
+     */
+    public final long getResolutionCacheMisses () {
+        synchronized (fResolutionCache) {
+            return fResolutionCache.fMisses;
+        }
     }
     
     /**
@@ -172,6 +360,11 @@ public class XMLCatalogResolver
     public final void setPreferPublic (boolean preferPublic) {
         fPreferPublic = preferPublic;
         fResolverCatalogManager.setPreferPublic(preferPublic);
+        synchronized (this) {
+            // The catalog reads the preference when it is parsed.
+            fCatalogsChanged = true;
+            invalidateResolutionCache();
+        }
     }
     
     /**
@@ -454,15 +647,10 @@ public class XMLCatalogResolver
      * @throws IOException if an i/o error occurred while reading
      * the catalog
      */
-    public final synchronized String resolveSystem (String systemId) 
+    public final String resolveSystem (String systemId) 
         throws IOException {
-
-        if (fCatalogsChanged) {
-            parseCatalogs();
-            fCatalogsChanged = false;
-        }
-        return (fCatalog != null) 
-            ? fCatalog.resolveSystem(systemId) : null;
+        
+        return resolve(new Key(SYSTEM_LOOKUP, systemId, null));
     }
     
     /**
@@ -480,15 +668,10 @@ public class XMLCatalogResolver
      * @throws IOException if an i/o error occurred while reading
      * the catalog
      */
-    public final synchronized String resolvePublic (String publicId, String systemId) 
+    public final String resolvePublic (String publicId, String systemId) 
         throws IOException {
-
-        if (fCatalogsChanged) {
-            parseCatalogs();
-            fCatalogsChanged = false;
-        }
-        return (fCatalog != null) 
-            ? fCatalog.resolvePublic(publicId, systemId) : null;
+        
+        return resolve(new Key(PUBLIC_LOOKUP, publicId, systemId));
     }
     
     /**
@@ -509,15 +692,60 @@ public class XMLCatalogResolver
      * @throws IOException if an i/o error occurred while reading
      * the catalog
      */
-    public final synchronized String resolveURI (String uri) 
+    public final String resolveURI (String uri) 
         throws IOException {
-
-        if (fCatalogsChanged) {
-            parseCatalogs();
-            fCatalogsChanged = false;
+        
+        return resolve(new Key(URI_LOOKUP, uri, null));
+    }
+    
+    /**
+     * Performs a lookup, holding the lookup lock if there is one.
+     */
+    private String resolve (Key key) throws IOException {
+        ReentrantLock lock = fLookupLock;
+        if (lock == null) {
+            return lookup(key);
+        }
+        lock.lock();
+        try {
+            return lookup(key);
+        }
+        finally {
+            lock.unlock();
         }
-        return (fCatalog != null)
-            ? fCatalog.resolveURI(uri) : null;
+    }
+    
+    /**
+     * Looks up an identifier in the resolution cache and if 
+     * it isn't cached in the catalog, caching the result.
+     */
+    private String lookup (Key key) throws IOException {
+        Object cached = getCachedResult(key);
+        if (cached != null) {
+            return (cached != NO_MAPPING) ? (String) cached : null;
+        }
+        int generation = getCacheGeneration();
+        Catalog catalog = getCatalog();
+        String resolvedId = null;
+        if (catalog != null) {
+            // Catalogs share their readers with the catalogs they 
+            // load, so a catalog must not be searched concurrently.
+            // Under the lookup lock the monitor is never contended.
+            synchronized (catalog) {
+                switch (key.fType) {
+                    case SYSTEM_LOOKUP:
+                        resolvedId = catalog.resolveSystem(key.fId);
+                        break;
+                    case PUBLIC_LOOKUP:
+                        resolvedId = catalog.resolvePublic(key.fId, key.fSystemId);
+                        break;
+                    default:
+                        resolvedId = catalog.resolveURI(key.fId);
+                }
+            }
+        }
+        putCachedResult(key, resolvedId, generation);
+        return resolvedId;
     }
     
     /**
@@ -540,25 +768,125 @@ public class XMLCatalogResolver
         fResolverCatalogManager.setVerbosity(0);
     }
     
+    /**
+     * Returns the catalog, parsing the list of catalogs if it has
+     * changed. The catalogs are parsed without holding the lock on 
+     * this resolver so that threads looking up identifiers don't 
+     * wait on the monitor while the catalogs are read. If several 
+     * threads find the list changed they may each parse it, the 
+     * first catalog to be parsed being kept.
+     */
+    private Catalog getCatalog () throws IOException {
+        String [] catalogs;
+        boolean useCatalogIndex;
+        boolean preload;
+        int generation;
+        synchronized (this) {
+            if (!fCatalogsChanged) {
+                return fCatalog;
+            }
+            catalogs = fCatalogsList;
+            useCatalogIndex = fUseCatalogIndex;
+            preload = (fLookupLock != null);
+            generation = getCacheGeneration();
+        }
+        Catalog catalog = parseCatalogs(catalogs, useCatalogIndex, preload);
+        synchronized (this) {
+            // Discard the catalog if the configuration has changed meanwhile.
+            if (fCatalogsChanged && generation == getCacheGeneration()) {
+                fCatalog = catalog;
+                fCatalogsChanged = false;
+            }
+            else if (!fCatalogsChanged) {
+                catalog = fCatalog;
+            }
+        }
+        return catalog;
+    }
+    
     /**
      * Instruct the <code>Catalog</code> to parse each of the  
      * catalogs in the list. Only the first catalog will actually be 
      * parsed immediately. The others will be queued and read if 
-     * they are needed later.
-     */
-    private void parseCatalogs () throws IOException {
-        if (fCatalogsList != null) {
-            fCatalog = new Catalog(fResolverCatalogManager);
-            attachReaderToCatalog(fCatalog);
-            for (int i = 0; i < fCatalogsList.length; ++i) {
-                String catalog = fCatalogsList[i];
-                if (catalog != null && catalog.length() > 0) {
-                    fCatalog.parseCatalog(catalog);
-                }
+     * they are needed later, unless the catalogs are preloaded.
+     */
+    private Catalog parseCatalogs (String [] catalogs, 
+        boolean useCatalogIndex, boolean preload) throws IOException {
+        if (catalogs == null) {
+            return null;
+        }
+        Catalog catalog;
+        if (useCatalogIndex || preload) {
+            PreloadingCatalog preloadingCatalog = useCatalogIndex 
+                ? new IndexedCatalog(fResolverCatalogManager)
+                : new PreloadingCatalog(fResolverCatalogManager);
+            if (preload) {
+                preloadingCatalog.setPreload();
             }
+            catalog = preloadingCatalog;
         }
         else {
-            fCatalog = null;
+            catalog = new Catalog(fResolverCatalogManager);
+        }
+        attachReaderToCatalog(catalog);
+        for (int i = 0; i < catalogs.length; ++i) {
+            String entryFile = catalogs[i];
+            if (entryFile != null && entryFile.length() > 0) {
+                catalog.parseCatalog(entryFile);
+            }
+        }
+        return catalog;
+    }
+    
+    /**
+     * Returns the current generation of the resolution cache.
+     */
+    private int getCacheGeneration () {
+        synchronized (fResolutionCache) {
+            return fCacheGeneration;
+        }
+    }
+    
+    /**
+     * Returns the cached result for the given lookup, 
+     * {@link #NO_MAPPING} if the lookup is known to have 
+     * no mapping or <code>null</code> if it isn't cached.
+     */
+    private Object getCachedResult (Key key) {
+        synchronized (fResolutionCache) {
+            if (fResolutionCache.fMaxSize == 0) {
+                return null;
+            }
+            Object value = fResolutionCache.get(key);
+            if (value != null) {
+                ++fResolutionCache.fHits;
+            }
+            else {
+                ++fResolutionCache.fMisses;
+            }
+            return value;
+        }
+    }
+    
+    /**
+     * Caches the result of a lookup unless the cache has 
+     * been invalidated since the given generation.
+     */
+    private void putCachedResult (Key key, String resolvedId, int generation) {
+        synchronized (fResolutionCache) {
+            if (fResolutionCache.fMaxSize > 0 && generation == fCacheGeneration) {
+                fResolutionCache.put(key, (resolvedId != null) ? (Object) resolvedId : NO_MAPPING);
+            }
+        }
+    }
+    
+    /**
+     * Discards all cached resolution results.
+     */
+    private void invalidateResolutionCache () {
+        synchronized (fResolutionCache) {
+            ++fCacheGeneration;
+            fResolutionCache.clear();
         }
     }
     
@@ -576,4 +904,83 @@ public class XMLCatalogResolver
             "org.apache.xml.resolver.readers.OASISXMLCatalogReader");
         catalog.addReader("application/xml", saxReader);
     }
+    
+    /**
+     * Identifies a catalog lookup in the resolution cache.
+     */
+    private static final class Key {
+        
+        private final int fType;
+        private final String fId;
+        private final String fSystemId;
+        private final int fHashCode;
+        
+        Key (int type, String id, String systemId) {
+            fType = type;
+            fId = id;
+            fSystemId = systemId;
+            int hash = type;
+            if (id != null) {
+                hash = hash * 31 + id.hashCode();
+            }
+            if (systemId != null) {
+                hash = hash * 31 + systemId.hashCode();
+            }
+            fHashCode = hash;
+        }
+        
+        public int hashCode () {
+            return fHashCode;
+        }
+        
+        public boolean equals (Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return fType == other.fType 
+                && fHashCode == other.fHashCode
+                && (fId == null ? other.fId == null : fId.equals(other.fId))
+                && (fSystemId == null ? other.fSystemId == null : fSystemId.equals(other.fSystemId));
+        }
+    }
+    
+    /**
+     * A bounded map of resolution results which evicts 
+     * the least recently used entry when it is full.
+     */
+    private static final class ResolutionCache extends LinkedHashMap {
+        
+        private static final long serialVersionUID = 1L;
+        
+        /** Maximum number of entries. **/
+        int fMaxSize;
+        
+        /** Number of lookups answered from the cache. **/
+        long fHits = 0;
+        
+        /** Number of lookups not found in the cache. **/
+        long fMisses = 0;
+        
+        ResolutionCache (int maxSize) {
+            super(16, 0.75f, true);
+            fMaxSize = maxSize;
+        }
+        
+        /** Evicts entries until the cache is within its bounds. **/
+        void trim () {
+            int excess = size() - fMaxSize;
+            if (excess > 0) {
+                java.util.Iterator i = keySet().iterator();
+                while (excess-- > 0) {
+                    i.next();
+                    i.remove();
+                }
+            }
+        }
+        
+        protected boolean removeEldestEntry (Map.Entry eldest) {
+            return size() > fMaxSize;
+        }
+    }
 }
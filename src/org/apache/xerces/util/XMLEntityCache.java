@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.util;
+
+/**
+ * <p>A cache of the content of external entities. An instance of
+ * this interface may be registered on the parser by setting the
+ * property (http://apache.org/xml/properties/internal/entity-cache).
+ * Before opening a connection to the location of an external entity
+ * the entity manager asks the cache for the bytes of the entity,
+ * and entities which are read in their entirety are offered to the
+ * cache for storage.</p>
+ *
+ * <p>Entities are identified by their expanded system identifier and
+ * the encoding specified for them by the application, if any. Only
+ * entities which the entity manager opens itself are cached; input
+ * sources supplying a byte or character stream are never cached.</p>
+ *
+ * <p>A cache may be shared between several parsers, so implementations
+ * must be thread-safe. The arrays passed to and returned from a cache
+ * must not be modified.</p>
+ *
+ * @see XMLEntityCacheImpl
+ *
+ * @version $Id$
+ */
+public interface XMLEntityCache {
+
+    /**
+     * Returns the content of an entity or <code>null</code>
+     * if the entity is not in the cache.
+     *
+     * @param expandedSystemId the expanded system identifier of the entity
+     * @param encoding the encoding specified for the entity,
+     * or <code>null</code> if none was specified
+     *
+     * @return the bytes of the entity or <code>null</code>
+     */
+    public byte[] getEntity(String expandedSystemId, String encoding);
+
+    /**
+     * Offers the content of an entity to the cache, which
+     * may decide not to store it.
+     *
+     * @param expandedSystemId the expanded system identifier of the entity
+     * @param encoding the encoding specified for the entity,
+     * or <code>null</code> if none was specified
+     * @param content the bytes of the entity
+     */
+    public void putEntity(String expandedSystemId, String encoding, byte[] content);
+
+    /**
+     * Returns the size in bytes of the largest entity which
+     * the cache will store. The entity manager stops recording
+     * an entity once it exceeds this size.
+     *
+     * @return the maximum size of a cached entity
+     */
+    public int getMaxEntitySize();
+
+} // interface XMLEntityCache
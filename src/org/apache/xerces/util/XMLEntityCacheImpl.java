@@ -0,0 +1,361 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.xerces.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * <p>The default implementation of the external entity cache. Entities
+ * are kept in memory up to a limit on their total size, discarding the
+ * least recently used entity when the limit is exceeded. Optionally
+ * the cache may be backed by a directory in which every entity stored
+ * in the cache is also written, so that entities discarded from memory
+ * or cached by an earlier process can be read from disk instead of
+ * from their original location.</p>
+ *
+ * <p>The cache counts the number of lookups which found an entity
+ * in memory, found it on disk or did not find it at all.</p>
+ *
+ * @see XMLEntityCache
+ *
+ * @version $Id$
+ */
+public class XMLEntityCacheImpl implements XMLEntityCache {
+
+    //
+    // Constants
+    //
+
+    /** Default limit on the total size of the entities held in memory (16 MB). */
+    public static final long DEFAULT_MAX_SIZE = 16 * 1024 * 1024;
+
+    /** Default limit on the size of a single entity (1 MB). */
+    public static final int DEFAULT_MAX_ENTITY_SIZE = 1024 * 1024;
+
+    /** Suffix of the files in the disk store. */
+    private static final String FILE_SUFFIX = ".ent";
+
+    /** Hexadecimal digits used to name files in the disk store. */
+    private static final char[] HEX_DIGITS =
+        {'0', '1', '2', '3', '4', '5', '6', '7',
+         '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+    //
+    // Data
+    //
+
+    /** Entities held in memory, in least recently used order. */
+    private final LinkedHashMap fEntities = new LinkedHashMap(16, 0.75f, true);
+
+    /** Limit on the total size of the entities held in memory. */
+    private final long fMaxSize;
+
+    /** Limit on the size of a single entity. */
+    private int fMaxEntitySize = DEFAULT_MAX_ENTITY_SIZE;
+
+    /** Total size of the entities held in memory. */
+    private long fSize = 0;
+
+    /** Directory of the disk store or <code>null</code> if there isn't one. */
+    private final File fDirectory;
+
+    /** Number of lookups which found the entity in memory. */
+    private long fMemoryHits = 0;
+
+    /** Number of lookups which found the entity on disk. */
+    private long fDiskHits = 0;
+
+    /** Number of lookups which didn't find the entity. */
+    private long fMisses = 0;
+
+    //
+    // Constructors
+    //
+
+    /** Constructs an in-memory entity cache of the default size. */
+    public XMLEntityCacheImpl() {
+        this(DEFAULT_MAX_SIZE, null);
+    } // <init>()
+
+    /**
+     * Constructs an in-memory entity cache holding at
+     * most <code>maxSize</code> bytes of entities.
+     */
+    public XMLEntityCacheImpl(long maxSize) {
+        this(maxSize, null);
+    } // <init>(long)
+
+    /**
+     * Constructs an entity cache holding at most <code>maxSize</code>
+     * bytes of entities in memory and storing all entities in the
+     * given directory. The directory is created if it doesn't exist.
+     *
+     * @param maxSize the limit on the total size of the entities held in memory
+     * @param directory the directory of the disk store, or <code>null</code>
+     * for an in-memory cache
+     */
+    public XMLEntityCacheImpl(long maxSize, File directory) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException(Long.toString(maxSize));
+        }
+        fMaxSize = maxSize;
+        fDirectory = directory;
+        if (fDirectory != null && !fDirectory.isDirectory()) {
+            fDirectory.mkdirs();
+        }
+    } // <init>(long,File)
+
+    //
+    // XMLEntityCache methods
+    //
+
+    public byte[] getEntity(String expandedSystemId, String encoding) {
+        final String key = getKey(expandedSystemId, encoding);
+        synchronized (this) {
+            byte[] content = (byte[]) fEntities.get(key);
+            if (content != null) {
+                ++fMemoryHits;
+                return content;
+            }
+            if (fDirectory == null) {
+                ++fMisses;
+                return null;
+            }
+        }
+        byte[] content = readFromDisk(key);
+        synchronized (this) {
+            if (content != null) {
+                ++fDiskHits;
+                storeInMemory(key, content);
+            }
+            else {
+                ++fMisses;
+            }
+        }
+        return content;
+    } // getEntity(String,String):byte[]
+
+    public void putEntity(String expandedSystemId, String encoding, byte[] content) {
+        if (content.length > getMaxEntitySize()) {
+            return;
+        }
+        final String key = getKey(expandedSystemId, encoding);
+        synchronized (this) {
+            storeInMemory(key, content);
+        }
+        if (fDirectory != null) {
+            writeToDisk(key, content);
+        }
+    } // putEntity(String,String,byte[])
+
+    public synchronized int getMaxEntitySize() {
+        return fMaxEntitySize;
+    } // getMaxEntitySize():int
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Sets the size in bytes of the largest entity which will
+     * be stored in the cache.
+     */
+    public synchronized void setMaxEntitySize(int maxEntitySize) {
+        fMaxEntitySize = maxEntitySize;
+    } // setMaxEntitySize(int)
+
+    /**
+     * Discards the entities held in memory. Entities
+     * in the disk store are not affected.
+     */
+    public synchronized void clear() {
+        fEntities.clear();
+        fSize = 0;
+    } // clear()
+
+    /** Returns the number of entities held in memory. */
+    public synchronized int getEntityCount() {
+        return fEntities.size();
+    } // getEntityCount():int
+
+    /** Returns the total size in bytes of the entities held in memory. */
+    public synchronized long getSize() {
+        return fSize;
+    } // getSize():long
+
+    /** Returns the number of lookups which found the entity in memory. */
+    public synchronized long getMemoryHits() {
+        return fMemoryHits;
+    } // getMemoryHits():long
+
+    /** Returns the number of lookups which found the entity in the disk store. */
+    public synchronized long getDiskHits() {
+        return fDiskHits;
+    } // getDiskHits():long
+
+    /** Returns the number of lookups which didn't find the entity. */
+    public synchronized long getMisses() {
+        return fMisses;
+    } // getMisses():long
+
+    /** Resets the hit and miss counts to zero. */
+    public synchronized void resetStatistics() {
+        fMemoryHits = 0;
+        fDiskHits = 0;
+        fMisses = 0;
+    } // resetStatistics()
+
+    //
+    // Private methods
+    //
+
+    /** Returns the key of an entity. */
+    private static String getKey(String expandedSystemId, String encoding) {
+        return (encoding != null) ? expandedSystemId + ' ' + encoding : expandedSystemId;
+    } // getKey(String,String):String
+
+    /**
+     * Stores an entity in memory, evicting the least
+     * recently used entities to make room for it.
+     */
+    private void storeInMemory(String key, byte[] content) {
+        if (content.length > fMaxSize) {
+            return;
+        }
+        byte[] old = (byte[]) fEntities.put(key, content);
+        if (old != null) {
+            fSize -= old.length;
+        }
+        fSize += content.length;
+        Iterator entries = fEntities.values().iterator();
+        while (fSize > fMaxSize && entries.hasNext()) {
+            byte[] eldest = (byte[]) entries.next();
+            if (eldest == content) {
+                break;
+            }
+            entries.remove();
+            fSize -= eldest.length;
+        }
+    } // storeInMemory(String,byte[])
+
+    /** Returns the file of the disk store which holds an entity. */
+    private File getFile(String key) {
+        char[] name;
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            byte[] digest = md.digest(key.getBytes("UTF-8"));
+            name = new char[digest.length << 1];
+            for (int i = 0; i < digest.length; ++i) {
+                name[i << 1] = HEX_DIGITS[(digest[i] >> 4) & 0x0F];
+                name[(i << 1) + 1] = HEX_DIGITS[digest[i] & 0x0F];
+            }
+        }
+        catch (NoSuchAlgorithmException e) {
+            name = Integer.toHexString(key.hashCode()).toCharArray();
+        }
+        catch (IOException e) {
+            name = Integer.toHexString(key.hashCode()).toCharArray();
+        }
+        return new File(fDirectory, new String(name) + FILE_SUFFIX);
+    } // getFile(String):File
+
+    /**
+     * Reads an entity from the disk store. Returns <code>null</code>
+     * if the entity isn't stored or the file can't be read.
+     */
+    private byte[] readFromDisk(String key) {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            // The file may hold another entity with the same digest.
+            if (!key.equals(in.readUTF())) {
+                return null;
+            }
+            byte[] content = new byte[in.readInt()];
+            in.readFully(content);
+            return content;
+        }
+        catch (IOException e) {
+            return null;
+        }
+        finally {
+            if (in != null) {
+                try {
+                    in.close();
+                }
+                catch (IOException e) {}
+            }
+        }
+    } // readFromDisk(String):byte[]
+
+    /**
+     * Writes an entity to the disk store. The entity is written to
+     * a temporary file first so that readers never see a partial file.
+     */
+    private void writeToDisk(String key, byte[] content) {
+        File file = getFile(key);
+        File temp = null;
+        DataOutputStream out = null;
+        try {
+            temp = File.createTempFile("xerces", FILE_SUFFIX, fDirectory);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeUTF(key);
+            out.writeInt(content.length);
+            out.write(content);
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) {
+                file.delete();
+                if (!temp.renameTo(file)) {
+                    temp.delete();
+                }
+            }
+        }
+        catch (IOException e) {
+            // The entity remains cached in memory only.
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+        finally {
+            if (out != null) {
+                try {
+                    out.close();
+                }
+                catch (IOException e) {}
+                temp.delete();
+            }
+        }
+    } // writeToDisk(String,byte[])
+
+} // class XMLEntityCacheImpl
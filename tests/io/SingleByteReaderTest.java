@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.impl.io.SingleByteReader;
+
+/**
+ * Checks that the table-driven single byte reader decodes every byte of
+ * a few single byte encodings as <code>InputStreamReader</code> does,
+ * reading character by character and in blocks, and that multi-byte and
+ * stateful encodings get no table.
+ *
+ * @version $Id$
+ */
+public class SingleByteReaderTest extends TestCase {
+
+    /** Single byte encodings, by Java and IANA names. */
+    protected final static String[] SINGLE_BYTE = {
+        "Cp1252", "windows-1252", "ISO8859_2", "ISO-8859-2", "KOI8_R", "KOI8-R", "Cp037", "IBM037",
+    };
+
+    /** Multi-byte and stateful encodings, by Java and IANA names. */
+    protected final static String[] MULTI_BYTE = {
+        "UTF8", "UTF-8", "SJIS", "Shift_JIS", "Cp930", "x-IBM930", "UTF-16", "NoSuchEncoding",
+    };
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(SingleByteReaderTest.class);
+    }
+
+    public SingleByteReaderTest(String name) {
+        super(name);
+    }
+
+    public void testTables() throws Exception {
+        byte[] bytes = createBytes();
+        for (int i = 0; i < SINGLE_BYTE.length; i++) {
+            char[] table = SingleByteReader.getTable(SINGLE_BYTE[i]);
+            assertNotNull(SINGLE_BYTE[i], table);
+            assertEquals(SINGLE_BYTE[i], 256, table.length);
+            assertSame(SINGLE_BYTE[i], table, SingleByteReader.getTable(SINGLE_BYTE[i]));
+            String expected = new String(bytes, SINGLE_BYTE[i]);
+            for (int b = 0; b < 256; b++) {
+                assertEquals(SINGLE_BYTE[i] + " byte " + b, expected.charAt(b), table[b]);
+            }
+        }
+    }
+
+    public void testNoTables() throws Exception {
+        for (int i = 0; i < MULTI_BYTE.length; i++) {
+            assertNull(MULTI_BYTE[i], SingleByteReader.getTable(MULTI_BYTE[i]));
+            // the missing table is remembered too
+            assertNull(MULTI_BYTE[i], SingleByteReader.getTable(MULTI_BYTE[i]));
+        }
+    }
+
+    public void testCharByChar() throws Exception {
+        byte[] bytes = createBytes();
+        for (int i = 0; i < SINGLE_BYTE.length; i++) {
+            String expected = readAll(new InputStreamReader(new ByteArrayInputStream(bytes), SINGLE_BYTE[i]), 0);
+            assertEquals(SINGLE_BYTE[i], expected, readAll(createReader(bytes, SINGLE_BYTE[i], new byte[16]), 0));
+        }
+    }
+
+    public void testCharArray() throws Exception {
+        byte[] bytes = createBytes();
+        int[] blocks = { 1, 7, 16, 100, 256, 1000 };
+        for (int i = 0; i < SINGLE_BYTE.length; i++) {
+            String expected = readAll(new InputStreamReader(new ByteArrayInputStream(bytes), SINGLE_BYTE[i]), 0);
+            for (int j = 0; j < blocks.length; j++) {
+                // the buffer is smaller than some of the blocks
+                Reader reader = createReader(bytes, SINGLE_BYTE[i], new byte[64]);
+                assertEquals(SINGLE_BYTE[i] + " in blocks of " + blocks[j],
+                             expected, readAll(reader, blocks[j]));
+            }
+        }
+    }
+
+    public void testSkipAndReset() throws Exception {
+        byte[] bytes = createBytes();
+        Reader reader = createReader(bytes, "Cp1252", new byte[16]);
+        String expected = new String(bytes, "Cp1252");
+        assertEquals(10, reader.skip(10));
+        assertEquals(expected.charAt(10), reader.read());
+        assertTrue(reader.markSupported());
+        reader.mark(100);
+        char[] chars = new char[5];
+        assertEquals(5, reader.read(chars, 0, 5));
+        assertEquals(expected.substring(11, 16), new String(chars));
+        reader.reset();
+        assertEquals(expected.substring(11), readAll(reader, 3));
+    }
+
+    //
+    // Protected methods
+    //
+
+    /** Returns every byte value, followed by every byte value in reverse. */
+    protected static byte[] createBytes() {
+        byte[] bytes = new byte[512];
+        for (int i = 0; i < 256; i++) {
+            bytes[i] = (byte) i;
+            bytes[511 - i] = (byte) i;
+        }
+        return bytes;
+    } // createBytes():byte[]
+
+    protected static Reader createReader(byte[] bytes, String encoding, byte[] buffer) {
+        char[] table = SingleByteReader.getTable(encoding);
+        return new SingleByteReader(new ByteArrayInputStream(bytes), buffer, table);
+    } // createReader(byte[],String,byte[]):Reader
+
+    /**
+     * Reads a reader to the end, in blocks of the given size or
+     * character by character if the size is 0.
+     */
+    protected static String readAll(Reader reader, int block) throws Exception {
+        StringBuffer buffer = new StringBuffer();
+        if (block == 0) {
+            int c;
+            while ((c = reader.read()) != -1) {
+                buffer.append((char) c);
+            }
+        }
+        else {
+            char[] chars = new char[block + 2];
+            int count;
+            // read at an offset, to check the offset is honoured
+            while ((count = reader.read(chars, 1, block)) != -1) {
+                buffer.append(chars, 1, count);
+            }
+        }
+        reader.close();
+        return buffer.toString();
+    } // readAll(Reader,int):String
+
+} // class SingleByteReaderTest
@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package parsers;
+
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.impl.dtd.DTDGrammar;
+import org.apache.xerces.impl.dtd.XMLDTDLoader;
+import org.apache.xerces.impl.dtd.XMLElementDecl;
+import org.apache.xerces.impl.dtd.models.ContentModelValidator;
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.xni.QName;
+import org.apache.xerces.xni.parser.XMLInputSource;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Checks that the content models which DTD validators and loaders share
+ * between the grammars they build validate the same as content models
+ * built for a single grammar. The two DTDs used declare some elements
+ * the same way and others differently, including mixed content, elements
+ * with the same name and different content and elements with another
+ * name and the same content.
+ *
+ * @version $Id$
+ */
+public class ContentModelCacheTest extends TestCase {
+
+    protected final static String BALANCE_SYNTAX_TREES =
+        "http://apache.org/xml/features/validation/balance-syntax-trees";
+
+    /** Declarations shared by both DTDs. */
+    protected final static String SHARED =
+        "<!ELEMENT root ANY>\n" +
+        "<!ELEMENT a (b, c?)>\n" +
+        "<!ELEMENT m (#PCDATA | b | c)*>\n" +
+        "<!ELEMENT b EMPTY>\n" +
+        "<!ELEMENT c (#PCDATA)>\n";
+
+    /** The first DTD. */
+    protected final static String DTD1 = SHARED +
+        "<!ELEMENT d (b | c)+>\n" +
+        "<!ELEMENT e (b, c, b)>\n" +
+        "<!ELEMENT f (#PCDATA | b)*>\n" +
+        "<!ELEMENT h (b*)>\n" +
+        "<!ELEMENT k (b | c | m | a | d)>\n" +
+        "<!ELEMENT g (c, b?)>\n";
+
+    /** The second DTD. */
+    protected final static String DTD2 = SHARED +
+        "<!ELEMENT d (b, c)+>\n" +
+        "<!ELEMENT e (b, (c, b))>\n" +
+        "<!ELEMENT f (#PCDATA | c)*>\n" +
+        "<!ELEMENT h (b+)>\n" +
+        "<!ELEMENT k (b | c | m | a | e)>\n" +
+        "<!ELEMENT g (b, c?)>\n";
+
+    /** The elements with content models. */
+    protected final static String[] ELEMENTS = { "a", "m", "c", "d", "e", "f", "g", "h", "k" };
+
+    /** The names of the children of the sequences validated. */
+    protected final static String[] CHILDREN = { "b", "c", "d", "m", "x" };
+
+    /** Maximum length of the sequences of children validated. */
+    protected final static int MAX_CHILDREN = 3;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ContentModelCacheTest.class);
+    }
+
+    public ContentModelCacheTest(String name) {
+        super(name);
+    }
+
+    public void testLoader() throws Exception {
+        checkLoader(false);
+    }
+
+    public void testBalancedLoader() throws Exception {
+        checkLoader(true);
+    }
+
+    public void testValidator() throws Exception {
+        String document1 = createDocument(DTD1);
+        String document2 = createDocument(DTD2);
+        EventRecorder expected1 = parse(new SAXParser(), document1);
+        EventRecorder expected2 = parse(new SAXParser(), document2);
+        assertTrue(expected1.getEvents().toString().indexOf("error ") != -1);
+        assertFalse(expected1.getEvents().equals(expected2.getEvents()));
+
+        // the second document reuses the models of the first
+        SAXParser parser = new SAXParser();
+        for (int i = 0; i < 2; i++) {
+            EventRecorder.assertSameEvents("document 1", expected1, parse(parser, document1));
+            EventRecorder.assertSameEvents("document 2", expected2, parse(parser, document2));
+        }
+    }
+
+    //
+    // Protected methods
+    //
+
+    /**
+     * Loads both DTDs with one loader, and each with a loader of its
+     * own, and checks that the content models validate the same, and
+     * that the models of identical declarations are shared.
+     */
+    protected void checkLoader(boolean balanced) throws Exception {
+        XMLDTDLoader loader = createLoader(balanced);
+        DTDGrammar shared1 = load(loader, DTD1);
+        DTDGrammar shared2 = load(loader, DTD2);
+        DTDGrammar fresh1 = load(createLoader(balanced), DTD1);
+        DTDGrammar fresh2 = load(createLoader(balanced), DTD2);
+        for (int i = 0; i < ELEMENTS.length; i++) {
+            ContentModelValidator model1 = getContentModel(shared1, ELEMENTS[i]);
+            ContentModelValidator model2 = getContentModel(shared2, ELEMENTS[i]);
+            compare(ELEMENTS[i], getContentModel(fresh1, ELEMENTS[i]), model1);
+            compare(ELEMENTS[i], getContentModel(fresh2, ELEMENTS[i]), model2);
+            boolean same = SHARED.indexOf("<!ELEMENT " + ELEMENTS[i] + ' ') != -1;
+            assertEquals(ELEMENTS[i], same, model1 == model2);
+        }
+        // another name, the same content
+        assertSame(getContentModel(shared1, "a"), getContentModel(shared2, "g"));
+        assertNotSame(getContentModel(shared1, "g"), getContentModel(shared2, "g"));
+        // the same children in another tree
+        assertNotSame(getContentModel(shared1, "e"), getContentModel(shared2, "e"));
+    } // checkLoader(boolean)
+
+    /**
+     * Validates every sequence of children up to the maximum length
+     * with two content models and compares the results.
+     */
+    protected static void compare(String element, ContentModelValidator expected,
+                                  ContentModelValidator actual) {
+        assertNotNull(element, expected);
+        assertNotNull(element, actual);
+        QName[] children = new QName[MAX_CHILDREN];
+        int[] indexes = new int[MAX_CHILDREN];
+        for (int length = 0; length <= MAX_CHILDREN; length++) {
+            int count = 1;
+            for (int i = 0; i < length; i++) {
+                count *= CHILDREN.length;
+            }
+            for (int n = 0; n < count; n++) {
+                StringBuffer names = new StringBuffer(element).append(':');
+                for (int i = 0, rest = n; i < length; i++, rest /= CHILDREN.length) {
+                    indexes[i] = rest % CHILDREN.length;
+                    String name = CHILDREN[indexes[i]].intern();
+                    children[i] = new QName(null, name, name, null);
+                    names.append(' ').append(name);
+                }
+                assertEquals(names.toString(),
+                             expected.validate(children, 0, length),
+                             actual.validate(children, 0, length));
+            }
+        }
+    } // compare(String,ContentModelValidator,ContentModelValidator)
+
+    /** Returns the content model of an element. */
+    protected static ContentModelValidator getContentModel(DTDGrammar grammar, String element) {
+        XMLElementDecl elementDecl = new XMLElementDecl();
+        assertTrue(element, grammar.getElementDecl(grammar.getElementDeclIndex(element), elementDecl));
+        return elementDecl.contentModelValidator;
+    } // getContentModel(DTDGrammar,String):ContentModelValidator
+
+    /** Returns a DTD loader. */
+    protected static XMLDTDLoader createLoader(boolean balanced) {
+        XMLDTDLoader loader = new XMLDTDLoader();
+        loader.setFeature(BALANCE_SYNTAX_TREES, balanced);
+        return loader;
+    } // createLoader(boolean):XMLDTDLoader
+
+    /** Loads a DTD. */
+    protected static DTDGrammar load(XMLDTDLoader loader, String dtd) throws Exception {
+        return (DTDGrammar) loader.loadGrammar(
+                new XMLInputSource(null, "doc.dtd", null, new StringReader(dtd), null));
+    } // load(XMLDTDLoader,String):DTDGrammar
+
+    /**
+     * Returns a document with the given internal subset in which every
+     * element with a content model has a number of sequences of children.
+     */
+    protected static String createDocument(String dtd) {
+        StringBuffer buffer = new StringBuffer("<!DOCTYPE root [\n");
+        buffer.append(dtd).append("]>\n<root>\n");
+        String[] contents = {
+            "", "<b/>", "<c/>", "<b/><c/>", "<c/><b/>", "<b/><c/><b/>",
+            "text", "<b/>text<c/>", "<c/>text", "<b/><b/>",
+        };
+        for (int i = 0; i < ELEMENTS.length; i++) {
+            for (int j = 0; j < contents.length; j++) {
+                buffer.append('<').append(ELEMENTS[i]).append('>')
+                      .append(contents[j])
+                      .append("</").append(ELEMENTS[i]).append(">\n");
+            }
+        }
+        buffer.append("</root>\n");
+        return buffer.toString();
+    } // createDocument(String):String
+
+    /** Parses a document with validation and returns its events. */
+    protected static EventRecorder parse(SAXParser parser, String document) throws Exception {
+        EventRecorder recorder = new EventRecorder(true);
+        parser.setFeature("http://xml.org/sax/features/validation", true);
+        parser.setContentHandler(recorder);
+        parser.setErrorHandler(recorder);
+        try {
+            parser.parse(new InputSource(new StringReader(document)));
+        }
+        catch (SAXException e) {
+            fail(e.getMessage());
+        }
+        return recorder;
+    } // parse(SAXParser,String):EventRecorder
+
+} // class ContentModelCacheTest
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package parsers;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Describes a DOM node and its descendants as a string, one line per
+ * node with its type, namespace, name, value and attributes, so that
+ * two trees can be compared.
+ *
+ * @version $Id$
+ */
+public class DOMDescription {
+
+    /** Returns a description of a node and its descendants. */
+    public static String toString(Node node) {
+        StringBuffer buffer = new StringBuffer();
+        append(buffer, node, "");
+        return buffer.toString();
+    } // toString(Node):String
+
+    /** Appends a description of a node and its descendants. */
+    public static void append(StringBuffer buffer, Node node, String indent) {
+        buffer.append(indent).append(node.getNodeType()).append(" {")
+              .append(node.getNamespaceURI()).append('}').append(node.getNodeName())
+              .append(" '").append(node.getNodeValue()).append('\'');
+        if (node.getNodeType() == Node.ELEMENT_NODE) {
+            NamedNodeMap attributes = node.getAttributes();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Node attribute = attributes.item(i);
+                buffer.append(" {").append(attribute.getNamespaceURI()).append('}')
+                      .append(attribute.getNodeName()).append("='")
+                      .append(attribute.getNodeValue()).append('\'');
+            }
+        }
+        buffer.append('\n');
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            append(buffer, child, indent + ' ');
+        }
+    } // append(StringBuffer,Node,String)
+
+} // class DOMDescription
@@ -0,0 +1,331 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package parsers;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.parsers.DOMParser;
+import org.apache.xerces.parsers.DOMRecordHandler;
+import org.apache.xerces.parsers.DOMRecordParser;
+import org.apache.xerces.parsers.DOMRecordQueue;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Tests the record DOM parser and the record queue: the records must be
+ * the subtrees of a full DOM parse, whether they're handled directly,
+ * taken from a queue or processed by workers, and a worker which fails
+ * with an exception or an error, or is interrupted, must stop the parse
+ * instead of leaving the parser waiting for room in the queue.
+ *
+ * @version $Id$
+ */
+public class DOMRecordParserTest extends TestCase {
+
+    /** The namespace name of the records. */
+    protected final static String RECORD_URI = "urn:records";
+
+    /** Number of records of the test document. */
+    protected final static int RECORDS = 200;
+
+    /** The longest time a parse may take, in milliseconds. */
+    protected final static long TIMEOUT = 20000;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(DOMRecordParserTest.class);
+    }
+
+    public DOMRecordParserTest(String name) {
+        super(name);
+    }
+
+    public void testRecords() throws Exception {
+        List expected = parseRecords(createDocument(RECORDS));
+        DOMRecordParser parser = createParser();
+        RecordList records = new RecordList();
+        parser.setRecordHandler(records);
+        parser.parse(new InputSource(new StringReader(createDocument(RECORDS))));
+
+        assertNull(parser.getDocument());
+        assertEquals(RECORDS, parser.getRecordCount());
+        assertRecords(expected, records.fRecords);
+    }
+
+    public void testQueueTake() throws Exception {
+        List expected = parseRecords(createDocument(RECORDS));
+        final DOMRecordQueue queue = new DOMRecordQueue(3);
+        final List records = Collections.synchronizedList(new ArrayList());
+        Thread consumer = new Thread("consumer") {
+            public void run() {
+                try {
+                    Document record;
+                    while ((record = queue.take()) != null) {
+                        records.add(record);
+                    }
+                }
+                catch (InterruptedException e) {
+                    // fails below
+                }
+            }
+        };
+        consumer.start();
+        DOMRecordParser parser = createParser();
+        parser.setRecordHandler(queue);
+        parser.parse(new InputSource(new StringReader(createDocument(RECORDS))));
+        queue.close();
+        consumer.join(TIMEOUT);
+        assertFalse(consumer.isAlive());
+        assertEquals(0, queue.size());
+        assertRecords(expected, records);
+    }
+
+    public void testWorkers() throws Exception {
+        List expected = parseRecords(createDocument(RECORDS));
+        DOMRecordQueue queue = new DOMRecordQueue(4);
+        RecordList records = new RecordList();
+        queue.startWorkers(4, records);
+        DOMRecordParser parser = createParser();
+        parser.setRecordHandler(queue);
+        parser.parse(new InputSource(new StringReader(createDocument(RECORDS))));
+        queue.close();
+        // the workers may handle records out of order
+        assertEquals(RECORDS, records.fRecords.size());
+        List sorted = new ArrayList(records.fRecords);
+        Collections.sort(sorted, new java.util.Comparator() {
+            public int compare(Object o1, Object o2) {
+                return getId((Document) o1) - getId((Document) o2);
+            }
+        });
+        assertRecords(expected, sorted);
+    }
+
+    public void testWorkerException() throws Exception {
+        final RuntimeException exception = new IllegalStateException("record 10");
+        Throwable thrown = parseWithFailingWorker(new DOMRecordHandler() {
+            public void handleRecord(Document record) {
+                if (getId(record) == 10) {
+                    throw exception;
+                }
+            }
+        });
+        assertTrue(String.valueOf(thrown), thrown instanceof SAXException);
+        assertSame(exception, ((SAXException) thrown).getException());
+    }
+
+    public void testWorkerError() throws Exception {
+        final Error error = new Error("record 10");
+        Throwable thrown = parseWithFailingWorker(new DOMRecordHandler() {
+            public void handleRecord(Document record) {
+                if (getId(record) == 10) {
+                    throw error;
+                }
+            }
+        });
+        assertSame(error, thrown);
+    }
+
+    public void testInterruptedWorker() throws Exception {
+        DOMRecordQueue queue = new DOMRecordQueue(1);
+        queue.startWorkers(1, new RecordList());
+        // interrupt the worker once it waits for a record
+        Thread worker = findWorker();
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while (worker.getState() != Thread.State.WAITING && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        worker.interrupt();
+        worker.join(TIMEOUT);
+        assertFalse(worker.isAlive());
+
+        Throwable thrown = parse(queue);
+        assertTrue(String.valueOf(thrown), thrown instanceof SAXException);
+        assertTrue(String.valueOf(thrown),
+                   ((SAXException) thrown).getException() instanceof InterruptedException);
+        try {
+            queue.close();
+            fail("close");
+        }
+        catch (SAXException e) {
+            assertSame(((SAXException) thrown).getException(), e.getException());
+        }
+    }
+
+    //
+    // Protected methods
+    //
+
+    /**
+     * Parses with a single worker which fails on a record, and returns
+     * what the parse threw, after checking that close throws the same.
+     */
+    protected Throwable parseWithFailingWorker(DOMRecordHandler handler) throws Exception {
+        DOMRecordQueue queue = new DOMRecordQueue(1);
+        queue.startWorkers(1, handler);
+        Throwable thrown = parse(queue);
+        assertNotNull("parse completed", thrown);
+        Throwable closed = null;
+        try {
+            queue.close();
+        }
+        catch (Throwable e) {
+            closed = e;
+        }
+        assertNotNull("close", closed);
+        if (thrown instanceof SAXException) {
+            assertTrue(String.valueOf(closed), closed instanceof SAXException);
+            assertSame(((SAXException) thrown).getException(),
+                       ((SAXException) closed).getException());
+        }
+        else {
+            assertSame(thrown, closed);
+        }
+        return thrown;
+    } // parseWithFailingWorker(DOMRecordHandler):Throwable
+
+    /**
+     * Parses the test document into a queue on another thread, so that
+     * a parse which waits for good fails the test, and returns what the
+     * parse threw, or null.
+     */
+    protected Throwable parse(final DOMRecordQueue queue) throws Exception {
+        final Throwable[] thrown = new Throwable[1];
+        Thread thread = new Thread("parser") {
+            public void run() {
+                DOMRecordParser parser = createParser();
+                parser.setRecordHandler(queue);
+                try {
+                    parser.parse(new InputSource(new StringReader(createDocument(RECORDS))));
+                }
+                catch (Throwable e) {
+                    thrown[0] = e;
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        thread.join(TIMEOUT);
+        assertFalse("parser waiting", thread.isAlive());
+        return thrown[0];
+    } // parse(DOMRecordQueue):Throwable
+
+    /** Returns the live worker thread of a queue. */
+    protected static Thread findWorker() {
+        Thread[] threads = new Thread[Thread.activeCount() + 10];
+        int count = Thread.enumerate(threads);
+        for (int i = 0; i < count; i++) {
+            if (threads[i].getName().startsWith("DOMRecordQueue worker") && threads[i].isAlive()) {
+                return threads[i];
+            }
+        }
+        fail("no worker");
+        return null;
+    } // findWorker():Thread
+
+    /** Creates a record parser. */
+    protected static DOMRecordParser createParser() {
+        DOMRecordParser parser = new DOMRecordParser();
+        parser.setRecordElement(RECORD_URI, "record");
+        return parser;
+    } // createParser():DOMRecordParser
+
+    /** Parses a document and returns its outermost record elements. */
+    protected static List parseRecords(String document) throws Exception {
+        DOMParser parser = new DOMParser();
+        parser.parse(new InputSource(new StringReader(document)));
+        List records = new ArrayList();
+        NodeList elements = parser.getDocument().getElementsByTagNameNS(RECORD_URI, "record");
+        for (int i = 0; i < elements.getLength(); i++) {
+            Element element = (Element) elements.item(i);
+            if (element.getParentNode().getLocalName().equals("root")) {
+                records.add(element);
+            }
+        }
+        return records;
+    } // parseRecords(String):List
+
+    /** Checks that each record document holds the given element. */
+    protected static void assertRecords(List expected, List records) {
+        assertEquals("records", expected.size(), records.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Document record = (Document) records.get(i);
+            assertNull(record.getDoctype());
+            assertEquals(1, record.getChildNodes().getLength());
+            assertEquals("record " + i, DOMDescription.toString((Node) expected.get(i)),
+                         DOMDescription.toString(record.getDocumentElement()));
+        }
+    } // assertRecords(List,List)
+
+    /** Returns the id of a record. */
+    protected static int getId(Document record) {
+        return Integer.parseInt(record.getDocumentElement().getAttribute("id"));
+    } // getId(Document):int
+
+    /**
+     * Creates a document of records. Some records contain comments,
+     * processing instructions, CDATA sections, entity references and
+     * nested elements named record; between the records are elements of
+     * the same name in another namespace, which aren't records.
+     */
+    protected static String createDocument(int records) {
+        StringBuffer buffer = new StringBuffer();
+        buffer.append("<?xml version='1.0'?>\n");
+        buffer.append("<!DOCTYPE root [\n <!ENTITY e 'entity &amp; text'>\n]>\n");
+        buffer.append("<!-- before the root -->\n");
+        buffer.append("<root xmlns='urn:records' xmlns:p='urn:p'>\n");
+        for (int i = 0; i < records; i++) {
+            buffer.append(" <record id='").append(i).append("' p:kind='k").append(i % 3).append("'>");
+            buffer.append("<title>record ").append(i).append(" &e;</title>");
+            if (i % 5 == 0) {
+                buffer.append("<!-- comment ").append(i).append(" --><?pi ").append(i).append("?>");
+                buffer.append("<![CDATA[<record>]]><p:x><record nested='yes'/></p:x>");
+            }
+            buffer.append("</record>\n");
+            if (i % 7 == 0) {
+                buffer.append(" <record xmlns='urn:other' id='other'>not a record</record>\n");
+            }
+        }
+        buffer.append("</root>\n");
+        return buffer.toString();
+    } // createDocument(int):String
+
+    //
+    // Classes
+    //
+
+    /** Collects records. */
+    protected static class RecordList implements DOMRecordHandler {
+
+        /** The records. */
+        protected final List fRecords = Collections.synchronizedList(new ArrayList());
+
+        public void handleRecord(Document record) {
+            fRecords.add(record);
+        }
+
+    } // class RecordList
+
+} // class DOMRecordParserTest
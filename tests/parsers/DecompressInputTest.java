@@ -0,0 +1,306 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package parsers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.parsers.AbstractXMLDocumentParser;
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.parsers.XIncludeAwareParserConfiguration;
+import org.apache.xerces.parsers.XMLPushParser;
+import org.apache.xerces.xni.Augmentations;
+import org.apache.xerces.xni.QName;
+import org.apache.xerces.xni.XMLAttributes;
+import org.apache.xerces.xni.XMLString;
+import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.parser.XMLErrorHandler;
+import org.apache.xerces.xni.parser.XMLInputSource;
+import org.apache.xerces.xni.parser.XMLParseException;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Parses gzip and zlib compressed documents, with a compressed external
+ * DTD subset and external entity referred to by relative system
+ * identifiers, with the decompress-input feature and checks that the
+ * handlers receive the same events at the same locator positions as for
+ * the uncompressed documents. Truncated compressed documents must fail
+ * with an I/O error, and the push parser, whose bytes can't be
+ * compressed, must turn the feature off.
+ *
+ * @version $Id$
+ */
+public class DecompressInputTest extends TestCase {
+
+    protected final static String DECOMPRESS_INPUT =
+        "http://apache.org/xml/features/decompress-input";
+
+    protected final static String LEXICAL_HANDLER =
+        "http://xml.org/sax/properties/lexical-handler";
+
+    /** The external DTD subset. */
+    protected final static String DTD =
+        "<?xml version='1.0' encoding='UTF-8'?>\n" +
+        "<!ENTITY ext SYSTEM 'ent.xml'>\n" +
+        "<!ENTITY int 'internal &#233;'>\n" +
+        "<!ATTLIST record status CDATA 'new' xmlns:q CDATA #FIXED 'urn:q'>\n";
+
+    /** The external parsed entity. */
+    protected final static String ENTITY =
+        "<?xml encoding='UTF-8'?><extra>external \u00e9 &int;</extra>";
+
+    /** Number of records of the documents. */
+    protected final static int RECORDS = 300;
+
+    /** Compressions. */
+    protected final static int NONE = 0;
+    protected final static int GZIP = 1;
+    protected final static int ZLIB = 2;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(DecompressInputTest.class);
+    }
+
+    public DecompressInputTest(String name) {
+        super(name);
+    }
+
+    public void testGzip() throws Exception {
+        checkCompressed("UTF-8", GZIP);
+    }
+
+    public void testZlib() throws Exception {
+        checkCompressed("UTF-8", ZLIB);
+    }
+
+    public void testGzipUTF16() throws Exception {
+        checkCompressed("UTF-16", GZIP);
+    }
+
+    public void testZlibISO88591() throws Exception {
+        checkCompressed("ISO-8859-1", ZLIB);
+    }
+
+    public void testFeatureOff() throws Exception {
+        File file = writeEntities("UTF-8", GZIP);
+        EventRecorder recorder = new EventRecorder();
+        parse(new SAXParser(), new InputSource(file.toURI().toString()), recorder);
+        String last = (String) recorder.getEvents().get(recorder.getEvents().size() - 1);
+        assertTrue(last, last.startsWith("fatalError"));
+    }
+
+    public void testTruncated() throws Exception {
+        byte[] document = createDocument("UTF-8", 20).getBytes("UTF-8");
+        checkTruncated(writeEntities("UTF-8", GZIP), compress(document, GZIP));
+        checkTruncated(writeEntities("UTF-8", ZLIB), compress(document, ZLIB));
+    }
+
+    public void testPushParser() throws Exception {
+        String document = ParallelSAXParserTest.createDocument("UTF-8", "", 20, null);
+        byte[] bytes = document.getBytes("UTF-8");
+        String expected = push(bytes, false);
+        assertTrue(expected, expected.indexOf("<record>") != -1);
+        // the pushed bytes aren't decompressed
+        assertEquals(expected, push(bytes, true));
+        try {
+            push(compress(bytes, GZIP), true);
+            fail("decompressed pushed bytes");
+        }
+        catch (XNIException e) {
+            // fatal error: the bytes aren't XML
+        }
+    }
+
+    //
+    // Protected methods
+    //
+
+    /**
+     * Parses a document and its entities compressed, from its system
+     * identifier and from a byte stream, and uncompressed.
+     */
+    protected void checkCompressed(String encoding, int compression) throws Exception {
+        File plain = writeEntities(encoding, NONE);
+        File compressed = writeEntities(encoding, compression);
+
+        EventRecorder expected = new EventRecorder(true);
+        parse(new SAXParser(), new InputSource(plain.toURI().toString()), expected);
+        assertTrue(expected.getEvents().toString(),
+                   expected.getEvents().toString().indexOf("startEntity ext") != -1);
+        assertTrue(last(expected), last(expected).startsWith("endDocument"));
+
+        EventRecorder actual = new EventRecorder(true);
+        parse(createParser(), new InputSource(compressed.toURI().toString()), actual);
+        EventRecorder.assertSameEvents(compressed.getPath(), expected, actual);
+
+        // a byte stream; the DTD resolves against the system identifier
+        InputSource source = new InputSource(compressed.toURI().toString());
+        source.setByteStream(new ByteArrayInputStream(
+                compress(createDocument(encoding, RECORDS).getBytes(encoding), compression)));
+        actual = new EventRecorder(true);
+        parse(createParser(), source, actual);
+        EventRecorder.assertSameEvents(compressed.getPath() + " stream", expected, actual);
+    } // checkCompressed(String,int)
+
+    /**
+     * Checks that every truncation of a compressed document, after its
+     * first two bytes, fails with an I/O error rather than a premature
+     * end of file.
+     */
+    protected void checkTruncated(File file, byte[] compressed) throws Exception {
+        for (int length = 2; length < compressed.length; length++) {
+            InputSource source = new InputSource(file.toURI().toString());
+            source.setByteStream(new ByteArrayInputStream(compressed, 0, length));
+            EventRecorder recorder = new EventRecorder();
+            try {
+                parse(createParser(), source, recorder);
+                fail(length + " bytes: " + last(recorder));
+            }
+            catch (IOException e) {
+                assertEquals(length + " bytes", "The compressed entity is truncated.", e.getMessage());
+                assertTrue(e.getCause() instanceof EOFException);
+                assertFalse(recorder.getEvents().contains("endDocument"));
+            }
+        }
+    } // checkTruncated(File,byte[])
+
+    /** Returns a parser which decompresses its input. */
+    protected static SAXParser createParser() throws SAXException {
+        SAXParser parser = new SAXParser();
+        parser.setFeature(DECOMPRESS_INPUT, true);
+        return parser;
+    } // createParser():SAXParser
+
+    /** Parses a document and records its events. */
+    protected static void parse(SAXParser parser, InputSource source,
+                                EventRecorder recorder) throws Exception {
+        parser.setContentHandler(recorder);
+        parser.setDTDHandler(recorder);
+        parser.setErrorHandler(recorder);
+        parser.setProperty(LEXICAL_HANDLER, recorder);
+        try {
+            parser.parse(source);
+        }
+        catch (org.xml.sax.SAXParseException e) {
+            // recorded by the error handler
+        }
+    } // parse(SAXParser,InputSource,EventRecorder)
+
+    /**
+     * Pushes a document to a push parser and returns its start elements
+     * and characters.
+     */
+    protected static String push(byte[] bytes, boolean decompress) throws Exception {
+        XIncludeAwareParserConfiguration config = new XIncludeAwareParserConfiguration();
+        config.setFeature(DECOMPRESS_INPUT, decompress);
+        config.setErrorHandler(new XMLErrorHandler() {
+            public void warning(String domain, String key, XMLParseException e) {}
+            public void error(String domain, String key, XMLParseException e) {}
+            public void fatalError(String domain, String key, XMLParseException e) {
+                throw e;
+            }
+        });
+        final StringBuffer buffer = new StringBuffer();
+        new AbstractXMLDocumentParser(config) {
+            public void startElement(QName element, XMLAttributes attributes, Augmentations augs) {
+                buffer.append('<').append(element.rawname).append('>');
+            }
+            public void characters(XMLString text, Augmentations augs) {
+                buffer.append(text.ch, text.offset, text.length);
+            }
+        };
+        XMLPushParser parser = new XMLPushParser(config);
+        parser.setInputSource(new XMLInputSource(null, "pushed.xml", null));
+        for (int offset = 0; offset < bytes.length; offset += 100) {
+            parser.feed(bytes, offset, Math.min(100, bytes.length - offset));
+        }
+        parser.endOfInput();
+        assertFalse(config.getFeature(DECOMPRESS_INPUT));
+        return buffer.toString();
+    } // push(byte[],boolean):String
+
+    /** Returns the last event of a recorder. */
+    protected static String last(EventRecorder recorder) {
+        return (String) recorder.getEvents().get(recorder.getEvents().size() - 1);
+    } // last(EventRecorder):String
+
+    /**
+     * Creates a document of records with an external DTD subset and a
+     * reference to an external entity.
+     */
+    protected static String createDocument(String encoding, int records) {
+        String document = ParallelSAXParserTest.createDocument(encoding,
+                "<!DOCTYPE root SYSTEM 'doc.dtd'>\n", records, null);
+        int root = document.indexOf("<root");
+        return document.substring(0, root)
+               + document.substring(root).replaceFirst("\r\n", "&ext;&int;\r\n");
+    } // createDocument(String,int):String
+
+    /**
+     * Writes a document, its DTD and its external entity to a new
+     * temporary directory, compressed, and returns the document file.
+     */
+    protected static File writeEntities(String encoding, int compression) throws IOException {
+        File directory = File.createTempFile("decompress", "");
+        directory.delete();
+        directory.mkdir();
+        directory.deleteOnExit();
+        write(new File(directory, "doc.dtd"), compress(DTD.getBytes("UTF-8"), compression));
+        write(new File(directory, "ent.xml"), compress(ENTITY.getBytes("UTF-8"), compression));
+        File document = new File(directory, "doc.xml");
+        write(document, compress(createDocument(encoding, RECORDS).getBytes(encoding), compression));
+        return document;
+    } // writeEntities(String,int):File
+
+    /** Writes bytes to a temporary file. */
+    protected static void write(File file, byte[] bytes) throws IOException {
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        }
+        finally {
+            out.close();
+        }
+    } // write(File,byte[])
+
+    /** Compresses bytes. */
+    protected static byte[] compress(byte[] bytes, int compression) throws IOException {
+        if (compression == NONE) {
+            return bytes;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStream stream = compression == GZIP
+                            ? (OutputStream) new GZIPOutputStream(out)
+                            : new DeflaterOutputStream(out);
+        stream.write(bytes);
+        stream.close();
+        return out.toByteArray();
+    } // compress(byte[],int):byte[]
+
+} // class DecompressInputTest
@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package parsers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.ext.Attributes2;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Records the SAX events of a parse as strings, so that the events of
+ * two parses can be compared. Adjacent character events are recorded as
+ * one, since parsers may split character data differently. Unless the
+ * positions are left out, each other event is recorded with the line and
+ * column number of the locator.
+ *
+ * @version $Id$
+ */
+public class EventRecorder extends DefaultHandler implements LexicalHandler {
+
+    //
+    // Data
+    //
+
+    /** The recorded events. */
+    protected final List fEvents = new ArrayList();
+
+    /** True if the locator positions are recorded. */
+    protected final boolean fPositions;
+
+    /** The locator. */
+    protected Locator fLocator;
+
+    /** Character data not recorded yet. */
+    protected final StringBuffer fCharacters = new StringBuffer();
+
+    /** The kind of character data not recorded yet. */
+    protected String fCharactersEvent;
+
+    //
+    // Constructors
+    //
+
+    /** Constructs a recorder which records positions. */
+    public EventRecorder() {
+        this(true);
+    } // <init>()
+
+    /** Constructs a recorder. */
+    public EventRecorder(boolean positions) {
+        fPositions = positions;
+    } // <init>(boolean)
+
+    //
+    // Public methods
+    //
+
+    /** Returns the recorded events. */
+    public List getEvents() {
+        flushCharacters();
+        return fEvents;
+    } // getEvents():List
+
+    /** Clears the recorded events. */
+    public void clear() {
+        fEvents.clear();
+        fCharacters.setLength(0);
+        fCharactersEvent = null;
+        fLocator = null;
+    } // clear()
+
+    /**
+     * Fails if the events of two recorders differ, reporting the first
+     * difference.
+     */
+    public static void assertSameEvents(String message, EventRecorder expected,
+                                        EventRecorder actual) {
+        List e = expected.getEvents();
+        List a = actual.getEvents();
+        int length = Math.min(e.size(), a.size());
+        for (int i = 0; i < length; i++) {
+            Assert.assertEquals(message + ": event " + i, e.get(i), a.get(i));
+        }
+        Assert.assertEquals(message + ": number of events", e.size(), a.size());
+    } // assertSameEvents(String,EventRecorder,EventRecorder)
+
+    //
+    // ContentHandler methods
+    //
+
+    public void setDocumentLocator(Locator locator) {
+        fLocator = locator;
+    }
+
+    public void startDocument() {
+        record("startDocument");
+    }
+
+    public void endDocument() {
+        record("endDocument");
+    }
+
+    public void startPrefixMapping(String prefix, String uri) {
+        record("startPrefixMapping " + prefix + ' ' + uri);
+    }
+
+    public void endPrefixMapping(String prefix) {
+        record("endPrefixMapping " + prefix);
+    }
+
+    public void startElement(String uri, String localName, String qName,
+                             Attributes attributes) {
+        StringBuffer event = new StringBuffer();
+        event.append("startElement {").append(uri).append('}').append(localName)
+             .append(' ').append(qName);
+        for (int i = 0; i < attributes.getLength(); i++) {
+            String attrURI = attributes.getURI(i);
+            String attrLocalName = attributes.getLocalName(i);
+            String attrQName = attributes.getQName(i);
+            event.append(" [{").append(attrURI).append('}').append(attrLocalName)
+                 .append(' ').append(attrQName)
+                 .append(' ').append(attributes.getType(i))
+                 .append(" '").append(attributes.getValue(i)).append('\'');
+            // lookups by name
+            event.append(" index=").append(attributes.getIndex(attrQName));
+            if (attrLocalName != null && attrLocalName.length() != 0) {
+                event.append(',').append(attributes.getIndex(attrURI, attrLocalName))
+                     .append(" value=").append(attributes.getValue(attrURI, attrLocalName));
+            }
+            event.append(" type=").append(attributes.getType(attrQName));
+            if (attributes instanceof Attributes2) {
+                Attributes2 attributes2 = (Attributes2) attributes;
+                event.append(" declared=").append(attributes2.isDeclared(i))
+                     .append(',').append(attributes2.isDeclared(attrQName))
+                     .append(" specified=").append(attributes2.isSpecified(i))
+                     .append(',').append(attributes2.isSpecified(attrQName));
+            }
+            event.append(']');
+        }
+        record(event.toString());
+    }
+
+    public void endElement(String uri, String localName, String qName) {
+        record("endElement {" + uri + '}' + localName + ' ' + qName);
+    }
+
+    public void characters(char[] ch, int start, int length) {
+        characters("characters", ch, start, length);
+    }
+
+    public void ignorableWhitespace(char[] ch, int start, int length) {
+        characters("ignorableWhitespace", ch, start, length);
+    }
+
+    public void processingInstruction(String target, String data) {
+        record("processingInstruction " + target + ' ' + data);
+    }
+
+    public void skippedEntity(String name) {
+        record("skippedEntity " + name);
+    }
+
+    //
+    // LexicalHandler methods
+    //
+
+    public void startDTD(String name, String publicId, String systemId) {
+        record("startDTD " + name + ' ' + publicId + ' ' + systemId);
+    }
+
+    public void endDTD() {
+        record("endDTD");
+    }
+
+    public void startEntity(String name) {
+        record("startEntity " + name);
+    }
+
+    public void endEntity(String name) {
+        record("endEntity " + name);
+    }
+
+    public void startCDATA() {
+        record("startCDATA");
+    }
+
+    public void endCDATA() {
+        record("endCDATA");
+    }
+
+    public void comment(char[] ch, int start, int length) {
+        record("comment " + new String(ch, start, length));
+    }
+
+    //
+    // DTDHandler methods
+    //
+
+    public void notationDecl(String name, String publicId, String systemId) {
+        record("notationDecl " + name + ' ' + publicId + ' ' + systemId);
+    }
+
+    public void unparsedEntityDecl(String name, String publicId,
+                                   String systemId, String notationName) {
+        record("unparsedEntityDecl " + name + ' ' + publicId + ' ' + systemId
+               + ' ' + notationName);
+    }
+
+    //
+    // ErrorHandler methods
+    //
+
+    public void warning(SAXParseException exception) {
+        record("warning " + toString(exception));
+    }
+
+    public void error(SAXParseException exception) {
+        record("error " + toString(exception));
+    }
+
+    public void fatalError(SAXParseException exception) throws SAXException {
+        record("fatalError " + toString(exception));
+        throw exception;
+    }
+
+    //
+    // Protected methods
+    //
+
+    /** Records an event. */
+    protected void record(String event) {
+        flushCharacters();
+        if (fPositions && fLocator != null) {
+            event += " @" + fLocator.getLineNumber() + ':' + fLocator.getColumnNumber();
+        }
+        fEvents.add(event);
+    } // record(String)
+
+    /** Returns the position and message of an exception. */
+    protected static String toString(SAXParseException exception) {
+        return exception.getLineNumber() + ":" + exception.getColumnNumber()
+            + ' ' + exception.getMessage();
+    } // toString(SAXParseException):String
+
+    //
+    // Private methods
+    //
+
+    /** Collects character data. */
+    private void characters(String event, char[] ch, int start, int length) {
+        if (fCharactersEvent != null && !fCharactersEvent.equals(event)) {
+            flushCharacters();
+        }
+        fCharactersEvent = event;
+        fCharacters.append(ch, start, length);
+    } // characters(String,char[],int,int)
+
+    /** Records the collected character data. */
+    private void flushCharacters() {
+        if (fCharactersEvent != null) {
+            fEvents.add(fCharactersEvent + ' ' + fCharacters);
+            fCharacters.setLength(0);
+            fCharactersEvent = null;
+        }
+    } // flushCharacters()
+
+} // class EventRecorder
@@ -0,0 +1,352 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package parsers;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.Hashtable;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.parsers.XMLGrammarPreparser;
+import org.apache.xerces.util.SymbolTable;
+import org.apache.xerces.util.XMLGrammarPoolImpl;
+import org.apache.xerces.xni.grammars.XMLGrammarDescription;
+import org.apache.xerces.xni.parser.XMLInputSource;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+
+/**
+ * Parses documents with a grammar pool holding schema and DTD grammars,
+ * with the scanner/grammar-names feature on and off, and checks that the
+ * handlers receive the same events, that every name reported is the
+ * symbol of the symbol table, and that the names declared in the pool
+ * are no longer looked up in the symbol table, also after the pool
+ * changed between two documents.
+ *
+ * @version $Id$
+ */
+public class GrammarNamesTest extends TestCase {
+
+    protected final static String GRAMMAR_NAMES =
+        "http://apache.org/xml/features/scanner/grammar-names";
+
+    protected final static String LEXICAL_HANDLER =
+        "http://xml.org/sax/properties/lexical-handler";
+
+    /** A schema of orders, with local and referenced elements. */
+    protected final static String ORDERS_SCHEMA =
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'\n" +
+        "           xmlns:o='urn:orders' targetNamespace='urn:orders'\n" +
+        "           elementFormDefault='qualified'>\n" +
+        " <xs:element name='orders'>\n" +
+        "  <xs:complexType>\n" +
+        "   <xs:sequence>\n" +
+        "    <xs:element name='order' maxOccurs='unbounded'>\n" +
+        "     <xs:complexType>\n" +
+        "      <xs:sequence>\n" +
+        "       <xs:element name='item' maxOccurs='unbounded'>\n" +
+        "        <xs:complexType>\n" +
+        "         <xs:simpleContent>\n" +
+        "          <xs:extension base='xs:string'>\n" +
+        "           <xs:attribute name='sku' type='xs:token'/>\n" +
+        "           <xs:attribute name='quantity' type='xs:int' default='1'/>\n" +
+        "          </xs:extension>\n" +
+        "         </xs:simpleContent>\n" +
+        "        </xs:complexType>\n" +
+        "       </xs:element>\n" +
+        "       <xs:element ref='o:note' minOccurs='0'/>\n" +
+        "      </xs:sequence>\n" +
+        "      <xs:attribute name='id' type='xs:ID' use='required'/>\n" +
+        "      <xs:attribute ref='o:status'/>\n" +
+        "     </xs:complexType>\n" +
+        "    </xs:element>\n" +
+        "   </xs:sequence>\n" +
+        "  </xs:complexType>\n" +
+        " </xs:element>\n" +
+        " <xs:element name='note' type='xs:string'/>\n" +
+        " <xs:attribute name='status' type='xs:token'/>\n" +
+        "</xs:schema>\n";
+
+    /** A schema added to the pool later. */
+    protected final static String EXTRA_SCHEMA =
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'\n" +
+        "           targetNamespace='urn:extra'>\n" +
+        " <xs:element name='extra'>\n" +
+        "  <xs:complexType>\n" +
+        "   <xs:attribute name='kind' type='xs:token'/>\n" +
+        "  </xs:complexType>\n" +
+        " </xs:element>\n" +
+        "</xs:schema>\n";
+
+    /** A DTD with prefixed names. */
+    protected final static String DTD =
+        "<!ELEMENT catalog (entry*)>\n" +
+        "<!ATTLIST catalog xmlns:c CDATA #FIXED 'urn:c'>\n" +
+        "<!ELEMENT entry (#PCDATA)>\n" +
+        "<!ATTLIST entry key CDATA #REQUIRED c:flag CDATA 'no'>\n";
+
+    /** A document of the orders schema, with an invalid order. */
+    protected final static String ORDERS =
+        "<?xml version='1.0'?>\n" +
+        "<orders xmlns='urn:orders' xmlns:o='urn:orders' xmlns:x='urn:x'>\n" +
+        " <order id='o1' o:status='open'><item sku='a'>A</item><note>n</note></order>\n" +
+        " <o:order id='o2'><o:item sku='b' quantity='2'>B</o:item></o:order>\n" +
+        " <order id='o3' x:undeclared='u'><item>C</item><unknown/></order>\n" +
+        "</orders>\n";
+
+    /** A document of the extra schema. */
+    protected final static String EXTRA =
+        "<?xml version='1.0'?>\n" +
+        "<e:extra xmlns:e='urn:extra' kind='k'/>\n";
+
+    /** A document of the DTD, with an invalid entry. */
+    protected final static String CATALOG =
+        "<?xml version='1.0'?>\n" +
+        "<!DOCTYPE catalog SYSTEM 'catalog.dtd'>\n" +
+        "<catalog>\n" +
+        " <entry key='1'>one</entry>\n" +
+        " <entry key='2' c:flag='yes'>two</entry>\n" +
+        " <entry>three</entry>\n" +
+        "</catalog>\n";
+
+    /** The DTD file. */
+    protected File fDTD;
+
+    /** The grammar pool. */
+    protected XMLGrammarPoolImpl fGrammarPool;
+
+    /** The preparser of the grammar pool. */
+    protected XMLGrammarPreparser fPreparser;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(GrammarNamesTest.class);
+    }
+
+    public GrammarNamesTest(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        File directory = File.createTempFile("grammarnames", "");
+        directory.delete();
+        directory.mkdir();
+        directory.deleteOnExit();
+        fDTD = new File(directory, "catalog.dtd");
+        fDTD.deleteOnExit();
+        OutputStream out = new FileOutputStream(fDTD);
+        try {
+            out.write(DTD.getBytes("UTF-8"));
+        }
+        finally {
+            out.close();
+        }
+
+        fGrammarPool = new XMLGrammarPoolImpl();
+        fPreparser = new XMLGrammarPreparser();
+        fPreparser.registerPreparser(XMLGrammarDescription.XML_SCHEMA, null);
+        fPreparser.registerPreparser(XMLGrammarDescription.XML_DTD, null);
+        fPreparser.setGrammarPool(fGrammarPool);
+        preparse(XMLGrammarDescription.XML_SCHEMA, "orders.xsd", ORDERS_SCHEMA);
+        fPreparser.preparseGrammar(XMLGrammarDescription.XML_DTD,
+                new XMLInputSource(null, fDTD.toURI().toString(), null));
+    }
+
+    public void testSchema() throws Exception {
+        String[] declared = { "orders", "order", "item", "note", "sku", "quantity", "id", "status" };
+        checkEvents(ORDERS, declared);
+    }
+
+    public void testDTD() throws Exception {
+        String[] declared = { "catalog", "entry", "key", "c:flag", "c", "flag" };
+        checkEvents(CATALOG, declared);
+    }
+
+    public void testUndeclared() throws Exception {
+        CountingSymbolTable symbolTable = new CountingSymbolTable();
+        parse(createParser(symbolTable, true), ORDERS);
+        assertTrue(symbolTable.isLookedUp("unknown"));
+        assertTrue(symbolTable.isLookedUp("undeclared"));
+        // prefixed raw names aren't declared in schemas
+        assertTrue(symbolTable.isLookedUp("o:order"));
+    }
+
+    public void testPoolChanged() throws Exception {
+        String[] declared = { "extra", "kind" };
+        CountingSymbolTable symbolTable = new CountingSymbolTable();
+        SAXParser parser = createParser(symbolTable, true);
+        parse(parser, EXTRA);
+        assertLookedUp(symbolTable, declared, true);
+
+        preparse(XMLGrammarDescription.XML_SCHEMA, "extra.xsd", EXTRA_SCHEMA);
+        symbolTable.clear();
+        EventRecorder after = parse(parser, EXTRA);
+        // the names of the new grammar are known now
+        assertLookedUp(symbolTable, declared, false);
+        EventRecorder expected = parse(createParser(new CountingSymbolTable(), false), EXTRA);
+        EventRecorder.assertSameEvents("extra", expected, after);
+
+        // the names of the orders schema are still known
+        symbolTable.clear();
+        parse(parser, ORDERS);
+        assertLookedUp(symbolTable, new String[] { "orders", "order", "item" }, false);
+    }
+
+    public void testSymbolTableChanged() throws Exception {
+        String[] declared = { "orders", "order", "item" };
+        CountingSymbolTable symbolTable = new CountingSymbolTable();
+        SAXParser parser = createParser(symbolTable, true);
+        parse(parser, ORDERS);
+        assertLookedUp(symbolTable, declared, false);
+
+        // a table of the names in front of the other symbol table
+        CountingSymbolTable other = new CountingSymbolTable();
+        symbolTable.clear();
+        parser.setProperty("http://apache.org/xml/properties/internal/symbol-table", other);
+        EventRecorder actual = parse(parser, ORDERS);
+        assertLookedUp(other, declared, false);
+        assertFalse(symbolTable.isLookedUp("unknown"));
+        EventRecorder expected = parse(createParser(new CountingSymbolTable(), false), ORDERS);
+        EventRecorder.assertSameEvents("orders", expected, actual);
+    }
+
+    //
+    // Protected methods
+    //
+
+    /**
+     * Parses a document with and without the feature, compares the
+     * events and checks which of the declared names are looked up in
+     * the symbol table.
+     */
+    protected void checkEvents(String document, String[] declared) throws Exception {
+        CountingSymbolTable symbolTable = new CountingSymbolTable();
+        EventRecorder expected = parse(createParser(symbolTable, false), document);
+        assertTrue(expected.getEvents().toString(),
+                   expected.getEvents().toString().indexOf("error") != -1);
+        assertLookedUp(symbolTable, declared, true);
+
+        symbolTable = new CountingSymbolTable();
+        SAXParser parser = createParser(symbolTable, true);
+        EventRecorder actual = parse(parser, document);
+        EventRecorder.assertSameEvents("grammar names", expected, actual);
+        assertLookedUp(symbolTable, declared, false);
+
+        // the table of the names is reused
+        symbolTable.clear();
+        actual = parse(parser, document);
+        EventRecorder.assertSameEvents("reused", expected, actual);
+        assertLookedUp(symbolTable, declared, false);
+    } // checkEvents(String,String[])
+
+    /** Checks whether names have been looked up in a symbol table. */
+    protected static void assertLookedUp(CountingSymbolTable symbolTable,
+                                         String[] names, boolean lookedUp) {
+        for (int i = 0; i < names.length; i++) {
+            assertEquals(names[i], lookedUp, symbolTable.isLookedUp(names[i]));
+        }
+    } // assertLookedUp(CountingSymbolTable,String[],boolean)
+
+    /** Adds a grammar to the pool. */
+    protected void preparse(String type, String systemId, String grammar) throws Exception {
+        fPreparser.preparseGrammar(type,
+                new XMLInputSource(null, systemId, null, new StringReader(grammar), null));
+    } // preparse(String,String,String)
+
+    /** Returns a validating parser using the grammar pool. */
+    protected SAXParser createParser(SymbolTable symbolTable, boolean grammarNames)
+        throws Exception {
+        SAXParser parser = new SAXParser(symbolTable, fGrammarPool);
+        parser.setFeature("http://xml.org/sax/features/validation", true);
+        parser.setFeature("http://apache.org/xml/features/validation/schema", true);
+        parser.setFeature("http://apache.org/xml/features/validation/dynamic", true);
+        parser.setFeature(GRAMMAR_NAMES, grammarNames);
+        return parser;
+    } // createParser(SymbolTable,boolean):SAXParser
+
+    /**
+     * Parses a document, records its events and checks that every name
+     * is a symbol.
+     */
+    protected EventRecorder parse(SAXParser parser, String document) throws Exception {
+        EventRecorder recorder = new EventRecorder(true) {
+            public void startElement(String uri, String localName, String qName,
+                                     Attributes attributes) {
+                assertSymbols(uri, localName, qName);
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    assertSymbols(attributes.getURI(i), attributes.getLocalName(i),
+                                  attributes.getQName(i));
+                }
+                super.startElement(uri, localName, qName, attributes);
+            }
+            public void endElement(String uri, String localName, String qName) {
+                assertSymbols(uri, localName, qName);
+                super.endElement(uri, localName, qName);
+            }
+        };
+        parser.setContentHandler(recorder);
+        parser.setDTDHandler(recorder);
+        parser.setErrorHandler(recorder);
+        parser.setProperty(LEXICAL_HANDLER, recorder);
+        InputSource source = new InputSource(new StringReader(document));
+        source.setSystemId(new File(fDTD.getParentFile(), "doc.xml").toURI().toString());
+        parser.parse(source);
+        return recorder;
+    } // parse(SAXParser,String):EventRecorder
+
+    /** Checks that the non-empty parts of a name are symbols. */
+    protected static void assertSymbols(String uri, String localName, String qName) {
+        if (uri.length() > 0) {
+            assertSame(uri, uri.intern());
+        }
+        assertSame(localName, localName.intern());
+        assertSame(qName, qName.intern());
+    } // assertSymbols(String,String,String)
+
+    //
+    // Classes
+    //
+
+    /** A symbol table which remembers the names scanned into it. */
+    protected static class CountingSymbolTable extends SymbolTable {
+
+        /** The names looked up from character buffers. */
+        protected final Hashtable fLookedUp = new Hashtable();
+
+        public String addSymbol(char[] buffer, int offset, int length) {
+            String symbol = super.addSymbol(buffer, offset, length);
+            fLookedUp.put(symbol, symbol);
+            return symbol;
+        }
+
+        /** Returns true if a name has been looked up from a character buffer. */
+        public boolean isLookedUp(String name) {
+            return fLookedUp.containsKey(name);
+        }
+
+        /** Forgets the names looked up. */
+        public void clear() {
+            fLookedUp.clear();
+        }
+
+    } // class CountingSymbolTable
+
+} // class GrammarNamesTest
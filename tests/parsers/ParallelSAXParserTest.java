@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package parsers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.parsers.ParallelSAXParser;
+import org.apache.xerces.parsers.SAXParser;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Parses documents with the parallel SAX parser and with the SAX parser
+ * and checks that the handlers receive the same events at the same
+ * locator positions, whether the document is parsed in chunks or
+ * sequentially.
+ *
+ * @version $Id$
+ */
+public class ParallelSAXParserTest extends TestCase {
+
+    protected final static String LEXICAL_HANDLER =
+        "http://xml.org/sax/properties/lexical-handler";
+
+    /** Chunk sizes in bytes. */
+    protected final static int[] CHUNK_SIZES = { 700, 4096, 30000 };
+
+    /** Numbers of threads. */
+    protected final static int[] THREAD_COUNTS = { 2, 4 };
+
+    /** Number of records of the generated documents. */
+    protected final static int RECORDS = 600;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ParallelSAXParserTest.class);
+    }
+
+    public ParallelSAXParserTest(String name) {
+        super(name);
+    }
+
+    public void testUTF8() throws Exception {
+        File file = writeDocument("UTF-8", createDocument("UTF-8", "", RECORDS, null));
+        checkChunked(file);
+    }
+
+    public void testISO88591() throws Exception {
+        File file = writeDocument("ISO-8859-1", createDocument("ISO-8859-1", "", RECORDS, null));
+        checkChunked(file);
+    }
+
+    public void testRecordTagsInMarkup() throws Exception {
+        File file = writeDocument("UTF-8", createDocument("UTF-8", "", RECORDS, null, true));
+        EventRecorder expected = parse(new SAXParser(), file);
+        for (int i = 0; i < CHUNK_SIZES.length; i++) {
+            for (int j = 0; j < THREAD_COUNTS.length; j++) {
+                ParallelSAXParser parser = createParser(CHUNK_SIZES[i], THREAD_COUNTS[j]);
+                EventRecorder actual = parse(parser, file);
+                EventRecorder.assertSameEvents(message(file, CHUNK_SIZES[i], THREAD_COUNTS[j]),
+                                               expected, actual);
+            }
+        }
+    }
+
+    public void testNotationDeclaration() throws Exception {
+        String dtd = "<!DOCTYPE root [\n <!NOTATION gif SYSTEM 'image/gif'>\n <!-- no markup -->\n]>\n";
+        File file = writeDocument("UTF-8", createDocument("UTF-8", dtd, RECORDS, null));
+        checkChunked(file);
+    }
+
+    public void testLateError() throws Exception {
+        File file = writeDocument("UTF-8",
+            createDocument("UTF-8", "", RECORDS, "<record id='bad'><a></b></record>"));
+        for (int i = 0; i < CHUNK_SIZES.length; i++) {
+            for (int j = 0; j < THREAD_COUNTS.length; j++) {
+                EventRecorder expected = parse(new SAXParser(), file);
+                ParallelSAXParser parser = createParser(CHUNK_SIZES[i], THREAD_COUNTS[j]);
+                EventRecorder actual = parse(parser, file);
+                String last = (String) expected.getEvents().get(expected.getEvents().size() - 1);
+                assertTrue(last, last.startsWith("fatalError"));
+                EventRecorder.assertSameEvents(message(file, CHUNK_SIZES[i], THREAD_COUNTS[j]),
+                                               expected, actual);
+            }
+        }
+    }
+
+    public void testDeclarationsInDTD() throws Exception {
+        String dtd = "<!DOCTYPE root [\n <!ATTLIST record kind CDATA 'plain'>\n]>\n";
+        File file = writeDocument("UTF-8", createDocument("UTF-8", dtd, RECORDS, null));
+        checkSequential(file, null);
+    }
+
+    public void testEntityDeclarationInDTD() throws Exception {
+        String dtd = "<!DOCTYPE root [\n <!ENTITY e 'replacement'>\n]>\n";
+        File file = writeDocument("UTF-8", createDocument("UTF-8", dtd, RECORDS, null));
+        checkSequential(file, null);
+    }
+
+    public void testByteStream() throws Exception {
+        File file = writeDocument("UTF-8", createDocument("UTF-8", "", RECORDS, null));
+        checkSequential(file, new FileInputStream(file));
+    }
+
+    public void testXML11() throws Exception {
+        String document = createDocument("UTF-8", "", RECORDS, null)
+            .replaceFirst("version='1.0'", "version='1.1'")
+            .replace('\u00e9', '\u0085').replace('\u00fc', '\u2028');
+        File file = writeDocument("UTF-8", document);
+        checkSequential(file, null);
+    }
+
+    //
+    // Protected methods
+    //
+
+    /**
+     * Checks that a document is parsed in chunks and that the events are
+     * those of a sequential parse.
+     */
+    protected void checkChunked(File file) throws Exception {
+        EventRecorder expected = parse(new SAXParser(), file);
+        for (int i = 0; i < CHUNK_SIZES.length; i++) {
+            for (int j = 0; j < THREAD_COUNTS.length; j++) {
+                ParallelSAXParser parser = createParser(CHUNK_SIZES[i], THREAD_COUNTS[j]);
+                EventRecorder actual = parse(parser, file);
+                String message = message(file, CHUNK_SIZES[i], THREAD_COUNTS[j]);
+                assertTrue(message + ": chunks " + parser.getChunkCount(),
+                           parser.getChunkCount() > 1);
+                EventRecorder.assertSameEvents(message, expected, actual);
+            }
+        }
+    } // checkChunked(File)
+
+    /**
+     * Checks that a document is parsed sequentially from the start and
+     * that the events are those of the SAX parser.
+     */
+    protected void checkSequential(File file, InputStream stream) throws Exception {
+        EventRecorder expected = parse(new SAXParser(), file);
+        ParallelSAXParser parser = createParser(CHUNK_SIZES[0], THREAD_COUNTS[0]);
+        EventRecorder actual = new EventRecorder();
+        parse(parser, file, stream, actual);
+        assertEquals(file.getName() + ": chunks", 0, parser.getChunkCount());
+        EventRecorder.assertSameEvents(file.getName(), expected, actual);
+    } // checkSequential(File,InputStream)
+
+    /** Creates a parallel parser of records. */
+    protected ParallelSAXParser createParser(int chunkSize, int threadCount) {
+        ParallelSAXParser parser = new ParallelSAXParser();
+        parser.setRecordElement("urn:records", "record");
+        parser.setChunkSize(chunkSize);
+        parser.setThreadCount(threadCount);
+        return parser;
+    } // createParser(int,int):ParallelSAXParser
+
+    /** Parses a file and returns its events. */
+    protected EventRecorder parse(SAXParser parser, File file) throws Exception {
+        EventRecorder recorder = new EventRecorder();
+        parse(parser, file, null, recorder);
+        return recorder;
+    } // parse(SAXParser,File):EventRecorder
+
+    /** Parses a file or a stream and records its events. */
+    protected void parse(SAXParser parser, File file, InputStream stream,
+                         EventRecorder recorder) throws Exception {
+        parser.setContentHandler(recorder);
+        parser.setDTDHandler(recorder);
+        parser.setErrorHandler(recorder);
+        parser.setProperty(LEXICAL_HANDLER, recorder);
+        InputSource source = new InputSource(file.toURI().toString());
+        source.setByteStream(stream);
+        try {
+            parser.parse(source);
+        }
+        catch (SAXParseException e) {
+            // recorded by the error handler
+        }
+        finally {
+            if (stream != null) {
+                stream.close();
+            }
+        }
+    } // parse(SAXParser,File,InputStream,EventRecorder)
+
+    /** Returns a description of a parse. */
+    protected static String message(File file, int chunkSize, int threadCount) {
+        return file.getName() + ", chunk size " + chunkSize + ", " + threadCount + " threads";
+    } // message(File,int,int):String
+
+    /** Creates a document of records. */
+    protected static String createDocument(String encoding, String dtd,
+                                           int records, String errorRecord) {
+        return createDocument(encoding, dtd, records, errorRecord, false);
+    } // createDocument(String,String,int,String):String
+
+    /**
+     * Creates a document of records. The records are separated by CR LF
+     * line ends, and some of them contain record start tags in comments,
+     * CDATA sections, processing instructions and nested elements; if
+     * decoys is true all of them do, so that most chunk boundaries fall
+     * inside markup. The records of the second container declare another
+     * default namespace, so they aren't records. If an error record is
+     * given it replaces a record close to the end of the document.
+     */
+    protected static String createDocument(String encoding, String dtd, int records,
+                                           String errorRecord, boolean decoys) {
+        StringBuffer buffer = new StringBuffer();
+        buffer.append("<?xml version='1.0' encoding='").append(encoding).append("'?>\n");
+        buffer.append(dtd);
+        buffer.append("<!-- <record> before the root -->\n");
+        buffer.append("<root xmlns='urn:records' xmlns:p='urn:p'>\r\n");
+        for (int container = 0; container < 2; container++) {
+            buffer.append(container == 0 ? " <group name='first'>\r\n"
+                                         : " <group xmlns='urn:other' xmlns:p='urn:q'>\r\n");
+            for (int i = 0; i < records / 2; i++) {
+                if (errorRecord != null && container == 1 && i == records / 2 - 5) {
+                    buffer.append("  ").append(errorRecord).append("\r\n");
+                    continue;
+                }
+                buffer.append("  <record id='").append(i).append("' p:kind='k")
+                      .append(i % 7).append("' xml:lang='fr'>\r\n");
+                buffer.append("   <title>caf\u00e9 \u00fcber &amp; &lt;record&gt; &#233;</title>\r\n");
+                if (decoys || i % 10 == 7) {
+                    buffer.append("   <!-- <record id='").append(i).append("'> -->\r\n");
+                    buffer.append("   <![CDATA[<record>").append(i).append("</record>]]>\r\n");
+                    buffer.append("   <?target <record?>\r\n");
+                    buffer.append("   <p:nested xmlns:n='urn:n' n:a='").append(i).append("'>");
+                    buffer.append("<record nested='yes'/></p:nested>\r\n");
+                }
+                if (i % 3 == 0) {
+                    buffer.append("   <text>");
+                    for (int k = 0; k < 20; k++) {
+                        buffer.append("line ").append(k).append(" \u00e9\n");
+                    }
+                    buffer.append("</text>\r\n");
+                }
+                buffer.append("  </record>\r\n");
+            }
+            buffer.append(" </group>\r\n");
+        }
+        buffer.append("</root>\n");
+        buffer.append("<!-- after the root -->\n");
+        return buffer.toString();
+    } // createDocument(String,String,int,String,boolean):String
+
+    /** Writes a document to a temporary file. */
+    protected static File writeDocument(String encoding, String document) throws IOException {
+        File file = File.createTempFile("records", ".xml");
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(document.getBytes(encoding));
+        }
+        finally {
+            out.close();
+        }
+        return file;
+    } // writeDocument(String,String):File
+
+} // class ParallelSAXParserTest
@@ -0,0 +1,455 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package parsers;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.parsers.SAXParser;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Parses documents with projection paths and checks that the handlers
+ * receive the events of a full parse, at the same locator positions,
+ * less those of the parts of the document the paths don't select. The
+ * events expected are computed from the events of a full parse. Most
+ * dropped elements are skipped by the scanner, so the tests also check
+ * that it keeps track of line and column numbers and still reports
+ * mismatched end tags and the end of the document in skipped content.
+ *
+ * @version $Id$
+ */
+public class ProjectionTest extends TestCase {
+
+    protected final static String LEXICAL_HANDLER =
+        "http://xml.org/sax/properties/lexical-handler";
+
+    protected final static String PROJECTION_PATHS =
+        "http://apache.org/xml/properties/projection-paths";
+
+    /** The document, with the version in place of {0}. */
+    protected final static String DOCUMENT =
+        "<?xml version='{0}'?>\n" +
+        "<!-- before -->\n" +
+        "<root id='r'>\n" +
+        " text of root\n" +
+        " <a id='a1' kind='first'>\n" +
+        "  <b>one &amp; <![CDATA[<b>]]> <!-- b --></b>\n" +
+        "  <c><b id='nested'>two</b></c>\n" +
+        "  <skipped xmlns:p='urn:p' p:x='y'>\n" +
+        "   <p:deep><deeper>{1}</deeper><empty/><?pi data?></p:deep>\n" +
+        "   <!-- </skipped> --><![CDATA[</skipped>]]><?pi </skipped>?>\n" +
+        "   <a><b>not on the path</b></a>\n" +
+        "  </skipped>\n" +
+        " </a>\n" +
+        " <a id='a2'><b/><b>three</b>\r\n  <c>four</c></a>\n" +
+        " <d>\n  <e><c>five</c></e>\n </d>\n" +
+        "</root>\n" +
+        "<?after?>\n";
+
+    /** Text with line ends in skipped content. */
+    protected final static String LINES = "line\nline\r\nline\rline";
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ProjectionTest.class);
+    }
+
+    public ProjectionTest(String name) {
+        super(name);
+    }
+
+    public void testChild() throws Exception {
+        checkProjection("root/a/b");
+        checkProjection("root/a");
+        checkProjection("root/d/e/c");
+    }
+
+    public void testDescendant() throws Exception {
+        checkProjection(".//b");
+        checkProjection(".//c");
+        checkProjection(".//e/c");
+    }
+
+    public void testAttribute() throws Exception {
+        checkProjection("root/a/@id");
+        checkProjection("root/@id");
+    }
+
+    public void testNoMatch() throws Exception {
+        checkProjection("root/none");
+        checkProjection("none");
+    }
+
+    public void testUnion() throws Exception {
+        checkProjection("root/a/b | root/d");
+        checkProjection("root/a/c | .//deeper");
+    }
+
+    public void testDocument() throws Exception {
+        checkProjection(".");
+        checkProjection("root");
+    }
+
+    public void testXML11() throws Exception {
+        String lines = LINES + "\u0085line\u2028line\r\u0085line";
+        checkProjection("1.1", lines, "root/a/b");
+        checkProjection("1.1", lines, ".//c");
+        checkProjection("1.1", lines, "root/none");
+    }
+
+    public void testSkippedContentIsNotExpanded() throws Exception {
+        // references in skipped content aren't resolved, which shows
+        // that the content was skipped by the scanner
+        String document = "<root><keep/><skip>&undeclared;</skip></root>";
+        SAXParser parser = new SAXParser();
+        EventRecorder recorder = new EventRecorder();
+        parser.setContentHandler(recorder);
+        parser.setErrorHandler(recorder);
+        parser.setProperty(PROJECTION_PATHS, "root/keep");
+        parser.parse(new InputSource(new StringReader(document)));
+        assertEquals("endDocument @1:46",
+                     recorder.getEvents().get(recorder.getEvents().size() - 1));
+    }
+
+    public void testMismatchedEndTag() throws Exception {
+        checkFatalError("<root><keep/><skip><x><y></x></y></skip></root>", "root/keep");
+        checkFatalError("<root><keep/><skip><x></skip></root>", "root/keep");
+        checkFatalError("<root><keep/><skip><x></x></skipped></root>", "root/keep");
+    }
+
+    public void testEndOfDocument() throws Exception {
+        checkFatalError("<root><keep/><skip><x>text", "root/keep");
+        checkFatalError("<root><keep/><skip><!-- comment", "root/keep");
+        checkFatalError("<root><keep/><skip><![CDATA[ cdata", "root/keep");
+        checkFatalError("<root><keep/><skip><?pi data", "root/keep");
+        checkFatalError("<root><keep/><skip><x a='", "root/keep");
+    }
+
+    //
+    // Protected methods
+    //
+
+    /** Checks the projection of the test document onto the paths. */
+    protected void checkProjection(String paths) throws Exception {
+        checkProjection("1.0", LINES, paths);
+    }
+
+    /**
+     * Checks the projection of the test document of the given version,
+     * with the given text deep in skipped content, onto the paths.
+     */
+    protected void checkProjection(String version, String text, String paths)
+        throws Exception {
+
+        String document = DOCUMENT.replaceFirst("\\{0\\}", version).replaceFirst("\\{1\\}", text);
+
+        EventRecorder expected = new EventRecorder();
+        SAXParser parser = new SAXParser();
+        Projection projection = new Projection(paths, expected);
+        parser.setContentHandler(projection);
+        parser.setProperty(LEXICAL_HANDLER, projection);
+        parser.setErrorHandler(expected);
+        parser.parse(new InputSource(new StringReader(document)));
+
+        EventRecorder actual = new EventRecorder();
+        parser = new SAXParser();
+        parser.setContentHandler(actual);
+        parser.setProperty(LEXICAL_HANDLER, actual);
+        parser.setErrorHandler(actual);
+        parser.setProperty(PROJECTION_PATHS, paths);
+        parser.parse(new InputSource(new StringReader(document)));
+
+        EventRecorder.assertSameEvents(version + ' ' + paths, expected, actual);
+
+    } // checkProjection(String,String,String)
+
+    /**
+     * Checks that a document with an error in skipped content gives the
+     * fatal error of a full parse.
+     */
+    protected void checkFatalError(String document, String paths) throws Exception {
+        String expected = parseFatalError(document, null);
+        String actual = parseFatalError(document, paths);
+        assertNotNull(document, expected);
+        assertEquals(document, expected, actual);
+    } // checkFatalError(String,String)
+
+    /** Returns the message of the fatal error reported for a document. */
+    protected String parseFatalError(String document, String paths) throws Exception {
+        SAXParser parser = new SAXParser();
+        parser.setErrorHandler(new DefaultHandler());
+        if (paths != null) {
+            parser.setProperty(PROJECTION_PATHS, paths);
+        }
+        try {
+            parser.parse(new InputSource(new StringReader(document)));
+        }
+        catch (SAXParseException e) {
+            return e.getMessage();
+        }
+        return null;
+    } // parseFatalError(String,String):String
+
+    //
+    // Classes
+    //
+
+    /**
+     * Passes the events of the parts of a document selected by
+     * projection paths on to a recorder. Paths are written as
+     * <code>a/b</code>, <code>.//a/b</code> or <code>a/b/@c</code>, and
+     * only match elements without a namespace by local name.
+     */
+    protected static class Projection implements ContentHandler, LexicalHandler {
+
+        /** The element steps of each path. */
+        protected final String[][] fSteps;
+
+        /** True for the paths starting with a descendant step. */
+        protected final boolean[] fDescendant;
+
+        /** True for the paths ending with an attribute step. */
+        protected final boolean[] fAttribute;
+
+        /** True if a path selects the document. */
+        protected boolean fSelectAll;
+
+        /** The recorder. */
+        protected final EventRecorder fRecorder;
+
+        /** The names of the open elements. */
+        protected final List fNames = new ArrayList();
+
+        /**
+         * For each open element, its prefix mappings if it was passed on,
+         * or null.
+         */
+        protected final List fPassed = new ArrayList();
+
+        /** Depth of the selected element, or zero. */
+        protected int fSelectedDepth;
+
+        /** Prefix mappings of the next element. */
+        protected final List fMappings = new ArrayList();
+
+        public Projection(String paths, EventRecorder recorder) {
+            StringTokenizer tokens = new StringTokenizer(paths, "|");
+            int count = tokens.countTokens();
+            fSteps = new String[count][];
+            fDescendant = new boolean[count];
+            fAttribute = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                String path = tokens.nextToken().trim();
+                if (path.equals(".")) {
+                    fSelectAll = true;
+                    fSteps[i] = new String[0];
+                    continue;
+                }
+                if (path.startsWith(".//")) {
+                    fDescendant[i] = true;
+                    path = path.substring(3);
+                }
+                List steps = new ArrayList();
+                StringTokenizer names = new StringTokenizer(path, "/");
+                while (names.hasMoreTokens()) {
+                    String name = names.nextToken();
+                    if (name.startsWith("@")) {
+                        fAttribute[i] = true;
+                    }
+                    else {
+                        steps.add(name);
+                    }
+                }
+                fSteps[i] = (String[]) steps.toArray(new String[steps.size()]);
+            }
+            fRecorder = recorder;
+        }
+
+        /** Returns true if the steps match the open elements ending at end. */
+        protected boolean matches(String[] steps, int count, int end) {
+            if (count > end) {
+                return false;
+            }
+            for (int i = 0; i < count; i++) {
+                if (!steps[i].equals(fNames.get(end - count + i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Returns true if the current element is passed on. */
+        protected boolean isPassed() {
+            int depth = fNames.size();
+            if (fSelectedDepth != 0 || fSelectAll) {
+                return true;
+            }
+            // the document element is always passed on
+            boolean passed = depth == 1;
+            for (int i = 0; i < fSteps.length; i++) {
+                String[] steps = fSteps[i];
+                if (matches(steps, steps.length, depth) && (fDescendant[i] || steps.length == depth)) {
+                    if (!fAttribute[i]) {
+                        fSelectedDepth = depth;
+                    }
+                    passed = true;
+                }
+                for (int count = 1; count < steps.length; count++) {
+                    if (matches(steps, count, depth) && (fDescendant[i] || count == depth)) {
+                        passed = true;
+                    }
+                }
+            }
+            return passed;
+        }
+
+        /** Returns true if content is passed on. */
+        protected boolean isPassingContent() {
+            return fSelectedDepth != 0 || fSelectAll || fNames.size() == 0;
+        }
+
+        public void setDocumentLocator(Locator locator) {
+            fRecorder.setDocumentLocator(locator);
+        }
+
+        public void startDocument() throws SAXException {
+            fRecorder.startDocument();
+        }
+
+        public void endDocument() throws SAXException {
+            fRecorder.endDocument();
+        }
+
+        public void startPrefixMapping(String prefix, String uri) {
+            fMappings.add(prefix);
+            fMappings.add(uri);
+        }
+
+        public void endPrefixMapping(String prefix) {
+            // reported with the end of the element
+        }
+
+        public void startElement(String uri, String localName, String qName,
+                                 Attributes attributes) throws SAXException {
+            fNames.add(localName);
+            boolean passed = isPassed();
+            // the mappings are kept for the end tag of the element
+            List mappings = passed ? new ArrayList(fMappings) : null;
+            fPassed.add(mappings);
+            fMappings.clear();
+            if (passed) {
+                for (int i = 0; i < mappings.size(); i += 2) {
+                    fRecorder.startPrefixMapping((String) mappings.get(i),
+                                                 (String) mappings.get(i + 1));
+                }
+                fRecorder.startElement(uri, localName, qName, attributes);
+            }
+        }
+
+        public void endElement(String uri, String localName, String qName)
+            throws SAXException {
+            int depth = fNames.size();
+            List mappings = (List) fPassed.remove(depth - 1);
+            fNames.remove(depth - 1);
+            if (mappings != null) {
+                fRecorder.endElement(uri, localName, qName);
+                for (int i = 0; i < mappings.size(); i += 2) {
+                    fRecorder.endPrefixMapping((String) mappings.get(i));
+                }
+            }
+            if (depth == fSelectedDepth) {
+                fSelectedDepth = 0;
+            }
+        }
+
+        public void characters(char[] ch, int start, int length) {
+            if (isPassingContent()) {
+                fRecorder.characters(ch, start, length);
+            }
+        }
+
+        public void ignorableWhitespace(char[] ch, int start, int length) {
+            if (isPassingContent()) {
+                fRecorder.ignorableWhitespace(ch, start, length);
+            }
+        }
+
+        public void processingInstruction(String target, String data) {
+            if (isPassingContent()) {
+                fRecorder.processingInstruction(target, data);
+            }
+        }
+
+        public void skippedEntity(String name) {
+            if (isPassingContent()) {
+                fRecorder.skippedEntity(name);
+            }
+        }
+
+        public void startDTD(String name, String publicId, String systemId) {
+            fRecorder.startDTD(name, publicId, systemId);
+        }
+
+        public void endDTD() {
+            fRecorder.endDTD();
+        }
+
+        public void startEntity(String name) {
+            if (isPassingContent()) {
+                fRecorder.startEntity(name);
+            }
+        }
+
+        public void endEntity(String name) {
+            if (isPassingContent()) {
+                fRecorder.endEntity(name);
+            }
+        }
+
+        public void startCDATA() {
+            if (isPassingContent()) {
+                fRecorder.startCDATA();
+            }
+        }
+
+        public void endCDATA() {
+            if (isPassingContent()) {
+                fRecorder.endCDATA();
+            }
+        }
+
+        public void comment(char[] ch, int start, int length) {
+            if (isPassingContent()) {
+                fRecorder.comment(ch, start, length);
+            }
+        }
+
+    } // class Projection
+
+} // class ProjectionTest
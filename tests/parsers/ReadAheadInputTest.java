@@ -0,0 +1,358 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package parsers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.parsers.SAXParser;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Parses documents with the read-ahead-input feature and checks that the
+ * handlers receive the same events at the same locator positions as
+ * without it, that read errors are reported at the same point, and that
+ * a parse which is aborted leaves no read-ahead thread behind.
+ *
+ * @version $Id$
+ */
+public class ReadAheadInputTest extends TestCase {
+
+    protected final static String READ_AHEAD_INPUT =
+        "http://apache.org/xml/features/read-ahead-input";
+
+    protected final static String LEXICAL_HANDLER =
+        "http://xml.org/sax/properties/lexical-handler";
+
+    /** The name of the read-ahead threads. */
+    protected final static String THREAD_NAME = "ReadAheadInputStream";
+
+    /** The external DTD subset. */
+    protected final static String DTD =
+        "<!ENTITY ext SYSTEM 'ent.xml'>\n" +
+        "<!ATTLIST record status CDATA 'new'>\n";
+
+    /** How long to wait for a parse, in milliseconds. */
+    protected final static long TIMEOUT = 20000;
+
+    /** Number of records of the documents, several ring sizes worth. */
+    protected final static int RECORDS = 2000;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ReadAheadInputTest.class);
+    }
+
+    public ReadAheadInputTest(String name) {
+        super(name);
+    }
+
+    public void testUTF8() throws Exception {
+        checkEvents(writeEntities("UTF-8", RECORDS, null));
+    }
+
+    public void testUTF16() throws Exception {
+        checkEvents(writeEntities("UTF-16", RECORDS, null));
+    }
+
+    public void testISO88591() throws Exception {
+        checkEvents(writeEntities("ISO-8859-1", RECORDS, null));
+    }
+
+    public void testSlowStream() throws Exception {
+        File file = writeEntities("UTF-8", RECORDS, null);
+        EventRecorder expected = parse(createParser(false), file, null);
+        EventRecorder actual = parse(createParser(true), file, new SlowInputStream(file, -1));
+        EventRecorder.assertSameEvents(file.getName(), expected, actual);
+    }
+
+    public void testFatalError() throws Exception {
+        File file = writeEntities("UTF-8", RECORDS, "<record><broken></record>");
+        EventRecorder expected = parse(createParser(false), file, null);
+        String last = (String) expected.getEvents().get(expected.getEvents().size() - 1);
+        assertTrue(last, last.startsWith("fatalError"));
+        EventRecorder actual = parse(createParser(true), file, null);
+        EventRecorder.assertSameEvents(file.getName(), expected, actual);
+        assertNoThreads();
+    }
+
+    public void testReadError() throws Exception {
+        File file = writeEntities("UTF-8", RECORDS, null);
+        int failAt = (int) file.length() / 2;
+        String[] messages = new String[2];
+        EventRecorder[] recorders = new EventRecorder[2];
+        for (int i = 0; i < 2; i++) {
+            recorders[i] = new EventRecorder(true);
+            try {
+                parse(createParser(i == 1), file, new SlowInputStream(file, failAt), recorders[i]);
+                fail("read error not reported");
+            }
+            catch (IOException e) {
+                messages[i] = e.getMessage();
+            }
+        }
+        assertEquals("read error at " + failAt, messages[0]);
+        assertEquals(messages[0], messages[1]);
+        EventRecorder.assertSameEvents(file.getName(), recorders[0], recorders[1]);
+        assertNoThreads();
+    }
+
+    public void testReadErrorThrowable() throws Exception {
+        final File file = writeEntities("UTF-8", RECORDS, null);
+        final int failAt = (int) file.length() / 2;
+        final Error error = new InternalError("read");
+        final InputStream stream = new SlowInputStream(file, failAt) {
+            protected void readError() {
+                throw error;
+            }
+        };
+        final Throwable[] thrown = new Throwable[1];
+        Thread thread = new Thread("parser") {
+            public void run() {
+                try {
+                    parse(createParser(true), file, stream);
+                }
+                catch (Throwable e) {
+                    thrown[0] = e;
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        thread.join(TIMEOUT);
+        assertFalse("parser waiting", thread.isAlive());
+        assertSame(error, thrown[0]);
+        assertNoThreads();
+    }
+
+    public void testAbortedParse() throws Exception {
+        File file = writeEntities("UTF-8", RECORDS * 4, null);
+        checkAborted(file, "record");
+        // aborted in the external entity, with the document still open
+        checkAborted(file, "extra");
+    }
+
+    //
+    // Protected methods
+    //
+
+    /**
+     * Parses a document with and without reading ahead, from its system
+     * identifier and from a file stream, and compares the events.
+     */
+    protected void checkEvents(File file) throws Exception {
+        EventRecorder expected = parse(createParser(false), file, null);
+        String last = (String) expected.getEvents().get(expected.getEvents().size() - 1);
+        assertTrue(last, last.startsWith("endDocument"));
+        assertTrue(expected.getEvents().toString().indexOf("startEntity ext") != -1);
+
+        EventRecorder actual = parse(createParser(true), file, null);
+        EventRecorder.assertSameEvents(file.getName(), expected, actual);
+        actual = parse(createParser(true), file, new FileInputStream(file));
+        EventRecorder.assertSameEvents(file.getName() + " stream", expected, actual);
+        assertNoThreads();
+    } // checkEvents(File)
+
+    /**
+     * Aborts a parse from a content handler at the first start tag of
+     * the given element and checks that no read-ahead thread is left.
+     */
+    protected void checkAborted(File file, final String element) throws Exception {
+        final SAXException abort = new SAXException("abort");
+        SAXParser parser = createParser(true);
+        parser.setContentHandler(new DefaultHandler() {
+            public void startElement(String uri, String localName, String qName,
+                                     Attributes attributes) throws SAXException {
+                if (localName.equals(element)) {
+                    // the entity is being read ahead
+                    assertNotNull(findThread());
+                    throw abort;
+                }
+            }
+        });
+        try {
+            parser.parse(file.toURI().toString());
+            fail("not aborted");
+        }
+        catch (SAXException e) {
+            assertSame(abort, e);
+        }
+        assertNoThreads();
+    } // checkAborted(File,String)
+
+    /**
+     * Checks that no read-ahead thread is alive, after giving the
+     * threads of streams which have been closed time to stop.
+     */
+    protected static void assertNoThreads() throws InterruptedException {
+        long end = System.currentTimeMillis() + 10000;
+        Thread thread;
+        while ((thread = findThread()) != null && System.currentTimeMillis() < end) {
+            thread.join(100);
+        }
+        assertNull("read-ahead thread left behind", findThread());
+    } // assertNoThreads()
+
+    /** Returns a live read-ahead thread, or null. */
+    protected static Thread findThread() {
+        Thread[] threads = new Thread[Thread.activeCount() + 10];
+        int count = Thread.enumerate(threads);
+        for (int i = 0; i < count; i++) {
+            if (threads[i].getName().equals(THREAD_NAME) && threads[i].isAlive()) {
+                assertTrue(threads[i].isDaemon());
+                return threads[i];
+            }
+        }
+        return null;
+    } // findThread():Thread
+
+    /** Returns a SAX parser. */
+    protected static SAXParser createParser(boolean readAhead) throws SAXException {
+        SAXParser parser = new SAXParser();
+        parser.setFeature(READ_AHEAD_INPUT, readAhead);
+        return parser;
+    } // createParser(boolean):SAXParser
+
+    /** Parses a file or a stream and returns its events. */
+    protected static EventRecorder parse(SAXParser parser, File file,
+                                         InputStream stream) throws Exception {
+        EventRecorder recorder = new EventRecorder(true);
+        parse(parser, file, stream, recorder);
+        return recorder;
+    } // parse(SAXParser,File,InputStream):EventRecorder
+
+    /** Parses a file or a stream and records its events. */
+    protected static void parse(SAXParser parser, File file, InputStream stream,
+                                EventRecorder recorder) throws Exception {
+        parser.setContentHandler(recorder);
+        parser.setDTDHandler(recorder);
+        parser.setErrorHandler(recorder);
+        parser.setProperty(LEXICAL_HANDLER, recorder);
+        InputSource source = new InputSource(file.toURI().toString());
+        source.setByteStream(stream);
+        try {
+            parser.parse(source);
+        }
+        catch (org.xml.sax.SAXParseException e) {
+            // recorded by the error handler
+        }
+        finally {
+            if (stream != null) {
+                stream.close();
+            }
+        }
+    } // parse(SAXParser,File,InputStream,EventRecorder)
+
+    /**
+     * Writes a document with an external DTD subset and external entity
+     * to a new temporary directory and returns the document file. If an
+     * error record is given it replaces a record close to the end.
+     */
+    protected static File writeEntities(String encoding, int records, String errorRecord)
+        throws IOException {
+        File directory = File.createTempFile("readahead", "");
+        directory.delete();
+        directory.mkdir();
+        directory.deleteOnExit();
+        write(new File(directory, "doc.dtd"), DTD.getBytes("UTF-8"));
+        StringBuffer entity = new StringBuffer("<?xml encoding='UTF-16'?><extra>");
+        for (int i = 0; i < 5000; i++) {
+            entity.append("external \u00e9 ").append(i).append('\n');
+        }
+        entity.append("</extra>");
+        write(new File(directory, "ent.xml"), entity.toString().getBytes("UTF-16"));
+        String document = ParallelSAXParserTest.createDocument(encoding,
+                "<!DOCTYPE root SYSTEM 'doc.dtd'>\n", records, errorRecord);
+        int root = document.indexOf("<root");
+        document = document.substring(0, root)
+                 + document.substring(root).replaceFirst("\r\n", "&ext;\r\n");
+        File file = new File(directory, "doc.xml");
+        write(file, document.getBytes(encoding));
+        return file;
+    } // writeEntities(String,int,String):File
+
+    /** Writes bytes to a temporary file. */
+    protected static void write(File file, byte[] bytes) throws IOException {
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        }
+        finally {
+            out.close();
+        }
+    } // write(File,byte[])
+
+    //
+    // Classes
+    //
+
+    /**
+     * Reads a file a few bytes at a time, and fails once a given number
+     * of bytes has been read, unless it's negative.
+     */
+    protected static class SlowInputStream extends FilterInputStream {
+
+        /** The offset at which reading fails. */
+        protected final int fFailAt;
+
+        /** The number of bytes read. */
+        protected int fCount;
+
+        public SlowInputStream(File file, int failAt) throws IOException {
+            super(new FileInputStream(file));
+            fFailAt = failAt;
+        }
+
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (fFailAt >= 0 && fCount >= fFailAt) {
+                readError();
+            }
+            len = Math.min(len, 1 + fCount % 997);
+            if (fFailAt >= 0) {
+                len = Math.min(len, fFailAt - fCount);
+            }
+            int count = super.read(b, off, len);
+            if (count > 0) {
+                fCount += count;
+            }
+            return count;
+        }
+
+        /** Fails once the given number of bytes has been read. */
+        protected void readError() throws IOException {
+            throw new IOException("read error at " + fFailAt);
+        }
+
+    } // class SlowInputStream
+
+} // class ReadAheadInputTest
@@ -0,0 +1,333 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package parsers;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.dom.DOMImplementationImpl;
+import org.apache.xerces.parsers.SAXParser;
+import org.w3c.dom.DOMError;
+import org.w3c.dom.DOMErrorHandler;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.ls.DOMImplementationLS;
+import org.w3c.dom.ls.LSInput;
+import org.w3c.dom.ls.LSParser;
+import org.w3c.dom.ls.LSParserFilter;
+import org.w3c.dom.traversal.NodeFilter;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+
+/**
+ * Tests skipping the content of elements: from a SAX content handler
+ * through <code>skipElementContent</code>, and from a DOM parser whose
+ * filter rejects elements. Without a DTD the scanner skips the content;
+ * with one the DTD validator sits between the scanner and the parser, so
+ * the parser discards the events of the content itself. Either way the
+ * handlers must receive the events of a full parse less those of the
+ * skipped content, and the DOM must be the one built without a filter
+ * less the rejected elements.
+ *
+ * @version $Id$
+ */
+public class SkipElementContentTest extends TestCase {
+
+    protected final static String LEXICAL_HANDLER =
+        "http://xml.org/sax/properties/lexical-handler";
+
+    protected final static String NAMESPACES =
+        "http://xml.org/sax/features/namespaces";
+
+    protected final static String VALIDATION =
+        "http://xml.org/sax/features/validation";
+
+    /** The content of the test documents. */
+    protected final static String CONTENT =
+        "<root xmlns:p='urn:p'>\n" +
+        " <keep id='1'>before</keep>\n" +
+        " <skip id='2'>\n" +
+        "  text &amp; {0}<p:x xmlns:q='urn:q' q:a='b'>\r\n" +
+        "   <skip><keep>nested</keep></skip>\n" +
+        "   <!-- comment --><![CDATA[</skip>]]><?pi </skip>?>\n" +
+        "  </p:x>\r\n" +
+        " </skip>\n" +
+        " text{0}after\n" +
+        " <skip/><skip></skip>\n" +
+        " <keep id='3'><!-- kept --><?kept pi?><![CDATA[kept]]></keep>\n" +
+        "</root>\n";
+
+    /** A DTD for the test documents. */
+    protected final static String DTD =
+        "<!DOCTYPE root [\n" +
+        " <!ELEMENT root ANY>\n" +
+        " <!ELEMENT keep ANY>\n" +
+        " <!ATTLIST keep id CDATA #IMPLIED kind CDATA 'default'>\n" +
+        " <!ENTITY e '<keep>entity</keep>'>\n" +
+        "]>\n";
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(SkipElementContentTest.class);
+    }
+
+    public SkipElementContentTest(String name) {
+        super(name);
+    }
+
+    public void testSAXScannerSkips() throws Exception {
+        String document = CONTENT.replaceAll("\\{0\\}", "");
+        assertEquals(Boolean.TRUE, checkSAX(document, true, false));
+    }
+
+    public void testSAXWithDTD() throws Exception {
+        String document = DTD + CONTENT.replaceAll("\\{0\\}", "&e;");
+        assertEquals(Boolean.FALSE, checkSAX(document, true, false));
+    }
+
+    public void testSAXValidating() throws Exception {
+        // the skipped content has validity errors; they're still reported
+        String document = DTD + CONTENT.replaceAll("\\{0\\}", "&e;");
+        assertEquals(Boolean.FALSE, checkSAX(document, true, true));
+    }
+
+    public void testSAXWithoutNamespaces() throws Exception {
+        // without a DTD the scanner skips whether namespaces are on or off
+        String document = CONTENT.replaceAll("\\{0\\}", "");
+        assertEquals(Boolean.TRUE, checkSAX(document, false, false));
+    }
+
+    public void testSAXSkippedContentIsNotExpanded() throws Exception {
+        String document = "<root><skip>&undeclared;</skip></root>";
+        SAXParser parser = new SAXParser();
+        SkippingRecorder recorder = new SkippingRecorder(parser);
+        parser.setContentHandler(recorder);
+        parser.setErrorHandler(recorder);
+        parser.parse(new InputSource(new StringReader(document)));
+        assertEquals("[true]", recorder.fSkipped.toString());
+    }
+
+    public void testDOMScannerSkips() throws Exception {
+        checkDOM(CONTENT.replaceAll("\\{0\\}", ""));
+    }
+
+    public void testDOMSkippedContentIsNotExpanded() throws Exception {
+        DOMImplementationLS impl = (DOMImplementationLS) DOMImplementationImpl.getDOMImplementation();
+        LSParser builder = impl.createLSParser(DOMImplementationLS.MODE_SYNCHRONOUS, null);
+        builder.getDomConfig().setParameter("error-handler", new ErrorHandler());
+        builder.setFilter(new RejectingFilter());
+        Document document = builder.parse(
+            createInput(impl, "<root>a<skip>&undeclared;</skip>b</root>"));
+        assertNotNull(document);
+        assertEquals("1 {null}root 'null'\n 3 {null}#text 'ab'\n",
+                     DOMDescription.toString(document.getDocumentElement()));
+    }
+
+    public void testDOMWithDTD() throws Exception {
+        checkDOM(DTD + CONTENT.replaceAll("\\{0\\}", "&e;"));
+    }
+
+    //
+    // Protected methods
+    //
+
+    /**
+     * Checks that skipping the content of skip elements from a content
+     * handler gives the events of a full parse less those of the content,
+     * and returns what skipElementContent returned, or null if it
+     * returned different values.
+     */
+    protected Boolean checkSAX(String document, boolean namespaces, boolean validation)
+        throws Exception {
+
+        SAXParser parser = new SAXParser();
+        parser.setFeature(NAMESPACES, namespaces);
+        parser.setFeature(VALIDATION, validation);
+        SkippingRecorder expected = new SkippingRecorder(null);
+        parser.setContentHandler(expected);
+        parser.setProperty(LEXICAL_HANDLER, expected);
+        parser.setErrorHandler(expected);
+        parser.parse(new InputSource(new StringReader(document)));
+
+        parser = new SAXParser();
+        parser.setFeature(NAMESPACES, namespaces);
+        parser.setFeature(VALIDATION, validation);
+        SkippingRecorder actual = new SkippingRecorder(parser);
+        parser.setContentHandler(actual);
+        parser.setProperty(LEXICAL_HANDLER, actual);
+        parser.setErrorHandler(actual);
+        parser.parse(new InputSource(new StringReader(document)));
+
+        EventRecorder.assertSameEvents(document, expected, actual);
+        assertEquals(3, actual.fSkipped.size());
+        Boolean skipped = (Boolean) actual.fSkipped.get(0);
+        return actual.fSkipped.indexOf(skipped.booleanValue() ? Boolean.FALSE : Boolean.TRUE) == -1
+            ? skipped : null;
+
+    } // checkSAX(String,boolean,boolean):Boolean
+
+    /**
+     * Checks that a DOM parser whose filter rejects the skip elements
+     * builds the document built without a filter less these elements.
+     */
+    protected void checkDOM(String document) throws Exception {
+        DOMImplementationLS impl = (DOMImplementationLS) DOMImplementationImpl.getDOMImplementation();
+
+        LSParser builder = impl.createLSParser(DOMImplementationLS.MODE_SYNCHRONOUS, null);
+        builder.getDomConfig().setParameter("error-handler", new ErrorHandler());
+        builder.getDomConfig().setParameter("entities", Boolean.FALSE);
+        Document expected = builder.parse(createInput(impl, document));
+        assertNotNull(expected);
+        removeSkipElements(expected);
+        expected.normalizeDocument();
+
+        builder = impl.createLSParser(DOMImplementationLS.MODE_SYNCHRONOUS, null);
+        builder.getDomConfig().setParameter("error-handler", new ErrorHandler());
+        builder.getDomConfig().setParameter("entities", Boolean.FALSE);
+        builder.setFilter(new RejectingFilter());
+        Document actual = builder.parse(createInput(impl, document));
+        assertNotNull(actual);
+        actual.normalizeDocument();
+
+        assertEquals(document, DOMDescription.toString(expected), DOMDescription.toString(actual));
+
+    } // checkDOM(String)
+
+    /** Creates an input for a document. */
+    protected static LSInput createInput(DOMImplementationLS impl, String document) {
+        LSInput input = impl.createLSInput();
+        input.setStringData(document);
+        return input;
+    } // createInput(DOMImplementationLS,String):LSInput
+
+    /** Removes the elements named skip, except nested ones. */
+    protected static void removeSkipElements(Node node) {
+        Node child = node.getFirstChild();
+        while (child != null) {
+            Node next = child.getNextSibling();
+            if (child.getNodeType() == Node.ELEMENT_NODE && child.getNodeName().equals("skip")) {
+                node.removeChild(child);
+            }
+            else {
+                removeSkipElements(child);
+            }
+            child = next;
+        }
+    } // removeSkipElements(Node)
+
+    //
+    // Classes
+    //
+
+    /**
+     * Records events and skips the content of the elements named skip.
+     * Given a parser, it asks the parser to skip the content; otherwise
+     * it drops the events of the content itself.
+     */
+    protected static class SkippingRecorder extends EventRecorder {
+
+        /** The parser, or null. */
+        protected final SAXParser fParser;
+
+        /** What skipElementContent returned for each element skipped. */
+        protected final List fSkipped = new ArrayList();
+
+        /** Depth in the content being dropped, or zero. */
+        protected int fDepth;
+
+        public SkippingRecorder(SAXParser parser) {
+            fParser = parser;
+        }
+
+        protected void record(String event) {
+            if (fDepth == 0 || event.startsWith("error") || event.startsWith("warning")
+                || event.startsWith("fatalError")) {
+                super.record(event);
+            }
+        }
+
+        public void startElement(String uri, String localName, String qName,
+                                 Attributes attributes) {
+            super.startElement(uri, localName, qName, attributes);
+            if (fDepth != 0) {
+                fDepth++;
+            }
+            else if (qName.equals("skip")) {
+                if (fParser != null) {
+                    fSkipped.add(fParser.skipElementContent() ? Boolean.TRUE : Boolean.FALSE);
+                }
+                else {
+                    fDepth = 1;
+                }
+            }
+        }
+
+        public void characters(char[] ch, int start, int length) {
+            if (fDepth == 0) {
+                super.characters(ch, start, length);
+            }
+        }
+
+        public void ignorableWhitespace(char[] ch, int start, int length) {
+            if (fDepth == 0) {
+                super.ignorableWhitespace(ch, start, length);
+            }
+        }
+
+        public void endElement(String uri, String localName, String qName) {
+            if (fDepth != 0) {
+                fDepth--;
+            }
+            super.endElement(uri, localName, qName);
+        }
+
+    } // class SkippingRecorder
+
+    /** Rejects the elements named skip. */
+    protected static class RejectingFilter implements LSParserFilter {
+
+        public short startElement(Element element) {
+            return element.getNodeName().equals("skip") ? FILTER_REJECT : FILTER_ACCEPT;
+        }
+
+        public short acceptNode(Node node) {
+            return FILTER_ACCEPT;
+        }
+
+        public int getWhatToShow() {
+            return NodeFilter.SHOW_ELEMENT;
+        }
+
+    } // class RejectingFilter
+
+    /** Fails on fatal errors. */
+    protected static class ErrorHandler implements DOMErrorHandler {
+
+        public boolean handleError(DOMError error) {
+            if (error.getSeverity() == DOMError.SEVERITY_FATAL_ERROR) {
+                fail(error.getMessage());
+            }
+            return true;
+        }
+
+    } // class ErrorHandler
+
+} // class SkipElementContentTest
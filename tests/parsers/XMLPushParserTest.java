@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package parsers;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.parsers.XIncludeAwareParserConfiguration;
+import org.apache.xerces.parsers.XMLPushParser;
+import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.parser.XMLInputSource;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Feeds documents to the push parser in chunks of one byte, of odd sizes
+ * and whole, and checks that the handlers receive the same events at the
+ * same locator positions as when the documents are parsed from a stream.
+ * The documents have an internal subset, CDATA sections, processing
+ * instructions, comments and entity references with markup delimiters in
+ * unexpected places, in several encodings and XML versions. A fatal error
+ * must be reported in the same way after the scanner has been suspended.
+ *
+ * @version $Id$
+ */
+public class XMLPushParserTest extends TestCase {
+
+    protected final static String LEXICAL_HANDLER =
+        "http://xml.org/sax/properties/lexical-handler";
+
+    protected final static String NOTIFY_BUILTIN_REFS =
+        "http://apache.org/xml/features/scanner/notify-builtin-refs";
+
+    /** The sizes of the chunks fed, zero for the whole document at once. */
+    protected final static int[] CHUNK_SIZES = { 1, 2, 3, 7, 13, 64, 1021, 0 };
+
+    /** The internal subset. */
+    protected final static String INTERNAL_SUBSET =
+        "<!DOCTYPE root [\n" +
+        "<!-- a comment with > and - in the subset -->\n" +
+        "<?subset-pi data with > and ?-?>\n" +
+        "<!ELEMENT root ANY>\n" +
+        "<!ATTLIST root default CDATA 'a > b' quoted CDATA \"it's\">\n" +
+        "<!ENTITY markup '<e a=\"&#62;\">text &amp; <![CDATA[<]]></e>'>\n" +
+        "<!ENTITY text \"don't > stop\">\n" +
+        "<!ENTITY % param '<!ENTITY fromParam \"[&#93;>\">'>\n" +
+        "%param;\n" +
+        "<!NOTATION n SYSTEM 'urn:n'>\n" +
+        "<!ENTITY unparsed SYSTEM 'urn:u' NDATA n>\n" +
+        "]>\n";
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(XMLPushParserTest.class);
+    }
+
+    public XMLPushParserTest(String name) {
+        super(name);
+    }
+
+    public void testUTF8() throws Exception {
+        checkChunks(createDocument("1.0", "UTF-8", true), "UTF-8");
+    }
+
+    public void testUTF8WithoutDeclaration() throws Exception {
+        checkChunks(createDocument(null, null, true), "UTF-8");
+    }
+
+    public void testUTF16() throws Exception {
+        checkChunks(createDocument("1.0", "UTF-16", true), "UTF-16");
+    }
+
+    public void testUTF16LE() throws Exception {
+        checkChunks(createDocument("1.0", "UTF-16LE", true), "UTF-16LE");
+    }
+
+    public void testISO88591() throws Exception {
+        checkChunks(createDocument("1.0", "ISO-8859-1", false), "ISO-8859-1");
+    }
+
+    public void testXML11() throws Exception {
+        // NEL and LINE SEPARATOR are line ends in XML 1.1, and control
+        // characters may be referred to
+        String[] encodings = { "UTF-8", "UTF-16" };
+        for (int i = 0; i < encodings.length; i++) {
+            String document = createDocument("1.1", encodings[i], true)
+                .replaceAll("</p:para>\r\n", "</p:para>\u0085\u2028\r\u0085&#x1;");
+            checkChunks(document, encodings[i]);
+        }
+    }
+
+    public void testFatalErrorAfterSuspend() throws Exception {
+        String document = createDocument("1.0", "UTF-8", true);
+        int end = document.lastIndexOf("</p:para>");
+        document = document.substring(0, end) + "<broken>" + document.substring(end);
+        byte[] bytes = document.getBytes("UTF-8");
+        EventRecorder expected = parse(bytes);
+        String last = (String) expected.getEvents().get(expected.getEvents().size() - 1);
+        assertTrue(last, last.startsWith("fatalError"));
+        for (int i = 0; i < CHUNK_SIZES.length - 1; i++) {
+            EventRecorder actual = new EventRecorder(true);
+            XMLPushParser parser = createParser(actual);
+            parser.setInputSource(new XMLInputSource(null, "pushed.xml", null));
+            int offset = 0;
+            try {
+                while (offset < bytes.length) {
+                    int length = Math.min(CHUNK_SIZES[i], bytes.length - offset);
+                    offset += length;
+                    assertTrue(parser.feed(bytes, offset - length, length));
+                }
+                parser.endOfInput();
+                fail("no fatal error");
+            }
+            catch (XNIException e) {
+                assertTrue(e.getException() instanceof SAXParseException);
+            }
+            // the scanner was suspended before the error
+            assertTrue(offset > CHUNK_SIZES[i]);
+            assertTrue(offset > end);
+            assertFalse(parser.isParsing());
+            assertFalse(parser.feed(bytes, 0, 1));
+            EventRecorder.assertSameEvents("chunks of " + CHUNK_SIZES[i], expected, actual);
+        }
+    }
+
+    public void testReuse() throws Exception {
+        byte[] utf8 = createDocument("1.0", "UTF-8", true).getBytes("UTF-8");
+        byte[] utf16 = createDocument("1.0", "UTF-16", true).getBytes("UTF-16");
+        EventRecorder recorder = new EventRecorder(true);
+        XMLPushParser parser = createParser(recorder);
+        for (int i = 0; i < 2; i++) {
+            recorder.clear();
+            push(parser, utf8, 5, true);
+            EventRecorder.assertSameEvents("UTF-8", parse(utf8), recorder);
+            recorder.clear();
+            push(parser, utf16, 5, true);
+            EventRecorder.assertSameEvents("UTF-16", parse(utf16), recorder);
+        }
+    }
+
+    //
+    // Protected methods
+    //
+
+    /**
+     * Feeds a document in chunks of every size and compares the events
+     * with those of parsing the document from a stream.
+     */
+    protected void checkChunks(String document, String encoding) throws Exception {
+        byte[] bytes = document.getBytes(encoding);
+        EventRecorder expected = parse(bytes);
+        String last = (String) expected.getEvents().get(expected.getEvents().size() - 1);
+        assertEquals(last, "endDocument", last.substring(0, last.indexOf(' ')));
+        for (int i = 0; i < CHUNK_SIZES.length; i++) {
+            EventRecorder actual = new EventRecorder(true);
+            XMLPushParser parser = createParser(actual);
+            push(parser, bytes, CHUNK_SIZES[i], i % 2 == 0);
+            EventRecorder.assertSameEvents(encoding + " in chunks of " + CHUNK_SIZES[i],
+                                           expected, actual);
+        }
+    } // checkChunks(String,String)
+
+    /**
+     * Pushes a document in chunks of the given size, or all at once, and
+     * returns the number of bytes fed. The chunks are fed as byte arrays
+     * or byte buffers.
+     */
+    protected static int push(XMLPushParser parser, byte[] bytes,
+                              int chunkSize, boolean buffers) throws Exception {
+        parser.setInputSource(new XMLInputSource(null, "pushed.xml", null));
+        if (chunkSize == 0) {
+            chunkSize = bytes.length;
+        }
+        int offset = 0;
+        while (offset < bytes.length) {
+            int length = Math.min(chunkSize, bytes.length - offset);
+            // the chunks are copied from reused arrays
+            byte[] chunk = new byte[length + 2];
+            System.arraycopy(bytes, offset, chunk, 1, length);
+            offset += length;
+            boolean more = buffers
+                ? parser.feed(ByteBuffer.wrap(chunk, 1, length))
+                : parser.feed(chunk, 1, length);
+            assertTrue(more);
+        }
+        parser.endOfInput();
+        assertFalse(parser.isParsing());
+        return offset;
+    } // push(XMLPushParser,byte[],int,boolean):int
+
+    /** Returns a push parser reporting its events to a recorder. */
+    protected static XMLPushParser createParser(EventRecorder recorder) throws Exception {
+        XIncludeAwareParserConfiguration config = new XIncludeAwareParserConfiguration();
+        // as in a SAX parser constructed with its own configuration
+        config.setFeature(NOTIFY_BUILTIN_REFS, true);
+        SAXParser parser = new SAXParser(config);
+        setHandlers(parser, recorder);
+        // reads the features of the configuration, as parse would
+        parser.reset();
+        return new XMLPushParser(config);
+    } // createParser(EventRecorder):XMLPushParser
+
+    /** Parses a document from a stream and returns its events. */
+    protected static EventRecorder parse(byte[] bytes) throws Exception {
+        EventRecorder recorder = new EventRecorder(true);
+        SAXParser parser = new SAXParser();
+        setHandlers(parser, recorder);
+        InputSource source = new InputSource("pushed.xml");
+        source.setByteStream(new ByteArrayInputStream(bytes));
+        try {
+            parser.parse(source);
+        }
+        catch (SAXParseException e) {
+            // recorded by the error handler
+        }
+        return recorder;
+    } // parse(byte[]):EventRecorder
+
+    /** Sets a recorder as the handlers of a parser. */
+    protected static void setHandlers(SAXParser parser, EventRecorder recorder) throws Exception {
+        parser.setContentHandler(recorder);
+        parser.setDTDHandler(recorder);
+        parser.setErrorHandler(recorder);
+        parser.setProperty(LEXICAL_HANDLER, recorder);
+    } // setHandlers(SAXParser,EventRecorder)
+
+    /**
+     * Returns a document with the given version and encoding declaration,
+     * or without an XML declaration if the version is null. Unless wide
+     * characters are allowed, all the characters are in ISO-8859-1.
+     */
+    protected static String createDocument(String version, String encoding, boolean wide) {
+        StringBuffer buffer = new StringBuffer();
+        if (version != null) {
+            buffer.append("<?xml version=\"").append(version)
+                  .append("\" encoding='").append(encoding).append("'?>\r\n");
+        }
+        buffer.append("<?before root?>\n<!-- before - >\n-->\n");
+        buffer.append(INTERNAL_SUBSET);
+        buffer.append("<root xmlns='urn:root' xmlns:p=\"urn:p\" p:attr='x &gt; y' other=\"'>'\">\n");
+        for (int i = 0; i < 40; i++) {
+            buffer.append("<p:para n='").append(i).append("' entity='&text;'>")
+                  .append("text ").append(i).append(" &markup; &text; &fromParam; ")
+                  .append("&#x3c; &#62; &lt;&amp;&gt;&apos;&quot; ]]&gt;")
+                  .append(wide ? " \u00e9\u4e2d\ud834\udd1e" : " \u00e9\u00ff")
+                  .append("<![CDATA[<cdata> ]] ]> ]]]]><![CDATA[>&amp;]]>")
+                  .append("<?pi data > ? ?>")
+                  .append("<!-- comment - > <tag> -->")
+                  .append("<empty a='&lt;>' b=\"&#x3e;\" />")
+                  .append("</p:para>\r\n");
+        }
+        buffer.append("</root>\n<!-- after -->\n<?after root?>");
+        return buffer.toString();
+    } // createDocument(String,String,boolean):String
+
+} // class XMLPushParserTest
@@ -0,0 +1,484 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package schema;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.impl.xs.SubstitutionGroupHandler;
+import org.apache.xerces.impl.xs.XMLSchemaLoader;
+import org.apache.xerces.impl.xs.XSComplexTypeDecl;
+import org.apache.xerces.impl.xs.XSParticleDecl;
+import org.apache.xerces.impl.xs.models.CMBuilder;
+import org.apache.xerces.impl.xs.models.CMNodeFactory;
+import org.apache.xerces.impl.xs.models.XSCMValidator;
+import org.apache.xerces.impl.xs.models.XSCountingCM;
+import org.apache.xerces.impl.xs.models.XSDFACM;
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.xni.QName;
+import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.grammars.XSGrammar;
+import org.apache.xerces.xni.parser.XMLErrorHandler;
+import org.apache.xerces.xni.parser.XMLInputSource;
+import org.apache.xerces.xni.parser.XMLParseException;
+import org.apache.xerces.xs.XSElementDeclaration;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests content models with occurrence ranges checked by counters. Random
+ * content models with small ranges are built both as counting models and
+ * as DFAs, and must accept and reject the same element sequences at the
+ * same positions. Schemas with large and nested occurrence ranges, which
+ * would be too big to expand, are validated against documents whose
+ * validity is given by an equivalent regular expression.
+ *
+ * @version $Id$
+ */
+public class CountingContentModelTest extends TestCase {
+
+    protected final static String SCHEMA_VALIDATION =
+        "http://apache.org/xml/features/validation/schema";
+
+    protected final static String VALIDATION =
+        "http://xml.org/sax/features/validation";
+
+    protected final static String SCHEMA_LOCATION =
+        "http://apache.org/xml/properties/schema/external-noNamespaceSchemaLocation";
+
+    /** The element names of the random content models. */
+    protected final static String NAMES = "abcde";
+
+    /** The element names of the random sequences, including an undeclared one. */
+    protected final static String SEQUENCE_NAMES = NAMES + "z";
+
+    /** Number of random content models compared. */
+    protected final static int MODELS = 400;
+
+    /** Number of sequences checked against each random content model. */
+    protected final static int SEQUENCES = 300;
+
+    protected final static SubstitutionGroupHandler SUBSTITUTION_GROUP_HANDLER =
+        new SubstitutionGroupHandler(null);
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(CountingContentModelTest.class);
+    }
+
+    public CountingContentModelTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Compares counting content models with DFAs over random content models
+     * and sequences, most of which are close to valid. UPA isn't checked,
+     * so the content models may be nondeterministic; a counting model must
+     * then either be refused or match the same particles as the DFA.
+     */
+    public void testRandomModels() throws Exception {
+        Random random = new Random(20061019);
+        int compared = 0;
+        for (int i = 0; i < MODELS; i++) {
+            String particle = "<xs:sequence>" + randomParticle(random, 3) + "</xs:sequence>";
+            XSComplexTypeDecl type = loadType(particle);
+            if (type == null) {
+                continue;
+            }
+            XSCMValidator expected = new CMBuilder(new CMNodeFactory()).getContentModel(type, false);
+            XSCMValidator actual = XSCountingCM.create((XSParticleDecl) type.getParticle(),
+                                                       new CMNodeFactory());
+            if (!(expected instanceof XSDFACM) || actual == null) {
+                continue;
+            }
+            for (int j = 0; j < SEQUENCES; j++) {
+                String sequence = randomSequence(random, expected);
+                compare(particle + ' ' + sequence, expected, actual, sequence);
+            }
+            compared++;
+        }
+        assertTrue("compared " + compared, compared > MODELS / 4);
+    }
+
+    public void testLargeRanges() throws Exception {
+        String particle =
+            "<xs:sequence>\n" +
+            " <xs:element name='a' minOccurs='2' maxOccurs='5000'/>\n" +
+            " <xs:choice minOccurs='1' maxOccurs='3000'>\n" +
+            "  <xs:element name='b'/><xs:element name='c'/>\n" +
+            " </xs:choice>\n" +
+            " <xs:sequence minOccurs='3' maxOccurs='3'>\n" +
+            "  <xs:element name='d'/><xs:element name='e'/>\n" +
+            " </xs:sequence>\n" +
+            "</xs:sequence>\n";
+        assertEquals(true, isCounted(particle));
+        check(particle, "a{2,5000}[bc]{1,3000}(?:de){3}", new String[] {
+            repeat("a", 2) + "b" + repeat("de", 3),
+            repeat("a", 1) + "b" + repeat("de", 3),
+            repeat("a", 5000) + repeat("bc", 1500) + repeat("de", 3),
+            repeat("a", 5001) + repeat("bc", 1500) + repeat("de", 3),
+            repeat("a", 5000) + repeat("bc", 1500) + "b" + repeat("de", 3),
+            repeat("a", 100) + repeat("c", 20) + repeat("de", 2),
+            repeat("a", 100) + repeat("c", 20) + repeat("de", 4),
+            repeat("a", 100) + repeat("de", 3),
+            repeat("a", 100) + repeat("c", 20) + repeat("de", 3) + "a",
+        });
+    }
+
+    public void testLargeNestedRanges() throws Exception {
+        String particle =
+            "<xs:sequence>\n" +
+            " <xs:sequence minOccurs='2' maxOccurs='1000'>\n" +
+            "  <xs:element name='a' minOccurs='1' maxOccurs='3'/>\n" +
+            "  <xs:element name='b'/>\n" +
+            " </xs:sequence>\n" +
+            " <xs:element name='c' minOccurs='0'/>\n" +
+            "</xs:sequence>\n";
+        assertEquals(true, isCounted(particle));
+        check(particle, "(?:a{1,3}b){2,1000}c?", new String[] {
+            "abab",
+            "ab",
+            "aaabaaabc",
+            "aaaab" + "ab",
+            repeat("aab", 1000) + "c",
+            repeat("aab", 1001),
+            repeat("aaab", 999) + "b",
+            repeat("ab", 500) + "cc",
+        });
+    }
+
+    public void testNestedUnboundedRanges() throws Exception {
+        String particle =
+            "<xs:sequence>\n" +
+            " <xs:sequence minOccurs='1' maxOccurs='700'>\n" +
+            "  <xs:element name='a'/>\n" +
+            "  <xs:sequence minOccurs='0' maxOccurs='unbounded'>\n" +
+            "   <xs:element name='b' minOccurs='2' maxOccurs='400'/>\n" +
+            "   <xs:element name='c'/>\n" +
+            "  </xs:sequence>\n" +
+            " </xs:sequence>\n" +
+            " <xs:element name='d'/>\n" +
+            "</xs:sequence>\n";
+        assertEquals(true, isCounted(particle));
+        check(particle, "(?:a(?:b{2,400}c)*+){1,700}+d", new String[] {
+            "ad",
+            "d",
+            repeat("a", 700) + "d",
+            repeat("a", 701) + "d",
+            "a" + repeat(repeat("b", 400) + "c", 50) + "d",
+            "a" + repeat("b", 401) + "cd",
+            "abcd",
+            repeat("abbc", 700) + "d",
+            repeat("abbcbbbc", 700) + "ad",
+        });
+    }
+
+    public void testRangesWhichCantBeCounted() throws Exception {
+        // the a particles may be joined in more than one way, so the
+        // model is expanded
+        String particle =
+            "<xs:sequence minOccurs='50' maxOccurs='100'>\n" +
+            " <xs:element name='a' minOccurs='1' maxOccurs='2'/>\n" +
+            "</xs:sequence>\n";
+        assertEquals(false, isCounted(particle));
+        check(particle, "a{50,200}", new String[] {
+            repeat("a", 49),
+            repeat("a", 50),
+            repeat("a", 137),
+            repeat("a", 200),
+            repeat("a", 201),
+        });
+    }
+
+    public void testNondeterministicModel() throws Exception {
+        // an e after a b may repeat the inner sequence or end the content,
+        // which violates UPA; without full schema checking such models are
+        // left to the DFA, which only tries the first particle
+        XSComplexTypeDecl type = loadType(
+            "<xs:sequence>\n" +
+            " <xs:sequence minOccurs='1' maxOccurs='300'>\n" +
+            "  <xs:element name='e'/><xs:element name='b'/>\n" +
+            " </xs:sequence>\n" +
+            " <xs:element name='e'/>\n" +
+            "</xs:sequence>\n");
+        assertNull(XSCountingCM.create((XSParticleDecl) type.getParticle(), new CMNodeFactory()));
+        type = loadType(
+            "<xs:sequence>\n" +
+            " <xs:sequence minOccurs='1' maxOccurs='300'>\n" +
+            "  <xs:element name='e'/><xs:element name='b'/>\n" +
+            " </xs:sequence>\n" +
+            " <xs:element name='c'/>\n" +
+            "</xs:sequence>\n");
+        assertNotNull(XSCountingCM.create((XSParticleDecl) type.getParticle(), new CMNodeFactory()));
+    }
+
+    //
+    // Protected methods
+    //
+
+    /**
+     * Feeds a sequence of elements to two content models and checks that
+     * they match the same declarations and fail at the same position.
+     */
+    protected void compare(String message, XSCMValidator expected, XSCMValidator actual,
+                           String sequence) {
+        int[] expectedState = expected.startContentModel();
+        int[] actualState = actual.startContentModel();
+        for (int i = 0; i < sequence.length(); i++) {
+            QName name = qname(sequence.charAt(i));
+            Object expectedDecl = expected.oneTransition(name, expectedState, SUBSTITUTION_GROUP_HANDLER);
+            Object actualDecl = actual.oneTransition(name, actualState, SUBSTITUTION_GROUP_HANDLER);
+            boolean expectedError = expectedState[0] == XSCMValidator.FIRST_ERROR;
+            assertEquals(message + ": error at " + i, expectedError,
+                         actualState[0] == XSCMValidator.FIRST_ERROR);
+            if (expectedError) {
+                return;
+            }
+            assertSame(message + ": declaration at " + i, expectedDecl, actualDecl);
+        }
+        assertEquals(message + ": end", expected.endContentModel(expectedState),
+                     actual.endContentModel(actualState));
+    } // compare(String,XSCMValidator,XSCMValidator,String)
+
+    /**
+     * Validates documents whose root contains the given sequences of
+     * elements, and checks that they are valid exactly when the regular
+     * expression matches the sequence. Possessive quantifiers keep the
+     * regular expressions of long sequences from overflowing the stack.
+     */
+    protected void check(String particle, String regex, String[] sequences) throws Exception {
+        File schema = writeSchema(particle);
+        Pattern pattern = Pattern.compile(regex);
+        int valid = 0;
+        for (int i = 0; i < sequences.length; i++) {
+            StringBuffer document = new StringBuffer("<root>");
+            for (int j = 0; j < sequences[i].length(); j++) {
+                document.append('<').append(sequences[i].charAt(j)).append("/>");
+            }
+            document.append("</root>");
+
+            SAXParser parser = new SAXParser();
+            parser.setFeature(VALIDATION, true);
+            parser.setFeature(SCHEMA_VALIDATION, true);
+            parser.setProperty(SCHEMA_LOCATION, schema.toURI().toString());
+            ErrorCounter counter = new ErrorCounter();
+            parser.setErrorHandler(counter);
+            parser.parse(new InputSource(new StringReader(document.toString())));
+
+            boolean matches = pattern.matcher(sequences[i]).matches();
+            String message = regex + ": sequence " + i + " of length " + sequences[i].length();
+            assertEquals(message, matches, counter.fErrors == 0);
+            if (matches) {
+                valid++;
+            }
+        }
+        assertTrue(regex + ": no valid sequence", valid > 0);
+        assertTrue(regex + ": no invalid sequence", valid < sequences.length);
+    } // check(String,String,String[])
+
+    /** Returns true if the content model of the particle uses counters. */
+    protected static boolean isCounted(String particle) {
+        XSComplexTypeDecl type = loadType(particle);
+        assertNotNull(type);
+        return new CMBuilder(new CMNodeFactory()).getContentModel(type, false) instanceof XSCountingCM;
+    } // isCounted(String):boolean
+
+    /**
+     * Loads a schema whose root element has the given particle, and
+     * returns the type of the root, or null if the schema has errors.
+     * The schema isn't fully checked, so the content model may violate
+     * UPA.
+     */
+    protected static XSComplexTypeDecl loadType(String particle) {
+        XMLSchemaLoader loader = new XMLSchemaLoader();
+        final boolean[] errors = new boolean[1];
+        loader.setErrorHandler(new XMLErrorHandler() {
+            public void warning(String domain, String key, XMLParseException exception) {
+            }
+            public void error(String domain, String key, XMLParseException exception) {
+                errors[0] = true;
+            }
+            public void fatalError(String domain, String key, XMLParseException exception)
+                throws XNIException {
+                errors[0] = true;
+                throw exception;
+            }
+        });
+        XSGrammar grammar;
+        try {
+            grammar = (XSGrammar) loader.loadGrammar(
+                new XMLInputSource(null, null, null, new StringReader(createSchema(particle)), null));
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+        catch (XNIException e) {
+            return null;
+        }
+        if (errors[0]) {
+            return null;
+        }
+        XSElementDeclaration root = grammar.toXSModel().getElementDeclaration("root", null);
+        return (XSComplexTypeDecl) root.getTypeDefinition();
+    } // loadType(String):XSComplexTypeDecl
+
+    /** Returns a schema whose root element has the given particle. */
+    protected static String createSchema(String particle) {
+        return "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>\n" +
+               "<xs:element name='root'>\n" +
+               " <xs:complexType>\n" +
+               particle +
+               " </xs:complexType>\n" +
+               "</xs:element>\n" +
+               "</xs:schema>\n";
+    } // createSchema(String):String
+
+    /** Writes a schema whose root element has the given particle. */
+    protected static File writeSchema(String particle) throws IOException {
+        File file = File.createTempFile("counting", ".xsd");
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(createSchema(particle).getBytes("UTF-8"));
+        }
+        finally {
+            out.close();
+        }
+        return file;
+    } // writeSchema(String):File
+
+    /**
+     * Returns a random particle: an element, or a sequence or choice of
+     * up to three particles, with a small occurrence range.
+     */
+    protected static String randomParticle(Random random, int depth) {
+        int minOccurs = random.nextInt(3);
+        String maxOccurs;
+        if (random.nextInt(5) == 0) {
+            maxOccurs = "unbounded";
+        }
+        else {
+            maxOccurs = Integer.toString(Math.max(1, minOccurs + random.nextInt(3)));
+        }
+        String occurs = " minOccurs='" + minOccurs + "' maxOccurs='" + maxOccurs + "'";
+        if (depth == 0 || random.nextInt(3) == 0) {
+            return "<xs:element name='" + NAMES.charAt(random.nextInt(NAMES.length())) + "'"
+                + occurs + "/>";
+        }
+        String compositor = random.nextBoolean() ? "xs:sequence" : "xs:choice";
+        StringBuffer buffer = new StringBuffer();
+        buffer.append('<').append(compositor).append(occurs).append('>');
+        int children = 1 + random.nextInt(3);
+        for (int i = 0; i < children; i++) {
+            buffer.append(randomParticle(random, depth - 1));
+        }
+        buffer.append("</").append(compositor).append('>');
+        return buffer.toString();
+    } // randomParticle(Random,int):String
+
+    /**
+     * Returns a random sequence of elements: a sequence the content model
+     * accepts element by element, possibly changed at one position.
+     */
+    protected static String randomSequence(Random random, XSCMValidator model) {
+        StringBuffer buffer = new StringBuffer();
+        int[] state = model.startContentModel();
+        int length = random.nextInt(20);
+        for (int i = 0; i < length; i++) {
+            // the first element the model allows, from a random start
+            int start = random.nextInt(NAMES.length());
+            int[] next = null;
+            for (int j = 0; j < NAMES.length() && next == null; j++) {
+                char c = NAMES.charAt((start + j) % NAMES.length());
+                next = (int[]) state.clone();
+                model.oneTransition(qname(c), next, SUBSTITUTION_GROUP_HANDLER);
+                if (next[0] == XSCMValidator.FIRST_ERROR) {
+                    next = null;
+                }
+                else {
+                    buffer.append(c);
+                }
+            }
+            if (next == null || (model.endContentModel(next) && random.nextInt(4) == 0)) {
+                break;
+            }
+            state = next;
+        }
+        switch (random.nextInt(4)) {
+            case 0:
+                int position = random.nextInt(buffer.length() + 1);
+                buffer.insert(position, SEQUENCE_NAMES.charAt(random.nextInt(SEQUENCE_NAMES.length())));
+                break;
+            case 1:
+                if (buffer.length() > 0) {
+                    buffer.deleteCharAt(random.nextInt(buffer.length()));
+                }
+                break;
+            case 2:
+                if (buffer.length() > 0) {
+                    buffer.setCharAt(random.nextInt(buffer.length()),
+                                     SEQUENCE_NAMES.charAt(random.nextInt(SEQUENCE_NAMES.length())));
+                }
+                break;
+        }
+        return buffer.toString();
+    } // randomSequence(Random,XSCMValidator):String
+
+    /** Returns the name of an element without a namespace. */
+    protected static QName qname(char c) {
+        String name = String.valueOf(c).intern();
+        return new QName(null, name, name, null);
+    } // qname(char):QName
+
+    /** Returns a string repeated. */
+    protected static String repeat(String s, int count) {
+        StringBuffer buffer = new StringBuffer(s.length() * count);
+        for (int i = 0; i < count; i++) {
+            buffer.append(s);
+        }
+        return buffer.toString();
+    } // repeat(String,int):String
+
+    //
+    // Classes
+    //
+
+    /** Counts validation errors. */
+    protected static class ErrorCounter extends DefaultHandler {
+
+        /** Number of errors. */
+        protected int fErrors;
+
+        public void error(SAXParseException exception) {
+            fErrors++;
+        }
+
+        public void fatalError(SAXParseException exception) throws SAXParseException {
+            throw exception;
+        }
+
+    } // class ErrorCounter
+
+} // class CountingContentModelTest
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package schema;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Random;
+
+import javax.xml.datatype.DatatypeConstants;
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.impl.dv.InvalidDatatypeValueException;
+import org.apache.xerces.impl.dv.SchemaDVFactory;
+import org.apache.xerces.impl.dv.ValidatedInfo;
+import org.apache.xerces.impl.dv.XSSimpleType;
+import org.apache.xerces.impl.validation.ValidationState;
+import org.apache.xerces.jaxp.datatype.DatatypeFactoryImpl;
+import org.apache.xerces.xs.datatypes.XSDateTime;
+
+/**
+ * Checks the seconds of date/time values, which are parsed without
+ * allocating when they have at most nine fractional digits: the seconds
+ * must be the double which <code>Double.parseDouble</code> gives for
+ * every number of fractional digits, malformed seconds must be rejected,
+ * the nanoseconds of the implementation must be the rounded fraction of
+ * the seconds, which up to nine digits is the exact lexical fraction,
+ * and the XMLGregorianCalendar of a dateTime must be the one built from
+ * the fields with an arbitrary precision year.
+ *
+ * @version $Id$
+ */
+public class DateTimeSecondsTest extends TestCase {
+
+    protected final static SchemaDVFactory FACTORY = SchemaDVFactory.getInstance();
+
+    /** Largest number of fractional digits of the random seconds. */
+    protected final static int MAX_FRACTION_DIGITS = 14;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(DateTimeSecondsTest.class);
+    }
+
+    public DateTimeSecondsTest(String name) {
+        super(name);
+    }
+
+    public void testSeconds() throws Exception {
+        String[] seconds = {
+            "00", "07", "59", "00.0", "05.5", "59.999999999", "59.9999999999",
+            "00.000000001", "00.0000000001", "12.345678901", "01.100000000",
+            "09.000", "30.1234567890123456789",
+        };
+        for (int i = 0; i < seconds.length; i++) {
+            checkSeconds(seconds[i]);
+        }
+        Random random = new Random(35);
+        for (int i = 0; i < 5000; i++) {
+            StringBuffer buffer = new StringBuffer();
+            buffer.append(random.nextInt(6)).append(random.nextInt(10));
+            int fractionDigits = i % (MAX_FRACTION_DIGITS + 1);
+            if (fractionDigits > 0) {
+                buffer.append('.');
+                for (int j = 0; j < fractionDigits; j++) {
+                    buffer.append(random.nextInt(10));
+                }
+            }
+            checkSeconds(buffer.toString());
+        }
+    }
+
+    public void testMalformedSeconds() throws Exception {
+        String[] seconds = {
+            "5", "5.", "05.", "005", "5.5", ".5", "05.a", "0a", "05..5", "05.5.5",
+            "+5.0", "-05", "05e1", "60", "60.0", "61", "99.5", "",
+        };
+        XSSimpleType[] types = { builtIn("dateTime"), builtIn("time") };
+        for (int i = 0; i < seconds.length; i++) {
+            for (int j = 0; j < types.length; j++) {
+                try {
+                    validate(types[j], lexical(types[j], seconds[i]));
+                    fail(types[j].getName() + " '" + seconds[i] + "'");
+                }
+                catch (InvalidDatatypeValueException e) {
+                    assertEquals("cvc-datatype-valid.1.2.1", e.getKey());
+                }
+            }
+        }
+    }
+
+    public void testDurationNanoseconds() throws Exception {
+        XSSimpleType duration = builtIn("duration");
+        assertEquals(500000000, getNanoseconds(validate(duration, "PT1.5S")));
+        assertEquals(-250000000, getNanoseconds(validate(duration, "-PT2.25S")));
+        assertEquals(1, getNanoseconds(validate(duration, "P1DT0.000000001S")));
+        assertEquals(0, getNanoseconds(validate(duration, "P1Y2M")));
+    }
+
+    public void testXMLGregorianCalendar() throws Exception {
+        String[] values = {
+            "2006-10-19T12:34:56", "2006-10-19T12:34:56Z", "2006-10-19T12:34:56.000-05:30",
+            "2006-10-19T23:59:59+14:00", "2006-10-19T00:00:00.0", "0001-01-01T00:00:00Z",
+            "-0044-03-15T12:00:00", "12345-06-07T08:09:10-00:00", "2006-10-19T24:00:00",
+            "2006-12-31T23:59:59.5Z", "2006-10-19T12:34:56.123456789+01:00",
+            "2006-10-19T12:34:56.1234567891",
+        };
+        XSSimpleType dateTime = builtIn("dateTime");
+        DatatypeFactoryImpl factory = new DatatypeFactoryImpl();
+        for (int i = 0; i < values.length; i++) {
+            XSDateTime value = validate(dateTime, values[i]);
+            double seconds = value.getSeconds();
+            XMLGregorianCalendar calendar = value.getXMLGregorianCalendar();
+            // as the calendar was built before whole seconds had a shortcut
+            XMLGregorianCalendar expected = factory.newXMLGregorianCalendar(
+                    BigInteger.valueOf(value.getYears()), value.getMonths(), value.getDays(),
+                    value.getHours(), value.getMinutes(), (int) seconds,
+                    seconds != (int) seconds ? calendar.getFractionalSecond() : null,
+                    value.hasTimeZone()
+                        ? value.getTimeZoneHours() * 60 + value.getTimeZoneMinutes()
+                        : DatatypeConstants.FIELD_UNDEFINED);
+            assertEquals(values[i], expected, calendar);
+            assertEquals(values[i], expected.toXMLFormat(), calendar.toXMLFormat());
+            assertEquals(values[i], expected.getEonAndYear(), calendar.getEonAndYear());
+            assertEquals(values[i], expected.getTimezone(), calendar.getTimezone());
+            if (seconds == (int) seconds) {
+                assertNull(values[i], calendar.getFractionalSecond());
+            }
+            else {
+                String lexical = values[i].substring(values[i].indexOf('.'));
+                int end = 1;
+                while (end < lexical.length() && Character.isDigit(lexical.charAt(end))) {
+                    end++;
+                }
+                assertEquals(values[i], new BigDecimal("0" + lexical.substring(0, end)).doubleValue(),
+                             calendar.getFractionalSecond().doubleValue(), 1e-15);
+            }
+        }
+    }
+
+    //
+    // Protected methods
+    //
+
+    /**
+     * Validates the seconds in a dateTime and a time and checks the
+     * seconds and nanoseconds of the values.
+     */
+    protected static void checkSeconds(String seconds) throws Exception {
+        double expected = Double.parseDouble(seconds);
+        XSSimpleType[] types = { builtIn("dateTime"), builtIn("time") };
+        for (int i = 0; i < types.length; i++) {
+            String lexical = lexical(types[i], seconds);
+            XSDateTime value = validate(types[i], lexical);
+            assertEquals(lexical, Double.doubleToLongBits(expected),
+                         Double.doubleToLongBits(value.getSeconds()));
+            int nanos = getNanoseconds(value);
+            assertEquals(lexical, toNanoseconds(new BigDecimal(value.getSeconds())), nanos);
+            // up to nine digits the double is close enough to the lexical value
+            int dot = seconds.indexOf('.');
+            if (dot == -1 || seconds.length() - dot - 1 <= 9) {
+                assertEquals(lexical, toNanoseconds(new BigDecimal(seconds)), nanos);
+            }
+        }
+    } // checkSeconds(String)
+
+    /**
+     * Returns the fraction of a number of seconds in nanoseconds,
+     * rounded to the nearest and kept below one second.
+     */
+    protected static int toNanoseconds(BigDecimal seconds) {
+        BigDecimal fraction = seconds.subtract(new BigDecimal(seconds.toBigInteger()));
+        int nanos = fraction.movePointRight(9).setScale(0, BigDecimal.ROUND_HALF_UP).intValue();
+        return Math.min(nanos, 999999999);
+    } // toNanoseconds(BigDecimal):int
+
+    /** Returns a dateTime or time value with the given seconds. */
+    protected static String lexical(XSSimpleType type, String seconds) {
+        String time = "12:34:" + seconds + "+01:00";
+        return type.getName().equals("time") ? time : "2006-10-19T" + time;
+    } // lexical(XSSimpleType,String):String
+
+    /** Calls the nanoseconds accessor of the implementation of a value. */
+    protected static int getNanoseconds(XSDateTime value) throws Exception {
+        Method method = value.getClass().getMethod("getNanoseconds", new Class[0]);
+        method.setAccessible(true);
+        return ((Integer) method.invoke(value, new Object[0])).intValue();
+    } // getNanoseconds(XSDateTime):int
+
+    protected static XSDateTime validate(XSSimpleType type, String value) throws Exception {
+        ValidationState context = new ValidationState();
+        return (XSDateTime) type.validate(value, context, new ValidatedInfo());
+    } // validate(XSSimpleType,String):XSDateTime
+
+    protected static XSSimpleType builtIn(String name) {
+        return FACTORY.getBuiltInType(name);
+    }
+
+} // class DateTimeSecondsTest
@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package schema;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.impl.dv.InvalidDatatypeValueException;
+import org.apache.xerces.impl.dv.SchemaDVFactory;
+import org.apache.xerces.impl.dv.ValidatedInfo;
+import org.apache.xerces.impl.dv.XSFacets;
+import org.apache.xerces.impl.dv.XSSimpleType;
+import org.apache.xerces.impl.validation.ValidationState;
+import org.apache.xerces.xs.datatypes.XSDecimal;
+
+/**
+ * Checks decimal values, whose digits are kept in a long when there are
+ * at most 18 of them (or 19 for an integer which fits) and as strings
+ * otherwise, against <code>java.math.BigDecimal</code>: their canonical
+ * forms, numeric values, comparisons, equality and hash codes, including
+ * between values on either side of the representations, and the
+ * totalDigits and fractionDigits facets.
+ *
+ * @version $Id$
+ */
+public class DecimalTest extends TestCase {
+
+    protected final static SchemaDVFactory FACTORY = SchemaDVFactory.getInstance();
+
+    /** Values on either side of the long representation. */
+    protected final static String[] EDGES = {
+        "0", "-0", "+0", "0.0", "-0.000", ".0", "-.0", "00", "0.", "1", "-1", "1.0", "1.000",
+        "0.1", "-0.10", ".5", "000123.4500",
+        "999999999999999999", "-999999999999999999", "1000000000000000000",
+        "99999999999999999.9", "0.999999999999999999", "0.0000000000000000001",
+        "9223372036854775807", "+9223372036854775807", "-9223372036854775807",
+        "9223372036854775808", "-9223372036854775808", "-9223372036854775809",
+        "9223372036854775807.0", "9223372036854775807.5", "09223372036854775807.000",
+        "9999999999999999999", "10000000000000000000", "1234567890123456789.1",
+        "123456789012345678.9", "12345678901234567.89", "1.234567890123456789",
+        "0.1234567890123456789", "-0.1234567890123456789000",
+    };
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(DecimalTest.class);
+    }
+
+    public DecimalTest(String name) {
+        super(name);
+    }
+
+    public void testValues() throws Exception {
+        String[] values = createValues();
+        XSSimpleType decimal = builtIn("decimal");
+        for (int i = 0; i < values.length; i++) {
+            XSDecimal value = validate(decimal, values[i]);
+            BigDecimal expected = toBigDecimal(values[i]);
+            assertEquals(values[i], canonical(expected), value.toString());
+            assertEquals(values[i], 0, expected.compareTo(value.getBigDecimal()));
+            // the canonical form is parsed to the same value
+            assertEquals(values[i], value, validate(decimal, value.toString()));
+        }
+    }
+
+    public void testIntegers() throws Exception {
+        String[] values = createValues();
+        XSSimpleType integer = builtIn("integer");
+        for (int i = 0; i < values.length; i++) {
+            BigDecimal expected = toBigDecimal(values[i]);
+            if (values[i].indexOf('.') != -1) {
+                assertInvalid(integer, values[i]);
+                continue;
+            }
+            XSDecimal value = validate(integer, values[i]);
+            BigInteger big = expected.toBigInteger();
+            assertEquals(values[i], big.toString(), value.toString());
+            assertEquals(values[i], big, value.getBigInteger());
+            if (big.bitLength() < 64) {
+                assertEquals(values[i], big.longValue(), value.getLong());
+            }
+            // an integer is equal to the same decimal
+            XSDecimal decimal = validate(builtIn("decimal"), values[i] + ".0");
+            assertEquals(values[i], 0, compare(value, decimal));
+        }
+    }
+
+    public void testLongBounds() throws Exception {
+        XSSimpleType type = builtIn("long");
+        assertEquals(Long.MAX_VALUE, validate(type, "9223372036854775807").getLong());
+        assertEquals(Long.MIN_VALUE, validate(type, "-9223372036854775808").getLong());
+        assertEquals(Long.MAX_VALUE, validate(type, "+009223372036854775807").getLong());
+        assertInvalid(type, "9223372036854775808");
+        assertInvalid(type, "-9223372036854775809");
+        assertInvalid(type, "10000000000000000000");
+        type = builtIn("unsignedLong");
+        assertEquals(new BigInteger("18446744073709551615"),
+                     validate(type, "18446744073709551615").getBigInteger());
+        assertInvalid(type, "18446744073709551616");
+        assertInvalid(type, "-1");
+        assertEquals(BigInteger.ZERO, validate(type, "-0").getBigInteger());
+    }
+
+    public void testComparisons() throws Exception {
+        String[] values = createValues();
+        XSDecimal[] decimals = new XSDecimal[values.length];
+        BigDecimal[] expected = new BigDecimal[values.length];
+        for (int i = 0; i < values.length; i++) {
+            decimals[i] = validate(builtIn("decimal"), values[i]);
+            expected[i] = toBigDecimal(values[i]);
+        }
+        for (int i = 0; i < values.length; i++) {
+            for (int j = 0; j < values.length; j++) {
+                String message = values[i] + " and " + values[j];
+                int order = expected[i].compareTo(expected[j]);
+                assertEquals(message, order, compare(decimals[i], decimals[j]));
+                assertEquals(message, order == 0, decimals[i].equals(decimals[j]));
+                if (order == 0) {
+                    assertEquals(message, decimals[i].hashCode(), decimals[j].hashCode());
+                }
+            }
+        }
+    }
+
+    public void testDigitFacets() throws Exception {
+        String[] values = createValues();
+        int[] totalDigits = { 1, 2, 18, 19, 20, 30 };
+        int[] fractionDigits = { 0, 1, 2, 18, 19 };
+        for (int t = 0; t < totalDigits.length; t++) {
+            for (int f = 0; f < fractionDigits.length; f++) {
+                if (fractionDigits[f] > totalDigits[t]) {
+                    continue;
+                }
+                XSFacets facets = new XSFacets();
+                facets.totalDigits = totalDigits[t];
+                facets.fractionDigits = fractionDigits[f];
+                XSSimpleType type = FACTORY.createTypeRestriction(null, null, (short) 0, builtIn("decimal"), null);
+                type.applyFacets(facets, (short) (XSSimpleType.FACET_TOTALDIGITS | XSSimpleType.FACET_FRACTIONDIGITS),
+                                 (short) 0, new ValidationState());
+                for (int i = 0; i < values.length; i++) {
+                    BigDecimal value = toBigDecimal(values[i]);
+                    int scale = Math.max(0, value.stripTrailingZeros().scale());
+                    BigInteger integerPart = value.abs().toBigInteger();
+                    int digits = (integerPart.signum() == 0 ? 0 : integerPart.toString().length()) + scale;
+                    boolean valid = digits <= totalDigits[t] && scale <= fractionDigits[f];
+                    String message = values[i] + " with " + totalDigits[t] + " digits, "
+                        + fractionDigits[f] + " fraction digits";
+                    try {
+                        type.validate(values[i], new ValidationState(), new ValidatedInfo());
+                        assertTrue(message, valid);
+                    }
+                    catch (InvalidDatatypeValueException e) {
+                        assertFalse(message + ": " + e.getMessage(), valid);
+                    }
+                }
+            }
+        }
+    }
+
+    //
+    // Protected methods
+    //
+
+    /**
+     * Returns the edge values and random values of up to 24 integer and
+     * fraction digits, with leading and trailing zeroes and signs.
+     */
+    protected static String[] createValues() {
+        List values = new ArrayList();
+        for (int i = 0; i < EDGES.length; i++) {
+            values.add(EDGES[i]);
+        }
+        Random random = new Random(36);
+        String[] signs = { "", "+", "-" };
+        for (int i = 0; i < 300; i++) {
+            StringBuffer buffer = new StringBuffer(signs[random.nextInt(3)]);
+            int zeroes = random.nextInt(4) == 0 ? random.nextInt(3) : 0;
+            for (int j = 0; j < zeroes; j++) {
+                buffer.append('0');
+            }
+            int intDigits = random.nextInt(25);
+            int fracDigits = random.nextInt(3) == 0 ? 0 : random.nextInt(25 - intDigits / 2);
+            appendDigits(buffer, intDigits, random);
+            if (fracDigits > 0 || buffer.length() == 0 || !Character.isDigit(buffer.charAt(buffer.length() - 1))) {
+                buffer.append('.');
+                appendDigits(buffer, Math.max(fracDigits, 1), random);
+                zeroes = random.nextInt(4) == 0 ? random.nextInt(3) : 0;
+                for (int j = 0; j < zeroes; j++) {
+                    buffer.append('0');
+                }
+            }
+            values.add(buffer.toString());
+        }
+        return (String[]) values.toArray(new String[values.size()]);
+    } // createValues():String[]
+
+    protected static void appendDigits(StringBuffer buffer, int count, Random random) {
+        for (int i = 0; i < count; i++) {
+            buffer.append((char) ('0' + random.nextInt(10)));
+        }
+    } // appendDigits(StringBuffer,int,Random)
+
+    /** Returns the canonical form of a decimal. */
+    protected static String canonical(BigDecimal value) {
+        if (value.signum() == 0) {
+            return "0.0";
+        }
+        String plain = value.stripTrailingZeros().toPlainString();
+        return plain.indexOf('.') == -1 ? plain + ".0" : plain;
+    } // canonical(BigDecimal):String
+
+    protected static BigDecimal toBigDecimal(String value) {
+        if (value.endsWith(".")) {
+            value = value + '0';
+        }
+        return new BigDecimal(value);
+    } // toBigDecimal(String):BigDecimal
+
+    /** Compares two decimals with the comparison of the implementation. */
+    protected static int compare(XSDecimal value1, XSDecimal value2) throws Exception {
+        Method method = value1.getClass().getMethod("compareTo", new Class[] { value1.getClass() });
+        method.setAccessible(true);
+        return ((Integer) method.invoke(value1, new Object[] { value2 })).intValue();
+    } // compare(XSDecimal,XSDecimal):int
+
+    protected static void assertInvalid(XSSimpleType type, String value) {
+        try {
+            type.validate(value, new ValidationState(), new ValidatedInfo());
+            fail(type.getName() + " '" + value + "'");
+        }
+        catch (InvalidDatatypeValueException e) {
+        }
+    } // assertInvalid(XSSimpleType,String)
+
+    protected static XSDecimal validate(XSSimpleType type, String value) throws Exception {
+        return (XSDecimal) type.validate(value, new ValidationState(), new ValidatedInfo());
+    } // validate(XSSimpleType,String):XSDecimal
+
+    protected static XSSimpleType builtIn(String name) {
+        return FACTORY.getBuiltInType(name);
+    }
+
+} // class DecimalTest
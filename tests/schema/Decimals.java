@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package schema;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import org.apache.xerces.impl.dv.SchemaDVFactory;
+import org.apache.xerces.impl.dv.ValidatedInfo;
+import org.apache.xerces.impl.dv.XSFacets;
+import org.apache.xerces.impl.dv.XSSimpleType;
+import org.apache.xerces.impl.validation.ValidationState;
+import org.apache.xerces.xs.datatypes.XSDecimal;
+
+/**
+ * This program tests the validation of decimal values of 1 to 30
+ * digits, on either side of the 18 digits which are kept in a long,
+ * against a type with totalDigits, fractionDigits and range facets. It
+ * also times the validation, in nanoseconds per value.
+ *
+ * @version $Id$
+ */
+public class Decimals {
+
+    //
+    // Constants
+    //
+
+    /** The numbers of digits tested. */
+    private static final int[] DIGITS = {
+        1, 4, 9, 12, 18, 19, 20, 25, 30,
+    };
+
+    /** The number of values of each size. */
+    private static final int VALUES = 1000;
+
+    /** The number of values validated for each timing. */
+    private static final int VALUES_TIMED = 2000000;
+
+    //
+    // MAIN
+    //
+
+    /** Main program entry. */
+    public static void main(String[] argv) throws Exception {
+
+        SchemaDVFactory factory = SchemaDVFactory.getInstance();
+        XSFacets facets = new XSFacets();
+        facets.totalDigits = 30;
+        facets.fractionDigits = 10;
+        facets.minInclusive = "-999999999999999999999999999999";
+        facets.maxExclusive = "999999999999999999999999999999";
+        XSSimpleType type = factory.createTypeRestriction(null, null, (short) 0,
+                factory.getBuiltInType("decimal"), null);
+        type.applyFacets(facets, (short) (XSSimpleType.FACET_TOTALDIGITS |
+                XSSimpleType.FACET_FRACTIONDIGITS | XSSimpleType.FACET_MININCLUSIVE |
+                XSSimpleType.FACET_MAXEXCLUSIVE), (short) 0, new ValidationState());
+
+        Random random = new Random(36);
+        for (int d = 0; d < DIGITS.length; d++) {
+            String[] values = new String[VALUES];
+            for (int i = 0; i < VALUES; i++) {
+                values[i] = createValue(DIGITS[d], random);
+            }
+
+            System.err.print(DIGITS[d] + " digits: validate ");
+            try {
+                testValidate(type, values);
+                long time = timeValidate(type, values);
+                System.err.println("PASS (" + time + " ns/value)");
+            }
+            catch (Exception e) {
+                System.err.println("FAIL: " + e.getMessage());
+            }
+        }
+
+    } // main(String[])
+
+    //
+    // Private static methods
+    //
+
+    /**
+     * Returns a value of the given number of digits, at most 10 of them
+     * in the fraction, with a random sign.
+     */
+    private static String createValue(int digits, Random random) {
+        StringBuffer buffer = new StringBuffer();
+        if (random.nextBoolean()) {
+            buffer.append('-');
+        }
+        int fractionDigits = random.nextInt(Math.min(digits, 10) + 1);
+        for (int i = 0; i < digits; i++) {
+            if (i == digits - fractionDigits) {
+                buffer.append('.');
+            }
+            buffer.append((char) ('0' + (i == 0 ? 1 + random.nextInt(9) : random.nextInt(10))));
+        }
+        return buffer.toString();
+    } // createValue(int,Random):String
+
+    /** Validates the values, checking them against BigDecimal. */
+    private static void testValidate(XSSimpleType type, String[] values) throws Exception {
+        ValidationState context = new ValidationState();
+        ValidatedInfo info = new ValidatedInfo();
+        for (int i = 0; i < values.length; i++) {
+            XSDecimal value = (XSDecimal) type.validate(values[i], context, info);
+            BigDecimal expected = new BigDecimal(values[i]);
+            if (expected.compareTo(value.getBigDecimal()) != 0) {
+                throw new Exception(values[i] + " validated as " + value);
+            }
+            XSDecimal again = (XSDecimal) type.validate(value.toString(), context, info);
+            if (!again.equals(value) || again.hashCode() != value.hashCode()) {
+                throw new Exception(values[i] + " isn't equal to its canonical form " + value);
+            }
+        }
+    } // testValidate(XSSimpleType,String[])
+
+    /** Times validating the values. */
+    private static long timeValidate(XSSimpleType type, String[] values) throws Exception {
+        ValidationState context = new ValidationState();
+        ValidatedInfo info = new ValidatedInfo();
+        final int rounds = Math.max(1, VALUES_TIMED / values.length);
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            long before = System.nanoTime();
+            for (int round = 0; round < rounds; round++) {
+                for (int i = 0; i < values.length; i++) {
+                    type.validate(values[i], context, info);
+                }
+            }
+            best = Math.min(best, System.nanoTime() - before);
+        }
+        return best / ((long) rounds * values.length);
+    } // timeValidate(XSSimpleType,String[]):long
+
+} // class Decimals
@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package schema;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.impl.dv.InvalidDatatypeValueException;
+import org.apache.xerces.impl.dv.SchemaDVFactory;
+import org.apache.xerces.impl.dv.ValidatedInfo;
+import org.apache.xerces.impl.dv.XSFacets;
+import org.apache.xerces.impl.dv.XSSimpleType;
+import org.apache.xerces.impl.dv.xs.XSSimpleTypeDecl;
+import org.apache.xerces.impl.validation.ValidationState;
+
+/**
+ * Checks that enumerations validate the same whether or not they are
+ * large enough to be indexed by the hash codes of their values. Each
+ * enumeration is padded with other values to sizes below, at and above
+ * the smallest indexed size, and the values which are equal to one of
+ * the enumeration values in another lexical form, or which are not,
+ * must be accepted or rejected at every size. The types include decimals
+ * held in a long and as digit strings, floats and doubles with NaN and
+ * negative zero, lists, unions and types derived from an enumeration.
+ *
+ * @version $Id$
+ */
+public class EnumerationIndexTest extends TestCase {
+
+    /** Sizes to which the enumerations are padded, as offsets from the smallest indexed size. */
+    protected final static int[] SIZE_OFFSETS = { -1, 0, 1, 56 };
+
+    protected final static SchemaDVFactory FACTORY = SchemaDVFactory.getInstance();
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(EnumerationIndexTest.class);
+    }
+
+    public EnumerationIndexTest(String name) {
+        super(name);
+    }
+
+    public void testDecimal() throws Exception {
+        check(builtIn("decimal"), "1000#.5",
+              new String[] { "1", "2.50", "-0.5", "0" },
+              new String[] { "1.0", "1", "01.000", "+1", "2.5", "2.500", "-.5", "-0.50", "0.0", "-0", "+0.000" },
+              new String[] { "1.01", "2.05", "0.5", "-1", "10", "1000.5" });
+        check(builtIn("decimal"), "10#.25",
+              new String[] { "1.0", "1.50" },
+              new String[] { "1", "1.5", "1.500" },
+              new String[] { "1.05", "15" });
+    }
+
+    public void testInteger() throws Exception {
+        check(builtIn("integer"), "1000#",
+              new String[] { "1", "-12", "0", "123456789012345678901234567890" },
+              new String[] { "01", "+1", "-012", "-0", "0", "000123456789012345678901234567890" },
+              new String[] { "2", "12", "123456789012345678901234567891", "10001" });
+    }
+
+    public void testLongBoundaries() throws Exception {
+        // on either side of the values which are held in a long
+        check(builtIn("decimal"), "-#.25",
+              new String[] { "9223372036854775807", "9223372036854775808.0",
+                             "-9223372036854775808", "-9223372036854775809" },
+              new String[] { "9223372036854775807.0", "09223372036854775808",
+                             "-9223372036854775808.00", "-9223372036854775809" },
+              new String[] { "9223372036854775806", "9223372036854775809",
+                             "-9223372036854775807", "-9223372036854775810" });
+        // fractions digits beyond the precision of a double
+        check(builtIn("decimal"), "-#.5",
+              new String[] { "0.12345678901234567890", "123456789012345678.9" },
+              new String[] { "0.1234567890123456789", "123456789012345678.90" },
+              new String[] { "0.12345678901234567891", "123456789012345679.9" });
+    }
+
+    public void testFloat() throws Exception {
+        checkFloatingPoint(builtIn("float"));
+    }
+
+    public void testDouble() throws Exception {
+        checkFloatingPoint(builtIn("double"));
+    }
+
+    public void testStrings() throws Exception {
+        check(builtIn("string"), "s#",
+              new String[] { "a", " a", "a b" },
+              new String[] { "a", " a", "a b" },
+              new String[] { "A", "a ", "a  b", "" });
+        check(builtIn("token"), "s#",
+              new String[] { "a b", "c" },
+              new String[] { " a  b ", "c", "\tc\n" },
+              new String[] { "ab", "a", "C" });
+        check(builtIn("hexBinary"), "F#F#",
+              new String[] { "0a", "" },
+              new String[] { "0A", "0a", "" },
+              new String[] { "0B", "0a0a" });
+        check(builtIn("anyURI"), "urn:#",
+              new String[] { "urn:a", "" },
+              new String[] { " urn:a ", "" },
+              new String[] { "URN:a", "urn:A", "urn:" });
+    }
+
+    public void testList() throws Exception {
+        XSSimpleType list = FACTORY.createTypeList(null, null, (short) 0, builtIn("decimal"), null);
+        check(list, "# #.5",
+              new String[] { "1 2", "3.0", "-0" },
+              new String[] { "1.0 2", " 1  2.00 ", "3", "0", "+0.0" },
+              new String[] { "2 1", "1", "1 2 3", "0.5" });
+        XSSimpleType floats = FACTORY.createTypeList(null, null, (short) 0, builtIn("float"), null);
+        check(floats, "# #",
+              new String[] { "NaN 0", "1.5" },
+              new String[] { "NaN -0", "NaN 0.0", "15E-1" },
+              new String[] { "0 NaN", "1.4" });
+    }
+
+    public void testUnion() throws Exception {
+        XSSimpleType decimalFirst = FACTORY.createTypeUnion(null, null, (short) 0,
+                new XSSimpleType[] { builtIn("decimal"), builtIn("string") }, null);
+        check(decimalFirst, "x#",
+              new String[] { "1.0", "abc" },
+              new String[] { "1", "01", "abc", "1.00" },
+              new String[] { "ABC", "1.5", "abcd" });
+        // the enumeration value is a string
+        XSSimpleType stringFirst = FACTORY.createTypeUnion(null, null, (short) 0,
+                new XSSimpleType[] { builtIn("string"), builtIn("decimal") }, null);
+        check(stringFirst, "x#",
+              new String[] { "1.0", "abc" },
+              new String[] { "1.0", "abc" },
+              new String[] { "1", "1.00" });
+        // the same value as an integer and as a float
+        XSSimpleType numbers = FACTORY.createTypeUnion(null, null, (short) 0,
+                new XSSimpleType[] { builtIn("integer"), builtIn("float") }, null);
+        check(numbers, "#.5",
+              new String[] { "1", "2.5", "NaN" },
+              new String[] { "01", "2.50", "NaN" },
+              new String[] { "1.0", "2" });
+    }
+
+    public void testListOfUnion() throws Exception {
+        XSSimpleType union = FACTORY.createTypeUnion(null, null, (short) 0,
+                new XSSimpleType[] { builtIn("integer"), builtIn("NMTOKEN") }, null);
+        XSSimpleType list = FACTORY.createTypeList(null, null, (short) 0, union, null);
+        check(list, "x# #",
+              new String[] { "1 a", "b 2" },
+              new String[] { "01 a", "b +2" },
+              new String[] { "a 1", "1 A", "b 2 c" });
+    }
+
+    public void testDerived() throws Exception {
+        String[] values = { "1", "2.50", "7", "-0.5" };
+        for (int i = 0; i < SIZE_OFFSETS.length; i++) {
+            XSSimpleType base = enumerate(builtIn("decimal"), pad(values, "1000#.5", i));
+            // inherits the enumeration of its base
+            XSFacets facets = new XSFacets();
+            facets.maxInclusive = "2.5";
+            XSSimpleType derived = restrict(base, facets, XSSimpleType.FACET_MAXINCLUSIVE);
+            assertSame(getIndex(base), getIndex(derived));
+            String message = "size " + (minSize() + SIZE_OFFSETS[i]);
+            assertValidity(message, derived, new String[] { "1.0", "2.5", "-.5" }, true);
+            assertValidity(message, derived, new String[] { "7", "1000.5", "1.01", "3" }, false);
+            facets = new XSFacets();
+            facets.pattern = "[0-9.]*";
+            XSSimpleType pattern = restrict(derived, facets, XSSimpleType.FACET_PATTERN);
+            assertSame(getIndex(base), getIndex(pattern));
+            assertValidity(message, pattern, new String[] { "1.0", "2.5" }, true);
+            assertValidity(message, pattern, new String[] { "-.5", "7", "1000.5" }, false);
+            // a smaller enumeration of its own
+            XSSimpleType subset = enumerate(derived, new String[] { "1.00", "-0.5" });
+            assertNull(getIndex(subset));
+            assertValidity(message, subset, new String[] { "1", "-.5" }, true);
+            assertValidity(message, subset, new String[] { "2.5", "7" }, false);
+        }
+    }
+
+    //
+    // Protected methods
+    //
+
+    /** Checks NaN, zeros and infinities of floats or doubles. */
+    protected void checkFloatingPoint(XSSimpleType type) throws Exception {
+        check(type, "#E10",
+              new String[] { "NaN", "0", "1.5", "INF" },
+              new String[] { "NaN", "-0", "0.0", "+0", "-0E3", "1.50", "15E-1", "INF" },
+              new String[] { "-INF", "1.4", "1" });
+        check(type, "#E10",
+              new String[] { "-0", "-INF" },
+              new String[] { "0", "-0.0", "-INF" },
+              new String[] { "NaN", "INF", "1E-30" });
+    }
+
+    /**
+     * Pads an enumeration to sizes below, at and above the smallest
+     * indexed size, and checks the validity of values at each size. The
+     * padding values are made by replacing the '#' of a pattern with a
+     * number.
+     */
+    protected void check(XSSimpleType base, String padding, String[] values,
+                         String[] valid, String[] invalid) throws Exception {
+        assertTrue(values.length < minSize() + SIZE_OFFSETS[0]);
+        XSSimpleType type = enumerate(base, values);
+        assertNull(getIndex(type));
+        assertValidity("unpadded", type, valid, true);
+        assertValidity("unpadded", type, invalid, false);
+        for (int i = 0; i < SIZE_OFFSETS.length; i++) {
+            String[] padded = pad(values, padding, i);
+            type = enumerate(base, padded);
+            assertEquals(Arrays.asList(padded).toString(), padded.length >= minSize(), getIndex(type) != null);
+            String message = "size " + padded.length;
+            assertValidity(message, type, valid, true);
+            assertValidity(message, type, invalid, false);
+        }
+    } // check(XSSimpleType,String,String[],String[],String[])
+
+    /** Pads the values to the size given by an offset from the smallest indexed size. */
+    protected static String[] pad(String[] values, String padding, int offset) throws Exception {
+        String[] padded = new String[minSize() + SIZE_OFFSETS[offset]];
+        System.arraycopy(values, 0, padded, 0, values.length);
+        for (int i = values.length; i < padded.length; i++) {
+            padded[i] = padding.replaceAll("#", Integer.toString(i));
+        }
+        // the values are looked up in another order than they were listed
+        Arrays.sort(padded);
+        return padded;
+    } // pad(String[],String,int):String[]
+
+    /** Asserts that every value is valid, or that none is. */
+    protected static void assertValidity(String message, XSSimpleType type,
+                                         String[] values, boolean valid) {
+        for (int i = 0; i < values.length; i++) {
+            boolean actual = true;
+            try {
+                type.validate(values[i], createContext(), new ValidatedInfo());
+            }
+            catch (InvalidDatatypeValueException e) {
+                actual = false;
+            }
+            assertEquals(message + ": '" + values[i] + "'", valid, actual);
+        }
+    } // assertValidity(String,XSSimpleType,String[],boolean)
+
+    /** Returns a restriction of a type with the given enumeration. */
+    protected static XSSimpleType enumerate(XSSimpleType base, String[] values) throws Exception {
+        XSFacets facets = new XSFacets();
+        facets.enumeration = new Vector(Arrays.asList(values));
+        return restrict(base, facets, XSSimpleType.FACET_ENUMERATION);
+    } // enumerate(XSSimpleType,String[]):XSSimpleType
+
+    /** Returns a restriction of a type with the given facets. */
+    protected static XSSimpleType restrict(XSSimpleType base, XSFacets facets,
+                                           short present) throws Exception {
+        XSSimpleType type = FACTORY.createTypeRestriction(null, null, (short) 0, base, null);
+        type.applyFacets(facets, present, (short) 0, createContext());
+        return type;
+    } // restrict(XSSimpleType,XSFacets,short):XSSimpleType
+
+    protected static XSSimpleType builtIn(String name) {
+        return FACTORY.getBuiltInType(name);
+    }
+
+    protected static ValidationState createContext() {
+        ValidationState context = new ValidationState();
+        context.setExtraChecking(false);
+        context.setFacetChecking(true);
+        return context;
+    } // createContext():ValidationState
+
+    /** Returns the enumeration index of a type, or null if it has none. */
+    protected static Object getIndex(XSSimpleType type) throws Exception {
+        Field field = XSSimpleTypeDecl.class.getDeclaredField("fEnumerationIndex");
+        field.setAccessible(true);
+        return field.get(type);
+    } // getIndex(XSSimpleType):Object
+
+    /** Returns the smallest number of enumeration values which are indexed. */
+    protected static int minSize() throws Exception {
+        Field field = Class.forName("org.apache.xerces.impl.dv.xs.EnumerationIndex")
+            .getDeclaredField("MIN_SIZE");
+        field.setAccessible(true);
+        return field.getInt(null);
+    } // minSize():int
+
+} // class EnumerationIndexTest
@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package schema;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.impl.xs.XMLSchemaValidator;
+import org.apache.xerces.impl.xs.XSMessageFormatter;
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.parsers.XIncludeAwareParserConfiguration;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Checks that the schema validator reports the same identity constraint
+ * errors when it suspends the XPath matchers which can't match anything
+ * below an element as when every matcher sees every element. Random
+ * documents are validated against identity constraints with child,
+ * descendant, union and attribute selectors and fields, in the scope of
+ * the root and of nested, recursive elements, with fields which match
+ * more than once.
+ *
+ * @version $Id$
+ */
+public class IdentityConstraintTest extends TestCase {
+
+    protected final static String SCHEMA_VALIDATION =
+        "http://apache.org/xml/features/validation/schema";
+
+    protected final static String VALIDATION =
+        "http://xml.org/sax/features/validation";
+
+    protected final static String SCHEMA_LOCATION =
+        "http://apache.org/xml/properties/schema/external-noNamespaceSchemaLocation";
+
+    /** The values of the attributes and of the v elements. */
+    protected final static String[] VALUES = { "a", "b", "c", "d", "e", "f", "g" };
+
+    /** The element and attribute declarations, without identity constraints. */
+    protected final static String DECLARATIONS =
+        "<xs:complexType name='T'>\n" +
+        " <xs:choice minOccurs='0' maxOccurs='unbounded'>\n" +
+        "  <xs:element ref='e'/><xs:element ref='f'/><xs:element ref='v'/>\n" +
+        " </xs:choice>\n" +
+        " <xs:attribute name='id'/><xs:attribute name='k'/>\n" +
+        "</xs:complexType>\n" +
+        "<xs:element name='f' type='T'/>\n" +
+        "<xs:element name='v'>\n" +
+        " <xs:complexType><xs:simpleContent><xs:extension base='xs:string'>\n" +
+        "  <xs:attribute name='x'/>\n" +
+        " </xs:extension></xs:simpleContent></xs:complexType>\n" +
+        "</xs:element>\n";
+
+    /** Validates with suspended matchers. */
+    protected SAXParser fSuspending;
+
+    /** Validates without suspending matchers. */
+    protected SAXParser fUnsuspended;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(IdentityConstraintTest.class);
+    }
+
+    public IdentityConstraintTest(String name) {
+        super(name);
+    }
+
+    public void testChildPaths() throws Exception {
+        check(
+            "<xs:unique name='u'><xs:selector xpath='e/f'/><xs:field xpath='@k'/></xs:unique>\n" +
+            "<xs:key name='k'><xs:selector xpath='e'/><xs:field xpath='@id'/></xs:key>\n" +
+            "<xs:keyref name='r' refer='k'><xs:selector xpath='e/e/f'/><xs:field xpath='@k'/></xs:keyref>\n",
+            "", new String[] { "cvc-identity-constraint.4.1", "cvc-identity-constraint.4.2.1.a",
+                               "cvc-identity-constraint.4.2.2" });
+    }
+
+    public void testDescendantPaths() throws Exception {
+        check(
+            "<xs:unique name='u'><xs:selector xpath='.//f'/><xs:field xpath='@id'/></xs:unique>\n" +
+            "<xs:key name='k'><xs:selector xpath='.//e/f'/><xs:field xpath='@k'/></xs:key>\n" +
+            "<xs:keyref name='r' refer='k'><xs:selector xpath='.//v'/><xs:field xpath='@x'/></xs:keyref>\n",
+            "", new String[] { "cvc-identity-constraint.4.1", "cvc-identity-constraint.4.3" });
+    }
+
+    public void testUnionPaths() throws Exception {
+        check(
+            "<xs:unique name='u'><xs:selector xpath='e | .//f/e'/>" +
+            "<xs:field xpath='@k | v'/><xs:field xpath='@id'/></xs:unique>\n" +
+            "<xs:unique name='w'><xs:selector xpath='e/f | .//f/v'/><xs:field xpath='@x | @k'/></xs:unique>\n",
+            "", new String[] { "cvc-identity-constraint.4.1" });
+    }
+
+    public void testNestedScopes() throws Exception {
+        check(
+            "<xs:unique name='u'><xs:selector xpath='.//e'/><xs:field xpath='@id'/></xs:unique>\n",
+            "<xs:unique name='ue'><xs:selector xpath='f'/><xs:field xpath='@k'/></xs:unique>\n" +
+            "<xs:key name='ke'><xs:selector xpath='.//f'/><xs:field xpath='@id'/></xs:key>\n" +
+            "<xs:keyref name='re' refer='ke'><xs:selector xpath='e'/><xs:field xpath='@k'/></xs:keyref>\n",
+            new String[] { "cvc-identity-constraint.4.1", "cvc-identity-constraint.4.2.1.a",
+                           "cvc-identity-constraint.4.3" });
+    }
+
+    public void testFieldMatchedTwice() throws Exception {
+        check(
+            "<xs:unique name='u'><xs:selector xpath='e'/><xs:field xpath='v'/></xs:unique>\n",
+            "<xs:unique name='ue'><xs:selector xpath='f'/><xs:field xpath='.//v'/></xs:unique>\n" +
+            "<xs:unique name='we'><xs:selector xpath='.//f'/><xs:field xpath='v/@x'/></xs:unique>\n",
+            new String[] { "cvc-identity-constraint.3", "cvc-identity-constraint.4.1" });
+    }
+
+    //
+    // Protected methods
+    //
+
+    protected void setUp() throws Exception {
+        fSuspending = createParser(new XIncludeAwareParserConfiguration());
+        fUnsuspended = createParser(new UnsuspendedConfiguration());
+    } // setUp()
+
+    /**
+     * Validates random documents against a schema with the given identity
+     * constraints on the root and on the e elements, with and without
+     * suspending matchers, and checks that the errors are the same and
+     * include every one of the given keys.
+     */
+    protected void check(String rootConstraints, String constraints, String[] keys) throws Exception {
+        File schema = writeSchema(rootConstraints, constraints);
+        try {
+            String location = schema.toURI().toString();
+            fSuspending.setProperty(SCHEMA_LOCATION, location);
+            fUnsuspended.setProperty(SCHEMA_LOCATION, location);
+            StringBuffer allErrors = new StringBuffer();
+            Random random = new Random(37);
+            for (int i = 0; i < 200; i++) {
+                String document = createDocument(random, 1 + i % 6);
+                List expected = validate(fUnsuspended, document);
+                List actual = validate(fSuspending, document);
+                assertEquals(document, expected, actual);
+                allErrors.append(expected);
+            }
+            for (int i = 0; i < keys.length; i++) {
+                assertTrue(keys[i], allErrors.indexOf(' ' + keys[i] + ':') != -1);
+            }
+        }
+        finally {
+            schema.delete();
+        }
+    } // check(String,String,String[])
+
+    /** Returns a random document of e, f and v elements. */
+    protected static String createDocument(Random random, int depth) {
+        StringBuffer buffer = new StringBuffer("<root>");
+        int count = 1 + random.nextInt(3);
+        for (int i = 0; i < count; i++) {
+            appendElement(buffer, "e", random, depth);
+        }
+        return buffer.append("</root>").toString();
+    } // createDocument(Random,int):String
+
+    protected static void appendElement(StringBuffer buffer, String name, Random random, int depth) {
+        buffer.append('<').append(name);
+        if (name.equals("v")) {
+            if (random.nextInt(3) != 0) {
+                buffer.append(" x='").append(value(random)).append('\'');
+            }
+            buffer.append('>').append(value(random)).append("</v>");
+            return;
+        }
+        if (random.nextInt(4) != 0) {
+            buffer.append(" id='").append(value(random)).append('\'');
+        }
+        if (random.nextInt(3) != 0) {
+            buffer.append(" k='").append(value(random)).append('\'');
+        }
+        buffer.append('>');
+        int count = depth > 0 ? random.nextInt(4) : 0;
+        for (int i = 0; i < count; i++) {
+            int kind = random.nextInt(3);
+            appendElement(buffer, kind == 0 ? "e" : kind == 1 ? "f" : "v", random, depth - 1);
+        }
+        buffer.append("</").append(name).append('>');
+    } // appendElement(StringBuffer,String,Random,int)
+
+    protected static String value(Random random) {
+        return VALUES[random.nextInt(VALUES.length)];
+    }
+
+    /** Validates a document and returns its errors. */
+    protected static List validate(SAXParser parser, String document) throws Exception {
+        final List errors = new ArrayList();
+        parser.setErrorHandler(new DefaultHandler() {
+            public void error(SAXParseException exception) {
+                errors.add(exception.getLineNumber() + ":" + exception.getColumnNumber()
+                           + ' ' + exception.getMessage());
+            }
+            public void fatalError(SAXParseException exception) throws SAXParseException {
+                throw exception;
+            }
+        });
+        parser.parse(new InputSource(new StringReader(document)));
+        return errors;
+    } // validate(SAXParser,String):List
+
+    protected static SAXParser createParser(XIncludeAwareParserConfiguration config) throws Exception {
+        SAXParser parser = new SAXParser(config);
+        parser.setFeature(VALIDATION, true);
+        parser.setFeature(SCHEMA_VALIDATION, true);
+        return parser;
+    } // createParser(XIncludeAwareParserConfiguration):SAXParser
+
+    /** Writes a schema with the given identity constraints on the root and on e. */
+    protected static File writeSchema(String rootConstraints, String constraints) throws IOException {
+        String schema =
+            "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>\n" +
+            "<xs:element name='root'>\n" +
+            " <xs:complexType><xs:sequence>\n" +
+            "  <xs:element ref='e' maxOccurs='unbounded'/>\n" +
+            " </xs:sequence></xs:complexType>\n" +
+            rootConstraints +
+            "</xs:element>\n" +
+            "<xs:element name='e' type='T'>\n" +
+            constraints +
+            "</xs:element>\n" +
+            DECLARATIONS +
+            "</xs:schema>\n";
+        File file = File.createTempFile("idc", ".xsd");
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(schema.getBytes("UTF-8"));
+        }
+        finally {
+            out.close();
+        }
+        return file;
+    } // writeSchema(String,String):File
+
+    //
+    // Classes
+    //
+
+    /** A configuration whose schema validator never suspends matchers. */
+    protected static class UnsuspendedConfiguration extends XIncludeAwareParserConfiguration {
+
+        public UnsuspendedConfiguration() {
+            fSchemaValidator = new UnsuspendedValidator();
+            setProperty(SCHEMA_VALIDATOR, fSchemaValidator);
+            addCommonComponent(fSchemaValidator);
+            fErrorReporter.putMessageFormatter(XSMessageFormatter.SCHEMA_DOMAIN, new XSMessageFormatter());
+        }
+
+    } // class UnsuspendedConfiguration
+
+    /** A schema validator which calls every matcher for every element. */
+    protected static class UnsuspendedValidator extends XMLSchemaValidator {
+
+        public UnsuspendedValidator() {
+            fMatcherStack = new XPathMatcherStack() {
+                public void suspendMatchers(int depth) {
+                }
+            };
+        }
+
+    } // class UnsuspendedValidator
+
+} // class IdentityConstraintTest
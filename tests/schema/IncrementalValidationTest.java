@@ -0,0 +1,433 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package schema;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.xs.ElementPSVI;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Validates element content longer than the streaming threshold of the
+ * schema validator (64K characters), past which the content of string,
+ * base64Binary, hexBinary and list types is validated as it arrives
+ * instead of buffered when the PSVI isn't augmented. Each document is
+ * validated three times: once streamed, once against the same schema
+ * with an identity constraint on the root, which keeps the whole content
+ * in the buffer, and once with the PSVI, which must hold the actual and
+ * normalized values of the whole content. The errors must be the same,
+ * except that streamed values are quoted by their first 32 characters.
+ *
+ * @version $Id$
+ */
+public class IncrementalValidationTest extends TestCase {
+
+    protected final static String SCHEMA_VALIDATION =
+        "http://apache.org/xml/features/validation/schema";
+
+    protected final static String VALIDATION =
+        "http://xml.org/sax/features/validation";
+
+    protected final static String AUGMENT_PSVI =
+        "http://apache.org/xml/features/validation/schema/augment-psvi";
+
+    protected final static String SCHEMA_LOCATION =
+        "http://apache.org/xml/properties/schema/external-noNamespaceSchemaLocation";
+
+    /** Number of characters of streamed values quoted in errors. */
+    protected final static int PREFIX_LENGTH = 32;
+
+    /** The first quoted string of an error, which is the value. */
+    protected final static Pattern QUOTED_VALUE = Pattern.compile("'([^']*)'");
+
+    /** Number of octets of the binary values. */
+    protected final static int OCTETS = 60000;
+
+    /** Number of items of the list values. */
+    protected final static int ITEMS = 20000;
+
+    /** Number of characters of the string values. */
+    protected final static int CHARACTERS = 70000;
+
+    /** The element declarations of the test schemas. */
+    protected final static String ELEMENTS =
+        "<xs:element name='base64'>\n" +
+        " <xs:simpleType><xs:restriction base='xs:base64Binary'>\n" +
+        "  <xs:length value='" + OCTETS + "'/></xs:restriction></xs:simpleType>\n" +
+        "</xs:element>\n" +
+        "<xs:element name='base64Min'>\n" +
+        " <xs:simpleType><xs:restriction base='xs:base64Binary'>\n" +
+        "  <xs:minLength value='" + (OCTETS - 1) + "'/></xs:restriction></xs:simpleType>\n" +
+        "</xs:element>\n" +
+        "<xs:element name='base64Max'>\n" +
+        " <xs:simpleType><xs:restriction base='xs:base64Binary'>\n" +
+        "  <xs:maxLength value='" + OCTETS + "'/></xs:restriction></xs:simpleType>\n" +
+        "</xs:element>\n" +
+        "<xs:element name='hex'>\n" +
+        " <xs:simpleType><xs:restriction base='xs:hexBinary'>\n" +
+        "  <xs:length value='" + OCTETS + "'/></xs:restriction></xs:simpleType>\n" +
+        "</xs:element>\n" +
+        "<xs:element name='hexMin'>\n" +
+        " <xs:simpleType><xs:restriction base='xs:hexBinary'>\n" +
+        "  <xs:minLength value='" + OCTETS + "'/></xs:restriction></xs:simpleType>\n" +
+        "</xs:element>\n" +
+        "<xs:element name='hexMax'>\n" +
+        " <xs:simpleType><xs:restriction base='xs:hexBinary'>\n" +
+        "  <xs:maxLength value='" + OCTETS + "'/></xs:restriction></xs:simpleType>\n" +
+        "</xs:element>\n" +
+        "<xs:element name='list'>\n" +
+        " <xs:simpleType><xs:restriction>\n" +
+        "  <xs:simpleType><xs:list itemType='xs:int'/></xs:simpleType>\n" +
+        "  <xs:length value='" + ITEMS + "'/></xs:restriction></xs:simpleType>\n" +
+        "</xs:element>\n" +
+        "<xs:element name='listMin'>\n" +
+        " <xs:simpleType><xs:restriction>\n" +
+        "  <xs:simpleType><xs:list itemType='xs:int'/></xs:simpleType>\n" +
+        "  <xs:minLength value='" + ITEMS + "'/></xs:restriction></xs:simpleType>\n" +
+        "</xs:element>\n" +
+        "<xs:element name='listMax'>\n" +
+        " <xs:simpleType><xs:restriction>\n" +
+        "  <xs:simpleType><xs:list itemType='xs:int'/></xs:simpleType>\n" +
+        "  <xs:maxLength value='" + ITEMS + "'/></xs:restriction></xs:simpleType>\n" +
+        "</xs:element>\n" +
+        "<xs:element name='string'>\n" +
+        " <xs:simpleType><xs:restriction base='xs:string'>\n" +
+        "  <xs:length value='" + CHARACTERS + "'/></xs:restriction></xs:simpleType>\n" +
+        "</xs:element>\n" +
+        "<xs:element name='stringMin'>\n" +
+        " <xs:simpleType><xs:restriction base='xs:normalizedString'>\n" +
+        "  <xs:minLength value='" + CHARACTERS + "'/></xs:restriction></xs:simpleType>\n" +
+        "</xs:element>\n" +
+        "<xs:element name='tokenMax'>\n" +
+        " <xs:simpleType><xs:restriction base='xs:token'>\n" +
+        "  <xs:maxLength value='" + CHARACTERS + "'/></xs:restriction></xs:simpleType>\n" +
+        "</xs:element>\n" +
+        "<xs:element name='complex'>\n" +
+        " <xs:complexType><xs:simpleContent>\n" +
+        "  <xs:extension base='xs:hexBinary'><xs:attribute name='a'/></xs:extension>\n" +
+        " </xs:simpleContent></xs:complexType>\n" +
+        "</xs:element>\n";
+
+    /** The streamed schema. */
+    protected static File fStreamedSchema;
+
+    /** The buffered schema. */
+    protected static File fBufferedSchema;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(IncrementalValidationTest.class);
+    }
+
+    public IncrementalValidationTest(String name) {
+        super(name);
+    }
+
+    public void testBase64() throws Exception {
+        check("base64", base64(OCTETS, 76), null);
+        check("base64", base64(OCTETS, 0), null);
+        check("base64", base64(OCTETS - 3, 76), "cvc-length-valid");
+        check("base64", base64(OCTETS - 1, 76), "cvc-length-valid");
+        check("base64Min", base64(OCTETS - 1, 76), null);
+        check("base64Min", base64(OCTETS - 2, 76), "cvc-minLength-valid");
+        check("base64Max", base64(OCTETS, 76), null);
+        check("base64Max", base64(OCTETS + 1, 76), "cvc-maxLength-valid");
+    }
+
+    public void testBase64Invalid() throws Exception {
+        String value = base64(OCTETS, 76);
+        // past the threshold
+        check("base64", value.substring(0, 70000) + '*' + value.substring(70001),
+              "cvc-datatype-valid.1.2.1");
+        // padding in the middle
+        check("base64", value.substring(0, 70000) + "AA==" + value.substring(70000),
+              "cvc-datatype-valid.1.2.1");
+        // missing character
+        check("base64", value.substring(0, value.length() - 1), "cvc-datatype-valid.1.2.1");
+        // bits left over before the padding
+        value = base64(OCTETS - 1, 0);
+        int pad = value.indexOf('=');
+        assertEquals('4', value.charAt(pad - 1));
+        check("base64Max", value.substring(0, pad - 1) + '5' + value.substring(pad),
+              "cvc-datatype-valid.1.2.1");
+    }
+
+    public void testHexBinary() throws Exception {
+        check("hex", hex(OCTETS), null);
+        check("hex", "\n " + hex(OCTETS) + " \n", null);
+        check("hex", hex(OCTETS - 1), "cvc-length-valid");
+        check("hexMin", hex(OCTETS - 1), "cvc-minLength-valid");
+        check("hexMax", hex(OCTETS + 1), "cvc-maxLength-valid");
+        check("complex", hex(OCTETS), null);
+    }
+
+    public void testHexBinaryInvalid() throws Exception {
+        String value = hex(OCTETS);
+        check("hex", value.substring(0, 70000) + 'g' + value.substring(70001),
+              "cvc-datatype-valid.1.2.1");
+        check("hex", value.substring(0, 70000) + ' ' + value.substring(70000),
+              "cvc-datatype-valid.1.2.1");
+        check("hex", value.substring(1), "cvc-datatype-valid.1.2.1");
+        check("complex", value.substring(1), "cvc-datatype-valid.1.2.1");
+    }
+
+    public void testList() throws Exception {
+        check("list", list(ITEMS, " "), null);
+        check("list", "\n\t" + list(ITEMS, "\n  ") + " ", null);
+        check("list", list(ITEMS + 1, " "), "cvc-length-valid");
+        check("listMin", list(ITEMS - 1, " "), "cvc-minLength-valid");
+        check("listMax", list(ITEMS + 1, "  "), "cvc-maxLength-valid");
+    }
+
+    public void testListInvalidItem() throws Exception {
+        String value = list(ITEMS, " ");
+        check("list", value.substring(0, 70000) + "x" + value.substring(70000),
+              "cvc-datatype-valid.1.2.1");
+        check("list", value + " 99999999999", "cvc-maxInclusive-valid");
+    }
+
+    public void testString() throws Exception {
+        check("string", string(CHARACTERS, "x"), null);
+        check("string", string(CHARACTERS, "\r\n\t "), null);
+        check("string", string(CHARACTERS + 1, "x y"), "cvc-length-valid");
+        check("stringMin", string(CHARACTERS - 1, " \t"), "cvc-minLength-valid");
+        check("stringMin", string(CHARACTERS, " \t"), null);
+    }
+
+    public void testTokenCollapse() throws Exception {
+        // runs of spaces count as one, leading and trailing spaces not at all;
+        // the collapsed value is past the threshold
+        check("tokenMax", "  \n" + string(CHARACTERS * 6 / 5, "abcdefgh \t ") + "\t\t ", null);
+        check("tokenMax", string(CHARACTERS / 2, "a") + "  \t " + string(CHARACTERS / 2, "b"),
+              "cvc-maxLength-valid");
+        check("tokenMax", " " + string(CHARACTERS / 2 - 1, "a") + "  \t " + string(CHARACTERS / 2, "b"),
+              null);
+    }
+
+    //
+    // Protected methods
+    //
+
+    protected void setUp() throws Exception {
+        if (fStreamedSchema == null) {
+            fStreamedSchema = writeSchema("");
+            fBufferedSchema = writeSchema(
+                "  <xs:unique name='u'><xs:selector xpath='none'/><xs:field xpath='@a'/></xs:unique>\n");
+        }
+    } // setUp()
+
+    /**
+     * Validates an element streamed and buffered, and checks that both
+     * report the same errors, the first of which has the given key.
+     */
+    protected void check(String element, String value, String key) throws Exception {
+        String document = "<root>\n <" + element + ">" + escape(value) + "</" + element + ">\n</root>\n";
+
+        Recorder streamed = validate(fStreamedSchema, document, false);
+        Recorder buffered = validate(fBufferedSchema, document, false);
+        Recorder psvi = validate(fStreamedSchema, document, true);
+        assertEquals(element, buffered.fErrors, psvi.fErrors);
+        assertNotNull(element, psvi.fNormalizedValue);
+        if (key == null) {
+            assertNotNull(element, psvi.fActualValue);
+        }
+
+        // buffered values are quoted whole; streamed ones by their first characters
+        List expected = new ArrayList();
+        for (int i = 0; i < buffered.fErrors.size(); i++) {
+            Matcher matcher = QUOTED_VALUE.matcher((String) buffered.fErrors.get(i));
+            String error = (String) buffered.fErrors.get(i);
+            if (matcher.find() && matcher.group(1).length() > PREFIX_LENGTH) {
+                error = error.substring(0, matcher.start(1))
+                    + matcher.group(1).substring(0, PREFIX_LENGTH) + "..."
+                    + error.substring(matcher.end(1));
+            }
+            expected.add(error);
+        }
+        assertEquals(element, expected, streamed.fErrors);
+        if (key == null) {
+            assertEquals(element, 0, streamed.fErrors.size());
+        }
+        else {
+            assertTrue(element + ": no error", streamed.fErrors.size() > 0);
+            String first = (String) streamed.fErrors.get(0);
+            assertTrue(first, first.indexOf(' ' + key + ':') != -1);
+            // only a streamed value is quoted by its first characters
+            assertFalse(element + ": not streamed", expected.equals(buffered.fErrors));
+        }
+    } // check(String,String,String)
+
+    /** Validates a document against a schema, with or without the PSVI. */
+    protected Recorder validate(File schema, String document, boolean psvi) throws Exception {
+        SAXParser parser = new SAXParser();
+        parser.setFeature(VALIDATION, true);
+        parser.setFeature(SCHEMA_VALIDATION, true);
+        parser.setFeature(AUGMENT_PSVI, psvi);
+        parser.setProperty(SCHEMA_LOCATION, schema.toURI().toString());
+        Recorder recorder = new Recorder(parser);
+        parser.setContentHandler(recorder);
+        parser.setErrorHandler(recorder);
+        parser.parse(new InputSource(new StringReader(document)));
+        return recorder;
+    } // validate(File,String,boolean):Recorder
+
+    /** Writes a schema with the given identity constraints on the root. */
+    protected static File writeSchema(String constraints) throws IOException {
+        String schema =
+            "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>\n" +
+            "<xs:element name='root'>\n" +
+            " <xs:complexType>\n" +
+            "  <xs:choice minOccurs='0' maxOccurs='unbounded'>\n" +
+            "   <xs:any processContents='strict'/>\n" +
+            "  </xs:choice>\n" +
+            " </xs:complexType>\n" +
+            constraints +
+            "</xs:element>\n" +
+            ELEMENTS +
+            "</xs:schema>\n";
+        File file = File.createTempFile("incremental", ".xsd");
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(schema.getBytes("UTF-8"));
+        }
+        finally {
+            out.close();
+        }
+        return file;
+    } // writeSchema(String):File
+
+    /** Returns the base64 encoding of octets, with line breaks. */
+    protected static String base64(int octets, int lineLength) {
+        final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        StringBuffer buffer = new StringBuffer();
+        int column = 0;
+        for (int i = 0; i < octets; i += 3) {
+            int remaining = Math.min(3, octets - i);
+            int bits = 0;
+            for (int j = 0; j < 3; j++) {
+                bits = (bits << 8) | (j < remaining ? (i + j) & 0xff : 0);
+            }
+            for (int j = 0; j < 4; j++) {
+                buffer.append(j <= remaining ? alphabet.charAt((bits >> (18 - 6 * j)) & 0x3f) : '=');
+            }
+            column += 4;
+            if (lineLength > 0 && column >= lineLength) {
+                buffer.append('\n');
+                column = 0;
+            }
+        }
+        return buffer.toString();
+    } // base64(int,int):String
+
+    /** Returns the hexadecimal encoding of octets. */
+    protected static String hex(int octets) {
+        final String digits = "0123456789abcdefABCDEF";
+        StringBuffer buffer = new StringBuffer();
+        for (int i = 0; i < octets; i++) {
+            buffer.append(digits.charAt(i % digits.length()))
+                  .append(digits.charAt((i / 7) % digits.length()));
+        }
+        return buffer.toString();
+    } // hex(int):String
+
+    /** Returns a list of integers. */
+    protected static String list(int items, String separator) {
+        StringBuffer buffer = new StringBuffer();
+        for (int i = 0; i < items; i++) {
+            if (i > 0) {
+                buffer.append(separator);
+            }
+            buffer.append(i * 7 - 1000);
+        }
+        return buffer.toString();
+    } // list(int,String):String
+
+    /** Returns a string of the given length repeating a pattern. */
+    protected static String string(int length, String pattern) {
+        StringBuffer buffer = new StringBuffer(length);
+        while (buffer.length() < length) {
+            buffer.append(pattern);
+        }
+        buffer.setLength(length);
+        return buffer.toString();
+    } // string(int,String):String
+
+    /** Escapes the markup characters of a value. */
+    protected static String escape(String value) {
+        return value.replaceAll("&", "&amp;").replaceAll("<", "&lt;").replaceAll("\r", "&#13;");
+    } // escape(String):String
+
+    //
+    // Classes
+    //
+
+    /**
+     * Records the errors of a validation, and the normalized and actual
+     * values of the tested element in the PSVI.
+     */
+    protected static class Recorder extends DefaultHandler {
+
+        /** The parser. */
+        protected final SAXParser fParser;
+
+        /** The errors. */
+        protected final List fErrors = new ArrayList();
+
+        /** The normalized value of the tested element. */
+        protected String fNormalizedValue;
+
+        /** The actual value of the tested element. */
+        protected Object fActualValue;
+
+        public Recorder(SAXParser parser) {
+            fParser = parser;
+        }
+
+        public void endElement(String uri, String localName, String qName) {
+            ElementPSVI psvi = fParser.getElementPSVI();
+            if (!qName.equals("root") && psvi != null) {
+                fNormalizedValue = psvi.getSchemaValue().getNormalizedValue();
+                fActualValue = psvi.getSchemaValue().getActualValue();
+            }
+        }
+
+        public void error(SAXParseException exception) {
+            fErrors.add(exception.getLineNumber() + ":" + exception.getColumnNumber()
+                        + ' ' + exception.getMessage());
+        }
+
+        public void fatalError(SAXParseException exception) throws SAXParseException {
+            throw exception;
+        }
+
+    } // class Recorder
+
+} // class IncrementalValidationTest
@@ -0,0 +1,355 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package schema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.impl.dv.InvalidDatatypeValueException;
+import org.apache.xerces.impl.dv.SchemaDVFactory;
+import org.apache.xerces.impl.dv.ValidatedInfo;
+import org.apache.xerces.impl.dv.XSFacets;
+import org.apache.xerces.impl.dv.XSSimpleType;
+import org.apache.xerces.impl.dv.xs.SimpleTypeValidationCache;
+import org.apache.xerces.impl.validation.EntityState;
+import org.apache.xerces.impl.validation.ValidationState;
+import org.apache.xerces.util.NamespaceSupport;
+
+/**
+ * Checks that validating values through a simple type validation cache
+ * gives the same actual values, normalized values, member types and
+ * errors as validating them directly, the first time a value is seen
+ * and when the result is reused, with and without normalization. Values
+ * of types which depend on the validation context must not be cached,
+ * and the cache must stay within its size when shared between threads.
+ *
+ * @version $Id$
+ */
+public class SimpleTypeValidationCacheTest extends TestCase {
+
+    protected final static SchemaDVFactory FACTORY = SchemaDVFactory.getInstance();
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(SimpleTypeValidationCacheTest.class);
+    }
+
+    public SimpleTypeValidationCacheTest(String name) {
+        super(name);
+    }
+
+    public void testSameResults() throws Exception {
+        XSSimpleType[] types = createTypes();
+        String[] values = {
+            "1", " 1 ", "01.50", "-0", "1.5", "x", "", " a  b ", "a b",
+            "NaN", "-INF", "1e3", "true", "0", "2006-10-19T12:00:00Z",
+            " 2006-10-19T12:00:00.5+01:00", "P1Y", "0A0b", "urn:a", "1 2 3",
+            "9223372036854775808", "\t12\n", "abc", "1 x",
+        };
+        for (int n = 0; n < 2; n++) {
+            boolean normalize = n == 0;
+            SimpleTypeValidationCache cache = new SimpleTypeValidationCache();
+            for (int pass = 0; pass < 3; pass++) {
+                for (int i = 0; i < types.length; i++) {
+                    for (int j = 0; j < values.length; j++) {
+                        compare(types[i], values[j], cache, normalize);
+                    }
+                }
+            }
+            int lookups = types.length * values.length;
+            assertEquals(lookups, cache.getMisses());
+            assertEquals(2 * lookups, cache.getHits());
+            assertEquals(lookups, cache.getSize());
+        }
+    }
+
+    public void testNormalization() throws Exception {
+        SimpleTypeValidationCache cache = new SimpleTypeValidationCache();
+        XSSimpleType token = builtIn("token");
+        // the result of a normalized value isn't reused for an unnormalized one
+        ValidatedInfo info = new ValidatedInfo();
+        assertEquals("a b", cache.validate(token, " a  b ", createContext(true), info));
+        assertEquals("a b", info.normalizedValue);
+        info = new ValidatedInfo();
+        assertEquals(" a  b ", cache.validate(token, " a  b ", createContext(false), info));
+        assertEquals(" a  b ", info.normalizedValue);
+        assertEquals(2, cache.getSize());
+        assertEquals(0, cache.getHits());
+        compare(token, " a  b ", cache, true);
+        compare(token, " a  b ", cache, false);
+        assertEquals(2, cache.getHits());
+    }
+
+    public void testFailures() throws Exception {
+        SimpleTypeValidationCache cache = new SimpleTypeValidationCache();
+        XSSimpleType type = enumerate(builtIn("integer"), new String[] { "1", "2" });
+        for (int i = 0; i < 3; i++) {
+            InvalidDatatypeValueException e = validateInvalid(type, "3", cache);
+            assertEquals("cvc-enumeration-valid", e.getKey());
+            assertEquals("3", e.getArgs()[0]);
+            e = validateInvalid(type, "1.5", cache);
+            assertEquals("cvc-datatype-valid.1.2.1", e.getKey());
+        }
+        assertEquals(2, cache.getMisses());
+        assertEquals(4, cache.getHits());
+    }
+
+    public void testContextDependentTypes() throws Exception {
+        SimpleTypeValidationCache cache = new SimpleTypeValidationCache();
+        // an ID may only be declared once
+        ValidationState context = createContext(true);
+        XSSimpleType id = builtIn("ID");
+        cache.validate(id, "a", context, new ValidatedInfo());
+        InvalidDatatypeValueException e = validateInvalid(id, "a", cache, context);
+        assertEquals("cvc-id.2", e.getKey());
+        XSSimpleType ids = FACTORY.createTypeList(null, null, (short) 0, id, null);
+        e = validateInvalid(ids, "b a", cache, context);
+        assertEquals("cvc-id.2", e.getKey());
+
+        // IDREFs are recorded in the context
+        context = createContext(true);
+        cache.validate(builtIn("IDREF"), "r1", context, new ValidatedInfo());
+        assertEquals("r1", context.checkIDRefID());
+        context = createContext(true);
+        cache.validate(builtIn("IDREF"), "r1", context, new ValidatedInfo());
+        assertEquals("r1", context.checkIDRefID());
+        context = createContext(true);
+        cache.validate(builtIn("IDREFS"), "r2", context, new ValidatedInfo());
+        assertEquals("r2", context.checkIDRefID());
+
+        // the prefix of a QName or a NOTATION is bound in the context
+        ValidationState bound = createContext(true);
+        NamespaceSupport namespaces = new NamespaceSupport();
+        namespaces.declarePrefix("p", "urn:p");
+        bound.setNamespaceSupport(namespaces);
+        XSSimpleType union = FACTORY.createTypeUnion(null, null, (short) 0,
+                new XSSimpleType[] { builtIn("integer"), builtIn("QName") }, null);
+        XSSimpleType[] qnames = { builtIn("QName"), union,
+                                  FACTORY.createTypeList(null, null, (short) 0, builtIn("QName"), null) };
+        for (int i = 0; i < qnames.length; i++) {
+            cache.validate(qnames[i], "p:a", bound, new ValidatedInfo());
+            validateInvalid(qnames[i], "p:a", cache, createContext(true));
+            cache.validate(qnames[i], "p:a", bound, new ValidatedInfo());
+        }
+        XSFacets facets = new XSFacets();
+        facets.enumeration = new Vector(Arrays.asList(new String[] { "p:n" }));
+        facets.enumNSDecls = new Vector(Arrays.asList(new Object[] { namespaces }));
+        XSSimpleType notation = FACTORY.createTypeRestriction(null, null, (short) 0, builtIn("NOTATION"), null);
+        notation.applyFacets(facets, XSSimpleType.FACET_ENUMERATION, (short) 0, createContext(true));
+        cache.validate(notation, "p:n", bound, new ValidatedInfo());
+        validateInvalid(notation, "p:n", cache, createContext(true));
+
+        // only unparsed entities are ENTITY values
+        ValidationState entities = createContext(true);
+        entities.setEntityState(new EntityState() {
+            public boolean isEntityDeclared(String name) {
+                return true;
+            }
+            public boolean isEntityUnparsed(String name) {
+                return true;
+            }
+        });
+        cache.validate(builtIn("ENTITY"), "e", entities, new ValidatedInfo());
+        validateInvalid(builtIn("ENTITY"), "e", cache, createContext(true));
+
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getHits() + cache.getMisses());
+    }
+
+    public void testWithoutFacetChecking() throws Exception {
+        SimpleTypeValidationCache cache = new SimpleTypeValidationCache();
+        ValidationState context = createContext(true);
+        context.setFacetChecking(false);
+        XSSimpleType type = enumerate(builtIn("integer"), new String[] { "1" });
+        assertEquals(type.validate("2", context, new ValidatedInfo()),
+                     cache.validate(type, "2", context, new ValidatedInfo()));
+        assertEquals(0, cache.getSize());
+        validateInvalid(type, "2", cache);
+        assertEquals(1, cache.getSize());
+    }
+
+    public void testMaxSize() throws Exception {
+        XSSimpleType type = builtIn("int");
+        int[] sizes = { 0, 1, 7, 100, 1000, SimpleTypeValidationCache.DEFAULT_MAX_SIZE };
+        for (int i = 0; i < sizes.length; i++) {
+            SimpleTypeValidationCache cache = new SimpleTypeValidationCache(sizes[i]);
+            assertEquals(sizes[i], cache.getMaxSize());
+            for (int j = 0; j < 4 * sizes[i] + 10; j++) {
+                compare(type, Integer.toString(j), cache, true);
+                assertTrue(cache.getSize() <= sizes[i]);
+            }
+            // each segment is full
+            assertTrue(cache.getSize() + " of " + sizes[i], cache.getSize() >= sizes[i] * 9 / 10);
+            cache.setMaxSize(sizes[i] / 3);
+            assertTrue(cache.getSize() <= sizes[i] / 3);
+            cache.clear();
+            assertEquals(0, cache.getSize());
+        }
+        // the most recently used value is kept
+        SimpleTypeValidationCache cache = new SimpleTypeValidationCache(2);
+        compare(type, "1", cache, true);
+        compare(type, "2", cache, true);
+        compare(type, "1", cache, true);
+        compare(type, "3", cache, true);
+        cache.resetStatistics();
+        compare(type, "1", cache, true);
+        assertEquals(1, cache.getHits());
+        compare(type, "2", cache, true);
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5, cache.getHitRate(), 0);
+    }
+
+    public void testSharedBetweenThreads() throws Exception {
+        final XSSimpleType[] types = createTypes();
+        final SimpleTypeValidationCache cache = new SimpleTypeValidationCache(500);
+        final List errors = new ArrayList();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            final int seed = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 5000; j++) {
+                            int n = (j * 31 + seed * 17) % 1000;
+                            compare(types[n % types.length], Integer.toString(n / 3), cache, n % 2 == 0);
+                        }
+                    }
+                    catch (Throwable e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        assertEquals(errors.toString(), 0, errors.size());
+        assertEquals(threads.length * 5000, cache.getHits() + cache.getMisses());
+        assertTrue(cache.getSize() <= 500);
+    }
+
+    //
+    // Protected methods
+    //
+
+    /** Returns types of several kinds, varieties and facets. */
+    protected static XSSimpleType[] createTypes() throws Exception {
+        XSSimpleType integers = FACTORY.createTypeList(null, null, (short) 0, builtIn("integer"), null);
+        XSSimpleType union = FACTORY.createTypeUnion(null, null, (short) 0,
+                new XSSimpleType[] { builtIn("int"), builtIn("boolean"), builtIn("token") }, null);
+        XSFacets facets = new XSFacets();
+        facets.pattern = "[0-9]+";
+        XSSimpleType pattern = FACTORY.createTypeRestriction(null, null, (short) 0, builtIn("string"), null);
+        pattern.applyFacets(facets, XSSimpleType.FACET_PATTERN, (short) 0, createContext(true));
+        return new XSSimpleType[] {
+            builtIn("decimal"), builtIn("integer"), builtIn("float"), builtIn("double"),
+            builtIn("string"), builtIn("token"), builtIn("boolean"), builtIn("dateTime"),
+            builtIn("duration"), builtIn("hexBinary"), builtIn("anyURI"), builtIn("anySimpleType"),
+            integers, union, pattern, enumerate(builtIn("decimal"), new String[] { "1", "1.5", "-0" }),
+        };
+    } // createTypes():XSSimpleType[]
+
+    /**
+     * Validates a value through a cache and directly, and compares the
+     * validated info filled in and the errors thrown.
+     */
+    protected static void compare(XSSimpleType type, String value,
+                                  SimpleTypeValidationCache cache, boolean normalize) {
+        String message = type.getName() + " '" + value + "'";
+        ValidatedInfo expected = new ValidatedInfo();
+        InvalidDatatypeValueException expectedError = null;
+        try {
+            type.validate(value, createContext(normalize), expected);
+        }
+        catch (InvalidDatatypeValueException e) {
+            expectedError = e;
+        }
+        ValidatedInfo actual = new ValidatedInfo();
+        // left over from another value
+        actual.memberType = type;
+        actual.actualValue = "left over";
+        Object actualValue = null;
+        try {
+            actualValue = cache.validate(type, value, createContext(normalize), actual);
+            assertNull(message, expectedError);
+        }
+        catch (InvalidDatatypeValueException e) {
+            assertNotNull(message + ": " + e.getMessage(), expectedError);
+            assertEquals(message, expectedError.getKey(), e.getKey());
+            assertEquals(message, Arrays.asList(expectedError.getArgs()), Arrays.asList(e.getArgs()));
+            return;
+        }
+        assertEquals(message, expected.actualValue, actualValue);
+        assertEquals(message, expected.actualValue, actual.actualValue);
+        assertEquals(message, expected.normalizedValue, actual.normalizedValue);
+        assertEquals(message, expected.actualValueType, actual.actualValueType);
+        assertSame(message, expected.actualType, actual.actualType);
+        assertSame(message, expected.memberType, actual.memberType);
+        assertEquals(message, expected.memberTypes == null ? null : Arrays.asList(expected.memberTypes),
+                     actual.memberTypes == null ? null : Arrays.asList(actual.memberTypes));
+        assertEquals(message, expected.itemValueTypes == null ? null : expected.itemValueTypes.toString(),
+                     actual.itemValueTypes == null ? null : actual.itemValueTypes.toString());
+    } // compare(XSSimpleType,String,SimpleTypeValidationCache,boolean)
+
+    /** Validates a value expected to be invalid. */
+    protected static InvalidDatatypeValueException validateInvalid(XSSimpleType type, String value,
+            SimpleTypeValidationCache cache) {
+        return validateInvalid(type, value, cache, createContext(true));
+    } // validateInvalid(XSSimpleType,String,SimpleTypeValidationCache):InvalidDatatypeValueException
+
+    /** Validates a value expected to be invalid in a context. */
+    protected static InvalidDatatypeValueException validateInvalid(XSSimpleType type, String value,
+            SimpleTypeValidationCache cache, ValidationState context) {
+        try {
+            cache.validate(type, value, context, new ValidatedInfo());
+        }
+        catch (InvalidDatatypeValueException e) {
+            return e;
+        }
+        fail("'" + value + "' is valid");
+        return null;
+    } // validateInvalid(XSSimpleType,String,SimpleTypeValidationCache,ValidationState):InvalidDatatypeValueException
+
+    /** Returns a restriction of a type with the given enumeration. */
+    protected static XSSimpleType enumerate(XSSimpleType base, String[] values) throws Exception {
+        XSFacets facets = new XSFacets();
+        facets.enumeration = new Vector(Arrays.asList(values));
+        XSSimpleType type = FACTORY.createTypeRestriction(null, null, (short) 0, base, null);
+        type.applyFacets(facets, XSSimpleType.FACET_ENUMERATION, (short) 0, createContext(true));
+        return type;
+    } // enumerate(XSSimpleType,String[]):XSSimpleType
+
+    protected static XSSimpleType builtIn(String name) {
+        return FACTORY.getBuiltInType(name);
+    }
+
+    protected static ValidationState createContext(boolean normalize) {
+        ValidationState context = new ValidationState();
+        context.setExtraChecking(true);
+        context.setFacetChecking(true);
+        context.setNormalizationRequired(normalize);
+        return context;
+    } // createContext(boolean):ValidationState
+
+} // class SimpleTypeValidationCacheTest
@@ -48,6 +48,9 @@ public class AllTests {
         suite.addTestSuite(UseGrammarPoolOnly_False_Test.class);
         suite.addTestSuite(FixedAttrTest.class);
         suite.addTestSuite(FeaturePropagationTest.class);
+        suite.addTestSuite(SchemaInformedRoundTripTest.class);
+        suite.addTestSuite(BinaryEventRoundTripTest.class);
+        suite.addTestSuite(AttributePSVITest.class);
         return suite;
     }
 }
@@ -0,0 +1,374 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package schema.config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.dom.PSVIDocumentImpl;
+import org.apache.xerces.jaxp.validation.XMLSchemaFactory;
+import org.apache.xerces.parsers.DOMParser;
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.xs.AttributePSVI;
+import org.apache.xerces.xs.ItemPSVI;
+import org.apache.xerces.xs.PSVIProvider;
+import org.apache.xerces.xs.StringList;
+import org.apache.xerces.xs.XSTypeDefinition;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Checks that the attribute PSVI kept by DOM trees built while validating
+ * is the attribute PSVI of its own attribute. The schema validator reuses
+ * its attribute PSVI objects by attribute index from one element to the
+ * next, so the attributes of nested elements, valid and invalid ones,
+ * defaulted ones and ones of list and union types, must each keep what
+ * a SAX handler saw when the attribute was reported.
+ *
+ * @version $Id$
+ */
+public class AttributePSVITest extends TestCase {
+
+    protected final static String DOCUMENT_CLASS_NAME =
+        "http://apache.org/xml/properties/dom/document-class-name";
+
+    protected final static String DEFER_NODE_EXPANSION =
+        "http://apache.org/xml/features/dom/defer-node-expansion";
+
+    /** A schema of recursive elements with attributes of several types. */
+    protected final static String SCHEMA =
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>\n" +
+        " <xs:simpleType name='ints'><xs:list itemType='xs:int'/></xs:simpleType>\n" +
+        " <xs:simpleType name='intOrDate'><xs:union memberTypes='xs:int xs:date'/></xs:simpleType>\n" +
+        " <xs:element name='root'>\n" +
+        "  <xs:complexType>\n" +
+        "   <xs:sequence><xs:element ref='outer' maxOccurs='unbounded'/></xs:sequence>\n" +
+        "   <xs:attribute name='version' type='xs:decimal' use='required'/>\n" +
+        "   <xs:attribute name='lang' type='xs:language' default='en'/>\n" +
+        "  </xs:complexType>\n" +
+        " </xs:element>\n" +
+        " <xs:element name='outer'>\n" +
+        "  <xs:complexType>\n" +
+        "   <xs:sequence><xs:element ref='inner' minOccurs='0' maxOccurs='unbounded'/></xs:sequence>\n" +
+        "   <xs:attribute name='a' type='xs:int'/>\n" +
+        "   <xs:attribute name='b' type='xs:date'/>\n" +
+        "   <xs:attribute name='flag' type='xs:boolean' default='true'/>\n" +
+        "  </xs:complexType>\n" +
+        " </xs:element>\n" +
+        " <xs:element name='inner'>\n" +
+        "  <xs:complexType>\n" +
+        "   <xs:sequence><xs:element ref='inner' minOccurs='0' maxOccurs='unbounded'/></xs:sequence>\n" +
+        "   <xs:attribute name='c' type='xs:int'/>\n" +
+        "   <xs:attribute name='d' type='ints'/>\n" +
+        "   <xs:attribute name='u' type='intOrDate'/>\n" +
+        "   <xs:attribute name='e' type='xs:token' default='dflt'/>\n" +
+        "  </xs:complexType>\n" +
+        " </xs:element>\n" +
+        "</xs:schema>\n";
+
+    /**
+     * A document whose nested elements have their attributes at the same
+     * indexes with other types, values and validity.
+     */
+    protected final static String DOCUMENT =
+        "<root xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance'\n" +
+        "      xsi:noNamespaceSchemaLocation='schema.xsd' version='1.5'>\n" +
+        " <outer a='1' b='2001-01-01'>\n" +
+        "  <inner c='10' d='1 2 3' u='2001-02-03'>\n" +
+        "   <inner u='7' e='x'>\n" +
+        "    <inner c='bad' d='4 five'/>\n" +
+        "   </inner>\n" +
+        "   <inner d='' c='11'/>\n" +
+        "  </inner>\n" +
+        "  <inner u='neither' undeclared='z'/>\n" +
+        " </outer>\n" +
+        " <outer flag='false' b='not a date' a='2'>\n" +
+        "  <inner c='12'><inner u='2002-03-04' c='13' d='6'/></inner>\n" +
+        " </outer>\n" +
+        " <outer/>\n" +
+        "</root>\n";
+
+    /** The document's system identifier, next to the schema. */
+    protected String fSystemId;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(AttributePSVITest.class);
+    }
+
+    public AttributePSVITest(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        File directory = File.createTempFile("attributepsvi", "");
+        directory.delete();
+        directory.mkdir();
+        directory.deleteOnExit();
+        File schema = new File(directory, "schema.xsd");
+        schema.deleteOnExit();
+        OutputStream out = new FileOutputStream(schema);
+        try {
+            out.write(SCHEMA.getBytes("UTF-8"));
+        }
+        finally {
+            out.close();
+        }
+        fSystemId = new File(directory, "doc.xml").toURI().toString();
+    }
+
+    public void testPSVIDOM() throws Exception {
+        List expected = recordSAX();
+        assertDescriptions(expected);
+
+        DOMParser parser = createDOMParser();
+        parser.setProperty(DOCUMENT_CLASS_NAME, "org.apache.xerces.dom.PSVIDocumentImpl");
+        parser.parse(createInputSource());
+        List actual = new ArrayList();
+        describe(parser.getDocument().getDocumentElement(), actual, false);
+        assertEquals(expected, actual);
+
+        // a second document with the same parser and validator
+        parser.parse(createInputSource());
+        actual.clear();
+        describe(parser.getDocument().getDocumentElement(), actual, false);
+        assertEquals(expected, actual);
+    }
+
+    public void testDeferredDOM() throws Exception {
+        List expected = new ArrayList();
+        List psvi = recordSAX();
+        for (int i = 0; i < psvi.size(); i++) {
+            expected.add(typeOf((String) psvi.get(i)));
+        }
+        DOMParser parser = createDOMParser();
+        parser.setFeature(DEFER_NODE_EXPANSION, true);
+        parser.parse(createInputSource());
+        List actual = new ArrayList();
+        describe(parser.getDocument().getDocumentElement(), actual, true);
+        assertEquals(expected, actual);
+    }
+
+    public void testValidatorDOMResult() throws Exception {
+        List expected = recordSAX();
+        DOMParser parser = new DOMParser();
+        parser.setFeature("http://xml.org/sax/features/namespaces", true);
+        parser.parse(createInputSource());
+        Document document = parser.getDocument();
+
+        SchemaFactory factory = new XMLSchemaFactory();
+        Validator validator = factory.newSchema(new URL(
+                fSystemId.substring(0, fSystemId.lastIndexOf('/') + 1) + "schema.xsd")).newValidator();
+        validator.setErrorHandler(new DefaultHandler());
+        DOMResult result = new DOMResult(new PSVIDocumentImpl());
+        validator.validate(new DOMSource(document, fSystemId), result);
+        List actual = new ArrayList();
+        describe(((Document) result.getNode()).getDocumentElement(), actual, false);
+        assertEquals(expected, actual);
+    }
+
+    //
+    // Protected methods
+    //
+
+    /** Spot checks the descriptions of the SAX parse. */
+    protected void assertDescriptions(List descriptions) {
+        String all = descriptions.toString();
+        // defaulted at the root, in the first outer and in a deep inner
+        assertTrue(all, all.indexOf("/root@lang valid full language true en ") != -1);
+        assertTrue(all, all.indexOf("/root/outer@flag valid full boolean true true ") != -1);
+        assertTrue(all, all.indexOf("/root/outer/inner/inner/inner@e valid full token true dflt ") != -1);
+        // a union member at the same index at two depths
+        assertTrue(all, all.indexOf("/root/outer/inner@u valid full intOrDate/date false 2001-02-03 ") != -1);
+        assertTrue(all, all.indexOf("/root/outer/inner/inner@u valid full intOrDate/int false 7 ") != -1);
+        // invalid below a valid attribute of the same index
+        assertTrue(all, all.indexOf("/root/outer/inner/inner/inner@c invalid full int false [cvc-datatype-valid.1.2.1, cvc-attribute.3]") != -1);
+        assertTrue(all, all.indexOf("/root/outer@b invalid full date false [cvc-datatype-valid.1.2.1, cvc-attribute.3]") != -1);
+        assertTrue(all, all.indexOf("/root/outer/inner@u invalid full intOrDate false [cvc-datatype-valid.1.2.3, cvc-attribute.3]") != -1);
+        assertTrue(all, all.indexOf("/root/outer/inner@undeclared notKnown none null false,") != -1);
+    } // assertDescriptions(List)
+
+    /** Records the attribute PSVI seen by a SAX handler. */
+    protected List recordSAX() throws Exception {
+        final SAXParser parser = new SAXParser();
+        parser.setFeature("http://xml.org/sax/features/validation", true);
+        parser.setFeature("http://apache.org/xml/features/validation/schema", true);
+        final List descriptions = new ArrayList();
+        parser.setErrorHandler(new DefaultHandler());
+        parser.setContentHandler(new DefaultHandler() {
+            StringBuffer fPath = new StringBuffer();
+            public void startElement(String uri, String localName, String qName,
+                                     Attributes attributes) {
+                fPath.append('/').append(qName);
+                PSVIProvider provider = (PSVIProvider) parser;
+                List list = new ArrayList();
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    if (!isNamespaceDeclaration(attributes.getQName(i))) {
+                        list.add(describe(fPath + "@" + attributes.getQName(i),
+                                          provider.getAttributePSVI(i)));
+                    }
+                }
+                // the DOM's order of attributes
+                Collections.sort(list);
+                descriptions.addAll(list);
+            }
+            public void endElement(String uri, String localName, String qName) {
+                fPath.setLength(fPath.lastIndexOf("/"));
+            }
+        });
+        parser.parse(createInputSource());
+        return descriptions;
+    } // recordSAX():List
+
+    /** Returns a validating DOM parser. */
+    protected DOMParser createDOMParser() throws Exception {
+        DOMParser parser = new DOMParser();
+        parser.setFeature("http://xml.org/sax/features/validation", true);
+        parser.setFeature("http://apache.org/xml/features/validation/schema", true);
+        parser.setFeature(DEFER_NODE_EXPANSION, false);
+        parser.setErrorHandler(new ErrorHandler() {
+            public void warning(SAXParseException e) {}
+            public void error(SAXParseException e) {}
+            public void fatalError(SAXParseException e) throws SAXParseException {
+                throw e;
+            }
+        });
+        return parser;
+    } // createDOMParser():DOMParser
+
+    /** Returns an input source of the document. */
+    protected InputSource createInputSource() {
+        InputSource source = new InputSource(new StringReader(DOCUMENT));
+        source.setSystemId(fSystemId);
+        return source;
+    } // createInputSource():InputSource
+
+    /**
+     * Describes the attributes of an element and of its descendants, in
+     * document order, either with their PSVI or their type name only.
+     */
+    protected static void describe(Element element, List descriptions, boolean typeOnly) {
+        describe(element, "/" + element.getNodeName(), descriptions, typeOnly);
+    } // describe(Element,List,boolean)
+
+    /** Describes the attributes of an element with the given path. */
+    protected static void describe(Element element, String path,
+                                   List descriptions, boolean typeOnly) {
+        NamedNodeMap attributes = element.getAttributes();
+        List list = new ArrayList();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attr = (Attr) attributes.item(i);
+            if (isNamespaceDeclaration(attr.getName())) {
+                continue;
+            }
+            String name = path + "@" + attr.getName();
+            list.add(typeOnly ? name + " " + attr.getSchemaTypeInfo().getTypeName()
+                              : describe(name, (AttributePSVI) attr));
+        }
+        Collections.sort(list);
+        descriptions.addAll(list);
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                describe((Element) child, path + "/" + child.getNodeName(), descriptions, typeOnly);
+            }
+        }
+    } // describe(Element,String,List,boolean)
+
+    /**
+     * Describes the PSVI of an attribute: its validity, validation
+     * attempted, type and member type, whether the schema supplied it,
+     * its actual value if it's valid and its error codes.
+     */
+    protected static String describe(String name, AttributePSVI psvi) {
+        StringBuffer buffer = new StringBuffer(name);
+        buffer.append(' ').append(validity(psvi.getValidity()));
+        buffer.append(' ').append(attempted(psvi.getValidationAttempted()));
+        XSTypeDefinition type = psvi.getTypeDefinition();
+        buffer.append(' ').append(type != null ? type.getName() : null);
+        if (psvi.getMemberTypeDefinition() != null) {
+            buffer.append('/').append(psvi.getMemberTypeDefinition().getName());
+        }
+        buffer.append(' ').append(psvi.getIsSchemaSpecified());
+        if (psvi.getValidity() == ItemPSVI.VALIDITY_VALID) {
+            buffer.append(' ').append(psvi.getSchemaNormalizedValue());
+            buffer.append(' ').append(psvi.getActualNormalizedValueType());
+            buffer.append(' ').append(psvi.getActualNormalizedValue());
+        }
+        StringList codes = psvi.getErrorCodes();
+        if (codes.getLength() > 0) {
+            buffer.append(" [");
+            for (int i = 0; i < codes.getLength(); i++) {
+                buffer.append(i > 0 ? ", " : "").append(codes.item(i));
+            }
+            buffer.append(']');
+        }
+        return buffer.toString();
+    } // describe(String,AttributePSVI):String
+
+    /**
+     * Returns the name and the type, as the deferred DOM reports it, of
+     * an attribute description.
+     */
+    protected static String typeOf(String description) {
+        String[] parts = description.split(" ");
+        String type = parts[3];
+        int slash = type.indexOf('/');
+        if (slash != -1) {
+            type = type.substring(slash + 1);
+        }
+        return parts[0] + " " + type;
+    } // typeOf(String):String
+
+    /** Returns true for the xmlns attributes. */
+    protected static boolean isNamespaceDeclaration(String qName) {
+        return qName.equals("xmlns") || qName.startsWith("xmlns:");
+    } // isNamespaceDeclaration(String):boolean
+
+    /** Returns the name of a validity. */
+    protected static String validity(short validity) {
+        return validity == ItemPSVI.VALIDITY_VALID ? "valid"
+             : validity == ItemPSVI.VALIDITY_INVALID ? "invalid" : "notKnown";
+    } // validity(short):String
+
+    /** Returns the name of a validation attempted. */
+    protected static String attempted(short attempted) {
+        return attempted == ItemPSVI.VALIDATION_FULL ? "full"
+             : attempted == ItemPSVI.VALIDATION_PARTIAL ? "partial" : "none";
+    } // attempted(short):String
+
+} // class AttributePSVITest
@@ -0,0 +1,463 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package schema.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.TestCase;
+
+import org.apache.xerces.impl.Constants;
+import org.apache.xerces.impl.binary.BinaryEventWriter;
+import org.apache.xerces.parsers.BinaryEventConfiguration;
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.parsers.XIncludeAwareParserConfiguration;
+import org.apache.xerces.parsers.XMLGrammarPreparser;
+import org.apache.xerces.util.XMLGrammarPoolImpl;
+import org.apache.xerces.xni.grammars.XMLGrammarDescription;
+import org.apache.xerces.xni.parser.XMLErrorHandler;
+import org.apache.xerces.xni.parser.XMLInputSource;
+import org.apache.xerces.xni.parser.XMLParseException;
+import org.apache.xerces.xni.parser.XMLParserConfiguration;
+import org.apache.xerces.xs.ElementPSVI;
+import org.apache.xerces.xs.ItemPSVI;
+import org.apache.xerces.xs.PSVIProvider;
+import org.apache.xerces.xs.XSTypeDefinition;
+import org.apache.xerces.xs.XSValue;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.ext.Attributes2;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Records documents with the binary event writer and checks that parsing
+ * the recordings with <code>new SAXParser(new BinaryEventConfiguration())</code>
+ * gives the same SAX events, and the same PSVI when it's recorded, as
+ * parsing the documents, and that truncated or corrupt recordings fail
+ * with an <code>IOException</code>.
+ *
+ * @version $Id$
+ */
+public class BinaryEventRoundTripTest extends TestCase {
+
+    protected final static String VALIDATION = Constants.SAX_FEATURE_PREFIX
+        + Constants.VALIDATION_FEATURE;
+
+    protected final static String SCHEMA_VALIDATION = Constants.XERCES_FEATURE_PREFIX
+        + Constants.SCHEMA_VALIDATION_FEATURE;
+
+    protected final static String LEXICAL_HANDLER = Constants.SAX_PROPERTY_PREFIX
+        + Constants.LEXICAL_HANDLER_PROPERTY;
+
+    /**
+     * A document with namespaces, comments, processing instructions, CDATA
+     * sections, entity and character references, defaulted and normalized
+     * attributes, and characters outside the BMP.
+     */
+    protected final static String LEXICAL_DOCUMENT =
+        "<?xml version='1.0' encoding='UTF-8' standalone='yes'?>\n" +
+        "<!DOCTYPE r:root [\n" +
+        " <!ENTITY text 'entity text'>\n" +
+        " <!ENTITY markup '<r:e a=\"&#38;text;\">&text;<!--c--></r:e>'>\n" +
+        " <!ATTLIST r:e d CDATA 'default' n NMTOKENS #IMPLIED>\n" +
+        "]>\n" +
+        "<?before root?>\n" +
+        "<!-- before root -->\n" +
+        "<r:root xmlns:r='urn:r' xmlns='urn:default' a='1'>\n" +
+        " <r:e n='  x\n y  ' b='tab\there &amp; &#x3c;'>caf\u00e9 &#x10400; \ud801\udc01</r:e>\n" +
+        " <child xmlns='' xmlns:s='urn:s' s:a='s'><s:e/><![CDATA[<not> &markup;]]></child>\n" +
+        " &markup; &text;&#38;\n" +
+        " <?pi data with  spaces?><?empty?><!---->\n" +
+        " <r:root xmlns:r='urn:other'/>\n" +
+        "</r:root>\n" +
+        "<!-- after root --><?after?>\n";
+
+    /** A schema with named, anonymous, list and union types. */
+    protected final static String SCHEMA =
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'\n" +
+        "           targetNamespace='urn:t' xmlns='urn:t' elementFormDefault='qualified'>\n" +
+        " <xs:simpleType name='price'>\n" +
+        "  <xs:restriction base='xs:decimal'><xs:fractionDigits value='2'/></xs:restriction>\n" +
+        " </xs:simpleType>\n" +
+        " <xs:simpleType name='sizes'><xs:list itemType='xs:int'/></xs:simpleType>\n" +
+        " <xs:simpleType name='idOrDate'><xs:union memberTypes='xs:int xs:date'/></xs:simpleType>\n" +
+        " <xs:complexType name='item'>\n" +
+        "  <xs:simpleContent>\n" +
+        "   <xs:extension base='price'>\n" +
+        "    <xs:attribute name='code' type='xs:token'/>\n" +
+        "    <xs:attribute name='when' type='idOrDate'/>\n" +
+        "    <xs:attribute name='unit' type='xs:string' default='EUR'/>\n" +
+        "   </xs:extension>\n" +
+        "  </xs:simpleContent>\n" +
+        " </xs:complexType>\n" +
+        " <xs:element name='order'>\n" +
+        "  <xs:complexType>\n" +
+        "   <xs:sequence>\n" +
+        "    <xs:element name='item' type='item' maxOccurs='unbounded'/>\n" +
+        "    <xs:element name='sizes' type='sizes'/>\n" +
+        "    <xs:element name='qty' nillable='true' maxOccurs='2'>\n" +
+        "     <xs:simpleType>\n" +
+        "      <xs:restriction base='xs:int'><xs:maxInclusive value='100'/></xs:restriction>\n" +
+        "     </xs:simpleType>\n" +
+        "    </xs:element>\n" +
+        "    <xs:element name='note' type='xs:string' default='none' minOccurs='0'/>\n" +
+        "   </xs:sequence>\n" +
+        "   <xs:attribute name='id' type='xs:ID'/>\n" +
+        "  </xs:complexType>\n" +
+        " </xs:element>\n" +
+        "</xs:schema>\n";
+
+    /** A document of the schema, with valid and invalid values. */
+    protected final static String SCHEMA_DOCUMENT =
+        "<order xmlns='urn:t' xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance' id=' o1 '>\n" +
+        " <item code='  a   b ' when='12'>  1.50 </item>\n" +
+        " <item when='2006-10-19'>2.999</item>\n" +
+        " <item when='never' unit='USD'>3</item>\n" +
+        " <sizes> 1  2\n3 </sizes>\n" +
+        " <qty xsi:nil='true'/>\n" +
+        " <qty>101</qty>\n" +
+        " <note/>\n" +
+        "</order>\n";
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(BinaryEventRoundTripTest.class);
+    }
+
+    public BinaryEventRoundTripTest(String name) {
+        super(name);
+    }
+
+    public void testLexical() throws Exception {
+        byte[] recorded = write(null, LEXICAL_DOCUMENT, false);
+        String expected = record(new SAXParser(), new InputSource(new StringReader(LEXICAL_DOCUMENT)));
+        String actual = record(new SAXParser(new BinaryEventConfiguration()),
+                               new InputSource(new ByteArrayInputStream(recorded)));
+        assertEquals(expected, actual);
+    }
+
+    public void testPSVI() throws Exception {
+        XMLGrammarPoolImpl pool = preparse(SCHEMA);
+        byte[] recorded = write(pool, SCHEMA_DOCUMENT, true);
+
+        SAXParser direct = new SAXParser(null, pool);
+        direct.setFeature(VALIDATION, true);
+        direct.setFeature(SCHEMA_VALIDATION, true);
+        String expected = record(direct, new InputSource(new StringReader(SCHEMA_DOCUMENT)));
+        assertTrue(expected, expected.indexOf("{urn:t}item") != -1);
+        assertTrue(expected, expected.indexOf("1.5") != -1);
+
+        SAXParser replaying = new SAXParser(new BinaryEventConfiguration(null, pool));
+        String actual = record(replaying, new InputSource(new ByteArrayInputStream(recorded)));
+        assertEquals(expected, actual);
+    }
+
+    public void testPSVINotRecorded() throws Exception {
+        XMLGrammarPoolImpl pool = preparse(SCHEMA);
+        byte[] recorded = write(pool, SCHEMA_DOCUMENT, false);
+        SAXParser replaying = new SAXParser(new BinaryEventConfiguration(null, pool));
+        String actual = record(replaying, new InputSource(new ByteArrayInputStream(recorded)));
+        assertEquals(-1, actual.indexOf("psvi"));
+        assertTrue(actual, actual.indexOf("[2.999]") != -1);
+    }
+
+    public void testTruncated() throws Exception {
+        XMLGrammarPoolImpl pool = preparse(SCHEMA);
+        checkTruncated(pool, write(null, LEXICAL_DOCUMENT, false));
+        checkTruncated(pool, write(pool, SCHEMA_DOCUMENT, true));
+    }
+
+    public void testNotRecorded() throws Exception {
+        checkFails(null, "not a recording".getBytes("US-ASCII"), "isn't a binary event stream");
+        checkFails(null, new byte[] { 'X', 'N', 'I', 'B', 99, 0 }, "Version 99");
+        checkFails(null, LEXICAL_DOCUMENT.getBytes("UTF-8"), "isn't a binary event stream");
+    }
+
+    public void testGarbage() throws Exception {
+        XMLGrammarPoolImpl pool = preparse(SCHEMA);
+        byte[][] recordings = {
+            write(null, LEXICAL_DOCUMENT, false),
+            write(pool, SCHEMA_DOCUMENT, true),
+        };
+        Random random = new Random(20061019);
+        for (int i = 0; i < 2000; i++) {
+            byte[] recorded = recordings[i % recordings.length];
+            byte[] garbage;
+            if (i % 4 == 0) {
+                // a header followed by random bytes
+                garbage = new byte[6 + random.nextInt(200)];
+                random.nextBytes(garbage);
+                System.arraycopy(recorded, 0, garbage, 0, 6);
+            }
+            else {
+                // a recording with a few bytes changed
+                garbage = (byte[]) recorded.clone();
+                for (int j = random.nextInt(3); j >= 0; j--) {
+                    garbage[6 + random.nextInt(garbage.length - 6)] = (byte) random.nextInt(256);
+                }
+            }
+            checkCorrupt(pool, garbage, "garbage " + i);
+        }
+    }
+
+    //
+    // Private methods
+    //
+
+    /** Checks that every strict prefix of a recording fails to parse. */
+    private void checkTruncated(XMLGrammarPoolImpl pool, byte[] recorded) throws Exception {
+        // the whole recording parses
+        checkCorrupt(pool, recorded, "whole");
+        for (int length = 0; length < recorded.length; length++) {
+            byte[] truncated = new byte[length];
+            System.arraycopy(recorded, 0, truncated, 0, length);
+            checkFails(pool, truncated, length < 6 ? null : "Unexpected end");
+        }
+    }
+
+    /** Checks that parsing a recording fails with an I/O error. */
+    private void checkFails(XMLGrammarPoolImpl pool, byte[] recorded, String message) {
+        try {
+            parse(pool, recorded);
+            fail("parsed " + recorded.length + " bytes");
+        }
+        catch (IOException e) {
+            if (message != null) {
+                assertTrue(e.getMessage(), e.getMessage().indexOf(message) != -1);
+            }
+        }
+        catch (Exception e) {
+            fail(recorded.length + " bytes: " + e);
+        }
+    }
+
+    /**
+     * Checks that a possibly corrupt recording either parses or fails with
+     * an I/O error.
+     */
+    private void checkCorrupt(XMLGrammarPoolImpl pool, byte[] recorded, String name) {
+        try {
+            parse(pool, recorded);
+        }
+        catch (IOException e) {
+            // expected
+        }
+        catch (Throwable e) {
+            AssertionFailedError failure = new AssertionFailedError(name + ": " + e);
+            failure.initCause(e);
+            throw failure;
+        }
+    }
+
+    private void parse(XMLGrammarPoolImpl pool, byte[] recorded) throws Exception {
+        record(new SAXParser(new BinaryEventConfiguration(null, pool)),
+               new InputSource(new ByteArrayInputStream(recorded)));
+    }
+
+    /** Parses a document and records its events, and PSVI if asked to. */
+    private byte[] write(XMLGrammarPoolImpl pool, String document, boolean psvi)
+        throws Exception {
+        XMLParserConfiguration config = new XIncludeAwareParserConfiguration(null, pool);
+        if (pool != null) {
+            config.setFeature(VALIDATION, true);
+            config.setFeature(SCHEMA_VALIDATION, true);
+        }
+        config.setErrorHandler(new IgnoringErrorHandler());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEventWriter writer = new BinaryEventWriter(out);
+        writer.setWritePSVI(psvi);
+        config.setDocumentHandler(writer);
+        config.parse(new XMLInputSource(null, "urn:document", null,
+                                        new StringReader(document), null));
+        return out.toByteArray();
+    }
+
+    private XMLGrammarPoolImpl preparse(String schema) throws Exception {
+        XMLGrammarPoolImpl pool = new XMLGrammarPoolImpl();
+        XMLGrammarPreparser preparser = new XMLGrammarPreparser();
+        preparser.registerPreparser(XMLGrammarDescription.XML_SCHEMA, null);
+        preparser.setGrammarPool(pool);
+        preparser.preparseGrammar(XMLGrammarDescription.XML_SCHEMA,
+                new XMLInputSource(null, "urn:schema", null, new StringReader(schema), null));
+        return pool;
+    }
+
+    private String record(SAXParser parser, InputSource source) throws Exception {
+        Recorder recorder = new Recorder(parser);
+        parser.setContentHandler(recorder);
+        parser.setErrorHandler(recorder);
+        parser.setProperty(LEXICAL_HANDLER, recorder);
+        parser.parse(source);
+        return recorder.fBuffer.toString();
+    }
+
+    //
+    // Classes
+    //
+
+    /** Records SAX events and PSVI as text; errors are ignored. */
+    private static class Recorder extends DefaultHandler implements LexicalHandler {
+
+        final StringBuffer fBuffer = new StringBuffer();
+
+        final PSVIProvider fPSVIProvider;
+
+        Recorder(PSVIProvider provider) {
+            fPSVIProvider = provider;
+        }
+
+        public void startDocument() {
+            fBuffer.append("start\n");
+        }
+
+        public void endDocument() {
+            fBuffer.append("end\n");
+        }
+
+        public void startElement(String uri, String localName, String qName,
+                Attributes attributes) {
+            fBuffer.append("<{").append(uri).append('}').append(localName)
+                .append(' ').append(qName);
+            for (int i = 0; i < attributes.getLength(); i++) {
+                fBuffer.append(' ').append('{').append(attributes.getURI(i))
+                    .append('}').append(attributes.getLocalName(i)).append(' ')
+                    .append(attributes.getQName(i)).append(':')
+                    .append(attributes.getType(i)).append("=\"")
+                    .append(attributes.getValue(i)).append('"');
+                if (!((Attributes2) attributes).isSpecified(i)) {
+                    fBuffer.append(" unspecified");
+                }
+                append(fPSVIProvider.getAttributePSVI(i));
+            }
+            fBuffer.append(">\n");
+        }
+
+        public void endElement(String uri, String localName, String qName) {
+            fBuffer.append("</").append(qName).append('>');
+            append(fPSVIProvider.getElementPSVI());
+            fBuffer.append('\n');
+        }
+
+        public void startPrefixMapping(String prefix, String uri) {
+            fBuffer.append("xmlns:").append(prefix).append('=').append(uri).append('\n');
+        }
+
+        public void endPrefixMapping(String prefix) {
+            fBuffer.append("/xmlns:").append(prefix).append('\n');
+        }
+
+        public void characters(char[] ch, int start, int length) {
+            fBuffer.append('[').append(ch, start, length).append("]\n");
+        }
+
+        public void ignorableWhitespace(char[] ch, int start, int length) {
+            fBuffer.append("ws[").append(ch, start, length).append("]\n");
+        }
+
+        public void processingInstruction(String target, String data) {
+            fBuffer.append("<?").append(target).append(' ').append(data).append("?>\n");
+        }
+
+        public void comment(char[] ch, int start, int length) {
+            fBuffer.append("<!--").append(ch, start, length).append("-->\n");
+        }
+
+        public void startCDATA() {
+            fBuffer.append("<![CDATA[\n");
+        }
+
+        public void endCDATA() {
+            fBuffer.append("]]>\n");
+        }
+
+        public void startDTD(String name, String publicId, String systemId) {
+            fBuffer.append("<!DOCTYPE ").append(name).append(' ')
+                .append(publicId).append(' ').append(systemId).append(">\n");
+        }
+
+        public void endDTD() {
+            fBuffer.append("]>\n");
+        }
+
+        public void startEntity(String name) {
+            fBuffer.append('&').append(name).append(";\n");
+        }
+
+        public void endEntity(String name) {
+            fBuffer.append("/&").append(name).append(";\n");
+        }
+
+        public void error(SAXParseException e) throws SAXException {}
+
+        /** Appends the PSVI of an element or attribute. */
+        private void append(ItemPSVI psvi) {
+            if (psvi == null || psvi.getValidationAttempted() == ItemPSVI.VALIDATION_NONE) {
+                return;
+            }
+            fBuffer.append(" psvi(").append(psvi.getValidity())
+                .append(',').append(psvi.getValidationAttempted())
+                .append(',').append(psvi.getIsSchemaSpecified());
+            if (psvi instanceof ElementPSVI) {
+                fBuffer.append(",nil=").append(((ElementPSVI) psvi).getNil());
+            }
+            append(psvi.getTypeDefinition());
+            append(psvi.getMemberTypeDefinition());
+            XSValue value = psvi.getSchemaValue();
+            if (psvi.getSchemaNormalizedValue() != null) {
+                fBuffer.append(",'").append(psvi.getSchemaNormalizedValue()).append('\'');
+                // the validator leaves the value of an invalid item as it was
+                if (psvi.getValidity() == ItemPSVI.VALIDITY_VALID) {
+                    fBuffer.append(',').append(value.getActualValueType())
+                        .append(',').append(value.getActualValue());
+                }
+            }
+            fBuffer.append(')');
+        }
+
+        /** Appends the name of a type, or - if it's anonymous. */
+        private void append(XSTypeDefinition type) {
+            fBuffer.append(',');
+            if (type == null || type.getAnonymous()) {
+                fBuffer.append('-');
+            }
+            else {
+                fBuffer.append('{').append(type.getNamespace()).append('}').append(type.getName());
+            }
+        }
+
+    } // class Recorder
+
+    /** Ignores validation errors. */
+    private static class IgnoringErrorHandler implements XMLErrorHandler {
+
+        public void warning(String domain, String key, XMLParseException e) {}
+
+        public void error(String domain, String key, XMLParseException e) {}
+
+        public void fatalError(String domain, String key, XMLParseException e) {
+            throw e;
+        }
+
+    } // class IgnoringErrorHandler
+}
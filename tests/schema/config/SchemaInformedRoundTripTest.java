@@ -0,0 +1,306 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package schema.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.impl.Constants;
+import org.apache.xerces.impl.binary.SchemaInformedDecoder;
+import org.apache.xerces.impl.binary.SchemaInformedEncoder;
+import org.apache.xerces.parsers.BinaryEventConfiguration;
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.parsers.XIncludeAwareParserConfiguration;
+import org.apache.xerces.parsers.XMLGrammarPreparser;
+import org.apache.xerces.util.XMLGrammarPoolImpl;
+import org.apache.xerces.xni.grammars.XMLGrammarDescription;
+import org.apache.xerces.xni.parser.XMLErrorHandler;
+import org.apache.xerces.xni.parser.XMLInputSource;
+import org.apache.xerces.xni.parser.XMLParseException;
+import org.apache.xerces.xni.parser.XMLParserConfiguration;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Encodes the documents of these tests with the schema-informed binary
+ * encoder and checks that parsing the encoded documents gives the same
+ * SAX events as validating the documents.
+ *
+ * @version $Id$
+ */
+public class SchemaInformedRoundTripTest extends TestCase {
+
+    protected final static String VALIDATION = Constants.SAX_FEATURE_PREFIX
+        + Constants.VALIDATION_FEATURE;
+
+    protected final static String SCHEMA_VALIDATION = Constants.XERCES_FEATURE_PREFIX
+        + Constants.SCHEMA_VALIDATION_FEATURE;
+
+    protected final static String NOTIFY_BUILTIN_REFS = Constants.XERCES_FEATURE_PREFIX
+        + Constants.NOTIFY_BUILTIN_REFS_FEATURE;
+
+    protected final static String LEXICAL_HANDLER = Constants.SAX_PROPERTY_PREFIX
+        + Constants.LEXICAL_HANDLER_PROPERTY;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(SchemaInformedRoundTripTest.class);
+    }
+
+    public SchemaInformedRoundTripTest(String name) {
+        super(name);
+    }
+
+    public void testBase() throws Exception {
+        checkRoundTrip("base.xsd", "base.xml");
+    }
+
+    public void testFixedAttr() throws Exception {
+        checkRoundTrip("base.xsd", "fixedAttr.xml");
+    }
+
+    public void testIdIdref() throws Exception {
+        checkRoundTrip("base.xsd", "idIdref.xml");
+    }
+
+    public void testSimpleType() throws Exception {
+        checkRoundTrip("base.xsd", "simpleType.xml");
+    }
+
+    public void testUnparsedEntity() throws Exception {
+        checkRoundTrip("base.xsd", "unparsedEntity.xml");
+    }
+
+    public void testXSIType() throws Exception {
+        checkRoundTrip("base.xsd", "xsitype_A_A.xml");
+        checkRoundTrip("base.xsd", "xsitype_A_C.xml");
+        checkRoundTrip("base.xsd", "xsitype_C_A.xml");
+        checkRoundTrip("base.xsd", "xsitype_C_AC.xml");
+        checkRoundTrip("base.xsd", "xsitype_C_C.xml");
+        checkRoundTrip("base.xsd", "xsitype_C_CA.xml");
+    }
+
+    public void testIdentityConstraints() throws Exception {
+        checkRoundTrip("idc.xsd", "idc.xml");
+    }
+
+    public void testOtherNamespace() throws Exception {
+        checkRoundTrip("otherNamespace.xsd", "otherNamespace.xml");
+    }
+
+    public void testPersonal() throws Exception {
+        checkRoundTrip("../personal.xsd", "../personal-schema.xml");
+    }
+
+    public void testSmallerThanText() throws Exception {
+        XMLGrammarPoolImpl pool = preparse("../personal.xsd");
+        byte[] encoded = encode(pool, getURL("../personal-schema.xml"));
+        assertTrue("encoded document isn't schema-informed",
+                SchemaInformedDecoder.isSchemaInformed(encoded));
+
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        java.io.InputStream in = getURL("../personal-schema.xml").openStream();
+        try {
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                text.write(buffer, 0, count);
+            }
+        }
+        finally {
+            in.close();
+        }
+        assertTrue("encoded document is larger than the text: "
+                + encoded.length + " >= " + text.size(),
+                encoded.length < text.size());
+    }
+
+    public void testMissingGrammar() throws Exception {
+        byte[] encoded = encode(preparse("base.xsd"), getURL("base.xml"));
+        SAXParser parser = new SAXParser(new BinaryEventConfiguration(null,
+                new XMLGrammarPoolImpl()));
+        try {
+            parser.parse(new InputSource(new ByteArrayInputStream(encoded)));
+            fail("decoded a document without its grammar");
+        }
+        catch (IOException e) {
+            // expected
+        }
+    }
+
+    //
+    // Private methods
+    //
+
+    private void checkRoundTrip(String schema, String document) throws Exception {
+        XMLGrammarPoolImpl pool = preparse(schema);
+        URL url = getURL(document);
+        byte[] encoded = encode(pool, url);
+
+        SAXParser direct = new SAXParser(null, pool);
+        direct.setFeature(VALIDATION, true);
+        direct.setFeature(SCHEMA_VALIDATION, true);
+        String expected = record(direct, new InputSource(url.toExternalForm()));
+
+        SAXParser decoding = new SAXParser(new BinaryEventConfiguration(null, pool));
+        String actual = record(decoding, new InputSource(new ByteArrayInputStream(encoded)));
+
+        assertEquals("events of " + document, expected, actual);
+    }
+
+    private XMLGrammarPoolImpl preparse(String schema) throws Exception {
+        XMLGrammarPoolImpl pool = new XMLGrammarPoolImpl();
+        XMLGrammarPreparser preparser = new XMLGrammarPreparser();
+        preparser.registerPreparser(XMLGrammarDescription.XML_SCHEMA, null);
+        preparser.setGrammarPool(pool);
+        preparser.preparseGrammar(XMLGrammarDescription.XML_SCHEMA,
+                new XMLInputSource(null, getURL(schema).toExternalForm(), null));
+        return pool;
+    }
+
+    private byte[] encode(XMLGrammarPoolImpl pool, URL url) throws Exception {
+        XMLParserConfiguration config = new XIncludeAwareParserConfiguration(null, pool);
+        config.setFeature(VALIDATION, true);
+        config.setFeature(SCHEMA_VALIDATION, true);
+        config.setFeature(NOTIFY_BUILTIN_REFS, true);
+        config.setErrorHandler(new IgnoringErrorHandler());
+        SchemaInformedEncoder encoder = new SchemaInformedEncoder();
+        encoder.setGrammarPool(pool);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.setOutputStream(out);
+        config.setDocumentHandler(encoder);
+        config.parse(new XMLInputSource(null, url.toExternalForm(), null));
+        return out.toByteArray();
+    }
+
+    private String record(SAXParser parser, InputSource source) throws Exception {
+        Recorder recorder = new Recorder();
+        parser.setContentHandler(recorder);
+        parser.setErrorHandler(recorder);
+        parser.setProperty(LEXICAL_HANDLER, recorder);
+        parser.parse(source);
+        return recorder.fBuffer.toString();
+    }
+
+    private URL getURL(String name) throws FileNotFoundException {
+        String packageDir = this.getClass().getPackage().getName().replace('.',
+                File.separatorChar);
+        String path = packageDir + "/" + name;
+        URL url = ClassLoader.getSystemResource(path);
+        if (url == null) {
+            throw new FileNotFoundException("Couldn't find file for test: " + path);
+        }
+        return url;
+    }
+
+    //
+    // Classes
+    //
+
+    /** Records SAX events as text; errors are ignored. */
+    private static class Recorder extends DefaultHandler implements LexicalHandler {
+
+        final StringBuffer fBuffer = new StringBuffer();
+
+        public void startElement(String uri, String localName, String qName,
+                Attributes attributes) {
+            fBuffer.append("<{").append(uri).append('}').append(localName)
+                .append(' ').append(qName);
+            for (int i = 0; i < attributes.getLength(); i++) {
+                fBuffer.append(' ').append('{').append(attributes.getURI(i))
+                    .append('}').append(attributes.getLocalName(i)).append(' ')
+                    .append(attributes.getQName(i)).append(':')
+                    .append(attributes.getType(i)).append("=\"")
+                    .append(attributes.getValue(i)).append('"');
+            }
+            fBuffer.append(">\n");
+        }
+
+        public void endElement(String uri, String localName, String qName) {
+            fBuffer.append("</").append(qName).append(">\n");
+        }
+
+        public void startPrefixMapping(String prefix, String uri) {
+            fBuffer.append("xmlns:").append(prefix).append('=').append(uri).append('\n');
+        }
+
+        public void endPrefixMapping(String prefix) {
+            fBuffer.append("/xmlns:").append(prefix).append('\n');
+        }
+
+        public void characters(char[] ch, int start, int length) {
+            fBuffer.append('[').append(ch, start, length).append("]\n");
+        }
+
+        public void ignorableWhitespace(char[] ch, int start, int length) {
+            fBuffer.append("ws[").append(ch, start, length).append("]\n");
+        }
+
+        public void processingInstruction(String target, String data) {
+            fBuffer.append("<?").append(target).append(' ').append(data).append("?>\n");
+        }
+
+        public void comment(char[] ch, int start, int length) {
+            fBuffer.append("<!--").append(ch, start, length).append("-->\n");
+        }
+
+        public void startCDATA() {
+            fBuffer.append("<![CDATA[\n");
+        }
+
+        public void endCDATA() {
+            fBuffer.append("]]>\n");
+        }
+
+        public void startDTD(String name, String publicId, String systemId) {
+            fBuffer.append("<!DOCTYPE ").append(name).append(' ')
+                .append(publicId).append(' ').append(systemId).append(">\n");
+        }
+
+        public void endDTD() {}
+
+        public void startEntity(String name) {}
+
+        public void endEntity(String name) {}
+
+        public void error(SAXParseException e) throws SAXException {}
+
+    } // class Recorder
+
+    /** Ignores validation errors. */
+    private static class IgnoringErrorHandler implements XMLErrorHandler {
+
+        public void warning(String domain, String key, XMLParseException e) {}
+
+        public void error(String domain, String key, XMLParseException e) {}
+
+        public void fatalError(String domain, String key, XMLParseException e) {
+            throw e;
+        }
+
+    } // class IgnoringErrorHandler
+}
@@ -0,0 +1,408 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package thread;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.xerces.parsers.CachingParserPool;
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.util.SymbolTable;
+import org.apache.xerces.util.XMLCatalogResolver;
+import org.apache.xerces.util.XMLGrammarPoolImpl;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Parses and validates many documents concurrently on virtual threads,
+ * one per task, with parsers created by a caching parser pool which
+ * guards its symbol table and grammar pool with locks, and sharing a
+ * catalog resolver which guards its lookups with a lock.
+ * <p>
+ * The catalogs, the DTD and the schema are served by a local HTTP
+ * server, which delays its responses so that the virtual threads reading
+ * them park. The catalog given to the resolver chains to a second one,
+ * which chains to the catalog mapping the schema, and it delegates the
+ * system identifier of the DTD to a fourth catalog. The catalogs which
+ * are chained to and delegated to are the ones the catalog library reads
+ * lazily, while holding the monitor of a catalog.
+ * <p>
+ * The test records the events reported when a virtual thread parks while
+ * pinned to its carrier thread and fails if there were any. It first
+ * checks that such an event is recorded for a virtual thread which
+ * sleeps in a synchronized block, and fails if virtual threads or the
+ * flight recorder aren't available or the event isn't recorded, as it
+ * then could not detect pinning.
+ * <p>
+ * With the <code>-synchronized</code> option, the parser pool and the
+ * resolver use monitors instead of locks, and the test is expected to
+ * fail.
+ * <p>
+ * Usage: java thread.VirtualThreadTest [-synchronized] [number of documents]
+ *
+ * @version $Id$
+ */
+public class VirtualThreadTest {
+
+    //
+    // Constants
+    //
+
+    /** Default number of documents. */
+    protected static final int DEFAULT_DOCUMENT_COUNT = 5000;
+
+    /** System identifier of the schema, mapped by the last chained catalog. */
+    protected static final String SCHEMA_ID = "http://xerces.apache.org/tests/thread/stress.xsd";
+
+    /** System identifier of the DTD, mapped by the delegated catalog. */
+    protected static final String DTD_ID = "http://xerces.apache.org/tests/thread/dtd/order.dtd";
+
+    /** Delay of the responses of the HTTP server, in milliseconds. */
+    protected static final int RESPONSE_DELAY = 20;
+
+    /** The schema. */
+    protected static final String SCHEMA =
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>" +
+        " <xs:element name='order'>" +
+        "  <xs:complexType>" +
+        "   <xs:sequence>" +
+        "    <xs:element name='item' maxOccurs='unbounded'>" +
+        "     <xs:complexType>" +
+        "      <xs:attribute name='sku' use='required'>" +
+        "       <xs:simpleType>" +
+        "        <xs:restriction base='xs:string'>" +
+        "         <xs:pattern value='[A-Z]{3}-\\d{4}'/>" +
+        "        </xs:restriction>" +
+        "       </xs:simpleType>" +
+        "      </xs:attribute>" +
+        "      <xs:attribute name='quantity' type='xs:positiveInteger'/>" +
+        "     </xs:complexType>" +
+        "    </xs:element>" +
+        "   </xs:sequence>" +
+        "  </xs:complexType>" +
+        " </xs:element>" +
+        "</xs:schema>";
+
+    /** The DTD, declaring the entity used in the documents. */
+    protected static final String DTD =
+        "<!ELEMENT order (item+)>" +
+        "<!ATTLIST order xmlns:xsi CDATA #FIXED 'http://www.w3.org/2001/XMLSchema-instance'" +
+        " xsi:noNamespaceSchemaLocation CDATA #IMPLIED>" +
+        "<!ELEMENT item EMPTY>" +
+        "<!ATTLIST item sku CDATA #REQUIRED quantity CDATA #IMPLIED>" +
+        "<!ENTITY prefix 'ABC'>";
+
+    /** Namespace of the catalogs. */
+    protected static final String CATALOG_NS = "urn:oasis:names:tc:entity:xmlns:xml:catalog";
+
+    /** Event recorded when a virtual thread parks while pinned. */
+    protected static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    //
+    // Data
+    //
+
+    /** The parser pool, sharing a symbol table and a grammar pool. */
+    protected final CachingParserPool fParserPool;
+
+    /** Shared catalog resolver. */
+    protected final XMLCatalogResolver fResolver;
+
+    /** Number of documents parsed. */
+    protected int fParsed;
+
+    /** Number of validation errors reported. */
+    protected int fErrors;
+
+    /** Number of unexpected failures. */
+    protected int fFailures;
+
+    //
+    // Constructors
+    //
+
+    public VirtualThreadTest(String catalog, boolean useLocks) {
+        fParserPool = new CachingParserPool(new SymbolTable(), new XMLGrammarPoolImpl(), useLocks);
+        fResolver = new XMLCatalogResolver(new String[] {catalog});
+        fResolver.setUseLocks(useLocks);
+    }
+
+    //
+    // Public methods
+    //
+
+    /** Parses the given document, which is invalid if <code>index</code> is odd. */
+    public void parse(int index) {
+        StringBuffer document = new StringBuffer();
+        document.append("<!DOCTYPE order SYSTEM '").append(DTD_ID).append("'>");
+        document.append("<order xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance'");
+        document.append(" xsi:noNamespaceSchemaLocation='").append(SCHEMA_ID).append("'>");
+        for (int i = 0; i < 10; i++) {
+            document.append("<item sku='");
+            document.append((index % 2 == 1 && i == 5) ? "bad" : "&prefix;-" + (1000 + i));
+            document.append("' quantity='").append(i + 1).append("'/>");
+        }
+        document.append("</order>");
+        final int[] errors = new int[1];
+        try {
+            SAXParser parser = fParserPool.createSAXParser();
+            parser.setFeature("http://xml.org/sax/features/validation", true);
+            parser.setFeature("http://apache.org/xml/features/validation/schema", true);
+            parser.setProperty("http://apache.org/xml/properties/internal/entity-resolver", fResolver);
+            parser.setErrorHandler(new DefaultHandler() {
+                public void error(SAXParseException e) {
+                    errors[0]++;
+                }
+            });
+            parser.parse(new InputSource(new StringReader(document.toString())));
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            synchronized (this) {
+                fFailures++;
+            }
+            return;
+        }
+        synchronized (this) {
+            fParsed++;
+            fErrors += errors[0];
+            if ((errors[0] == 0) != (index % 2 == 0)) {
+                fFailures++;
+            }
+        }
+    }
+
+    //
+    // MAIN
+    //
+
+    public static void main(String[] argv) throws Exception {
+        int arg = 0;
+        boolean useLocks = true;
+        if (argv.length > arg && argv[arg].equals("-synchronized")) {
+            useLocks = false;
+            arg++;
+        }
+        final int count = argv.length > arg ? Integer.parseInt(argv[arg]) : DEFAULT_DOCUMENT_COUNT;
+
+        if (newVirtualThreadExecutor() == null) {
+            System.out.println("Virtual threads are not available.");
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+        File dir = createTempDirectory();
+        int probe = probe(dir);
+        if (probe <= 0) {
+            System.out.println(probe < 0 ? "Flight recording is not available."
+                : "No pinned event was recorded for a virtual thread sleeping in a synchronized block.");
+            System.out.println("FAILED");
+            dir.delete();
+            System.exit(1);
+        }
+
+        ExecutorService serverExecutor = Executors.newFixedThreadPool(8);
+        HttpServer server = startServer(serverExecutor);
+        String root = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+        final VirtualThreadTest test = new VirtualThreadTest(root + "catalog.xml", useLocks);
+        Object recording = startRecording();
+        ExecutorService executor = newVirtualThreadExecutor();
+        long time = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            executor.execute(new Runnable() {
+                public void run() {
+                    test.parse(index);
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.HOURS);
+        time = System.currentTimeMillis() - time;
+        int pinned = stopRecording(recording, dir, true);
+        server.stop(0);
+        serverExecutor.shutdown();
+        dir.delete();
+
+        System.out.println((useLocks ? "locks: " : "monitors: ") +
+            test.fParsed + " documents parsed, " + test.fErrors + " errors, " +
+            test.fFailures + " failures, " + pinned + " pinned events" +
+            " (" + time + " ms)");
+        if (test.fParsed != count || test.fFailures > 0 || pinned != 0) {
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+    }
+
+    //
+    // Private static methods
+    //
+
+    /** Returns an executor which runs each task on a new virtual thread or null. */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod(
+                "newVirtualThreadPerTaskExecutor", new Class[0]).invoke(null, new Object[0]);
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Records a virtual thread sleeping in a synchronized block and 
+     * returns the number of pinned events, or -1 if flight recording
+     * isn't available.
+     */
+    private static int probe(File dir) throws Exception {
+        Object recording = startRecording();
+        if (recording == null) {
+            return -1;
+        }
+        final Object monitor = new Object();
+        ExecutorService executor = newVirtualThreadExecutor();
+        executor.execute(new Runnable() {
+            public void run() {
+                synchronized (monitor) {
+                    try {
+                        Thread.sleep(RESPONSE_DELAY);
+                    }
+                    catch (InterruptedException e) {
+                    }
+                }
+            }
+        });
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        return stopRecording(recording, dir, false);
+    }
+
+    /**
+     * Starts an HTTP server serving the catalogs, the DTD and the schema,
+     * each after a delay, on the threads of the given executor.
+     */
+    private static HttpServer startServer(ExecutorService executor) throws IOException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        String root = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+        final Map resources = new HashMap();
+        resources.put("/catalog.xml",
+            "<catalog xmlns='" + CATALOG_NS + "'>" +
+            "<delegateSystem systemIdStartString='http://xerces.apache.org/tests/thread/dtd/'" +
+            " catalog='" + root + "delegate.xml'/>" +
+            "<system systemId='http://xerces.apache.org/tests/thread/unused.xsd' uri='unused.xsd'/>" +
+            "<nextCatalog catalog='" + root + "next.xml'/>" +
+            "</catalog>");
+        resources.put("/next.xml",
+            "<catalog xmlns='" + CATALOG_NS + "'>" +
+            "<uri name='http://xerces.apache.org/tests/thread/unused' uri='unused.xsd'/>" +
+            "<nextCatalog catalog='" + root + "last.xml'/>" +
+            "</catalog>");
+        resources.put("/last.xml",
+            "<catalog xmlns='" + CATALOG_NS + "'>" +
+            "<system systemId='" + SCHEMA_ID + "' uri='" + root + "stress.xsd'/>" +
+            "</catalog>");
+        resources.put("/delegate.xml",
+            "<catalog xmlns='" + CATALOG_NS + "'>" +
+            "<system systemId='" + DTD_ID + "' uri='" + root + "order.dtd'/>" +
+            "</catalog>");
+        resources.put("/stress.xsd", SCHEMA);
+        resources.put("/order.dtd", DTD);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String resource = (String) resources.get(exchange.getRequestURI().getPath());
+                try {
+                    Thread.sleep(RESPONSE_DELAY);
+                }
+                catch (InterruptedException e) {
+                }
+                if (resource == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                    exchange.close();
+                    return;
+                }
+                byte[] content = resource.getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, content.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(content);
+                out.close();
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+        return server;
+    }
+
+    /** Starts recording pinned events, returning the recording or null. */
+    private static Object startRecording() {
+        try {
+            jdk.jfr.Recording recording = new jdk.jfr.Recording();
+            recording.enable(PINNED_EVENT).withThreshold(java.time.Duration.ZERO).withStackTrace();
+            recording.start();
+            return recording;
+        }
+        catch (Throwable e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stops the recording and returns the number of pinned events,
+     * printing the first if requested.
+     */
+    private static int stopRecording(Object recording, File dir, boolean print) throws IOException {
+        jdk.jfr.Recording jfr = (jdk.jfr.Recording) recording;
+        jfr.stop();
+        File file = new File(dir, "pinned.jfr");
+        jfr.dump(file.toPath());
+        jfr.close();
+        int pinned = 0;
+        Iterator events = jdk.jfr.consumer.RecordingFile.readAllEvents(file.toPath()).iterator();
+        while (events.hasNext()) {
+            jdk.jfr.consumer.RecordedEvent event = (jdk.jfr.consumer.RecordedEvent) events.next();
+            if (PINNED_EVENT.equals(event.getEventType().getName())) {
+                if (pinned++ == 0 && print) {
+                    System.out.println(event);
+                }
+            }
+        }
+        file.delete();
+        return pinned;
+    }
+
+    private static File createTempDirectory() throws IOException {
+        File dir = File.createTempFile("xerces", "thread");
+        dir.delete();
+        dir.mkdirs();
+        return dir;
+    }
+
+} // class VirtualThreadTest
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package util;
+
+import org.apache.xerces.util.SymbolTable;
+import org.apache.xerces.util.XMLAttributesImpl;
+import org.apache.xerces.xni.QName;
+
+/**
+ * This program tests the duplicate attribute checks of the attributes
+ * list, both by raw name as attributes are added and by expanded name
+ * once all of them have been added, for lists of 1 to 1000 attributes.
+ * It also times both checks, in nanoseconds per attribute.
+ *
+ * @version $Id$
+ */
+public class Attributes {
+
+    //
+    // Constants
+    //
+
+    /** The numbers of attributes tested. */
+    private static final int[] COUNTS = {
+        1, 2, 5, 10, 20, 21, 50, 100, 200, 500, 1000,
+    };
+
+    /** The number of attributes added for each timing. */
+    private static final int ATTRIBUTES_TIMED = 4000000;
+
+    //
+    // MAIN
+    //
+
+    /** Main program entry. */
+    public static void main(String[] argv) throws Exception {
+
+        SymbolTable symbolTable = new SymbolTable();
+        String uri = symbolTable.addSymbol("urn:attributes");
+        XMLAttributesImpl attributes = new XMLAttributesImpl();
+
+        for (int c = 0; c < COUNTS.length; c++) {
+            final int count = COUNTS[c];
+            QName[] names = new QName[count];
+            QName[] prefixed = new QName[count];
+            for (int i = 0; i < count; i++) {
+                String localpart = symbolTable.addSymbol("a" + i);
+                names[i] = new QName(null, localpart, localpart, null);
+                String rawname = symbolTable.addSymbol("p:a" + i);
+                prefixed[i] = new QName(symbolTable.addSymbol("p"), localpart,
+                                        rawname, i % 2 == 0 ? uri : null);
+            }
+
+            System.err.print(count + " attributes: addAttribute ");
+            try {
+                testAddAttribute(attributes, names);
+                long time = timeAddAttribute(attributes, names);
+                System.err.print("PASS (" + time + " ns/attribute)");
+            }
+            catch (Exception e) {
+                System.err.print("FAIL: " + e.getMessage());
+            }
+
+            System.err.print(", checkDuplicatesNS ");
+            try {
+                testCheckDuplicatesNS(attributes, prefixed, symbolTable);
+                long time = timeCheckDuplicatesNS(attributes, prefixed);
+                System.err.println("PASS (" + time + " ns/attribute)");
+            }
+            catch (Exception e) {
+                System.err.println("FAIL: " + e.getMessage());
+            }
+        }
+
+    } // main(String[])
+
+    //
+    // Private static methods
+    //
+
+    /** Adds the attributes twice, checking that the second time replaces. */
+    private static void testAddAttribute(XMLAttributesImpl attributes,
+                                         QName[] names) throws Exception {
+        for (int round = 0; round < 3; round++) {
+            attributes.removeAllAttributes();
+            for (int i = 0; i < names.length; i++) {
+                int index = attributes.addAttribute(names[i], "CDATA", "1");
+                if (index != i) {
+                    throw new Exception("index " + index + " of new attribute " + i);
+                }
+            }
+            for (int i = names.length - 1; i >= 0; i--) {
+                int index = attributes.addAttribute(names[i], "CDATA", "2");
+                if (index != i) {
+                    throw new Exception("index " + index + " of duplicate attribute " + i);
+                }
+            }
+            if (attributes.getLength() != names.length) {
+                throw new Exception("length " + attributes.getLength());
+            }
+            for (int i = 0; i < names.length; i++) {
+                if (!"2".equals(attributes.getValue(i))) {
+                    throw new Exception("value of attribute " + i);
+                }
+            }
+        }
+    } // testAddAttribute(XMLAttributesImpl,QName[])
+
+    /**
+     * Checks that unique names aren't reported and that a duplicate
+     * expanded name with another prefix is reported wherever it is.
+     */
+    private static void testCheckDuplicatesNS(XMLAttributesImpl attributes,
+                                              QName[] names,
+                                              SymbolTable symbolTable) throws Exception {
+        for (int round = 0; round < 3; round++) {
+            attributes.removeAllAttributes();
+            for (int i = 0; i < names.length; i++) {
+                attributes.addAttributeNS(names[i], "CDATA", "1");
+            }
+            QName duplicate = attributes.checkDuplicatesNS();
+            if (duplicate != null) {
+                throw new Exception("unique names reported " + duplicate);
+            }
+        }
+        String prefix = symbolTable.addSymbol("q");
+        for (int d = 0; d < names.length; d += Math.max(1, names.length / 7)) {
+            attributes.removeAllAttributes();
+            for (int i = 0; i < names.length; i++) {
+                attributes.addAttributeNS(names[i], "CDATA", "1");
+                if (i == names.length / 2) {
+                    QName name = new QName(prefix, names[d].localpart,
+                            symbolTable.addSymbol("q:" + names[d].localpart),
+                            names[d].uri);
+                    attributes.addAttributeNS(name, "CDATA", "2");
+                }
+            }
+            QName duplicate = attributes.checkDuplicatesNS();
+            if (duplicate == null
+                || duplicate.localpart != names[d].localpart
+                || duplicate.uri != names[d].uri) {
+                throw new Exception("duplicate of attribute " + d + " reported as " + duplicate);
+            }
+        }
+    } // testCheckDuplicatesNS(XMLAttributesImpl,QName[],SymbolTable)
+
+    /** Times adding the attributes. */
+    private static long timeAddAttribute(XMLAttributesImpl attributes,
+                                         QName[] names) {
+        final int rounds = Math.max(1, ATTRIBUTES_TIMED / names.length);
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            long before = System.nanoTime();
+            for (int round = 0; round < rounds; round++) {
+                attributes.removeAllAttributes();
+                for (int i = 0; i < names.length; i++) {
+                    attributes.addAttribute(names[i], "CDATA", "1");
+                }
+            }
+            best = Math.min(best, System.nanoTime() - before);
+        }
+        return best / ((long) rounds * names.length);
+    } // timeAddAttribute(XMLAttributesImpl,QName[]):long
+
+    /** Times adding the attributes and checking them for duplicates. */
+    private static long timeCheckDuplicatesNS(XMLAttributesImpl attributes,
+                                              QName[] names) {
+        final int rounds = Math.max(1, ATTRIBUTES_TIMED / names.length);
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            long before = System.nanoTime();
+            for (int round = 0; round < rounds; round++) {
+                attributes.removeAllAttributes();
+                for (int i = 0; i < names.length; i++) {
+                    attributes.addAttributeNS(names[i], "CDATA", "1");
+                }
+                attributes.checkDuplicatesNS();
+            }
+            best = Math.min(best, System.nanoTime() - before);
+        }
+        return best / ((long) rounds * names.length);
+    } // timeCheckDuplicatesNS(XMLAttributesImpl,QName[]):long
+
+} // class Attributes
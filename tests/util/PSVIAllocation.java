@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package util;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.parsers.XMLGrammarPreparser;
+import org.apache.xerces.util.XMLGrammarPoolImpl;
+import org.apache.xerces.xni.grammars.XMLGrammarDescription;
+import org.apache.xerces.xni.parser.XMLInputSource;
+import org.apache.xerces.xs.AttributePSVI;
+import org.apache.xerces.xs.ItemPSVI;
+import org.apache.xerces.xs.PSVIProvider;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * This program measures the memory allocated by validating SAX parses of
+ * a generated document of records with attributes, with the augment-psvi
+ * feature on and off, using the allocation counter of the current thread.
+ * It first checks that the attributes have PSVI with the feature on and
+ * none with it off, then prints the bytes allocated per parse and per
+ * attribute, and the time per parse, of the best of several parses. Both
+ * settings are measured twice, in turns, as the times of the first round
+ * include compiling the parser.
+ * <p>
+ * The number of records may be given as the only argument.
+ *
+ * @version $Id$
+ */
+public class PSVIAllocation {
+
+    //
+    // Constants
+    //
+
+    /** Augment PSVI feature id. */
+    private static final String AUGMENT_PSVI =
+        "http://apache.org/xml/features/validation/schema/augment-psvi";
+
+    /** Default number of records. */
+    private static final int DEFAULT_RECORDS = 20000;
+
+    /** The number of attributes of a record, including a defaulted one. */
+    private static final int RECORD_ATTRIBUTES = 5;
+
+    /** The number of parses before measuring. */
+    private static final int WARMUP_PARSES = 5;
+
+    /** The number of parses measured. */
+    private static final int MEASURED_PARSES = 5;
+
+    /** The schema of the document. */
+    private static final String SCHEMA =
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>\n" +
+        " <xs:element name='records'>\n" +
+        "  <xs:complexType>\n" +
+        "   <xs:sequence>\n" +
+        "    <xs:element name='record' maxOccurs='unbounded'>\n" +
+        "     <xs:complexType>\n" +
+        "      <xs:attribute name='id' type='xs:ID'/>\n" +
+        "      <xs:attribute name='count' type='xs:int'/>\n" +
+        "      <xs:attribute name='price' type='xs:decimal'/>\n" +
+        "      <xs:attribute name='code' type='xs:token'/>\n" +
+        "      <xs:attribute name='status' type='xs:token' default='new'/>\n" +
+        "     </xs:complexType>\n" +
+        "    </xs:element>\n" +
+        "   </xs:sequence>\n" +
+        "  </xs:complexType>\n" +
+        " </xs:element>\n" +
+        "</xs:schema>\n";
+
+    //
+    // MAIN
+    //
+
+    /** Main program entry. */
+    public static void main(String[] argv) throws Exception {
+
+        int records = argv.length > 0 ? Integer.parseInt(argv[0]) : DEFAULT_RECORDS;
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)
+            || !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            System.err.println("The allocation counter of threads isn't supported.");
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        byte[] document = createDocument(records);
+        XMLGrammarPoolImpl grammarPool = preparse();
+        System.err.println(records + " records, " + document.length + " bytes");
+
+        for (int round = 0; round < 4; round++) {
+            boolean psvi = round % 2 == 0;
+            SAXParser parser = createParser(grammarPool, psvi);
+            System.err.print("augment-psvi " + (psvi ? "on:  " : "off: "));
+            try {
+                testPSVI(parser, document, psvi);
+                System.err.print("PASS");
+            }
+            catch (Exception e) {
+                System.err.println("FAIL: " + e.getMessage());
+                continue;
+            }
+            long[] measures = measure(threads, parser, document);
+            long attributes = (long) records * RECORD_ATTRIBUTES;
+            System.err.println(" (" + (measures[0] >> 10) + " KB/parse, "
+                               + (measures[0] / attributes) + " bytes/attribute, "
+                               + (measures[1] / 1000000) + " ms/parse)");
+        }
+
+    } // main(String[])
+
+    //
+    // Private static methods
+    //
+
+    /** Creates a document of records. */
+    private static byte[] createDocument(int records) throws Exception {
+        StringBuffer buffer = new StringBuffer("<records>\n");
+        for (int i = 0; i < records; i++) {
+            buffer.append(" <record id='r").append(i)
+                  .append("' count='").append(i % 1000)
+                  .append("' price='").append(i % 100).append('.').append(i % 7)
+                  .append("' code='C").append(i % 37).append("'/>\n");
+        }
+        buffer.append("</records>\n");
+        return buffer.toString().getBytes("UTF-8");
+    } // createDocument(int):byte[]
+
+    /** Returns a grammar pool holding the schema. */
+    private static XMLGrammarPoolImpl preparse() throws Exception {
+        XMLGrammarPoolImpl grammarPool = new XMLGrammarPoolImpl();
+        XMLGrammarPreparser preparser = new XMLGrammarPreparser();
+        preparser.registerPreparser(XMLGrammarDescription.XML_SCHEMA, null);
+        preparser.setGrammarPool(grammarPool);
+        preparser.preparseGrammar(XMLGrammarDescription.XML_SCHEMA,
+                new XMLInputSource(null, "records.xsd", null, new StringReader(SCHEMA), null));
+        grammarPool.lockPool();
+        return grammarPool;
+    } // preparse():XMLGrammarPoolImpl
+
+    /** Returns a validating parser using the grammar pool. */
+    private static SAXParser createParser(XMLGrammarPoolImpl grammarPool,
+                                          boolean psvi) throws Exception {
+        SAXParser parser = new SAXParser(null, grammarPool);
+        parser.setFeature("http://xml.org/sax/features/validation", true);
+        parser.setFeature("http://apache.org/xml/features/validation/schema", true);
+        parser.setFeature(AUGMENT_PSVI, psvi);
+        return parser;
+    } // createParser(XMLGrammarPoolImpl,boolean):SAXParser
+
+    /**
+     * Parses the document, checking that every attribute has valid PSVI
+     * if the feature is on, and none if it's off.
+     */
+    private static void testPSVI(final SAXParser parser, byte[] document,
+                                 final boolean psvi) throws Exception {
+        final int[] count = new int[1];
+        parser.setContentHandler(new DefaultHandler() {
+            public void startElement(String uri, String localName, String qName,
+                                     Attributes attributes) throws SAXException {
+                if (!localName.equals("record")) {
+                    return;
+                }
+                if (attributes.getLength() != RECORD_ATTRIBUTES) {
+                    throw new SAXException(attributes.getLength() + " attributes");
+                }
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    AttributePSVI attributePSVI = ((PSVIProvider) parser).getAttributePSVI(i);
+                    if (!psvi) {
+                        if (attributePSVI != null) {
+                            throw new SAXException("PSVI of " + attributes.getQName(i));
+                        }
+                        continue;
+                    }
+                    if (attributePSVI == null
+                        || attributePSVI.getValidity() != ItemPSVI.VALIDITY_VALID
+                        || !attributes.getValue(i).equals(attributePSVI.getSchemaNormalizedValue())) {
+                        throw new SAXException("PSVI of " + attributes.getQName(i));
+                    }
+                }
+                count[0]++;
+            }
+        });
+        parser.setErrorHandler(new DefaultHandler() {
+            public void error(org.xml.sax.SAXParseException e) throws SAXException {
+                throw e;
+            }
+        });
+        parser.parse(new InputSource(new ByteArrayInputStream(document)));
+        if (count[0] == 0) {
+            throw new Exception("no records");
+        }
+        parser.setContentHandler(new DefaultHandler());
+    } // testPSVI(SAXParser,byte[],boolean)
+
+    /**
+     * Parses the document several times and returns the fewest bytes
+     * allocated by a parse and its shortest time, in nanoseconds.
+     */
+    private static long[] measure(com.sun.management.ThreadMXBean threads,
+                                  SAXParser parser, byte[] document) throws Exception {
+        long id = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP_PARSES; i++) {
+            parser.parse(new InputSource(new ByteArrayInputStream(document)));
+        }
+        long bytes = Long.MAX_VALUE;
+        long time = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_PARSES; i++) {
+            InputSource source = new InputSource(new ByteArrayInputStream(document));
+            long allocated = threads.getThreadAllocatedBytes(id);
+            long before = System.nanoTime();
+            parser.parse(source);
+            time = Math.min(time, System.nanoTime() - before);
+            bytes = Math.min(bytes, threads.getThreadAllocatedBytes(id) - allocated);
+        }
+        return new long[] { bytes, time };
+    } // measure(ThreadMXBean,SAXParser,byte[]):long[]
+
+} // class PSVIAllocation
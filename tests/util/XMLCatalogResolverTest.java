@@ -0,0 +1,407 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.util.XMLCatalogResolver;
+
+/**
+ * Compares the lookups of catalogs indexed by the catalog resolver with
+ * those of the sequential catalog, and checks the resolution cache: that
+ * lookups without a mapping are cached too, and that the cache is
+ * discarded when the list of catalogs or the prefer public setting
+ * changes.
+ *
+ * @version $Id$
+ */
+public class XMLCatalogResolverTest extends TestCase {
+
+    /** Start of an OASIS XML catalog. */
+    protected final static String CATALOG_START =
+        "<?xml version='1.0'?>\n" +
+        "<catalog xmlns='urn:oasis:names:tc:entity:xmlns:xml:catalog'>\n";
+
+    /** End of an OASIS XML catalog. */
+    protected final static String CATALOG_END = "</catalog>\n";
+
+    /** System identifiers looked up. */
+    protected final static String[] SYSTEM_IDS = {
+        "http://example.com/a.dtd",
+        "http://example.com/b.dtd",
+        "http://example.com/deep/c.dtd",
+        "http://example.com/deep/er/d.dtd",
+        "http://example.com/deeper/e.dtd",
+        "http://example.com/deep",
+        "http://example.com/",
+        "http://example.com",
+        "http://example.org/x/suffix.dtd",
+        "http://example.com/deep/suffix.dtd",
+        "http://delegated.example.com/f.dtd",
+        "http://delegated.example.com/unmapped.dtd",
+        "http://next.example.com/g.dtd",
+        "http://nowhere.example.com/h.dtd",
+        "",
+    };
+
+    /** URIs looked up. */
+    protected final static String[] URIS = {
+        "urn:example:a",
+        "urn:example:b",
+        "http://example.com/ns/a.xsd",
+        "http://example.com/ns/long/b.xsd",
+        "http://example.com/ns/longer/c.xsd",
+        "http://example.org/any/suffix.xsd",
+        "http://delegated.example.com/ns/d.xsd",
+        "http://next.example.com/ns/e.xsd",
+        "urn:nowhere",
+    };
+
+    /** Public identifiers looked up, with their system identifiers. */
+    protected final static String[][] PUBLIC_IDS = {
+        { "-//Example//DTD A//EN", null },
+        { "-//Example//DTD A//EN", "http://nowhere.example.com/a.dtd" },
+        { "-//Example//DTD B//EN", "http://example.com/b.dtd" },
+        { "-//Example//DTD  A//EN", null },
+        { "-//Nowhere//DTD//EN", "http://example.com/deep/c.dtd" },
+    };
+
+    /** The directory of the catalogs. */
+    protected File fDirectory;
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(XMLCatalogResolverTest.class);
+    }
+
+    public XMLCatalogResolverTest(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        fDirectory = File.createTempFile("catalogs", "");
+        fDirectory.delete();
+        fDirectory.mkdir();
+        fDirectory.deleteOnExit();
+        // the rewrite prefixes are in no particular order, and the first
+        // of two system entries for the same identifier wins
+        write("plain.xml",
+              "<system systemId='http://example.com/a.dtd' uri='plain/a.dtd'/>\n" +
+              "<system systemId='http://example.com/a.dtd' uri='plain/second-a.dtd'/>\n" +
+              "<rewriteSystem systemIdStartString='http://example.com/deep/' rewritePrefix='plain/deep/'/>\n" +
+              "<rewriteSystem systemIdStartString='http://example.com/' rewritePrefix='plain/short/'/>\n" +
+              "<rewriteSystem systemIdStartString='http://example.com/deep/er/' rewritePrefix='plain/deeper/'/>\n" +
+              "<rewriteSystem systemIdStartString='http://example.com/deep/' rewritePrefix='plain/second-deep/'/>\n" +
+              "<uri name='urn:example:a' uri='plain/a.xsd'/>\n" +
+              "<rewriteURI uriStartString='http://example.com/ns/long/' rewritePrefix='plain/long/'/>\n" +
+              "<rewriteURI uriStartString='http://example.com/ns/' rewritePrefix='plain/ns/'/>\n" +
+              "<public publicId='-//Example//DTD A//EN' uri='plain/public-a.dtd'/>\n" +
+              "<public publicId='-//Example//DTD B//EN' uri='plain/public-b.dtd'/>\n");
+        // suffix and delegate entries, which aren't indexed
+        write("fallback.xml",
+              "<systemSuffix systemIdSuffix='suffix.dtd' uri='fallback/suffix.dtd'/>\n" +
+              "<systemSuffix systemIdSuffix='/x/suffix.dtd' uri='fallback/x-suffix.dtd'/>\n" +
+              "<rewriteSystem systemIdStartString='http://example.com/deep' rewritePrefix='fallback/deep'/>\n" +
+              "<system systemId='http://example.com/b.dtd' uri='fallback/b.dtd'/>\n" +
+              "<delegateSystem systemIdStartString='http://delegated.example.com/' catalog='delegate.xml'/>\n" +
+              "<uriSuffix uriSuffix='suffix.xsd' uri='fallback/suffix.xsd'/>\n" +
+              "<uri name='urn:example:b' uri='fallback/b.xsd'/>\n" +
+              "<delegateURI uriStartString='http://delegated.example.com/' catalog='delegate.xml'/>\n" +
+              "<nextCatalog catalog='next.xml'/>\n");
+        write("delegate.xml",
+              "<system systemId='http://delegated.example.com/f.dtd' uri='delegate/f.dtd'/>\n" +
+              "<uri name='http://delegated.example.com/ns/d.xsd' uri='delegate/d.xsd'/>\n");
+        write("next.xml",
+              "<rewriteSystem systemIdStartString='http://next.example.com/' rewritePrefix='next/'/>\n" +
+              "<rewriteURI uriStartString='http://next.example.com/' rewritePrefix='next/'/>\n");
+        write("other.xml",
+              "<system systemId='http://example.com/a.dtd' uri='other/a.dtd'/>\n" +
+              "<public publicId='-//Example//DTD A//EN' uri='other/public-a.dtd'/>\n");
+        write("prefer.xml",
+              "<group>\n" +
+              " <public publicId='-//Example//DTD A//EN' uri='prefer/public-a.dtd'/>\n" +
+              "</group>\n");
+    }
+
+    public void testIndexedPlain() throws Exception {
+        compareLookups(new String[] { catalog("plain.xml") });
+    }
+
+    public void testIndexedFallback() throws Exception {
+        compareLookups(new String[] { catalog("fallback.xml") });
+    }
+
+    public void testIndexedChained() throws Exception {
+        compareLookups(new String[] { catalog("plain.xml"), catalog("fallback.xml") });
+        compareLookups(new String[] { catalog("fallback.xml"), catalog("plain.xml") });
+    }
+
+    public void testLongestPrefix() throws Exception {
+        XMLCatalogResolver resolver = createResolver(new String[] { catalog("plain.xml") }, true);
+        assertEquals(resolved("plain/deeper/d.dtd"),
+                     resolver.resolveSystem("http://example.com/deep/er/d.dtd"));
+        assertEquals(resolved("plain/deep/c.dtd"),
+                     resolver.resolveSystem("http://example.com/deep/c.dtd"));
+        assertEquals(resolved("plain/short/deeper/e.dtd"),
+                     resolver.resolveSystem("http://example.com/deeper/e.dtd"));
+        assertEquals(resolved("plain/a.dtd"),
+                     resolver.resolveSystem("http://example.com/a.dtd"));
+        assertEquals(resolved("plain/long/b.xsd"),
+                     resolver.resolveURI("http://example.com/ns/long/b.xsd"));
+        assertEquals(resolved("plain/ns/longer/c.xsd"),
+                     resolver.resolveURI("http://example.com/ns/longer/c.xsd"));
+    }
+
+    public void testSuffixAndDelegate() throws Exception {
+        XMLCatalogResolver resolver = createResolver(new String[] { catalog("fallback.xml") }, true);
+        // a rewrite wins over a suffix
+        assertEquals(resolved("fallback/deep/suffix.dtd"),
+                     resolver.resolveSystem("http://example.com/deep/suffix.dtd"));
+        // the longest suffix wins
+        assertEquals(resolved("fallback/x-suffix.dtd"),
+                     resolver.resolveSystem("http://example.org/x/suffix.dtd"));
+        assertEquals(resolved("fallback/suffix.xsd"),
+                     resolver.resolveURI("http://example.org/any/suffix.xsd"));
+        assertEquals(resolved("delegate/f.dtd"),
+                     resolver.resolveSystem("http://delegated.example.com/f.dtd"));
+        assertNull(resolver.resolveSystem("http://delegated.example.com/unmapped.dtd"));
+        assertEquals(resolved("next/g.dtd"),
+                     resolver.resolveSystem("http://next.example.com/g.dtd"));
+    }
+
+    public void testPreloadedFiles() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            XMLCatalogResolver resolver = createResolver(new String[] { catalog("fallback.xml") }, i == 1);
+            resolver.setUseLocks(true);
+            assertTrue(resolver.getUseLocks());
+            assertEquals(resolved("fallback/b.dtd"),
+                         resolver.resolveSystem("http://example.com/b.dtd"));
+            // the chained and delegated catalogs were read with the first one
+            File next = new File(fDirectory, "next.xml");
+            File delegate = new File(fDirectory, "delegate.xml");
+            assertTrue(next.renameTo(new File(fDirectory, "next.moved")));
+            assertTrue(delegate.renameTo(new File(fDirectory, "delegate.moved")));
+            try {
+                assertEquals(resolved("next/g.dtd"),
+                             resolver.resolveSystem("http://next.example.com/g.dtd"));
+                assertEquals(resolved("delegate/f.dtd"),
+                             resolver.resolveSystem("http://delegated.example.com/f.dtd"));
+            }
+            finally {
+                new File(fDirectory, "next.moved").renameTo(next);
+                new File(fDirectory, "delegate.moved").renameTo(delegate);
+            }
+        }
+    }
+
+    public void testPreloadedCycle() throws Exception {
+        write("loop.xml",
+              "<nextCatalog catalog='loop2.xml'/>\n" +
+              "<nextCatalog catalog='missing.xml'/>\n");
+        write("loop2.xml",
+              "<nextCatalog catalog='loop.xml'/>\n" +
+              "<system systemId='http://example.com/loop.dtd' uri='loop/loop.dtd'/>\n");
+        XMLCatalogResolver resolver = createResolver(new String[] { catalog("loop.xml") }, false);
+        resolver.setUseLocks(true);
+        assertEquals(resolved("loop/loop.dtd"),
+                     resolver.resolveSystem("http://example.com/loop.dtd"));
+        resolver.setUseLocks(false);
+        assertFalse(resolver.getUseLocks());
+        assertEquals(resolved("loop/loop.dtd"),
+                     resolver.resolveSystem("http://example.com/loop.dtd"));
+    }
+
+    public void testNoMappingCached() throws Exception {
+        XMLCatalogResolver resolver = new XMLCatalogResolver(new String[] { catalog("plain.xml") });
+        String id = "http://nowhere.example.com/h.dtd";
+        assertNull(resolver.resolveSystem(id));
+        assertEquals(0, resolver.getResolutionCacheHits());
+        assertEquals(1, resolver.getResolutionCacheMisses());
+        assertNull(resolver.resolveSystem(id));
+        assertEquals(1, resolver.getResolutionCacheHits());
+        assertEquals(1, resolver.getResolutionCacheMisses());
+        // a public lookup of the same identifier is another lookup
+        assertNull(resolver.resolvePublic(id, null));
+        assertNull(resolver.resolveURI(id));
+        assertEquals(1, resolver.getResolutionCacheHits());
+        assertEquals(3, resolver.getResolutionCacheMisses());
+
+        assertEquals(resolved("plain/a.dtd"), resolver.resolveSystem("http://example.com/a.dtd"));
+        assertEquals(resolved("plain/a.dtd"), resolver.resolveSystem("http://example.com/a.dtd"));
+        assertEquals(2, resolver.getResolutionCacheHits());
+
+        // without a cache every lookup is a miss
+        resolver.setResolutionCacheSize(0);
+        assertNull(resolver.resolveSystem(id));
+        assertEquals(2, resolver.getResolutionCacheHits());
+    }
+
+    public void testCacheEviction() throws Exception {
+        XMLCatalogResolver resolver = new XMLCatalogResolver(new String[] { catalog("plain.xml") });
+        resolver.setResolutionCacheSize(2);
+        resolver.resolveSystem("http://example.com/a.dtd");
+        resolver.resolveSystem("http://example.com/b.dtd");
+        resolver.resolveSystem("http://example.com/a.dtd");
+        assertEquals(1, resolver.getResolutionCacheHits());
+        // evicts b.dtd, the least recently used
+        resolver.resolveSystem("http://example.com/deep/c.dtd");
+        resolver.resolveSystem("http://example.com/a.dtd");
+        assertEquals(2, resolver.getResolutionCacheHits());
+        resolver.resolveSystem("http://example.com/b.dtd");
+        assertEquals(2, resolver.getResolutionCacheHits());
+    }
+
+    public void testSetCatalogListClearsCache() throws Exception {
+        XMLCatalogResolver resolver = new XMLCatalogResolver(new String[] { catalog("plain.xml") });
+        String id = "http://example.com/a.dtd";
+        assertEquals(resolved("plain/a.dtd"), resolver.resolveSystem(id));
+        assertNull(resolver.resolveSystem("http://nowhere.example.com/h.dtd"));
+        assertNull(resolver.resolvePublic("-//Nowhere//DTD//EN", null));
+
+        resolver.setCatalogList(new String[] { catalog("other.xml") });
+        assertEquals(resolved("other/a.dtd"), resolver.resolveSystem(id));
+        assertEquals(resolved("other/public-a.dtd"),
+                     resolver.resolvePublic("-//Example//DTD A//EN", null));
+        assertEquals(0, resolver.getResolutionCacheHits());
+
+        resolver.setCatalogList(null);
+        assertNull(resolver.resolveSystem(id));
+        resolver.setCatalogList(new String[] { catalog("plain.xml") });
+        assertEquals(resolved("plain/a.dtd"), resolver.resolveSystem(id));
+        assertEquals(0, resolver.getResolutionCacheHits());
+    }
+
+    public void testSetPreferPublicClearsCache() throws Exception {
+        XMLCatalogResolver resolver = new XMLCatalogResolver(new String[] { catalog("prefer.xml") }, true);
+        String publicId = "-//Example//DTD A//EN";
+        String systemId = "http://nowhere.example.com/a.dtd";
+        assertEquals(resolved("prefer/public-a.dtd"), resolver.resolvePublic(publicId, systemId));
+
+        // with a system identifier, public entries aren't used any more
+        resolver.setPreferPublic(false);
+        assertNull(resolver.resolvePublic(publicId, systemId));
+        // without one they still are
+        assertEquals(resolved("prefer/public-a.dtd"), resolver.resolvePublic(publicId, null));
+
+        resolver.setPreferPublic(true);
+        assertEquals(resolved("prefer/public-a.dtd"), resolver.resolvePublic(publicId, systemId));
+        assertEquals(0, resolver.getResolutionCacheHits());
+    }
+
+    public void testSetUseCatalogIndexClearsCache() throws Exception {
+        XMLCatalogResolver resolver = new XMLCatalogResolver(new String[] { catalog("plain.xml") });
+        String id = "http://example.com/a.dtd";
+        assertEquals(resolved("plain/a.dtd"), resolver.resolveSystem(id));
+        resolver.setUseCatalogIndex(true);
+        assertEquals(resolved("plain/a.dtd"), resolver.resolveSystem(id));
+        assertEquals(0, resolver.getResolutionCacheHits());
+        assertEquals(resolved("plain/a.dtd"), resolver.resolveSystem(id));
+        assertEquals(1, resolver.getResolutionCacheHits());
+    }
+
+    //
+    // Protected methods
+    //
+
+    /**
+     * Looks up every identifier with indexed and with sequential catalogs,
+     * without the cache, with preloaded catalogs, and then with the
+     * indexed catalogs again with the cache, and checks that the results
+     * are the same.
+     */
+    protected void compareLookups(String[] catalogs) throws Exception {
+        XMLCatalogResolver sequential = createResolver(catalogs, false);
+        XMLCatalogResolver indexed = createResolver(catalogs, true);
+        XMLCatalogResolver preloaded = createResolver(catalogs, false);
+        preloaded.setUseLocks(true);
+        XMLCatalogResolver preloadedIndexed = createResolver(catalogs, true);
+        preloadedIndexed.setUseLocks(true);
+        XMLCatalogResolver cached = new XMLCatalogResolver(catalogs);
+        cached.setUseCatalogIndex(true);
+        int mapped = 0;
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < SYSTEM_IDS.length; i++) {
+                String expected = sequential.resolveSystem(SYSTEM_IDS[i]);
+                assertEquals(SYSTEM_IDS[i], expected, indexed.resolveSystem(SYSTEM_IDS[i]));
+                assertEquals(SYSTEM_IDS[i], expected, preloaded.resolveSystem(SYSTEM_IDS[i]));
+                assertEquals(SYSTEM_IDS[i], expected, preloadedIndexed.resolveSystem(SYSTEM_IDS[i]));
+                assertEquals(SYSTEM_IDS[i], expected, cached.resolveSystem(SYSTEM_IDS[i]));
+                mapped += expected != null ? 1 : 0;
+            }
+            for (int i = 0; i < URIS.length; i++) {
+                String expected = sequential.resolveURI(URIS[i]);
+                assertEquals(URIS[i], expected, indexed.resolveURI(URIS[i]));
+                assertEquals(URIS[i], expected, preloaded.resolveURI(URIS[i]));
+                assertEquals(URIS[i], expected, preloadedIndexed.resolveURI(URIS[i]));
+                assertEquals(URIS[i], expected, cached.resolveURI(URIS[i]));
+                mapped += expected != null ? 1 : 0;
+            }
+            for (int i = 0; i < PUBLIC_IDS.length; i++) {
+                String expected = sequential.resolvePublic(PUBLIC_IDS[i][0], PUBLIC_IDS[i][1]);
+                assertEquals(PUBLIC_IDS[i][0], expected,
+                             indexed.resolvePublic(PUBLIC_IDS[i][0], PUBLIC_IDS[i][1]));
+                assertEquals(PUBLIC_IDS[i][0], expected,
+                             preloaded.resolvePublic(PUBLIC_IDS[i][0], PUBLIC_IDS[i][1]));
+                assertEquals(PUBLIC_IDS[i][0], expected,
+                             preloadedIndexed.resolvePublic(PUBLIC_IDS[i][0], PUBLIC_IDS[i][1]));
+                assertEquals(PUBLIC_IDS[i][0], expected,
+                             cached.resolvePublic(PUBLIC_IDS[i][0], PUBLIC_IDS[i][1]));
+            }
+        }
+        assertTrue(mapped > 0);
+        int lookups = SYSTEM_IDS.length + URIS.length + PUBLIC_IDS.length;
+        assertEquals(lookups, cached.getResolutionCacheHits());
+        assertEquals(lookups, cached.getResolutionCacheMisses());
+    } // compareLookups(String[])
+
+    /** Returns a resolver without a resolution cache. */
+    protected static XMLCatalogResolver createResolver(String[] catalogs, boolean index) {
+        XMLCatalogResolver resolver = new XMLCatalogResolver(catalogs);
+        resolver.setResolutionCacheSize(0);
+        resolver.setUseCatalogIndex(index);
+        return resolver;
+    } // createResolver(String[],boolean):XMLCatalogResolver
+
+    /** Returns the URI of a catalog. */
+    protected String catalog(String name) {
+        return new File(fDirectory, name).toURI().toString();
+    } // catalog(String):String
+
+    /** Returns the URI an entry of the catalogs resolves to. */
+    protected String resolved(String path) {
+        return catalog(path);
+    } // resolved(String):String
+
+    /** Writes a catalog. */
+    protected void write(String name, String entries) throws IOException {
+        File file = new File(fDirectory, name);
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write((CATALOG_START + entries + CATALOG_END).getBytes("UTF-8"));
+        }
+        finally {
+            out.close();
+        }
+    } // write(String,String)
+
+} // class XMLCatalogResolverTest
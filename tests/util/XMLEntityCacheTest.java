@@ -0,0 +1,352 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.util.XMLEntityCacheImpl;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests the external entity cache, on its own and registered on a
+ * parser: that entities read in their entirety are cached by system
+ * identifier and encoding, that entities which are too large or only
+ * partly read are not, the disk store and the eviction of the least
+ * recently used entities.
+ *
+ * @version $Id$
+ */
+public class XMLEntityCacheTest extends TestCase {
+
+    protected final static String ENTITY_CACHE =
+        "http://apache.org/xml/properties/internal/entity-cache";
+
+    /** The directory of the documents. */
+    protected File fDirectory;
+
+    /** The temporary directories, deleted after each test. */
+    protected final ArrayList fDirectories = new ArrayList();
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(XMLEntityCacheTest.class);
+    }
+
+    public XMLEntityCacheTest(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        fDirectory = createDirectory("entities");
+        write(new File(fDirectory, "doc.dtd"),
+              "<!ENTITY ext SYSTEM 'ent.xml'>\n<!ATTLIST root status CDATA 'dtd'>\n");
+        write(new File(fDirectory, "ent.xml"), "<ext>entity</ext>");
+        write(new File(fDirectory, "doc.xml"),
+              "<!DOCTYPE root SYSTEM 'doc.dtd'>\n<root>&ext;</root>\n" +
+              "<!-- longer than the external DTD subset and the entity -->\n");
+    }
+
+    protected void tearDown() {
+        for (int i = 0; i < fDirectories.size(); i++) {
+            File directory = (File) fDirectories.get(i);
+            File[] files = directory.listFiles();
+            for (int j = 0; files != null && j < files.length; j++) {
+                files[j].delete();
+            }
+            directory.delete();
+        }
+        fDirectories.clear();
+    }
+
+    public void testHit() throws Exception {
+        XMLEntityCacheImpl cache = new XMLEntityCacheImpl();
+        File document = new File(fDirectory, "doc.xml");
+        assertEquals("root[dtd] ext entity", parse(cache, document, null));
+        // the document, the DTD and the entity
+        assertEquals(3, cache.getEntityCount());
+        assertEquals(0, cache.getMemoryHits());
+        assertEquals(3, cache.getMisses());
+
+        // the cached entities are read instead of the files
+        write(new File(fDirectory, "ent.xml"), "<ext>changed</ext>");
+        assertEquals("root[dtd] ext entity", parse(cache, document, null));
+        assertEquals(3, cache.getMemoryHits());
+        assertEquals(3, cache.getMisses());
+
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        assertEquals("root[dtd] ext changed", parse(cache, document, null));
+        assertEquals(6, cache.getMisses());
+    }
+
+    public void testEncodings() throws Exception {
+        XMLEntityCacheImpl cache = new XMLEntityCacheImpl();
+        File document = new File(fDirectory, "doc.xml");
+        parse(cache, document, "UTF-8");
+        parse(cache, document, "ISO-8859-1");
+        // the document is cached for either encoding, its entities
+        // have no encoding specified
+        assertEquals(4, cache.getEntityCount());
+        parse(cache, document, "UTF-8");
+        parse(cache, document, "ISO-8859-1");
+        assertEquals(4, cache.getEntityCount());
+        // the entities of the second parse and all of the last two
+        assertEquals(8, cache.getMemoryHits());
+
+        String id = "http://example.com/e.xml";
+        byte[] utf8 = { 'a' };
+        byte[] latin1 = { 'b' };
+        cache.putEntity(id, "UTF-8", utf8);
+        cache.putEntity(id, "ISO-8859-1", latin1);
+        assertSame(utf8, cache.getEntity(id, "UTF-8"));
+        assertSame(latin1, cache.getEntity(id, "ISO-8859-1"));
+        assertNull(cache.getEntity(id, null));
+    }
+
+    public void testMaxEntitySize() throws Exception {
+        XMLEntityCacheImpl cache = new XMLEntityCacheImpl();
+        File entity = new File(fDirectory, "ent.xml");
+        File dtd = new File(fDirectory, "doc.dtd");
+        cache.setMaxEntitySize((int) Math.max(entity.length(), dtd.length()));
+        File document = new File(fDirectory, "doc.xml");
+        assertTrue(document.length() > cache.getMaxEntitySize());
+        assertEquals("root[dtd] ext entity", parse(cache, document, null));
+        assertEquals(2, cache.getEntityCount());
+        assertNull(cache.getEntity(document.toURI().toString(), null));
+        assertEquals(entity.length() + dtd.length(), cache.getSize());
+
+        // exactly the maximum size is cached, one byte more isn't
+        String id = "http://example.com/e.xml";
+        cache.putEntity(id, null, new byte[cache.getMaxEntitySize() + 1]);
+        assertNull(cache.getEntity(id, null));
+        cache.putEntity(id, null, new byte[cache.getMaxEntitySize()]);
+        assertNotNull(cache.getEntity(id, null));
+    }
+
+    public void testAbortedParse() throws Exception {
+        StringBuffer buffer = new StringBuffer("<root>");
+        for (int i = 0; i < 10000; i++) {
+            buffer.append("<record id='").append(i).append("'/>\n");
+        }
+        buffer.append("</root>");
+        File document = new File(fDirectory, "large.xml");
+        write(document, buffer.toString());
+
+        XMLEntityCacheImpl cache = new XMLEntityCacheImpl();
+        final SAXException abort = new SAXException("abort");
+        SAXParser parser = new SAXParser();
+        parser.setProperty(ENTITY_CACHE, cache);
+        parser.setContentHandler(new DefaultHandler() {
+            public void startElement(String uri, String localName, String qName,
+                                     Attributes attributes) throws SAXException {
+                if (localName.equals("record")) {
+                    throw abort;
+                }
+            }
+        });
+        try {
+            parser.parse(document.toURI().toString());
+            fail("not aborted");
+        }
+        catch (SAXException e) {
+            assertSame(abort, e);
+        }
+        assertEquals(0, cache.getEntityCount());
+
+        // read to the end, it is cached
+        parser.setContentHandler(new DefaultHandler());
+        parser.parse(document.toURI().toString());
+        assertEquals(1, cache.getEntityCount());
+        assertEquals(document.length(), cache.getSize());
+    }
+
+    public void testDiskStore() throws Exception {
+        File store = createDirectory("store");
+        XMLEntityCacheImpl cache = new XMLEntityCacheImpl(XMLEntityCacheImpl.DEFAULT_MAX_SIZE, store);
+        File document = new File(fDirectory, "doc.xml");
+        assertEquals("root[dtd] ext entity", parse(cache, document, null));
+        assertEquals(3, store.listFiles().length);
+
+        // another cache reads the entities from the store
+        write(new File(fDirectory, "ent.xml"), "<ext>changed</ext>");
+        cache = new XMLEntityCacheImpl(XMLEntityCacheImpl.DEFAULT_MAX_SIZE, store);
+        assertEquals("root[dtd] ext entity", parse(cache, document, null));
+        assertEquals(3, cache.getDiskHits());
+        assertEquals(0, cache.getMisses());
+        // and holds them in memory
+        assertEquals("root[dtd] ext entity", parse(cache, document, null));
+        assertEquals(3, cache.getMemoryHits());
+        assertEquals(3, cache.getDiskHits());
+
+        // the bytes round trip, including an empty entity
+        String id = "http://example.com/e.xml";
+        byte[] content = new byte[256];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        cache.putEntity(id, "UTF-16", content);
+        cache.putEntity(id, null, new byte[0]);
+        cache = new XMLEntityCacheImpl(0, store);
+        assertTrue(Arrays.equals(content, cache.getEntity(id, "UTF-16")));
+        assertEquals(0, cache.getEntityCount());
+        assertEquals(0, cache.getEntity(id, null).length);
+    }
+
+    public void testDigestCollision() throws Exception {
+        String id = "http://example.com/e.xml";
+        String other = "http://example.com/other.xml";
+        File first = createDirectory("first");
+        File second = createDirectory("second");
+        new XMLEntityCacheImpl(0, first).putEntity(id, null, new byte[] { 'a' });
+        new XMLEntityCacheImpl(0, second).putEntity(other, null, new byte[] { 'b' });
+        File[] files = first.listFiles();
+        File[] otherFiles = second.listFiles();
+        assertEquals(1, files.length);
+        assertEquals(1, otherFiles.length);
+
+        // the file named by the digest of one entity holds another
+        copy(files[0], otherFiles[0]);
+        XMLEntityCacheImpl cache = new XMLEntityCacheImpl(0, second);
+        assertNull(cache.getEntity(other, null));
+        assertEquals(1, cache.getMisses());
+        assertEquals(0, cache.getDiskHits());
+
+        // a truncated file isn't read either
+        write(otherFiles[0], "");
+        assertNull(cache.getEntity(other, null));
+        assertEquals(2, cache.getMisses());
+    }
+
+    public void testEviction() throws Exception {
+        XMLEntityCacheImpl cache = new XMLEntityCacheImpl(100);
+        cache.putEntity("a", null, new byte[40]);
+        cache.putEntity("b", null, new byte[40]);
+        assertNotNull(cache.getEntity("a", null));
+        // b is the least recently used
+        cache.putEntity("c", null, new byte[40]);
+        assertEquals(80, cache.getSize());
+        assertNull(cache.getEntity("b", null));
+        assertNotNull(cache.getEntity("a", null));
+        assertNotNull(cache.getEntity("c", null));
+
+        // several entities are evicted for a large one
+        cache.putEntity("d", null, new byte[90]);
+        assertEquals(1, cache.getEntityCount());
+        assertEquals(90, cache.getSize());
+        assertNotNull(cache.getEntity("d", null));
+
+        // replacing an entity counts its new size only
+        cache.putEntity("d", null, new byte[10]);
+        assertEquals(10, cache.getSize());
+
+        // larger than the whole cache, it isn't stored
+        cache.putEntity("e", null, new byte[101]);
+        assertNull(cache.getEntity("e", null));
+        assertEquals(10, cache.getSize());
+    }
+
+    //
+    // Protected methods
+    //
+
+    /**
+     * Parses a document with the given entity cache and returns the
+     * names of the elements, the status attribute of the root and the
+     * text.
+     */
+    protected static String parse(XMLEntityCacheImpl cache, File document,
+                                  String encoding) throws Exception {
+        final StringBuffer buffer = new StringBuffer();
+        SAXParser parser = new SAXParser();
+        parser.setProperty(ENTITY_CACHE, cache);
+        parser.setContentHandler(new DefaultHandler() {
+            public void startElement(String uri, String localName, String qName,
+                                     Attributes attributes) {
+                if (buffer.length() > 0) {
+                    buffer.append(' ');
+                }
+                buffer.append(localName);
+                if (attributes.getValue("status") != null) {
+                    buffer.append('[').append(attributes.getValue("status")).append(']');
+                }
+            }
+            public void characters(char[] ch, int start, int length) {
+                buffer.append(' ').append(ch, start, length);
+            }
+        });
+        InputSource source = new InputSource(document.toURI().toString());
+        source.setEncoding(encoding);
+        parser.parse(source);
+        return buffer.toString();
+    } // parse(XMLEntityCacheImpl,File,String):String
+
+    /** Creates a temporary directory. */
+    protected File createDirectory(String prefix) throws IOException {
+        File directory = File.createTempFile(prefix, "");
+        directory.delete();
+        directory.mkdir();
+        fDirectories.add(directory);
+        return directory;
+    } // createDirectory(String):File
+
+    /** Writes a file in UTF-8. */
+    protected static void write(File file, String content) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        }
+        finally {
+            out.close();
+        }
+    } // write(File,String)
+
+    /** Copies a file. */
+    protected static void copy(File from, File to) throws IOException {
+        InputStream in = new FileInputStream(from);
+        try {
+            byte[] bytes = new byte[(int) from.length()];
+            int length = 0;
+            while (length < bytes.length) {
+                length += in.read(bytes, length, bytes.length - length);
+            }
+            OutputStream out = new FileOutputStream(to);
+            try {
+                out.write(bytes);
+            }
+            finally {
+                out.close();
+            }
+        }
+        finally {
+            in.close();
+        }
+    } // copy(File,File)
+
+} // class XMLEntityCacheTest